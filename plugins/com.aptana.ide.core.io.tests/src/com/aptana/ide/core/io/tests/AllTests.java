@@ -0,0 +1,35 @@
+package com.aptana.ide.core.io.tests;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import com.aptana.ide.core.io.vfs.MetadataCacheTest;
+
+/**
+ * @author agent (agent@local)
+ */
+public final class AllTests
+{
+	/**
+	 * AllTests
+	 */
+	private AllTests()
+	{
+	}
+
+	/**
+	 * suite
+	 * 
+	 * @return Returns a group of unit tests
+	 */
+	public static Test suite()
+	{
+		TestSuite suite = new TestSuite("Tests for com.aptana.ide.core.io.tests"); //$NON-NLS-1$
+
+		// $JUnit-BEGIN$
+		suite.addTestSuite(MetadataCacheTest.class);
+		// $JUnit-END$
+
+		return suite;
+	}
+}
@@ -0,0 +1,278 @@
+package com.aptana.ide.core.io.vfs;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+
+/**
+ * Fills metadata caches past their time-to-live and memory budget
+ *
+ * @author agent (agent@local)
+ *
+ */
+public class MetadataCacheTest extends TestCase {
+
+	private static final long HOUR = 3600000;
+	private static final long SHORT_TTL = 50;
+
+	public void testPutAndGet() {
+		MetadataCache<String> cache = new SizedCache(HOUR, HOUR, Long.MAX_VALUE);
+		IPath path = new Path("/www/index.html"); //$NON-NLS-1$
+		assertNull(cache.get(path));
+		assertEquals("info", cache.put(path, "info")); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals("info", cache.get(path)); //$NON-NLS-1$
+		assertFalse(cache.isMissing(path));
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+		assertEquals(1, cache.size());
+
+		cache.put(path, "newer"); //$NON-NLS-1$
+		assertEquals("newer", cache.get(path)); //$NON-NLS-1$
+		assertEquals(1, cache.size());
+	}
+
+	public void testNullValueRejected() {
+		MetadataCache<String> cache = new SizedCache(HOUR, HOUR, Long.MAX_VALUE);
+		try {
+			cache.put(new Path("/a"), null); //$NON-NLS-1$
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+		assertEquals(0, cache.size());
+	}
+
+	public void testMissingPaths() {
+		MetadataCache<String> cache = new SizedCache(HOUR, HOUR, Long.MAX_VALUE);
+		IPath path = new Path("/www/gone.html"); //$NON-NLS-1$
+		assertFalse(cache.isMissing(path));
+		cache.putMissing(path);
+		assertTrue(cache.isMissing(path));
+		// known to be missing is an answer, not a miss
+		assertNull(cache.get(path));
+		assertEquals(0, cache.getMissCount());
+
+		cache.put(path, "created"); //$NON-NLS-1$
+		assertFalse(cache.isMissing(path));
+		assertEquals("created", cache.get(path)); //$NON-NLS-1$
+	}
+
+	public void testEntriesExpire() throws Exception {
+		MetadataCache<String> cache = new SizedCache(SHORT_TTL, HOUR, Long.MAX_VALUE);
+		IPath path = new Path("/a"); //$NON-NLS-1$
+		IPath missing = new Path("/b"); //$NON-NLS-1$
+		cache.put(path, "value"); //$NON-NLS-1$
+		cache.putMissing(missing);
+		Thread.sleep(SHORT_TTL * 2);
+		assertNull(cache.get(path));
+		assertEquals(1, cache.getMissCount());
+		assertTrue(cache.isMissing(missing));
+		assertEquals(1, cache.size());
+	}
+
+	public void testMissingEntriesExpire() throws Exception {
+		MetadataCache<String> cache = new SizedCache(HOUR, SHORT_TTL, Long.MAX_VALUE);
+		IPath path = new Path("/a"); //$NON-NLS-1$
+		IPath missing = new Path("/b"); //$NON-NLS-1$
+		cache.put(path, "value"); //$NON-NLS-1$
+		cache.putMissing(missing);
+		Thread.sleep(SHORT_TTL * 2);
+		assertFalse(cache.isMissing(missing));
+		assertEquals("value", cache.get(path)); //$NON-NLS-1$
+		assertEquals(1, cache.size());
+	}
+
+	public void testExpiredEntriesSwept() throws Exception {
+		MetadataCache<String> cache = new SizedCache(HOUR, SHORT_TTL, Long.MAX_VALUE);
+		for (int i = 0; i < 255; ++i) {
+			cache.putMissing(new Path("/missing" + i)); //$NON-NLS-1$
+		}
+		long size = cache.getSize();
+		assertEquals(255, cache.size());
+		Thread.sleep(SHORT_TTL * 2);
+		// expired entries are dropped now and then even when they are never looked up again
+		cache.put(new Path("/a"), "value"); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals(1, cache.size());
+		assertTrue(cache.getSize() < size);
+		assertEquals(0, cache.getEvictionCount());
+	}
+
+	public void testSizeAccounting() {
+		MetadataCache<String> cache = new SizedCache(HOUR, HOUR, Long.MAX_VALUE);
+		IPath path = new Path("/www/a"); //$NON-NLS-1$
+		cache.put(path, "short"); //$NON-NLS-1$
+		long small = cache.getSize();
+		assertTrue(small > 0);
+		cache.put(path, "a much longer value"); //$NON-NLS-1$
+		assertEquals(small + "a much longer value".length() - "short".length(), cache.getSize()); //$NON-NLS-1$ //$NON-NLS-2$
+		cache.putMissing(new Path("/www/b")); //$NON-NLS-1$
+		cache.remove(path);
+		cache.remove(new Path("/www/b")); //$NON-NLS-1$
+		cache.remove(new Path("/www/c")); //$NON-NLS-1$
+		assertEquals(0, cache.getSize());
+		assertEquals(0, cache.size());
+	}
+
+	public void testStaysWithinBudget() {
+		long budget = 100 * entrySize(new Path("/dir/file000"), 10); //$NON-NLS-1$
+		MetadataCache<String> cache = new SizedCache(HOUR, HOUR, budget);
+		for (int i = 0; i < 1000; ++i) {
+			if (i % 3 == 0) {
+				cache.putMissing(path(i));
+			} else {
+				cache.put(path(i), "0123456789"); //$NON-NLS-1$
+			}
+			assertTrue(cache.getSize() <= budget);
+		}
+		assertTrue(cache.size() >= 90);
+		assertTrue(cache.size() <= 100 * 11 / 10);
+		assertEquals(1000 - cache.size(), cache.getEvictionCount());
+		// the newest entries are the ones kept
+		assertEquals("0123456789", cache.get(path(998))); //$NON-NLS-1$
+		assertTrue(cache.isMissing(path(999)));
+		assertNull(cache.get(path(1)));
+	}
+
+	public void testLeastRecentlyUsedEvicted() {
+		long budget = 3 * entrySize(path(0), 1);
+		MetadataCache<String> cache = new SizedCache(HOUR, HOUR, budget);
+		cache.put(path(0), "0"); //$NON-NLS-1$
+		cache.put(path(1), "1"); //$NON-NLS-1$
+		cache.put(path(2), "2"); //$NON-NLS-1$
+		// a lookup makes the first path the most recently used
+		assertEquals("0", cache.get(path(0))); //$NON-NLS-1$
+		cache.put(path(3), "3"); //$NON-NLS-1$
+		assertEquals(1, cache.getEvictionCount());
+		assertNull(cache.get(path(1)));
+		assertEquals("0", cache.get(path(0))); //$NON-NLS-1$
+		assertEquals("2", cache.get(path(2))); //$NON-NLS-1$
+		assertEquals("3", cache.get(path(3))); //$NON-NLS-1$
+	}
+
+	public void testEntryLargerThanBudgetKept() {
+		MetadataCache<String> cache = new SizedCache(HOUR, HOUR, 10);
+		cache.put(path(0), "0"); //$NON-NLS-1$
+		cache.put(path(1), "a listing too large for the budget"); //$NON-NLS-1$
+		// the entry just cached is never evicted to make room for itself
+		assertEquals(1, cache.size());
+		assertNotNull(cache.get(path(1)));
+	}
+
+	public void testRemoveAll() {
+		MetadataCache<String> cache = new SizedCache(HOUR, HOUR, Long.MAX_VALUE);
+		String[] paths = new String[] { "/www", "/www/a", "/www/a/b", "/www/a/b/c", "/wwwx", "/other", "/other/www" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$
+		for (String path : paths) {
+			cache.put(new Path(path), path);
+		}
+		cache.putMissing(new Path("/www/a/missing")); //$NON-NLS-1$
+		cache.removeAll(new Path("/www/a")); //$NON-NLS-1$
+		assertEquals("/www", cache.get(new Path("/www"))); //$NON-NLS-1$ //$NON-NLS-2$
+		assertNull(cache.get(new Path("/www/a"))); //$NON-NLS-1$
+		assertNull(cache.get(new Path("/www/a/b/c"))); //$NON-NLS-1$
+		assertFalse(cache.isMissing(new Path("/www/a/missing"))); //$NON-NLS-1$
+		assertEquals(4, cache.size());
+
+		cache.removeAll(new Path("/www")); //$NON-NLS-1$
+		assertEquals("/wwwx", cache.get(new Path("/wwwx"))); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals("/other/www", cache.get(new Path("/other/www"))); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals(3, cache.size());
+
+		cache.removeAll(Path.ROOT);
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getSize());
+	}
+
+	public void testClear() {
+		MetadataCache<String> cache = new SizedCache(HOUR, HOUR, Long.MAX_VALUE);
+		cache.put(path(0), "0"); //$NON-NLS-1$
+		cache.putMissing(path(1));
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getSize());
+		assertNull(cache.get(path(0)));
+		assertFalse(cache.isMissing(path(1)));
+	}
+
+	public void testConcurrentUse() throws Exception {
+		final long budget = 50 * entrySize(path(0), 10);
+		final MetadataCache<String> cache = new SizedCache(HOUR, HOUR, budget);
+		final List<Throwable> failures = new ArrayList<Throwable>();
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int t = 0; t < 8; ++t) {
+			final int offset = t;
+			threads.add(new Thread() {
+				public void run() {
+					try {
+						for (int i = 0; i < 5000; ++i) {
+							IPath path = path((i * 7 + offset) % 200);
+							switch (i % 4) {
+							case 0:
+								cache.put(path, "0123456789"); //$NON-NLS-1$
+								break;
+							case 1:
+								cache.putMissing(path);
+								break;
+							case 2:
+								cache.remove(path);
+								break;
+							default:
+								String value = cache.get(path);
+								assertTrue(value == null || "0123456789".equals(value)); //$NON-NLS-1$
+							}
+							assertTrue(cache.getSize() <= budget);
+						}
+					} catch (Throwable e) {
+						synchronized (failures) {
+							failures.add(e);
+						}
+					}
+				}
+			});
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(failures.toString(), 0, failures.size());
+		cache.removeAll(Path.ROOT);
+		assertEquals(0, cache.getSize());
+	}
+
+	private static IPath path(int i) {
+		String number = "00" + i; //$NON-NLS-1$
+		return new Path("/dir/file" + number.substring(number.length() - 3)); //$NON-NLS-1$
+	}
+
+	/**
+	 * Returns the size a cache accounts for an entry of the path and a value of the given length
+	 */
+	private static long entrySize(IPath path, int valueLength) {
+		MetadataCache<String> cache = new SizedCache(HOUR, HOUR, Long.MAX_VALUE);
+		StringBuffer value = new StringBuffer();
+		for (int i = 0; i < valueLength; ++i) {
+			value.append('x');
+		}
+		cache.put(path, value.toString());
+		return cache.getSize();
+	}
+
+	/**
+	 * Counts a character per byte, on top of the entry overhead
+	 */
+	private static class SizedCache extends MetadataCache<String> {
+
+		SizedCache(long ttl, long missingTTL, long maxSize) {
+			super(ttl, missingTTL, maxSize);
+		}
+
+		@Override
+		protected long sizeOf(String value) {
+			return value.length();
+		}
+	}
+}
@@ -54,6 +54,7 @@ import com.aptana.ide.core.StringUtils;
 import com.aptana.ide.core.URLEncoder;
 import com.aptana.ide.core.io.InfiniteProgressMonitor;
 import com.aptana.ide.core.io.vfs.IConnectionFileManager;
+import com.aptana.ide.core.io.vfs.IConnectionFileManagerExtension;
 import com.aptana.ide.core.io.vfs.IExtendedFileStore;
 import com.aptana.ide.core.io.vfs.IFileTreeVisitor;
 
@@ -251,26 +252,49 @@ import com.aptana.ide.core.io.vfs.IFileTreeVisitor;
 	    return toCanonicalURI().toString();
 	}
 
-	private static void buildFileTree(FileTree fileTree, VirtualFile parent, IFileTreeVisitor visitor, IProgressMonitor monitor) throws CoreException {
-		monitor.beginTask(StringUtils.format("Listing directory {0}", parent.path), 20);
-		IFileInfo[] infos = parent.fileManager.childInfos(parent.path, IExtendedFileStore.DETAILED, monitor);
-		List<IFileStore> stores = new ArrayList<IFileStore>();
-		List<IFileStore> dirs = new ArrayList<IFileStore>();
-		for (IFileInfo fileInfo : infos) {
-			IFileStore store = parent.getChild(fileInfo.getName());
-			if (visitor != null && !visitor.include(store)) {
-				continue;
+	private static void buildFileTree(FileTree fileTree, VirtualFile root, IFileTreeVisitor visitor, IProgressMonitor monitor) throws CoreException {
+		// fetch a whole directory level at a time, so that the file manager may list its directories together
+		List<VirtualFile> level = new ArrayList<VirtualFile>();
+		level.add(root);
+		while (!level.isEmpty()) {
+			monitor.beginTask(StringUtils.format("Listing directory {0}", level.get(0).path), 20);
+			IFileInfo[][] levelInfos = fetchChildInfos(root.fileManager, level, monitor);
+			List<VirtualFile> nextLevel = new ArrayList<VirtualFile>();
+			for (int i = 0; i < levelInfos.length; ++i) {
+				VirtualFile parent = level.get(i);
+				List<IFileStore> stores = new ArrayList<IFileStore>();
+				List<IFileInfo> infos = new ArrayList<IFileInfo>();
+				for (IFileInfo fileInfo : levelInfos[i]) {
+					IFileStore store = parent.getChild(fileInfo.getName());
+					if (visitor != null && !visitor.include(store)) {
+						continue;
+					}
+					stores.add(store);
+					infos.add(fileInfo);
+					if (fileInfo.isDirectory()) {
+						nextLevel.add((VirtualFile) store);
+					}
+				}
+				fileTree.addChildren(parent, stores.toArray(new IFileStore[stores.size()]), infos.toArray(new IFileInfo[infos.size()]));
+				monitor.worked(1);
 			}
-			stores.add(store);
-			if (fileInfo.isDirectory()) {
-				dirs.add(store);
+			level = nextLevel;
+		}
+	}
+
+	private static IFileInfo[][] fetchChildInfos(IConnectionFileManager fileManager, List<VirtualFile> parents, IProgressMonitor monitor) throws CoreException {
+		if (parents.size() > 1 && fileManager instanceof IConnectionFileManagerExtension) {
+			IPath[] paths = new IPath[parents.size()];
+			for (int i = 0; i < paths.length; ++i) {
+				paths[i] = parents.get(i).path;
 			}
+			return ((IConnectionFileManagerExtension) fileManager).childInfos(paths, IExtendedFileStore.DETAILED, monitor);
 		}
-		fileTree.addChildren(parent, stores.toArray(new IFileStore[stores.size()]), infos);
-		monitor.worked(1);
-		for (IFileStore store : dirs) {
-			buildFileTree(fileTree, (VirtualFile) store, visitor, monitor);
+		IFileInfo[][] infos = new IFileInfo[parents.size()][];
+		for (int i = 0; i < infos.length; ++i) {
+			infos[i] = fileManager.childInfos(parents.get(i).path, IExtendedFileStore.DETAILED, monitor);
 		}
+		return infos;
 	}
 	
 }
@@ -0,0 +1,277 @@
+/**
+ * This file Copyright (c) 2005-2009 Aptana, Inc. This program is
+ * dual-licensed under both the Aptana Public License and the GNU General
+ * Public license. You may elect to use one or the other of these licenses.
+ * 
+ * This program is distributed in the hope that it will be useful, but
+ * AS-IS and WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, TITLE, or
+ * NONINFRINGEMENT. Redistribution, except as permitted by whichever of
+ * the GPL or APL you select, is prohibited.
+ *
+ * 1. For the GPL license (GPL), you can redistribute and/or modify this
+ * program under the terms of the GNU General Public License,
+ * Version 3, as published by the Free Software Foundation.  You should
+ * have received a copy of the GNU General Public License, Version 3 along
+ * with this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * Aptana provides a special exception to allow redistribution of this file
+ * with certain other free and open source software ("FOSS") code and certain additional terms
+ * pursuant to Section 7 of the GPL. You may view the exception and these
+ * terms on the web at http://www.aptana.com/legal/gpl/.
+ * 
+ * 2. For the Aptana Public License (APL), this program and the
+ * accompanying materials are made available under the terms of the APL
+ * v1.0 which accompanies this distribution, and is available at
+ * http://www.aptana.com/legal/apl/.
+ * 
+ * You may view the GPL, Aptana's exception and additional terms, and the
+ * APL in the file titled license.html at the root of the corresponding
+ * plugin containing this source file.
+ * 
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.aptana.ide.core.io.vfs;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.core.runtime.IPath;
+
+/**
+ * A bounded cache of remote file metadata keyed by path, shared by the connection file managers.
+ * Entries expire after a time-to-live and the least recently used ones are evicted once the estimated
+ * size of all entries exceeds the memory budget. Paths known not to exist are cached as missing
+ * entries with a shorter time-to-live. All methods are thread-safe.
+ * 
+ * @author agent (agent@local)
+ *
+ */
+public class MetadataCache<V> {
+
+	private static final int ENTRY_OVERHEAD = 96;
+	private static final int SEGMENT_OVERHEAD = 48;
+	private static final int SWEEP_INTERVAL = 256;
+
+	private static final class Entry<V> {
+		private final V value;
+		private final long expireTime;
+		private final long size;
+
+		private Entry(V value, long expireTime, long size) {
+			this.value = value;
+			this.expireTime = expireTime;
+			this.size = size;
+		}
+	}
+
+	private final long ttl;
+	private final long missingTTL;
+	private final long maxSize;
+	private final LinkedHashMap<IPath, Entry<V>> map = new LinkedHashMap<IPath, Entry<V>>(16, 0.75f, true);
+	private long size;
+	private long hitCount;
+	private long missCount;
+	private long evictionCount;
+	private int putCount;
+
+	/**
+	 * @param ttl time-to-live of entries, in milliseconds
+	 * @param missingTTL time-to-live of missing path entries, in milliseconds
+	 * @param maxSize memory budget, in bytes
+	 */
+	public MetadataCache(long ttl, long missingTTL, long maxSize) {
+		this.ttl = ttl;
+		this.missingTTL = missingTTL;
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Returns the cached value of the path
+	 * @param path
+	 * @return the value, or null if the path is not cached or is cached as missing
+	 */
+	public synchronized V get(IPath path) {
+		Entry<V> entry = getEntry(path);
+		if (entry == null || entry.value == null) {
+			if (entry == null) {
+				++missCount;
+			}
+			return null;
+		}
+		++hitCount;
+		return entry.value;
+	}
+
+	/**
+	 * Returns true if the path is cached as missing
+	 * @param path
+	 * @return boolean
+	 */
+	public synchronized boolean isMissing(IPath path) {
+		Entry<V> entry = getEntry(path);
+		if (entry != null && entry.value == null) {
+			++hitCount;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Caches the value of the path
+	 * @param path
+	 * @param value
+	 * @return the value
+	 */
+	public V put(IPath path, V value) {
+		if (value == null) {
+			throw new IllegalArgumentException();
+		}
+		put(path, value, ttl);
+		return value;
+	}
+
+	/**
+	 * Caches the path as missing
+	 * @param path
+	 */
+	public void putMissing(IPath path) {
+		put(path, null, missingTTL);
+	}
+
+	/**
+	 * Removes the path from the cache
+	 * @param path
+	 */
+	public synchronized void remove(IPath path) {
+		Entry<V> entry = map.remove(path);
+		if (entry != null) {
+			size -= entry.size;
+		}
+	}
+
+	/**
+	 * Removes the path and all paths below it from the cache
+	 * @param prefix
+	 */
+	public synchronized void removeAll(IPath prefix) {
+		int segments = prefix.segmentCount();
+		for (Iterator<Map.Entry<IPath, Entry<V>>> i = map.entrySet().iterator(); i.hasNext(); ) {
+			Map.Entry<IPath, Entry<V>> mapEntry = i.next();
+			IPath path = mapEntry.getKey();
+			if (path.segmentCount() >= segments && prefix.matchingFirstSegments(path) == segments) {
+				size -= mapEntry.getValue().size;
+				i.remove();
+			}
+		}
+	}
+
+	/**
+	 * Removes all entries
+	 */
+	public synchronized void clear() {
+		map.clear();
+		size = 0;
+	}
+
+	/**
+	 * Returns the number of cached entries, including expired ones not evicted yet
+	 * @return int
+	 */
+	public synchronized int size() {
+		return map.size();
+	}
+
+	/**
+	 * Returns the estimated size of all cached entries, in bytes
+	 * @return long
+	 */
+	public synchronized long getSize() {
+		return size;
+	}
+
+	/**
+	 * Returns the number of lookups answered from the cache
+	 * @return long
+	 */
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	/**
+	 * Returns the number of lookups of paths that were not cached
+	 * @return long
+	 */
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * Returns the number of entries evicted to stay within the memory budget
+	 * @return long
+	 */
+	public synchronized long getEvictionCount() {
+		return evictionCount;
+	}
+
+	/**
+	 * Estimates the memory used by a cached value. Subclasses override this to account for values
+	 * larger than a few fields, e.g. directory listings.
+	 * @param value
+	 * @return size in bytes
+	 */
+	protected long sizeOf(V value) {
+		return 0;
+	}
+
+	private synchronized void put(IPath path, V value, long timeToLive) {
+		long entrySize = ENTRY_OVERHEAD + pathSize(path) + (value != null ? sizeOf(value) : 0);
+		Entry<V> previous = map.put(path, new Entry<V>(value, System.currentTimeMillis() + timeToLive, entrySize));
+		if (previous != null) {
+			size -= previous.size;
+		}
+		size += entrySize;
+		if (++putCount % SWEEP_INTERVAL == 0) {
+			removeExpired();
+		}
+		// least recently used entries come first
+		for (Iterator<Entry<V>> i = map.values().iterator(); size > maxSize && map.size() > 1; ) {
+			size -= i.next().size;
+			i.remove();
+			++evictionCount;
+		}
+	}
+
+	private Entry<V> getEntry(IPath path) {
+		Entry<V> entry = map.get(path);
+		if (entry != null && entry.expireTime <= System.currentTimeMillis()) {
+			map.remove(path);
+			size -= entry.size;
+			return null;
+		}
+		return entry;
+	}
+
+	private void removeExpired() {
+		long now = System.currentTimeMillis();
+		for (Iterator<Entry<V>> i = map.values().iterator(); i.hasNext(); ) {
+			Entry<V> entry = i.next();
+			if (entry.expireTime <= now) {
+				size -= entry.size;
+				i.remove();
+			}
+		}
+	}
+
+	private static long pathSize(IPath path) {
+		long pathSize = 0;
+		for (int i = 0; i < path.segmentCount(); ++i) {
+			pathSize += SEGMENT_OVERHEAD + 2 * path.segment(i).length();
+		}
+		return pathSize;
+	}
+
+}
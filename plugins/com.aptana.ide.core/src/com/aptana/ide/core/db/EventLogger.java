@@ -55,6 +55,16 @@ public final class EventLogger
 	private static final String EVENT_TYPE = "eventType"; //$NON-NLS-1$
 	private static final String MESSAGE = "message"; //$NON-NLS-1$
 	
+	private static final String INSERT_EVENT = MessageFormat.format(
+		"INSERT INTO {0}({1},{2},{3}) VALUES(?,?,?)",	//$NON-NLS-1$
+		new Object[] {
+			TABLE_NAME,
+			DATE_TIME,
+			EVENT_TYPE,
+			MESSAGE
+		}
+	);
+	
 	private static final String GET_EVENTS = MessageFormat.format(
 		"SELECT {0},{1},{2} FROM {3} ORDER BY {0}",	//$NON-NLS-1$
 		new Object[] {
@@ -65,11 +75,14 @@ public final class EventLogger
 		}
 	);
 	
+	private EventWriter _writer;
+	
 	/**
 	 * EventLogger
 	 */
 	private EventLogger()
 	{
+		this._writer = new EventWriter(INSERT_EVENT);
 	}
 
 	/**
@@ -77,7 +90,7 @@ public final class EventLogger
 	 * 
 	 * @return
 	 */
-	public static EventLogger getInstance()
+	public static synchronized EventLogger getInstance()
 	{
 		if (INSTANCE == null)
 		{
@@ -102,6 +115,9 @@ public final class EventLogger
 				// create table
 				db.execute(query);
 			}
+			
+			// write the remaining events before the database shuts down
+			db.addShutdownListener(INSTANCE._writer);
 		}
 		
 		return INSTANCE;
@@ -125,21 +141,13 @@ public final class EventLogger
 	 */
 	public void logEvent(String eventType, String message)
 	{
-		String dateTime = Long.toString(System.currentTimeMillis());
-		String query = MessageFormat.format(
-			"INSERT INTO {0}({1},{2},{3}) VALUES({4},''{5}'',''{6}'')",	//$NON-NLS-1$
-			new Object[] {
-				TABLE_NAME,
-				DATE_TIME,
-				EVENT_TYPE,
-				MESSAGE,
-				dateTime,
-				(eventType != null && eventType.length() > 0) ? eventType : LogEventTypes.UNKNOWN,	//$NON-NLS-1$
+		this._writer.add(
+			new EventInfo(
+				System.currentTimeMillis(),
+				(eventType != null && eventType.length() > 0) ? eventType : LogEventTypes.UNKNOWN,
 				(message != null) ? message : ""	//$NON-NLS-1$
-			}
+			)
 		);
-		
-		AptanaDB.getInstance().execute(query);
 	}
 	
 	/**
@@ -149,6 +157,7 @@ public final class EventLogger
 	{
 		String query = "DELETE FROM " + TABLE_NAME; //$NON-NLS-1$
 		
+		this._writer.flush();
 		AptanaDB.getInstance().execute(query);
 	}
 	
@@ -168,6 +177,7 @@ public final class EventLogger
 			}
 		);
 		
+		this._writer.flush();
 		AptanaDB.getInstance().execute(query);
 	}
 	
@@ -187,6 +197,7 @@ public final class EventLogger
 				}
 		);
 		
+		this._writer.flush();
 		AptanaDB.getInstance().execute(query);
 	}
 	
@@ -208,6 +219,7 @@ public final class EventLogger
 			}
 		);
 		
+		this._writer.flush();
 		AptanaDB.getInstance().execute(query);
 	}
 	
@@ -220,6 +232,7 @@ public final class EventLogger
 	{
 		final List<EventInfo> events = new ArrayList<EventInfo>();
 		
+		this._writer.flush();
 		AptanaDB.getInstance().execute(
 			GET_EVENTS,
 			new IResultSetHandler() {
@@ -257,6 +270,7 @@ public final class EventLogger
 		);
 		final List<EventInfo> events = new ArrayList<EventInfo>();
 		
+		this._writer.flush();
 		AptanaDB.getInstance().execute(
 			query,
 			new IResultSetHandler() {
@@ -0,0 +1,288 @@
+/**
+ * This file Copyright (c) 2005-2007 Aptana, Inc. This program is
+ * dual-licensed under both the Aptana Public License and the GNU General
+ * Public license. You may elect to use one or the other of these licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * AS-IS and WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, TITLE, or
+ * NONINFRINGEMENT. Redistribution, except as permitted by whichever of
+ * the GPL or APL you select, is prohibited.
+ *
+ * 1. For the GPL license (GPL), you can redistribute and/or modify this
+ * program under the terms of the GNU General Public License,
+ * Version 3, as published by the Free Software Foundation.  You should
+ * have received a copy of the GNU General Public License, Version 3 along
+ * with this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Aptana provides a special exception to allow redistribution of this file
+ * with certain Eclipse Public Licensed code and certain additional terms
+ * pursuant to Section 7 of the GPL. You may view the exception and these
+ * terms on the web at http://www.aptana.com/legal/gpl/.
+ *
+ * 2. For the Aptana Public License (APL), this program and the
+ * accompanying materials are made available under the terms of the APL
+ * v1.0 which accompanies this distribution, and is available at
+ * http://www.aptana.com/legal/apl/.
+ *
+ * You may view the GPL, Aptana's exception and additional terms, and the
+ * APL in the file titled license.html at the root of the corresponding
+ * plugin containing this source file.
+ *
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.ide.core.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import com.aptana.ide.core.AptanaCorePlugin;
+import com.aptana.ide.core.IdeLog;
+
+/**
+ * Writes logged events to the database on a background thread. Events are queued by the threads that log them and
+ * written in batches with one prepared statement over a connection that stays open until the database shuts down.
+ * 
+ * @author agent (agent@local)
+ */
+class EventWriter implements Runnable, IDBShutdownListener
+{
+	private static final int QUEUE_SIZE = 1000;
+	private static final int MAX_BATCH_SIZE = 100;
+	private static final int COLUMN_LENGTH = 255;
+	private static final long WAIT_INTERVAL = 1000;
+	private static final long SHUTDOWN_TIMEOUT = 5000;
+
+	private String _insert;
+	private BlockingQueue<EventInfo> _queue;
+	private Thread _thread;
+	private Connection _connection;
+	private PreparedStatement _statement;
+	private long _queued;
+	private long _written;
+	private boolean _closed;
+
+	/**
+	 * EventWriter
+	 * 
+	 * @param insert
+	 *            the INSERT statement with parameters for the date/time, event type and message of an event
+	 */
+	EventWriter(String insert)
+	{
+		this._insert = insert;
+		this._queue = new ArrayBlockingQueue<EventInfo>(QUEUE_SIZE);
+		this._thread = new Thread(this, "Event Logger"); //$NON-NLS-1$
+		this._thread.setDaemon(true);
+		this._thread.start();
+	}
+
+	/**
+	 * Queues an event to be written. This only waits when the queue is full.
+	 * 
+	 * @param event
+	 */
+	void add(EventInfo event)
+	{
+		synchronized (this)
+		{
+			if (this._closed)
+			{
+				return;
+			}
+			this._queued++;
+		}
+
+		try
+		{
+			this._queue.put(event);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+
+			synchronized (this)
+			{
+				this._queued--;
+				this.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Waits until the events queued so far have been written
+	 */
+	synchronized void flush()
+	{
+		long target = this._queued;
+
+		while (this._written < Math.min(target, this._queued) && this._thread.isAlive())
+		{
+			try
+			{
+				this.wait(WAIT_INTERVAL);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+	}
+
+	/**
+	 * @see com.aptana.ide.core.db.IDBShutdownListener#shutdown()
+	 */
+	public void shutdown()
+	{
+		synchronized (this)
+		{
+			this._closed = true;
+		}
+
+		// write what is left and close the connection before the database goes down
+		this.flush();
+		this._thread.interrupt();
+
+		try
+		{
+			this._thread.join(SHUTDOWN_TIMEOUT);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * @see java.lang.Runnable#run()
+	 */
+	public void run()
+	{
+		List<EventInfo> batch = new ArrayList<EventInfo>(MAX_BATCH_SIZE);
+
+		try
+		{
+			while (true)
+			{
+				batch.add(this._queue.take());
+				this._queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+
+				try
+				{
+					this.write(batch);
+				}
+				finally
+				{
+					synchronized (this)
+					{
+						this._written += batch.size();
+						this.notifyAll();
+					}
+					batch.clear();
+				}
+			}
+		}
+		catch (InterruptedException e)
+		{
+			// the database is shutting down
+		}
+		finally
+		{
+			this.close();
+		}
+	}
+
+	/**
+	 * write
+	 * 
+	 * @param batch
+	 */
+	private void write(List<EventInfo> batch)
+	{
+		try
+		{
+			if (this._statement == null)
+			{
+				this._connection = AptanaDB.getInstance().getConnection();
+
+				if (this._connection == null)
+				{
+					return;
+				}
+
+				this._connection.setAutoCommit(false);
+				this._statement = this._connection.prepareStatement(this._insert);
+			}
+
+			for (EventInfo event : batch)
+			{
+				this._statement.setLong(1, event.getDateTime());
+				this._statement.setString(2, truncate(event.getEventType()));
+				this._statement.setString(3, truncate(event.getMessage()));
+				this._statement.addBatch();
+			}
+
+			this._statement.executeBatch();
+			this._connection.commit();
+		}
+		catch (SQLException e)
+		{
+			IdeLog.logInfo(AptanaCorePlugin.getDefault(), Messages.EventLogger_Query_Error, e);
+
+			// start over with a new connection for the next batch
+			this.close();
+		}
+	}
+
+	/**
+	 * close
+	 */
+	private void close()
+	{
+		if (this._statement != null)
+		{
+			try
+			{
+				this._statement.close();
+			}
+			catch (SQLException e)
+			{
+				IdeLog.logError(AptanaCorePlugin.getDefault(), Messages.EventLogger_Statement_Close_Error, e);
+			}
+			this._statement = null;
+		}
+
+		if (this._connection != null)
+		{
+			try
+			{
+				// Derby does not close a connection with an open transaction
+				this._connection.rollback();
+				this._connection.close();
+			}
+			catch (SQLException e)
+			{
+				IdeLog.logError(AptanaCorePlugin.getDefault(), Messages.EventLogger_Connection_Close_Error, e);
+			}
+			this._connection = null;
+		}
+	}
+
+	/**
+	 * Cuts a value down to the size of its column, so that one long message does not fail the whole batch
+	 * 
+	 * @param value
+	 * @return String
+	 */
+	private static String truncate(String value)
+	{
+		return (value.length() > COLUMN_LENGTH) ? value.substring(0, COLUMN_LENGTH) : value;
+	}
+}
@@ -41,6 +41,7 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.regex.Pattern;
 
 import com.aptana.ide.core.AptanaCorePlugin;
 import com.aptana.ide.core.IdeLog;
@@ -64,6 +65,7 @@ public abstract class VirtualManagerBase implements IVirtualFileManager
 	private boolean _calculateOffset;
 	private List<IVirtualFile> _cloakedFiles = new ArrayList<IVirtualFile>();
 	private List<String> _cloakedFileExpressions = new ArrayList<String>();
+	private volatile CloakMatcher _cloakMatcher;
 	
 	private int _initialPoolSize;
 	private int _maxPoolSize;
@@ -518,7 +520,11 @@ public abstract class VirtualManagerBase implements IVirtualFileManager
 	 */
 	public void addCloakExpression(String fileExpression)
 	{
-		_cloakedFileExpressions.add(fileExpression);
+		synchronized (_cloakedFileExpressions)
+		{
+			_cloakedFileExpressions.add(fileExpression);
+			_cloakMatcher = null;
+		}
 	}
 
 	/**
@@ -528,7 +534,11 @@ public abstract class VirtualManagerBase implements IVirtualFileManager
 	 */
 	public void removeCloakExpression(String fileExpression)
 	{
-		_cloakedFileExpressions.remove(fileExpression);
+		synchronized (_cloakedFileExpressions)
+		{
+			_cloakedFileExpressions.remove(fileExpression);
+			_cloakMatcher = null;
+		}
 	}
 
 	/**
@@ -536,7 +546,11 @@ public abstract class VirtualManagerBase implements IVirtualFileManager
 	 */
 	public void removeAllCloakExpressions()
 	{
-		_cloakedFileExpressions.clear();
+		synchronized (_cloakedFileExpressions)
+		{
+			_cloakedFileExpressions.clear();
+			_cloakMatcher = null;
+		}
 	}
 
 	/**
@@ -547,46 +561,93 @@ public abstract class VirtualManagerBase implements IVirtualFileManager
 	 */
 	public boolean isFileCloaked(IVirtualFile file)
 	{
-		boolean result = false;
-		
 		if (this._cloakedFiles.contains(file))
 		{
-			result = true;
+			return true;
 		}
-		else
+
+		CloakMatcher matcher = this.getCloakMatcher();
+
+		for (Pattern pattern : matcher.namePatterns)
+		{
+			if (pattern.matcher(file.getName()).matches())
+			{
+				return true;
+			}
+		}
+		if (matcher.pathPatterns.length > 0)
+		{
+			String relativePath = file.getRelativePath();
+
+			for (Pattern pattern : matcher.pathPatterns)
+			{
+				if (pattern.matcher(relativePath).matches())
+				{
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Returns the cloaking expressions compiled into patterns, compiling them again after they have changed
+	 * 
+	 * @return CloakMatcher
+	 */
+	private CloakMatcher getCloakMatcher()
+	{
+		CloakMatcher matcher = this._cloakMatcher;
+
+		if (matcher == null)
 		{
 			String separator = this.getFileSeparator();
-			
+
 			if ("\\".equals(separator)) //$NON-NLS-1$
 			{
 				separator = "\\\\"; //$NON-NLS-1$
 			}
-			
+
+			List<Pattern> namePatterns = new ArrayList<Pattern>();
+			List<Pattern> pathPatterns = new ArrayList<Pattern>();
+
 			synchronized (this._cloakedFileExpressions)
 			{
 				for (String pattern : this._cloakedFileExpressions)
 				{
+					// expressions with a separator match the relative path, all others the file name
 					if (pattern.contains(separator))
 					{
-						if (file.getRelativePath().matches(pattern))
-						{
-							result = true;
-							break;
-						}
+						pathPatterns.add(Pattern.compile(pattern));
 					}
 					else
 					{
-						if (file.getName().matches(pattern))
-						{
-							result = true;
-							break;
-						}
+						namePatterns.add(Pattern.compile(pattern));
 					}
 				}
+				matcher = new CloakMatcher(namePatterns.toArray(new Pattern[namePatterns.size()]), pathPatterns
+						.toArray(new Pattern[pathPatterns.size()]));
+				this._cloakMatcher = matcher;
 			}
 		}
-		
-		return result;
+
+		return matcher;
+	}
+
+	/**
+	 * The compiled cloaking expressions of a file manager
+	 */
+	private static class CloakMatcher
+	{
+		final Pattern[] namePatterns;
+		final Pattern[] pathPatterns;
+
+		CloakMatcher(Pattern[] namePatterns, Pattern[] pathPatterns)
+		{
+			this.namePatterns = namePatterns;
+			this.pathPatterns = pathPatterns;
+		}
 	}
 
 	/**
@@ -0,0 +1,72 @@
+/**
+ * This file Copyright (c) 2005-2008 Aptana, Inc. This program is
+ * dual-licensed under both the Aptana Public License and the GNU General
+ * Public license. You may elect to use one or the other of these licenses.
+ * 
+ * This program is distributed in the hope that it will be useful, but
+ * AS-IS and WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, TITLE, or
+ * NONINFRINGEMENT. Redistribution, except as permitted by whichever of
+ * the GPL or APL you select, is prohibited.
+ *
+ * 1. For the GPL license (GPL), you can redistribute and/or modify this
+ * program under the terms of the GNU General Public License,
+ * Version 3, as published by the Free Software Foundation.  You should
+ * have received a copy of the GNU General Public License, Version 3 along
+ * with this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * Aptana provides a special exception to allow redistribution of this file
+ * with certain other free and open source software ("FOSS") code and certain additional terms
+ * pursuant to Section 7 of the GPL. You may view the exception and these
+ * terms on the web at http://www.aptana.com/legal/gpl/.
+ * 
+ * 2. For the Aptana Public License (APL), this program and the
+ * accompanying materials are made available under the terms of the APL
+ * v1.0 which accompanies this distribution, and is available at
+ * http://www.aptana.com/legal/apl/.
+ * 
+ * You may view the GPL, Aptana's exception and additional terms, and the
+ * APL in the file titled license.html at the root of the corresponding
+ * plugin containing this source file.
+ * 
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.ide.core.io.sync;
+
+import java.io.IOException;
+
+import com.aptana.ide.core.io.ConnectionException;
+import com.aptana.ide.core.io.IVirtualFile;
+import com.aptana.ide.core.io.VirtualFileManagerException;
+
+/**
+ * Computes the digest of a remote file on the server so that the contents of a client and a server file can be
+ * compared without downloading the server file, e.g. with the FTP XCRC/XMD5/HASH commands, an S3 ETag or a checksum
+ * command run over SSH. A file manager that can do this implements this interface itself or a digester is set on the
+ * synchronizer.
+ * 
+ * @author agent (agent@local)
+ */
+public interface IRemoteDigester
+{
+	/**
+	 * The algorithm used for the digests returned by this digester. This is either "CRC32" or the name of a
+	 * java.security.MessageDigest algorithm so that the same digest can be computed for the client file.
+	 * 
+	 * @return the algorithm name
+	 */
+	String getAlgorithm();
+
+	/**
+	 * Returns the digest of a file as computed by the server
+	 * 
+	 * @param file
+	 *            the server file
+	 * @return the digest as a hexadecimal string or null if the server cannot compute it for this file
+	 * @throws ConnectionException
+	 * @throws VirtualFileManagerException
+	 * @throws IOException
+	 */
+	String getDigest(IVirtualFile file) throws ConnectionException, VirtualFileManagerException, IOException;
+}
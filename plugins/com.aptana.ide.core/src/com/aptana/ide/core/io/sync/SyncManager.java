@@ -84,6 +84,7 @@ public final class SyncManager implements ISerializableSyncItem
 	private boolean isBusy; // indicate loading/saving states
 	private Object lock = new Object();
 	private Job saveJob;
+	private Map<String, SyncManifest> manifests = new HashMap<String, SyncManifest>();
 
 	/**
 	 * SyncManager constructor
@@ -223,9 +224,112 @@ public final class SyncManager implements ISerializableSyncItem
 					}
 				}
 			}
+			saveManifests();
 			isBusy = false;
 		}
 	}
+
+	/**
+	 * Returns the manifest of the last synced state of a sync pair. Manifests are stored with the sync data and are
+	 * removed along with their sync pair.
+	 * 
+	 * @param pair
+	 * @return SyncManifest
+	 */
+	public SyncManifest getManifest(VirtualFileManagerSyncPair pair)
+	{
+		return getManifest(pair.getSourceFileManager(), pair.getDestinationFileManager());
+	}
+
+	/**
+	 * Returns the manifest of the last synced state between two file managers
+	 * 
+	 * @param source
+	 * @param destination
+	 * @return SyncManifest
+	 */
+	public SyncManifest getManifest(IVirtualFileManager source, IVirtualFileManager destination)
+	{
+		String name = getManifestName(source.getId(), destination.getId());
+
+		synchronized (manifests)
+		{
+			SyncManifest manifest = manifests.get(name);
+
+			if (manifest == null)
+			{
+				manifest = new SyncManifest(getManifestLocation().append(name).toFile());
+				manifests.put(name, manifest);
+			}
+
+			return manifest;
+		}
+	}
+
+	/**
+	 * Saves the manifests that changed since they were last saved
+	 */
+	private void saveManifests()
+	{
+		SyncManifest[] toSave;
+
+		synchronized (manifests)
+		{
+			toSave = manifests.values().toArray(new SyncManifest[manifests.size()]);
+		}
+
+		for (int i = 0; i < toSave.length; i++)
+		{
+			try
+			{
+				toSave[i].save();
+			}
+			catch (IOException e)
+			{
+				IdeLog.logError(AptanaCorePlugin.getDefault(), "Error while saving a sync manifest", e); //$NON-NLS-1$
+			}
+		}
+	}
+
+	/**
+	 * Removes the manifest of a sync pair that is no longer used
+	 * 
+	 * @param pair
+	 */
+	private void deleteManifest(VirtualFileManagerSyncPair pair)
+	{
+		if (pair.getSourceFileManager() == null || pair.getDestinationFileManager() == null)
+		{
+			return;
+		}
+
+		String name = getManifestName(pair.getSourceFileManager().getId(), pair.getDestinationFileManager().getId());
+		SyncManifest manifest;
+
+		synchronized (manifests)
+		{
+			manifest = manifests.remove(name);
+		}
+
+		if (manifest != null)
+		{
+			manifest.delete();
+		}
+		else
+		{
+			getManifestLocation().append(name).toFile().delete();
+		}
+	}
+
+	private static String getManifestName(long sourceId, long destinationId)
+	{
+		return sourceId + "_" + destinationId + ".manifest"; //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	private static IPath getManifestLocation()
+	{
+		return AptanaCorePlugin.getDefault().getStateLocation().append("sync"); //$NON-NLS-1$
+	}
 	
 	/**
 	 * @param item
@@ -252,6 +356,10 @@ public final class SyncManager implements ISerializableSyncItem
 		}
 		if (removed)
 		{
+			if (item instanceof VirtualFileManagerSyncPair)
+			{
+				deleteManifest((VirtualFileManagerSyncPair) item);
+			}
 			fireSyncManagerChangeEvent(item, ISyncManagerChangeListener.DELETE);
 		}
 	}
@@ -0,0 +1,353 @@
+/**
+ * This file Copyright (c) 2005-2008 Aptana, Inc. This program is
+ * dual-licensed under both the Aptana Public License and the GNU General
+ * Public license. You may elect to use one or the other of these licenses.
+ * 
+ * This program is distributed in the hope that it will be useful, but
+ * AS-IS and WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, TITLE, or
+ * NONINFRINGEMENT. Redistribution, except as permitted by whichever of
+ * the GPL or APL you select, is prohibited.
+ *
+ * 1. For the GPL license (GPL), you can redistribute and/or modify this
+ * program under the terms of the GNU General Public License,
+ * Version 3, as published by the Free Software Foundation.  You should
+ * have received a copy of the GNU General Public License, Version 3 along
+ * with this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * Aptana provides a special exception to allow redistribution of this file
+ * with certain other free and open source software ("FOSS") code and certain additional terms
+ * pursuant to Section 7 of the GPL. You may view the exception and these
+ * terms on the web at http://www.aptana.com/legal/gpl/.
+ * 
+ * 2. For the Aptana Public License (APL), this program and the
+ * accompanying materials are made available under the terms of the APL
+ * v1.0 which accompanies this distribution, and is available at
+ * http://www.aptana.com/legal/apl/.
+ * 
+ * You may view the GPL, Aptana's exception and additional terms, and the
+ * APL in the file titled license.html at the root of the corresponding
+ * plugin containing this source file.
+ * 
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.ide.core.io.sync;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remembers the state of every file and directory of a sync pair as of the last time both sides were known to match.
+ * A sync can then compare the client against the manifest and only list the server directories where something
+ * changed. Paths are the canonical paths used by the sync items.
+ * 
+ * @author agent (agent@local)
+ */
+public class SyncManifest
+{
+	private static final String SIGNATURE = "SYNC MANIFEST 1"; //$NON-NLS-1$
+
+	private File _file;
+	private Map<String, Entry> _entries;
+	private boolean _dirty;
+
+	/**
+	 * The last synced state of a file or directory
+	 */
+	public static final class Entry
+	{
+		private final boolean _directory;
+		private final long _clientModificationMillis;
+		private final long _serverModificationMillis;
+		private final long _size;
+		private final long _checksum;
+
+		/**
+		 * Entry
+		 * 
+		 * @param directory
+		 * @param clientModificationMillis
+		 * @param serverModificationMillis
+		 * @param size
+		 * @param checksum
+		 *            the checksum of the file's content, or -1 if it is not known
+		 */
+		public Entry(boolean directory, long clientModificationMillis, long serverModificationMillis, long size,
+				long checksum)
+		{
+			this._directory = directory;
+			this._clientModificationMillis = clientModificationMillis;
+			this._serverModificationMillis = serverModificationMillis;
+			this._size = size;
+			this._checksum = checksum;
+		}
+
+		/**
+		 * @return Returns true if the entry is a directory
+		 */
+		public boolean isDirectory()
+		{
+			return this._directory;
+		}
+
+		/**
+		 * @return Returns the modification time of the client file
+		 */
+		public long getClientModificationMillis()
+		{
+			return this._clientModificationMillis;
+		}
+
+		/**
+		 * @return Returns the modification time of the server file
+		 */
+		public long getServerModificationMillis()
+		{
+			return this._serverModificationMillis;
+		}
+
+		/**
+		 * @return Returns the size of the file
+		 */
+		public long getSize()
+		{
+			return this._size;
+		}
+
+		/**
+		 * @return Returns the checksum of the file's content, or -1 if it is not known
+		 */
+		public long getChecksum()
+		{
+			return this._checksum;
+		}
+	}
+
+	/**
+	 * Creates a manifest that is stored in the given file, reading the entries that were saved there before. A file
+	 * that cannot be read results in an empty manifest, which simply means that the next sync lists everything.
+	 * 
+	 * @param file
+	 */
+	public SyncManifest(File file)
+	{
+		this._file = file;
+		this._entries = new HashMap<String, Entry>();
+
+		if (file.exists())
+		{
+			try
+			{
+				read();
+			}
+			catch (IOException e)
+			{
+				this._entries.clear();
+			}
+		}
+	}
+
+	/**
+	 * read
+	 * 
+	 * @throws IOException
+	 */
+	private void read() throws IOException
+	{
+		DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(this._file)));
+
+		try
+		{
+			if (!SIGNATURE.equals(input.readUTF()))
+			{
+				return;
+			}
+
+			int size = input.readInt();
+
+			for (int i = 0; i < size; i++)
+			{
+				String path = input.readUTF();
+				boolean directory = input.readBoolean();
+
+				if (directory)
+				{
+					this._entries.put(path, new Entry(true, input.readLong(), input.readLong(), 0, -1));
+				}
+				else
+				{
+					this._entries.put(path, new Entry(false, input.readLong(), input.readLong(), input.readLong(), input
+							.readLong()));
+				}
+			}
+		}
+		finally
+		{
+			input.close();
+		}
+	}
+
+	/**
+	 * Writes the entries to the manifest's file if they changed since they were read or last saved
+	 * 
+	 * @throws IOException
+	 */
+	public synchronized void save() throws IOException
+	{
+		if (!this._dirty)
+		{
+			return;
+		}
+
+		File parent = this._file.getParentFile();
+
+		if (parent != null && !parent.exists())
+		{
+			parent.mkdirs();
+		}
+
+		// write next to the old manifest so that a failed save leaves it intact
+		File newFile = new File(this._file.getPath() + "_new"); //$NON-NLS-1$
+		DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(newFile)));
+
+		try
+		{
+			output.writeUTF(SIGNATURE);
+			output.writeInt(this._entries.size());
+
+			for (Map.Entry<String, Entry> mapEntry : this._entries.entrySet())
+			{
+				Entry entry = mapEntry.getValue();
+
+				output.writeUTF(mapEntry.getKey());
+				output.writeBoolean(entry._directory);
+				output.writeLong(entry._clientModificationMillis);
+				output.writeLong(entry._serverModificationMillis);
+
+				if (!entry._directory)
+				{
+					output.writeLong(entry._size);
+					output.writeLong(entry._checksum);
+				}
+			}
+		}
+		finally
+		{
+			output.close();
+		}
+
+		if (this._file.exists() && !this._file.delete() || !newFile.renameTo(this._file))
+		{
+			throw new IOException(this._file.getAbsolutePath());
+		}
+
+		this._dirty = false;
+	}
+
+	/**
+	 * Removes the manifest's file
+	 */
+	public synchronized void delete()
+	{
+		this._entries.clear();
+		this._dirty = false;
+		this._file.delete();
+	}
+
+	/**
+	 * Returns the entry of a path
+	 * 
+	 * @param path
+	 * @return the entry, or null if the path was not synced yet
+	 */
+	public synchronized Entry get(String path)
+	{
+		return this._entries.get(path);
+	}
+
+	/**
+	 * Records the synced state of a path
+	 * 
+	 * @param path
+	 * @param entry
+	 */
+	public synchronized void put(String path, Entry entry)
+	{
+		this._entries.put(path, entry);
+		this._dirty = true;
+	}
+
+	/**
+	 * Removes a path and everything below it
+	 * 
+	 * @param path
+	 */
+	public synchronized void remove(String path)
+	{
+		if (this._entries.remove(path) != null)
+		{
+			this._dirty = true;
+		}
+
+		String prefix = path + "/"; //$NON-NLS-1$
+
+		for (Iterator<String> iter = this._entries.keySet().iterator(); iter.hasNext();)
+		{
+			if (iter.next().startsWith(prefix))
+			{
+				iter.remove();
+				this._dirty = true;
+			}
+		}
+	}
+
+	/**
+	 * Returns the paths at or below the given path
+	 * 
+	 * @param path
+	 *            the path, or an empty string for all paths
+	 * @return String[]
+	 */
+	public synchronized String[] getPaths(String path)
+	{
+		if (path.length() == 0)
+		{
+			return this._entries.keySet().toArray(new String[this._entries.size()]);
+		}
+
+		String prefix = path + "/"; //$NON-NLS-1$
+		List<String> paths = new ArrayList<String>();
+
+		for (String entryPath : this._entries.keySet())
+		{
+			if (entryPath.equals(path) || entryPath.startsWith(prefix))
+			{
+				paths.add(entryPath);
+			}
+		}
+
+		return paths.toArray(new String[paths.size()]);
+	}
+
+	/**
+	 * Returns true if nothing has been synced yet
+	 * 
+	 * @return boolean
+	 */
+	public synchronized boolean isEmpty()
+	{
+		return this._entries.isEmpty();
+	}
+}
@@ -39,6 +39,8 @@ import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.regex.Pattern;
 
 /**
@@ -108,7 +110,38 @@ public final class Util
 	 */
 	public static String encodeData(String data)
 	{
-		return data.replaceAll("#", "#0").replaceAll("\\|", "#1").replaceAll("\\*", "#2"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+		int length = data.length();
+		StringBuffer sb = null;
+		for (int i = 0; i < length; ++i)
+		{
+			char ch = data.charAt(i);
+			char code;
+			switch (ch)
+			{
+				case '#':
+					code = '0';
+					break;
+				case '|':
+					code = '1';
+					break;
+				case '*':
+					code = '2';
+					break;
+				default:
+					if (sb != null)
+					{
+						sb.append(ch);
+					}
+					continue;
+			}
+			if (sb == null)
+			{
+				sb = new StringBuffer(length + 16);
+				sb.append(data, 0, i);
+			}
+			sb.append('#').append(code);
+		}
+		return sb != null ? sb.toString() : data;
 	}
 
 	/**
@@ -119,7 +152,58 @@ public final class Util
 	 */
 	public static String decodeData(String data)
 	{
-		return data.replaceAll("#2", "*").replaceAll("#1", "|").replaceAll("#0", "#"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+		int index = data.indexOf('#');
+		if (index == -1)
+		{
+			return data;
+		}
+		int length = data.length();
+		StringBuffer sb = new StringBuffer(length);
+		sb.append(data, 0, index);
+		for (int i = index; i < length; ++i)
+		{
+			char ch = data.charAt(i);
+			if (ch == '#' && i + 1 < length)
+			{
+				char code = data.charAt(i + 1);
+				if (code >= '0' && code <= '2')
+				{
+					sb.append(code == '0' ? '#' : (code == '1' ? '|' : '*'));
+					++i;
+					continue;
+				}
+			}
+			sb.append(ch);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Splits a protocol message on a separator character the same way {@link String#split(String)} does, without
+	 * compiling a pattern for every message
+	 * 
+	 * @param string
+	 * @param separator
+	 * @return String[]
+	 */
+	public static String[] split(String string, char separator)
+	{
+		List<String> list = new ArrayList<String>();
+		int start = 0;
+		int index;
+		while ((index = string.indexOf(separator, start)) != -1)
+		{
+			list.add(string.substring(start, index));
+			start = index + 1;
+		}
+		list.add(string.substring(start));
+		/* like String.split, drop trailing empty strings unless there was no separator at all */
+		int size = list.size();
+		while (size > 0 && start > 0 && list.get(size - 1).length() == 0)
+		{
+			--size;
+		}
+		return list.subList(0, size).toArray(new String[size]);
 	}
 
 	/**
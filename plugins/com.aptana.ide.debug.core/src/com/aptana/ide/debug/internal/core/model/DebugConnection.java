@@ -33,8 +33,11 @@
  * Any modifications to this file must keep this entire header intact.
  */
 
+
 package com.aptana.ide.debug.internal.core.model;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
@@ -42,8 +45,18 @@ import java.io.Reader;
 import java.io.Writer;
 import java.net.Socket;
 import java.net.SocketException;
-import java.util.Hashtable;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
@@ -52,15 +65,23 @@ import org.eclipse.debug.core.DebugException;
 import com.aptana.ide.core.IdeLog;
 import com.aptana.ide.core.StringUtils;
 import com.aptana.ide.debug.core.JSDebugPlugin;
+import com.aptana.ide.debug.internal.core.Util;
 
 /**
+ * Connection to the debugger extension. Requests are tagged with a request id and may be pipelined: any number of
+ * them can be written before the first reply arrives, and each reply completes the future of its request.
+ * 
  * @author Max Stepanov
  *
  */
 public class DebugConnection
 {
 	public interface IHandler {
-		void handleMessage(String message);
+		/**
+		 * Handles a message that is not a reply to a pending request
+		 * @param args the message split into its '*' separated arguments
+		 */
+		void handleMessage(String[] args);
 		void handleShutdown();
 	}
 	
@@ -74,19 +95,61 @@ public class DebugConnection
 	 */
 	public static final int SOCKET_TIMEOUT = 30000;
 
-	private static final String ARGS_SPLIT = "\\*"; //$NON-NLS-1$
+	private static final char ARGS_SEPARATOR = '*';
+	private static final int BUFFER_SIZE = 8192;
+
+	/* message buffers above this size are not kept for the next message */
+	private static final int MAX_RETAINED_BUFFER = 65536;
+
+	private static final Runnable NO_OP = new Runnable() {
+		public void run()
+		{
+		}
+	};
 
 	private Socket socket;
 	private Reader reader;
 	private Writer writer;
-	private boolean connected = false;
+	private final Object writeLock = new Object();
+	private volatile boolean connected = false;
 	private boolean terminated = false;
 
-	private Map<String, Object> locks = new Hashtable<String, Object>();/* synchronized get/put required */
-	private volatile long lastReqId = System.currentTimeMillis();
+	private final ConcurrentMap<String, Reply> replies = new ConcurrentHashMap<String, Reply>();
+	private final AtomicLong lastReqId = new AtomicLong(System.currentTimeMillis());
+	private char[] messageBuffer = new char[1024];
 	
 	private IHandler handler;
 
+	/**
+	 * The pending reply to a request, completed by the reader thread
+	 */
+	private final class Reply extends FutureTask<String[]>
+	{
+		private final String reqid;
+
+		private Reply(String reqid)
+		{
+			super(NO_OP, null);
+			this.reqid = reqid;
+		}
+
+		/*
+		 * @see java.util.concurrent.FutureTask#set(java.lang.Object)
+		 */
+		protected void set(String[] args)
+		{
+			super.set(args);
+		}
+
+		/*
+		 * @see java.util.concurrent.FutureTask#done()
+		 */
+		protected void done()
+		{
+			replies.remove(reqid, this);
+		}
+	}
+
 	/**
 	 * @throws DebugException 
 	 * @throws DebugException 
@@ -98,8 +161,8 @@ public class DebugConnection
 		try
 		{
 			return new DebugConnection(socket,
-					new InputStreamReader(socket.getInputStream()),
-					new OutputStreamWriter(socket.getOutputStream()));
+					new BufferedReader(new InputStreamReader(socket.getInputStream()), BUFFER_SIZE),
+					new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()), BUFFER_SIZE));
 		}
 		catch (IOException e)
 		{
@@ -153,20 +216,12 @@ public class DebugConnection
 			return;
 		}
 		connected = false;
-		synchronized (locks)
+		/* requests still waiting for a reply get none */
+		for (Iterator<Reply> i = new ArrayList<Reply>(replies.values()).iterator(); i.hasNext(); )
 		{
-			Object[] list = locks.values().toArray();
-			locks.clear();
-			for (int i = 0; i < list.length; ++i)
-			{
-				Object lock = list[i];
-				synchronized (lock)
-				{
-					lock.notify();
-				}
-			}
+			i.next().set(null);
 		}
-		
+		replies.clear();
 	}
 	
 	public void dispose() throws IOException {
@@ -187,25 +242,19 @@ public class DebugConnection
 		if (message.endsWith("*")) { //$NON-NLS-1$
 			message += "* "; //$NON-NLS-1$
 		}
-		handler.handleMessage(message);
+		String[] args = Util.split(message, ARGS_SEPARATOR);
 		
-		if (!connected)
-		{
-			return;
-		}
-		/* check if action comes to waiting commands */
-		String[] args = message.split(ARGS_SPLIT);
-		String action = args[0];
-		Object lock = locks.get(action);
-		if (lock != null)
+		/* check if the message is the reply to a pending request */
+		if (connected)
 		{
-			locks.put(action, args);
-			synchronized (lock)
+			Reply reply = replies.get(args[0]);
+			if (reply != null)
 			{
-				lock.notify();
+				reply.set(args);
+				return;
 			}
-			return;
 		}
+		handler.handleMessage(args);
 	}
 
 	/**
@@ -251,9 +300,11 @@ public class DebugConnection
 	{
 		try
 		{
-			writer.write(StringUtils.format("{0}*{1}*{2}", //$NON-NLS-1$
-					new String[] { Integer.toString(command.length() + reqid.length() + 1), reqid, command }));
-			writer.flush();
+			synchronized (writeLock)
+			{
+				writeCommand(reqid, command);
+				writer.flush();
+			}
 		}
 		catch (IOException e)
 		{
@@ -262,54 +313,143 @@ public class DebugConnection
 	}
 
 	/**
-	 * sendCommandAndWait
+	 * writeCommand
 	 * 
+	 * @param reqid
 	 * @param command
-	 * @return String[]
-	 * @throws DebugException
+	 * @throws IOException
 	 */
-	protected String[] sendCommandAndWait(String command) throws DebugException
+	private void writeCommand(String reqid, String command) throws IOException
 	{
-		long reqid = ++lastReqId;
-		return sendCommandAndWait(command, Long.toString(reqid));
+		writer.write(Integer.toString(command.length() + reqid.length() + 1));
+		writer.write(ARGS_SEPARATOR);
+		writer.write(reqid);
+		writer.write(ARGS_SEPARATOR);
+		writer.write(command);
 	}
 
 	/**
-	 * sendCommandAndWait
+	 * Sends a request without waiting for its reply
 	 * 
 	 * @param command
-	 * @param reqid
-	 * @return String[]
+	 * @return the future reply arguments, or null arguments if the connection stops before the reply arrives
 	 * @throws DebugException
 	 */
-	protected String[] sendCommandAndWait(String command, String reqid) throws DebugException
+	protected Future<String[]> sendRequest(String command) throws DebugException
 	{
+		return sendRequests(new String[] { command }).get(0);
+	}
+
+	/**
+	 * Sends requests in one write without waiting for their replies
+	 * 
+	 * @param commands
+	 * @return the future reply arguments in the order of the commands
+	 * @throws DebugException
+	 */
+	protected List<Future<String[]>> sendRequests(String[] commands) throws DebugException
+	{
+		List<Future<String[]>> list = new ArrayList<Future<String[]>>(commands.length);
 		if (!connected)
 		{
-			return null;
+			for (int i = 0; i < commands.length; ++i)
+			{
+				Reply reply = new Reply(StringUtils.EMPTY);
+				reply.set(null);
+				list.add(reply);
+			}
+			return list;
 		}
-		Object lock = new Object();
-		synchronized (lock)
+		try
 		{
-			try
+			synchronized (writeLock)
 			{
-				locks.put(reqid, lock);
-				sendCommand(reqid, command);
-				lock.wait(COMMAND_TIMEOUT);
+				for (int i = 0; i < commands.length; ++i)
+				{
+					String reqid = Long.toString(lastReqId.incrementAndGet());
+					Reply reply = new Reply(reqid);
+					replies.put(reqid, reply);
+					list.add(reply);
+					writeCommand(reqid, commands[i]);
+				}
+				writer.flush();
 			}
-			catch (InterruptedException e)
+		}
+		catch (IOException e)
+		{
+			for (Iterator<Future<String[]>> i = list.iterator(); i.hasNext(); )
 			{
-				throwDebugException(e);
+				i.next().cancel(false);
 			}
+			throwDebugException(e);
+		}
+		return list;
+	}
+
+	/**
+	 * Waits for the reply to a request sent with {@link #sendRequest(String)}
+	 * 
+	 * @param reply
+	 * @return String[] or null if no reply arrived in time
+	 * @throws DebugException
+	 */
+	protected String[] waitForReply(Future<String[]> reply) throws DebugException
+	{
+		try
+		{
+			return reply.get(COMMAND_TIMEOUT, TimeUnit.MILLISECONDS);
+		}
+		catch (TimeoutException e)
+		{
+			reply.cancel(false);
+		}
+		catch (CancellationException e)
+		{
 		}
-		lock = locks.remove(reqid);
-		if (lock instanceof String[])
+		catch (InterruptedException e)
 		{
-			return (String[]) lock;
+			reply.cancel(false);
+			throwDebugException(e);
+		}
+		catch (ExecutionException e)
+		{
+			throwDebugException(e);
 		}
 		return null;
 	}
 
+	/**
+	 * sendCommandAndWait
+	 * 
+	 * @param command
+	 * @return String[]
+	 * @throws DebugException
+	 */
+	protected String[] sendCommandAndWait(String command) throws DebugException
+	{
+		return waitForReply(sendRequest(command));
+	}
+
+	/**
+	 * sendCommandAndWait
+	 * 
+	 * @param command
+	 * @param reqid
+	 * @return String[]
+	 * @throws DebugException
+	 */
+	protected String[] sendCommandAndWait(String command, String reqid) throws DebugException
+	{
+		if (!connected)
+		{
+			return null;
+		}
+		Reply reply = new Reply(reqid);
+		replies.put(reqid, reply);
+		sendCommand(reqid, command);
+		return waitForReply(reply);
+	}
+
 	/**
 	 * readMessage
 	 * 
@@ -318,32 +458,33 @@ public class DebugConnection
 	 */
 	protected String readMessage() throws IOException
 	{
-		StringBuffer sb = new StringBuffer();
+		/* skip to the next "<size>*" header */
 		int messageSize = 0;
+		int digits = 0;
 		int i;
-		char ch;
 		while ((i = reader.read()) != -1)
 		{
-			ch = (char) i;
-			if (ch == '*' && sb.length() > 0)
+			if (i == ARGS_SEPARATOR && digits > 0)
 			{
-				try
+				if (digits < 10)
 				{
-					messageSize = Integer.parseInt(sb.toString());
 					break;
 				}
-				catch (NumberFormatException e)
-				{
-				}
-				sb.setLength(0);
+				messageSize = 0;
+				digits = 0;
 			}
-			else if (ch >= '0' && ch <= '9')
+			else if (i >= '0' && i <= '9')
 			{
-				sb.append(ch);
+				if (digits < 10)
+				{
+					messageSize = messageSize * 10 + (i - '0');
+				}
+				++digits;
 			}
-			else if (sb.length() > 0)
+			else if (digits > 0)
 			{
-				sb.setLength(0);
+				messageSize = 0;
+				digits = 0;
 			}
 		}
 		if (i == -1)
@@ -351,18 +492,26 @@ public class DebugConnection
 			return null;
 		}
 
-		char[] buffer = new char[1024];
-		sb.setLength(0); // clear the buffer
-		while (messageSize > sb.length())
+		char[] buffer = messageBuffer;
+		if (buffer.length < messageSize)
+		{
+			buffer = new char[messageSize];
+			if (messageSize <= MAX_RETAINED_BUFFER)
+			{
+				messageBuffer = buffer;
+			}
+		}
+		int length = 0;
+		while (length < messageSize)
 		{
-			int n = reader.read(buffer, 0, Math.min(messageSize - sb.length(), buffer.length));
+			int n = reader.read(buffer, length, messageSize - length);
 			if (n == -1)
 			{
 				return null;
 			}
-			sb.append(buffer, 0, n);
+			length += n;
 		}
-		return sb.toString();
+		return new String(buffer, 0, messageSize);
 	}
 
 	/**
@@ -368,7 +368,7 @@ public class JSDebugStackFrame extends JSDebugElement implements IJSStackFrame
 		{
 			return;
 		}
-		variables = ((JSDebugTarget) getDebugTarget()).loadVariables(StringUtils.format("frame[{0}]", frameId)); //$NON-NLS-1$
+		variables = ((JSDebugTarget) getDebugTarget()).loadFrameVariables(StringUtils.format("frame[{0}]", frameId)); //$NON-NLS-1$
 		for (int i = 0; i < variables.length; ++i)
 		{
 			((JSDebugVariable) variables[i]).flags |= JSDebugVariable.FLAGS_TOPLEVEL;
@@ -49,6 +49,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Future;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IMarker;
@@ -143,8 +144,7 @@ public class JSDebugTarget extends JSDebugElement implements IJSDebugTarget, IBr
 	private static final String CREATE = "create"; //$NON-NLS-1$
 	private static final String RESOLVED = "resolved"; //$NON-NLS-1$
 	private static final String DESTROYED = "destroyed"; //$NON-NLS-1$
-	private static final String ARGS_SPLIT = "\\*"; //$NON-NLS-1$
-	private static final String SUBARGS_SPLIT = "\\|"; //$NON-NLS-1$
+	private static final char SUBARGS_SEPARATOR = '|';
 	private static final String CREATED = "created"; //$NON-NLS-1$
 	private static final String TERMINATE = "terminate"; //$NON-NLS-1$
 	private static final String SUSPEND = "suspend"; //$NON-NLS-1$
@@ -184,6 +184,10 @@ public class JSDebugTarget extends JSDebugElement implements IJSDebugTarget, IBr
 	 * Mask used to flip individual bit masks via XOR
 	 */
 	private static final int XOR_MASK = 0xFFF;
+	/**
+	 * Maximum number of object variables of a stack frame whose children are requested ahead
+	 */
+	private static final int PREFETCH_LIMIT = 16;
 
 	private static boolean checkUpdate = true;
 	private DebugConnection connection;
@@ -207,6 +211,9 @@ public class JSDebugTarget extends JSDebugElement implements IJSDebugTarget, IBr
 	private IBreakpoint skipOperationOnBreakpoint = null;
 	private boolean ignoreBreakpointCreation = false;
 	private boolean contentChanged = false;
+	/* replies to variables requests and computed details of the current suspension, by qualifier */
+	private Map<String, Future<String[]>> variablesCache = new HashMap<String, Future<String[]>>();
+	private Map<String, String> detailsCache = new HashMap<String, String>();
 	
 	private Job updateContentJob = new Job("Debugger Content Update") { //$NON-NLS-1$
 		{
@@ -360,11 +367,10 @@ public class JSDebugTarget extends JSDebugElement implements IJSDebugTarget, IBr
 	/**
 	 * handleMessage
 	 * 
-	 * @param message
+	 * @param args
 	 */
-	public void handleMessage(String message)
+	public void handleMessage(String[] args)
 	{
-		String[] args = message.split(ARGS_SPLIT);
 		int j = 0;
 		String action = args[j++];
 		if (LOG.equals(action))
@@ -550,7 +556,7 @@ public class JSDebugTarget extends JSDebugElement implements IJSDebugTarget, IBr
 				sb.append('\n'); 
 				for (int i = 4; i < args.length; ++i)
 				{
-					String[] subargs = args[i].split(SUBARGS_SPLIT);
+					String[] subargs = Util.split(args[i], SUBARGS_SEPARATOR);
 					if (subargs[0].length() == 0)
 					{
 						subargs[0] = StringUtils.format("[{0}]", //$NON-NLS-1$
@@ -773,7 +779,7 @@ public class JSDebugTarget extends JSDebugElement implements IJSDebugTarget, IBr
 			for (int i = 2; i < args.length; ++i)
 			{
 				int j = 0;
-				String[] subargs = args[i].split(SUBARGS_SPLIT);
+				String[] subargs = Util.split(args[i], SUBARGS_SEPARATOR);
 				if (subargs.length < 5)
 				{
 					IdeLog.logInfo(JSDebugPlugin.getDefault(), StringUtils.format(
@@ -835,7 +841,7 @@ public class JSDebugTarget extends JSDebugElement implements IJSDebugTarget, IBr
 		else if (DESTROYED.equals(action))
 		{
 			int j = 0;
-			String[] subargs = args[2].split(SUBARGS_SPLIT); 
+			String[] subargs = Util.split(args[2], SUBARGS_SEPARATOR); 
 			int scriptTag = -1;
 			try
 			{
@@ -860,7 +866,7 @@ public class JSDebugTarget extends JSDebugElement implements IJSDebugTarget, IBr
 			for (int i = 2; i < args.length; ++i)
 			{
 				int j = 0;
-				String[] subargs = args[i].split(SUBARGS_SPLIT);
+				String[] subargs = Util.split(args[i], SUBARGS_SEPARATOR);
 				int scriptTag = -1;
 				try
 				{
@@ -1278,7 +1284,11 @@ public class JSDebugTarget extends JSDebugElement implements IJSDebugTarget, IBr
 						new String[] { detailFormatter.getTypeName(), Util.encodeData(detailFormatter.getSnippet()) }));
 			}
 		}
-		connection.sendCommandAndWait(sb.toString());
+		connection.sendCommandAndWait(sb.toString());
+		synchronized (detailsCache)
+		{
+			detailsCache.clear();
+		}
 	}
 
 	/**
@@ -1580,12 +1590,134 @@ public class JSDebugTarget extends JSDebugElement implements IJSDebugTarget, IBr
 	 */
 	protected IVariable[] loadVariables(String qualifier) throws DebugException
 	{
+		return loadVariables(new String[] { qualifier })[0];
+	}
+
+	/**
+	 * Loads the variables of several qualifiers. The requests are pipelined, so that they take about one round trip
+	 * together instead of one each.
+	 * 
+	 * @param qualifiers
+	 * @return IVariable[][] in the order of the qualifiers
+	 * @throws DebugException
+	 */
+	protected IVariable[][] loadVariables(String[] qualifiers) throws DebugException
+	{
+		IVariable[][] result = new IVariable[qualifiers.length][];
 		if (!isSuspended())
 		{
-			return new IVariable[0];
+			for (int i = 0; i < result.length; ++i)
+			{
+				result[i] = new IVariable[0];
+			}
+			return result;
+		}
+		List<Future<String[]>> replies = requestVariables(qualifiers);
+		for (int i = 0; i < result.length; ++i)
+		{
+			result[i] = createVariables(qualifiers[i], connection.waitForReply(replies.get(i)));
+		}
+		return result;
+	}
+
+	/**
+	 * Loads the variables of a stack frame and requests the children of its object variables ahead, so that
+	 * expanding them in the Variables view does not take another round trip
+	 * 
+	 * @param qualifier
+	 * @return IVariable[]
+	 * @throws DebugException
+	 */
+	protected IVariable[] loadFrameVariables(String qualifier) throws DebugException
+	{
+		IVariable[] variables = loadVariables(qualifier);
+		List<String> qualifiers = new ArrayList<String>();
+		for (int i = 0; i < variables.length && qualifiers.size() < PREFETCH_LIMIT; ++i)
+		{
+			IValue value = variables[i].getValue();
+			if (value instanceof JSDebugValue && value.hasVariables())
+			{
+				qualifiers.add(((JSDebugValue) value).getQualifier());
+			}
+		}
+		if (!qualifiers.isEmpty() && isSuspended())
+		{
+			requestVariables((String[]) qualifiers.toArray(new String[qualifiers.size()]));
 		}
+		return variables;
+	}
+
+	/**
+	 * Returns the replies to variables requests of the current suspension, sending the requests that have not been
+	 * sent yet in one batch
+	 * 
+	 * @param qualifiers
+	 * @return the future replies in the order of the qualifiers
+	 * @throws DebugException
+	 */
+	private List<Future<String[]>> requestVariables(String[] qualifiers) throws DebugException
+	{
+		List<Future<String[]>> replies = new ArrayList<Future<String[]>>(qualifiers.length);
+		synchronized (variablesCache)
+		{
+			List<String> missing = new ArrayList<String>();
+			for (int i = 0; i < qualifiers.length; ++i)
+			{
+				Future<String[]> reply = variablesCache.get(qualifiers[i]);
+				if (reply == null || reply.isCancelled())
+				{
+					missing.add(qualifiers[i]);
+				}
+			}
+			if (!missing.isEmpty())
+			{
+				String[] commands = new String[missing.size()];
+				for (int i = 0; i < commands.length; ++i)
+				{
+					commands[i] = StringUtils.format(VARIABLES_0, Util.encodeData(missing.get(i)));
+				}
+				List<Future<String[]>> list = connection.sendRequests(commands);
+				for (int i = 0; i < commands.length; ++i)
+				{
+					variablesCache.put(missing.get(i), list.get(i));
+				}
+			}
+			for (int i = 0; i < qualifiers.length; ++i)
+			{
+				replies.add(variablesCache.get(qualifiers[i]));
+			}
+		}
+		return replies;
+	}
+
+	/**
+	 * Drops the variables and details fetched during the current suspension. Called when the target resumes or steps
+	 * and when a value is changed or an expression is evaluated. Requests that are still in flight are left to finish, since another thread may be
+	 * waiting on them; they are only forgotten, so the next lookup asks the debugger again.
+	 */
+	protected void invalidateValueCache()
+	{
+		synchronized (variablesCache)
+		{
+			variablesCache.clear();
+		}
+		synchronized (detailsCache)
+		{
+			detailsCache.clear();
+		}
+	}
+
+	/**
+	 * createVariables
+	 * 
+	 * @param qualifier
+	 * @param args
+	 *            the reply to a variables request
+	 * @return IVariable[]
+	 */
+	private IVariable[] createVariables(String qualifier, String[] args)
+	{
 		List<IVariable> list = new ArrayList<IVariable>();
-		String[] args = connection.sendCommandAndWait(StringUtils.format(VARIABLES_0, Util.encodeData(qualifier)));
 		if (args != null)
 		{
 			for (int i = 1; i < args.length; ++i)
@@ -1599,7 +1731,7 @@ public class JSDebugTarget extends JSDebugElement implements IJSDebugTarget, IBr
 				{
 					varData += "| "; //$NON-NLS-1$
 				}
-				String[] subargs = varData.split(SUBARGS_SPLIT);
+				String[] subargs = Util.split(varData, SUBARGS_SEPARATOR);
 				String name = Util.decodeData(subargs[j++]);
 				String type = Util.decodeData(subargs[j++]);
 				String flags = subargs[j++];
@@ -1648,6 +1780,8 @@ public class JSDebugTarget extends JSDebugElement implements IJSDebugTarget, IBr
 		}
 		String[] args = connection.sendCommandAndWait(StringUtils.format(EVAL_0_1, new String[] { Util.encodeData(qualifier),
 				Util.encodeData(expression) }));
+		// the expression may have changed the program's state
+		invalidateValueCache();
 		String status = args != null && args.length > 1 ? args[1] : null;
 		if (RESULT.equals(status))
 		{
@@ -1657,7 +1791,7 @@ public class JSDebugTarget extends JSDebugElement implements IJSDebugTarget, IBr
 			{
 				varData += "| "; //$NON-NLS-1$
 			}
-			String[] subargs = varData.split(SUBARGS_SPLIT);
+			String[] subargs = Util.split(varData, SUBARGS_SEPARATOR);
 			int j = 0;
 			String type = subargs[j++];
 			String flags = subargs[j++];
@@ -1708,12 +1842,13 @@ public class JSDebugTarget extends JSDebugElement implements IJSDebugTarget, IBr
 		}
 		String[] args = connection.sendCommandAndWait(StringUtils.format(SET_VALUE_0_1, new String[] { Util.encodeData(qualifier),
 				vqualifier }));
+		invalidateValueCache();
 		if (args != null && args.length >= 3)
 		{
 			String status = args[1];
 			if (RESULT.equals(status))
 			{
-				String[] subargs = args[2].split(SUBARGS_SPLIT);
+				String[] subargs = Util.split(args[2], SUBARGS_SEPARATOR);
 				int j = 0;
 				String type = subargs[j++];
 				String flags = subargs[j++];
@@ -1749,6 +1884,14 @@ public class JSDebugTarget extends JSDebugElement implements IJSDebugTarget, IBr
 		{
 			return value.getValueString();
 		}
+		synchronized (detailsCache)
+		{
+			result = detailsCache.get(qualifier);
+		}
+		if (result != null)
+		{
+			return result;
+		}
 		String[] args = connection.sendCommandAndWait(StringUtils.format(DETAILS_0, Util.encodeData(qualifier)));
 		if (args != null && args.length >= 3)
 		{
@@ -1756,6 +1899,10 @@ public class JSDebugTarget extends JSDebugElement implements IJSDebugTarget, IBr
 			if (RESULT.equals(status))
 			{
 				result = Util.decodeData(args[2]);
+				synchronized (detailsCache)
+				{
+					detailsCache.put(qualifier, result);
+				}
 			}
 		}
 		if (result == null)
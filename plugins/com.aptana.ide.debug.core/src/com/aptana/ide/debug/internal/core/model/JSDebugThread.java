@@ -73,7 +73,7 @@ public class JSDebugThread extends JSDebugElement implements IThread
 	private static final String STEP_TO_FRAME = "stepToFrame"; //$NON-NLS-1$
 	private static final String STEP = "step"; //$NON-NLS-1$
 	private static final String FRAMES = "frames"; //$NON-NLS-1$
-	private static final String SUBARGS_SPLIT = "\\|"; //$NON-NLS-1$
+	private static final char SUBARGS_SEPARATOR = '|';
 	private static final String STEP_TO_FRAME_0 = "stepToFrame*{0}"; //$NON-NLS-1$
 
 	private static final int STATE_STARTING = 0;
@@ -325,6 +325,7 @@ public class JSDebugThread extends JSDebugElement implements IThread
 		int details = DebugEvent.UNSPECIFIED;
 		if (SUSPENDED.equals(action))
 		{
+			((JSDebugTarget) getDebugTarget()).invalidateValueCache();
 			invalidateStackFrames();
 			runningState = STATE_SUSPENDED;
 			breakpoints = null;
@@ -383,6 +384,7 @@ public class JSDebugThread extends JSDebugElement implements IThread
 		}
 		else if (RESUMED.equals(action))
 		{
+			((JSDebugTarget) getDebugTarget()).invalidateValueCache();
 			String reason = args[1];
 			if (STEP_INTO.equals(reason))
 			{
@@ -480,7 +482,7 @@ public class JSDebugThread extends JSDebugElement implements IThread
 			for (int i = args.length - 1; i >= 1; --i)
 			{
 				int j = 0;
-				String[] subargs = args[i].split(SUBARGS_SPLIT);
+				String[] subargs = Util.split(args[i], SUBARGS_SEPARATOR);
 				int depth = Integer.parseInt(subargs[j++]);
 				String function = Util.decodeData(subargs[j++]);
 				String arguments = Util.decodeData(subargs[j++]);
@@ -39,6 +39,7 @@ import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import org.eclipse.jface.preference.IPreferenceStore;
 import org.eclipse.jface.text.ITypedRegion;
@@ -55,6 +56,7 @@ import com.aptana.ide.editors.unified.errors.FileError;
 import com.aptana.ide.editors.unified.errors.IFileError;
 import com.aptana.ide.editors.unified.errors.UnifiedErrorManager;
 import com.aptana.ide.editors.unified.errors.UnifiedErrorReporter;
+import com.aptana.ide.editors.unified.errors.ValidationScheduler;
 import com.aptana.ide.lexer.Lexeme;
 import com.aptana.ide.parsing.IOffsetMapper;
 
@@ -84,24 +86,57 @@ public class HTMLErrorManager extends UnifiedErrorManager
 	 * @see com.aptana.ide.editors.unified.errors.UnifiedErrorManager#parseForErrors(java.lang.String, java.lang.String,
 	 *      com.aptana.ide.editors.unified.IFileSourceProvider)
 	 */
-	public IFileError[] parseForErrors(String path, String source, IFileSourceProvider sourceProvider)
+	public IFileError[] parseForErrors(final String path, final String source, final IFileSourceProvider sourceProvider)
 	{
-		UnifiedErrorReporter reporter = new UnifiedErrorReporter(sourceProvider);
+		// HTML, JavaScript and CSS are validated in parallel
+		List<Callable<IFileError[]>> tasks = new ArrayList<Callable<IFileError[]>>(3);
+		tasks.add(new Callable<IFileError[]>()
+		{
+			public IFileError[] call()
+			{
+				String htmlSource = extractLanguage("text/html", source, HTMLErrorManager.this); //$NON-NLS-1$
+				// Parent class has been instrcuted via constructor to handle html
+				return HTMLErrorManager.super.parseForErrors(path, htmlSource, sourceProvider);
+			}
+		});
+		tasks.add(new Callable<IFileError[]>()
+		{
+			public IFileError[] call()
+			{
+				String jsSource = extractLanguage("text/javascript", source, jsErrorManager); //$NON-NLS-1$
+				return jsErrorManager.parseForErrors(path, jsSource, sourceProvider);
+			}
+		});
+		tasks.add(new Callable<IFileError[]>()
+		{
+			public IFileError[] call()
+			{
+				String cssSource = extractLanguage("text/css", source, cssErrorManager); //$NON-NLS-1$
+				return cssErrorManager.parseForErrors(path, cssSource, sourceProvider);
+			}
+		});
 
-		String htmlSource = extractLanguage("text/html", source, this); //$NON-NLS-1$
-		// Parent class has been instrcuted via constructor to handle html
-		IFileError[] errs = super.parseForErrors(path, htmlSource, sourceProvider);
-		reporter.addErrors(errs);
+		return mergeErrors(ValidationScheduler.getInstance().invokeAll(tasks,
+				createErrorPublisher(tasks.size(), sourceProvider)), sourceProvider);
+	}
 
-		String jsSource = extractLanguage("text/javascript", source, jsErrorManager); //$NON-NLS-1$
-		IFileError[] err = jsErrorManager.parseForErrors(path, jsSource, sourceProvider);
-		reporter.addErrors(err);
+	/**
+	 * @see com.aptana.ide.editors.unified.errors.UnifiedErrorManager#mergeErrors(java.util.List,
+	 *      com.aptana.ide.editors.unified.IFileSourceProvider)
+	 */
+	protected IFileError[] mergeErrors(List<IFileError[]> results, IFileSourceProvider sourceProvider)
+	{
+		UnifiedErrorReporter reporter = new UnifiedErrorReporter(sourceProvider);
 
-		String cssSource = extractLanguage("text/css", source, cssErrorManager); //$NON-NLS-1$
-		err = cssErrorManager.parseForErrors(path, cssSource, sourceProvider);
-		reporter.addErrors(err);
+		for (IFileError[] errs : results)
+		{
+			if (errs != null)
+			{
+				reporter.addErrors(errs);
+			}
+		}
 
-		err = reporter.getErrors();
+		IFileError[] err = reporter.getErrors();
 
 		List validErrors = getValidErrors(err);
 		err = (IFileError[]) validErrors.toArray(new IFileError[validErrors.size()]);
@@ -0,0 +1,37 @@
+package com.aptana.ide.editor.js.tests;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import com.aptana.ide.editor.js.validator.JSLintValidatorTest;
+import com.aptana.ide.editor.js.validator.LintOutlineTest;
+
+/**
+ * @author agent (agent@local)
+ */
+public final class AllTests
+{
+	/**
+	 * AllTests
+	 */
+	private AllTests()
+	{
+	}
+
+	/**
+	 * suite
+	 * 
+	 * @return Returns a group of unit tests
+	 */
+	public static Test suite()
+	{
+		TestSuite suite = new TestSuite("Tests for com.aptana.ide.editor.js.tests"); //$NON-NLS-1$
+
+		// $JUnit-BEGIN$
+		suite.addTestSuite(LintOutlineTest.class);
+		suite.addTestSuite(JSLintValidatorTest.class);
+		// $JUnit-END$
+
+		return suite;
+	}
+}
@@ -0,0 +1,160 @@
+package com.aptana.ide.editor.js.validator;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.mozilla.javascript.Context;
+
+import com.aptana.ide.editor.js.RhinoPool;
+
+/**
+ * Checks that linting only the changed function bodies of a source reports the same problems as linting all of it
+ *
+ * @author agent (agent@local)
+ */
+public class JSLintValidatorTest extends TestCase
+{
+
+	private static RhinoPool scopes;
+
+	private JSLintValidator validator;
+	private Context cx;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		if (scopes == null)
+		{
+			scopes = new RhinoPool(RhinoPool.compile(JSLintValidator.jsLintString, "fulljslint.js")); //$NON-NLS-1$
+		}
+		validator = new JSLintValidator();
+		cx = RhinoPool.enter();
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		RhinoPool.exit();
+		super.tearDown();
+	}
+
+	public void testChangedBody()
+	{
+		String source = "function a() {\n  var x = 1\n  return x;\n}\n" //$NON-NLS-1$
+				+ "function b(y) {\n  if (y == null) {\n    return 0;\n  }\n  return y;\n}\n" //$NON-NLS-1$
+				+ "function c() {\n  return a() + b(2)\n}\n"; //$NON-NLS-1$
+
+		assertChangesMatch(source, source.replace("var x = 1\n", "var x = 1, z = 2\n  z++;\n")); //$NON-NLS-1$ //$NON-NLS-2$
+		assertChangesMatch(source, source.replace("return y;", "return y")); //$NON-NLS-1$ //$NON-NLS-2$
+		assertChangesMatch(source, source.replace("a() + b(2)", "a() + b(2);")); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	public void testRegexLiterals()
+	{
+		String source = "function a(s) {\n  return s.replace(/[}{]/g, '')\n}\n" //$NON-NLS-1$
+				+ "function b(s) {\n  var r = /\\/\\*[^*]*\\*\\//;\n  return r.test(s);\n}\n" //$NON-NLS-1$
+				+ "function c(s) {\n  return s.split(/}/).length\n}\n"; //$NON-NLS-1$
+
+		assertChangesMatch(source, source.replace("r.test(s);", "r.test(s) == true;")); //$NON-NLS-1$ //$NON-NLS-2$
+		assertChangesMatch(source, source.replace("/[}{]/g", "/[{]/g")); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	public void testOneLineFunctions()
+	{
+		String source = "function a(){ var x = 1 } function b(){ return 1 }\nvar c = 1;\n"; //$NON-NLS-1$
+
+		assertChangesMatch(source, source.replace("return 1 ", "return 1; ")); //$NON-NLS-1$ //$NON-NLS-2$
+		assertChangesMatch(source, source.replace("var x = 1 ", "var x = 1, y = 2 ")); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	public void testWrapperClosure()
+	{
+		StringBuffer buffer = new StringBuffer("(function() {\n  var count = 0\n"); //$NON-NLS-1$
+
+		for (int i = 0; i < 6; i++)
+		{
+			buffer.append("  function f" + i + "(x) {\n    count++\n    return x == " + i + ";\n  }\n"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		}
+		buffer.append("})();\n"); //$NON-NLS-1$
+
+		String source = buffer.toString();
+
+		assertTrue(LintOutline.create(source).size() > 1);
+		assertChangesMatch(source, source.replace("return x == 3;", "return x === 3")); //$NON-NLS-1$ //$NON-NLS-2$
+		assertChangesMatch(source, source.replace("return x == 0;", "var y = x\n    return y == 0;")); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	public void testUnterminatedString()
+	{
+		String source = "function a() {\n  return 'a';\n}\nfunction b() {\n  return 'b';\n}\n"; //$NON-NLS-1$
+		String edited = source.replace("'b';", "'b;"); //$NON-NLS-1$ //$NON-NLS-2$
+
+		// the edited source cannot be split, so it is linted as a whole
+		assertNull(LintOutline.create(edited));
+		assertTrue(validator.lintAll(scopes, cx, edited, null).length > 0);
+	}
+
+	public void testDirectiveFallsBackToWholeSource()
+	{
+		String source = "function a() {\n  /*global jQuery */\n  return jQuery;\n}\nfunction b() {\n  return 1;\n}\n"; //$NON-NLS-1$
+		LintOutline previous = LintOutline.create(source);
+
+		validator.lintAll(scopes, cx, source, previous);
+
+		LintOutline outline = LintOutline.create(source.replace("return 1;", "return 2;")); //$NON-NLS-1$ //$NON-NLS-2$
+
+		assertTrue(outline.hasSkeletonOf(previous));
+		assertNull(validator.lintChanges(scopes, cx, outline, previous));
+	}
+
+	public void testUnknownBodiesAfterStop()
+	{
+		StringBuffer buffer = new StringBuffer();
+
+		for (int i = 0; i < 4; i++)
+		{
+			buffer.append("function f" + i + "() {\n  return " + i + ";\n}\n"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		}
+
+		String source = buffer.toString();
+		String broken = source.replace("return 1;", "return 1 +;"); //$NON-NLS-1$ //$NON-NLS-2$
+		LintOutline outline = LintOutline.create(broken);
+
+		// JSLint stops at the syntax error in f1, so the bodies after it have not been seen
+		validator.lintAll(scopes, cx, broken, outline);
+
+		assertNotNull(outline.getDiagnostics(0));
+		assertNull(outline.getDiagnostics(2));
+		assertNull(outline.getDiagnostics(3));
+
+		// fixing the error lints the bodies that were never seen
+		assertChangesMatch(broken, source);
+	}
+
+	/**
+	 * Lints the original source as a whole, then the edited source by its changed function bodies, and checks the
+	 * result against linting the edited source as a whole
+	 *
+	 * @param original
+	 * @param edited
+	 */
+	private void assertChangesMatch(String original, String edited)
+	{
+		LintOutline previous = LintOutline.create(original);
+		LintOutline outline = LintOutline.create(edited);
+
+		assertNotNull(previous);
+		assertNotNull(outline);
+		assertTrue(outline.hasSkeletonOf(previous));
+
+		validator.lintAll(scopes, cx, original, previous);
+
+		LintDiagnostic[] changes = validator.lintChanges(scopes, cx, outline, previous);
+		LintDiagnostic[] all = validator.lintAll(scopes, cx, edited, null);
+
+		assertNotNull("no function body was reused", changes); //$NON-NLS-1$
+		assertEquals(Arrays.asList(all).toString(), Arrays.asList(changes).toString());
+	}
+}
@@ -0,0 +1,102 @@
+package com.aptana.ide.editor.js.validator;
+
+import junit.framework.TestCase;
+
+/**
+ * @author agent (agent@local)
+ */
+public class LintOutlineTest extends TestCase
+{
+
+	public void testTopLevelFunctions()
+	{
+		LintOutline outline = LintOutline.create("var x = 1;\nfunction a(b) { return b; }\nfunction c() { }\n"); //$NON-NLS-1$
+
+		assertEquals(2, outline.size());
+		assertEquals(" return b; ", outline.getBody(0)); //$NON-NLS-1$
+		assertEquals(" ", outline.getBody(1)); //$NON-NLS-1$
+		assertFalse(outline.hasDirective(0));
+	}
+
+	public void testOneLineFunctions()
+	{
+		LintOutline outline = LintOutline.create("function a(){ x(); } function b(){ y(); }"); //$NON-NLS-1$
+
+		assertEquals(2, outline.size());
+		assertEquals(" x(); ", outline.getBody(0)); //$NON-NLS-1$
+		assertEquals(" y(); ", outline.getBody(1)); //$NON-NLS-1$
+
+		// columns are zero based, the braces of a are at 12 and 19 and those of b at 33 and 40
+		assertEquals(0, outline.indexOf(new LintDiagnostic(false, "m", 1, "", 19))); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals(-1, outline.indexOf(new LintDiagnostic(false, "m", 1, "", 20))); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals(-1, outline.indexOf(new LintDiagnostic(false, "m", 1, "", 33))); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals(1, outline.indexOf(new LintDiagnostic(false, "m", 1, "", 34))); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals(1, outline.indexOf(new LintDiagnostic(false, "m", 1, "", 40))); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals(-1, outline.indexOf(new LintDiagnostic(false, "m", 1, "", 41))); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	public void testBodyPositionsRoundTrip()
+	{
+		LintOutline outline = LintOutline.create("var a;\n  function f() { g();\n  h(); }\n"); //$NON-NLS-1$
+		LintDiagnostic sameLine = new LintDiagnostic(true, "m", 2, "", 17); //$NON-NLS-1$ //$NON-NLS-2$
+		LintDiagnostic nextLine = new LintDiagnostic(true, "m", 3, "", 2); //$NON-NLS-1$ //$NON-NLS-2$
+
+		assertEquals("error 0:2 m", outline.toBody(0, sameLine).toString()); //$NON-NLS-1$
+		assertEquals("error 1:2 m", outline.toBody(0, nextLine).toString()); //$NON-NLS-1$
+		assertEquals(sameLine.toString(), outline.fromBody(0, outline.toBody(0, sameLine)).toString());
+		assertEquals(nextLine.toString(), outline.fromBody(0, outline.toBody(0, nextLine)).toString());
+	}
+
+	public void testWrapperClosureIsSplit()
+	{
+		String source = "(function() {\n" //$NON-NLS-1$
+				+ "  function a() { return 1; }\n" //$NON-NLS-1$
+				+ "  function b() { return 2; }\n" //$NON-NLS-1$
+				+ "})();\n"; //$NON-NLS-1$
+		LintOutline outline = LintOutline.create(source);
+
+		assertEquals(2, outline.size());
+		assertEquals(" return 1; ", outline.getBody(0)); //$NON-NLS-1$
+		assertEquals(" return 2; ", outline.getBody(1)); //$NON-NLS-1$
+	}
+
+	public void testLiteralsAreSkipped()
+	{
+		String source = "function a() { var s = '}'; var r = /[/}]\\//; return s + r; }\n" //$NON-NLS-1$
+				+ "var q = 4 / 2, t = \"{\";\n" //$NON-NLS-1$
+				+ "function b() { return /{/.test(t) ? q : 0; }\n"; //$NON-NLS-1$
+		LintOutline outline = LintOutline.create(source);
+
+		assertEquals(2, outline.size());
+		assertEquals(" var s = '}'; var r = /[/}]\\//; return s + r; ", outline.getBody(0)); //$NON-NLS-1$
+		assertEquals(" return /{/.test(t) ? q : 0; ", outline.getBody(1)); //$NON-NLS-1$
+	}
+
+	public void testUnbalancedSourceHasNoOutline()
+	{
+		assertNull(LintOutline.create("function a() { var s = 'abc; }\n")); //$NON-NLS-1$
+		assertNull(LintOutline.create("function a() { /* abc }\n")); //$NON-NLS-1$
+		assertNull(LintOutline.create("function a() { if (x) { }\n")); //$NON-NLS-1$
+	}
+
+	public void testBlankKeepsLinesAndSkeleton()
+	{
+		String source = "function a() {\r\n  x();\r\n}\nfunction b() { y(); }"; //$NON-NLS-1$
+		LintOutline outline = LintOutline.create(source);
+		String blanked = outline.blank(new boolean[] { true, false });
+
+		assertEquals("function a() {\r\n      \r\n}\nfunction b() { y(); }", blanked); //$NON-NLS-1$
+		assertTrue(LintOutline.create(blanked).hasSkeletonOf(outline));
+	}
+
+	public void testDirectives()
+	{
+		LintOutline outline = LintOutline.create("/*global $ */\nfunction a() { /*global jQuery */ }\n" //$NON-NLS-1$
+				+ "function b() { /* global is a word */ }\nfunction c() { function d() { /*jslint evil: true */ } }\n"); //$NON-NLS-1$
+
+		assertEquals(3, outline.size());
+		assertTrue(outline.hasDirective(0));
+		assertFalse(outline.hasDirective(1));
+		assertTrue(outline.hasDirective(2));
+	}
+}
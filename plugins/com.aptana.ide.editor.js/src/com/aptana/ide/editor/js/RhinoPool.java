@@ -0,0 +1,222 @@
+/**
+ * This file Copyright (c) 2005-2008 Aptana, Inc. This program is
+ * dual-licensed under both the Aptana Public License and the GNU General
+ * Public license. You may elect to use one or the other of these licenses.
+ * 
+ * This program is distributed in the hope that it will be useful, but
+ * AS-IS and WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, TITLE, or
+ * NONINFRINGEMENT. Redistribution, except as permitted by whichever of
+ * the GPL or APL you select, is prohibited.
+ *
+ * 1. For the GPL license (GPL), you can redistribute and/or modify this
+ * program under the terms of the GNU General Public License,
+ * Version 3, as published by the Free Software Foundation.  You should
+ * have received a copy of the GNU General Public License, Version 3 along
+ * with this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * Aptana provides a special exception to allow redistribution of this file
+ * with certain other free and open source software ("FOSS") code and certain additional terms
+ * pursuant to Section 7 of the GPL. You may view the exception and these
+ * terms on the web at http://www.aptana.com/legal/gpl/.
+ * 
+ * 2. For the Aptana Public License (APL), this program and the
+ * accompanying materials are made available under the terms of the APL
+ * v1.0 which accompanies this distribution, and is available at
+ * http://www.aptana.com/legal/apl/.
+ * 
+ * You may view the GPL, Aptana's exception and additional terms, and the
+ * APL in the file titled license.html at the root of the corresponding
+ * plugin containing this source file.
+ * 
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.ide.editor.js;
+
+import java.util.LinkedList;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ErrorReporter;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.Scriptable;
+
+/**
+ * Shares the Rhino runtime between validators and scripts. Every thread keeps one Context and enters it again on the
+ * next call, and scripts are compiled at an optimization level that can be set with the
+ * com.aptana.ide.editor.js.optimizationLevel system property. A pool hands out global scopes that already have the
+ * standard objects and an initializer script in them, so a run only pays for its own work. A scope belongs to one
+ * thread between {@link #acquire(Context)} and {@link #release(Scriptable)}, which lets separate threads run the same
+ * script at the same time.
+ * 
+ * @author agent (agent@local)
+ */
+public final class RhinoPool
+{
+	private static final String OPTIMIZATION_LEVEL_PROPERTY = "com.aptana.ide.editor.js.optimizationLevel"; //$NON-NLS-1$
+	private static final String POOL_SIZE_PROPERTY = "com.aptana.ide.editor.js.scopePoolSize"; //$NON-NLS-1$
+	private static final int OPTIMIZATION_LEVEL = Math.max(-1, Math.min(9, Integer.getInteger(
+			OPTIMIZATION_LEVEL_PROPERTY, 0).intValue()));
+
+	/**
+	 * The Context of a thread and the settings to put back when the thread leaves it
+	 */
+	private static class ThreadContext
+	{
+		Context context;
+		ErrorReporter errorReporter;
+	}
+
+	private static final ThreadLocal<ThreadContext> CONTEXTS = new ThreadLocal<ThreadContext>();
+
+	private final Script _initializer;
+	private final int _size;
+	private final LinkedList<Scriptable> _idle = new LinkedList<Scriptable>();
+
+	/**
+	 * Creates a pool that keeps as many scopes as there are processors, and at least two
+	 * 
+	 * @param initializer
+	 *            the script to run in every new scope
+	 */
+	public RhinoPool(Script initializer)
+	{
+		this(initializer, Integer.getInteger(POOL_SIZE_PROPERTY,
+				Math.max(2, Runtime.getRuntime().availableProcessors())).intValue());
+	}
+
+	/**
+	 * RhinoPool
+	 * 
+	 * @param initializer
+	 *            the script to run in every new scope
+	 * @param size
+	 *            the number of idle scopes to keep
+	 */
+	public RhinoPool(Script initializer, int size)
+	{
+		this._initializer = initializer;
+		this._size = Math.max(1, size);
+	}
+
+	/**
+	 * Enters the Context of the current thread, creating it on the first call. Calls nested in another enter use the
+	 * Context that is already current. Every call must be matched by a call to {@link #exit()}.
+	 * 
+	 * @return Context
+	 */
+	public static Context enter()
+	{
+		if (Context.getCurrentContext() != null)
+		{
+			return Context.enter();
+		}
+
+		ThreadContext threadContext = CONTEXTS.get();
+
+		if (threadContext == null)
+		{
+			Context cx = Context.enter();
+
+			cx.setOptimizationLevel(OPTIMIZATION_LEVEL);
+
+			threadContext = new ThreadContext();
+			threadContext.context = cx;
+			threadContext.errorReporter = cx.getErrorReporter();
+			CONTEXTS.set(threadContext);
+
+			return cx;
+		}
+
+		return Context.enter(threadContext.context);
+	}
+
+	/**
+	 * Leaves the Context entered by {@link #enter()}. Once the thread leaves its outermost Context, the error
+	 * reporter that was set on it is dropped, so that the Context does not keep the last caller's errors around.
+	 */
+	public static void exit()
+	{
+		Context.exit();
+
+		ThreadContext threadContext = CONTEXTS.get();
+
+		if (threadContext != null && Context.getCurrentContext() == null)
+		{
+			threadContext.context.setErrorReporter(threadContext.errorReporter);
+		}
+	}
+
+	/**
+	 * Returns the optimization level scripts are compiled at. Rhino interprets scripts at -1 and compiles them to
+	 * classes from 0 up.
+	 * 
+	 * @return int
+	 */
+	public static int getOptimizationLevel()
+	{
+		return OPTIMIZATION_LEVEL;
+	}
+
+	/**
+	 * Compiles a script at the configured optimization level
+	 * 
+	 * @param source
+	 * @param sourceName
+	 * @return Script
+	 */
+	public static Script compile(String source, String sourceName)
+	{
+		Context cx = enter();
+
+		try
+		{
+			return cx.compileString(source, sourceName, 1, null);
+		}
+		finally
+		{
+			exit();
+		}
+	}
+
+	/**
+	 * Takes an idle scope from the pool, or creates one if there is none. The scope must be given back with
+	 * {@link #release(Scriptable)}.
+	 * 
+	 * @param cx
+	 *            the Context of the current thread
+	 * @return Scriptable
+	 */
+	public Scriptable acquire(Context cx)
+	{
+		synchronized (this._idle)
+		{
+			if (this._idle.isEmpty() == false)
+			{
+				return this._idle.removeLast();
+			}
+		}
+
+		Scriptable scope = cx.initStandardObjects();
+
+		this._initializer.exec(cx, scope);
+
+		return scope;
+	}
+
+	/**
+	 * Gives a scope back to the pool. Scopes beyond the pool's size are dropped.
+	 * 
+	 * @param scope
+	 */
+	public void release(Scriptable scope)
+	{
+		synchronized (this._idle)
+		{
+			if (this._idle.size() < this._size)
+			{
+				this._idle.add(scope);
+			}
+		}
+	}
+}
@@ -48,10 +48,12 @@ import com.aptana.ide.editor.js.runtime.OrderedObjectCollection;
 import com.aptana.ide.editor.js.runtime.Property;
 import com.aptana.ide.editor.js.runtime.Reference;
 import com.aptana.ide.editor.scriptdoc.parsing.ScriptDocParseState;
+import com.aptana.ide.lexer.Lexeme;
 import com.aptana.ide.metadata.IDocumentationStore;
 import com.aptana.ide.parsing.IParseState;
 import com.aptana.ide.parsing.IRuntimeEnvironment;
 import com.aptana.ide.parsing.ParseStateChild;
+import com.aptana.ide.parsing.nodes.IParseNode;
 import com.aptana.ide.parsing.nodes.IParseNodeFactory;
 
 /**
@@ -59,6 +61,14 @@ import com.aptana.ide.parsing.nodes.IParseNodeFactory;
  */
 public class JSParseState extends ParseStateChild
 {
+	/*
+	 * Snapshot of the last parse. These are used by JSParser to reuse top-level statements that were not touched by
+	 * the edits applied since that parse
+	 */
+	private Lexeme[] _parsedLexemes;
+	private IParseNode[] _parsedStatements;
+	private int[] _parsedStatementIndexes;
+
 	/**
 	 * Create a new instance of JSParseState
 	 */
@@ -105,6 +115,73 @@ public class JSParseState extends ParseStateChild
 		return result;
 	}
 
+	/**
+	 * clearParseSnapshot
+	 */
+	void clearParseSnapshot()
+	{
+		this._parsedLexemes = null;
+		this._parsedStatements = null;
+		this._parsedStatementIndexes = null;
+	}
+
+	/**
+	 * Get the lexemes that were in the lexeme list at the end of the last parse
+	 * 
+	 * @return Returns the lexeme snapshot or null if no reusable parse exists
+	 */
+	Lexeme[] getParsedLexemes()
+	{
+		return this._parsedLexemes;
+	}
+
+	/**
+	 * Get the top-level statements that were created by the last parse
+	 * 
+	 * @return Returns the statement snapshot or null if no reusable parse exists
+	 */
+	IParseNode[] getParsedStatements()
+	{
+		return this._parsedStatements;
+	}
+
+	/**
+	 * Get the index into the lexeme snapshot of each top-level statement's starting lexeme
+	 * 
+	 * @return Returns the statement indexes or null if no reusable parse exists
+	 */
+	int[] getParsedStatementIndexes()
+	{
+		return this._parsedStatementIndexes;
+	}
+
+	/**
+	 * Save the results of a parse so the next parse can reuse statements outside of the edited region
+	 * 
+	 * @param lexemes
+	 *            The lexemes in the lexeme list after the parse
+	 * @param statements
+	 *            The top-level statements produced by the parse
+	 * @param statementIndexes
+	 *            The index of each statement's starting lexeme within lexemes
+	 */
+	void setParseSnapshot(Lexeme[] lexemes, IParseNode[] statements, int[] statementIndexes)
+	{
+		this._parsedLexemes = lexemes;
+		this._parsedStatements = statements;
+		this._parsedStatementIndexes = statementIndexes;
+	}
+
+	/**
+	 * @see com.aptana.ide.parsing.ParseStateChild#reset()
+	 */
+	public void reset()
+	{
+		this.clearParseSnapshot();
+
+		super.reset();
+	}
+
 	/**
 	 * @see com.aptana.ide.parsing.ParseStateChild#createParseNodeFactory()
 	 */
@@ -41,10 +41,13 @@ import com.aptana.ide.editor.js.lexing.JSTokenTypes;
 import com.aptana.ide.editor.js.parsing.nodes.JSNaryNode;
 import com.aptana.ide.editor.js.parsing.nodes.JSParseNode;
 import com.aptana.ide.editor.js.parsing.nodes.JSParseNodeTypes;
+import com.aptana.ide.editors.unified.folding.GenericCommentNode;
 import com.aptana.ide.lexer.ILexer;
 import com.aptana.ide.lexer.Lexeme;
 import com.aptana.ide.lexer.LexemeList;
 import com.aptana.ide.lexer.LexerException;
+import com.aptana.ide.parsing.IParseState;
+import com.aptana.ide.parsing.IParser;
 import com.aptana.ide.parsing.ParserInitializationException;
 import com.aptana.ide.parsing.nodes.IParseNode;
 import com.aptana.ide.parsing.nodes.IParseNodeFactory;
@@ -174,6 +177,17 @@ public class JSParser extends JSParserBase
 
 	private Lexeme prevLexeme;
 
+	private boolean _incrementalParse = true;
+
+	/*
+	 * The results of the previous parse. Statements from this snapshot are spliced back into the tree once the
+	 * parse re-synchronizes with an unchanged statement following the edited region
+	 */
+	private Lexeme[] _previousLexemes;
+	private IParseNode[] _previousStatements;
+	private int[] _previousStatementIndexes;
+	private int _nextPreviousStatement;
+
 	private static final String DEFAULT_GROUP = "default"; //$NON-NLS-1$
 	private static final String REGEX_GROUP = "regex"; //$NON-NLS-1$
 	private static final String ADDITION_GROUP = "addition"; //$NON-NLS-1$
@@ -300,6 +314,67 @@ public class JSParser extends JSParserBase
 		// }
 	}
 
+	/**
+	 * Determine if this parser reuses top-level statements from the previous parse of a document
+	 * 
+	 * @return Returns true if incremental parsing is enabled
+	 */
+	public boolean getIncrementalParse()
+	{
+		return this._incrementalParse;
+	}
+
+	/**
+	 * Determine if the specified lexeme begins a new comment or documentation block
+	 * 
+	 * @param lexeme
+	 *            The nested language lexeme to test
+	 * @return Returns true if the lexeme starts a new nested language region
+	 */
+	private static boolean isNestedRegionStart(Lexeme lexeme)
+	{
+		String text = lexeme.getText();
+
+		return text.startsWith("/*") || text.startsWith("//"); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	/**
+	 * Determine if all nested language regions within the specified range of lexemes can be re-parsed without
+	 * re-parsing the JS statements around them
+	 * 
+	 * @param lexemes
+	 *            The lexemes to test
+	 * @param startingIndex
+	 *            The first index to test
+	 * @param endingIndex
+	 *            The index after the last index to test
+	 * @return Returns true if the range can be replayed
+	 */
+	private boolean isReplayable(Lexeme[] lexemes, int startingIndex, int endingIndex)
+	{
+		String language = this.getLanguage();
+
+		for (int i = startingIndex; i < endingIndex; i++)
+		{
+			Lexeme lexeme = lexemes[i];
+
+			if (language.equals(lexeme.getLanguage()))
+			{
+				// processing instructions switch the parse into a host language, so we can't skip over them
+				if (lexeme.typeIndex == JSTokenTypes.PI_OPEN || lexeme.typeIndex == JSTokenTypes.PI_CLOSE)
+				{
+					return false;
+				}
+			}
+			else if (this.getParserForMimeType(lexeme.getLanguage()) == null)
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+
 	/**
 	 * @see com.aptana.ide.parsing.AbstractParser#parseAll(com.aptana.ide.parsing.nodes.IParseNode)
 	 */
@@ -312,11 +387,34 @@ public class JSParser extends JSParserBase
 		ILexer lexer = this.getLexer();
 		lexer.setLanguageAndGroup(this.getLanguage(), DEFAULT_GROUP);
 
-		// prime the lexeme pump
-		this.advance();
+		// only a stand-alone parse owns the entire lexeme list, so only it can reuse statements from its last parse
+		JSParseState parseState = null;
+
+		this._previousStatements = null;
+
+		if (this._incrementalParse && this.hasParent() == false && rootNode != null)
+		{
+			IParseState candidate = this.getParseState();
+
+			if (candidate instanceof JSParseState)
+			{
+				parseState = (JSParseState) candidate;
+			}
+		}
+
+		// reuse any unchanged leading statements, otherwise prime the lexeme pump
+		if (parseState == null || this.reuseLeadingStatements(parseState, rootNode) == false)
+		{
+			this.advance();
+		}
 
 		while (this.isEOS() == false)
 		{
+			if (this.reuseTrailingStatements(rootNode))
+			{
+				break;
+			}
+
 			IParseNode result = this.parseSourceElement();
 
 			if (rootNode != null && result != null)
@@ -324,6 +422,16 @@ public class JSParser extends JSParserBase
 				rootNode.appendChild(result);
 			}
 		}
+
+		// release the previous parse
+		this._previousLexemes = null;
+		this._previousStatements = null;
+		this._previousStatementIndexes = null;
+
+		if (parseState != null)
+		{
+			this.saveParseSnapshot(parseState, rootNode);
+		}
 	}
 
 	/**
@@ -3381,6 +3489,314 @@ public class JSParser extends JSParserBase
 		return error;
 	}
 
+	/**
+	 * Re-run the parser for a nested language over a region whose lexemes are already cached. This rebuilds the
+	 * comment regions and documentation that are cleared before each parse
+	 * 
+	 * @param mimeType
+	 *            The nested language
+	 * @param startingOffset
+	 *            The offset where the nested language begins
+	 * @param endingOffset
+	 *            The offset where the nested language ends
+	 * @throws LexerException
+	 */
+	private void reparseNestedRegion(String mimeType, int startingOffset, int endingOffset) throws LexerException
+	{
+		IParser parser = this.getParserForMimeType(mimeType);
+		ILexer lexer = this.getLexer();
+		String language = this.getLanguage();
+		int eofOffset = lexer.getEOFOffset();
+
+		lexer.setEOFOffset(endingOffset);
+		lexer.setCurrentOffset(startingOffset);
+
+		this.fireLanguageChangeEvent(mimeType, startingOffset);
+
+		try
+		{
+			parser.parseAll(null);
+		}
+		catch (ParseException e)
+		{
+		}
+
+		this.fireLanguageChangeEvent(language, lexer.getCurrentOffset());
+
+		lexer.setLanguageAndGroup(language, DEFAULT_GROUP);
+		lexer.setEOFOffset(eofOffset);
+	}
+
+	/**
+	 * Re-create the side-effects of parsing a range of lexemes that belong to reused statements. JS lexemes are
+	 * skipped, but comments and documentation are handed to their parsers again.
+	 * 
+	 * @param lexemes
+	 *            The lexemes to replay
+	 * @param startingIndex
+	 *            The first index to replay
+	 * @param endingIndex
+	 *            The index after the last index to replay
+	 * @throws LexerException
+	 */
+	private void replayLexemes(Lexeme[] lexemes, int startingIndex, int endingIndex) throws LexerException
+	{
+		String language = this.getLanguage();
+		int index = startingIndex;
+
+		while (index < endingIndex)
+		{
+			Lexeme lexeme = lexemes[index];
+			String mimeType = lexeme.getLanguage();
+
+			if (language.equals(mimeType))
+			{
+				if (lexeme.typeIndex == JSTokenTypes.CDC || lexeme.typeIndex == JSTokenTypes.CDO)
+				{
+					GenericCommentNode node = new GenericCommentNode(
+						lexeme.getStartingOffset(),
+						lexeme.getEndingOffset(), "HTMLCOMMENT", JSMimeType.MimeType); //$NON-NLS-1$
+					this.getParseState().addCommentRegion(node);
+				}
+
+				index++;
+			}
+			else
+			{
+				int last = index;
+
+				// find the end of this comment
+				while (last + 1 < endingIndex)
+				{
+					Lexeme next = lexemes[last + 1];
+
+					if (mimeType.equals(next.getLanguage()) == false || isNestedRegionStart(next))
+					{
+						break;
+					}
+
+					last++;
+				}
+
+				this.reparseNestedRegion(mimeType, lexeme.offset, lexemes[last].getEndingOffset());
+
+				index = last + 1;
+			}
+		}
+	}
+
+	/**
+	 * Compare the current lexeme list against the lexemes from the last parse and reuse all top-level statements
+	 * that precede the first changed lexeme. The lexer is positioned on the first statement that needs to be parsed
+	 * 
+	 * @param parseState
+	 *            The parse state holding the results of the last parse
+	 * @param rootNode
+	 *            The node to which reused statements are appended
+	 * @return Returns true if statements were reused and the current lexeme has been set
+	 * @throws LexerException
+	 */
+	private boolean reuseLeadingStatements(JSParseState parseState, IParseNode rootNode) throws LexerException
+	{
+		Lexeme[] previousLexemes = parseState.getParsedLexemes();
+		IParseNode[] statements = parseState.getParsedStatements();
+		int[] indexes = parseState.getParsedStatementIndexes();
+
+		// a parse that does not finish must not leave a stale snapshot behind
+		parseState.clearParseSnapshot();
+
+		if (previousLexemes == null || statements == null || statements.length == 0)
+		{
+			return false;
+		}
+
+		Lexeme[] lexemes = this.getLexemeList().toArray();
+		int previousSize = previousLexemes.length;
+		int size = lexemes.length;
+		int limit = Math.min(previousSize, size);
+
+		// find the range of lexemes touched by all edits since the last parse
+		int prefix = 0;
+
+		while (prefix < limit && lexemes[prefix] == previousLexemes[prefix])
+		{
+			prefix++;
+		}
+
+		int suffix = 0;
+
+		while (suffix < limit - prefix && lexemes[size - suffix - 1] == previousLexemes[previousSize - suffix - 1])
+		{
+			suffix++;
+		}
+
+		boolean unchanged = (prefix == previousSize && previousSize == size);
+		int count = statements.length;
+		int reused = 0;
+
+		// NOTE: The lexeme following a statement serves as its lookahead (think automatic semicolon insertion), so
+		// that lexeme has to be unchanged for the statement to be reused
+		while (reused < count)
+		{
+			int end = (reused + 1 < count) ? indexes[reused + 1] : previousSize;
+
+			if (end < prefix || unchanged)
+			{
+				reused++;
+			}
+			else
+			{
+				break;
+			}
+		}
+
+		int replayEnd = (reused < count) ? indexes[reused] : size;
+
+		if (reused > 0 && this.isReplayable(lexemes, 0, replayEnd) == false)
+		{
+			reused = 0;
+		}
+
+		// remember the statements following the changed region so we can splice them back in
+		int firstTrailing = count;
+
+		while (firstTrailing > reused && indexes[firstTrailing - 1] >= previousSize - suffix)
+		{
+			firstTrailing--;
+		}
+
+		this._previousLexemes = previousLexemes;
+		this._previousStatements = statements;
+		this._previousStatementIndexes = indexes;
+		this._nextPreviousStatement = firstTrailing;
+
+		if (reused == 0)
+		{
+			return false;
+		}
+
+		this.replayLexemes(lexemes, 0, replayEnd);
+
+		for (int i = 0; i < reused; i++)
+		{
+			rootNode.appendChild(statements[i]);
+		}
+
+		if (reused == count)
+		{
+			this.currentLexeme = EOS;
+		}
+		else
+		{
+			// resume on the first statement we could not reuse
+			this.getLexer().setCurrentOffset(lexemes[replayEnd].offset);
+			this.advance();
+		}
+
+		return true;
+	}
+
+	/**
+	 * Splice the remaining statements from the last parse into the tree if the parse has re-synchronized with the
+	 * first of those statements and nothing from there to the end of the lexeme list has changed
+	 * 
+	 * @param rootNode
+	 *            The node to which reused statements are appended
+	 * @return Returns true if the remaining statements were reused
+	 * @throws LexerException
+	 */
+	private boolean reuseTrailingStatements(IParseNode rootNode) throws LexerException
+	{
+		IParseNode[] statements = this._previousStatements;
+
+		if (statements == null || rootNode == null)
+		{
+			return false;
+		}
+
+		Lexeme[] previousLexemes = this._previousLexemes;
+		int[] indexes = this._previousStatementIndexes;
+		int count = statements.length;
+		int candidate = this._nextPreviousStatement;
+		int offset = this.currentLexeme.offset;
+
+		// skip statements the parse has already moved beyond
+		while (candidate < count && previousLexemes[indexes[candidate]].offset < offset)
+		{
+			candidate++;
+		}
+
+		this._nextPreviousStatement = candidate;
+
+		if (candidate >= count || previousLexemes[indexes[candidate]] != this.currentLexeme)
+		{
+			return false;
+		}
+
+		// the parse may have re-lexed part of the tail, so verify all trailing lexemes are untouched
+		LexemeList lexemes = this.getLexemeList();
+		int startingIndex = indexes[candidate];
+		int index = lexemes.getLexemeIndex(this.currentLexeme);
+		int length = previousLexemes.length - startingIndex;
+		boolean matches = (index >= 0 && lexemes.size() - index == length);
+
+		for (int i = 0; matches && i < length; i++)
+		{
+			matches = (lexemes.get(index + i) == previousLexemes[startingIndex + i]);
+		}
+
+		if (matches == false || this.isReplayable(previousLexemes, startingIndex, previousLexemes.length) == false)
+		{
+			// don't try again, this would make each statement boundary linear in the size of the tail
+			this._previousStatements = null;
+
+			return false;
+		}
+
+		this.replayLexemes(previousLexemes, startingIndex, previousLexemes.length);
+
+		for (int i = candidate; i < count; i++)
+		{
+			rootNode.appendChild(statements[i]);
+		}
+
+		this.currentLexeme = EOS;
+
+		return true;
+	}
+
+	/**
+	 * Save the lexemes and top-level statements of this parse so the next parse can reuse them
+	 * 
+	 * @param parseState
+	 *            The parse state that holds the snapshot
+	 * @param rootNode
+	 *            The node containing the top-level statements of this parse
+	 */
+	private void saveParseSnapshot(JSParseState parseState, IParseNode rootNode)
+	{
+		LexemeList lexemes = this.getLexemeList();
+		IParseNode[] statements = rootNode.getChildren();
+		int[] indexes = new int[statements.length];
+		int previousIndex = -1;
+
+		for (int i = 0; i < statements.length; i++)
+		{
+			int index = lexemes.getLexemeIndex(statements[i].getStartingLexeme());
+
+			// each statement has to start on its own cached lexeme so that statement spans are well-defined
+			if (index <= previousIndex)
+			{
+				return;
+			}
+
+			indexes[i] = index;
+			previousIndex = index;
+		}
+
+		parseState.setParseSnapshot(lexemes.toArray(), statements, indexes);
+	}
+
 	/**
 	 * Reposition the lexer to the current lexeme's beginning offset, switch to a new lexer group and rescan
 	 * 
@@ -3438,6 +3854,17 @@ public class JSParser extends JSParserBase
 		throw new ParseException(message, -1);
 	}
 
+	/**
+	 * Enable or disable the reuse of top-level statements from the previous parse of a document
+	 * 
+	 * @param value
+	 *            True to enable incremental parsing
+	 */
+	public void setIncrementalParse(boolean value)
+	{
+		this._incrementalParse = value;
+	}
+
 	/**
 	 * @return language to process text inside of PI instructions
 	 */
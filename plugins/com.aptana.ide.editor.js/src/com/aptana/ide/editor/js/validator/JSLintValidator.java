@@ -39,18 +39,16 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.eclipse.jface.preference.IPreferenceStore;
-import org.mozilla.javascript.CompilerEnvirons;
 import org.mozilla.javascript.Context;
 import org.mozilla.javascript.Function;
-import org.mozilla.javascript.Interpreter;
-import org.mozilla.javascript.Kit;
 import org.mozilla.javascript.NativeArray;
 import org.mozilla.javascript.NativeObject;
-import org.mozilla.javascript.Parser;
 import org.mozilla.javascript.Script;
-import org.mozilla.javascript.ScriptOrFnNode;
 import org.mozilla.javascript.Scriptable;
 
 import com.aptana.ide.core.IdeLog;
@@ -58,6 +56,7 @@ import com.aptana.ide.core.PluginUtils;
 import com.aptana.ide.core.StringUtils;
 import com.aptana.ide.editor.js.JSPlugin;
 import com.aptana.ide.editor.js.Messages;
+import com.aptana.ide.editor.js.RhinoPool;
 import com.aptana.ide.editors.unified.IFileSourceProvider;
 import com.aptana.ide.editors.unified.errors.FileError;
 import com.aptana.ide.editors.unified.errors.IFileError;
@@ -75,10 +74,32 @@ public class JSLintValidator extends ValidatorBase
 	 * Fields
 	 */
 	static String jsLintString = getResourceText("fulljslint.js"); //$NON-NLS-1$
-	static Script JSLintScript = null;
+
+	// JSLint takes its options from the script itself, so the script stands for the options in the cache keys
+	private static final LintResultCache results = new LintResultCache(String.valueOf(jsLintString));
+	private static final int OUTLINE_CACHE_SIZE = 8;
+	private static final Map<String, LintOutline> outlines = new LinkedHashMap<String, LintOutline>(16, 0.75f, true)
+	{
+		private static final long serialVersionUID = 1L;
+
+		protected boolean removeEldestEntry(Map.Entry<String, LintOutline> eldest)
+		{
+			return size() > OUTLINE_CACHE_SIZE;
+		}
+	};
 
 	private static String LINE_DELIM = System.getProperty("line.separator", "\r\n"); //$NON-NLS-1$ //$NON-NLS-2$
 
+	/**
+	 * Compiles JSLint the first time a validator needs it. The class loader runs this once, whichever thread gets here
+	 * first, and every thread sees the finished script and pool.
+	 */
+	private static class JSLint
+	{
+		static final Script SCRIPT = getJSLintScript(jsLintString);
+		static final RhinoPool SCOPES = (SCRIPT == null) ? null : new RhinoPool(SCRIPT);
+	}
+
 	/*
 	 * Constructors
 	 */
@@ -88,10 +109,6 @@ public class JSLintValidator extends ValidatorBase
 	 */
 	public JSLintValidator()
 	{
-		if (JSLintScript == null)
-		{
-			JSLintScript = getJSLintScript(jsLintString);
-		}
 	}
 
 	/**
@@ -114,7 +131,7 @@ public class JSLintValidator extends ValidatorBase
 		UnifiedErrorReporter reporter = new UnifiedErrorReporter(sourceProvider);
 		reporter.addErrors(err);
 		ArrayList<Range> ranges = new ArrayList<Range>();
-		Context cx = Context.enter();
+		Context cx = RhinoPool.enter();
 
 		try
 		{
@@ -124,7 +141,9 @@ public class JSLintValidator extends ValidatorBase
 
 			if (collectErrors || collectWarnings)
 			{
-				lintScript(JSLintScript, cx, source, path, collectErrors, collectWarnings);
+				LintDiagnostic[] diagnostics = lint(JSLint.SCOPES, cx, source, path);
+
+				LintDiagnostic.report(diagnostics, reporter, path, collectErrors, collectWarnings);
 			}
 		}
 		catch (Exception e)
@@ -134,7 +153,7 @@ public class JSLintValidator extends ValidatorBase
 		finally
 		{
 			// Exit from the context.
-			Context.exit();
+			RhinoPool.exit();
 		}
 		IFileError[] errors = JSValidationUtils.filterErrors(source, reporter, ranges);
 		// Error may be at source.length() which will cause error markers to not show up and the validation view
@@ -207,25 +226,255 @@ public class JSLintValidator extends ValidatorBase
 	
 
 	/**
-	 * lintScript
+	 * Lints the source, replaying the diagnostics of an earlier pass over the same source if there are any. Otherwise
+	 * only the function bodies that changed since the last pass over the same path are linted again, as long as the
+	 * code around them is unchanged.
 	 * 
-	 * @param JSLintScript
+	 * @param scopes
 	 * @param cx
-	 * @param script
+	 * @param source
 	 * @param path
-	 * @param collectErrors
-	 * @param collectWarnings
+	 * @return the diagnostics in the order JSLint reports them
 	 */
-	private void lintScript(Script JSLintScript, Context cx, String script, String path, boolean collectErrors,
-			boolean collectWarnings)
+	private LintDiagnostic[] lint(RhinoPool scopes, Context cx, String source, String path)
 	{
-		Scriptable scope = cx.initStandardObjects();
+		String key = results.getKey(source);
+		LintDiagnostic[] diagnostics = results.get(key);
 
-		// JSLint jsl = new JSLint();
-		// jsl.exec(cx, scope);
+		if (diagnostics == null)
+		{
+			LintOutline outline = (path == null) ? null : LintOutline.create(source);
+			LintOutline previous = null;
 
-		JSLintScript.exec(cx, scope);
+			if (outline != null)
+			{
+				synchronized (outlines)
+				{
+					previous = outlines.get(path);
+				}
+			}
+			if (previous != null && outline.hasSkeletonOf(previous))
+			{
+				diagnostics = lintChanges(scopes, cx, outline, previous);
+			}
+			if (diagnostics == null)
+			{
+				diagnostics = lintAll(scopes, cx, source, outline);
+			}
+
+			results.put(key, diagnostics);
+
+			if (outline != null)
+			{
+				synchronized (outlines)
+				{
+					outlines.put(path, outline);
+				}
+			}
+		}
+
+		return diagnostics;
+	}
 
+	/**
+	 * Lints the whole source and remembers the diagnostics of each function body in the outline
+	 * 
+	 * @param scopes
+	 * @param cx
+	 * @param source
+	 * @param outline
+	 *            the outline of the source, or null
+	 * @return LintDiagnostic[]
+	 */
+	LintDiagnostic[] lintAll(RhinoPool scopes, Context cx, String source, LintOutline outline)
+	{
+		List<LintDiagnostic> diagnostics = new ArrayList<LintDiagnostic>();
+		boolean stopped = lintScript(scopes, cx, source, diagnostics);
+
+		if (outline != null)
+		{
+			setBodyDiagnostics(outline, diagnostics, stopped, null);
+		}
+
+		return diagnostics.toArray(new LintDiagnostic[diagnostics.size()]);
+	}
+
+	/**
+	 * Lints the function bodies that are not the same as in the previous outline, with the others blanked out, and
+	 * puts the diagnostics of the unchanged bodies back in place
+	 * 
+	 * @param scopes
+	 * @param cx
+	 * @param outline
+	 * @param previous
+	 *            an outline with the same code around its function bodies
+	 * @return the diagnostics, or null if the whole source has to be linted, which is also the case when a body in
+	 *         either outline contains a directive comment
+	 */
+	LintDiagnostic[] lintChanges(RhinoPool scopes, Context cx, LintOutline outline, LintOutline previous)
+	{
+		int size = outline.size();
+		boolean[] reused = new boolean[size];
+		boolean reusedAny = false;
+
+		for (int i = 0; i < size; i++)
+		{
+			// blanking would drop a directive, and a changed one affects the bodies around it
+			if (outline.hasDirective(i) || previous.hasDirective(i))
+			{
+				return null;
+			}
+		}
+		for (int i = 0; i < size; i++)
+		{
+			LintDiagnostic[] bodyDiagnostics = previous.getDiagnostics(i);
+
+			if (bodyDiagnostics != null && outline.getBody(i).equals(previous.getBody(i)))
+			{
+				outline.setDiagnostics(i, bodyDiagnostics);
+				reused[i] = true;
+				reusedAny = true;
+			}
+		}
+		if (reusedAny == false)
+		{
+			return null;
+		}
+
+		List<LintDiagnostic> changes = new ArrayList<LintDiagnostic>();
+		boolean stopped = lintScript(scopes, cx, outline.blank(reused), changes);
+
+		if (stopped && changes.isEmpty())
+		{
+			return null;
+		}
+
+		List<LintDiagnostic> diagnostics = new ArrayList<LintDiagnostic>();
+		int next = 0;
+
+		for (LintDiagnostic diagnostic : changes)
+		{
+			int index = outline.indexOf(diagnostic);
+
+			if (index != -1 && reused[index])
+			{
+				// a blanked body should not have anything to report, so its old diagnostics may not hold either
+				return null;
+			}
+			for (; next < size && outline.isOpenedBefore(next, diagnostic); next++)
+			{
+				addBodyDiagnostics(outline, next, reused, diagnostics);
+			}
+			diagnostics.add(diagnostic);
+		}
+		if (stopped == false)
+		{
+			// JSLint would have reached the bodies after the last diagnostic too
+			for (; next < size; next++)
+			{
+				addBodyDiagnostics(outline, next, reused, diagnostics);
+			}
+		}
+
+		setBodyDiagnostics(outline, changes, stopped, reused);
+
+		return diagnostics.toArray(new LintDiagnostic[diagnostics.size()]);
+	}
+
+	private static void addBodyDiagnostics(LintOutline outline, int index, boolean[] reused,
+			List<LintDiagnostic> diagnostics)
+	{
+		if (reused[index])
+		{
+			LintDiagnostic[] bodyDiagnostics = outline.getDiagnostics(index);
+
+			for (int i = 0; i < bodyDiagnostics.length; i++)
+			{
+				diagnostics.add(outline.fromBody(index, bodyDiagnostics[i]));
+			}
+		}
+	}
+
+	/**
+	 * Sorts diagnostics into the function bodies of an outline. The diagnostics of a body are not known if JSLint
+	 * stopped before it reached the end of that body.
+	 * 
+	 * @param outline
+	 * @param diagnostics
+	 * @param stopped
+	 *            true if JSLint stopped at the last diagnostic
+	 * @param skipped
+	 *            the bodies whose diagnostics are already set, or null
+	 */
+	private static void setBodyDiagnostics(LintOutline outline, List<LintDiagnostic> diagnostics, boolean stopped,
+			boolean[] skipped)
+	{
+		int size = outline.size();
+		List<List<LintDiagnostic>> bodies = new ArrayList<List<LintDiagnostic>>(size);
+		LintDiagnostic last = diagnostics.isEmpty() ? null : diagnostics.get(diagnostics.size() - 1);
+
+		for (int i = 0; i < size; i++)
+		{
+			bodies.add(new ArrayList<LintDiagnostic>());
+		}
+		for (LintDiagnostic diagnostic : diagnostics)
+		{
+			int index = outline.indexOf(diagnostic);
+
+			if (index != -1)
+			{
+				bodies.get(index).add(outline.toBody(index, diagnostic));
+			}
+		}
+		for (int i = 0; i < size; i++)
+		{
+			if (skipped == null || skipped[i] == false)
+			{
+				boolean known = stopped == false || (last != null && outline.isClosedBefore(i, last));
+				List<LintDiagnostic> body = bodies.get(i);
+
+				outline.setDiagnostics(i, known ? body.toArray(new LintDiagnostic[body.size()]) : null);
+			}
+		}
+	}
+
+	/**
+	 * lintScript
+	 * 
+	 * @param scopes
+	 * @param cx
+	 * @param script
+	 * @param diagnostics
+	 *            receives the diagnostics in the order JSLint reports them
+	 * @return true if JSLint stopped at the last diagnostic before it reached the end of the script
+	 */
+	private boolean lintScript(RhinoPool scopes, Context cx, String script, List<LintDiagnostic> diagnostics)
+	{
+		// JSLint resets its state on every call, so a scope it has been loaded into can be used again
+		Scriptable scope = scopes.acquire(cx);
+
+		try
+		{
+			return lintScript(scope, cx, script, diagnostics);
+		}
+		finally
+		{
+			scopes.release(scope);
+		}
+	}
+
+	/**
+	 * lintScript
+	 * 
+	 * @param scope
+	 *            a scope JSLint has been loaded into
+	 * @param cx
+	 * @param script
+	 * @param diagnostics
+	 * @return boolean
+	 */
+	private boolean lintScript(Scriptable scope, Context cx, String script, List<LintDiagnostic> diagnostics)
+	{
 		Object fObj = scope.get("jslint", scope); //$NON-NLS-1$
 
 		if (!(fObj instanceof Function))
@@ -251,7 +500,7 @@ public class JSLintValidator extends ValidatorBase
 				Object[] ids = errorArray.getIds();
 				if (ids.length == 0)
 				{
-					return;
+					return false;
 				}
 
 				boolean lastIsError = false;
@@ -262,10 +511,8 @@ public class JSLintValidator extends ValidatorBase
 					lastIsError = true;
 				}
 
-				if (lastIsError == false && collectWarnings == false)
-				{
-					return;
-				}
+				// JSLint also stops when it fails, leaving a last entry without an id
+				boolean stopped = lastIsError || last.has("id", last) == false; //$NON-NLS-1$
 
 				for (int i = 0; i < ids.length; i++)
 				{
@@ -279,20 +526,8 @@ public class JSLintValidator extends ValidatorBase
 							int character = (int) Double.parseDouble(v.get("character", scope).toString()); //$NON-NLS-1$
 							String evidence = v.get("evidence", scope).toString().trim(); //$NON-NLS-1$
 
-							UnifiedErrorReporter rep = (UnifiedErrorReporter) cx.getErrorReporter();
-
-							if (i == ids.length - 2 && lastIsError)
-							{
-								if (collectErrors)
-								{
-									rep.error(reason, path, line, evidence, character);
-								}
-							}
-							else if (collectWarnings)
-							{
-								rep.warning(reason, path, line, evidence, character);
-							}
-
+							diagnostics.add(new LintDiagnostic(i == ids.length - 2 && lastIsError, reason, line,
+									evidence, character));
 						}
 					}
 					catch (Exception e)
@@ -301,8 +536,11 @@ public class JSLintValidator extends ValidatorBase
 					}
 				}
 
+				return stopped;
 			}
 		}
+
+		return false;
 	}
 
 	/**
@@ -313,26 +551,9 @@ public class JSLintValidator extends ValidatorBase
 	 */
 	private static Script getJSLintScript(String jsLintSourceString)
 	{
-		Context cx = Context.enter();
-
 		try
 		{
-			CompilerEnvirons compilerEnv = new CompilerEnvirons();
-			compilerEnv.initFromContext(cx);
-
-			Parser p = new Parser(compilerEnv, cx.getErrorReporter());
-			ScriptOrFnNode tree = p.parse(jsLintSourceString, "fulljslint.js", 1); //$NON-NLS-1$
-
-			String encodedSource = p.getEncodedSource();
-
-			Interpreter compiler = createCompiler();
-
-			Object bytecode = compiler.compile(compilerEnv, tree, encodedSource, false);
-
-			Script result = compiler.createScriptObject(bytecode, null);
-
-			return result;
-
+			return RhinoPool.compile(jsLintSourceString, "fulljslint.js"); //$NON-NLS-1$
 		}
 		catch (org.mozilla.javascript.EvaluatorException e)
 		{
@@ -345,51 +566,7 @@ public class JSLintValidator extends ValidatorBase
 				IdeLog.logInfo(JSPlugin.getDefault(), Messages.JSErrorManager_JSLintFailed, e);
 			}
 		}
-		finally
-		{
-			// Exit from the context.
-			Context.exit();
-		}
-
-		return null;
-	}
-
-	private static Class<?> codegenClass = Kit.classOrNull("org.mozilla.javascript.optimizer.Codegen"); //$NON-NLS-1$
-
-	private static Interpreter createCompiler()
-	{
-		int optimizationLevel = codegenClass != null ? 0 : -1;
-		Interpreter result = null;
-
-		if (optimizationLevel >= 0 && codegenClass != null)
-		{
-			result = (Interpreter) newInstanceOrNull(codegenClass);
-		}
-		if (result == null)
-		{
-			result = new Interpreter();
-		}
-		return result;
-	}
 
-	static Object newInstanceOrNull(Class<?> cl)
-	{
-		try
-		{
-			return cl.newInstance();
-		}
-		catch (SecurityException x)
-		{
-		}
-		catch (LinkageError ex)
-		{
-		}
-		catch (InstantiationException x)
-		{
-		}
-		catch (IllegalAccessException x)
-		{
-		}
 		return null;
 	}
 
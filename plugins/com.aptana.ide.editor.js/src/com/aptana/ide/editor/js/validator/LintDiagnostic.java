@@ -0,0 +1,216 @@
+/**
+ * This file Copyright (c) 2005-2008 Aptana, Inc. This program is
+ * dual-licensed under both the Aptana Public License and the GNU General
+ * Public license. You may elect to use one or the other of these licenses.
+ * 
+ * This program is distributed in the hope that it will be useful, but
+ * AS-IS and WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, TITLE, or
+ * NONINFRINGEMENT. Redistribution, except as permitted by whichever of
+ * the GPL or APL you select, is prohibited.
+ *
+ * 1. For the GPL license (GPL), you can redistribute and/or modify this
+ * program under the terms of the GNU General Public License,
+ * Version 3, as published by the Free Software Foundation.  You should
+ * have received a copy of the GNU General Public License, Version 3 along
+ * with this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * Aptana provides a special exception to allow redistribution of this file
+ * with certain other free and open source software ("FOSS") code and certain additional terms
+ * pursuant to Section 7 of the GPL. You may view the exception and these
+ * terms on the web at http://www.aptana.com/legal/gpl/.
+ * 
+ * 2. For the Aptana Public License (APL), this program and the
+ * accompanying materials are made available under the terms of the APL
+ * v1.0 which accompanies this distribution, and is available at
+ * http://www.aptana.com/legal/apl/.
+ * 
+ * You may view the GPL, Aptana's exception and additional terms, and the
+ * APL in the file titled license.html at the root of the corresponding
+ * plugin containing this source file.
+ * 
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.ide.editor.js.validator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.mozilla.javascript.ErrorReporter;
+import org.mozilla.javascript.EvaluatorException;
+
+/**
+ * A problem found by one of the Rhino based validators, kept apart from the error reporter so that it can be cached
+ * and reported again on a later validation pass.
+ * 
+ * @author agent (agent@local)
+ */
+final class LintDiagnostic
+{
+	private final boolean _error;
+	private final String _message;
+	private final int _line;
+	private final String _lineText;
+	private final int _lineOffset;
+
+	/**
+	 * LintDiagnostic
+	 * 
+	 * @param error
+	 *            true for an error, false for a warning
+	 * @param message
+	 * @param line
+	 *            the one based line number
+	 * @param lineText
+	 * @param lineOffset
+	 *            the zero based column within the line
+	 */
+	LintDiagnostic(boolean error, String message, int line, String lineText, int lineOffset)
+	{
+		this._error = error;
+		this._message = message;
+		this._line = line;
+		this._lineText = lineText;
+		this._lineOffset = lineOffset;
+	}
+
+	/**
+	 * isError
+	 * 
+	 * @return boolean
+	 */
+	boolean isError()
+	{
+		return this._error;
+	}
+
+	/**
+	 * getLine
+	 * 
+	 * @return the one based line number
+	 */
+	int getLine()
+	{
+		return this._line;
+	}
+
+	/**
+	 * getLineOffset
+	 * 
+	 * @return the zero based column within the line
+	 */
+	int getLineOffset()
+	{
+		return this._lineOffset;
+	}
+
+	/**
+	 * Returns a copy of this diagnostic at another position
+	 * 
+	 * @param line
+	 * @param lineOffset
+	 * @return LintDiagnostic
+	 */
+	LintDiagnostic moveTo(int line, int lineOffset)
+	{
+		return new LintDiagnostic(this._error, this._message, line, this._lineText, lineOffset);
+	}
+
+	/**
+	 * The line text is left out, since a diagnostic found in a source with blanked function bodies shows their blanks
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString()
+	{
+		return (this._error ? "error " : "warning ") + this._line + ":" + this._lineOffset + " " + this._message; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+	}
+
+	/**
+	 * Reports this diagnostic, unless its kind is not being collected
+	 * 
+	 * @param reporter
+	 * @param path
+	 * @param collectErrors
+	 * @param collectWarnings
+	 */
+	void report(ErrorReporter reporter, String path, boolean collectErrors, boolean collectWarnings)
+	{
+		if (this._error)
+		{
+			if (collectErrors)
+			{
+				reporter.error(this._message, path, this._line, this._lineText, this._lineOffset);
+			}
+		}
+		else if (collectWarnings)
+		{
+			reporter.warning(this._message, path, this._line, this._lineText, this._lineOffset);
+		}
+	}
+
+	/**
+	 * Reports a list of diagnostics
+	 * 
+	 * @param diagnostics
+	 * @param reporter
+	 * @param path
+	 * @param collectErrors
+	 * @param collectWarnings
+	 */
+	static void report(LintDiagnostic[] diagnostics, ErrorReporter reporter, String path, boolean collectErrors,
+			boolean collectWarnings)
+	{
+		for (int i = 0; i < diagnostics.length; i++)
+		{
+			diagnostics[i].report(reporter, path, collectErrors, collectWarnings);
+		}
+	}
+
+	/**
+	 * An error reporter that keeps what Rhino reports to it
+	 */
+	static class Recorder implements ErrorReporter
+	{
+		private List<LintDiagnostic> _diagnostics = new ArrayList<LintDiagnostic>();
+
+		/**
+		 * @see org.mozilla.javascript.ErrorReporter#warning(java.lang.String, java.lang.String, int,
+		 *      java.lang.String, int)
+		 */
+		public void warning(String message, String sourceURI, int line, String lineText, int lineOffset)
+		{
+			this._diagnostics.add(new LintDiagnostic(false, message, line, lineText, lineOffset));
+		}
+
+		/**
+		 * @see org.mozilla.javascript.ErrorReporter#error(java.lang.String, java.lang.String, int, java.lang.String,
+		 *      int)
+		 */
+		public void error(String message, String sourceURI, int line, String lineText, int lineOffset)
+		{
+			this._diagnostics.add(new LintDiagnostic(true, message, line, lineText, lineOffset));
+		}
+
+		/**
+		 * @see org.mozilla.javascript.ErrorReporter#runtimeError(java.lang.String, java.lang.String, int,
+		 *      java.lang.String, int)
+		 */
+		public EvaluatorException runtimeError(String message, String sourceURI, int line, String lineText,
+				int lineOffset)
+		{
+			return new EvaluatorException(message, sourceURI, line, lineText, lineOffset);
+		}
+
+		/**
+		 * getDiagnostics
+		 * 
+		 * @return the recorded diagnostics in the order they were reported
+		 */
+		LintDiagnostic[] getDiagnostics()
+		{
+			return this._diagnostics.toArray(new LintDiagnostic[this._diagnostics.size()]);
+		}
+	}
+}
@@ -0,0 +1,593 @@
+/**
+ * This file Copyright (c) 2005-2008 Aptana, Inc. This program is
+ * dual-licensed under both the Aptana Public License and the GNU General
+ * Public license. You may elect to use one or the other of these licenses.
+ * 
+ * This program is distributed in the hope that it will be useful, but
+ * AS-IS and WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, TITLE, or
+ * NONINFRINGEMENT. Redistribution, except as permitted by whichever of
+ * the GPL or APL you select, is prohibited.
+ *
+ * 1. For the GPL license (GPL), you can redistribute and/or modify this
+ * program under the terms of the GNU General Public License,
+ * Version 3, as published by the Free Software Foundation.  You should
+ * have received a copy of the GNU General Public License, Version 3 along
+ * with this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * Aptana provides a special exception to allow redistribution of this file
+ * with certain other free and open source software ("FOSS") code and certain additional terms
+ * pursuant to Section 7 of the GPL. You may view the exception and these
+ * terms on the web at http://www.aptana.com/legal/gpl/.
+ * 
+ * 2. For the Aptana Public License (APL), this program and the
+ * accompanying materials are made available under the terms of the APL
+ * v1.0 which accompanies this distribution, and is available at
+ * http://www.aptana.com/legal/apl/.
+ * 
+ * You may view the GPL, Aptana's exception and additional terms, and the
+ * APL in the file titled license.html at the root of the corresponding
+ * plugin containing this source file.
+ * 
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.ide.editor.js.validator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Splits JavaScript source into the bodies of its outermost functions and the code around them. JSLint keeps the
+ * variables of a function body to that function, so as long as the code around the bodies does not change, the
+ * problems found in a body only depend on the text of that body. A function that wraps most of the file, such as a
+ * library closure, is split into the functions inside it instead. Directive comments such as <code>/*global</code>
+ * change how JSLint reads the rest of the source, so the outline notes which bodies contain one.
+ * 
+ * @author agent (agent@local)
+ */
+final class LintOutline
+{
+	private static final String REGEX_PREFIXES = "(,=:[!&|?{};+-*%<>~^"; //$NON-NLS-1$
+	private static final List<String> REGEX_KEYWORDS = Arrays.asList(new String[] { "return", "typeof", "instanceof", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			"in", "new", "delete", "void", "throw", "case", "do", "else" }); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$ //$NON-NLS-8$
+	private static final String[] DIRECTIVES = { "global", "jslint", "members", "property", "extern" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+
+	/**
+	 * A function body found while scanning, from its opening to its closing brace
+	 */
+	private static class Function
+	{
+		int open;
+		int close;
+		boolean directive;
+		List<Function> children = new ArrayList<Function>();
+	}
+
+	private final String _source;
+	private final int[] _open;
+	private final int[] _close;
+	private final int[] _openLine;
+	private final int[] _openColumn;
+	private final int[] _closeLine;
+	private final int[] _closeColumn;
+	private final boolean[] _directives;
+	private final String[] _skeleton;
+	private final LintDiagnostic[][] _diagnostics;
+
+	private LintOutline(String source, List<Function> chunks)
+	{
+		int count = chunks.size();
+
+		this._source = source;
+		this._open = new int[count];
+		this._close = new int[count];
+		this._openLine = new int[count];
+		this._openColumn = new int[count];
+		this._closeLine = new int[count];
+		this._closeColumn = new int[count];
+		this._directives = new boolean[count];
+		this._skeleton = new String[count + 1];
+		this._diagnostics = new LintDiagnostic[count][];
+
+		// JSLint splits lines at '\n', or at '\r' if there is no '\n' at all
+		char lineBreak = (source.indexOf('\n') != -1) ? '\n' : '\r';
+		int line = 1;
+		int lineStart = 0;
+		int offset = 0;
+		int previous = 0;
+
+		for (int i = 0; i < count; i++)
+		{
+			Function chunk = chunks.get(i);
+
+			for (; offset < chunk.open; offset++)
+			{
+				if (source.charAt(offset) == lineBreak)
+				{
+					line++;
+					lineStart = offset + 1;
+				}
+			}
+			this._open[i] = chunk.open;
+			this._openLine[i] = line;
+			this._openColumn[i] = chunk.open - lineStart;
+
+			for (; offset < chunk.close; offset++)
+			{
+				if (source.charAt(offset) == lineBreak)
+				{
+					line++;
+					lineStart = offset + 1;
+				}
+			}
+			this._close[i] = chunk.close;
+			this._closeLine[i] = line;
+			this._closeColumn[i] = chunk.close - lineStart;
+			this._directives[i] = chunk.directive;
+
+			this._skeleton[i] = source.substring(previous, chunk.open + 1);
+			previous = chunk.close;
+		}
+		this._skeleton[count] = source.substring(previous);
+	}
+
+	/**
+	 * Creates the outline of the given source
+	 * 
+	 * @param source
+	 * @return the outline, or null if the source could not be split reliably
+	 */
+	static LintOutline create(String source)
+	{
+		Function root = scan(source);
+
+		if (root == null)
+		{
+			return null;
+		}
+
+		List<Function> chunks = new ArrayList<Function>();
+
+		addChunks(root.children, chunks, source.length() / 2);
+
+		return new LintOutline(source, chunks);
+	}
+
+	private static void addChunks(List<Function> functions, List<Function> chunks, int wrapperSize)
+	{
+		for (Function function : functions)
+		{
+			if (function.close - function.open > wrapperSize && function.children.isEmpty() == false)
+			{
+				addChunks(function.children, chunks, wrapperSize);
+			}
+			else
+			{
+				chunks.add(function);
+			}
+		}
+	}
+
+	/**
+	 * Finds the function bodies in the source. Strings, comments and regular expressions are skipped, and anything
+	 * that does not balance gives up on the whole source.
+	 * 
+	 * @param source
+	 * @return the function that stands for the whole source, or null
+	 */
+	private static Function scan(String source)
+	{
+		Function root = new Function();
+		List<Function> functions = new ArrayList<Function>();
+		List<Function> braces = new ArrayList<Function>();
+		int length = source.length();
+		int parens = 0;
+		int paramsDepth = -1;
+		boolean afterFunction = false;
+		boolean beforeBody = false;
+		char previous = 0;
+		String previousWord = null;
+
+		functions.add(root);
+
+		for (int i = 0; i < length; i++)
+		{
+			char c = source.charAt(i);
+
+			if (Character.isWhitespace(c))
+			{
+				continue;
+			}
+
+			if (c == '/' && i + 1 < length && source.charAt(i + 1) == '/')
+			{
+				while (i < length && source.charAt(i) != '\n' && source.charAt(i) != '\r')
+				{
+					i++;
+				}
+				continue;
+			}
+			if (c == '/' && i + 1 < length && source.charAt(i + 1) == '*')
+			{
+				if (functions.size() > 1 && isDirective(source, i + 2))
+				{
+					for (int j = 1; j < functions.size(); j++)
+					{
+						functions.get(j).directive = true;
+					}
+				}
+				i = source.indexOf("*/", i + 2); //$NON-NLS-1$
+				if (i == -1)
+				{
+					return null;
+				}
+				i++;
+				continue;
+			}
+
+			boolean wasBeforeBody = beforeBody;
+
+			beforeBody = false;
+
+			if (c == '"' || c == '\'' || (c == '/' && isRegexStart(previous, previousWord)))
+			{
+				i = skipLiteral(source, i, c);
+				if (i == -1)
+				{
+					return null;
+				}
+				afterFunction = false;
+				previous = ')';
+				previousWord = null;
+				continue;
+			}
+
+			if (Character.isJavaIdentifierPart(c))
+			{
+				int start = i;
+
+				while (i + 1 < length && Character.isJavaIdentifierPart(source.charAt(i + 1)))
+				{
+					i++;
+				}
+
+				String word = source.substring(start, i + 1);
+
+				// the name of a function keeps it waiting for its parameters
+				afterFunction = "function".equals(word) || (afterFunction && "function".equals(previousWord)); //$NON-NLS-1$ //$NON-NLS-2$
+				previous = c;
+				previousWord = word;
+				continue;
+			}
+
+			switch (c)
+			{
+				case '(':
+					parens++;
+					if (afterFunction)
+					{
+						paramsDepth = parens;
+					}
+					break;
+
+				case ')':
+					if (parens == paramsDepth)
+					{
+						paramsDepth = -1;
+						beforeBody = true;
+					}
+					parens--;
+					if (parens < 0)
+					{
+						return null;
+					}
+					break;
+
+				case '{':
+					if (wasBeforeBody)
+					{
+						Function body = new Function();
+
+						body.open = i;
+						functions.get(functions.size() - 1).children.add(body);
+						functions.add(body);
+						braces.add(body);
+					}
+					else
+					{
+						braces.add(null);
+					}
+					break;
+
+				case '}':
+					if (braces.isEmpty())
+					{
+						return null;
+					}
+
+					Function closed = braces.remove(braces.size() - 1);
+
+					if (closed != null)
+					{
+						closed.close = i;
+						functions.remove(functions.size() - 1);
+					}
+					break;
+
+				default:
+					break;
+			}
+
+			afterFunction = false;
+			previous = c;
+			previousWord = null;
+		}
+
+		if (parens != 0 || braces.isEmpty() == false || paramsDepth != -1)
+		{
+			return null;
+		}
+
+		return root;
+	}
+
+	private static boolean isDirective(String source, int start)
+	{
+		for (int i = 0; i < DIRECTIVES.length; i++)
+		{
+			if (source.startsWith(DIRECTIVES[i], start))
+			{
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private static boolean isRegexStart(char previous, String previousWord)
+	{
+		if (previousWord != null)
+		{
+			return REGEX_KEYWORDS.contains(previousWord);
+		}
+
+		return previous == 0 || REGEX_PREFIXES.indexOf(previous) != -1;
+	}
+
+	/**
+	 * Skips a string or regular expression literal
+	 * 
+	 * @param source
+	 * @param start
+	 *            the offset of the opening quote or slash
+	 * @param quote
+	 * @return the offset of the closing quote or slash, or -1 if the literal does not end on its line
+	 */
+	private static int skipLiteral(String source, int start, char quote)
+	{
+		int length = source.length();
+		boolean inClass = false;
+
+		for (int i = start + 1; i < length; i++)
+		{
+			char c = source.charAt(i);
+
+			if (c == '\\')
+			{
+				i++;
+			}
+			else if (c == '\n' || c == '\r')
+			{
+				return -1;
+			}
+			else if (quote == '/' && c == '[')
+			{
+				inClass = true;
+			}
+			else if (quote == '/' && c == ']')
+			{
+				inClass = false;
+			}
+			else if (c == quote && inClass == false)
+			{
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Returns the number of function bodies in this outline
+	 * 
+	 * @return int
+	 */
+	int size()
+	{
+		return this._open.length;
+	}
+
+	/**
+	 * Returns the text between the braces of a function body
+	 * 
+	 * @param index
+	 * @return String
+	 */
+	String getBody(int index)
+	{
+		return this._source.substring(this._open[index] + 1, this._close[index]);
+	}
+
+	/**
+	 * Returns true if the given function body contains a directive comment
+	 * 
+	 * @param index
+	 * @return boolean
+	 */
+	boolean hasDirective(int index)
+	{
+		return this._directives[index];
+	}
+
+	/**
+	 * Returns true if the code around the function bodies is the same as in the given outline
+	 * 
+	 * @param other
+	 * @return boolean
+	 */
+	boolean hasSkeletonOf(LintOutline other)
+	{
+		return Arrays.equals(this._skeleton, other._skeleton);
+	}
+
+	/**
+	 * Returns the source with the text of the given function bodies replaced by spaces. Line breaks are kept, so the
+	 * rest of the source keeps its lines and columns.
+	 * 
+	 * @param blanked
+	 * @return String
+	 */
+	String blank(boolean[] blanked)
+	{
+		char[] chars = this._source.toCharArray();
+
+		for (int i = 0; i < blanked.length; i++)
+		{
+			if (blanked[i])
+			{
+				for (int j = this._open[i] + 1; j < this._close[i]; j++)
+				{
+					if (chars[j] != '\n' && chars[j] != '\r')
+					{
+						chars[j] = ' ';
+					}
+				}
+			}
+		}
+
+		return new String(chars);
+	}
+
+	/**
+	 * Returns the function body a diagnostic belongs to. A body owns everything after its opening brace up to and
+	 * including its closing brace.
+	 * 
+	 * @param diagnostic
+	 * @return the index of the body, or -1 if the diagnostic is outside of all bodies
+	 */
+	int indexOf(LintDiagnostic diagnostic)
+	{
+		int low = 0;
+		int high = this._open.length - 1;
+
+		// find the last body that opens before the diagnostic
+		while (low <= high)
+		{
+			int middle = (low + high) >>> 1;
+
+			if (isOpenedBefore(middle, diagnostic))
+			{
+				low = middle + 1;
+			}
+			else
+			{
+				high = middle - 1;
+			}
+		}
+
+		if (high >= 0
+				&& compare(diagnostic.getLine(), diagnostic.getLineOffset(), this._closeLine[high], this._closeColumn[high]) <= 0)
+		{
+			return high;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Returns true if the given function body opens before the diagnostic
+	 * 
+	 * @param index
+	 * @param diagnostic
+	 * @return boolean
+	 */
+	boolean isOpenedBefore(int index, LintDiagnostic diagnostic)
+	{
+		return compare(this._openLine[index], this._openColumn[index], diagnostic.getLine(), diagnostic
+				.getLineOffset()) < 0;
+	}
+
+	/**
+	 * Returns true if the given function body closes before the diagnostic
+	 * 
+	 * @param index
+	 * @param diagnostic
+	 * @return boolean
+	 */
+	boolean isClosedBefore(int index, LintDiagnostic diagnostic)
+	{
+		return compare(this._closeLine[index], this._closeColumn[index], diagnostic.getLine(), diagnostic
+				.getLineOffset()) < 0;
+	}
+
+	/**
+	 * Returns the diagnostics of a function body, with positions relative to its opening brace
+	 * 
+	 * @param index
+	 * @return the diagnostics, or null if they are not known
+	 */
+	LintDiagnostic[] getDiagnostics(int index)
+	{
+		return this._diagnostics[index];
+	}
+
+	/**
+	 * Sets the diagnostics of a function body
+	 * 
+	 * @param index
+	 * @param diagnostics
+	 *            the diagnostics with positions relative to the opening brace of the body, or null if they are not
+	 *            known
+	 */
+	void setDiagnostics(int index, LintDiagnostic[] diagnostics)
+	{
+		this._diagnostics[index] = diagnostics;
+	}
+
+	/**
+	 * Moves a diagnostic of a function body to a position relative to the opening brace of the body
+	 * 
+	 * @param index
+	 * @param diagnostic
+	 * @return LintDiagnostic
+	 */
+	LintDiagnostic toBody(int index, LintDiagnostic diagnostic)
+	{
+		int line = diagnostic.getLine() - this._openLine[index];
+		int column = diagnostic.getLineOffset();
+
+		return diagnostic.moveTo(line, (line == 0) ? column - this._openColumn[index] : column);
+	}
+
+	/**
+	 * Moves a diagnostic relative to the opening brace of a function body back to its position in the source
+	 * 
+	 * @param index
+	 * @param diagnostic
+	 * @return LintDiagnostic
+	 */
+	LintDiagnostic fromBody(int index, LintDiagnostic diagnostic)
+	{
+		int line = diagnostic.getLine();
+		int column = diagnostic.getLineOffset();
+
+		return diagnostic.moveTo(this._openLine[index] + line, (line == 0) ? column + this._openColumn[index] : column);
+	}
+
+	private static int compare(int line1, int column1, int line2, int column2)
+	{
+		return (line1 != line2) ? line1 - line2 : column1 - column2;
+	}
+}
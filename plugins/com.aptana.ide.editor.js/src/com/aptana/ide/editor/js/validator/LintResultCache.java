@@ -0,0 +1,149 @@
+/**
+ * This file Copyright (c) 2005-2008 Aptana, Inc. This program is
+ * dual-licensed under both the Aptana Public License and the GNU General
+ * Public license. You may elect to use one or the other of these licenses.
+ * 
+ * This program is distributed in the hope that it will be useful, but
+ * AS-IS and WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, TITLE, or
+ * NONINFRINGEMENT. Redistribution, except as permitted by whichever of
+ * the GPL or APL you select, is prohibited.
+ *
+ * 1. For the GPL license (GPL), you can redistribute and/or modify this
+ * program under the terms of the GNU General Public License,
+ * Version 3, as published by the Free Software Foundation.  You should
+ * have received a copy of the GNU General Public License, Version 3 along
+ * with this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * Aptana provides a special exception to allow redistribution of this file
+ * with certain other free and open source software ("FOSS") code and certain additional terms
+ * pursuant to Section 7 of the GPL. You may view the exception and these
+ * terms on the web at http://www.aptana.com/legal/gpl/.
+ * 
+ * 2. For the Aptana Public License (APL), this program and the
+ * accompanying materials are made available under the terms of the APL
+ * v1.0 which accompanies this distribution, and is available at
+ * http://www.aptana.com/legal/apl/.
+ * 
+ * You may view the GPL, Aptana's exception and additional terms, and the
+ * APL in the file titled license.html at the root of the corresponding
+ * plugin containing this source file.
+ * 
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.ide.editor.js.validator;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the diagnostics of a Rhino based validator by a digest of the source it was run on and of the options it
+ * was run with, so that a validation pass over source that has been validated before replays the diagnostics instead
+ * of running the validator again. The least recently used results are dropped once the cache is full.
+ * 
+ * @author agent (agent@local)
+ */
+final class LintResultCache
+{
+	private static final int DEFAULT_SIZE = 64;
+	private static final String SIZE_PROPERTY = "com.aptana.ide.editor.js.lintCacheSize"; //$NON-NLS-1$
+	private static final char[] HEX = "0123456789abcdef".toCharArray(); //$NON-NLS-1$
+
+	private final byte[] _options;
+	private final Map<String, LintDiagnostic[]> _results;
+
+	/**
+	 * LintResultCache
+	 * 
+	 * @param options
+	 *            anything besides the source that the validator's diagnostics depend on
+	 */
+	LintResultCache(String options)
+	{
+		final int capacity = Math.max(1, Integer.getInteger(SIZE_PROPERTY, DEFAULT_SIZE).intValue());
+
+		this._options = getBytes(options);
+		this._results = new LinkedHashMap<String, LintDiagnostic[]>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(Map.Entry<String, LintDiagnostic[]> eldest)
+			{
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * Returns the key of the results for the given source
+	 * 
+	 * @param source
+	 * @return the key, or null if no digest is available and nothing can be cached
+	 */
+	String getKey(String source)
+	{
+		try
+		{
+			MessageDigest digest = MessageDigest.getInstance("MD5"); //$NON-NLS-1$
+
+			digest.update(this._options);
+			digest.update(getBytes(source));
+
+			byte[] bytes = digest.digest();
+			char[] chars = new char[bytes.length * 2];
+
+			for (int i = 0; i < bytes.length; i++)
+			{
+				chars[i * 2] = HEX[(bytes[i] >> 4) & 0x0F];
+				chars[i * 2 + 1] = HEX[bytes[i] & 0x0F];
+			}
+
+			return new String(chars);
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the diagnostics cached under the given key
+	 * 
+	 * @param key
+	 * @return the diagnostics, or null if none are cached
+	 */
+	synchronized LintDiagnostic[] get(String key)
+	{
+		return (key == null) ? null : this._results.get(key);
+	}
+
+	/**
+	 * Caches diagnostics under the given key
+	 * 
+	 * @param key
+	 * @param diagnostics
+	 */
+	synchronized void put(String key, LintDiagnostic[] diagnostics)
+	{
+		if (key != null)
+		{
+			this._results.put(key, diagnostics);
+		}
+	}
+
+	private static byte[] getBytes(String text)
+	{
+		try
+		{
+			return text.getBytes("utf-8"); //$NON-NLS-1$
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			return text.getBytes();
+		}
+	}
+}
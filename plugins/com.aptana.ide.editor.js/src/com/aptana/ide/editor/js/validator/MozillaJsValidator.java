@@ -45,6 +45,7 @@ import com.aptana.ide.core.IdeLog;
 import com.aptana.ide.core.PluginUtils;
 import com.aptana.ide.editor.js.JSPlugin;
 import com.aptana.ide.editor.js.Messages;
+import com.aptana.ide.editor.js.RhinoPool;
 import com.aptana.ide.editors.unified.IFileSourceProvider;
 import com.aptana.ide.editors.unified.errors.FileError;
 import com.aptana.ide.editors.unified.errors.IFileError;
@@ -59,6 +60,7 @@ import com.aptana.ide.lexer.Range;
 public class MozillaJsValidator extends ValidatorBase
 {
 	private static String LINE_DELIM = System.getProperty("line.separator", "\r\n"); //$NON-NLS-1$ //$NON-NLS-2$
+	private static final LintResultCache results = new LintResultCache(MozillaJsValidator.class.getName());
 
 	/**
 	 * MozillaJsValidator
@@ -86,7 +88,7 @@ public class MozillaJsValidator extends ValidatorBase
 		UnifiedErrorReporter reporter = new UnifiedErrorReporter(sourceProvider);
 		reporter.addErrors(err);
 
-		Context cx = Context.enter();
+		Context cx = RhinoPool.enter();
 		ArrayList<Range>ranges=new ArrayList<Range>();
 		try
 		{
@@ -98,20 +100,32 @@ public class MozillaJsValidator extends ValidatorBase
 
 			if (collectErrors)
 			{
-				CompilerEnvirons compilerEnv = new CompilerEnvirons();
-				compilerEnv.initFromContext(cx);
+				String key = results.getKey(source);
+				LintDiagnostic[] diagnostics = results.get(key);
 
-				Parser p = new Parser(compilerEnv, reporter);
-
-				try
-				{
-					// ScriptOrFnNode tree =
-					p.parse(source, path, 1);
-				}
-				catch (org.mozilla.javascript.EvaluatorException e)
+				if (diagnostics == null)
 				{
+					CompilerEnvirons compilerEnv = new CompilerEnvirons();
+					compilerEnv.initFromContext(cx);
+
+					LintDiagnostic.Recorder recorder = new LintDiagnostic.Recorder();
+					Parser p = new Parser(compilerEnv, recorder);
+
+					try
+					{
+						// ScriptOrFnNode tree =
+						p.parse(source, path, 1);
+					}
+					catch (org.mozilla.javascript.EvaluatorException e)
+					{
 
+					}
+
+					diagnostics = recorder.getDiagnostics();
+					results.put(key, diagnostics);
 				}
+
+				LintDiagnostic.report(diagnostics, reporter, path, true, true);
 			}
 		}
 		catch (Exception e)
@@ -121,7 +135,7 @@ public class MozillaJsValidator extends ValidatorBase
 		finally
 		{
 			// Exit from the context.
-			Context.exit();
+			RhinoPool.exit();
 		}
 
 		IFileError[] errors = JSValidationUtils.filterErrors(source, reporter, ranges);
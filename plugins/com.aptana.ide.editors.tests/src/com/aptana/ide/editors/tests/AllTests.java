@@ -0,0 +1,35 @@
+package com.aptana.ide.editors.tests;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import com.aptana.ide.editors.unified.errors.ValidationSchedulerTest;
+
+/**
+ * @author agent (agent@local)
+ */
+public final class AllTests
+{
+	/**
+	 * AllTests
+	 */
+	private AllTests()
+	{
+	}
+
+	/**
+	 * suite
+	 * 
+	 * @return Returns a group of unit tests
+	 */
+	public static Test suite()
+	{
+		TestSuite suite = new TestSuite("Tests for com.aptana.ide.editors.tests"); //$NON-NLS-1$
+
+		// $JUnit-BEGIN$
+		suite.addTestSuite(ValidationSchedulerTest.class);
+		// $JUnit-END$
+
+		return suite;
+	}
+}
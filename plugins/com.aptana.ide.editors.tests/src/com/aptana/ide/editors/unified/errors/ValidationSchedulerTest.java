@@ -0,0 +1,364 @@
+package com.aptana.ide.editors.unified.errors;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+/**
+ * Runs validation tasks on the shared scheduler, nested several levels deep and in cancelled runs
+ *
+ * @author agent (agent@local)
+ */
+public class ValidationSchedulerTest extends TestCase
+{
+
+	private static final int WIDTH = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+	private static final long TIMEOUT = 30;
+
+	private ValidationScheduler scheduler;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		scheduler = ValidationScheduler.getInstance();
+	}
+
+	public void testResultsInTaskOrder()
+	{
+		List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+
+		for (int i = 0; i < WIDTH; i++)
+		{
+			final int index = i;
+
+			tasks.add(new Callable<Integer>()
+			{
+				public Integer call() throws Exception
+				{
+					// the first tasks take the longest
+					Thread.sleep((WIDTH - index) * 5);
+					return index;
+				}
+			});
+		}
+
+		List<Integer> results = scheduler.invokeAll(tasks);
+
+		for (int i = 0; i < WIDTH; i++)
+		{
+			assertEquals(i, results.get(i).intValue());
+		}
+	}
+
+	public void testFailedTaskReturnsNull()
+	{
+		List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+
+		tasks.add(constant(1));
+		tasks.add(new Callable<Integer>()
+		{
+			public Integer call() throws Exception
+			{
+				throw new IllegalStateException("expected by the test"); //$NON-NLS-1$
+			}
+		});
+		tasks.add(constant(3));
+
+		assertEquals(Arrays.asList(new Integer[] { 1, null, 3 }), scheduler.invokeAll(tasks));
+	}
+
+	public void testNestedFanOut() throws Exception
+	{
+		// every level has more tasks than there are workers, so waiting for a free worker would deadlock
+		assertEquals(WIDTH * WIDTH * WIDTH, sum(fanOut(3)));
+
+		final int[] sum = new int[1];
+		CountDownLatch done = start(new Runnable()
+		{
+			public void run()
+			{
+				sum[0] = sum(fanOut(3));
+			}
+		});
+
+		assertTrue("nested fan-out did not finish", done.await(TIMEOUT, TimeUnit.SECONDS)); //$NON-NLS-1$
+		assertEquals(WIDTH * WIDTH * WIDTH, sum[0]);
+	}
+
+	public void testNestedFanOutFromRuns() throws Exception
+	{
+		// more runs than workers, all of them fanning out
+		List<CountDownLatch> runs = new ArrayList<CountDownLatch>();
+		final AtomicInteger sum = new AtomicInteger();
+
+		for (int i = 0; i < WIDTH; i++)
+		{
+			runs.add(start(new Runnable()
+			{
+				public void run()
+				{
+					sum.addAndGet(sum(fanOut(2)));
+				}
+			}));
+		}
+		for (CountDownLatch done : runs)
+		{
+			assertTrue("nested fan-out did not finish", done.await(TIMEOUT, TimeUnit.SECONDS)); //$NON-NLS-1$
+		}
+		assertEquals(WIDTH * WIDTH * WIDTH, sum.get());
+	}
+
+	public void testCancelledRunSkipsTasks() throws Exception
+	{
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch cancelled = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(1);
+		final AtomicInteger called = new AtomicInteger();
+		final List<Integer> reported = Collections.synchronizedList(new ArrayList<Integer>());
+		final List<Integer> results = new ArrayList<Integer>();
+		final boolean[] seen = new boolean[1];
+
+		ValidationScheduler.Run run = scheduler.start(new Runnable()
+		{
+			public void run()
+			{
+				try
+				{
+					started.countDown();
+					cancelled.await();
+					seen[0] = ValidationScheduler.isCancelled();
+
+					List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+
+					for (int i = 0; i < WIDTH; i++)
+					{
+						tasks.add(new Callable<Integer>()
+						{
+							public Integer call()
+							{
+								return called.incrementAndGet();
+							}
+						});
+					}
+					results.addAll(scheduler.invokeAll(tasks, new Recorder(reported)));
+				}
+				catch (InterruptedException e)
+				{
+					// leaves the results empty
+				}
+				finally
+				{
+					done.countDown();
+				}
+			}
+		});
+
+		assertTrue(started.await(TIMEOUT, TimeUnit.SECONDS));
+		run.cancel();
+		cancelled.countDown();
+
+		assertTrue(done.await(TIMEOUT, TimeUnit.SECONDS));
+		assertTrue(seen[0]);
+		assertEquals(0, called.get());
+		assertEquals(Collections.nCopies(WIDTH, null), results);
+		assertTrue(reported.isEmpty());
+		assertFalse(ValidationScheduler.isCancelled());
+	}
+
+	public void testCancelledRunDoesNotStart() throws Exception
+	{
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicInteger called = new AtomicInteger();
+		List<CountDownLatch> busy = new ArrayList<CountDownLatch>();
+
+		// keeps every worker busy, so that the next run waits in the queue
+		for (int i = 0; i < ValidationScheduler.getThreadCount(); i++)
+		{
+			busy.add(start(new Runnable()
+			{
+				public void run()
+				{
+					try
+					{
+						release.await();
+					}
+					catch (InterruptedException e)
+					{
+						// done
+					}
+				}
+			}));
+		}
+
+		ValidationScheduler.Run run = scheduler.start(new Runnable()
+		{
+			public void run()
+			{
+				called.incrementAndGet();
+			}
+		});
+		CountDownLatch last = start(new Runnable()
+		{
+			public void run()
+			{
+			}
+		});
+
+		run.cancel();
+		release.countDown();
+
+		for (CountDownLatch done : busy)
+		{
+			assertTrue(done.await(TIMEOUT, TimeUnit.SECONDS));
+		}
+		assertTrue(last.await(TIMEOUT, TimeUnit.SECONDS));
+		assertEquals(0, called.get());
+	}
+
+	public void testOutermostFanOutReports() throws Exception
+	{
+		final List<Integer> outer = Collections.synchronizedList(new ArrayList<Integer>());
+		final List<Integer> inner = Collections.synchronizedList(new ArrayList<Integer>());
+		final List<Integer> results = new ArrayList<Integer>();
+
+		CountDownLatch done = start(new Runnable()
+		{
+			public void run()
+			{
+				List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+
+				for (int i = 0; i < WIDTH; i++)
+				{
+					tasks.add(new Callable<Integer>()
+					{
+						public Integer call()
+						{
+							List<Callable<Integer>> nested = new ArrayList<Callable<Integer>>();
+
+							for (int j = 0; j < WIDTH; j++)
+							{
+								nested.add(constant(1));
+							}
+							return sum(scheduler.invokeAll(nested, new Recorder(inner)));
+						}
+					});
+				}
+				results.addAll(scheduler.invokeAll(tasks, new Recorder(outer)));
+			}
+		});
+
+		assertTrue(done.await(TIMEOUT, TimeUnit.SECONDS));
+		assertEquals(Collections.nCopies(WIDTH, WIDTH), results);
+
+		List<Integer> indexes = new ArrayList<Integer>(outer);
+
+		Collections.sort(indexes);
+		assertEquals(WIDTH, indexes.size());
+		for (int i = 0; i < WIDTH; i++)
+		{
+			assertEquals(i, indexes.get(i).intValue());
+		}
+		assertTrue(inner.isEmpty());
+	}
+
+	public void testNoReportsOutsideRun()
+	{
+		List<Integer> reported = new ArrayList<Integer>();
+		List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+
+		tasks.add(constant(1));
+		tasks.add(constant(2));
+
+		assertEquals(Arrays.asList(new Integer[] { 1, 2 }), scheduler.invokeAll(tasks, new Recorder(reported)));
+		assertTrue(reported.isEmpty());
+	}
+
+	/**
+	 * Records the indexes of the tasks it hears of
+	 */
+	private static class Recorder implements ValidationScheduler.IResultListener<Integer>
+	{
+		private final List<Integer> _indexes;
+
+		Recorder(List<Integer> indexes)
+		{
+			this._indexes = indexes;
+		}
+
+		public void taskFinished(int index, Integer result)
+		{
+			this._indexes.add(index);
+		}
+	}
+
+	private CountDownLatch start(final Runnable validation)
+	{
+		final CountDownLatch done = new CountDownLatch(1);
+
+		scheduler.start(new Runnable()
+		{
+			public void run()
+			{
+				try
+				{
+					validation.run();
+				}
+				finally
+				{
+					done.countDown();
+				}
+			}
+		});
+
+		return done;
+	}
+
+	private List<Integer> fanOut(final int depth)
+	{
+		List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+
+		for (int i = 0; i < WIDTH; i++)
+		{
+			tasks.add(new Callable<Integer>()
+			{
+				public Integer call()
+				{
+					return depth > 1 ? sum(fanOut(depth - 1)) : 1;
+				}
+			});
+		}
+
+		return scheduler.invokeAll(tasks);
+	}
+
+	private static Callable<Integer> constant(final int value)
+	{
+		return new Callable<Integer>()
+		{
+			public Integer call()
+			{
+				return value;
+			}
+		};
+	}
+
+	private static int sum(List<Integer> values)
+	{
+		int sum = 0;
+
+		for (Integer value : values)
+		{
+			sum += value;
+		}
+
+		return sum;
+	}
+}
@@ -128,6 +128,8 @@ public final class ParentOffsetMapper implements IParentOffsetMapper, IFileConte
 		
 		if (lexemeList != null)
 		{
+			// callers look the current lexeme up in the list by identity, so it must be the list's own lexeme
+			// rather than a snapshot copy
 			synchronized (lexemeList)
 			{
 				// get rid of impossible offsets
@@ -186,6 +186,7 @@ import com.aptana.ide.editors.untitled.BaseTextEditor;
 import com.aptana.ide.lexer.IRange;
 import com.aptana.ide.lexer.Lexeme;
 import com.aptana.ide.lexer.LexemeList;
+import com.aptana.ide.lexer.LexemeListSnapshot;
 import com.aptana.ide.lexer.TokenCategories;
 import com.aptana.ide.parsing.IParseState;
 import com.aptana.ide.views.outline.UnifiedOutlinePage;
@@ -1011,25 +1012,24 @@ public abstract class UnifiedEditor extends BaseTextEditor implements IUnifiedEd
 							: lineLength;
 					Lexeme[] lexemes = null;
 
-					synchronized (lexemeList)
-					{
-						int startingIndex = lexemeList.getLexemeCeilingIndex(offset);
-						int endingIndex = lexemeList.getLexemeFloorIndex(offset + maxLineLength);
+					// read the last published lexemes so we don't wait on the parser
+					LexemeListSnapshot snapshot = lexemeList.getSnapshot();
+					int startingIndex = snapshot.getLexemeCeilingIndex(offset);
+					int endingIndex = snapshot.getLexemeFloorIndex(offset + maxLineLength);
 
-						if (startingIndex == -1 && endingIndex != -1)
-						{
-							startingIndex = endingIndex;
-						}
+					if (startingIndex == -1 && endingIndex != -1)
+					{
+						startingIndex = endingIndex;
+					}
 
-						if (endingIndex == -1 && startingIndex != -1)
-						{
-							endingIndex = startingIndex;
-						}
+					if (endingIndex == -1 && startingIndex != -1)
+					{
+						endingIndex = startingIndex;
+					}
 
-						if (startingIndex != -1 && endingIndex != -1)
-						{
-							lexemes = lexemeList.cloneRange(startingIndex, endingIndex);
-						}
+					if (startingIndex != -1 && endingIndex != -1)
+					{
+						lexemes = snapshot.cloneRange(startingIndex, endingIndex);
 					}
 
 					if (lexemes != null)
@@ -35,6 +35,7 @@
 package com.aptana.ide.editors.unified.errors;
 
 import java.util.ArrayList;
+import java.util.regex.Pattern;
 
 import com.aptana.ide.core.StringUtils;
 
@@ -49,6 +50,7 @@ public class ErrorDescriptor
 	private String _fileName;
 	private String _folderPath;
 	private int _severity = -1;
+	private volatile Pattern _pattern;
 
 	/**
 	 * Separates the fields
@@ -140,6 +142,7 @@ public class ErrorDescriptor
 	public void setMessage(String message)
 	{
 		this._message = message;
+		this._pattern = null;
 	}
 
 	/**
@@ -211,6 +214,7 @@ public class ErrorDescriptor
 		{
 			_message = vals[3];
 		}
+		_pattern = null;
 	}
 
 	/**
@@ -315,10 +319,57 @@ public class ErrorDescriptor
 
 		if (getMessage() != null && !StringUtils.EMPTY.equals(getMessage()))
 		{
-			return error.getMessage().matches(getMessage());
+			return getPattern().matcher(error.getMessage()).matches();
 		}
 
 		return false;
 	}
 
+	/**
+	 * Does this descriptor "match" an error that only has a message, the way error managers filter their messages
+	 * 
+	 * @param message
+	 * @return boolean
+	 */
+	public boolean matchesMessage(String message)
+	{
+		if (getFileName() != null && !StringUtils.EMPTY.equals(getFileName()))
+		{
+			return false;
+		}
+
+		if (getFolderPath() != null && !StringUtils.EMPTY.equals(getFolderPath()))
+		{
+			return false;
+		}
+
+		if (getSeverity() != NO_SEVERITY && getSeverity() != 0)
+		{
+			return false;
+		}
+
+		if (getMessage() != null && !StringUtils.EMPTY.equals(getMessage()))
+		{
+			return getPattern().matcher(message).matches();
+		}
+
+		return false;
+	}
+
+	/**
+	 * Returns the message as a pattern, compiled the first time it is needed
+	 * 
+	 * @return Pattern
+	 */
+	private Pattern getPattern()
+	{
+		Pattern pattern = _pattern;
+		if (pattern == null)
+		{
+			pattern = Pattern.compile(getMessage());
+			_pattern = pattern;
+		}
+		return pattern;
+	}
+
 }
@@ -36,6 +36,9 @@ package com.aptana.ide.editors.unified.errors;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
 
 import org.eclipse.core.resources.IMarker;
 import org.eclipse.jface.preference.IPreferenceStore;
@@ -64,7 +67,7 @@ import com.aptana.ide.editors.validator.ValidatorRef;
  */
 public class UnifiedErrorManager implements IErrorManager, IPropertyChangeListener
 {
-	ErrorDescriptor[] _errorDescriptors;
+	volatile ErrorDescriptor[] _errorDescriptors;
 
 	/**
 	 * fileService
@@ -73,7 +76,11 @@ public class UnifiedErrorManager implements IErrorManager, IPropertyChangeListen
 
 	String mimeType;
 	
-	ValidatorRef[] validators;
+	volatile ValidatorRef[] validators;
+
+	private ValidationScheduler.Run _run;
+
+	private IFileError[][] _lastResults;
 	
 	/**
 	 * The constructor.
@@ -92,6 +99,7 @@ public class UnifiedErrorManager implements IErrorManager, IPropertyChangeListen
 		}
 		
 		initializeValidators();
+		loadErrorDescriptors();
 	}
 
 	/**
@@ -104,10 +112,10 @@ public class UnifiedErrorManager implements IErrorManager, IPropertyChangeListen
 			return;
 		}
 
-		IFileSourceProvider sourceProvider = fileService.getSourceProvider();
+		final IFileSourceProvider sourceProvider = fileService.getSourceProvider();
 
-		String path = CoreUIUtils.getPathFromURI(sourceProvider.getSourceURI());
-		String sourceString = null;
+		final String path = CoreUIUtils.getPathFromURI(sourceProvider.getSourceURI());
+		final String sourceString;
 
 		try
 		{
@@ -121,8 +129,29 @@ public class UnifiedErrorManager implements IErrorManager, IPropertyChangeListen
 
 		if (sourceProvider instanceof DocumentSourceProvider)
 		{
-			IFileError[] errors = parseForErrors(path, sourceString, sourceProvider);
-			fileService.setFileErrors(errors);
+			synchronized (this)
+			{
+				// this version supersedes the one still being validated
+				if (_run != null)
+				{
+					_run.cancel();
+				}
+				_run = ValidationScheduler.getInstance().start(new Runnable()
+				{
+					public void run()
+					{
+						IFileError[] errors = parseForErrors(path, sourceString, sourceProvider);
+
+						synchronized (UnifiedErrorManager.this)
+						{
+							if (!ValidationScheduler.isCancelled())
+							{
+								fileService.setFileErrors(errors);
+							}
+						}
+					}
+				});
+			}
 		}
 	}
 
@@ -152,46 +181,143 @@ public class UnifiedErrorManager implements IErrorManager, IPropertyChangeListen
 
 
 	/**
-	 * parseForErrors
+	 * parseForErrors. The validators run in parallel on the validation pool, and their errors are merged in
+	 * validator order. During a validation run the errors are published as each validator finishes.
 	 * 
 	 * @param path
 	 * @param source
 	 * @param sourceProvider
 	 * @return IFileError[]
 	 */
-	public IFileError[] parseForErrors(String path, String source, IFileSourceProvider sourceProvider)
+	public IFileError[] parseForErrors(final String path, final String source, final IFileSourceProvider sourceProvider)
 	{
-		loadErrorDescriptors();
-		IFileError[] errors = new IFileError[0];
-		
-		UnifiedErrorReporter reporter = new UnifiedErrorReporter(sourceProvider);
-		reporter.addErrors(errors);
+		if (_errorDescriptors == null)
+		{
+			loadErrorDescriptors();
+		}
+		List<IFileError[]> results = new ArrayList<IFileError[]>();
 
-		if(validators != null)
+		ValidatorRef[] validators = this.validators;
+		if(validators != null && !ValidationScheduler.isCancelled())
 		{
+			final boolean showErrors = showErrors();
+			final boolean showWarnings = showWarnings();
+			final boolean showInfos = showInfos();
+			List<Callable<IFileError[]>> tasks = new ArrayList<Callable<IFileError[]>>(validators.length);
+
 			for(int i = 0; i < validators.length; i++)
 			{
-				ValidatorRef validatorRef = validators[i];
-				
-				try
+				final ValidatorRef validatorRef = validators[i];
+
+				tasks.add(new Callable<IFileError[]>()
 				{
-					errors = validatorRef.parseForErrors(path, source, sourceProvider, showErrors(), showWarnings(), showInfos());
+					public IFileError[] call()
+					{
+						try
+						{
+							return validatorRef.parseForErrors(path, source, sourceProvider, showErrors, showWarnings, showInfos);
+						}
+						catch(Exception ex)
+						{
+							IdeLog.logError(UnifiedEditorsPlugin.getDefault(), Messages.UnifiedErrorManager_ValidatorRefParseDelegationError, ex);
+							return null;
+						}
+					}
+				});
+			}
 
-				}
-				catch(Exception ex)
+			results = ValidationScheduler.getInstance().invokeAll(tasks, createErrorPublisher(tasks.size(), sourceProvider));
+		}
+		// subclasses may call this for a part of the document, so it does not use their merge
+		return mergeValidatorErrors(results, sourceProvider);
+	}
+
+	/**
+	 * Merges the results of the tasks that parseForErrors gives to the validation pool into the errors of the
+	 * document. Subclasses that split the document into other tasks merge them here, so that the errors published
+	 * while a run is going on look like its final errors.
+	 * 
+	 * @param results
+	 *            the errors of each task, null where a task has none
+	 * @param sourceProvider
+	 * @return IFileError[]
+	 */
+	protected IFileError[] mergeErrors(List<IFileError[]> results, IFileSourceProvider sourceProvider)
+	{
+		return mergeValidatorErrors(results, sourceProvider);
+	}
+
+	private IFileError[] mergeValidatorErrors(List<IFileError[]> results, IFileSourceProvider sourceProvider)
+	{
+		UnifiedErrorReporter reporter = new UnifiedErrorReporter(sourceProvider);
+
+		for (IFileError[] result : results)
+		{
+			if (result != null && result.length > 0)
+			{
+				reporter.addErrors(result);
+			}
+		}
+		return filterMessages(reporter.getErrors());
+	}
+
+	/**
+	 * Creates the listener that publishes the errors of a validation run as its validators finish
+	 * 
+	 * @param count
+	 *            the number of validators
+	 * @param sourceProvider
+	 * @return ValidationScheduler.IResultListener
+	 */
+	protected ValidationScheduler.IResultListener<IFileError[]> createErrorPublisher(int count,
+			IFileSourceProvider sourceProvider)
+	{
+		return new ErrorPublisher(count, sourceProvider);
+	}
+
+	/**
+	 * Publishes the errors of a validation run as its validators finish. Validators that are still running keep the
+	 * errors they found in the previous version, so that the first validator to finish does not clear them. Once the
+	 * last validator is done the run publishes the complete errors itself.
+	 */
+	private class ErrorPublisher implements ValidationScheduler.IResultListener<IFileError[]>
+	{
+		private final IFileSourceProvider _sourceProvider;
+		private final IFileError[][] _results;
+		private int _running;
+
+		ErrorPublisher(int count, IFileSourceProvider sourceProvider)
+		{
+			this._sourceProvider = sourceProvider;
+			this._results = new IFileError[count][];
+			this._running = count;
+
+			synchronized (UnifiedErrorManager.this)
+			{
+				if (_lastResults != null && _lastResults.length == count)
 				{
-					IdeLog.logError(UnifiedEditorsPlugin.getDefault(), Messages.UnifiedErrorManager_ValidatorRefParseDelegationError, ex);
+					System.arraycopy(_lastResults, 0, this._results, 0, count);
 				}
-				
-				if( errors != null & errors.length > 0)
+			}
+		}
+
+		/**
+		 * @see com.aptana.ide.editors.unified.errors.ValidationScheduler.IResultListener#taskFinished(int,
+		 *      java.lang.Object)
+		 */
+		public void taskFinished(int index, IFileError[] result)
+		{
+			synchronized (UnifiedErrorManager.this)
+			{
+				this._results[index] = result;
+				_lastResults = this._results.clone();
+
+				if (--this._running > 0 && !ValidationScheduler.isCancelled())
 				{
-					reporter.addErrors(errors);
+					fileService.setFileErrors(mergeErrors(Arrays.asList(this._results), this._sourceProvider));
 				}
-
 			}
 		}
-		errors = filterMessages(reporter.getErrors());
-		return errors;
 	}
 
 	private IFileError[] filterMessages(IFileError[] errors)
@@ -231,7 +357,7 @@ public class UnifiedErrorManager implements IErrorManager, IPropertyChangeListen
 
 	
 	/**
-	 * 
+	 * Loads the descriptors of ignored problems. Called when the preference changes rather than for every validation.
 	 */
 	private void loadErrorDescriptors()
 	{
@@ -251,19 +377,16 @@ public class UnifiedErrorManager implements IErrorManager, IPropertyChangeListen
 	 */
 	protected boolean isFiltered(int severity, String message)
 	{
-		if(_errorDescriptors == null)
+		ErrorDescriptor[] errorDescriptors = _errorDescriptors;
+		if(errorDescriptors == null)
 		{
 			return false;
 		}
 		
-		FileError fe = new FileError();
-		//fe.setSeverity(severity);
-		fe.setMessage(message);
-		
-		for (int i = 0; i < _errorDescriptors.length; i++)
+		for (int i = 0; i < errorDescriptors.length; i++)
 		{
-			ErrorDescriptor ed = _errorDescriptors[i];
-			if(ed.matchesError(fe))
+			ErrorDescriptor ed = errorDescriptors[i];
+			if(ed.matchesMessage(message))
 			{
 				return true;
 			}
@@ -290,6 +413,7 @@ public class UnifiedErrorManager implements IErrorManager, IPropertyChangeListen
 
 		if (IPreferenceConstants.IGNORE_PROBLEMS.equals(property) && fileService != null)
 		{
+			loadErrorDescriptors();
 			fileService.forceContentChangedEvent();
 		}
 		else if (IPreferenceConstants.VALIDATORS_LIST.equals(property))
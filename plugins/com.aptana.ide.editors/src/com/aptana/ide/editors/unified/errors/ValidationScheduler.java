@@ -0,0 +1,321 @@
+/**
+ * This file Copyright (c) 2005-2008 Aptana, Inc. This program is
+ * dual-licensed under both the Aptana Public License and the GNU General
+ * Public license. You may elect to use one or the other of these licenses.
+ * 
+ * This program is distributed in the hope that it will be useful, but
+ * AS-IS and WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, TITLE, or
+ * NONINFRINGEMENT. Redistribution, except as permitted by whichever of
+ * the GPL or APL you select, is prohibited.
+ *
+ * 1. For the GPL license (GPL), you can redistribute and/or modify this
+ * program under the terms of the GNU General Public License,
+ * Version 3, as published by the Free Software Foundation.  You should
+ * have received a copy of the GNU General Public License, Version 3 along
+ * with this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * Aptana provides a special exception to allow redistribution of this file
+ * with certain other free and open source software ("FOSS") code and certain additional terms
+ * pursuant to Section 7 of the GPL. You may view the exception and these
+ * terms on the web at http://www.aptana.com/legal/gpl/.
+ * 
+ * 2. For the Aptana Public License (APL), this program and the
+ * accompanying materials are made available under the terms of the APL
+ * v1.0 which accompanies this distribution, and is available at
+ * http://www.aptana.com/legal/apl/.
+ * 
+ * You may view the GPL, Aptana's exception and additional terms, and the
+ * APL in the file titled license.html at the root of the corresponding
+ * plugin containing this source file.
+ * 
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.ide.editors.unified.errors;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.aptana.ide.core.IdeLog;
+import com.aptana.ide.editors.UnifiedEditorsPlugin;
+
+/**
+ * Runs validation on a shared pool of worker threads. A run validates one version of a document. When a newer version
+ * arrives, the error manager cancels the run in progress, which then skips the validators it has not started and does
+ * not publish its errors. The independent validators of a run are spread over the pool, and the outermost fan-out of a
+ * run reports each result as it comes in, so that errors can be shown before the slowest validator is done.
+ * 
+ * @author agent (agent@local)
+ */
+public final class ValidationScheduler
+{
+	/**
+	 * System property with the number of validation threads
+	 */
+	public static final String THREADS_PROPERTY = "com.aptana.ide.editors.validationThreads"; //$NON-NLS-1$
+
+	/**
+	 * The number of validation threads. It defaults to the number of processors, but is at least two so that a long
+	 * validation on a single processor machine does not hold back the next editor's.
+	 */
+	private static final int THREADS = Integer.getInteger(THREADS_PROPERTY,
+			Math.max(2, Runtime.getRuntime().availableProcessors())).intValue();
+
+	private static final ThreadLocal<Run> CURRENT_RUN = new ThreadLocal<Run>();
+
+	private static ValidationScheduler instance;
+
+	private ExecutorService _executor;
+
+	/**
+	 * Receives the results of the outermost {@link ValidationScheduler#invokeAll(List, IResultListener)} of a run as
+	 * its tasks finish
+	 * 
+	 * @param <T>
+	 */
+	public interface IResultListener<T>
+	{
+		/**
+		 * Called on the thread that ran the task, unless the run has been cancelled
+		 * 
+		 * @param index
+		 *            the index of the task in the list given to invokeAll
+		 * @param result
+		 */
+		void taskFinished(int index, T result);
+	}
+
+	/**
+	 * A validation run of one document version
+	 */
+	static final class Run
+	{
+		private volatile boolean _cancelled;
+		private boolean _fannedOut;
+
+		/**
+		 * Cancels the run. Validators that are running finish, but their errors are dropped.
+		 */
+		void cancel()
+		{
+			this._cancelled = true;
+		}
+
+		/**
+		 * isCancelled
+		 * 
+		 * @return boolean
+		 */
+		boolean isCancelled()
+		{
+			return this._cancelled;
+		}
+
+		/**
+		 * Returns true for the first fan-out of the run only. Later fan-outs are nested in the tasks of the first.
+		 * 
+		 * @return boolean
+		 */
+		synchronized boolean fanOut()
+		{
+			boolean first = !this._fannedOut;
+
+			this._fannedOut = true;
+
+			return first;
+		}
+	}
+
+	private ValidationScheduler()
+	{
+		this._executor = new ThreadPoolExecutor(THREADS, THREADS, 0L, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<Runnable>(), new ThreadFactory()
+				{
+					private int _count;
+
+					public synchronized Thread newThread(Runnable runnable)
+					{
+						Thread thread = new Thread(runnable, "Aptana: Validator " + (++this._count)); //$NON-NLS-1$
+						thread.setDaemon(true);
+						thread.setPriority(Thread.MIN_PRIORITY);
+						return thread;
+					}
+				});
+	}
+
+	/**
+	 * Returns the shared scheduler
+	 * 
+	 * @return ValidationScheduler
+	 */
+	public static synchronized ValidationScheduler getInstance()
+	{
+		if (instance == null)
+		{
+			instance = new ValidationScheduler();
+		}
+
+		return instance;
+	}
+
+	/**
+	 * Starts a run on the pool
+	 * 
+	 * @param validation
+	 * @return the run, to be cancelled when a newer document version arrives
+	 */
+	Run start(final Runnable validation)
+	{
+		final Run run = new Run();
+
+		this._executor.execute(new Runnable()
+		{
+			public void run()
+			{
+				if (run.isCancelled())
+				{
+					return;
+				}
+				CURRENT_RUN.set(run);
+				try
+				{
+					validation.run();
+				}
+				finally
+				{
+					CURRENT_RUN.remove();
+				}
+			}
+		});
+
+		return run;
+	}
+
+	/**
+	 * Returns the number of validation threads
+	 * 
+	 * @return int
+	 */
+	static int getThreadCount()
+	{
+		return THREADS;
+	}
+
+	/**
+	 * Returns true if the calling thread validates for a run that has been cancelled
+	 * 
+	 * @return boolean
+	 */
+	public static boolean isCancelled()
+	{
+		Run run = CURRENT_RUN.get();
+		return run != null && run.isCancelled();
+	}
+
+	/**
+	 * Calls the tasks in parallel and returns their results in task order. A task that has not been picked up by a
+	 * worker when its result is needed runs on the calling thread, so callers that are workers themselves never wait
+	 * for a free worker. Tasks that have not started when the run is cancelled are skipped and return null.
+	 * 
+	 * @param <T>
+	 * @param tasks
+	 * @return List
+	 */
+	public <T> List<T> invokeAll(List<Callable<T>> tasks)
+	{
+		return invokeAll(tasks, null);
+	}
+
+	/**
+	 * Calls the tasks in parallel like {@link #invokeAll(List)}. When this is the outermost fan-out of a validation
+	 * run, the listener hears of each result as soon as its task finishes. Nested fan-outs and calls outside of a run
+	 * do not report, since their results only make up a part of a task's result.
+	 * 
+	 * @param <T>
+	 * @param tasks
+	 * @param listener
+	 *            the listener to tell of each result, or null
+	 * @return List
+	 */
+	public <T> List<T> invokeAll(List<Callable<T>> tasks, IResultListener<T> listener)
+	{
+		final Run run = CURRENT_RUN.get();
+		final IResultListener<T> resultListener = (run != null && run.fanOut()) ? listener : null;
+		List<FutureTask<T>> futures = new ArrayList<FutureTask<T>>(tasks.size());
+
+		for (int i = 0; i < tasks.size(); i++)
+		{
+			final Callable<T> task = tasks.get(i);
+			final int index = i;
+
+			futures.add(new FutureTask<T>(new Callable<T>()
+			{
+				public T call() throws Exception
+				{
+					if (run != null && run.isCancelled())
+					{
+						return null;
+					}
+					Run previous = CURRENT_RUN.get();
+					CURRENT_RUN.set(run);
+					try
+					{
+						T result = task.call();
+
+						if (resultListener != null && !run.isCancelled())
+						{
+							resultListener.taskFinished(index, result);
+						}
+						return result;
+					}
+					finally
+					{
+						CURRENT_RUN.set(previous);
+					}
+				}
+			}));
+		}
+
+		// the calling thread runs the first task itself
+		for (int i = 1; i < futures.size(); i++)
+		{
+			this._executor.execute(futures.get(i));
+		}
+
+		List<T> results = new ArrayList<T>(futures.size());
+
+		for (FutureTask<T> future : futures)
+		{
+			// does nothing if a worker has already started the task
+			future.run();
+
+			T result = null;
+
+			try
+			{
+				result = future.get();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+			catch (ExecutionException e)
+			{
+				IdeLog.logError(UnifiedEditorsPlugin.getDefault(),
+						Messages.UnifiedErrorManager_ValidatorRefParseDelegationError, e.getCause());
+			}
+			results.add(result);
+		}
+
+		return results;
+	}
+}
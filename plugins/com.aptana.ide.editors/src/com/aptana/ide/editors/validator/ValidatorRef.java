@@ -93,7 +93,8 @@ public class ValidatorRef implements IValidator
 	}
 	
 	/**
-	 * This method will be used to lazily instantiate actual validator class
+	 * This method will be used to lazily instantiate actual validator class. Validators may keep the state of a run in
+	 * fields, so one validator only checks one document at a time.
 	 * @param path
 	 * @param source
 	 * @param sourceProvider
@@ -102,7 +103,7 @@ public class ValidatorRef implements IValidator
 	 * @param collectInfos 
 	 * @return return parse errors and warnings
 	 */
-	public IFileError[] parseForErrors(String path, String source, IFileSourceProvider sourceProvider, 
+	public synchronized IFileError[] parseForErrors(String path, String source, IFileSourceProvider sourceProvider, 
 								boolean collectErrors, boolean collectWarnings, boolean collectInfos)
 	{	
 		IFileError[] errors = null;
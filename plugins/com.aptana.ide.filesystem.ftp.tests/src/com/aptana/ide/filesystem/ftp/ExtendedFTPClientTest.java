@@ -0,0 +1,236 @@
+package com.aptana.ide.filesystem.ftp;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import com.enterprisedt.net.ftp.FTPConnectMode;
+import com.enterprisedt.net.ftp.FTPException;
+import com.enterprisedt.net.ftp.FTPFile;
+import com.enterprisedt.net.ftp.FTPReply;
+
+/**
+ * Lists directories with MLSD against a minimal server on the loopback interface
+ *
+ * @author agent (agent@local)
+ *
+ */
+public class ExtendedFTPClientTest extends TestCase {
+
+	private static final String[] LISTING = new String[] {
+		"type=cdir;modify=20090102030405;UNIX.mode=0755; /www", //$NON-NLS-1$
+		"type=pdir;modify=20090102030405;UNIX.mode=0755; /", //$NON-NLS-1$
+		"type=file;size=120;modify=20090102030405;UNIX.mode=0644; index.html", //$NON-NLS-1$
+		"type=dir;modify=20090102030405;UNIX.mode=0755; images" //$NON-NLS-1$
+	};
+
+	private Server server;
+	private ExtendedFTPClient client;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		server = new Server();
+		server.listings.put("/www", LISTING); //$NON-NLS-1$
+		server.listings.put("/empty", new String[0]); //$NON-NLS-1$
+		server.start();
+		client = new ExtendedFTPClient();
+		client.setRemoteAddr(InetAddress.getByName("127.0.0.1")); //$NON-NLS-1$
+		client.setRemotePort(server.getPort());
+		client.setTimeout(10000);
+		client.setConnectMode(FTPConnectMode.PASV);
+		client.connect();
+		client.login("user", "secret"); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		try {
+			client.quitImmediately();
+		} catch (Exception e) {
+		}
+		server.close();
+		super.tearDown();
+	}
+
+	public void testListing() throws Exception {
+		String[] entries = client.mlsd("/www"); //$NON-NLS-1$
+		assertEquals(Arrays.asList(LISTING), Arrays.asList(entries));
+		List<String> names = new ArrayList<String>();
+		for (String entry : entries) {
+			FTPFile file = MLSXParser.parse(entry);
+			names.add(file.getName() + (file.isDir() ? "/" : "")); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		assertEquals(Arrays.asList(new String[] { "./", "../", "index.html", "images/" }), names); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+	}
+
+	public void testEmptyListing() throws Exception {
+		assertEquals(0, client.mlsd("/empty").length); //$NON-NLS-1$
+		// sent without opening the data connection
+		server.listings.put("/none", null); //$NON-NLS-1$
+		assertEquals(0, client.mlsd("/none").length); //$NON-NLS-1$
+		assertEquals(Arrays.asList(LISTING), Arrays.asList(client.mlsd("/www"))); //$NON-NLS-1$
+	}
+
+	public void testMissingDirectory() throws Exception {
+		try {
+			client.mlsd("/missing"); //$NON-NLS-1$
+			fail();
+		} catch (FTPException e) {
+			assertEquals(550, e.getReplyCode());
+		}
+		assertEquals(Arrays.asList(LISTING), Arrays.asList(client.mlsd("/www"))); //$NON-NLS-1$
+	}
+
+	public void testFallbackWhenMLSDRejected() throws Exception {
+		server.mlsdSupported = false;
+		try {
+			client.mlsd("/www"); //$NON-NLS-1$
+			fail();
+		} catch (FTPException e) {
+			// the file manager switches to STAT and LIST on these
+			assertEquals(500, e.getReplyCode());
+		}
+		// the connection stays usable for the fallback listing
+		FTPReply reply = client.sendCommand("STAT /www"); //$NON-NLS-1$
+		assertEquals("213", reply.getReplyCode()); //$NON-NLS-1$
+		assertEquals(Arrays.asList(Server.LIST), Arrays.asList(reply.getReplyData()));
+		assertEquals(Arrays.asList(Server.LIST), Arrays.asList(client.dir("/www", true))); //$NON-NLS-1$
+	}
+
+	/**
+	 * Just enough of an FTP server to log in, list directories and close
+	 */
+	private static class Server extends Thread {
+
+		static final String[] LIST = new String[] {
+			"-rw-r--r--   1 joe      web           120 Jan  2  2009 index.html", //$NON-NLS-1$
+			"drwxr-xr-x   2 joe      web          4096 Jan  2  2009 images" //$NON-NLS-1$
+		};
+
+		final Map<String, String[]> listings = Collections.synchronizedMap(new HashMap<String, String[]>());
+		volatile boolean mlsdSupported = true;
+
+		private final ServerSocket serverSocket;
+		private ServerSocket dataServerSocket;
+		private Socket socket;
+
+		Server() throws IOException {
+			super("FTP test server"); //$NON-NLS-1$
+			setDaemon(true);
+			serverSocket = new ServerSocket(0, 1, InetAddress.getByName("127.0.0.1")); //$NON-NLS-1$
+		}
+
+		int getPort() {
+			return serverSocket.getLocalPort();
+		}
+
+		public void run() {
+			try {
+				socket = serverSocket.accept();
+				BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8")); //$NON-NLS-1$
+				Writer writer = new OutputStreamWriter(socket.getOutputStream(), "UTF-8"); //$NON-NLS-1$
+				reply(writer, "220 ready"); //$NON-NLS-1$
+				String line;
+				while ((line = reader.readLine()) != null) {
+					int space = line.indexOf(' ');
+					String command = (space > 0 ? line.substring(0, space) : line).toUpperCase();
+					String argument = space > 0 ? line.substring(space + 1) : null;
+					if ("USER".equals(command)) { //$NON-NLS-1$
+						reply(writer, "331 password required"); //$NON-NLS-1$
+					} else if ("PASS".equals(command)) { //$NON-NLS-1$
+						reply(writer, "230 logged in"); //$NON-NLS-1$
+					} else if ("TYPE".equals(command)) { //$NON-NLS-1$
+						reply(writer, "200 type set"); //$NON-NLS-1$
+					} else if ("PASV".equals(command)) { //$NON-NLS-1$
+						closeDataServerSocket();
+						dataServerSocket = new ServerSocket(0, 1, InetAddress.getByName("127.0.0.1")); //$NON-NLS-1$
+						int port = dataServerSocket.getLocalPort();
+						reply(writer, "227 Entering Passive Mode (127,0,0,1," + (port >> 8) + "," + (port & 0xff) + ")"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+					} else if ("MLSD".equals(command) && mlsdSupported) { //$NON-NLS-1$
+						if (!listings.containsKey(argument)) {
+							reply(writer, "550 not found"); //$NON-NLS-1$
+						} else if (listings.get(argument) == null) {
+							reply(writer, "226 nothing to list"); //$NON-NLS-1$
+						} else {
+							send(writer, listings.get(argument));
+						}
+					} else if ("LIST".equals(command)) { //$NON-NLS-1$
+						send(writer, LIST);
+					} else if ("STAT".equals(command)) { //$NON-NLS-1$
+						StringBuffer sb = new StringBuffer("213-status of " + argument + "\r\n"); //$NON-NLS-1$ //$NON-NLS-2$
+						for (String entry : LIST) {
+							sb.append(entry).append("\r\n"); //$NON-NLS-1$
+						}
+						sb.append("213 end"); //$NON-NLS-1$
+						reply(writer, sb.toString());
+					} else if ("QUIT".equals(command)) { //$NON-NLS-1$
+						reply(writer, "221 bye"); //$NON-NLS-1$
+						break;
+					} else {
+						reply(writer, "500 unknown command"); //$NON-NLS-1$
+					}
+				}
+			} catch (IOException e) {
+			} finally {
+				close();
+			}
+		}
+
+		private void send(Writer writer, String[] lines) throws IOException {
+			reply(writer, "150 opening data connection"); //$NON-NLS-1$
+			Socket dataSocket = dataServerSocket.accept();
+			try {
+				OutputStream out = dataSocket.getOutputStream();
+				for (String line : lines) {
+					out.write((line + "\r\n").getBytes("UTF-8")); //$NON-NLS-1$ //$NON-NLS-2$
+				}
+				out.flush();
+			} finally {
+				dataSocket.close();
+				closeDataServerSocket();
+			}
+			reply(writer, "226 transfer complete"); //$NON-NLS-1$
+		}
+
+		private static void reply(Writer writer, String reply) throws IOException {
+			writer.write(reply + "\r\n"); //$NON-NLS-1$
+			writer.flush();
+		}
+
+		private void closeDataServerSocket() {
+			if (dataServerSocket != null) {
+				try {
+					dataServerSocket.close();
+				} catch (IOException e) {
+				}
+				dataServerSocket = null;
+			}
+		}
+
+		void close() {
+			closeDataServerSocket();
+			try {
+				serverSocket.close();
+				if (socket != null) {
+					socket.close();
+				}
+			} catch (IOException e) {
+			}
+		}
+	}
+}
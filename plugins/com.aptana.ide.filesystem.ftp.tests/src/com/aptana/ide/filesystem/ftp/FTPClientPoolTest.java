@@ -0,0 +1,256 @@
+package com.aptana.ide.filesystem.ftp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+
+import com.enterprisedt.net.ftp.FTPClient;
+
+/**
+ * Checks out sessions of an FTPClientPool from several threads, with control connections that never touch the network
+ *
+ * @author agent (agent@local)
+ *
+ */
+public class FTPClientPoolTest extends TestCase {
+
+	private static final long KEEP_ALIVE = 60000;
+	private static final long TIMEOUT = 30;
+
+	private final AtomicInteger opened = new AtomicInteger();
+	private FTPClientPool pool;
+
+	public void testNestedCheckoutReturnsSameSession() throws Exception {
+		pool = createPool(2);
+		FTPClientPool.Session session = pool.checkout(new NullProgressMonitor());
+		assertTrue(session.isPrimary());
+		assertSame(session, pool.checkout(new NullProgressMonitor()));
+		pool.checkin();
+		assertSame(session, pool.current());
+		pool.checkin();
+		assertNull(pool.current());
+		assertEquals(0, opened.get());
+	}
+
+	public void testSessionsBounded() throws Exception {
+		pool = createPool(3);
+		final AtomicInteger inUse = new AtomicInteger();
+		final AtomicInteger peak = new AtomicInteger();
+		final List<Throwable> failures = new ArrayList<Throwable>();
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < 12; ++i) {
+			threads.add(new Thread() {
+				public void run() {
+					try {
+						for (int j = 0; j < 20; ++j) {
+							pool.checkout(new NullProgressMonitor());
+							int now = inUse.incrementAndGet();
+							synchronized (peak) {
+								peak.set(Math.max(peak.get(), now));
+							}
+							Thread.sleep(1);
+							inUse.decrementAndGet();
+							pool.checkin();
+						}
+					} catch (Throwable e) {
+						synchronized (failures) {
+							failures.add(e);
+						}
+					}
+				}
+			});
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join(TIMEOUT * 1000);
+			assertFalse("checkout did not finish", thread.isAlive()); //$NON-NLS-1$
+		}
+		assertEquals(failures.toString(), 0, failures.size());
+		assertTrue("peak " + peak.get(), peak.get() <= 3); //$NON-NLS-1$
+		// the primary session is one of the three
+		assertTrue("opened " + opened.get(), opened.get() <= 2); //$NON-NLS-1$
+	}
+
+	public void testInterruptedWaitDoesNotTakeSession() throws Exception {
+		pool = createPool(1);
+		pool.checkout(new NullProgressMonitor());
+		final CountDownLatch waiting = new CountDownLatch(1);
+		final Object[] outcome = new Object[2];
+		Thread thread = new Thread() {
+			public void run() {
+				waiting.countDown();
+				try {
+					outcome[0] = pool.checkout(new NullProgressMonitor());
+				} catch (Throwable e) {
+					outcome[0] = e;
+				}
+				outcome[1] = Boolean.valueOf(Thread.currentThread().isInterrupted());
+			}
+		};
+		thread.start();
+		assertTrue(waiting.await(TIMEOUT, TimeUnit.SECONDS));
+		Thread.sleep(100);
+		thread.interrupt();
+		thread.join(TIMEOUT * 1000);
+		assertFalse(thread.isAlive());
+		assertTrue(String.valueOf(outcome[0]), outcome[0] instanceof OperationCanceledException);
+		assertEquals(Boolean.TRUE, outcome[1]);
+		pool.checkin();
+
+		// the interrupted thread must not have left an extra permit behind
+		assertSingleHolder();
+	}
+
+	public void testCanceledMonitorStopsWaiting() throws Exception {
+		pool = createPool(1);
+		pool.checkout(new NullProgressMonitor());
+		final IProgressMonitor monitor = new NullProgressMonitor();
+		final Object[] outcome = new Object[1];
+		Thread thread = new Thread() {
+			public void run() {
+				try {
+					outcome[0] = pool.checkout(monitor);
+				} catch (Throwable e) {
+					outcome[0] = e;
+				}
+			}
+		};
+		thread.start();
+		Thread.sleep(100);
+		monitor.setCanceled(true);
+		thread.join(TIMEOUT * 1000);
+		assertFalse(thread.isAlive());
+		assertTrue(String.valueOf(outcome[0]), outcome[0] instanceof OperationCanceledException);
+		pool.checkin();
+		assertSingleHolder();
+	}
+
+	public void testDetachedSessionReleasedByOtherThread() throws Exception {
+		pool = createPool(1);
+		final FTPClientPool.Session session = pool.checkout(new NullProgressMonitor());
+		assertSame(session, pool.detach());
+		assertNull(pool.current());
+		Thread thread = new Thread() {
+			public void run() {
+				pool.release(session);
+			}
+		};
+		thread.start();
+		thread.join(TIMEOUT * 1000);
+		assertSame(session, pool.checkout(new NullProgressMonitor()));
+		pool.checkin();
+	}
+
+	public void testCloseQuitsIdleSessions() throws Exception {
+		pool = createPool(2);
+		final FTPClientPool.Session[] second = new FTPClientPool.Session[1];
+		FTPClientPool.Session primary = pool.checkout(new NullProgressMonitor());
+		Thread thread = new Thread() {
+			public void run() {
+				try {
+					second[0] = pool.checkout(new NullProgressMonitor());
+					pool.checkin();
+				} catch (CoreException e) {
+					fail(e.getMessage());
+				}
+			}
+		};
+		thread.start();
+		thread.join(TIMEOUT * 1000);
+		assertNotNull(second[0]);
+		assertFalse(second[0].isPrimary());
+		pool.checkin();
+
+		pool.close();
+		assertFalse(second[0].ftpClient.connected());
+		// the primary session is kept for the manager to reconnect
+		assertSame(primary, pool.checkout(new NullProgressMonitor()));
+		pool.checkin();
+	}
+
+	private FTPClientPool createPool(int maxSessions) {
+		FTPClientPool.ISessionFactory factory = new FTPClientPool.ISessionFactory() {
+			public boolean canOpenSession() {
+				return true;
+			}
+
+			public FTPClient openSession(IProgressMonitor monitor) {
+				opened.incrementAndGet();
+				return new StandInClient();
+			}
+		};
+		return new FTPClientPool(factory, new StandInClient(), maxSessions, KEEP_ALIVE, KEEP_ALIVE);
+	}
+
+	/**
+	 * Checks that two threads cannot hold a session of a single session pool at the same time
+	 * @throws Exception
+	 */
+	private void assertSingleHolder() throws Exception {
+		final AtomicInteger inUse = new AtomicInteger();
+		final AtomicInteger peak = new AtomicInteger();
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < 4; ++i) {
+			threads.add(new Thread() {
+				public void run() {
+					try {
+						for (int j = 0; j < 10; ++j) {
+							pool.checkout(new NullProgressMonitor());
+							int now = inUse.incrementAndGet();
+							synchronized (peak) {
+								peak.set(Math.max(peak.get(), now));
+							}
+							Thread.sleep(1);
+							inUse.decrementAndGet();
+							pool.checkin();
+						}
+					} catch (Exception e) {
+						peak.set(-1);
+					}
+				}
+			});
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join(TIMEOUT * 1000);
+		}
+		assertEquals(1, peak.get());
+		assertEquals(0, opened.get());
+	}
+
+	/**
+	 * A control connection that is always connected until it quits
+	 */
+	private static class StandInClient extends FTPClient {
+
+		private volatile boolean connected = true;
+
+		public boolean connected() {
+			return connected;
+		}
+
+		public void noOperation() {
+		}
+
+		public void quit() {
+			connected = false;
+		}
+
+		public void quitImmediately() {
+			connected = false;
+		}
+	}
+}
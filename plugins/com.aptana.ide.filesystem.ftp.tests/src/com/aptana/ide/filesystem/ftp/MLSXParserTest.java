@@ -0,0 +1,118 @@
+package com.aptana.ide.filesystem.ftp;
+
+import java.text.ParseException;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import junit.framework.TestCase;
+
+import com.enterprisedt.net.ftp.FTPFile;
+
+/**
+ * Parses MLSD and MLST entries as sent by various servers
+ *
+ * @author agent (agent@local)
+ *
+ */
+public class MLSXParserTest extends TestCase {
+
+	public void testFile() throws Exception {
+		FTPFile file = MLSXParser.parse("type=file;size=30000;modify=20090102030405;perm=adfrw;UNIX.mode=0644;UNIX.owner=joe;UNIX.group=web; index.html"); //$NON-NLS-1$
+		assertEquals("index.html", file.getName()); //$NON-NLS-1$
+		assertFalse(file.isDir());
+		assertFalse(file.isLink());
+		assertEquals(30000, file.size());
+		assertEquals(utc(2009, 1, 2, 3, 4, 5, 0), file.lastModified().getTime());
+		assertEquals("-rw-r--r--", file.getPermissions()); //$NON-NLS-1$
+		assertEquals("joe", file.getOwner()); //$NON-NLS-1$
+		assertEquals("web", file.getGroup()); //$NON-NLS-1$
+	}
+
+	public void testDirectory() throws Exception {
+		FTPFile file = MLSXParser.parse("Type=DIR;Modify=20091231235959.5;UNIX.mode=0755; my folder"); //$NON-NLS-1$
+		assertEquals("my folder", file.getName()); //$NON-NLS-1$
+		assertTrue(file.isDir());
+		assertEquals(utc(2009, 12, 31, 23, 59, 59, 500), file.lastModified().getTime());
+		assertEquals("drwxr-xr-x", file.getPermissions()); //$NON-NLS-1$
+	}
+
+	public void testCurrentAndParentDirectories() throws Exception {
+		FTPFile current = MLSXParser.parse("type=cdir;modify=20090102030405; /home/joe"); //$NON-NLS-1$
+		assertEquals(".", current.getName()); //$NON-NLS-1$
+		assertTrue(current.isDir());
+		FTPFile parent = MLSXParser.parse("type=pdir;modify=20090102030405; /home"); //$NON-NLS-1$
+		assertEquals("..", parent.getName()); //$NON-NLS-1$
+		assertTrue(parent.isDir());
+	}
+
+	public void testSymbolicLink() throws Exception {
+		FTPFile file = MLSXParser.parse("type=OS.unix=slink:/var/www;size=8; www"); //$NON-NLS-1$
+		assertEquals("www", file.getName()); //$NON-NLS-1$
+		assertTrue(file.isLink());
+		assertEquals("/var/www", file.getLinkedName()); //$NON-NLS-1$
+	}
+
+	public void testMLSTReplyLine() throws Exception {
+		// MLST sends the entry on a line of its own that starts with a space, and the full path as the name
+		FTPFile file = MLSXParser.parse(" type=file;size=5;modify=20090102030405; /www/a b.txt"); //$NON-NLS-1$
+		assertEquals("/www/a b.txt", file.getName()); //$NON-NLS-1$
+		assertEquals(5, file.size());
+	}
+
+	public void testNameWithSemicolons() throws Exception {
+		FTPFile file = MLSXParser.parse("type=file;size=1; a; b;c"); //$NON-NLS-1$
+		assertEquals("a; b;c", file.getName()); //$NON-NLS-1$
+	}
+
+	public void testPermissionsFromPermFact() throws Exception {
+		assertEquals("-rw-------", MLSXParser.parse("type=file;perm=rw; f").getPermissions()); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals("-r--------", MLSXParser.parse("type=file;perm=r; f").getPermissions()); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals("drwx------", MLSXParser.parse("type=dir;perm=flcdmpe; d").getPermissions()); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals("dr-x------", MLSXParser.parse("type=dir;perm=el; d").getPermissions()); //$NON-NLS-1$ //$NON-NLS-2$
+		// UNIX.mode wins over perm
+		assertEquals("-rwxrwxrwx", MLSXParser.parse("type=file;perm=r;UNIX.mode=0777; f").getPermissions()); //$NON-NLS-1$ //$NON-NLS-2$
+		assertNull(MLSXParser.parse("type=file; f").getPermissions()); //$NON-NLS-1$
+	}
+
+	public void testNumericOwner() throws Exception {
+		FTPFile file = MLSXParser.parse("type=file;UNIX.uid=1000;UNIX.gid=100; f"); //$NON-NLS-1$
+		assertEquals("1000", file.getOwner()); //$NON-NLS-1$
+		assertEquals("100", file.getGroup()); //$NON-NLS-1$
+		file = MLSXParser.parse("type=file;UNIX.uid=1000;UNIX.owner=joe;UNIX.gid=100;UNIX.group=web; f"); //$NON-NLS-1$
+		assertEquals("joe", file.getOwner()); //$NON-NLS-1$
+		assertEquals("web", file.getGroup()); //$NON-NLS-1$
+	}
+
+	public void testUnknownAndBadFactsIgnored() throws Exception {
+		FTPFile file = MLSXParser.parse("type=file;size=big;unique=801U1A;media-type=text/plain;novalue; f"); //$NON-NLS-1$
+		assertEquals("f", file.getName()); //$NON-NLS-1$
+		assertFalse(file.isDir());
+	}
+
+	public void testNoFacts() throws Exception {
+		assertEquals("plain", MLSXParser.parse("plain").getName()); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	public void testBadEntries() {
+		assertParseFails(""); //$NON-NLS-1$
+		assertParseFails("   "); //$NON-NLS-1$
+		assertParseFails("type=file;modify=2009; f"); //$NON-NLS-1$
+		assertParseFails("type=file;modify=2009010203040x; f"); //$NON-NLS-1$
+	}
+
+	private static void assertParseFails(String entry) {
+		try {
+			MLSXParser.parse(entry);
+			fail(entry);
+		} catch (ParseException e) {
+		}
+	}
+
+	private static long utc(int year, int month, int day, int hour, int minute, int second, int millisecond) {
+		Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC")); //$NON-NLS-1$
+		calendar.clear();
+		calendar.set(year, month - 1, day, hour, minute, second);
+		calendar.set(Calendar.MILLISECOND, millisecond);
+		return calendar.getTimeInMillis();
+	}
+}
@@ -0,0 +1,39 @@
+package com.aptana.ide.filesystem.ftp.tests;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import com.aptana.ide.filesystem.ftp.ExtendedFTPClientTest;
+import com.aptana.ide.filesystem.ftp.FTPClientPoolTest;
+import com.aptana.ide.filesystem.ftp.MLSXParserTest;
+
+/**
+ * @author agent (agent@local)
+ */
+public final class AllTests
+{
+	/**
+	 * AllTests
+	 */
+	private AllTests()
+	{
+	}
+
+	/**
+	 * suite
+	 * 
+	 * @return Returns a group of unit tests
+	 */
+	public static Test suite()
+	{
+		TestSuite suite = new TestSuite("Tests for com.aptana.ide.filesystem.ftp.tests"); //$NON-NLS-1$
+
+		// $JUnit-BEGIN$
+		suite.addTestSuite(ExtendedFTPClientTest.class);
+		suite.addTestSuite(FTPClientPoolTest.class);
+		suite.addTestSuite(MLSXParserTest.class);
+		// $JUnit-END$
+
+		return suite;
+	}
+}
@@ -42,7 +42,16 @@ import java.io.OutputStream;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Pattern;
 
 import org.eclipse.core.filesystem.EFS;
@@ -51,6 +60,7 @@ import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Status;
@@ -61,15 +71,16 @@ import com.aptana.ide.core.URLEncoder;
 import com.aptana.ide.core.io.CoreIOPlugin;
 import com.aptana.ide.core.io.InfiniteProgressMonitor;
 import com.aptana.ide.core.io.vfs.ExtendedFileInfo;
-import com.aptana.ide.core.io.vfs.IConnectionFileManager;
+import com.aptana.ide.core.io.vfs.IConnectionFileManagerExtension;
 import com.aptana.ide.core.io.vfs.IExtendedFileInfo;
 import com.aptana.ide.core.io.vfs.IExtendedFileStore;
+import com.aptana.ide.core.io.vfs.MetadataCache;
 
 /**
  * @author Max Stepanov
  *
  */
-public abstract class BaseFTPConnectionFileManager implements IConnectionFileManager {
+public abstract class BaseFTPConnectionFileManager implements IConnectionFileManagerExtension {
 
 	protected static final int TIMEOUT = 20000;
 	protected static final int RETRY = 3;
@@ -78,6 +89,11 @@ public abstract class BaseFTPConnectionFileManager implements IConnectionFileMan
 	protected static final int TRANSFER_BUFFER_SIZE = 32768;
 	protected static final int CHECK_CONNECTION_TIMEOUT = 30000;
 	protected static final int CACHE_TTL = 60000; /* 1min */
+	protected static final int MISSING_CACHE_TTL = 10000;
+	protected static final int CACHE_SIZE = 4 * 1024 * 1024; /* 4MB */
+	protected static final int MAX_CONNECTIONS = 4;
+	protected static final int IDLE_CONNECTION_TIMEOUT = 300000; /* 5min */
+	protected static final int CANCEL_CHECK_INTERVAL = 500;
 	protected static final String TMP_UPLOAD_PREFIX = ".tmp_upload."; //$NON-NLS-1$
 	protected static final Pattern PASS_COMMAND_PATTERN = Pattern.compile("^(.*PASS ).+$");
 
@@ -88,10 +104,12 @@ public abstract class BaseFTPConnectionFileManager implements IConnectionFileMan
 	protected IPath basePath;
 	protected String authId;
 	
-	private long lastOperationTime;
+	private volatile long lastOperationTime;
+	private final ReentrantLock operationLock = new ReentrantLock(true);
 
-	private Map<IPath, ExtendedFileInfo> fileInfoCache;
-	private Map<IPath, ExtendedFileInfo[]> fileInfosCache;
+	private volatile MetadataCache<ExtendedFileInfo> fileInfoCache;
+	private volatile MetadataCache<ExtendedFileInfo[]> fileInfosCache;
+	private ExecutorService listingExecutor;
 
 	protected void promptPassword(String title, String message) {
 		password = CoreIOPlugin.getAuthenticationManager().promptPassword(
@@ -113,20 +131,60 @@ public abstract class BaseFTPConnectionFileManager implements IConnectionFileMan
 			return;
 		}
 		if (enabled) {
-			fileInfoCache = new ExpiringMap<IPath, ExtendedFileInfo>(CACHE_TTL);
-			fileInfosCache = new ExpiringMap<IPath, ExtendedFileInfo[]>(CACHE_TTL);
+			fileInfoCache = new MetadataCache<ExtendedFileInfo>(CACHE_TTL, MISSING_CACHE_TTL, CACHE_SIZE / 4) {
+				@Override
+				protected long sizeOf(ExtendedFileInfo fileInfo) {
+					return sizeOfFileInfo(fileInfo);
+				}
+			};
+			fileInfosCache = new MetadataCache<ExtendedFileInfo[]>(CACHE_TTL, MISSING_CACHE_TTL, CACHE_SIZE - CACHE_SIZE / 4) {
+				@Override
+				protected long sizeOf(ExtendedFileInfo[] fileInfos) {
+					long size = 16 + 4 * fileInfos.length;
+					for (ExtendedFileInfo fileInfo : fileInfos) {
+						size += sizeOfFileInfo(fileInfo);
+					}
+					return size;
+				}
+			};
 		} else {
 			fileInfoCache = null;
 			fileInfosCache = null;
 		}
 	}
+
+	/**
+	 * Called before each file operation of this manager, and nested operations of the same thread.
+	 * The default implementation runs one operation at a time.
+	 * @param monitor
+	 * @throws CoreException
+	 */
+	protected void beginOperation(IProgressMonitor monitor) throws CoreException {
+		operationLock.lock();
+	}
+
+	/**
+	 * Called when a file operation started with beginOperation() ends
+	 */
+	protected void endOperation() {
+		operationLock.unlock();
+	}
+
+	/**
+	 * Returns how many operations of this manager may run at the same time on different threads
+	 * @return int
+	 */
+	protected int getMaxConcurrentOperations() {
+		return 1;
+	}
 	
 	/* (non-Javadoc)
 	 * @see com.aptana.ide.core.io.vfs.IConnectionFileManager#fetchInfo(org.eclipse.core.runtime.IPath, int, org.eclipse.core.runtime.IProgressMonitor)
 	 */
-	public synchronized IExtendedFileInfo fetchInfo(IPath path, int options, IProgressMonitor monitor) throws CoreException {
+	public IExtendedFileInfo fetchInfo(IPath path, int options, IProgressMonitor monitor) throws CoreException {
 		monitor = Policy.monitorFor(monitor);
 		monitor.beginTask(StringUtils.format(Messages.BaseFTPConnectionFileManager_gethering_details, path.toPortableString()), 2);
+		beginOperation(monitor);
 		try {
 			ExtendedFileInfo fileInfo = getCachedFileInfo(path);
 			if (fileInfo == null) {
@@ -139,6 +197,7 @@ public abstract class BaseFTPConnectionFileManager implements IConnectionFileMan
 			}
 			return (IExtendedFileInfo) fileInfo.clone();
 		} finally {
+			endOperation();
 			monitor.done();
 		}
 	}
@@ -146,9 +205,10 @@ public abstract class BaseFTPConnectionFileManager implements IConnectionFileMan
 	/* (non-Javadoc)
 	 * @see com.aptana.ide.core.io.vfs.IConnectionFileManager#childInfos(org.eclipse.core.runtime.IPath, int, org.eclipse.core.runtime.IProgressMonitor)
 	 */
-	public synchronized IExtendedFileInfo[] childInfos(IPath path, int options, IProgressMonitor monitor) throws CoreException {
+	public IExtendedFileInfo[] childInfos(IPath path, int options, IProgressMonitor monitor) throws CoreException {
 		monitor = Policy.monitorFor(monitor);
 		monitor.beginTask(StringUtils.format(Messages.BaseFTPConnectionFileManager_gethering_details, path.toPortableString()), 2);
+		beginOperation(monitor);
 		try {
 			ExtendedFileInfo[] fileInfos = getCachedFileInfos(path);
 			if (fileInfos == null) {
@@ -166,16 +226,112 @@ public abstract class BaseFTPConnectionFileManager implements IConnectionFileMan
 			}
 			return fileInfos.clone();
 		} finally {
+			endOperation();
 			monitor.done();
 		}
 	}
 
+	/* (non-Javadoc)
+	 * @see com.aptana.ide.core.io.vfs.IConnectionFileManagerExtension#childInfos(org.eclipse.core.runtime.IPath[], int, org.eclipse.core.runtime.IProgressMonitor)
+	 */
+	public IExtendedFileInfo[][] childInfos(final IPath[] paths, final int options, IProgressMonitor monitor) throws CoreException {
+		monitor = Policy.monitorFor(monitor);
+		monitor.beginTask(StringUtils.format(Messages.BaseFTPConnectionFileManager_gethering_details,
+				paths.length > 0 ? paths[0].toPortableString() : StringUtils.EMPTY), paths.length);
+		final IExtendedFileInfo[][] result = new IExtendedFileInfo[paths.length][];
+		int threads = Math.min(getMaxConcurrentOperations(), paths.length);
+		if (threads <= 1) {
+			try {
+				for (int i = 0; i < paths.length; ++i) {
+					Policy.checkCanceled(monitor);
+					result[i] = childInfos(paths[i], options, Policy.subMonitorFor(monitor, 1));
+				}
+				return result;
+			} finally {
+				monitor.done();
+			}
+		}
+		// list the directories on several connections at once, so their round trips overlap
+		final IProgressMonitor workerMonitor = new NullProgressMonitor();
+		List<Future<Object>> futures = new ArrayList<Future<Object>>(paths.length);
+		try {
+			CompletionService<Object> completionService = new ExecutorCompletionService<Object>(getListingExecutor());
+			for (int i = 0; i < paths.length; ++i) {
+				final int index = i;
+				futures.add(completionService.submit(new Callable<Object>() {
+					public Object call() throws Exception {
+						Policy.checkCanceled(workerMonitor);
+						result[index] = childInfos(paths[index], options, workerMonitor);
+						return null;
+					}
+				}));
+			}
+			for (int done = 0; done < paths.length; ) {
+				Future<Object> future = completionService.poll(CANCEL_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+				Policy.checkCanceled(monitor);
+				if (future != null) {
+					future.get();
+					monitor.worked(1);
+					++done;
+				}
+			}
+			return result;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new OperationCanceledException();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof CoreException) {
+				throw (CoreException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new CoreException(new Status(IStatus.ERROR, FTPPlugin.PLUGIN_ID, cause.getLocalizedMessage(), cause));
+		} finally {
+			// listings still queued are dropped, and those running fail fast once canceled
+			workerMonitor.setCanceled(true);
+			for (Future<Object> future : futures) {
+				future.cancel(false);
+			}
+			monitor.done();
+		}
+	}
+
+	/**
+	 * Returns the executor that lists directories in parallel, creating it on first use. It keeps as many threads as
+	 * there can be concurrent operations, and they are shared by all listings of this manager until it disconnects.
+	 * @return ExecutorService
+	 */
+	private synchronized ExecutorService getListingExecutor() {
+		if (listingExecutor == null) {
+			listingExecutor = Executors.newFixedThreadPool(getMaxConcurrentOperations(), new ThreadFactory() {
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "FTP Listing"); //$NON-NLS-1$
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return listingExecutor;
+	}
+
+	/**
+	 * Stops the threads that list directories in parallel. Listings that are still running are allowed to finish.
+	 */
+	protected synchronized void shutdownListingExecutor() {
+		if (listingExecutor != null) {
+			listingExecutor.shutdown();
+			listingExecutor = null;
+		}
+	}
+
 	/* (non-Javadoc)
 	 * @see com.aptana.ide.core.io.vfs.IConnectionFileManager#childNames(org.eclipse.core.runtime.IPath, int, org.eclipse.core.runtime.IProgressMonitor)
 	 */
-	public synchronized String[] childNames(IPath path, int options, IProgressMonitor monitor) throws CoreException {
+	public String[] childNames(IPath path, int options, IProgressMonitor monitor) throws CoreException {
 		monitor = Policy.monitorFor(monitor);
 		monitor.beginTask(StringUtils.format(Messages.BaseFTPConnectionFileManager_listing_directory, path.toPortableString()), 2);
+		beginOperation(monitor);
 		try {
 			ExtendedFileInfo[] fileInfos = getCachedFileInfos(path);
 			if (fileInfos != null) {
@@ -194,6 +350,7 @@ public abstract class BaseFTPConnectionFileManager implements IConnectionFileMan
 		} catch (FileNotFoundException e) {
 			return new String[0];
 		} finally {
+			endOperation();
 			monitor.done();
 		}
 	}
@@ -201,11 +358,12 @@ public abstract class BaseFTPConnectionFileManager implements IConnectionFileMan
 	/* (non-Javadoc)
 	 * @see com.aptana.ide.core.io.vfs.IConnectionFileManager#openInputStream(org.eclipse.core.runtime.IPath, int, org.eclipse.core.runtime.IProgressMonitor)
 	 */
-	public synchronized InputStream openInputStream(IPath path, int options, IProgressMonitor monitor) throws CoreException {
+	public InputStream openInputStream(IPath path, int options, IProgressMonitor monitor) throws CoreException {
 		monitor = Policy.monitorFor(monitor);
 		monitor.beginTask(StringUtils.format(Messages.BaseFTPConnectionFileManager_opening_file, path.toPortableString()), 3);
-		testOrConnect(monitor);
+		beginOperation(monitor);
 		try {
+			testOrConnect(monitor);
 			ExtendedFileInfo fileInfo = fetchAndCacheFileInfo(path, Policy.subMonitorFor(monitor, 1));
 			if (!fileInfo.exists()) {
 				throw new CoreException(new Status(IStatus.ERROR, FTPPlugin.PLUGIN_ID,
@@ -223,6 +381,7 @@ public abstract class BaseFTPConnectionFileManager implements IConnectionFileMan
 			throw new CoreException(new Status(IStatus.ERROR, FTPPlugin.PLUGIN_ID,
 					Messages.BaseFTPConnectionFileManager_no_such_file, new FileNotFoundException(path.toPortableString())));
 		} finally {
+			endOperation();
 			setLastOperationTime();
 			monitor.done();
 		}
@@ -231,11 +390,12 @@ public abstract class BaseFTPConnectionFileManager implements IConnectionFileMan
 	/* (non-Javadoc)
 	 * @see com.aptana.ide.core.io.vfs.IConnectionFileManager#openOutputStream(org.eclipse.core.runtime.IPath, int, org.eclipse.core.runtime.IProgressMonitor)
 	 */
-	public synchronized OutputStream openOutputStream(IPath path, int options, IProgressMonitor monitor) throws CoreException {
+	public OutputStream openOutputStream(IPath path, int options, IProgressMonitor monitor) throws CoreException {
 		monitor = Policy.monitorFor(monitor);
 		monitor.beginTask(StringUtils.format(Messages.BaseFTPConnectionFileManager_opening_file, path.toPortableString()), 3);
-		testOrConnect(monitor);
+		beginOperation(monitor);
 		try {
+			testOrConnect(monitor);
 			ExtendedFileInfo fileInfo = fetchAndCacheFileInfo(path, Policy.subMonitorFor(monitor, 1));
 			if (fileInfo.exists() && fileInfo.isDirectory()) {
 				throw new CoreException(new Status(IStatus.ERROR, FTPPlugin.PLUGIN_ID,
@@ -247,6 +407,7 @@ public abstract class BaseFTPConnectionFileManager implements IConnectionFileMan
 			throw new CoreException(new Status(IStatus.ERROR, FTPPlugin.PLUGIN_ID,
 					Messages.BaseFTPConnectionFileManager_parent_doesnt_exist, new FileNotFoundException(path.toPortableString())));
 		} finally {
+			endOperation();
 			setLastOperationTime();
 			monitor.done();
 		}
@@ -255,12 +416,13 @@ public abstract class BaseFTPConnectionFileManager implements IConnectionFileMan
 	/* (non-Javadoc)
 	 * @see com.aptana.ide.core.io.vfs.IConnectionFileManager#delete(org.eclipse.core.runtime.IPath, int, org.eclipse.core.runtime.IProgressMonitor)
 	 */
-	public synchronized void delete(IPath path, int options, IProgressMonitor monitor) throws CoreException {
+	public void delete(IPath path, int options, IProgressMonitor monitor) throws CoreException {
 		monitor = Policy.monitorFor(monitor);
 		monitor = new InfiniteProgressMonitor(monitor);
 		monitor.beginTask(Messages.BaseFTPConnectionFileManager_deleting, 20);
-		testOrConnect(monitor);
+		beginOperation(monitor);
 		try {
+			testOrConnect(monitor);
 			ExtendedFileInfo fileInfo = getCachedFileInfo(path);
 			if (fileInfo == null) {
 				fileInfo = fetchAndCacheFileInfo(path, Policy.subMonitorFor(monitor, 1));
@@ -280,6 +442,7 @@ public abstract class BaseFTPConnectionFileManager implements IConnectionFileMan
 				clearCache(path);
 			}
 		} finally {
+			endOperation();
 			setLastOperationTime();
 			monitor.done();
 		}
@@ -288,11 +451,12 @@ public abstract class BaseFTPConnectionFileManager implements IConnectionFileMan
 	/* (non-Javadoc)
 	 * @see com.aptana.ide.core.io.vfs.IConnectionFileManager#mkdir(org.eclipse.core.runtime.IPath, int, org.eclipse.core.runtime.IProgressMonitor)
 	 */
-	public synchronized void mkdir(IPath path, int options, IProgressMonitor monitor) throws CoreException {
+	public void mkdir(IPath path, int options, IProgressMonitor monitor) throws CoreException {
 		monitor = Policy.monitorFor(monitor);
 		monitor.beginTask(StringUtils.format(Messages.BaseFTPConnectionFileManager_creating_folder, path.toPortableString()), 3);
-		testOrConnect(monitor);
+		beginOperation(monitor);
 		try {
+			testOrConnect(monitor);
 			ExtendedFileInfo fileInfo = fetchAndCacheFileInfo(path, Policy.subMonitorFor(monitor, 1));
 			if (fileInfo.exists()) {
 				if (!fileInfo.isDirectory()) {
@@ -319,14 +483,17 @@ public abstract class BaseFTPConnectionFileManager implements IConnectionFileMan
 				subMonitor.beginTask(Messages.BaseFTPConnectionFileManager_creating_folders, path.segmentCount());
 				for (int i = path.segmentCount() - 1; i >= 0; --i) {
 					createDirectory(basePath.append(path).removeLastSegments(i), subMonitor);
+					clearCache(path.removeLastSegments(i));
 					subMonitor.worked(1);
 				}
 				subMonitor.done();
 			}
+			clearCache(path);
 		} catch (FileNotFoundException e) {
 			throw new CoreException(new Status(IStatus.ERROR, FTPPlugin.PLUGIN_ID,
 					Messages.BaseFTPConnectionFileManager_parent_doesnt_exist, e));
 		} finally {
+			endOperation();
 			setLastOperationTime();
 			monitor.done();
 		}
@@ -335,11 +502,12 @@ public abstract class BaseFTPConnectionFileManager implements IConnectionFileMan
 	/* (non-Javadoc)
 	 * @see com.aptana.ide.core.io.vfs.IConnectionFileManager#putInfo(org.eclipse.core.runtime.IPath, org.eclipse.core.filesystem.IFileInfo, int, org.eclipse.core.runtime.IProgressMonitor)
 	 */
-	public synchronized void putInfo(IPath path, IFileInfo info, int options, IProgressMonitor monitor) throws CoreException {
+	public void putInfo(IPath path, IFileInfo info, int options, IProgressMonitor monitor) throws CoreException {
 		monitor = Policy.monitorFor(monitor);
 		monitor.beginTask(StringUtils.format(Messages.BaseFTPConnectionFileManager_putting_changes, path.toPortableString()), 5);
-		testOrConnect(monitor);
+		beginOperation(monitor);
 		try {
+			testOrConnect(monitor);
 			if ((options & EFS.SET_LAST_MODIFIED) != 0) {
 				setModificationTime(basePath.append(path), info.getLastModified(), Policy.subMonitorFor(monitor, 1));
 			}
@@ -374,6 +542,7 @@ public abstract class BaseFTPConnectionFileManager implements IConnectionFileMan
 					Messages.BaseFTPConnectionFileManager_no_such_file, new FileNotFoundException(path.toPortableString())));
 		} finally {
 			clearCache(path);
+			endOperation();
 			setLastOperationTime();
 			monitor.done();
 		}
@@ -382,11 +551,12 @@ public abstract class BaseFTPConnectionFileManager implements IConnectionFileMan
 	/* (non-Javadoc)
 	 * @see com.aptana.ide.core.io.vfs.IConnectionFileManager#move(org.eclipse.core.runtime.IPath, org.eclipse.core.runtime.IPath, int, org.eclipse.core.runtime.IProgressMonitor)
 	 */
-	public synchronized void move(IPath sourcePath, IPath destinationPath, int options, IProgressMonitor monitor) throws CoreException {
+	public void move(IPath sourcePath, IPath destinationPath, int options, IProgressMonitor monitor) throws CoreException {
 		monitor = Policy.monitorFor(monitor);
 		monitor.beginTask(StringUtils.format(Messages.BaseFTPConnectionFileManager_moving, sourcePath.toPortableString()), 5);
-		testOrConnect(monitor);
+		beginOperation(monitor);
 		try {
+			testOrConnect(monitor);
 			ExtendedFileInfo fileInfo = fetchAndCacheFileInfo(sourcePath, Policy.subMonitorFor(monitor, 1));
 			if (!fileInfo.exists()) {
 				throw new CoreException(new Status(IStatus.ERROR, FTPPlugin.PLUGIN_ID,
@@ -418,6 +588,7 @@ public abstract class BaseFTPConnectionFileManager implements IConnectionFileMan
 			throw new CoreException(new Status(IStatus.ERROR, FTPPlugin.PLUGIN_ID,
 					Messages.BaseFTPConnectionFileManager_no_such_file, new FileNotFoundException(sourcePath.toPortableString())));
 		} finally {
+			endOperation();
 			setLastOperationTime();
 			monitor.done();
 		}
@@ -460,7 +631,7 @@ public abstract class BaseFTPConnectionFileManager implements IConnectionFileMan
 		} catch (FileNotFoundException e) {
 			fileInfo = new ExtendedFileInfo(path.segmentCount() > 0 ? path.lastSegment() : Path.ROOT.toPortableString());
 			fileInfo.setExists(false);
-			return fileInfo;
+			return cache(path, fileInfo);
 		}
 		if (path.segmentCount() == 0) {
 			fileInfo.setName(Path.ROOT.toPortableString());
@@ -472,53 +643,82 @@ public abstract class BaseFTPConnectionFileManager implements IConnectionFileMan
 	}
 	
 	private ExtendedFileInfo getCachedFileInfo(IPath path) {
-		return fileInfoCache != null ? fileInfoCache.get(path) : null;
+		MetadataCache<ExtendedFileInfo> fileInfoCache = this.fileInfoCache;
+		if (fileInfoCache == null) {
+			return null;
+		}
+		if (fileInfoCache.isMissing(path)) {
+			ExtendedFileInfo fileInfo = new ExtendedFileInfo(path.segmentCount() > 0 ? path.lastSegment() : Path.ROOT.toPortableString());
+			fileInfo.setExists(false);
+			return fileInfo;
+		}
+		return fileInfoCache.get(path);
 	}
 
 	private ExtendedFileInfo[] getCachedFileInfos(IPath path) {
+		MetadataCache<ExtendedFileInfo[]> fileInfosCache = this.fileInfosCache;
 		return fileInfosCache !=  null ? fileInfosCache.get(path) : null;
 	}
 
 	protected ExtendedFileInfo cache(IPath path, ExtendedFileInfo fileInfo) {
-		if (fileInfoCache != null && fileInfo.exists()) {
-			fileInfoCache.put(path, fileInfo);
+		MetadataCache<ExtendedFileInfo> fileInfoCache = this.fileInfoCache;
+		if (fileInfoCache != null) {
+			if (fileInfo.exists()) {
+				fileInfoCache.put(path, fileInfo);
+			} else {
+				fileInfoCache.putMissing(path);
+			}
 		}
 		return fileInfo;
 	}
 
 	protected ExtendedFileInfo[] cache(IPath path, ExtendedFileInfo[] fileInfos) {
+		MetadataCache<ExtendedFileInfo[]> fileInfosCache = this.fileInfosCache;
 		if (fileInfosCache != null) {
 			fileInfosCache.put(path, fileInfos);
 		}
 		return fileInfos;
 	}
 
+	/**
+	 * Invalidates the cached metadata of the path, of everything below it and the listing of its parent
+	 * @param path
+	 */
 	protected void clearCache(IPath path) {
-		int segments = path.segmentCount();
+		MetadataCache<ExtendedFileInfo> fileInfoCache = this.fileInfoCache;
 		if (fileInfoCache !=  null) {
-			for (IPath p : new ArrayList<IPath>(fileInfoCache.keySet())) {
-				if (p.segmentCount() >= segments && path.matchingFirstSegments(p) == segments) {
-					fileInfoCache.remove(p);
-				}
-			}
+			fileInfoCache.removeAll(path);
 		}
+		MetadataCache<ExtendedFileInfo[]> fileInfosCache = this.fileInfosCache;
 		if (fileInfosCache != null) {
-			for (IPath p : new ArrayList<IPath>(fileInfosCache.keySet())) {
-				if (p.segmentCount() >= segments && path.matchingFirstSegments(p) == segments) {
-					fileInfosCache.remove(p);
-				}
+			fileInfosCache.removeAll(path);
+			if (path.segmentCount() > 0) {
+				fileInfosCache.remove(path.removeLastSegments(1));
 			}
 		}
 	}
 
 	protected void cleanup() {
+		MetadataCache<ExtendedFileInfo> fileInfoCache = this.fileInfoCache;
 		if (fileInfoCache != null) {
 			fileInfoCache.clear();
 		}
+		MetadataCache<ExtendedFileInfo[]> fileInfosCache = this.fileInfosCache;
 		if (fileInfosCache != null) {
 			fileInfosCache.clear();
 		}
 	}
+
+	private static long sizeOfFileInfo(ExtendedFileInfo fileInfo) {
+		long size = 128;
+		String[] strings = new String[] { fileInfo.getName(), fileInfo.getOwner(), fileInfo.getGroup() };
+		for (String string : strings) {
+			if (string != null) {
+				size += 40 + 2 * string.length();
+			}
+		}
+		return size;
+	}
 	
 	private void testOrConnect(IProgressMonitor monitor) throws CoreException {
 		Policy.checkCanceled(monitor);
@@ -0,0 +1,100 @@
+/**
+ * This file Copyright (c) 2005-2009 Aptana, Inc. This program is
+ * dual-licensed under both the Aptana Public License and the GNU General
+ * Public license. You may elect to use one or the other of these licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * AS-IS and WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, TITLE, or
+ * NONINFRINGEMENT. Redistribution, except as permitted by whichever of
+ * the GPL or APL you select, is prohibited.
+ *
+ * 1. For the GPL license (GPL), you can redistribute and/or modify this
+ * program under the terms of the GNU General Public License,
+ * Version 3, as published by the Free Software Foundation.  You should
+ * have received a copy of the GNU General Public License, Version 3 along
+ * with this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Aptana provides a special exception to allow redistribution of this file
+ * with certain other free and open source software ("FOSS") code and certain additional terms
+ * pursuant to Section 7 of the GPL. You may view the exception and these
+ * terms on the web at http://www.aptana.com/legal/gpl/.
+ *
+ * 2. For the Aptana Public License (APL), this program and the
+ * accompanying materials are made available under the terms of the APL
+ * v1.0 which accompanies this distribution, and is available at
+ * http://www.aptana.com/legal/apl/.
+ *
+ * You may view the GPL, Aptana's exception and additional terms, and the
+ * APL in the file titled license.html at the root of the corresponding
+ * plugin containing this source file.
+ *
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.ide.filesystem.ftp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.LineNumberReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.enterprisedt.net.ftp.FTPClient;
+import com.enterprisedt.net.ftp.FTPException;
+import com.enterprisedt.net.ftp.FTPReply;
+
+/**
+ * FTPClient with the RFC 3659 MLSD command, which edtftpj doesn't provide.
+ * 
+ * @author agent (agent@local)
+ *
+ */
+/* package */ class ExtendedFTPClient extends FTPClient {
+
+	/**
+	 * Lists a directory with MLSD
+	 * @param dirname
+	 * @return the fact lines of the directory entries
+	 * @throws IOException
+	 * @throws FTPException
+	 */
+	public String[] mlsd(String dirname) throws IOException, FTPException {
+		checkConnection(true);
+		setupDataSocket();
+		FTPReply reply;
+		try {
+			reply = control.sendCommand(dirname != null ? "MLSD " + dirname : "MLSD"); //$NON-NLS-1$ //$NON-NLS-2$
+			lastValidReply = control.validateReply(reply, new String[] { "125", "150", "226", "250" }); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+		} catch (FTPException e) {
+			data.close();
+			throw e;
+		}
+		List<String> lines = new ArrayList<String>();
+		String code = lastValidReply.getReplyCode();
+		if ("226".equals(code) || "250".equals(code)) { //$NON-NLS-1$ //$NON-NLS-2$
+			// nothing was sent on the data connection
+			data.close();
+			return new String[0];
+		}
+		InputStream in = data.getInputStream();
+		try {
+			LineNumberReader reader = new LineNumberReader(new InputStreamReader(in, controlEncoding));
+			String line;
+			while ((line = readLine(reader)) != null) {
+				if (line.length() > 0) {
+					lines.add(line);
+				}
+			}
+		} catch (IOException e) {
+			validateTransferOnError(e);
+			throw e;
+		} finally {
+			closeDataSocket(in);
+		}
+		validateTransfer();
+		return lines.toArray(new String[lines.size()]);
+	}
+
+}
@@ -0,0 +1,369 @@
+/**
+ * This file Copyright (c) 2005-2009 Aptana, Inc. This program is
+ * dual-licensed under both the Aptana Public License and the GNU General
+ * Public license. You may elect to use one or the other of these licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * AS-IS and WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, TITLE, or
+ * NONINFRINGEMENT. Redistribution, except as permitted by whichever of
+ * the GPL or APL you select, is prohibited.
+ *
+ * 1. For the GPL license (GPL), you can redistribute and/or modify this
+ * program under the terms of the GNU General Public License,
+ * Version 3, as published by the Free Software Foundation.  You should
+ * have received a copy of the GNU General Public License, Version 3 along
+ * with this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Aptana provides a special exception to allow redistribution of this file
+ * with certain other free and open source software ("FOSS") code and certain additional terms
+ * pursuant to Section 7 of the GPL. You may view the exception and these
+ * terms on the web at http://www.aptana.com/legal/gpl/.
+ *
+ * 2. For the Aptana Public License (APL), this program and the
+ * accompanying materials are made available under the terms of the APL
+ * v1.0 which accompanies this distribution, and is available at
+ * http://www.aptana.com/legal/apl/.
+ *
+ * You may view the GPL, Aptana's exception and additional terms, and the
+ * APL in the file titled license.html at the root of the corresponding
+ * plugin containing this source file.
+ *
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.aptana.ide.filesystem.ftp;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+import com.enterprisedt.net.ftp.FTPClient;
+
+/**
+ * A bounded pool of authenticated FTP control connections of one connection file manager.
+ * A thread checks out a session for the duration of an operation and gets the same session back
+ * on nested checkouts; a transfer stream detaches the session and returns it when closed.
+ * Threads wait for a free session in arrival order, and idle sessions are kept alive with NOOP.
+ *
+ * @author agent (agent@local)
+ *
+ */
+/* package */ class FTPClientPool {
+
+	private static final long WAIT_INTERVAL = 500;
+
+	/* package */ static interface ISessionFactory {
+
+		/**
+		 * Returns true when the primary session is ready for more sessions to be opened
+		 * @return boolean
+		 */
+		boolean canOpenSession();
+
+		/**
+		 * Opens and authenticates a new control connection
+		 * @param monitor
+		 * @return FTPClient
+		 * @throws CoreException
+		 */
+		FTPClient openSession(IProgressMonitor monitor) throws CoreException;
+	}
+
+	/* package */ static class Session {
+
+		protected FTPClient ftpClient;
+		protected IPath cwd;
+		private final boolean primary;
+		private int generation;
+		private int depth;
+		private long lastUsedTime;
+
+		private Session(FTPClient ftpClient, boolean primary) {
+			this.ftpClient = ftpClient;
+			this.primary = primary;
+		}
+
+		/* package */ boolean isPrimary() {
+			return primary;
+		}
+	}
+
+	private final ISessionFactory factory;
+	private final int maxSessions;
+	private final long idleTimeout;
+	private final Semaphore permits;
+	private final ThreadLocal<Session> current = new ThreadLocal<Session>();
+	private final LinkedList<Session> idle = new LinkedList<Session>();
+	private final List<Session> sessions = new ArrayList<Session>();
+	private final Session primary;
+	private int generation;
+	private final Job keepAliveJob;
+	private final long keepAliveInterval;
+
+	/**
+	 * @param factory
+	 * @param primaryClient the connection of the manager that detects the server settings, never closed when idle
+	 * @param maxSessions
+	 * @param keepAliveInterval
+	 * @param idleTimeout
+	 */
+	/* package */ FTPClientPool(ISessionFactory factory, FTPClient primaryClient, int maxSessions, long keepAliveInterval, long idleTimeout) {
+		this.factory = factory;
+		this.maxSessions = Math.max(1, maxSessions);
+		this.keepAliveInterval = keepAliveInterval;
+		this.idleTimeout = idleTimeout;
+		this.permits = new Semaphore(this.maxSessions, true);
+		primary = new Session(primaryClient, true);
+		sessions.add(primary);
+		idle.add(primary);
+		keepAliveJob = new Job("FTP keep-alive") { //$NON-NLS-1$
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				keepAlive();
+				return Status.OK_STATUS;
+			}
+		};
+		keepAliveJob.setSystem(true);
+	}
+
+	/**
+	 * Returns the session checked out by the current thread
+	 * @return the session or null
+	 */
+	/* package */ Session current() {
+		return current.get();
+	}
+
+	/**
+	 * Checks out a session for the current thread, waiting for one to become free if all are in use
+	 * @param monitor
+	 * @return Session
+	 * @throws CoreException
+	 * @throws OperationCanceledException if the monitor is canceled or the thread is interrupted while waiting
+	 */
+	/* package */ Session checkout(IProgressMonitor monitor) throws CoreException {
+		Session session = current.get();
+		if (session != null) {
+			++session.depth;
+			return session;
+		}
+		try {
+			while (!permits.tryAcquire(WAIT_INTERVAL, TimeUnit.MILLISECONDS)) {
+				Policy.checkCanceled(monitor);
+			}
+		} catch (InterruptedException e) {
+			// never go on without a permit, or the pool would grow past maxSessions on release
+			Thread.currentThread().interrupt();
+			throw new OperationCanceledException();
+		}
+		boolean done = false;
+		try {
+			session = takeIdleSession(monitor);
+			if (session == null) {
+				// a permit guarantees there is room for one more session
+				session = new Session(factory.openSession(monitor), false);
+				synchronized (this) {
+					sessions.add(session);
+				}
+			}
+			synchronized (this) {
+				session.generation = generation;
+			}
+			session.depth = 1;
+			current.set(session);
+			done = true;
+			return session;
+		} finally {
+			if (!done) {
+				permits.release();
+			}
+		}
+	}
+
+	private synchronized Session takeIdleSession(IProgressMonitor monitor) {
+		while (true) {
+			// prefer the most recently used session, so that surplus ones can time out
+			Session session = idle.isEmpty() ? null : idle.removeLast();
+			if (session != null) {
+				return session;
+			}
+			if (sessions.size() < maxSessions && factory.canOpenSession()) {
+				return null;
+			}
+			// wait for the primary session to connect or for the keep-alive to return a session
+			try {
+				wait(WAIT_INTERVAL);
+			} catch (InterruptedException e) {
+				// waiting again would throw straight away
+				Thread.currentThread().interrupt();
+				throw new OperationCanceledException();
+			}
+			Policy.checkCanceled(monitor);
+		}
+	}
+
+	/**
+	 * Returns the session of the current thread to the pool once its outermost checkout ends
+	 */
+	/* package */ void checkin() {
+		Session session = current.get();
+		if (session == null || --session.depth > 0) {
+			return;
+		}
+		current.remove();
+		release(session);
+	}
+
+	/**
+	 * Hands the session of the current thread over to a transfer stream that releases it when closed
+	 * @return Session
+	 */
+	/* package */ Session detach() {
+		Session session = current.get();
+		current.remove();
+		return session;
+	}
+
+	/**
+	 * Returns a session to the pool
+	 * @param session
+	 */
+	/* package */ void release(Session session) {
+		boolean closed;
+		synchronized (this) {
+			closed = session.generation != generation;
+		}
+		if (closed) {
+			// the pool was closed while this session was in use
+			session.cwd = null;
+			quit(session.ftpClient);
+		}
+		synchronized (this) {
+			session.depth = 0;
+			session.lastUsedTime = System.currentTimeMillis();
+			if (session.primary || session.ftpClient.connected()) {
+				idle.add(session);
+			} else {
+				sessions.remove(session);
+			}
+			notifyAll();
+		}
+		permits.release();
+		keepAliveJob.schedule(keepAliveInterval);
+	}
+
+	/**
+	 * Closes a session that failed and returns its slot to the pool
+	 * @param session
+	 */
+	/* package */ void discard(Session session) {
+		quit(session.ftpClient);
+		release(session);
+	}
+
+	/**
+	 * Closes all idle sessions. Sessions in use are closed when released.
+	 */
+	/* package */ void close() {
+		List<Session> list;
+		synchronized (this) {
+			++generation;
+			list = new ArrayList<Session>(idle);
+			idle.clear();
+			for (Session session : list) {
+				session.cwd = null;
+				if (session == primary) {
+					idle.add(session);
+				} else {
+					sessions.remove(session);
+				}
+			}
+		}
+		for (Session session : list) {
+			quit(session.ftpClient);
+		}
+	}
+
+	private void keepAlive() {
+		long now = System.currentTimeMillis();
+		List<Session> list = new ArrayList<Session>();
+		int generation;
+		synchronized (this) {
+			generation = this.generation;
+			for (Session session : idle) {
+				if (now - session.lastUsedTime >= keepAliveInterval && session.ftpClient.connected()) {
+					list.add(session);
+				}
+			}
+			idle.removeAll(list);
+		}
+		for (Session session : list) {
+			if (!session.primary && now - session.lastUsedTime >= idleTimeout) {
+				quit(session.ftpClient);
+			} else {
+				try {
+					session.ftpClient.noOperation();
+				} catch (Exception e) {
+					quit(session.ftpClient);
+				}
+			}
+		}
+		boolean reschedule;
+		List<Session> closed = new ArrayList<Session>();
+		synchronized (this) {
+			for (Session session : list) {
+				if (generation != this.generation) {
+					// closed while the keep-alive was running, so quit it below as close() would have
+					session.cwd = null;
+					closed.add(session);
+					if (session.primary) {
+						idle.add(session);
+					} else {
+						sessions.remove(session);
+					}
+				} else if (session.primary || session.ftpClient.connected()) {
+					idle.add(session);
+				} else {
+					sessions.remove(session);
+				}
+			}
+			reschedule = false;
+			for (Session session : idle) {
+				reschedule |= session.ftpClient.connected();
+			}
+			notifyAll();
+		}
+		for (Session session : closed) {
+			quit(session.ftpClient);
+		}
+		if (reschedule) {
+			keepAliveJob.schedule(keepAliveInterval);
+		}
+	}
+
+	/* package */ static void quit(FTPClient ftpClient) {
+		try {
+			if (ftpClient.connected()) {
+				ftpClient.quit();
+			}
+		} catch (Exception e) {
+			try {
+				ftpClient.quitImmediately();
+			} catch (Exception ignore) {
+			}
+		}
+	}
+
+}
@@ -49,7 +49,6 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
-import java.util.Map;
 import java.util.TimeZone;
 import java.util.regex.Matcher;
 
@@ -70,6 +69,7 @@ import com.aptana.ide.core.io.ConnectionContext;
 import com.aptana.ide.core.io.CoreIOPlugin;
 import com.aptana.ide.core.io.vfs.ExtendedFileInfo;
 import com.aptana.ide.core.io.vfs.IExtendedFileStore;
+import com.aptana.ide.core.io.vfs.MetadataCache;
 import com.enterprisedt.net.ftp.FTPClient;
 import com.enterprisedt.net.ftp.FTPConnectMode;
 import com.enterprisedt.net.ftp.FTPConnectionClosedException;
@@ -91,15 +91,22 @@ import com.enterprisedt.net.ftp.FTPTransferType;
 	private static final String TMP_TIMEZONE_CHECK = ".tmp_tz_check"; //$NON-NLS-1$
 	
 	protected FTPClient ftpClient;
+	private FTPClientPool pool;
 	private List<String> serverFeatures;
 	protected String transferType;
 	protected String timezone;
-	protected IPath cwd;
 	private FTPFileFactory fileFactory;
 	private Boolean statSuppoted = null;
+	private Boolean mlsxSupported = null;
 	private Boolean chmodSupported = null;
 	private Boolean chgrpSupported = null;
-	private Map<IPath, FTPFile> ftpFileCache = new ExpiringMap<IPath, FTPFile>(CACHE_TTL);
+	private MetadataCache<FTPFile> ftpFileCache = new MetadataCache<FTPFile>(CACHE_TTL, MISSING_CACHE_TTL, CACHE_SIZE) {
+		@Override
+		protected long sizeOf(FTPFile ftpFile) {
+			String raw = ftpFile.getRaw();
+			return 256 + (raw != null ? 2 * raw.length() : 0);
+		}
+	};
 	private long serverTimeZoneShift = Integer.MIN_VALUE;
 	protected boolean hasServerInfo;
 	protected PrintWriter messageLogWriter;
@@ -110,7 +117,7 @@ import com.enterprisedt.net.ftp.FTPTransferType;
 	public void init(String host, int port, IPath basePath, String login, char[] password, boolean passive, String transferType, String encoding, String timezone) {
 		Assert.isTrue(ftpClient == null, Messages.FTPConnectionFileManager_already_initialized);
 		try {
-			ftpClient = new FTPClient();
+			ftpClient = new ExtendedFTPClient();
 			this.host = host;
 			this.port = port;
 			this.login = login;
@@ -120,6 +127,15 @@ import com.enterprisedt.net.ftp.FTPTransferType;
 			this.transferType = transferType;
 			this.timezone = timezone != null && timezone.length() == 0 ? null : timezone;
 			initFTPClient(ftpClient, passive, encoding);
+			pool = new FTPClientPool(new FTPClientPool.ISessionFactory() {
+				public boolean canOpenSession() {
+					return password != null && ftpClient.connected();
+				}
+
+				public FTPClient openSession(IProgressMonitor monitor) throws CoreException {
+					return FTPConnectionFileManager.this.openSession(monitor);
+				}
+			}, ftpClient, MAX_CONNECTIONS, KEEPALIVE_INTERVAL, IDLE_CONNECTION_TIMEOUT);
 		} catch (Exception e) {
 			IdeLog.logImportant(FTPPlugin.getDefault(), Messages.FTPConnectionFileManager_initialization_failed, e);
 			ftpClient = null;
@@ -171,13 +187,19 @@ import com.enterprisedt.net.ftp.FTPTransferType;
 	public void connect(IProgressMonitor monitor) throws CoreException {
 		Assert.isTrue(ftpClient != null, Messages.FTPConnectionFileManager_not_initialized);
 		monitor = Policy.monitorFor(monitor);
+		FTPClientPool.Session session = pool.checkout(monitor);
 		try {
-			if (ftpClient.connected()) {
+			if (session.ftpClient.connected()) {
 				monitor.beginTask(Messages.FTPConnectionFileManager_checking_connection, IProgressMonitor.UNKNOWN);
-				ftpClient.pwd();
+				session.ftpClient.pwd();
+				return;
+			}
+			session.cwd = null;
+			if (!session.isPrimary()) {
+				// only the primary connection detects the server settings, others just log in again
+				session.ftpClient = openSession(monitor);
 				return;
 			}
-			cwd = null;
 			cleanup();
 
 			ConnectionContext context = CoreIOPlugin.getConnectionContext(this);
@@ -264,14 +286,79 @@ import com.enterprisedt.net.ftp.FTPTransferType;
 			safeQuit();
 			throw new CoreException(new Status(Status.ERROR, FTPPlugin.PLUGIN_ID, Messages.FTPConnectionFileManager_connection_failed+e.getLocalizedMessage(), e));
 		} finally {
+			pool.checkin();
 			monitor.done();
 		}
 	}
 
+	/**
+	 * Opens and authenticates another control connection with the settings of the primary one
+	 * @param monitor
+	 * @return FTPClient
+	 * @throws CoreException
+	 */
+	protected FTPClient openSession(IProgressMonitor monitor) throws CoreException {
+		FTPClient sessionFtpClient = new ExtendedFTPClient();
+		try {
+			initFTPClient(sessionFtpClient, ftpClient.getConnectMode() == FTPConnectMode.PASV, ftpClient.getControlEncoding());
+			sessionFtpClient.setRemoteHost(host);
+			sessionFtpClient.setRemotePort(port);
+			Policy.checkCanceled(monitor);
+			sessionFtpClient.connect();
+			Policy.checkCanceled(monitor);
+			sessionFtpClient.login(login, String.copyValueOf(password));
+			Policy.checkCanceled(monitor);
+			setMessageLogger(sessionFtpClient, messageLogWriter);
+			sessionFtpClient.setType(IFTPConstants.TRANSFER_TYPE_ASCII.equals(transferType)
+					? FTPTransferType.ASCII : FTPTransferType.BINARY);
+			return sessionFtpClient;
+		} catch (OperationCanceledException e) {
+			FTPClientPool.quit(sessionFtpClient);
+			throw e;
+		} catch (Exception e) {
+			FTPClientPool.quit(sessionFtpClient);
+			throw new CoreException(new Status(Status.ERROR, FTPPlugin.PLUGIN_ID, Messages.FTPConnectionFileManager_connection_failed+e.getLocalizedMessage(), e));
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see com.aptana.ide.filesystem.ftp.BaseFTPConnectionFileManager#beginOperation(org.eclipse.core.runtime.IProgressMonitor)
+	 */
+	@Override
+	protected void beginOperation(IProgressMonitor monitor) throws CoreException {
+		pool.checkout(monitor);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.aptana.ide.filesystem.ftp.BaseFTPConnectionFileManager#endOperation()
+	 */
+	@Override
+	protected void endOperation() {
+		pool.checkin();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.aptana.ide.filesystem.ftp.BaseFTPConnectionFileManager#getMaxConcurrentOperations()
+	 */
+	@Override
+	protected int getMaxConcurrentOperations() {
+		return MAX_CONNECTIONS;
+	}
+
+	/**
+	 * Returns the control connection of the current operation
+	 * @return FTPClient
+	 */
+	private FTPClient client() {
+		FTPClientPool.Session session = pool != null ? pool.current() : null;
+		return session != null ? session.ftpClient : ftpClient;
+	}
+
 	@SuppressWarnings("deprecation")
 	protected void getherServerInfo(ConnectionContext context, IProgressMonitor monitor) {
 		Policy.checkCanceled(monitor);
 		monitor.subTask(Messages.FTPConnectionFileManager_gethering_server_info);
+		mlsxSupported = null;
 		try {
 			serverFeatures = null;
 			String[] features = ftpClient.features();
@@ -388,6 +475,8 @@ import com.enterprisedt.net.ftp.FTPTransferType;
 				serverTimeZoneShift = cal.get(Calendar.ZONE_OFFSET)+cal.get(Calendar.DST_OFFSET);					
 			}
 		}
+		// machine listings are in UTC, so they are only enabled once the time zone check above is done
+		mlsxSupported = serverSupportsFeature("MLST") ? Boolean.TRUE : Boolean.FALSE; //$NON-NLS-1$
 					
 		hasServerInfo = true;		
 	}
@@ -409,32 +498,23 @@ import com.enterprisedt.net.ftp.FTPTransferType;
 	 * @see com.aptana.ide.core.io.vfs.IConnectionFileManager#isConnected()
 	 */
 	public boolean isConnected() {
-		return ftpClient != null && ftpClient.connected();
+		return ftpClient != null && client().connected();
 	}
 
 	/* (non-Javadoc)
 	 * @see com.aptana.ide.core.io.vfs.IConnectionFileManager#disconnect(org.eclipse.core.runtime.IProgressMonitor)
 	 */
-	public synchronized void disconnect(IProgressMonitor monitor) throws CoreException {
-		try {
-			checkConnected();
-		} catch (Exception ignore) {
-		}
+	public void disconnect(IProgressMonitor monitor) throws CoreException {
+		shutdownListingExecutor();
 		if (!isConnected()) {
 			return;
 		}
 		monitor = Policy.monitorFor(monitor);
 		monitor.beginTask(Messages.FTPConnectionFileManager_closing_connection, IProgressMonitor.UNKNOWN);
 		try {
-			ftpClient.quit();
-		} catch (Exception e) {
-			try {
-				ftpClient.quitImmediately();
-			} catch (Exception ignore) {
-			}
-			throw new CoreException(new Status(Status.ERROR, FTPPlugin.PLUGIN_ID, Messages.FTPConnectionFileManager_disconnect_failed, e));
+			// connections in use are closed as soon as their operation or transfer ends
+			pool.close();
 		} finally {
-			cwd = null;
 			cleanup();
 			monitor.done();
 		}
@@ -448,18 +528,19 @@ import com.enterprisedt.net.ftp.FTPTransferType;
 	}
 	
 	protected void changeCurrentDir(IPath path) throws FTPException, IOException {
+		FTPClientPool.Session session = pool.current();
 		try {
-			if (cwd == null) {
-				cwd = new Path(ftpClient.pwd());
+			if (session.cwd == null) {
+				session.cwd = new Path(session.ftpClient.pwd());
 			}
-			if (!cwd.equals(path)) {
-				ftpClient.chdir(path.toPortableString());
-				cwd = path;
+			if (!session.cwd.equals(path)) {
+				session.ftpClient.chdir(path.toPortableString());
+				session.cwd = path;
 			}
 		} catch (FTPException e) {
 			throwFileNotFound(e, path);
 		} catch (IOException e) {
-			cwd = null;
+			session.cwd = null;
 			throw e;			
 		}
 	}
@@ -499,13 +580,7 @@ import com.enterprisedt.net.ftp.FTPTransferType;
 	@Override
 	protected void clearCache(IPath path) {
 		super.clearCache(path);
-		path = basePath.append(path); // we cache as absolute paths
-		int segments = path.segmentCount();
-		for (IPath p : new ArrayList<IPath>(ftpFileCache.keySet())) {
-			if (p.segmentCount() >= segments && path.matchingFirstSegments(p) == segments) {
-				ftpFileCache.remove(p);
-			}
-		}
+		ftpFileCache.removeAll(basePath.append(path)); // we cache as absolute paths
 	}
 
 	/* (non-Javadoc)
@@ -513,16 +588,16 @@ import com.enterprisedt.net.ftp.FTPTransferType;
 	 */
 	@Override
 	protected void checkConnected() throws Exception {
-		if (ftpClient.connected()) {
+		if (client().connected()) {
 			try {
-				ftpClient.noOperation();
+				client().noOperation();
 				return;
 			} catch (FTPConnectionClosedException e) {
 			} catch (FTPException ignore) {
 				return;
 			} catch (IOException e) {
 			}
-			ftpClient.quitImmediately();
+			client().quitImmediately();
 		}
 	}
 	
@@ -547,7 +622,24 @@ import com.enterprisedt.net.ftp.FTPTransferType;
 		try {
 			IPath dirPath = path.removeLastSegments(1);
 			String name = path.lastSegment();
+			if (ftpFileCache.isMissing(path)) {
+				ExtendedFileInfo fileInfo = new ExtendedFileInfo(name);
+				fileInfo.setExists(false);
+				return fileInfo;
+			}
 			FTPFile result = ftpFileCache.get(path);
+			if (result == null && mlsxSupported == Boolean.TRUE) {
+				result = ftpMLST(path);
+				if (result != null) {
+					result.setName(name != null ? name : path.toPortableString());
+					ftpFileCache.put(path, result);
+				} else if (mlsxSupported == Boolean.TRUE) {
+					ftpFileCache.putMissing(path);
+					ExtendedFileInfo fileInfo = new ExtendedFileInfo(path.lastSegment());
+					fileInfo.setExists(false);
+					return fileInfo;
+				}
+			}
 			if (result == null) {
 				FTPFile[] ftpFiles = listFiles(dirPath, monitor);
 				for (FTPFile ftpFile : ftpFiles) {
@@ -568,14 +660,17 @@ import com.enterprisedt.net.ftp.FTPTransferType;
 						result = ftpFile;
 					}
 				}
+				if (result == null && name != null) {
+					ftpFileCache.putMissing(path);
+				}
 			}
-			if ((options & IExtendedFileStore.DETAILED) != 0) {
+			if ((options & IExtendedFileStore.DETAILED) != 0 && mlsxSupported != Boolean.TRUE) {
 				if (result != null && !result.isDir() && name != null && result.lastModified().getSeconds() == 0) {
 					if (serverSupportsFeature("MDTM")) { //$NON-NLS-1$
 						changeCurrentDir(dirPath);
 						Policy.checkCanceled(monitor);
 						try {
-							Date lastModifiedLocalTZ = ftpClient.modtime(name);
+							Date lastModifiedLocalTZ = client().modtime(name);
 							if (lastModifiedLocalTZ != null) {
 								result.setLastModified(lastModifiedLocalTZ);
 							}
@@ -611,6 +706,7 @@ import com.enterprisedt.net.ftp.FTPTransferType;
 		monitor = Policy.subMonitorFor(monitor, 1);
 		try {
 			FTPFile[] ftpFiles = listFiles(path, monitor);
+			boolean machineListing = mlsxSupported == Boolean.TRUE;
 			monitor.beginTask(Messages.FTPConnectionFileManager_gethering_file_details, ftpFiles.length);
 			List<ExtendedFileInfo> list = new ArrayList<ExtendedFileInfo>();
 			for (FTPFile ftpFile : ftpFiles) {
@@ -619,16 +715,16 @@ import com.enterprisedt.net.ftp.FTPTransferType;
 					continue;
 				}
 				Date lastModifiedServerInLocalTZ = ftpFile.lastModified();
-				if (serverTimeZoneShift != 0) {
+				if (serverTimeZoneShift != 0 && !machineListing) {
 					ftpFile.setLastModified(new Date(lastModifiedServerInLocalTZ.getTime()+serverTimeZoneShift));
 				}
-				if ((options & IExtendedFileStore.DETAILED) != 0) {
+				if ((options & IExtendedFileStore.DETAILED) != 0 && !machineListing) {
 					if (!ftpFile.isDir() && ftpFile.lastModified().getSeconds() == 0) {
 						if (serverSupportsFeature("MDTM")) { //$NON-NLS-1$
 							changeCurrentDir(path);
 							Policy.checkCanceled(monitor);
 							try {
-								Date lastModifiedLocalTZ = ftpClient.modtime(ftpFile.getName());
+								Date lastModifiedLocalTZ = client().modtime(ftpFile.getName());
 								if (lastModifiedLocalTZ != null) {
 									ftpFile.setLastModified(lastModifiedLocalTZ);
 								}
@@ -689,50 +785,26 @@ import com.enterprisedt.net.ftp.FTPTransferType;
 	 */
 	@Override
 	protected InputStream readFile(IPath path, IProgressMonitor monitor) throws CoreException, FileNotFoundException {
-		monitor.beginTask(Messages.FTPConnectionFileManager_initiating_download, 4);
-		FTPClient downloadFtpClient = new FTPClient();
+		monitor.beginTask(Messages.FTPConnectionFileManager_initiating_download, 2);
+		FTPClientPool.Session session = pool.current();
 		try {
-			initFTPClient(downloadFtpClient, ftpClient.getConnectMode() == FTPConnectMode.PASV, ftpClient.getControlEncoding());
-			downloadFtpClient.setRemoteHost(host);
-			downloadFtpClient.setRemotePort(port);
-			Policy.checkCanceled(monitor);
-			downloadFtpClient.connect();
-			monitor.worked(1);
-			Policy.checkCanceled(monitor);
-			downloadFtpClient.login(login, String.copyValueOf(password));
-			monitor.worked(1);
-			Policy.checkCanceled(monitor);
-			setMessageLogger(downloadFtpClient, messageLogWriter);
-			downloadFtpClient.setType(IFTPConstants.TRANSFER_TYPE_ASCII.equals(transferType)
-					? FTPTransferType.ASCII : FTPTransferType.BINARY);
-			try {
-				downloadFtpClient.chdir(path.removeLastSegments(1).toPortableString());
-			} catch (FTPException e) {
-				throwFileNotFound(e, path.removeLastSegments(1));
-			}
+			changeCurrentDir(path.removeLastSegments(1));
 			monitor.worked(1);
 			Policy.checkCanceled(monitor);
 			try {
-				return new FTPFileDownloadInputStream(downloadFtpClient,
-						new FTPInputStream(downloadFtpClient, path.lastSegment()));
+				InputStream stream = new FTPFileDownloadInputStream(pool, session,
+						new FTPInputStream(session.ftpClient, path.lastSegment()));
+				pool.detach(); // the stream returns the connection to the pool when closed
+				return stream;
 			} catch (FTPException e) {
 				throwFileNotFound(e, path);
 				return null;
 			}
 		} catch (Exception e) {
-			setMessageLogger(downloadFtpClient, null);
-			if (downloadFtpClient.connected()) {
-				try {
-					if (e instanceof OperationCanceledException
-							|| e instanceof FTPException
-							|| e instanceof FileNotFoundException) {
-						downloadFtpClient.quit();
-					} else {
-						downloadFtpClient.quitImmediately();
-					}
-				} catch (IOException ignore) {
-				} catch (FTPException ignore) {
-				}
+			if (!(e instanceof OperationCanceledException
+					|| e instanceof FTPException
+					|| e instanceof FileNotFoundException)) {
+				FTPClientPool.quit(session.ftpClient);
 			}
 			if (e instanceof OperationCanceledException) {
 				throw (OperationCanceledException) e;
@@ -749,48 +821,33 @@ import com.enterprisedt.net.ftp.FTPTransferType;
 	 * @see com.aptana.ide.core.ftp.BaseFTPConnectionFileManager#writeFile(org.eclipse.core.runtime.IPath, org.eclipse.core.runtime.IProgressMonitor)
 	 */
 	@Override
-	protected OutputStream writeFile(IPath path, IProgressMonitor monitor) throws CoreException, FileNotFoundException {
-		monitor.beginTask(Messages.FTPConnectionFileManager_initiating_file_upload, 4);
-		FTPClient uploadFtpClient = new FTPClient();
+	protected OutputStream writeFile(final IPath path, IProgressMonitor monitor) throws CoreException, FileNotFoundException {
+		monitor.beginTask(Messages.FTPConnectionFileManager_initiating_file_upload, 2);
+		FTPClientPool.Session session = pool.current();
 		try {
-			initFTPClient(uploadFtpClient, ftpClient.getConnectMode() == FTPConnectMode.PASV, ftpClient.getControlEncoding());
-			uploadFtpClient.setRemoteHost(host);
-			uploadFtpClient.setRemotePort(port);
-			Policy.checkCanceled(monitor);
-			uploadFtpClient.connect();
+			changeCurrentDir(path.removeLastSegments(1));
 			monitor.worked(1);
 			Policy.checkCanceled(monitor);
-			uploadFtpClient.login(login, String.copyValueOf(password));
-			monitor.worked(1);
-			Policy.checkCanceled(monitor);
-			setMessageLogger(uploadFtpClient, messageLogWriter);
-			uploadFtpClient.setType(IFTPConstants.TRANSFER_TYPE_ASCII.equals(transferType)
-					? FTPTransferType.ASCII : FTPTransferType.BINARY);
-			IPath dirPath = path.removeLastSegments(1);
-			try {
-				uploadFtpClient.chdir(dirPath.toPortableString());
-			} catch (FTPException e) {
-				throwFileNotFound(e, dirPath);
-			}
-			monitor.worked(1);
-			Policy.checkCanceled(monitor);
-			return new FTPFileUploadOutputStream(uploadFtpClient,
-					new FTPOutputStream(uploadFtpClient, generateTempFileName(path.lastSegment())),
-					path.lastSegment());
-		} catch (Exception e) {
-			setMessageLogger(uploadFtpClient, null);
-			if (uploadFtpClient.connected()) {
-				try {
-					if (e instanceof OperationCanceledException
-							|| e instanceof FTPException
-							|| e instanceof FileNotFoundException) {
-						uploadFtpClient.quit();
-					} else {
-						uploadFtpClient.quitImmediately();
+			OutputStream stream = new FTPFileUploadOutputStream(pool, session,
+					new FTPOutputStream(session.ftpClient, generateTempFileName(path.lastSegment())),
+					path.lastSegment()) {
+				@Override
+				public void close() throws IOException {
+					try {
+						super.close();
+					} finally {
+						// the file only appears under its name once the upload is renamed
+						clearCache(path.removeFirstSegments(basePath.segmentCount()).makeAbsolute());
 					}
-				} catch (IOException ignore) {
-				} catch (FTPException ignore) {
 				}
+			};
+			pool.detach(); // the stream returns the connection to the pool when closed
+			return stream;
+		} catch (Exception e) {
+			if (!(e instanceof OperationCanceledException
+					|| e instanceof FTPException
+					|| e instanceof FileNotFoundException)) {
+				FTPClientPool.quit(session.ftpClient);
 			}
 			if (e instanceof OperationCanceledException) {
 				throw (OperationCanceledException) e;
@@ -815,7 +872,7 @@ import com.enterprisedt.net.ftp.FTPTransferType;
 			Policy.checkCanceled(monitor);
 			recursiveDeleteTree(path, monitor, status);
 			changeCurrentDir(dirPath);
-			ftpClient.rmdir(path.lastSegment());
+			client().rmdir(path.lastSegment());
 		} catch (FileNotFoundException e) {
 			throw e;
 		} catch (OperationCanceledException e) {
@@ -842,7 +899,7 @@ import com.enterprisedt.net.ftp.FTPTransferType;
 			changeCurrentDir(dirPath);
 			Policy.checkCanceled(monitor);
 			try {
-				ftpClient.delete(path.lastSegment());
+				client().delete(path.lastSegment());
 			} catch (FTPException e) {
 				System.out.println(e);
 				throw e;
@@ -871,7 +928,7 @@ import com.enterprisedt.net.ftp.FTPTransferType;
 					return; // directory exists - return
 				} catch (FileNotFoundException ignore) {
 				}
-				ftpClient.mkdir(path.toPortableString());
+				client().mkdir(path.toPortableString());
 			} catch (FTPException e) {
 				throwFileNotFound(e, path);
 			}
@@ -891,7 +948,7 @@ import com.enterprisedt.net.ftp.FTPTransferType;
 			changeCurrentDir(Path.ROOT);
 			Policy.checkCanceled(monitor);
 			try {
-				ftpClient.rename(sourcePath.toPortableString(), destinationPath.toPortableString());
+				client().rename(sourcePath.toPortableString(), destinationPath.toPortableString());
 			} catch (FTPException e) {
 				throwFileNotFound(e, sourcePath);
 				System.out.println(e);
@@ -920,7 +977,7 @@ import com.enterprisedt.net.ftp.FTPTransferType;
 			IPath dirPath = path.removeLastSegments(1);
 			changeCurrentDir(dirPath);
 			Policy.checkCanceled(monitor);
-			ftpClient.setModTime(path.lastSegment(), new Date(modificationTime));
+			client().setModTime(path.lastSegment(), new Date(modificationTime));
 		} catch (FileNotFoundException e) {
 			throw e;
 		} catch (OperationCanceledException e) {
@@ -944,7 +1001,7 @@ import com.enterprisedt.net.ftp.FTPTransferType;
 			IPath dirPath = path.removeLastSegments(1);
 			changeCurrentDir(dirPath);
 			Policy.checkCanceled(monitor);
-			chmodSupported = ftpClient.site("CHMOD "+Long.toOctalString(permissions)+" "+path.lastSegment()); //$NON-NLS-1$ //$NON-NLS-2$
+			chmodSupported = client().site("CHMOD "+Long.toOctalString(permissions)+" "+path.lastSegment()); //$NON-NLS-1$ //$NON-NLS-2$
 		} catch (FileNotFoundException e) {
 			throw e;
 		} catch (OperationCanceledException e) {
@@ -968,7 +1025,7 @@ import com.enterprisedt.net.ftp.FTPTransferType;
 			IPath dirPath = path.removeLastSegments(1);
 			changeCurrentDir(dirPath);
 			Policy.checkCanceled(monitor);
-			chgrpSupported = ftpClient.site("CHGRP "+group+" "+path.lastSegment()); //$NON-NLS-1$ //$NON-NLS-2$
+			chgrpSupported = client().site("CHGRP "+group+" "+path.lastSegment()); //$NON-NLS-1$ //$NON-NLS-2$
 		} catch (FileNotFoundException e) {
 			throw e;
 		} catch (OperationCanceledException e) {
@@ -981,27 +1038,80 @@ import com.enterprisedt.net.ftp.FTPTransferType;
 	}
 
 	private FTPFile[] ftpSTAT(String dirname) throws IOException, FTPException, ParseException {
+		FTPFileFactory fileFactory = getFileFactory();
+
+        String[] validCodes = {"211", "212", "213"}; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		FTPReply reply = client().sendCommand("STAT "+dirname); //$NON-NLS-1$
+		client().validateReply(reply, validCodes);
+		String[] data = reply.getReplyData();
+		for (int i = 0; i < data.length; ++i) {
+			data[i] = data[i].trim();
+		}
+		synchronized (fileFactory) {
+			return fileFactory.parse(data);
+		}
+	}
+
+	private FTPFile[] ftpMLSD(IPath dirPath) throws IOException, FTPException, ParseException {
+		String[] entries = null;
+		try {
+			entries = ((ExtendedFTPClient) client()).mlsd(dirPath.toPortableString());
+		} catch (FTPException e) {
+			int code = e.getReplyCode();
+			if (code == 500 || code == 502) {
+				// advertised MLST only
+				mlsxSupported = Boolean.FALSE;
+				return null;
+			}
+			throwFileNotFound(e, dirPath);
+		}
+		List<FTPFile> list = new ArrayList<FTPFile>(entries.length);
+		for (String entry : entries) {
+			list.add(MLSXParser.parse(entry));
+		}
+		return list.toArray(new FTPFile[list.size()]);
+	}
+
+	private FTPFile ftpMLST(IPath path) throws IOException, FTPException, ParseException {
+		FTPReply reply = client().sendCommand("MLST "+path.toPortableString()); //$NON-NLS-1$
+		String code = reply.getReplyCode();
+		if ("550".equals(code) || "450".equals(code)) { //$NON-NLS-1$ //$NON-NLS-2$
+			return null;
+		}
+		if ("500".equals(code) || "502".equals(code)) { //$NON-NLS-1$ //$NON-NLS-2$
+			// advertised but not understood, so list directories instead
+			mlsxSupported = Boolean.FALSE;
+			return null;
+		}
+		client().validateReply(reply, "250"); //$NON-NLS-1$
+		String[] data = reply.getReplyData();
+		if (data == null || data.length == 0) {
+			return null;
+		}
+		return MLSXParser.parse(data[0]);
+	}
+
+	private synchronized FTPFileFactory getFileFactory() throws IOException, FTPException {
         if (fileFactory == null) {
             try {
-                fileFactory = new FTPFileFactory(ftpClient.system());
+                fileFactory = new FTPFileFactory(client().system());
             }
             catch (FTPException ex) {
                 fileFactory = new FTPFileFactory(""); //$NON-NLS-1$
             }
             fileFactory.setLocales(FTPClient.DEFAULT_LISTING_LOCALES);
         }
-
-        String[] validCodes = {"211", "212", "213"}; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
-		FTPReply reply = ftpClient.sendCommand("STAT "+dirname); //$NON-NLS-1$
-		ftpClient.validateReply(reply, validCodes);
-		String[] data = reply.getReplyData();
-		for (int i = 0; i < data.length; ++i) {
-			data[i] = data[i].trim();
-		}
-		return fileFactory.parse(data);
+        return fileFactory;
 	}
 	
 	private FTPFile[] listFiles(IPath dirPath, IProgressMonitor monitor) throws IOException, ParseException, FTPException {
+		if (mlsxSupported == Boolean.TRUE) {
+			Policy.checkCanceled(monitor);
+			FTPFile[] ftpFiles = ftpMLSD(dirPath);
+			if (ftpFiles != null) {
+				return ftpFiles;
+			}
+		}
 		if (statSuppoted != Boolean.FALSE) {
 			FTPFile[] ftpFiles = null;
 			try {
@@ -1019,7 +1129,7 @@ import com.enterprisedt.net.ftp.FTPTransferType;
 		} else {
 			changeCurrentDir(dirPath);
 			Policy.checkCanceled(monitor);
-			return ftpClient.dirDetails("-a"); //$NON-NLS-1$
+			return client().dirDetails("-a"); //$NON-NLS-1$
 		}
 	}
 	
@@ -1040,7 +1150,7 @@ import com.enterprisedt.net.ftp.FTPTransferType;
 				Policy.checkCanceled(monitor);
 				monitor.subTask(path.append(name).toPortableString());
 				try {
-					ftpClient.delete(name);
+					client().delete(name);
 				} catch (FTPException e) {
 					status.add(new Status(IStatus.ERROR, FTPPlugin.PLUGIN_ID,
 							StringUtils.format(Messages.FTPConnectionFileManager_deleting_failed, path.append(name).toPortableString()), e));
@@ -1053,7 +1163,7 @@ import com.enterprisedt.net.ftp.FTPTransferType;
 				Policy.checkCanceled(monitor);
 				changeCurrentDir(path);
 				Policy.checkCanceled(monitor);
-				ftpClient.rmdir(name);
+				client().rmdir(name);
 				monitor.worked(1);
 			}
 		} catch (IOException e) {
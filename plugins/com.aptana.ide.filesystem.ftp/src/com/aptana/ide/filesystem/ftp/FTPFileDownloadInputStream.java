@@ -38,7 +38,6 @@ package com.aptana.ide.filesystem.ftp;
 import java.io.IOException;
 import java.io.InputStream;
 
-import com.enterprisedt.net.ftp.FTPClient;
 import com.enterprisedt.net.ftp.FileTransferInputStream;
 
 /**
@@ -47,29 +46,31 @@ import com.enterprisedt.net.ftp.FileTransferInputStream;
  */
 /* package */ class FTPFileDownloadInputStream extends InputStream {
 
-	private FTPClient ftpClient;
+	private FTPClientPool pool;
+	private FTPClientPool.Session session;
 	private FileTransferInputStream ftpInputStream;
 	
 	/**
 	 * 
 	 */
-	public FTPFileDownloadInputStream(FTPClient ftpClient, FileTransferInputStream ftpInputStream) {
-		this.ftpClient = ftpClient;
+	public FTPFileDownloadInputStream(FTPClientPool pool, FTPClientPool.Session session, FileTransferInputStream ftpInputStream) {
+		this.pool = pool;
+		this.session = session;
 		this.ftpInputStream = ftpInputStream;
 	}
 	
 	private void safeQuit() {
-		ftpClient.setMessageListener(null);
-		try {
-			if (ftpClient.connected()) {
-				ftpClient.quit();
-			}
-		} catch (Exception e) {
-			try {
-				ftpClient.quitImmediately();
-			} catch (Exception ignore) {
-			}
-		}		
+		if (session != null) {
+			pool.discard(session);
+			session = null;
+		}
+	}
+
+	private void release() {
+		if (session != null) {
+			pool.release(session);
+			session = null;
+		}
 	}
 
 	/* (non-Javadoc)
@@ -105,8 +106,11 @@ import com.enterprisedt.net.ftp.FileTransferInputStream;
 	public void close() throws IOException {
 		try {
 			ftpInputStream.close();
-		} finally {
+		} catch (IOException e) {
 			safeQuit();
+			throw e;
+		} finally {
+			release();
 		}
 	}
 
@@ -38,7 +38,6 @@ package com.aptana.ide.filesystem.ftp;
 import java.io.IOException;
 import java.io.OutputStream;
 
-import com.enterprisedt.net.ftp.FTPClient;
 import com.enterprisedt.net.ftp.FTPException;
 import com.enterprisedt.net.ftp.FileTransferOutputStream;
 
@@ -48,34 +47,38 @@ import com.enterprisedt.net.ftp.FileTransferOutputStream;
  */
 /* package */ class FTPFileUploadOutputStream extends OutputStream {
 
-	private FTPClient ftpClient;
+	private FTPClientPool pool;
+	private FTPClientPool.Session session;
 	private FileTransferOutputStream ftpOutputStream;
 	private String filename;
 	
 	/**
 	 * 
 	 */
-	public FTPFileUploadOutputStream(FTPClient ftpClient, FileTransferOutputStream ftpOutputStream, String filename) {
-		this.ftpClient = ftpClient;
+	public FTPFileUploadOutputStream(FTPClientPool pool, FTPClientPool.Session session, FileTransferOutputStream ftpOutputStream, String filename) {
+		this.pool = pool;
+		this.session = session;
 		this.ftpOutputStream = ftpOutputStream;
 		this.filename = filename;
 	}
 
 	private void safeQuit(boolean failed) {
-		ftpClient.setMessageListener(null);
-		try {
-			if (ftpClient.connected()) {
-				if (failed) {
-					ftpClient.delete(ftpOutputStream.getRemoteFile());
-				}
-				ftpClient.quit();
-			}
-		} catch (Exception e) {
+		if (session == null) {
+			return;
+		}
+		if (failed) {
 			try {
-				ftpClient.quitImmediately();
+				if (session.ftpClient.connected()) {
+					session.ftpClient.delete(ftpOutputStream.getRemoteFile());
+				}
 			} catch (Exception ignore) {
 			}
-		}		
+			// the state of a connection after a failed transfer is unknown
+			pool.discard(session);
+		} else {
+			pool.release(session);
+		}
+		session = null;
 	}
 
 	/* (non-Javadoc)
@@ -96,11 +99,19 @@ import com.enterprisedt.net.ftp.FileTransferOutputStream;
 	 */
 	@Override
 	public void close() throws IOException {
+		if (session == null) {
+			return;
+		}
 		try {
-			ftpOutputStream.close();
+			try {
+				ftpOutputStream.close();
+			} catch (IOException e) {
+				safeQuit(true);
+				throw e;
+			}
 			if (filename != null) {
 				try {
-					ftpClient.rename(ftpOutputStream.getRemoteFile(), filename);
+					session.ftpClient.rename(ftpOutputStream.getRemoteFile(), filename);
 				} catch (FTPException e) {
 					safeQuit(true);
 					throw new IOException(e.getMessage()); 
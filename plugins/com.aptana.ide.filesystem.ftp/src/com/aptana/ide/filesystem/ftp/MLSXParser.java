@@ -0,0 +1,203 @@
+/**
+ * This file Copyright (c) 2005-2009 Aptana, Inc. This program is
+ * dual-licensed under both the Aptana Public License and the GNU General
+ * Public license. You may elect to use one or the other of these licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * AS-IS and WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, TITLE, or
+ * NONINFRINGEMENT. Redistribution, except as permitted by whichever of
+ * the GPL or APL you select, is prohibited.
+ *
+ * 1. For the GPL license (GPL), you can redistribute and/or modify this
+ * program under the terms of the GNU General Public License,
+ * Version 3, as published by the Free Software Foundation.  You should
+ * have received a copy of the GNU General Public License, Version 3 along
+ * with this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Aptana provides a special exception to allow redistribution of this file
+ * with certain other free and open source software ("FOSS") code and certain additional terms
+ * pursuant to Section 7 of the GPL. You may view the exception and these
+ * terms on the web at http://www.aptana.com/legal/gpl/.
+ *
+ * 2. For the Aptana Public License (APL), this program and the
+ * accompanying materials are made available under the terms of the APL
+ * v1.0 which accompanies this distribution, and is available at
+ * http://www.aptana.com/legal/apl/.
+ *
+ * You may view the GPL, Aptana's exception and additional terms, and the
+ * APL in the file titled license.html at the root of the corresponding
+ * plugin containing this source file.
+ *
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.ide.filesystem.ftp;
+
+import java.text.ParseException;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import com.enterprisedt.net.ftp.FTPFile;
+
+/**
+ * Parses RFC 3659 MLSD/MLST entries. Times are in UTC and permissions come from UNIX.mode,
+ * so no locale or server time zone guessing is involved.
+ * 
+ * @author agent (agent@local)
+ *
+ */
+/* package */ final class MLSXParser {
+
+	private static final TimeZone UTC = TimeZone.getTimeZone("UTC"); //$NON-NLS-1$
+
+	/**
+	 * 
+	 */
+	private MLSXParser() {
+	}
+
+	/**
+	 * Parses one entry. The current and parent directory entries are named "." and "..".
+	 * @param entry
+	 * @return FTPFile
+	 * @throws ParseException
+	 */
+	public static FTPFile parse(String entry) throws ParseException {
+		int start = 0;
+		while (start < entry.length() && entry.charAt(start) == ' ') {
+			++start;
+		}
+		int index = entry.indexOf("; ", start); //$NON-NLS-1$
+		String name;
+		String[] facts;
+		if (index >= 0) {
+			name = entry.substring(index + 2);
+			facts = entry.substring(start, index).split(";"); //$NON-NLS-1$
+		} else if (start < entry.length()) {
+			// no facts at all
+			name = entry.substring(start);
+			facts = new String[0];
+		} else {
+			throw new ParseException(entry, start);
+		}
+		FTPFile ftpFile = new FTPFile(entry);
+		ftpFile.setName(name);
+		String mode = null;
+		String perm = null;
+		for (String fact : facts) {
+			int eq = fact.indexOf('=');
+			if (eq <= 0) {
+				continue;
+			}
+			String key = fact.substring(0, eq).toLowerCase();
+			String value = fact.substring(eq + 1);
+			if ("type".equals(key)) { //$NON-NLS-1$
+				String type = value.toLowerCase();
+				if ("dir".equals(type)) { //$NON-NLS-1$
+					ftpFile.setDir(true);
+				} else if ("cdir".equals(type)) { //$NON-NLS-1$
+					ftpFile.setDir(true);
+					ftpFile.setName("."); //$NON-NLS-1$
+				} else if ("pdir".equals(type)) { //$NON-NLS-1$
+					ftpFile.setDir(true);
+					ftpFile.setName(".."); //$NON-NLS-1$
+				} else if (type.startsWith("os.unix=slink") || type.startsWith("os.unix=symlink")) { //$NON-NLS-1$ //$NON-NLS-2$
+					ftpFile.setLink(true);
+					int colon = value.indexOf(':');
+					if (colon > 0) {
+						ftpFile.setLinkedName(value.substring(colon + 1));
+					}
+				}
+			} else if ("size".equals(key)) { //$NON-NLS-1$
+				try {
+					ftpFile.setSize(Long.parseLong(value));
+				} catch (NumberFormatException e) {
+				}
+			} else if ("modify".equals(key)) { //$NON-NLS-1$
+				ftpFile.setLastModified(parseTime(value).getTime());
+			} else if ("unix.mode".equals(key)) { //$NON-NLS-1$
+				mode = value;
+			} else if ("unix.owner".equals(key) || ("unix.uid".equals(key) && ftpFile.getOwner() == null)) { //$NON-NLS-1$ //$NON-NLS-2$
+				ftpFile.setOwner(value);
+			} else if ("unix.group".equals(key) || ("unix.gid".equals(key) && ftpFile.getGroup() == null)) { //$NON-NLS-1$ //$NON-NLS-2$
+				ftpFile.setGroup(value);
+			} else if ("perm".equals(key)) { //$NON-NLS-1$
+				perm = value.toLowerCase();
+			}
+		}
+		ftpFile.setPermissions(toPermissionsString(ftpFile.isDir(), mode, perm));
+		return ftpFile;
+	}
+
+	/**
+	 * Parses a YYYYMMDDHHMMSS[.sss] time value
+	 * @param value
+	 * @return Calendar
+	 * @throws ParseException
+	 */
+	private static Calendar parseTime(String value) throws ParseException {
+		if (value.length() < 14) {
+			throw new ParseException(value, 0);
+		}
+		try {
+			Calendar calendar = Calendar.getInstance(UTC);
+			calendar.clear();
+			calendar.set(Integer.parseInt(value.substring(0, 4)),
+					Integer.parseInt(value.substring(4, 6)) - 1,
+					Integer.parseInt(value.substring(6, 8)),
+					Integer.parseInt(value.substring(8, 10)),
+					Integer.parseInt(value.substring(10, 12)),
+					Integer.parseInt(value.substring(12, 14)));
+			if (value.length() > 15 && value.charAt(14) == '.') {
+				String fraction = (value.substring(15) + "00").substring(0, 3); //$NON-NLS-1$
+				calendar.set(Calendar.MILLISECOND, Integer.parseInt(fraction));
+			}
+			return calendar;
+		} catch (NumberFormatException e) {
+			throw new ParseException(value, 0);
+		}
+	}
+
+	/**
+	 * Builds an ls style permissions string from UNIX.mode, or from the perm fact when the server doesn't send the mode
+	 * @param directory
+	 * @param mode
+	 * @param perm
+	 * @return String
+	 */
+	private static String toPermissionsString(boolean directory, String mode, String perm) {
+		StringBuffer sb = new StringBuffer(10);
+		sb.append(directory ? 'd' : '-');
+		int bits = -1;
+		if (mode != null) {
+			try {
+				bits = Integer.parseInt(mode, 8);
+			} catch (NumberFormatException e) {
+			}
+		}
+		if (bits == -1) {
+			if (perm == null) {
+				return null;
+			}
+			// the perm fact only tells what the logged in user may do
+			bits = 0;
+			if (directory ? (perm.indexOf('l') >= 0 || perm.indexOf('e') >= 0) : perm.indexOf('r') >= 0) {
+				bits |= 0400;
+			}
+			if (directory ? (perm.indexOf('c') >= 0 || perm.indexOf('m') >= 0 || perm.indexOf('p') >= 0)
+					: (perm.indexOf('w') >= 0 || perm.indexOf('a') >= 0)) {
+				bits |= 0200;
+			}
+			if (directory && perm.indexOf('e') >= 0) {
+				bits |= 0100;
+			}
+		}
+		String letters = "rwx"; //$NON-NLS-1$
+		for (int shift = 8; shift >= 0; --shift) {
+			sb.append((bits & (1 << shift)) != 0 ? letters.charAt((8 - shift) % 3) : '-');
+		}
+		return sb.toString();
+	}
+
+}
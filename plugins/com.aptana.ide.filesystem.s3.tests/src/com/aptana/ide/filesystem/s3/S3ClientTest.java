@@ -0,0 +1,340 @@
+package com.aptana.ide.filesystem.s3;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import junit.framework.TestCase;
+
+import com.amazon.s3.ListEntry;
+
+/**
+ * Runs S3Client against a stand-in server that answers bucket listings and checks request signatures the way S3
+ * does
+ *
+ * @author agent (agent@local)
+ */
+public class S3ClientTest extends TestCase
+{
+
+	private static final String ENDPOINT_PROPERTY = "com.aptana.ide.filesystem.s3.endpoint"; //$NON-NLS-1$
+	private static final String ACCESS_KEY = "AKIDTEST"; //$NON-NLS-1$
+
+	private StandInServer server;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		server = new StandInServer("first-secret"); //$NON-NLS-1$
+		System.setProperty(ENDPOINT_PROPERTY, "http://127.0.0.1:" + server.getPort()); //$NON-NLS-1$
+		S3Client.disconnectAll();
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		S3Client.disconnectAll();
+		System.getProperties().remove(ENDPOINT_PROPERTY);
+		server.close();
+		super.tearDown();
+	}
+
+	public void testListSignedWithAccessKey() throws Exception
+	{
+		List<String> keys = list(S3Client.getClient(uri("first-secret"))); //$NON-NLS-1$
+
+		assertEquals(2, keys.size());
+		assertEquals("a.txt", keys.get(0)); //$NON-NLS-1$
+		assertEquals("b.txt", keys.get(1)); //$NON-NLS-1$
+		assertTrue(server.getAuthorization().startsWith("AWS " + ACCESS_KEY + ":")); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	public void testClientSharedPerAccessKeyAndBucket() throws Exception
+	{
+		S3Client client = S3Client.getClient(uri("first-secret")); //$NON-NLS-1$
+
+		assertSame(client, S3Client.getClient(uri("first-secret"))); //$NON-NLS-1$
+		assertNotSame(client, S3Client.getClient(new URI("s3://" + ACCESS_KEY + ":first-secret@other/"))); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals(2, S3Client.getClientCount());
+	}
+
+	public void testClientSharedByKeysOfBucket() throws Exception
+	{
+		S3Client client = S3Client.getClient(uri("first-secret")); //$NON-NLS-1$
+
+		assertSame(client, S3Client.getClient(new URI("s3://" + ACCESS_KEY + ":first-secret@bucket/folder/a.txt"))); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals(1, S3Client.getClientCount());
+	}
+
+	public void testClientSharedAcrossThreads() throws Exception
+	{
+		final URI uri = uri("first-secret"); //$NON-NLS-1$
+		final List<S3Client> clients = Collections.synchronizedList(new ArrayList<S3Client>());
+		final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < 8; ++i)
+		{
+			threads.add(new Thread()
+			{
+				public void run()
+				{
+					try
+					{
+						for (int j = 0; j < 5; ++j)
+						{
+							S3Client client = S3Client.getClient(uri);
+							clients.add(client);
+							assertEquals(2, list(client).size());
+						}
+					}
+					catch (Throwable e)
+					{
+						failures.add(e);
+					}
+				}
+			});
+		}
+		for (Thread thread : threads)
+			thread.start();
+		for (Thread thread : threads)
+			thread.join();
+
+		assertEquals(failures.toString(), 0, failures.size());
+		assertEquals(40, clients.size());
+		assertEquals(1, new HashSet<S3Client>(clients).size());
+		assertEquals(1, S3Client.getClientCount());
+	}
+
+	public void testSecretChangeReplacesClient() throws Exception
+	{
+		S3Client first = S3Client.getClient(uri("first-secret")); //$NON-NLS-1$
+		list(first);
+
+		// the key was rotated on the server
+		server.setSecret("second-secret"); //$NON-NLS-1$
+		try
+		{
+			list(first);
+			fail("the old secret must no longer be accepted"); //$NON-NLS-1$
+		}
+		catch (IOException e)
+		{
+			assertTrue(e.getMessage(), e.getMessage().startsWith("HTTP 403")); //$NON-NLS-1$
+		}
+
+		S3Client second = S3Client.getClient(uri("second-secret")); //$NON-NLS-1$
+		assertNotSame(first, second);
+		assertEquals(1, S3Client.getClientCount());
+		assertEquals(2, list(second).size());
+	}
+
+	public void testDisconnectDropsClient() throws Exception
+	{
+		URI uri = uri("first-secret"); //$NON-NLS-1$
+		S3Client client = S3Client.getClient(uri);
+
+		S3Client.disconnect(uri);
+		assertEquals(0, S3Client.getClientCount());
+		assertNotSame(client, S3Client.getClient(uri));
+	}
+
+	public void testClientsBounded() throws Exception
+	{
+		for (int i = 0; i < S3Client.MAX_CLIENTS * 2; ++i)
+		{
+			S3Client.getClient(new URI("s3://" + ACCESS_KEY + ":first-secret@bucket" + i + "/")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		}
+		assertEquals(S3Client.MAX_CLIENTS, S3Client.getClientCount());
+	}
+
+	private static URI uri(String secret) throws Exception
+	{
+		return new URI("s3://" + ACCESS_KEY + ":" + secret + "@bucket/"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+	}
+
+	private static List<String> list(S3Client client) throws IOException
+	{
+		final List<String> keys = new ArrayList<String>();
+		client.list("", null, new S3Client.IListingVisitor() //$NON-NLS-1$
+		{
+			public boolean visitPage(List<ListEntry> entries, List<String> commonPrefixes)
+			{
+				for (ListEntry entry : entries)
+					keys.add(entry.key);
+				return true;
+			}
+		});
+		return keys;
+	}
+
+	/**
+	 * Answers every GET with a listing of a.txt and b.txt, once the request is signed with the current secret
+	 */
+	private static class StandInServer implements Runnable
+	{
+
+		private final ServerSocket socket;
+		private final Thread thread;
+		private volatile String secret;
+		private volatile String authorization;
+
+		StandInServer(String secret) throws IOException
+		{
+			this.secret = secret;
+			socket = new ServerSocket(0);
+			thread = new Thread(this, "Stand-in S3"); //$NON-NLS-1$
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		int getPort()
+		{
+			return socket.getLocalPort();
+		}
+
+		void setSecret(String secret)
+		{
+			this.secret = secret;
+		}
+
+		String getAuthorization()
+		{
+			return authorization;
+		}
+
+		void close() throws IOException
+		{
+			socket.close();
+		}
+
+		public void run()
+		{
+			while (!socket.isClosed())
+			{
+				try
+				{
+					Socket client = socket.accept();
+					try
+					{
+						serve(client);
+					}
+					finally
+					{
+						client.close();
+					}
+				}
+				catch (IOException e)
+				{
+					// closed
+				}
+			}
+		}
+
+		private void serve(Socket client) throws IOException
+		{
+			BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), "ISO-8859-1")); //$NON-NLS-1$
+			String[] requestLine = in.readLine().split(" "); //$NON-NLS-1$
+			Map<String, String> headers = new HashMap<String, String>();
+			for (String line = in.readLine(); line != null && line.length() > 0; line = in.readLine())
+			{
+				int colon = line.indexOf(':');
+				headers.put(line.substring(0, colon).trim().toLowerCase(), line.substring(colon + 1).trim());
+			}
+			authorization = headers.get("authorization"); //$NON-NLS-1$
+
+			String path = requestLine[1];
+			int query = path.indexOf('?');
+			String bucket = path.substring(1, query != -1 ? query : path.length());
+			if (bucket.endsWith("/")) //$NON-NLS-1$
+				bucket = bucket.substring(0, bucket.length() - 1);
+			String resource = query != -1 ? path.substring(0, query) : path;
+			String stringToSign = requestLine[0] + "\n" + value(headers, "content-md5") + "\n" //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+					+ value(headers, "content-type") + "\n" + value(headers, "date") + "\n" + resource; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+
+			if (!("AWS " + ACCESS_KEY + ":" + sign(stringToSign)).equals(authorization)) //$NON-NLS-1$ //$NON-NLS-2$
+			{
+				respond(client, "403 Forbidden", //$NON-NLS-1$
+						"<Error><Code>SignatureDoesNotMatch</Code></Error>"); //$NON-NLS-1$
+				return;
+			}
+			StringBuilder body = new StringBuilder();
+			body.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>"); //$NON-NLS-1$
+			body.append("<ListBucketResult xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\">"); //$NON-NLS-1$
+			body.append("<Name>").append(bucket).append("</Name><Prefix></Prefix><Marker></Marker>"); //$NON-NLS-1$ //$NON-NLS-2$
+			body.append("<MaxKeys>1000</MaxKeys><IsTruncated>false</IsTruncated>"); //$NON-NLS-1$
+			for (String key : new String[] { "a.txt", "b.txt" }) //$NON-NLS-1$ //$NON-NLS-2$
+			{
+				body.append("<Contents><Key>").append(key).append("</Key>"); //$NON-NLS-1$ //$NON-NLS-2$
+				body.append("<LastModified>2009-06-22T00:00:00.000Z</LastModified><ETag>\"e\"</ETag>"); //$NON-NLS-1$
+				body.append("<Size>1</Size><Owner><ID>o</ID><DisplayName>o</DisplayName></Owner>"); //$NON-NLS-1$
+				body.append("<StorageClass>STANDARD</StorageClass></Contents>"); //$NON-NLS-1$
+			}
+			body.append("</ListBucketResult>"); //$NON-NLS-1$
+			respond(client, "200 OK", body.toString()); //$NON-NLS-1$
+		}
+
+		private static String value(Map<String, String> headers, String name)
+		{
+			String value = headers.get(name);
+			return value != null ? value : ""; //$NON-NLS-1$
+		}
+
+		private String sign(String stringToSign) throws IOException
+		{
+			try
+			{
+				Mac mac = Mac.getInstance("HmacSHA1"); //$NON-NLS-1$
+				mac.init(new SecretKeySpec(secret.getBytes("UTF-8"), "HmacSHA1")); //$NON-NLS-1$ //$NON-NLS-2$
+				return base64(mac.doFinal(stringToSign.getBytes("UTF-8"))); //$NON-NLS-1$
+			}
+			catch (Exception e)
+			{
+				IOException exception = new IOException(e.getMessage());
+				exception.initCause(e);
+				throw exception;
+			}
+		}
+
+		private static String base64(byte[] bytes)
+		{
+			String digits = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/"; //$NON-NLS-1$
+			StringBuilder result = new StringBuilder();
+			for (int i = 0; i < bytes.length; i += 3)
+			{
+				int n = (bytes[i] & 0xff) << 16;
+				if (i + 1 < bytes.length)
+					n |= (bytes[i + 1] & 0xff) << 8;
+				if (i + 2 < bytes.length)
+					n |= bytes[i + 2] & 0xff;
+				result.append(digits.charAt((n >> 18) & 63)).append(digits.charAt((n >> 12) & 63));
+				result.append(i + 1 < bytes.length ? digits.charAt((n >> 6) & 63) : '=');
+				result.append(i + 2 < bytes.length ? digits.charAt(n & 63) : '=');
+			}
+			return result.toString();
+		}
+
+		private static void respond(Socket client, String status, String body) throws IOException
+		{
+			byte[] bytes = body.getBytes("UTF-8"); //$NON-NLS-1$
+			OutputStream out = client.getOutputStream();
+			out.write(("HTTP/1.1 " + status + "\r\nContent-Type: application/xml\r\nContent-Length: " //$NON-NLS-1$ //$NON-NLS-2$
+					+ bytes.length + "\r\nConnection: close\r\n\r\n").getBytes("ISO-8859-1")); //$NON-NLS-1$ //$NON-NLS-2$
+			out.write(bytes);
+			out.flush();
+		}
+	}
+}
@@ -0,0 +1,197 @@
+package com.aptana.ide.filesystem.s3;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+/**
+ * Writes objects through multipart uploads to a stand-in server, and checks how they are split into parts and what is
+ * left behind when an upload fails
+ *
+ * @author agent (agent@local)
+ */
+public class S3MultipartOutputStreamTest extends TestCase
+{
+
+	private static final int PART_SIZE = 1024;
+
+	private StandInObjectServer server;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		server = new StandInObjectServer();
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		server.close();
+		super.tearDown();
+	}
+
+	public void testSmallObjectSentInOnePut() throws Exception
+	{
+		byte[] data = bytes(PART_SIZE - 1);
+		OutputStream out = open();
+		out.write(data);
+		out.close();
+
+		assertEquals(Arrays.asList(new String[] { "PUT" }), server.getRequests()); //$NON-NLS-1$
+		assertTrue(Arrays.equals(data, server.getObject()));
+	}
+
+	public void testEmptyObject() throws Exception
+	{
+		server.setObject(bytes(10));
+		open().close();
+
+		assertEquals(Arrays.asList(new String[] { "PUT" }), server.getRequests()); //$NON-NLS-1$
+		assertEquals(0, server.getObject().length);
+	}
+
+	public void testPartsSplitAcrossWrites() throws Exception
+	{
+		byte[] data = bytes(3500);
+		OutputStream out = open();
+		// writes that don't line up with the parts
+		out.write(data, 0, 1000);
+		out.write(data, 1000, 1000);
+		out.write(data[2000]);
+		out.write(data, 2001, 999);
+		out.write(data, 3000, 500);
+		out.close();
+
+		Map<Integer, byte[]> parts = server.getParts();
+		assertEquals(4, parts.size());
+		assertEquals(PART_SIZE, parts.get(1).length);
+		assertEquals(PART_SIZE, parts.get(2).length);
+		assertEquals(PART_SIZE, parts.get(3).length);
+		assertEquals(3500 - 3 * PART_SIZE, parts.get(4).length);
+		assertEquals(Arrays.asList(new String[] { "\"part1\"", "\"part2\"", "\"part3\"", "\"part4\"" }), //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+				server.getCompletedETags());
+		assertTrue(Arrays.equals(data, server.getObject()));
+		assertFalse(server.isAborted());
+		assertEquals(1, server.getRequests("POST uploads").size()); //$NON-NLS-1$
+		assertEquals(1, server.getRequests("POST uploadId").size()); //$NON-NLS-1$
+	}
+
+	public void testExactMultipleHasNoEmptyPart() throws Exception
+	{
+		byte[] data = bytes(2 * PART_SIZE);
+		OutputStream out = open();
+		out.write(data);
+		out.close();
+
+		assertEquals(2, server.getParts().size());
+		assertEquals(2, server.getCompletedETags().size());
+		assertTrue(Arrays.equals(data, server.getObject()));
+	}
+
+	public void testFailedPartRetried() throws Exception
+	{
+		server.failPart(2, 2);
+		byte[] data = bytes(3 * PART_SIZE + 10);
+		OutputStream out = open();
+		out.write(data);
+		out.close();
+
+		// the part is sent again on its own
+		assertEquals(3, server.getRequests("PUT partNumber=2&").size()); //$NON-NLS-1$
+		assertEquals(1, server.getRequests("PUT partNumber=1&").size()); //$NON-NLS-1$
+		assertEquals(4, server.getParts().size());
+		assertTrue(Arrays.equals(data, server.getObject()));
+		assertFalse(server.isAborted());
+	}
+
+	public void testFailedPartAbortsUpload() throws Exception
+	{
+		server.failPart(1, Integer.MAX_VALUE);
+		OutputStream out = open();
+		try
+		{
+			out.write(bytes(4 * PART_SIZE));
+			out.close();
+			fail();
+		}
+		catch (IOException e)
+		{
+			// the part failed on every attempt
+		}
+
+		assertEquals(3, server.getRequests("PUT partNumber=1&").size()); //$NON-NLS-1$
+		assertTrue(server.isAborted());
+		assertTrue(server.getRequests("POST uploadId").isEmpty()); //$NON-NLS-1$
+		assertNull(server.getCompletedETags());
+
+		try
+		{
+			out.write(1);
+			fail();
+		}
+		catch (IOException e)
+		{
+			// closed by the failure
+		}
+		out.close();
+		assertEquals(1, server.getRequests("DELETE").size()); //$NON-NLS-1$
+	}
+
+	public void testFailedCompleteAbortsUpload() throws Exception
+	{
+		server.setFailComplete(true);
+		OutputStream out = open();
+		out.write(bytes(PART_SIZE + 1));
+		try
+		{
+			out.close();
+			fail();
+		}
+		catch (IOException e)
+		{
+			// the error came in the body of the response
+		}
+
+		assertTrue(server.isAborted());
+		assertEquals(1, server.getRequests("DELETE").size()); //$NON-NLS-1$
+	}
+
+	public void testWriteAfterClose() throws Exception
+	{
+		OutputStream out = open();
+		out.close();
+		try
+		{
+			out.write(1);
+			fail();
+		}
+		catch (IOException e)
+		{
+			// closed
+		}
+		// closing again doesn't upload again
+		out.close();
+		assertEquals(1, server.getRequests().size());
+	}
+
+	private OutputStream open() throws Exception
+	{
+		S3FileStore store = new S3FileStore(new URI("s3://key:secret@" + StandInObjectServer.BUCKET + "/" //$NON-NLS-1$ //$NON-NLS-2$
+				+ StandInObjectServer.KEY));
+		return new S3MultipartOutputStream(store, server.createConnection(), StandInObjectServer.BUCKET,
+				StandInObjectServer.KEY, PART_SIZE, 2);
+	}
+
+	static byte[] bytes(int length)
+	{
+		byte[] data = new byte[length];
+		for (int i = 0; i < length; ++i)
+			data[i] = (byte) (i * 31 + i / 251);
+		return data;
+	}
+}
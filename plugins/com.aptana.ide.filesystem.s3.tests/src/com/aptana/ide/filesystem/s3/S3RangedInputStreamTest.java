@@ -0,0 +1,168 @@
+package com.aptana.ide.filesystem.s3;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import com.amazon.s3.AWSAuthConnection;
+
+/**
+ * Reads objects in ranges from a stand-in server, including objects that are replaced while they are read
+ *
+ * @author agent (agent@local)
+ */
+public class S3RangedInputStreamTest extends TestCase
+{
+
+	private static final int CHUNK_SIZE = 1000;
+
+	private StandInObjectServer server;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		server = new StandInObjectServer();
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		server.close();
+		super.tearDown();
+	}
+
+	public void testReadsAllRanges() throws Exception
+	{
+		byte[] data = S3MultipartOutputStreamTest.bytes(10 * CHUNK_SIZE + 17);
+		server.setObject(data);
+
+		assertTrue(Arrays.equals(data, readAll(open(data.length))));
+		assertEquals(11, server.getRequests("GET").size()); //$NON-NLS-1$
+		// every range after the first is pinned to the version the first one came from
+		List<String> ifMatches = server.getIfMatches();
+		assertNull(ifMatches.get(0));
+		assertEquals(Collections.nCopies(10, "\"v1\""), ifMatches.subList(1, 11)); //$NON-NLS-1$
+	}
+
+	public void testSingleRange() throws Exception
+	{
+		byte[] data = S3MultipartOutputStreamTest.bytes(CHUNK_SIZE);
+		server.setObject(data);
+
+		assertTrue(Arrays.equals(data, readAll(open(data.length))));
+		assertEquals(1, server.getRequests("GET").size()); //$NON-NLS-1$
+	}
+
+	public void testChangedObjectFails() throws Exception
+	{
+		byte[] data = S3MultipartOutputStreamTest.bytes(10 * CHUNK_SIZE);
+		server.setObject(data);
+		server.replaceObjectAfter(4, new byte[data.length]);
+
+		assertChangeDetected(open(data.length));
+	}
+
+	public void testChangeDetectedWithoutIfMatch() throws Exception
+	{
+		// a server that ignores If-Match still sends the ETag of what it served
+		server.setHonorIfMatch(false);
+		byte[] data = S3MultipartOutputStreamTest.bytes(10 * CHUNK_SIZE);
+		server.setObject(data);
+		server.replaceObjectAfter(4, new byte[data.length]);
+
+		assertChangeDetected(open(data.length));
+	}
+
+	public void testChangedLengthFails() throws Exception
+	{
+		server.setHonorIfMatch(false);
+		byte[] data = S3MultipartOutputStreamTest.bytes(10 * CHUNK_SIZE);
+		server.setObject(data);
+		server.replaceObjectAfter(4, new byte[data.length + CHUNK_SIZE]);
+
+		assertChangeDetected(open(data.length));
+	}
+
+	public void testFailedRangeRetried() throws Exception
+	{
+		byte[] data = S3MultipartOutputStreamTest.bytes(5 * CHUNK_SIZE);
+		server.setObject(data);
+		server.failRange(2 * CHUNK_SIZE, 2);
+
+		assertTrue(Arrays.equals(data, readAll(open(data.length))));
+		assertEquals(7, server.getRequests("GET").size()); //$NON-NLS-1$
+	}
+
+	public void testRangeFailingForGood() throws Exception
+	{
+		byte[] data = S3MultipartOutputStreamTest.bytes(5 * CHUNK_SIZE);
+		server.setObject(data);
+		server.failRange(2 * CHUNK_SIZE, Integer.MAX_VALUE);
+
+		InputStream in = open(data.length);
+		try
+		{
+			readAll(in);
+			fail();
+		}
+		catch (IOException e)
+		{
+			assertTrue(e.getMessage(), e.getMessage().startsWith("HTTP 503")); //$NON-NLS-1$
+		}
+	}
+
+	private void assertChangeDetected(InputStream in) throws IOException
+	{
+		try
+		{
+			readAll(in);
+			fail();
+		}
+		catch (IOException e)
+		{
+			assertTrue(e.getMessage(), e.getMessage().endsWith("changed while it was read")); //$NON-NLS-1$
+		}
+		// a change isn't retried, and no range after it is requested
+		assertTrue(server.getRequests("GET").size() <= 5 + 2); //$NON-NLS-1$
+	}
+
+	/**
+	 * Opens the object the way S3FileStore does, with a request for the first range
+	 */
+	private InputStream open(long length) throws IOException
+	{
+		AWSAuthConnection connection = server.createConnection();
+		Map<String, List<String>> headers = new HashMap<String, List<String>>();
+		headers.put("Range", Collections.singletonList(S3FileStore.range(0, CHUNK_SIZE))); //$NON-NLS-1$
+		HttpURLConnection first = connection.getRaw(StandInObjectServer.BUCKET, StandInObjectServer.KEY, headers);
+		assertEquals(HttpURLConnection.HTTP_PARTIAL, first.getResponseCode());
+		assertEquals(length, S3FileStore.getContentRangeLength(first));
+		return new S3RangedInputStream(connection, StandInObjectServer.BUCKET, StandInObjectServer.KEY, first, length,
+				CHUNK_SIZE, 2);
+	}
+
+	private static byte[] readAll(InputStream in) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[333];
+		try
+		{
+			for (int n = in.read(buffer); n != -1; n = in.read(buffer))
+				out.write(buffer, 0, n);
+		}
+		finally
+		{
+			in.close();
+		}
+		return out.toByteArray();
+	}
+}
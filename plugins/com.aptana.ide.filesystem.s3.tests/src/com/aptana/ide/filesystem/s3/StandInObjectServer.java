@@ -0,0 +1,385 @@
+package com.aptana.ide.filesystem.s3;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.amazon.s3.AWSAuthConnection;
+import com.amazon.s3.CallingFormat;
+
+/**
+ * Serves one object the way S3 does, for the reads and writes of a single key: plain and multipart uploads, and ranged
+ * reads with If-Match. Requests can be made to fail, and the object can be replaced while it is read.
+ *
+ * @author agent (agent@local)
+ */
+class StandInObjectServer implements Runnable
+{
+
+	static final String BUCKET = "bucket"; //$NON-NLS-1$
+	static final String KEY = "folder/object.bin"; //$NON-NLS-1$
+	static final String UPLOAD_ID = "upload-1"; //$NON-NLS-1$
+
+	private final ServerSocket socket;
+	private final Thread thread;
+	private final List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+	private final List<String> ifMatches = Collections.synchronizedList(new ArrayList<String>());
+	private final Map<Integer, byte[]> parts = Collections.synchronizedMap(new TreeMap<Integer, byte[]>());
+	private final Map<Integer, Integer> partFailures = Collections.synchronizedMap(new HashMap<Integer, Integer>());
+	private final Map<Long, Integer> rangeFailures = Collections.synchronizedMap(new HashMap<Long, Integer>());
+	private volatile byte[] object = new byte[0];
+	private volatile String etag = "\"v1\""; //$NON-NLS-1$
+	private volatile byte[] replacement;
+	private volatile int replaceAfterReads = -1;
+	private volatile boolean honorIfMatch = true;
+	private volatile boolean failComplete;
+	private volatile List<String> completedETags;
+	private volatile boolean aborted;
+	private int reads;
+
+	StandInObjectServer() throws IOException
+	{
+		socket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1")); //$NON-NLS-1$
+		thread = new Thread(this, "Stand-in S3 object"); //$NON-NLS-1$
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	AWSAuthConnection createConnection()
+	{
+		return new AWSAuthConnection("key", "secret", false, "127.0.0.1", socket.getLocalPort(), //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				CallingFormat.getPathCallingFormat());
+	}
+
+	void close() throws IOException
+	{
+		socket.close();
+	}
+
+	void setObject(byte[] object)
+	{
+		this.object = object;
+	}
+
+	byte[] getObject()
+	{
+		return object;
+	}
+
+	/**
+	 * Replaces the object, with a new ETag, once the given number of reads have been answered
+	 */
+	void replaceObjectAfter(int reads, byte[] replacement)
+	{
+		this.replacement = replacement;
+		this.replaceAfterReads = reads;
+	}
+
+	void setHonorIfMatch(boolean honorIfMatch)
+	{
+		this.honorIfMatch = honorIfMatch;
+	}
+
+	/**
+	 * Answers the next uploads of a part with an error
+	 */
+	void failPart(int partNumber, int times)
+	{
+		partFailures.put(partNumber, times);
+	}
+
+	/**
+	 * Answers the next reads of the range starting at the offset with an error
+	 */
+	void failRange(long offset, int times)
+	{
+		rangeFailures.put(offset, times);
+	}
+
+	void setFailComplete(boolean failComplete)
+	{
+		this.failComplete = failComplete;
+	}
+
+	/**
+	 * Returns the method and query of every request, in the order they arrived. The arguments of a query are sorted.
+	 */
+	List<String> getRequests()
+	{
+		synchronized (requests)
+		{
+			return new ArrayList<String>(requests);
+		}
+	}
+
+	List<String> getRequests(String prefix)
+	{
+		List<String> result = new ArrayList<String>();
+		for (String request : getRequests())
+		{
+			if (request.startsWith(prefix))
+				result.add(request);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the If-Match header of every read, null where there was none
+	 */
+	List<String> getIfMatches()
+	{
+		synchronized (ifMatches)
+		{
+			return new ArrayList<String>(ifMatches);
+		}
+	}
+
+	Map<Integer, byte[]> getParts()
+	{
+		synchronized (parts)
+		{
+			return new TreeMap<Integer, byte[]>(parts);
+		}
+	}
+
+	List<String> getCompletedETags()
+	{
+		return completedETags;
+	}
+
+	boolean isAborted()
+	{
+		return aborted;
+	}
+
+	public void run()
+	{
+		while (!socket.isClosed())
+		{
+			try
+			{
+				final Socket client = socket.accept();
+				// parts and ranges are sent on several connections at once
+				new Thread("Stand-in S3 request") //$NON-NLS-1$
+				{
+					public void run()
+					{
+						try
+						{
+							serve(client);
+						}
+						catch (IOException e)
+						{
+							// the client went away
+						}
+						finally
+						{
+							try
+							{
+								client.close();
+							}
+							catch (IOException e)
+							{
+								// closed
+							}
+						}
+					}
+				}.start();
+			}
+			catch (IOException e)
+			{
+				// closed
+			}
+		}
+	}
+
+	private void serve(Socket client) throws IOException
+	{
+		DataInputStream in = new DataInputStream(client.getInputStream());
+		String[] requestLine = readLine(in).split(" "); //$NON-NLS-1$
+		Map<String, String> headers = new HashMap<String, String>();
+		for (String line = readLine(in); line.length() > 0; line = readLine(in))
+		{
+			int colon = line.indexOf(':');
+			headers.put(line.substring(0, colon).trim().toLowerCase(), line.substring(colon + 1).trim());
+		}
+		byte[] body = new byte[headers.containsKey("content-length") ? Integer.parseInt(headers.get("content-length")) : 0]; //$NON-NLS-1$ //$NON-NLS-2$
+		in.readFully(body);
+
+		String method = requestLine[0];
+		String path = requestLine[1];
+		int query = path.indexOf('?');
+		Map<String, String> arguments = new HashMap<String, String>();
+		if (query != -1)
+		{
+			for (String argument : path.substring(query + 1).split("&")) //$NON-NLS-1$
+			{
+				int eq = argument.indexOf('=');
+				arguments.put(eq != -1 ? argument.substring(0, eq) : argument, eq != -1 ? argument.substring(eq + 1) : null);
+			}
+		}
+		requests.add(method + (query != -1 ? " " + sort(path.substring(query + 1)) : "")); //$NON-NLS-1$ //$NON-NLS-2$
+		OutputStream out = client.getOutputStream();
+
+		if ("GET".equals(method)) //$NON-NLS-1$
+		{
+			read(headers, out);
+		}
+		else if ("PUT".equals(method) && arguments.containsKey("partNumber")) //$NON-NLS-1$ //$NON-NLS-2$
+		{
+			int partNumber = Integer.parseInt(arguments.get("partNumber")); //$NON-NLS-1$
+			if (countDown(partFailures, partNumber))
+			{
+				respond(out, "500 Internal Server Error", null, new byte[0]); //$NON-NLS-1$
+				return;
+			}
+			parts.put(partNumber, body);
+			respond(out, "200 OK", "ETag: \"part" + partNumber + "\"\r\n", new byte[0]); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		}
+		else if ("PUT".equals(method)) //$NON-NLS-1$
+		{
+			object = body;
+			respond(out, "200 OK", "ETag: \"put\"\r\n", new byte[0]); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		else if ("POST".equals(method) && arguments.containsKey("uploads")) //$NON-NLS-1$ //$NON-NLS-2$
+		{
+			respond(out, "200 OK", null, ("<InitiateMultipartUploadResult><Bucket>" + BUCKET + "</Bucket><Key>" + KEY //$NON-NLS-1$ //$NON-NLS-2$
+					+ "</Key><UploadId>" + UPLOAD_ID + "</UploadId></InitiateMultipartUploadResult>").getBytes("UTF-8")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		}
+		else if ("POST".equals(method)) //$NON-NLS-1$
+		{
+			if (failComplete)
+			{
+				// S3 may report an error after it has sent the response code
+				respond(out, "200 OK", null, "<Error><Code>InternalError</Code></Error>".getBytes("UTF-8")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				return;
+			}
+			complete(new String(body, "UTF-8")); //$NON-NLS-1$
+			respond(out, "200 OK", null, "<CompleteMultipartUploadResult/>".getBytes("UTF-8")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		}
+		else if ("DELETE".equals(method)) //$NON-NLS-1$
+		{
+			aborted = true;
+			respond(out, "204 No Content", null, new byte[0]); //$NON-NLS-1$
+		}
+		else
+		{
+			respond(out, "405 Method Not Allowed", null, new byte[0]); //$NON-NLS-1$
+		}
+	}
+
+	private void read(Map<String, String> headers, OutputStream out) throws IOException
+	{
+		byte[] current;
+		String currentETag;
+		synchronized (this)
+		{
+			if (reads++ == replaceAfterReads)
+			{
+				object = replacement;
+				etag = "\"v2\""; //$NON-NLS-1$
+			}
+			current = object;
+			currentETag = etag;
+		}
+		ifMatches.add(headers.get("if-match")); //$NON-NLS-1$
+		String range = headers.get("range"); //$NON-NLS-1$
+		long start = Long.parseLong(range.substring("bytes=".length(), range.indexOf('-'))); //$NON-NLS-1$
+		long end = Math.min(Long.parseLong(range.substring(range.indexOf('-') + 1)), current.length - 1);
+		if (countDown(rangeFailures, start))
+		{
+			respond(out, "503 Slow Down", null, new byte[0]); //$NON-NLS-1$
+			return;
+		}
+		String ifMatch = headers.get("if-match"); //$NON-NLS-1$
+		if (honorIfMatch && ifMatch != null && !ifMatch.equals(currentETag))
+		{
+			respond(out, "412 Precondition Failed", null, new byte[0]); //$NON-NLS-1$
+			return;
+		}
+		byte[] data = new byte[(int) (end - start + 1)];
+		System.arraycopy(current, (int) start, data, 0, data.length);
+		respond(out, "206 Partial Content", "ETag: " + currentETag + "\r\nContent-Range: bytes " + start + "-" + end //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+				+ "/" + current.length + "\r\n", data); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	private void complete(String body) throws IOException
+	{
+		List<String> etags = new ArrayList<String>();
+		ByteArrayOutputStream assembled = new ByteArrayOutputStream();
+		Map<Integer, byte[]> uploaded = getParts();
+		int partNumber = 0;
+		for (int start = body.indexOf("<Part>"); start != -1; start = body.indexOf("<Part>", start + 1)) //$NON-NLS-1$ //$NON-NLS-2$
+		{
+			++partNumber;
+			String part = body.substring(start, body.indexOf("</Part>", start)); //$NON-NLS-1$
+			if (!part.contains("<PartNumber>" + partNumber + "</PartNumber>")) //$NON-NLS-1$ //$NON-NLS-2$
+				throw new IOException("parts out of order: " + body); //$NON-NLS-1$
+			etags.add(part.substring(part.indexOf("<ETag>") + 6, part.indexOf("</ETag>"))); //$NON-NLS-1$ //$NON-NLS-2$
+			assembled.write(uploaded.get(partNumber));
+		}
+		object = assembled.toByteArray();
+		completedETags = etags;
+	}
+
+	private static boolean countDown(Map<? extends Object, Integer> failures, Object key)
+	{
+		synchronized (failures)
+		{
+			Integer count = failures.get(key);
+			if (count == null || count.intValue() == 0)
+				return false;
+			@SuppressWarnings("unchecked")
+			Map<Object, Integer> map = (Map<Object, Integer>) failures;
+			map.put(key, count.intValue() - 1);
+			return true;
+		}
+	}
+
+	private static String sort(String query)
+	{
+		String[] arguments = query.split("&"); //$NON-NLS-1$
+		Arrays.sort(arguments);
+		StringBuilder sorted = new StringBuilder();
+		for (String argument : arguments)
+		{
+			if (sorted.length() > 0)
+				sorted.append('&');
+			sorted.append(argument);
+		}
+		return sorted.toString();
+	}
+
+	private static String readLine(InputStream in) throws IOException
+	{
+		StringBuilder line = new StringBuilder();
+		for (int c = in.read(); c != '\n'; c = in.read())
+		{
+			if (c == -1)
+				throw new IOException("request ended"); //$NON-NLS-1$
+			if (c != '\r')
+				line.append((char) c);
+		}
+		return line.toString();
+	}
+
+	private static void respond(OutputStream out, String status, String headers, byte[] body) throws IOException
+	{
+		out.write(("HTTP/1.1 " + status + "\r\n" + (headers != null ? headers : "") + "Content-Length: " + body.length //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+				+ "\r\nConnection: close\r\n\r\n").getBytes("ISO-8859-1")); //$NON-NLS-1$ //$NON-NLS-2$
+		out.write(body);
+		out.flush();
+	}
+}
@@ -0,0 +1,39 @@
+package com.aptana.ide.filesystem.s3.tests;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import com.aptana.ide.filesystem.s3.S3ClientTest;
+import com.aptana.ide.filesystem.s3.S3MultipartOutputStreamTest;
+import com.aptana.ide.filesystem.s3.S3RangedInputStreamTest;
+
+/**
+ * @author agent (agent@local)
+ */
+public final class AllTests
+{
+	/**
+	 * AllTests
+	 */
+	private AllTests()
+	{
+	}
+
+	/**
+	 * suite
+	 * 
+	 * @return Returns a group of unit tests
+	 */
+	public static Test suite()
+	{
+		TestSuite suite = new TestSuite("Tests for com.aptana.ide.filesystem.s3.tests"); //$NON-NLS-1$
+
+		// $JUnit-BEGIN$
+		suite.addTestSuite(S3ClientTest.class);
+		suite.addTestSuite(S3MultipartOutputStreamTest.class);
+		suite.addTestSuite(S3RangedInputStreamTest.class);
+		// $JUnit-END$
+
+		return suite;
+	}
+}
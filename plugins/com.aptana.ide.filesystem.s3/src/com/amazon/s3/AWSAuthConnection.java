@@ -10,6 +10,7 @@
 package com.amazon.s3;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -23,6 +24,8 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.TimeZone;
 
+import javax.crypto.Mac;
+
 /**
  * An interface into the S3 system.  It is initially configured with
  * authentication and connection parameters and exposes methods to access and
@@ -39,6 +42,24 @@ public class AWSAuthConnection {
     private int port;
     private CallingFormat callingFormat;
 
+    /**
+     * Request signers keyed with the secret key, one per thread since a Mac is
+     * not thread-safe but is reset by every signature.
+     */
+    private final ThreadLocal signers = new ThreadLocal() {
+        protected Object initialValue() {
+            return Utils.createSigner(awsSecretAccessKey);
+        }
+    };
+
+    private static final ThreadLocal httpDateFormats = new ThreadLocal() {
+        protected Object initialValue() {
+            SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss ", Locale.US);
+            format.setTimeZone(TimeZone.getTimeZone("GMT"));
+            return format;
+        }
+    };
+
     public AWSAuthConnection(String awsAccessKeyId, String awsSecretAccessKey) {
         this(awsAccessKeyId, awsSecretAccessKey, true);
     }
@@ -318,6 +339,113 @@ public class AWSAuthConnection {
     	return makeRequest("GET", bucket, Utils.urlencode(key), null, headers);
     }
     
+    /**
+     * Starts a multipart upload of an object.
+     * @param bucket The name of the bucket to which the object will be added.
+     * @param key The name of the key to use.
+     * @param headers A Map of String to List of Strings representing the http
+     * headers to pass (can be null).
+     * @return The upload id to pass to the part, complete and abort requests.
+     */
+    public String initiateMultipartUpload(String bucket, String key, Map headers)
+        throws MalformedURLException, IOException
+    {
+        Map pathArgs = new HashMap();
+        pathArgs.put("uploads", null);
+        HttpURLConnection request = makeRequest("POST", bucket, Utils.urlencode(key), pathArgs, headers);
+        request.setDoOutput(true);
+        request.getOutputStream().write(new byte[] {});
+        String message = readMultipartResponse(request);
+        int start = message.indexOf("<UploadId>");
+        int end = message.indexOf("</UploadId>");
+        if (start == -1 || end < start) {
+            throw new IOException("Unexpected response: " + message);
+        }
+        return message.substring(start + "<UploadId>".length(), end);
+    }
+
+    /**
+     * Opens the upload of one part of a multipart upload.  The caller writes
+     * the part to the output stream and reads the ETag header of the response.
+     * @param bucket The name of the bucket to which the object will be added.
+     * @param key The name of the key to use.
+     * @param uploadId The id returned by initiateMultipartUpload.
+     * @param partNumber The number of the part, starting at 1.
+     * @param headers A Map of String to List of Strings representing the http
+     * headers to pass (can be null).
+     */
+    public HttpURLConnection uploadPartRaw(String bucket, String key, String uploadId, int partNumber, Map headers)
+        throws MalformedURLException, IOException
+    {
+        Map pathArgs = new HashMap();
+        pathArgs.put("partNumber", Integer.toString(partNumber));
+        pathArgs.put("uploadId", Utils.urlencode(uploadId));
+        HttpURLConnection request =
+            makeRequest("PUT", bucket, Utils.urlencode(key), pathArgs, headers);
+
+        request.setDoOutput(true);
+        return request;
+    }
+
+    /**
+     * Assembles the uploaded parts into the object.
+     * @param bucket The name of the bucket to which the object will be added.
+     * @param key The name of the key to use.
+     * @param uploadId The id returned by initiateMultipartUpload.
+     * @param etags The ETags of the uploaded parts, in part number order.
+     * @param headers A Map of String to List of Strings representing the http
+     * headers to pass (can be null).
+     */
+    public Response completeMultipartUpload(String bucket, String key, String uploadId, List etags, Map headers)
+        throws MalformedURLException, IOException
+    {
+        StringBuffer body = new StringBuffer("<CompleteMultipartUpload>");
+        for (int i = 0; i < etags.size(); ++i) {
+            body.append("<Part><PartNumber>").append(i + 1).append("</PartNumber><ETag>")
+                .append(etags.get(i)).append("</ETag></Part>");
+        }
+        body.append("</CompleteMultipartUpload>");
+        byte[] data = body.toString().getBytes("UTF-8");
+
+        Map pathArgs = new HashMap();
+        pathArgs.put("uploadId", Utils.urlencode(uploadId));
+        HttpURLConnection request = makeRequest("POST", bucket, Utils.urlencode(key), pathArgs, headers);
+        request.setDoOutput(true);
+        request.setFixedLengthStreamingMode(data.length);
+        request.getOutputStream().write(data);
+        // errors may be reported after a successful response code
+        String message = readMultipartResponse(request);
+        if (message.indexOf("<Error") != -1) {
+            throw new IOException(message.substring(message.indexOf("<Error")));
+        }
+        return new Response(request);
+    }
+
+    /**
+     * Aborts a multipart upload and frees the parts uploaded so far.
+     * @param bucket The name of the bucket to which the object was being added.
+     * @param key The name of the key to use.
+     * @param uploadId The id returned by initiateMultipartUpload.
+     * @param headers A Map of String to List of Strings representing the http
+     * headers to pass (can be null).
+     */
+    public Response abortMultipartUpload(String bucket, String key, String uploadId, Map headers)
+        throws MalformedURLException, IOException
+    {
+        Map pathArgs = new HashMap();
+        pathArgs.put("uploadId", Utils.urlencode(uploadId));
+        return new Response(makeRequest("DELETE", bucket, Utils.urlencode(key), pathArgs, headers));
+    }
+
+    private String readMultipartResponse(HttpURLConnection request) throws IOException {
+        if (request.getResponseCode() >= 400) {
+            InputStream error = request.getErrorStream();
+            String message = error != null ? new String(GetResponse.slurpInputStream(error), "UTF-8") : "";
+            throw new IOException("HTTP " + request.getResponseCode() + " " + message);
+        }
+        return new String(GetResponse.slurpInputStream(request.getInputStream()), "UTF-8");
+    }
+
     public HttpURLConnection head(String bucket, String key, Map headers)
     	throws MalformedURLException, IOException
     {
@@ -614,7 +742,7 @@ public class AWSAuthConnection {
 
         String canonicalString =
             Utils.makeCanonicalString(method, bucket, key, pathArgs, connection.getRequestProperties());
-        String encodedCanonical = Utils.encode(this.awsSecretAccessKey, canonicalString, false);
+        String encodedCanonical = Utils.encode((Mac) signers.get(), canonicalString, false);
         connection.setRequestProperty("Authorization",
                                       "AWS " + this.awsAccessKeyId + ":" + encodedCanonical);
     }
@@ -624,9 +752,7 @@ public class AWSAuthConnection {
      * Generate an rfc822 date for use in the Date HTTP header.
      */
     public static String httpDate() {
-        final String DateFormat = "EEE, dd MMM yyyy HH:mm:ss ";
-        SimpleDateFormat format = new SimpleDateFormat( DateFormat, Locale.US );
-        format.setTimeZone( TimeZone.getTimeZone( "GMT" ) );
+        SimpleDateFormat format = (SimpleDateFormat) httpDateFormats.get();
         return format.format( new Date() ) + "GMT";
     }
 }
@@ -10,6 +10,7 @@
 package com.amazon.s3;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -89,7 +90,13 @@ public class ListBucketResponse extends Response {
                 xr.setContentHandler(handler);
                 xr.setErrorHandler(handler);
 
-                xr.parse(new InputSource(connection.getInputStream()));
+                InputStream in = connection.getInputStream();
+                try {
+                    xr.parse(new InputSource(in));
+                } finally {
+                    // a fully read and closed response lets the connection be kept alive
+                    in.close();
+                }
 
                 this.name = handler.getName();
                 this.prefix = handler.getPrefix();
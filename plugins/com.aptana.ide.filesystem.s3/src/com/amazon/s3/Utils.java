@@ -10,6 +10,7 @@
 package com.amazon.s3;
 
 import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
@@ -33,6 +34,7 @@ public class Utils {
     static final String METADATA_PREFIX = "x-amz-meta-";
     static final String AMAZON_HEADER_PREFIX = "x-amz-";
     static final String ALTERNATIVE_DATE_HEADER = "x-amz-date";
+    static final String[] MULTIPART_SUB_RESOURCES = { "partNumber", "uploadId", "uploads" };
     public static final String DEFAULT_HOST = "s3.amazonaws.com";
     
     public static final int SECURE_PORT = 443;
@@ -130,6 +132,24 @@ public class Utils {
 	            buf.append("?logging");
                 } else if (pathArgs.containsKey("location")) {
                     buf.append("?location");
+                } else {
+                    // multipart upload sub-resources, sorted by name with their decoded values
+                    SortedMap subResources = new TreeMap();
+                    for (int i = 0; i < MULTIPART_SUB_RESOURCES.length; ++i) {
+                        if (pathArgs.containsKey(MULTIPART_SUB_RESOURCES[i])) {
+                            subResources.put(MULTIPART_SUB_RESOURCES[i], pathArgs.get(MULTIPART_SUB_RESOURCES[i]));
+                        }
+                    }
+                    char separator = '?';
+                    for (Iterator i = subResources.keySet().iterator(); i.hasNext(); ) {
+                        String name = (String)i.next();
+                        String value = (String)subResources.get(name);
+                        buf.append(separator).append(name);
+                        if (value != null) {
+                            buf.append('=').append(urldecode(value));
+                        }
+                        separator = '&';
+                    }
                 }
         }
 
@@ -147,6 +167,30 @@ public class Utils {
      */
     static String encode(String awsSecretAccessKey, String canonicalString,
                                 boolean urlencode)
+    {
+        return encode(createSigner(awsSecretAccessKey), canonicalString, urlencode);
+    }
+
+    /**
+     * Calculate the HMAC/SHA1 on a string with a signer from createSigner.
+     * The signer is reset afterwards and can be reused by the same thread.
+     */
+    static String encode(Mac mac, String canonicalString, boolean urlencode)
+    {
+        // Compute the HMAC on the digest, and set it.
+        String b64 = Base64.encodeBytes(mac.doFinal(canonicalString.getBytes()));
+
+        if (urlencode) {
+            return urlencode(b64);
+        } else {
+            return b64;
+        }
+    }
+
+    /**
+     * Create an HMAC/SHA1 signer keyed with the secret key.
+     */
+    static Mac createSigner(String awsSecretAccessKey)
     {
         // The following HMAC/SHA1 code for the signature is taken from the
         // AWS Platform's implementation of RFC2104 (amazon.webservices.common.Signature)
@@ -169,15 +213,7 @@ public class Utils {
             // also should not happen
             throw new RuntimeException("Could not initialize the MAC algorithm", e);
         }
-
-        // Compute the HMAC on the digest, and set it.
-        String b64 = Base64.encodeBytes(mac.doFinal(canonicalString.getBytes()));
-
-        if (urlencode) {
-            return urlencode(b64);
-        } else {
-            return b64;
-        }
+        return mac;
     }
 
     static Map paramsForListOptions(String prefix, String marker, Integer maxKeys) {
@@ -236,6 +272,15 @@ public class Utils {
     
     
 
+    static String urldecode(String encoded) {
+        try {
+            return URLDecoder.decode(encoded, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            // should never happen
+            throw new RuntimeException("Could not url decode from UTF-8", e);
+        }
+    }
+
     static String urlencode(String unencoded) {
         try {
             return URLEncoder.encode(unencoded, "UTF-8");
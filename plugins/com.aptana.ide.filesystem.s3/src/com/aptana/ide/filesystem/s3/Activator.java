@@ -34,6 +34,7 @@ public class Activator extends Plugin {
 	 * @see org.eclipse.core.runtime.Plugin#stop(org.osgi.framework.BundleContext)
 	 */
 	public void stop(BundleContext context) throws Exception {
+		S3Client.disconnectAll();
 		plugin = null;
 		super.stop(context);
 	}
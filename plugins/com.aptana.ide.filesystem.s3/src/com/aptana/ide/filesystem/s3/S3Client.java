@@ -0,0 +1,274 @@
+package com.aptana.ide.filesystem.s3;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.amazon.s3.AWSAuthConnection;
+import com.amazon.s3.CallingFormat;
+import com.amazon.s3.CommonPrefixEntry;
+import com.amazon.s3.ListBucketResponse;
+import com.amazon.s3.ListEntry;
+
+/**
+ * The connection to one bucket, shared by all stores of the bucket. Requests reuse the persistent HTTP connections
+ * kept alive by the JRE as long as every response is read to the end and closed, and requests are signed with a
+ * signer keyed once per thread. The endpoint can be pointed at an S3 compatible server with the
+ * com.aptana.ide.filesystem.s3.endpoint system property, e.g. http://localhost:9090.
+ * <p>
+ * Clients are looked up by access key, bucket and endpoint. The secret key is never part of the lookup; a client only
+ * keeps a digest of it, so that new credentials for the same access key replace the client instead of sharing it. The
+ * least recently used clients are dropped once more than {@link #MAX_CLIENTS} are kept.
+ * 
+ * @author agent (agent@local)
+ */
+class S3Client
+{
+
+	/**
+	 * Receives the pages of a bucket listing
+	 */
+	static interface IListingVisitor
+	{
+
+		/**
+		 * @param entries
+		 *            the keys of the page
+		 * @param commonPrefixes
+		 *            the prefixes the delimiter rolled keys up into, empty without a delimiter
+		 * @return false to stop the listing
+		 */
+		boolean visitPage(List<ListEntry> entries, List<String> commonPrefixes) throws IOException;
+	}
+
+	private static final String ENDPOINT_PROPERTY = "com.aptana.ide.filesystem.s3.endpoint"; //$NON-NLS-1$
+	static final int PAGE_SIZE = 1000;
+	static final int MAX_CLIENTS = 16;
+
+	private static final Map<String, S3Client> clients = new LinkedHashMap<String, S3Client>(16, 0.75f, true)
+	{
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, S3Client> eldest)
+		{
+			return size() > MAX_CLIENTS;
+		}
+	};
+
+	private final AWSAuthConnection connection;
+	private final String bucket;
+	private final byte[] secretDigest;
+
+	private S3Client(AWSAuthConnection connection, String bucket, byte[] secretDigest)
+	{
+		this.connection = connection;
+		this.bucket = bucket;
+		this.secretDigest = secretDigest;
+	}
+
+	/**
+	 * Returns the client of the bucket and credentials of an s3://accessKey:secretKey@bucket/ URI
+	 * 
+	 * @param uri
+	 * @return S3Client
+	 */
+	static S3Client getClient(URI uri)
+	{
+		String[] keys = uri.getUserInfo().split(":"); //$NON-NLS-1$
+		String bucket = uri.getHost();
+		String endpoint = System.getProperty(ENDPOINT_PROPERTY);
+		String id = getId(keys[0], bucket, endpoint);
+		byte[] secretDigest = digest(keys[1]);
+		synchronized (clients)
+		{
+			S3Client client = clients.get(id);
+			if (client == null || secretDigest == null || !Arrays.equals(client.secretDigest, secretDigest))
+			{
+				// first use, or the secret key of the access key changed
+				client = new S3Client(createConnection(keys[0], keys[1], bucket, endpoint), bucket, secretDigest);
+				clients.put(id, client);
+			}
+			return client;
+		}
+	}
+
+	/**
+	 * Drops the client of the bucket and access key of an s3:// URI, so that the next request connects afresh
+	 * 
+	 * @param uri
+	 */
+	static void disconnect(URI uri)
+	{
+		String userInfo = uri.getUserInfo();
+		String accessKey = userInfo != null ? userInfo.split(":")[0] : null; //$NON-NLS-1$
+		String id = getId(accessKey, uri.getHost(), System.getProperty(ENDPOINT_PROPERTY));
+		synchronized (clients)
+		{
+			clients.remove(id);
+		}
+	}
+
+	/**
+	 * Drops all clients
+	 */
+	static void disconnectAll()
+	{
+		synchronized (clients)
+		{
+			clients.clear();
+		}
+	}
+
+	/**
+	 * Returns the number of clients kept
+	 * 
+	 * @return int
+	 */
+	static int getClientCount()
+	{
+		synchronized (clients)
+		{
+			return clients.size();
+		}
+	}
+
+	private static String getId(String accessKey, String bucket, String endpoint)
+	{
+		return accessKey + "@" + bucket + "@" + endpoint; //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	private static byte[] digest(String secretAccessKey)
+	{
+		try
+		{
+			return MessageDigest.getInstance("SHA-1").digest(secretAccessKey.getBytes("UTF-8")); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			// never equal, so every lookup builds a client with the secret it was given
+			return null;
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			return null;
+		}
+	}
+
+	private static AWSAuthConnection createConnection(String accessKey, String secretAccessKey, String bucket,
+			String endpoint)
+	{
+		if (endpoint != null)
+		{
+			try
+			{
+				URL url = new URL(endpoint);
+				boolean secure = "https".equals(url.getProtocol()); //$NON-NLS-1$
+				int port = url.getPort() != -1 ? url.getPort() : url.getDefaultPort();
+				return new AWSAuthConnection(accessKey, secretAccessKey, secure, url.getHost(), port, CallingFormat
+						.getPathCallingFormat());
+			}
+			catch (MalformedURLException e)
+			{
+				// fall back to S3 itself
+			}
+		}
+		if (bucket.indexOf(".") != -1)
+			return new AWSAuthConnection(accessKey, secretAccessKey, false);
+		return new AWSAuthConnection(accessKey, secretAccessKey);
+	}
+
+	AWSAuthConnection getConnection()
+	{
+		return connection;
+	}
+
+	/**
+	 * Lists the keys starting with the prefix one page at a time, so that large buckets never have to be held in
+	 * memory as a whole
+	 * 
+	 * @param prefix
+	 * @param delimiter
+	 *            rolls up the keys containing it after the prefix into common prefixes, or null
+	 * @param visitor
+	 * @return false if the visitor stopped the listing
+	 * @throws IOException
+	 */
+	@SuppressWarnings("unchecked")
+	boolean list(String prefix, String delimiter, IListingVisitor visitor) throws IOException
+	{
+		String marker = null;
+		while (true)
+		{
+			ListBucketResponse response = connection.listBucket(bucket, prefix, marker, PAGE_SIZE, delimiter, null);
+			if (response.entries == null)
+			{
+				checkResponse(response.connection);
+				throw new IOException("HTTP " + response.connection.getResponseCode()); //$NON-NLS-1$
+			}
+			List<ListEntry> entries = response.entries;
+			List<String> commonPrefixes = new ArrayList<String>();
+			if (response.commonPrefixEntries != null)
+			{
+				for (CommonPrefixEntry entry : (List<CommonPrefixEntry>) response.commonPrefixEntries)
+					commonPrefixes.add(entry.prefix);
+			}
+			if (!visitor.visitPage(entries, commonPrefixes))
+				return false;
+			if (!response.isTruncated)
+				return true;
+			// NextMarker is only sent with a delimiter, otherwise the listing continues after the last key
+			marker = response.nextMarker;
+			if (marker == null || marker.length() == 0)
+			{
+				marker = entries.isEmpty() ? null : entries.get(entries.size() - 1).key;
+				if (!commonPrefixes.isEmpty())
+				{
+					String last = commonPrefixes.get(commonPrefixes.size() - 1);
+					if (marker == null || last.compareTo(marker) > 0)
+						marker = last;
+				}
+				if (marker == null)
+					return true;
+			}
+		}
+	}
+
+	/**
+	 * Reads the response to the end and closes it, so that the connection can be reused
+	 * 
+	 * @param request
+	 * @throws IOException
+	 *             if the response is an error
+	 */
+	static void checkResponse(HttpURLConnection request) throws IOException
+	{
+		int code = request.getResponseCode();
+		InputStream in = code >= 400 ? request.getErrorStream() : request.getInputStream();
+		StringBuilder message = new StringBuilder();
+		if (in != null)
+		{
+			byte[] chunk = new byte[1024];
+			int n;
+			while ((n = in.read(chunk)) != -1)
+			{
+				if (code >= 400)
+					message.append(new String(chunk, 0, n, "UTF-8")); //$NON-NLS-1$
+			}
+			in.close();
+		}
+		if (code >= 400)
+			throw new IOException("HTTP " + code + " " + message); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+}
@@ -10,9 +10,16 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import org.eclipse.core.filesystem.EFS;
 import org.eclipse.core.filesystem.IFileInfo;
@@ -28,14 +35,54 @@ import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubMonitor;
 
 import com.amazon.s3.AWSAuthConnection;
-import com.amazon.s3.ListBucketResponse;
 import com.amazon.s3.ListEntry;
 import com.amazon.s3.Response;
+import com.aptana.ide.core.io.vfs.MetadataCache;
 
 public class S3FileStore extends FileStore
 {
 
 	private static final String FOLDER_SUFFIX = "_$folder$";
+	private static final long CACHE_TTL = 60000;
+	private static final long MISSING_CACHE_TTL = 10000;
+	private static final long CACHE_SIZE = 4 * 1024 * 1024;
+	private static final int MIN_PART_SIZE = 5 * 1024 * 1024; // smallest part S3 accepts, except for the last one
+
+	/**
+	 * Size of upload parts and download ranges, and the number of connections used to transfer one object. Objects
+	 * larger than one part are uploaded in parts and downloaded in ranges.
+	 */
+	static final int PART_SIZE = Math.max(MIN_PART_SIZE, Integer.getInteger(
+			"com.aptana.ide.filesystem.s3.partSize", 8 * 1024 * 1024)); //$NON-NLS-1$
+	static final int TRANSFER_CONNECTIONS = Math.max(1, Integer.getInteger(
+			"com.aptana.ide.filesystem.s3.transferConnections", 4)); //$NON-NLS-1$
+
+	/**
+	 * Metadata and child names of keys shared by all stores, keyed by access key, bucket and key path. Whether a
+	 * "directory" exists depends on the keys below it, so changing a key invalidates the entries of all its ancestors.
+	 */
+	private static final MetadataCache<FileInfo> fileInfoCache = new MetadataCache<FileInfo>(CACHE_TTL,
+			MISSING_CACHE_TTL, CACHE_SIZE / 4)
+	{
+		@Override
+		protected long sizeOf(FileInfo info)
+		{
+			return 128 + 2 * info.getName().length();
+		}
+	};
+	private static final MetadataCache<String[]> childNamesCache = new MetadataCache<String[]>(CACHE_TTL,
+			MISSING_CACHE_TTL, CACHE_SIZE - CACHE_SIZE / 4)
+	{
+		@Override
+		protected long sizeOf(String[] names)
+		{
+			long size = 16 + 4 * names.length;
+			for (String name : names)
+				size += 40 + 2 * name.length();
+			return size;
+		}
+	};
+
 	private URI uri;
 	private Path path;
 
@@ -56,53 +103,18 @@ public class S3FileStore extends FileStore
 	{
 		try
 		{
-			String prefix = getPrefix();
-			List<ListEntry> entries = listEntries();
-			List<String> keys = new ArrayList<String>();
-
-			for (ListEntry entry : entries)
+			IPath cachePath = getCachePath();
+			String[] names = childNamesCache.get(cachePath);
+			if (names == null)
+				names = childNamesCache.put(cachePath, listChildNames());
+			// a folder without children only exists as the _$folder$ hack file at the same level
+			if (includeHackFolderFiles && names.length == 0 && getPrefix().length() > 0)
 			{
-				if (prefix.length() >= entry.key.length())
-					continue;
-				try
-				{
-					String relative = entry.key.substring(prefix.length());
-					if (prefix.length() == 0 || relative.startsWith("/"))
-					{ // actual children
-						if (prefix.length() > 0)
-							relative = relative.substring(1);
-						// only add direct children (so take up to next path separator)
-						int index = relative.indexOf("/");
-						if (index != -1)
-						{
-							relative = relative.substring(0, index);
-						}
-						else if (relative.endsWith(FOLDER_SUFFIX))
-							relative = relative.substring(0, relative.length() - FOLDER_SUFFIX.length());
-					}
-					else
-					{
-						// file at same level (peer, not child), check just for the _$folder$ hack
-						if (relative.equals(FOLDER_SUFFIX))
-						{
-							if (!includeHackFolderFiles)
-								continue;
-						}
-						else
-							continue;
-					}
-					if (relative.length() == 0)
-						continue;
-					if (!keys.contains(relative))
-						keys.add(relative);
-				}
-				catch (Exception e)
-				{
-					// TODO Auto-generated catch block
-					e.printStackTrace();
-				}
+				HttpURLConnection connection = getAWSConnection().head(getBucket(), getKey() + FOLDER_SUFFIX, null);
+				if (connection.getResponseCode() < 400)
+					return new String[] { FOLDER_SUFFIX };
 			}
-			return keys.toArray(new String[keys.size()]);
+			return names.clone();
 		}
 		catch (MalformedURLException e)
 		{
@@ -114,6 +126,36 @@ public class S3FileStore extends FileStore
 		}
 	}
 
+	private String[] listChildNames() throws IOException
+	{
+		String prefix = getPrefix();
+		final String childPrefix = prefix.length() == 0 ? prefix : prefix + "/";
+		final Set<String> names = new LinkedHashSet<String>();
+		// the delimiter rolls the keys of sub-folders up, so only the direct children come back
+		getClient().list(childPrefix, "/", new S3Client.IListingVisitor()
+		{
+			public boolean visitPage(List<ListEntry> entries, List<String> commonPrefixes)
+			{
+				for (ListEntry entry : entries)
+					addChildName(names, entry.key.substring(childPrefix.length()));
+				for (String commonPrefix : commonPrefixes)
+					addChildName(names, commonPrefix.substring(childPrefix.length()));
+				return true;
+			}
+		});
+		return names.toArray(new String[names.size()]);
+	}
+
+	private static void addChildName(Set<String> names, String name)
+	{
+		if (name.endsWith("/"))
+			name = name.substring(0, name.length() - 1);
+		else if (name.endsWith(FOLDER_SUFFIX))
+			name = name.substring(0, name.length() - FOLDER_SUFFIX.length());
+		if (name.length() > 0)
+			names.add(name);
+	}
+
 	private String getPrefix()
 	{
 		String prefix = path.toPortableString();
@@ -127,7 +169,19 @@ public class S3FileStore extends FileStore
 	@Override
 	public IFileInfo fetchInfo(int options, IProgressMonitor monitor) throws CoreException
 	{
-		FileInfo info = new FileInfo(getName());
+		IPath cachePath = getCachePath();
+		FileInfo info;
+		if (fileInfoCache.isMissing(cachePath))
+		{
+			info = new FileInfo(getName());
+			info.setExists(false);
+			return info;
+		}
+		info = fileInfoCache.get(cachePath);
+		if (info != null)
+			return (IFileInfo) info.clone();
+
+		info = new FileInfo(getName());
 		try
 		{
 			HttpURLConnection connection = getAWSConnection().head(getBucket(), getKey(), null);
@@ -163,6 +217,10 @@ public class S3FileStore extends FileStore
 					info.setExists(true);
 				}
 			}
+			if (info.exists())
+				fileInfoCache.put(cachePath, (FileInfo) info.clone());
+			else
+				fileInfoCache.putMissing(cachePath);
 		}
 		catch (MalformedURLException e)
 		{
@@ -226,7 +284,28 @@ public class S3FileStore extends FileStore
 	{
 		try
 		{
-			HttpURLConnection connection = getAWSConnection().getRaw(getBucket(), getKey(), null);
+			AWSAuthConnection awsConnection = getAWSConnection();
+			// ask for the first range only, the response tells whether the rest is worth fetching in parallel
+			Map<String, List<String>> headers = new HashMap<String, List<String>>();
+			headers.put("Range", Collections.singletonList(range(0, PART_SIZE))); //$NON-NLS-1$
+			HttpURLConnection connection = awsConnection.getRaw(getBucket(), getKey(), headers);
+			if (connection.getResponseCode() == HttpURLConnection.HTTP_PARTIAL)
+			{
+				long length = getContentRangeLength(connection);
+				if (length > PART_SIZE)
+					return new S3RangedInputStream(awsConnection, getBucket(), getKey(), connection, length, PART_SIZE,
+							TRANSFER_CONNECTIONS);
+				if (length == -1)
+				{
+					connection.disconnect();
+					connection = awsConnection.getRaw(getBucket(), getKey(), null);
+				}
+			}
+			else if (connection.getResponseCode() == 416)
+			{
+				// empty object
+				connection = awsConnection.getRaw(getBucket(), getKey(), null);
+			}
 			return connection.getInputStream();
 		}
 		catch (MalformedURLException e)
@@ -239,16 +318,14 @@ public class S3FileStore extends FileStore
 		}
 	}
 
-	private AWSAuthConnection getAWSConnection()
+	private S3Client getClient()
 	{
-		if (getBucket().indexOf(".") != -1)
-			return new AWSAuthConnection(getAccessKey(), getSecretAccessKey(), false);
-		return new AWSAuthConnection(getAccessKey(), getSecretAccessKey());
+		return S3Client.getClient(uri);
 	}
 
-	private String getSecretAccessKey()
+	private AWSAuthConnection getAWSConnection()
 	{
-		return uri.getUserInfo().split(":")[1];
+		return getClient().getConnection();
 	}
 
 	private String getAccessKey()
@@ -278,14 +355,15 @@ public class S3FileStore extends FileStore
 	@Override
 	public void delete(int options, IProgressMonitor monitor) throws CoreException
 	{
+		clearCache();
 		try
 		{
 			Response resp = getAWSConnection().delete(getBucket(), getKey(), null);
-			resp.connection.getResponseCode(); // force connection to finish
+			S3Client.checkResponse(resp.connection); // force connection to finish
 
 			// Handle if we're faking a folder. try to delete the fake folder suffix file.
 			resp = getAWSConnection().delete(getBucket(), getKey() + FOLDER_SUFFIX, null);
-			resp.connection.getResponseCode(); // force connection to finish
+			S3Client.checkResponse(resp.connection); // force connection to finish
 		}
 		catch (MalformedURLException e)
 		{
@@ -300,29 +378,21 @@ public class S3FileStore extends FileStore
 	@Override
 	public OutputStream openOutputStream(int options, IProgressMonitor monitor) throws CoreException
 	{
-		try
-		{
-			HttpURLConnection connection = getAWSConnection().putRaw(getBucket(), getKey(), null);
-			return new HttpForcingOutputStream(connection.getOutputStream(), connection);
-		}
-		catch (MalformedURLException e)
-		{
-			throw new CoreException(new Status(IStatus.ERROR, Activator.PLUGIN_ID, -1, e.getMessage(), e));
-		}
-		catch (IOException e)
-		{
-			throw new CoreException(new Status(IStatus.ERROR, Activator.PLUGIN_ID, -1, e.getMessage(), e));
-		}
+		clearCache();
+		// nothing is sent until the first part is full or the stream is closed
+		return new S3MultipartOutputStream(this, getAWSConnection(), getBucket(), getKey(), PART_SIZE,
+				TRANSFER_CONNECTIONS);
 	}
 
 	@Override
 	public IFileStore mkdir(int options, IProgressMonitor monitor) throws CoreException
 	{
+		clearCache();
 		try
 		{
 			HttpURLConnection connection = getAWSConnection().putRaw(getBucket(), getKey() + FOLDER_SUFFIX, null);
 			connection.getOutputStream().write(new byte[] {});
-			connection.getResponseCode();
+			S3Client.checkResponse(connection);
 		}
 		catch (MalformedURLException e)
 		{
@@ -402,6 +472,7 @@ public class S3FileStore extends FileStore
 		if (destination instanceof S3FileStore)
 		{
 			S3FileStore s3Dest = (S3FileStore) destination;
+			s3Dest.clearCache();
 			try
 			{
 				getAWSConnection().copy(getBucket(), getKey(), s3Dest.getBucket(), s3Dest.getKey(), null);
@@ -421,54 +492,77 @@ public class S3FileStore extends FileStore
 			super.copyFile(sourceInfo, destination, options, monitor);
 	}
 
-	private static class HttpForcingOutputStream extends OutputStream
+	/**
+	 * Lists all keys below this one a page at a time
+	 * 
+	 * @param visitor
+	 * @return false if the visitor stopped the listing
+	 * @throws IOException
+	 */
+	boolean listEntries(S3Client.IListingVisitor visitor) throws IOException
 	{
+		return getClient().list(getPrefix(), null, visitor);
+	}
 
-		private OutputStream out;
-		private HttpURLConnection connection;
-
-		HttpForcingOutputStream(OutputStream out, HttpURLConnection connection)
-		{
-			this.out = out;
-			this.connection = connection;
-		}
-
-		@Override
-		public void write(int b) throws IOException
-		{
-			out.write(b);
-		}
-
-		@Override
-		public void flush() throws IOException
+	static ExecutorService newTransferExecutor(int threads)
+	{
+		return Executors.newFixedThreadPool(threads, new ThreadFactory()
 		{
-			out.flush();
-		}
+			public Thread newThread(Runnable r)
+			{
+				Thread thread = new Thread(r, "S3 Transfer"); //$NON-NLS-1$
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
 
-		@Override
-		public void close() throws IOException
-		{
-			out.close();
-			connection.getResponseCode(); // force the connection to finish!
-		}
+	static String range(long offset, int length)
+	{
+		return "bytes=" + offset + "-" + (offset + length - 1); //$NON-NLS-1$ //$NON-NLS-2$
+	}
 
-		@Override
-		public void write(byte[] b, int off, int len) throws IOException
+	/**
+	 * Returns the full size of the object from the Content-Range header of a partial response
+	 * 
+	 * @param connection
+	 * @return the size, or -1 if the server did not send it
+	 */
+	static long getContentRangeLength(HttpURLConnection connection)
+	{
+		String contentRange = connection.getHeaderField("Content-Range"); //$NON-NLS-1$
+		if (contentRange != null)
 		{
-			out.write(b, off, len);
+			try
+			{
+				return Long.parseLong(contentRange.substring(contentRange.lastIndexOf('/') + 1).trim());
+			}
+			catch (NumberFormatException e)
+			{
+				// "*" when the size is unknown
+			}
 		}
+		return -1;
+	}
 
-		@Override
-		public void write(byte[] b) throws IOException
-		{
-			out.write(b);
-		}
+	private IPath getCachePath()
+	{
+		return new Path(getAccessKey() + "@" + getBucket()).makeAbsolute().append(path);
 	}
 
-	@SuppressWarnings("unchecked")
-	List<ListEntry> listEntries() throws MalformedURLException, IOException
+	/**
+	 * Drops the cached metadata of this key, of all keys below it and of all its ancestors
+	 */
+	void clearCache()
 	{
-		ListBucketResponse resp = getAWSConnection().listBucket(getBucket(), getPrefix(), null, null, null);
-		return resp.entries;
+		IPath cachePath = getCachePath();
+		fileInfoCache.removeAll(cachePath);
+		childNamesCache.removeAll(cachePath);
+		for (IPath parentPath = cachePath.removeLastSegments(1); parentPath.segmentCount() > 0; parentPath = parentPath
+				.removeLastSegments(1))
+		{
+			fileInfoCache.remove(parentPath);
+			childNamesCache.remove(parentPath);
+		}
 	}
 }
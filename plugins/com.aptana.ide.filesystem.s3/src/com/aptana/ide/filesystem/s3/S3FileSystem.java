@@ -3,12 +3,15 @@ package com.aptana.ide.filesystem.s3;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URI;
+import java.util.List;
 
 import org.eclipse.core.filesystem.IFileStore;
 import org.eclipse.core.filesystem.IFileTree;
 import org.eclipse.core.filesystem.provider.FileSystem;
 import org.eclipse.core.runtime.IProgressMonitor;
 
+import com.amazon.s3.ListEntry;
+
 public class S3FileSystem extends FileSystem
 {
 
@@ -31,7 +34,7 @@ public class S3FileSystem extends FileSystem
 	}
 
 	@Override
-	public IFileTree fetchFileTree(IFileStore root, IProgressMonitor monitor)
+	public IFileTree fetchFileTree(IFileStore root, final IProgressMonitor monitor)
 	{
 		if (!(root instanceof S3FileStore))
 			return null;
@@ -40,7 +43,16 @@ public class S3FileSystem extends FileSystem
 			S3FileStore s3Store = (S3FileStore) root;
 			if (monitor != null && monitor.isCanceled())
 				return null;
-			return new S3FileTree(root, s3Store.listEntries());
+			final S3FileTree tree = new S3FileTree(root);
+			boolean completed = s3Store.listEntries(new S3Client.IListingVisitor()
+			{
+				public boolean visitPage(List<ListEntry> entries, List<String> commonPrefixes)
+				{
+					tree.addEntries(entries);
+					return monitor == null || !monitor.isCanceled();
+				}
+			});
+			return completed ? tree : null;
 		}
 		catch (MalformedURLException e)
 		{
@@ -1,7 +1,9 @@
 package com.aptana.ide.filesystem.s3;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.core.filesystem.IFileInfo;
 import org.eclipse.core.filesystem.IFileStore;
@@ -14,19 +16,44 @@ import com.amazon.s3.ListEntry;
 /**
  * A more efficient way of accessing/querying the S3 file tree. Since when we query root for it's children we end up
  * with entire hierarchy below it (not just direct descendants), just store all the sub-tree entries and generate
- * IFileInfo and IFileStore's from it.
+ * IFileInfo and IFileStore's from it. Entries are added a listing page at a time and indexed by their parent key.
  * 
  * @author cwilliams
  */
 public class S3FileTree extends FileTree implements IFileTree
 {
 
-	private List<ListEntry> entries;
+	private Map<String, ListEntry> entries = new HashMap<String, ListEntry>();
+	private Map<String, List<ListEntry>> children = new HashMap<String, List<ListEntry>>();
 
-	public S3FileTree(IFileStore treeRoot, List<ListEntry> entries)
+	public S3FileTree(IFileStore treeRoot)
 	{
 		super(treeRoot);
-		this.entries = entries;
+	}
+
+	/**
+	 * Adds a page of entries
+	 * 
+	 * @param page
+	 */
+	void addEntries(List<ListEntry> page)
+	{
+		for (ListEntry entry : page)
+		{
+			String key = normalize(entry.key);
+			if (key.length() == 0)
+				continue;
+			entries.put(key, entry);
+			int lastSlash = key.lastIndexOf("/");
+			String parentKey = lastSlash != -1 ? key.substring(0, lastSlash) : "";
+			List<ListEntry> list = children.get(parentKey);
+			if (list == null)
+			{
+				list = new ArrayList<ListEntry>();
+				children.put(parentKey, list);
+			}
+			list.add(entry);
+		}
 	}
 
 	@Override
@@ -79,29 +106,20 @@ public class S3FileTree extends FileTree implements IFileTree
 	private List<ListEntry> getChildEntries(IFileStore store)
 	{
 		S3FileStore s3Store = (S3FileStore) store;
-		String key = s3Store.getKey();
+		List<ListEntry> matches = children.get(normalize(s3Store.getKey()));
+		return matches != null ? matches : new ArrayList<ListEntry>();
+	}
+
+	/**
+	 * Strips the leading and trailing slash off a key
+	 */
+	private static String normalize(String key)
+	{
 		if (key.startsWith("/"))
 			key = key.substring(1);
-		// Find all the entries that have the key as prefix
-		List<ListEntry> matches = new ArrayList<ListEntry>();
-		for (ListEntry entry : entries)
-		{
-			String relative = entry.key;
-			if (relative.startsWith("/"))
-				relative = relative.substring(1);
-			if (!(key.length() == 0 || relative.startsWith(key + "/")))
-				continue;
-			// Only limit to direct children!
-			relative = relative.substring(key.length());
-			if (relative.startsWith("/"))
-				relative = relative.substring(1);
-			if (relative.endsWith("/"))
-				relative = relative.substring(0, relative.length() - 1);
-			if (relative.length() == 0 || relative.indexOf("/") != -1)
-				continue;
-			matches.add(entry);
-		}
-		return matches;
+		if (key.endsWith("/"))
+			key = key.substring(0, key.length() - 1);
+		return key;
 	}
 
 	@Override
@@ -114,10 +132,7 @@ public class S3FileTree extends FileTree implements IFileTree
 		List<IFileStore> childrenStores = new ArrayList<IFileStore>();
 		for (ListEntry match : matches)
 		{
-			String childName = match.key;
-			if (childName.endsWith("/"))
-				childName = childName.substring(0, childName.length() - 1);
-			childrenStores.add(s3Store.getChild(childName));
+			childrenStores.add(s3Store.getChild(generateFileInfo(match).getName()));
 		}
 		return childrenStores.toArray(new IFileStore[childrenStores.size()]);
 	}
@@ -128,18 +143,10 @@ public class S3FileTree extends FileTree implements IFileTree
 		if (!(store instanceof S3FileStore))
 			return null;
 		S3FileStore s3Store = (S3FileStore) store;
-		String key = s3Store.getKey();
 		// generate an info from a ListEntry if we have a match!
-		for (ListEntry entry : entries)
-		{
-			String entryKey = entry.key;
-			if (entryKey.startsWith("/"))
-				entryKey = entryKey.substring(1);
-			if (entryKey.endsWith("/"))
-				entryKey = entryKey.substring(0, entryKey.length() - 1);
-			if (entryKey.equals(key))
-				return generateFileInfo(entry);
-		}
+		ListEntry entry = entries.get(normalize(s3Store.getKey()));
+		if (entry != null)
+			return generateFileInfo(entry);
 		return s3Store.fetchInfo();
 	}
 
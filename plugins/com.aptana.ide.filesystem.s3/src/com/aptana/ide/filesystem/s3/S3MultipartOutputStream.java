@@ -0,0 +1,245 @@
+package com.aptana.ide.filesystem.s3;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import com.amazon.s3.AWSAuthConnection;
+
+/**
+ * Uploads an object in parts of a fixed size while it is being written. Full parts are uploaded on several connections
+ * at once and a failed part is retried on its own, without restarting the upload. Objects smaller than one part are
+ * sent with a single PUT when the stream is closed.
+ * 
+ * @author agent (agent@local)
+ */
+class S3MultipartOutputStream extends OutputStream
+{
+
+	private static final int MAX_ATTEMPTS = 3;
+
+	private final S3FileStore store;
+	private final AWSAuthConnection connection;
+	private final String bucket;
+	private final String key;
+	private final int partSize;
+	private final ExecutorService executor;
+	private final Semaphore freeBuffers; // bounds the number of parts held in memory
+	private final List<Future<String>> parts = new ArrayList<Future<String>>();
+	private byte[] buffer;
+	private int count;
+	private String uploadId;
+	private boolean closed;
+
+	S3MultipartOutputStream(S3FileStore store, AWSAuthConnection connection, String bucket, String key,
+			int partSize, int concurrency)
+	{
+		this.store = store;
+		this.connection = connection;
+		this.bucket = bucket;
+		this.key = key;
+		this.partSize = partSize;
+		this.executor = S3FileStore.newTransferExecutor(concurrency);
+		this.freeBuffers = new Semaphore(concurrency);
+		this.buffer = new byte[partSize];
+	}
+
+	@Override
+	public void write(int b) throws IOException
+	{
+		write(new byte[] { (byte) b }, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException
+	{
+		if (closed)
+			throw new IOException("Stream closed"); //$NON-NLS-1$
+		while (len > 0)
+		{
+			int n = Math.min(len, partSize - count);
+			System.arraycopy(b, off, buffer, count, n);
+			count += n;
+			off += n;
+			len -= n;
+			if (count == partSize)
+			{
+				try
+				{
+					uploadBuffer();
+				}
+				catch (IOException e)
+				{
+					// the object can't be completed any more, so there is nothing left for close() to do
+					closed = true;
+					abort();
+					executor.shutdownNow();
+					buffer = null;
+					throw e;
+				}
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		if (closed)
+			return;
+		closed = true;
+		try
+		{
+			if (uploadId == null)
+			{
+				putObject();
+			}
+			else
+			{
+				if (count > 0)
+					uploadBuffer();
+				List<String> etags = new ArrayList<String>(parts.size());
+				for (Future<String> part : parts)
+					etags.add(waitFor(part));
+				connection.completeMultipartUpload(bucket, key, uploadId, etags, null);
+			}
+		}
+		catch (IOException e)
+		{
+			abort();
+			throw e;
+		}
+		catch (RuntimeException e)
+		{
+			abort();
+			throw e;
+		}
+		finally
+		{
+			executor.shutdownNow();
+			buffer = null;
+			store.clearCache(); // drop anything listed while the upload was running
+		}
+	}
+
+	private void uploadBuffer() throws IOException
+	{
+		if (uploadId == null)
+			uploadId = connection.initiateMultipartUpload(bucket, key, null);
+		// fail early instead of uploading the rest of the object after a part has failed for good
+		for (Future<String> part : parts)
+		{
+			if (part.isDone())
+				waitFor(part);
+		}
+		try
+		{
+			freeBuffers.acquire();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+		final byte[] data = buffer;
+		final int length = count;
+		final int partNumber = parts.size() + 1;
+		parts.add(executor.submit(new Callable<String>()
+		{
+			public String call() throws Exception
+			{
+				try
+				{
+					return uploadPart(partNumber, data, length);
+				}
+				finally
+				{
+					freeBuffers.release();
+				}
+			}
+		}));
+		buffer = new byte[partSize];
+		count = 0;
+	}
+
+	private String uploadPart(int partNumber, byte[] data, int length) throws IOException
+	{
+		IOException failure = null;
+		for (int attempt = 0; attempt < MAX_ATTEMPTS; ++attempt)
+		{
+			try
+			{
+				HttpURLConnection request = connection.uploadPartRaw(bucket, key, uploadId, partNumber, null);
+				request.setFixedLengthStreamingMode(length);
+				OutputStream out = request.getOutputStream();
+				out.write(data, 0, length);
+				out.close();
+				S3Client.checkResponse(request);
+				String etag = request.getHeaderField("ETag"); //$NON-NLS-1$
+				if (etag == null)
+					throw new IOException("No ETag for part " + partNumber + " of " + key); //$NON-NLS-1$ //$NON-NLS-2$
+				return etag;
+			}
+			catch (IOException e)
+			{
+				failure = e;
+			}
+		}
+		throw failure;
+	}
+
+	private void putObject() throws IOException
+	{
+		HttpURLConnection request = connection.putRaw(bucket, key, null);
+		request.setFixedLengthStreamingMode(count);
+		OutputStream out = request.getOutputStream();
+		out.write(buffer, 0, count);
+		out.close();
+		S3Client.checkResponse(request);
+	}
+
+	private void abort()
+	{
+		for (Future<String> part : parts)
+			part.cancel(true);
+		if (uploadId == null)
+			return;
+		try
+		{
+			connection.abortMultipartUpload(bucket, key, uploadId, null).connection.getResponseCode();
+		}
+		catch (IOException e)
+		{
+			// the parts are left for the bucket's lifecycle rules to clean up
+		}
+	}
+
+	private static String waitFor(Future<String> part) throws IOException
+	{
+		try
+		{
+			return part.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			IOException exception = new IOException(cause.getMessage());
+			exception.initCause(cause);
+			throw exception;
+		}
+	}
+}
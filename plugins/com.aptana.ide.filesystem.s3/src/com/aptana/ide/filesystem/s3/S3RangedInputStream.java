@@ -0,0 +1,250 @@
+package com.aptana.ide.filesystem.s3;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.amazon.s3.AWSAuthConnection;
+
+/**
+ * Reads a large object as a sequence of byte ranges that are fetched on several connections ahead of the reader. A
+ * failed range is retried on its own. Later ranges are only served for the ETag of the first response (If-Match), and
+ * a range of another version of the object fails the stream rather than mixing two versions.
+ * 
+ * @author agent (agent@local)
+ */
+class S3RangedInputStream extends InputStream
+{
+
+	private static final int MAX_ATTEMPTS = 3;
+	private static final int HTTP_PRECONDITION_FAILED = 412;
+
+	/**
+	 * Thrown when a range comes from another version of the object. Retrying cannot help, so the stream fails.
+	 */
+	private static class ObjectChangedException extends IOException
+	{
+		private static final long serialVersionUID = 1L;
+
+		ObjectChangedException(String key)
+		{
+			super(key + " changed while it was read"); //$NON-NLS-1$
+		}
+	}
+
+	private final AWSAuthConnection connection;
+	private final String bucket;
+	private final String key;
+	private final long length;
+	private final String etag;
+	private final int chunkSize;
+	private final int concurrency;
+	private final ExecutorService executor;
+	private final LinkedList<Future<byte[]>> pending = new LinkedList<Future<byte[]>>();
+	private long nextOffset;
+	private byte[] chunk;
+	private int position;
+
+	/**
+	 * @param connection
+	 * @param bucket
+	 * @param key
+	 * @param first
+	 *            the open response of the first range, starting at offset 0
+	 * @param length
+	 *            size of the object
+	 * @param chunkSize
+	 *            size of the first and all following ranges
+	 * @param concurrency
+	 *            number of ranges fetched at once
+	 */
+	S3RangedInputStream(AWSAuthConnection connection, String bucket, String key, final HttpURLConnection first,
+			long length, int chunkSize, int concurrency)
+	{
+		this.connection = connection;
+		this.bucket = bucket;
+		this.key = key;
+		this.length = length;
+		this.etag = first.getHeaderField("ETag"); //$NON-NLS-1$
+		this.chunkSize = chunkSize;
+		this.concurrency = concurrency;
+		this.executor = S3FileStore.newTransferExecutor(concurrency);
+		final int firstLength = (int) Math.min(chunkSize, length);
+		pending.add(executor.submit(new Callable<byte[]>()
+		{
+			public byte[] call() throws Exception
+			{
+				try
+				{
+					return readRange(first, 0, firstLength);
+				}
+				catch (ObjectChangedException e)
+				{
+					throw e;
+				}
+				catch (IOException e)
+				{
+					return fetchRange(0, firstLength);
+				}
+			}
+		}));
+		nextOffset = firstLength;
+		fillPending();
+	}
+
+	@Override
+	public int read() throws IOException
+	{
+		if (!ensureChunk())
+			return -1;
+		return chunk[position++] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException
+	{
+		if (len == 0)
+			return 0;
+		if (!ensureChunk())
+			return -1;
+		int n = Math.min(len, chunk.length - position);
+		System.arraycopy(chunk, position, b, off, n);
+		position += n;
+		return n;
+	}
+
+	@Override
+	public int available() throws IOException
+	{
+		return chunk != null ? chunk.length - position : 0;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		for (Future<byte[]> future : pending)
+			future.cancel(true);
+		pending.clear();
+		executor.shutdownNow();
+		chunk = null;
+	}
+
+	private boolean ensureChunk() throws IOException
+	{
+		while (chunk == null || position == chunk.length)
+		{
+			if (pending.isEmpty())
+				return false;
+			Future<byte[]> future = pending.removeFirst();
+			fillPending();
+			try
+			{
+				chunk = future.get();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException();
+			}
+			catch (ExecutionException e)
+			{
+				close();
+				Throwable cause = e.getCause();
+				if (cause instanceof IOException)
+					throw (IOException) cause;
+				IOException exception = new IOException(cause.getMessage());
+				exception.initCause(cause);
+				throw exception;
+			}
+			position = 0;
+		}
+		return true;
+	}
+
+	private void fillPending()
+	{
+		while (pending.size() < concurrency && nextOffset < length)
+		{
+			final long offset = nextOffset;
+			final int rangeLength = (int) Math.min(chunkSize, length - offset);
+			pending.add(executor.submit(new Callable<byte[]>()
+			{
+				public byte[] call() throws Exception
+				{
+					return fetchRange(offset, rangeLength);
+				}
+			}));
+			nextOffset += rangeLength;
+		}
+	}
+
+	private byte[] fetchRange(long offset, int rangeLength) throws IOException
+	{
+		IOException failure = null;
+		for (int attempt = 0; attempt < MAX_ATTEMPTS; ++attempt)
+		{
+			try
+			{
+				Map<String, List<String>> headers = new HashMap<String, List<String>>();
+				headers.put("Range", Collections.singletonList(S3FileStore.range(offset, rangeLength))); //$NON-NLS-1$
+				if (etag != null)
+					headers.put("If-Match", Collections.singletonList(etag)); //$NON-NLS-1$
+				return readRange(connection.getRaw(bucket, key, headers), offset, rangeLength);
+			}
+			catch (ObjectChangedException e)
+			{
+				throw e;
+			}
+			catch (IOException e)
+			{
+				failure = e;
+			}
+		}
+		throw failure;
+	}
+
+	private byte[] readRange(HttpURLConnection request, long offset, int rangeLength) throws IOException
+	{
+		int responseCode = request.getResponseCode();
+		if (responseCode == HTTP_PRECONDITION_FAILED)
+		{
+			request.disconnect();
+			throw new ObjectChangedException(key);
+		}
+		if (responseCode != HttpURLConnection.HTTP_PARTIAL)
+		{
+			request.disconnect();
+			throw new IOException("HTTP " + responseCode + " reading " + key); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		String rangeTag = request.getHeaderField("ETag"); //$NON-NLS-1$
+		if (S3FileStore.getContentRangeLength(request) != length
+				|| (etag != null && rangeTag != null && !etag.equals(rangeTag)))
+		{
+			// a server that ignores If-Match still tells by its ETag
+			request.disconnect();
+			throw new ObjectChangedException(key);
+		}
+		byte[] data = new byte[rangeLength];
+		DataInputStream in = new DataInputStream(request.getInputStream());
+		try
+		{
+			in.readFully(data);
+		}
+		finally
+		{
+			in.close();
+		}
+		return data;
+	}
+}
@@ -0,0 +1,218 @@
+package com.aptana.ide.index.core;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+import junit.framework.TestCase;
+
+import com.aptana.ide.internal.index.core.MemoryIndex;
+
+/**
+ * Queries indexes while their changes are merged to disk
+ *
+ * @author agent (agent@local)
+ */
+public class IndexMergeTest extends TestCase
+{
+
+	private static final String CLASS = "class"; //$NON-NLS-1$
+	private static final int PREFIX = SearchPattern.PREFIX_MATCH | SearchPattern.CASE_SENSITIVE;
+	private static final long TIMEOUT = 30;
+
+	private String path;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		path = "/" + getClass().getName() + "/" + getName(); //$NON-NLS-1$ //$NON-NLS-2$
+		deleteIndexFiles();
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		deleteIndexFiles();
+		super.tearDown();
+	}
+
+	public void testQueryWhileMerging() throws Exception
+	{
+		Index index = new Index(path);
+
+		index.addEntry(CLASS, "one", "d1.css"); //$NON-NLS-1$ //$NON-NLS-2$
+		index.addEntry(CLASS, "two", "d2.css"); //$NON-NLS-1$ //$NON-NLS-2$
+		index.addEntry(CLASS, "three", "d3.css"); //$NON-NLS-1$ //$NON-NLS-2$
+		index.addEntry(CLASS, "four", "d4.css"); //$NON-NLS-1$ //$NON-NLS-2$
+		index.save();
+
+		// the changes being merged: d2 is indexed again, d3 removed, d5 and d6 added
+		index.addEntry(CLASS, "two2", "d2.css"); //$NON-NLS-1$ //$NON-NLS-2$
+		index.remove(Collections.singletonList("d3.css")); //$NON-NLS-1$
+		index.addEntry(CLASS, "five", "d5.css"); //$NON-NLS-1$ //$NON-NLS-2$
+		index.addEntry(CLASS, "six", "d6.css"); //$NON-NLS-1$ //$NON-NLS-2$
+		MemoryIndex merging = startMerge(index);
+
+		// the changes made since: d5 is indexed again, d1 removed and d7 added
+		index.addEntry(CLASS, "five2", "d5.css"); //$NON-NLS-1$ //$NON-NLS-2$
+		index.remove(Collections.singletonList("d1.css")); //$NON-NLS-1$
+		index.addEntry(CLASS, "seven", "d7.css"); //$NON-NLS-1$ //$NON-NLS-2$
+
+		Set<String> expected = set("five2", "four", "seven", "six", "two2"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+
+		assertEquals(expected, IndexPersistenceTest.words(index, CLASS, null, PREFIX));
+		assertEquals(set("four"), IndexPersistenceTest.words(index, CLASS, "four", PREFIX)); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals(set("two2"), IndexPersistenceTest.words(index, CLASS, "two", PREFIX)); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals(set("five2"), IndexPersistenceTest.words(index, CLASS, "five", PREFIX)); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals(set("five2"), IndexPersistenceTest.words(index, CLASS, "FIVE?", SearchPattern.PATTERN_MATCH)); //$NON-NLS-1$ //$NON-NLS-2$
+		assertTrue(IndexPersistenceTest.words(index, CLASS, "one", SearchPattern.EXACT_MATCH).isEmpty()); //$NON-NLS-1$
+		assertTrue(IndexPersistenceTest.words(index, CLASS, "three", SearchPattern.EXACT_MATCH).isEmpty()); //$NON-NLS-1$
+
+		// the merge fails, so both sets of changes go into the next one
+		abortMerge(index, merging);
+		assertEquals(expected, IndexPersistenceTest.words(index, CLASS, null, PREFIX));
+		index.save();
+		assertEquals(expected, IndexPersistenceTest.words(index, CLASS, null, PREFIX));
+		assertEquals(expected, IndexPersistenceTest.words(new Index(path), CLASS, null, PREFIX));
+	}
+
+	public void testQueriesDuringSaves() throws Exception
+	{
+		final Index index = new Index(path);
+		final int stable = 40;
+		final int saves = 40;
+
+		for (int i = 0; i < stable; i++)
+		{
+			index.addEntry(CLASS, "stable" + i, "stable" + i + ".css"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			index.addEntry(CLASS, "gone" + i, "gone" + i + ".css"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		}
+		index.save();
+		for (int i = 0; i < stable; i++)
+		{
+			index.remove(Collections.singletonList("gone" + i + ".css")); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+
+		final Throwable[] failure = new Throwable[1];
+		Thread writer = new Thread()
+		{
+			public void run()
+			{
+				try
+				{
+					for (int i = 0; i < saves; i++)
+					{
+						index.addEntry(CLASS, "added" + i, "added" + i + ".css"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+						index.save();
+					}
+				}
+				catch (Throwable e)
+				{
+					failure[0] = e;
+				}
+			}
+		};
+
+		writer.start();
+
+		int added = 0;
+
+		do
+		{
+			assertEquals(stable, IndexPersistenceTest.words(index, CLASS, "stable", PREFIX).size()); //$NON-NLS-1$
+			assertTrue(IndexPersistenceTest.words(index, CLASS, "gone", PREFIX).isEmpty()); //$NON-NLS-1$
+
+			// every word added so far stays visible, whichever index it is in at the moment
+			Set<String> words = IndexPersistenceTest.words(index, CLASS, "added", PREFIX); //$NON-NLS-1$
+
+			assertTrue(words.size() + " < " + added, words.size() >= added); //$NON-NLS-1$
+			for (int i = 0; i < words.size(); i++)
+			{
+				assertTrue(words.toString(), words.contains("added" + i)); //$NON-NLS-1$
+			}
+			added = words.size();
+		}
+		while (writer.isAlive());
+
+		writer.join(TIMEOUT * 1000);
+		assertNull(failure[0]);
+		assertTrue(index.getMergeCount() > saves);
+		assertEquals(saves, IndexPersistenceTest.words(new Index(path), CLASS, "added", PREFIX).size()); //$NON-NLS-1$
+		assertTrue(IndexPersistenceTest.words(new Index(path), CLASS, "gone", PREFIX).isEmpty()); //$NON-NLS-1$
+	}
+
+	/**
+	 * Puts the index in the state save() leaves it in while it writes the next disk index
+	 */
+	private static MemoryIndex startMerge(Index index) throws Exception
+	{
+		MemoryIndex changes = (MemoryIndex) field("memoryIndex").get(index); //$NON-NLS-1$
+
+		index.monitor.enterWrite();
+		try
+		{
+			field("mergingIndex").set(index, changes); //$NON-NLS-1$
+			field("memoryIndex").set(index, new MemoryIndex()); //$NON-NLS-1$
+		}
+		finally
+		{
+			index.monitor.exitWrite();
+		}
+
+		return changes;
+	}
+
+	/**
+	 * Puts the index in the state save() leaves it in when writing the next disk index fails
+	 */
+	private static void abortMerge(Index index, MemoryIndex changes) throws Exception
+	{
+		index.monitor.enterWrite();
+		try
+		{
+			MemoryIndex pending = (MemoryIndex) field("memoryIndex").get(index); //$NON-NLS-1$
+
+			field("memoryIndex").set(index, new MemoryIndex(changes, pending)); //$NON-NLS-1$
+			field("mergingIndex").set(index, null); //$NON-NLS-1$
+		}
+		finally
+		{
+			index.monitor.exitWrite();
+		}
+	}
+
+	private static Field field(String name) throws Exception
+	{
+		Field field = Index.class.getDeclaredField(name);
+
+		field.setAccessible(true);
+
+		return field;
+	}
+
+	private static Set<String> set(String... words)
+	{
+		return new TreeSet<String>(Arrays.asList(words));
+	}
+
+	private void deleteIndexFiles()
+	{
+		File file = IndexManager.getInstance().computeIndexLocation(path).toFile();
+		File[] files = file.getParentFile().listFiles();
+
+		if (files != null)
+		{
+			for (File candidate : files)
+			{
+				if (candidate.getName().startsWith(file.getName()))
+				{
+					candidate.delete();
+				}
+			}
+		}
+	}
+}
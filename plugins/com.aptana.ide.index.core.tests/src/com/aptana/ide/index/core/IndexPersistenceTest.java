@@ -0,0 +1,263 @@
+package com.aptana.ide.index.core;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import junit.framework.TestCase;
+
+/**
+ * Saves indexes to disk and opens them again, including indexes written in the legacy format
+ *
+ * @author agent (agent@local)
+ */
+public class IndexPersistenceTest extends TestCase
+{
+
+	private static final String CLASS = "class"; //$NON-NLS-1$
+	private static final String COLOR = "color"; //$NON-NLS-1$
+	private static final int EXACT = SearchPattern.EXACT_MATCH | SearchPattern.CASE_SENSITIVE;
+	private static final int PREFIX = SearchPattern.PREFIX_MATCH | SearchPattern.CASE_SENSITIVE;
+
+	// more documents than fit in a chunk of names, and more words than fit in a block
+	private static final int DOCUMENTS = 250;
+
+	private String path;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		path = "/" + getClass().getName() + "/" + getName(); //$NON-NLS-1$ //$NON-NLS-2$
+		deleteIndexFiles();
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		deleteIndexFiles();
+		super.tearDown();
+	}
+
+	public void testEmptyIndex() throws Exception
+	{
+		Index index = new Index(path);
+
+		assertNull(index.query(new String[] { CLASS }, null, PREFIX));
+		index.save();
+		assertEquals(0, index.getMergeCount());
+	}
+
+	public void testSaveAndReopen() throws Exception
+	{
+		Index index = new Index(path);
+
+		addDocuments(index, 0, DOCUMENTS);
+		Set<String> expected = words(index, CLASS, null, PREFIX);
+		assertEquals(DOCUMENTS + 1, expected.size());
+
+		index.save();
+		assertEquals(1, index.getMergeCount());
+		assertEquals(expected, words(index, CLASS, null, PREFIX));
+
+		Index reopened = new Index(path);
+
+		assertEquals(expected, words(reopened, CLASS, null, PREFIX));
+		assertEquals(set("word0042"), words(reopened, CLASS, "word0042", EXACT)); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals(set("word0042"), words(reopened, CLASS, "WORD0042", SearchPattern.EXACT_MATCH)); //$NON-NLS-1$ //$NON-NLS-2$
+		assertTrue(words(reopened, CLASS, "word0042x", EXACT).isEmpty()); //$NON-NLS-1$
+		assertEquals(range(100, 110), words(reopened, CLASS, "word010", PREFIX)); //$NON-NLS-1$
+		assertEquals(set("shared"), words(reopened, COLOR, null, PREFIX)); //$NON-NLS-1$
+		assertTrue(words(reopened, "missing", null, PREFIX).isEmpty()); //$NON-NLS-1$
+	}
+
+	public void testSaveChangesAndReopen() throws Exception
+	{
+		Index index = new Index(path);
+
+		addDocuments(index, 0, DOCUMENTS);
+		index.save();
+
+		// replaces the words of one document, removes two and adds a new one
+		index.addEntry(CLASS, "changed", documentName(7)); //$NON-NLS-1$
+		index.remove(Arrays.asList(new String[] { documentName(8), documentName(9) }));
+		addDocuments(index, DOCUMENTS, DOCUMENTS + 1);
+		index.save();
+		assertEquals(2, index.getMergeCount());
+
+		Index reopened = new Index(path);
+		Set<String> words = words(reopened, CLASS, null, PREFIX);
+
+		assertTrue(words.contains("changed")); //$NON-NLS-1$
+		assertFalse(words.contains("word0007")); //$NON-NLS-1$
+		assertFalse(words.contains("word0008")); //$NON-NLS-1$
+		assertFalse(words.contains("word0009")); //$NON-NLS-1$
+		assertTrue(words.contains("word0010")); //$NON-NLS-1$
+		assertTrue(words.contains(word(DOCUMENTS)));
+		assertEquals(DOCUMENTS, words.size());
+
+		// only the latest generation is left once the index is opened again
+		assertEquals(1, indexFiles().size());
+	}
+
+	public void testRemoveCategories() throws Exception
+	{
+		Index index = new Index(path);
+
+		addDocuments(index, 0, 10);
+		index.save();
+		index.removeCategories(COLOR);
+
+		Index reopened = new Index(path);
+
+		assertTrue(words(reopened, COLOR, null, PREFIX).isEmpty());
+		assertEquals(11, words(reopened, CLASS, null, PREFIX).size());
+	}
+
+	public void testMigrateLegacyIndex() throws Exception
+	{
+		// written by the streamed DiskIndex this format replaced
+		copyResource("legacy.index", indexFile()); //$NON-NLS-1$
+
+		Index index = new Index(path);
+
+		assertEquals(set("Gamma", "alpha", "beta"), words(index, CLASS, null, PREFIX)); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		assertEquals(set("red"), words(index, COLOR, null, PREFIX)); //$NON-NLS-1$
+		assertEquals(set("Gamma"), words(index, CLASS, "gam", SearchPattern.PREFIX_MATCH)); //$NON-NLS-1$ //$NON-NLS-2$
+		assertFalse(indexFile().exists());
+		assertEquals(1, indexFiles().size());
+
+		// the migrated index is saved and opened like any other
+		index.remove(Collections.singletonList("b.css")); //$NON-NLS-1$
+		index.addEntry(CLASS, "delta", "c.css"); //$NON-NLS-1$ //$NON-NLS-2$
+		index.save();
+
+		Index reopened = new Index(path);
+
+		assertEquals(set("alpha", "beta", "delta"), words(reopened, CLASS, null, PREFIX)); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		assertEquals(set("red"), words(reopened, COLOR, null, PREFIX)); //$NON-NLS-1$
+	}
+
+	/**
+	 * Gives every document a word of its own, and all of them a shared one
+	 */
+	private static void addDocuments(Index index, int start, int end)
+	{
+		for (int i = start; i < end; i++)
+		{
+			index.addEntry(CLASS, word(i), documentName(i));
+			index.addEntry(CLASS, "shared", documentName(i)); //$NON-NLS-1$
+			index.addEntry(COLOR, "shared", documentName(i)); //$NON-NLS-1$
+		}
+	}
+
+	private static String word(int i)
+	{
+		String number = "000" + i; //$NON-NLS-1$
+		return "word" + number.substring(number.length() - 4); //$NON-NLS-1$
+	}
+
+	private static String documentName(int i)
+	{
+		return "folder/file" + i + ".css"; //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	private static Set<String> range(int start, int end)
+	{
+		Set<String> words = new TreeSet<String>();
+
+		for (int i = start; i < end; i++)
+		{
+			words.add(word(i));
+		}
+
+		return words;
+	}
+
+	private static Set<String> set(String... words)
+	{
+		return new TreeSet<String>(Arrays.asList(words));
+	}
+
+	static Set<String> words(Index index, String category, String key, int matchRule) throws IOException
+	{
+		Set<String> words = new TreeSet<String>();
+		List<QueryResult> results = index.query(new String[] { category }, key, matchRule);
+
+		if (results != null)
+		{
+			for (QueryResult result : results)
+			{
+				words.add(result.getWord());
+			}
+		}
+
+		return words;
+	}
+
+	private File indexFile()
+	{
+		return IndexManager.getInstance().computeIndexLocation(path).toFile();
+	}
+
+	/**
+	 * Returns the files of every generation of the index
+	 */
+	private List<File> indexFiles()
+	{
+		File file = indexFile();
+		File[] files = file.getParentFile().listFiles();
+		List<File> result = new ArrayList<File>();
+
+		if (files != null)
+		{
+			for (File candidate : files)
+			{
+				if (candidate.getName().startsWith(file.getName()))
+				{
+					result.add(candidate);
+				}
+			}
+		}
+
+		return result;
+	}
+
+	private void deleteIndexFiles()
+	{
+		for (File file : indexFiles())
+		{
+			file.delete();
+		}
+	}
+
+	private void copyResource(String name, File target) throws IOException
+	{
+		InputStream in = getClass().getResourceAsStream(name);
+		OutputStream out = new FileOutputStream(target);
+
+		try
+		{
+			byte[] buffer = new byte[1024];
+			int read;
+
+			while ((read = in.read(buffer)) != -1)
+			{
+				out.write(buffer, 0, read);
+			}
+		}
+		finally
+		{
+			in.close();
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,207 @@
+package com.aptana.ide.index.core;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+import junit.framework.TestCase;
+
+/**
+ * Runs PATTERN_MATCH queries against saved indexes, where the trigram tables pick the candidate words, and checks them
+ * against Index.isMatch
+ *
+ * @author agent (agent@local)
+ */
+public class PatternMatchTest extends TestCase
+{
+
+	private static final String CLASS = "class"; //$NON-NLS-1$
+	private static final String LETTERS = "abcABCxyz\u00c4\u00e4\u00df_-"; //$NON-NLS-1$
+	private static final String WILDCARDS = "**??"; //$NON-NLS-1$
+	private static final int WORDS = 2000;
+
+	private String path;
+	private Random random;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		path = "/" + getClass().getName() + "/" + getName(); //$NON-NLS-1$ //$NON-NLS-2$
+		random = new Random(getName().hashCode());
+		deleteIndexFiles();
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		deleteIndexFiles();
+		super.tearDown();
+	}
+
+	public void testIsMatch()
+	{
+		assertTrue(Index.isMatch("*", "", SearchPattern.PATTERN_MATCH)); //$NON-NLS-1$ //$NON-NLS-2$
+		assertTrue(Index.isMatch("a*c", "abbc", SearchPattern.PATTERN_MATCH)); //$NON-NLS-1$ //$NON-NLS-2$
+		assertTrue(Index.isMatch("A?C", "abc", SearchPattern.PATTERN_MATCH)); //$NON-NLS-1$ //$NON-NLS-2$
+		assertFalse(Index.isMatch("A?C", "abc", SearchPattern.PATTERN_MATCH | SearchPattern.CASE_SENSITIVE)); //$NON-NLS-1$ //$NON-NLS-2$
+		assertFalse(Index.isMatch("a*c", "abcd", SearchPattern.PATTERN_MATCH)); //$NON-NLS-1$ //$NON-NLS-2$
+		assertFalse(Index.isMatch("a?", "a", SearchPattern.PATTERN_MATCH)); //$NON-NLS-1$ //$NON-NLS-2$
+
+		// a '*' followed by a literal that also occurs earlier has to backtrack
+		assertTrue(Index.isMatch("*ab", "aab", SearchPattern.PATTERN_MATCH)); //$NON-NLS-1$ //$NON-NLS-2$
+		assertTrue(Index.isMatch("*a*b*a", "xaybba", SearchPattern.PATTERN_MATCH)); //$NON-NLS-1$ //$NON-NLS-2$
+
+		// agrees with the same pattern as a regular expression
+		for (int i = 0; i < 20000; i++)
+		{
+			String pattern = randomString(1, 7, "ab*?A"); //$NON-NLS-1$
+			String word = randomString(0, 9, "abAB"); //$NON-NLS-1$
+
+			assertEquals(pattern + " " + word, toRegex(pattern, true).matcher(word).matches(), Index.isMatch(pattern, //$NON-NLS-1$
+					word, SearchPattern.PATTERN_MATCH | SearchPattern.CASE_SENSITIVE));
+			assertEquals(pattern + " " + word, toRegex(pattern, false).matcher(word).matches(), Index.isMatch(pattern, //$NON-NLS-1$
+					word, SearchPattern.PATTERN_MATCH));
+		}
+	}
+
+	public void testCaseSensitivePatterns() throws Exception
+	{
+		assertPatternsMatch(SearchPattern.PATTERN_MATCH | SearchPattern.CASE_SENSITIVE);
+	}
+
+	public void testCaseInsensitivePatterns() throws Exception
+	{
+		assertPatternsMatch(SearchPattern.PATTERN_MATCH);
+	}
+
+	/**
+	 * Queries a saved index with patterns that are mostly taken from its own words, so that most of them match
+	 * something
+	 */
+	private void assertPatternsMatch(int matchRule) throws Exception
+	{
+		Index index = new Index(path);
+		List<String> words = new ArrayList<String>();
+
+		for (int i = 0; i < WORDS; i++)
+		{
+			String word = randomString(1, 12, LETTERS);
+
+			words.add(word);
+			index.addEntry(CLASS, word, "file" + (i % 50) + ".css"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		index.save();
+
+		String[] fixed = { "*", "?", "???", "a*", "*a", "*ab*", "*AB*", "*abc*", "*\u00c4\u00c4*", "*\u00e4\u00e4*", "*\u00df*", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$ //$NON-NLS-8$ //$NON-NLS-9$ //$NON-NLS-10$ //$NON-NLS-11$
+				"a?c*", "*xyz", "*_-*" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		List<String> patterns = new ArrayList<String>(Arrays.asList(fixed));
+
+		for (int i = 0; i < 300; i++)
+		{
+			patterns.add(patternFrom(words.get(random.nextInt(WORDS))));
+		}
+		for (int i = 0; i < 100; i++)
+		{
+			patterns.add(randomString(1, 8, LETTERS + WILDCARDS));
+		}
+
+		for (String pattern : patterns)
+		{
+			Set<String> expected = new TreeSet<String>();
+
+			for (String word : words)
+			{
+				if (Index.isMatch(pattern, word, matchRule))
+				{
+					expected.add(word);
+				}
+			}
+			assertEquals(pattern, expected, IndexPersistenceTest.words(index, CLASS, pattern, matchRule));
+		}
+	}
+
+	/**
+	 * Replaces parts of a word with wildcards, and changes the case of some of its letters
+	 */
+	private String patternFrom(String word)
+	{
+		StringBuilder pattern = new StringBuilder();
+
+		for (int i = 0; i < word.length(); i++)
+		{
+			char c = word.charAt(i);
+
+			switch (random.nextInt(8))
+			{
+				case 0:
+					pattern.append('*');
+					// skip the characters the '*' stands for
+					i += random.nextInt(3);
+					break;
+				case 1:
+					pattern.append('?');
+					break;
+				case 2:
+					pattern.append(Character.isUpperCase(c) ? Character.toLowerCase(c) : Character.toUpperCase(c));
+					break;
+				default:
+					pattern.append(c);
+			}
+		}
+
+		return pattern.toString();
+	}
+
+	private String randomString(int minLength, int maxLength, String characters)
+	{
+		int length = minLength + random.nextInt(maxLength - minLength + 1);
+		StringBuilder result = new StringBuilder(length);
+
+		for (int i = 0; i < length; i++)
+		{
+			result.append(characters.charAt(random.nextInt(characters.length())));
+		}
+
+		return result.toString();
+	}
+
+	private static Pattern toRegex(String pattern, boolean isCaseSensitive)
+	{
+		StringBuilder regex = new StringBuilder();
+
+		for (char c : pattern.toCharArray())
+		{
+			if (c == '*')
+				regex.append(".*"); //$NON-NLS-1$
+			else if (c == '?')
+				regex.append('.');
+			else
+				regex.append(Pattern.quote(String.valueOf(c)));
+		}
+
+		return Pattern.compile(regex.toString(), isCaseSensitive ? 0 : Pattern.CASE_INSENSITIVE);
+	}
+
+	private void deleteIndexFiles()
+	{
+		File file = IndexManager.getInstance().computeIndexLocation(path).toFile();
+		File[] files = file.getParentFile().listFiles();
+
+		if (files != null)
+		{
+			for (File candidate : files)
+			{
+				if (candidate.getName().startsWith(file.getName()))
+				{
+					candidate.delete();
+				}
+			}
+		}
+	}
+}
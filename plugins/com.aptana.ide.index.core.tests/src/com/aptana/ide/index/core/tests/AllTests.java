@@ -0,0 +1,41 @@
+package com.aptana.ide.index.core.tests;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import com.aptana.ide.index.core.IndexMergeTest;
+import com.aptana.ide.index.core.IndexPersistenceTest;
+import com.aptana.ide.index.core.PatternMatchTest;
+import com.aptana.ide.internal.index.core.ReadWriteMonitorTest;
+
+/**
+ * @author agent (agent@local)
+ */
+public final class AllTests
+{
+	/**
+	 * AllTests
+	 */
+	private AllTests()
+	{
+	}
+
+	/**
+	 * suite
+	 * 
+	 * @return Returns a group of unit tests
+	 */
+	public static Test suite()
+	{
+		TestSuite suite = new TestSuite("Tests for com.aptana.ide.index.core.tests"); //$NON-NLS-1$
+
+		// $JUnit-BEGIN$
+		suite.addTestSuite(IndexMergeTest.class);
+		suite.addTestSuite(IndexPersistenceTest.class);
+		suite.addTestSuite(PatternMatchTest.class);
+		suite.addTestSuite(ReadWriteMonitorTest.class);
+		// $JUnit-END$
+
+		return suite;
+	}
+}
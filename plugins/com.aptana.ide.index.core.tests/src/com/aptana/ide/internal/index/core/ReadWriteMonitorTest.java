@@ -0,0 +1,131 @@
+package com.aptana.ide.internal.index.core;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+/**
+ * Takes the index monitor from several threads, with writers waiting for readers
+ *
+ * @author agent (agent@local)
+ */
+public class ReadWriteMonitorTest extends TestCase
+{
+
+	private static final long TIMEOUT = 30;
+
+	private ReadWriteMonitor monitor;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		monitor = new ReadWriteMonitor();
+	}
+
+	public void testReadersShareTheMonitor() throws Exception
+	{
+		monitor.enterRead();
+
+		CountDownLatch read = startReader();
+
+		assertTrue(read.await(TIMEOUT, TimeUnit.SECONDS));
+		monitor.exitRead();
+	}
+
+	public void testWaitingWriterHoldsBackNewReaders() throws Exception
+	{
+		monitor.enterRead();
+
+		CountDownLatch written = startWriter();
+
+		waitForWriter();
+
+		CountDownLatch read = startReader();
+
+		assertFalse(read.await(200, TimeUnit.MILLISECONDS));
+		monitor.exitRead();
+		assertTrue(written.await(TIMEOUT, TimeUnit.SECONDS));
+		assertTrue(read.await(TIMEOUT, TimeUnit.SECONDS));
+	}
+
+	public void testNestedReadWhileWriterWaits() throws Exception
+	{
+		monitor.enterRead();
+
+		CountDownLatch written = startWriter();
+
+		waitForWriter();
+
+		// would wait for the writer, which waits for this thread
+		monitor.enterRead();
+		monitor.exitRead();
+		assertEquals(1, written.getCount());
+		monitor.exitRead();
+		assertTrue(written.await(TIMEOUT, TimeUnit.SECONDS));
+	}
+
+	public void testExitReadEnterWrite() throws Exception
+	{
+		monitor.enterRead();
+		assertTrue(monitor.exitReadEnterWrite());
+		monitor.exitWriteEnterRead();
+		monitor.enterRead();
+		assertFalse(monitor.exitReadEnterWrite());
+		monitor.exitRead();
+		monitor.exitRead();
+
+		// the thread holds no read lock any more, so it waits behind writers again
+		monitor.enterRead();
+		assertTrue(monitor.exitReadEnterWrite());
+
+		CountDownLatch read = startReader();
+
+		assertFalse(read.await(200, TimeUnit.MILLISECONDS));
+		monitor.exitWrite();
+		assertTrue(read.await(TIMEOUT, TimeUnit.SECONDS));
+	}
+
+	private CountDownLatch startReader()
+	{
+		final CountDownLatch done = new CountDownLatch(1);
+
+		new Thread()
+		{
+			public void run()
+			{
+				monitor.enterRead();
+				monitor.exitRead();
+				done.countDown();
+			}
+		}.start();
+
+		return done;
+	}
+
+	private CountDownLatch startWriter()
+	{
+		final CountDownLatch done = new CountDownLatch(1);
+
+		new Thread()
+		{
+			public void run()
+			{
+				monitor.enterWrite();
+				monitor.exitWrite();
+				done.countDown();
+			}
+		}.start();
+
+		return done;
+	}
+
+	/**
+	 * Gives the writer started last the time to start waiting
+	 */
+	private void waitForWriter() throws InterruptedException
+	{
+		Thread.sleep(200);
+	}
+}
@@ -2,6 +2,7 @@ package com.aptana.ide.index.core;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -21,7 +22,12 @@ public class Index
 	public char separator = DEFAULT_SEPARATOR;
 
 	private MemoryIndex memoryIndex;
+	private MemoryIndex mergingIndex; // changes being merged into the next disk index, null when no merge is running
 	private DiskIndex diskIndex;
+	private final Object mergeLock = new Object();
+	private volatile long lastMergeTime;
+	private volatile long totalMergeTime;
+	private volatile int mergeCount;
 	ReadWriteMonitor monitor;
 
 	public Index(String path) throws IOException
@@ -38,33 +44,49 @@ public class Index
 
 	public void addEntry(String category, String key, String documentPath)
 	{
-		this.memoryIndex.addEntry(category, key, documentPath);
+		boolean shouldSave;
+		monitor.enterWrite();
+		try
+		{
+			this.memoryIndex.addEntry(category, key, documentPath);
+			shouldSave = this.memoryIndex.shouldMerge();
+		}
+		finally
+		{
+			monitor.exitWrite();
+		}
+		if (shouldSave)
+			IndexManager.getInstance().scheduleSave(this);
 	}
 
 	public List<QueryResult> query(String[] categories, String key, int matchRule) throws IOException
 	{
-		if (this.memoryIndex.shouldMerge() && monitor.exitReadEnterWrite())
+		Map<String, QueryResult> results;
+		int rule = matchRule & MATCH_RULE_INDEX_MASK;
+		monitor.enterRead();
+		try
 		{
-			try
+			if (this.mergingIndex != null)
 			{
-				save();
+				// changes that are being merged in the background are not on disk yet, and the pending ones replace
+				// them
+				results = this.diskIndex.addQueryResults(categories, key, rule, this.mergingIndex, this.memoryIndex);
+				results = this.mergingIndex.addQueryResults(categories, key, rule, results, this.memoryIndex);
+				results = this.memoryIndex.addQueryResults(categories, key, rule, results);
 			}
-			finally
+			else if (this.memoryIndex.hasChanged())
 			{
-				monitor.exitWriteEnterRead();
+				results = this.diskIndex.addQueryResults(categories, key, rule, this.memoryIndex);
+				results = this.memoryIndex.addQueryResults(categories, key, rule, results);
+			}
+			else
+			{
+				results = this.diskIndex.addQueryResults(categories, key, rule, null);
 			}
 		}
-
-		Map<String, QueryResult> results;
-		int rule = matchRule & MATCH_RULE_INDEX_MASK;
-		if (this.memoryIndex.hasChanged())
-		{
-			results = this.diskIndex.addQueryResults(categories, key, rule, this.memoryIndex);
-			results = this.memoryIndex.addQueryResults(categories, key, rule, results);
-		}
-		else
+		finally
 		{
-			results = this.diskIndex.addQueryResults(categories, key, rule, null);
+			monitor.exitRead();
 		}
 		if (results == null)
 			return null;
@@ -87,36 +109,135 @@ public class Index
 			case SearchPattern.PREFIX_MATCH:
 				return patternLength <= wordLength && word.toLowerCase().startsWith(pattern.toLowerCase());
 			case SearchPattern.PATTERN_MATCH:
-				return patternMatch(pattern.toLowerCase(), word.toLowerCase());
+				return patternMatch(pattern, word, false);
 			case SearchPattern.EXACT_MATCH | SearchPattern.CASE_SENSITIVE:
 				return patternLength == wordLength && pattern.equals(word);
 			case SearchPattern.PREFIX_MATCH | SearchPattern.CASE_SENSITIVE:
 				return patternLength <= wordLength && word.startsWith(pattern);
 			case SearchPattern.PATTERN_MATCH | SearchPattern.CASE_SENSITIVE:
-				return patternMatch(pattern, word);
+				return patternMatch(pattern, word, true);
 		}
 		return false;
 	}
 
-	private static boolean patternMatch(String pattern, String word)
+	/**
+	 * Matches the whole word against a pattern where '*' stands for any run of characters and '?' for any single
+	 * character. Case is folded one char at a time so that the disk index trigram tables agree with this method.
+	 * 
+	 * @param pattern
+	 * @param word
+	 * @param isCaseSensitive
+	 * @return boolean
+	 */
+	private static boolean patternMatch(String pattern, String word, boolean isCaseSensitive)
 	{
-		// TODO Sort of like a regexp match, just handle * and ? wildcards in the pattern
-		if (pattern.equals("*"))
-			return true;
-		return false;
+		int patternLength = pattern.length();
+		int wordLength = word.length();
+		int p = 0;
+		int w = 0;
+		int starPattern = -1; // position after the last '*' seen, to backtrack to
+		int starWord = -1; // position in the word the last '*' currently extends to
+		while (w < wordLength)
+		{
+			if (p < patternLength)
+			{
+				char patternChar = pattern.charAt(p);
+				if (patternChar == '*')
+				{
+					starPattern = ++p;
+					starWord = w;
+					continue;
+				}
+				char wordChar = word.charAt(w);
+				if (patternChar == '?' || patternChar == wordChar
+						|| (!isCaseSensitive && Character.toLowerCase(patternChar) == Character.toLowerCase(wordChar)))
+				{
+					p++;
+					w++;
+					continue;
+				}
+			}
+			if (starPattern == -1)
+				return false;
+			// let the last '*' swallow one more character and try again
+			p = starPattern;
+			w = ++starWord;
+		}
+		while (p < patternLength && pattern.charAt(p) == '*')
+			p++;
+		return p == patternLength;
 	}
 
+	/**
+	 * Merges the pending changes into a new disk index. The new index is written while queries keep reading the
+	 * current one, and the write lock is only held to swap the two.
+	 * 
+	 * @throws IOException
+	 */
 	public void save() throws IOException
 	{
-		// must own the write lock of the monitor
-		if (!hasChanged())
-			return;
+		synchronized (this.mergeLock)
+		{
+			DiskIndex diskIndex;
+			MemoryIndex changes;
+			monitor.enterWrite();
+			try
+			{
+				if (!hasChanged())
+					return;
 
-		int numberOfChanges = this.memoryIndex.numberOfChanges();
-		this.diskIndex = this.diskIndex.mergeWith(this.memoryIndex);
-		this.memoryIndex = new MemoryIndex();
-		if (numberOfChanges > 1000)
-			System.gc(); // reclaim space if the MemoryIndex was very BIG
+				diskIndex = this.diskIndex;
+				changes = this.memoryIndex;
+				this.mergingIndex = changes;
+				this.memoryIndex = new MemoryIndex();
+			}
+			finally
+			{
+				monitor.exitWrite();
+			}
+
+			long start = System.currentTimeMillis();
+			boolean merged = false;
+			try
+			{
+				DiskIndex newDiskIndex = diskIndex.writeMerged(changes);
+				monitor.enterWrite();
+				try
+				{
+					this.diskIndex = diskIndex.replaceWith(newDiskIndex);
+					this.mergingIndex = null;
+					merged = true;
+				}
+				finally
+				{
+					monitor.exitWrite();
+				}
+			}
+			finally
+			{
+				if (!merged)
+				{
+					// keep the changes so the next save tries again
+					monitor.enterWrite();
+					try
+					{
+						this.memoryIndex = new MemoryIndex(changes, this.memoryIndex);
+						this.mergingIndex = null;
+					}
+					finally
+					{
+						monitor.exitWrite();
+					}
+				}
+			}
+
+			long elapsed = System.currentTimeMillis() - start;
+			this.lastMergeTime = elapsed;
+			this.totalMergeTime += elapsed;
+			this.mergeCount++;
+			if (changes.numberOfChanges() > 1000)
+				System.gc(); // reclaim space if the MemoryIndex was very BIG
+		}
 	}
 
 	private boolean hasChanged()
@@ -124,26 +245,108 @@ public class Index
 		return memoryIndex.hasChanged();
 	}
 
+	/**
+	 * Returns true if enough changes are pending that they should be merged to disk
+	 * 
+	 * @return boolean
+	 */
+	public boolean shouldSave()
+	{
+		monitor.enterRead();
+		try
+		{
+			return this.memoryIndex.shouldMerge();
+		}
+		finally
+		{
+			monitor.exitRead();
+		}
+	}
+
+	/**
+	 * Returns the time in milliseconds taken by the last merge into the disk index
+	 * 
+	 * @return long
+	 */
+	public long getLastMergeTime()
+	{
+		return this.lastMergeTime;
+	}
+
+	/**
+	 * Returns the time in milliseconds taken by all merges into the disk index
+	 * 
+	 * @return long
+	 */
+	public long getTotalMergeTime()
+	{
+		return this.totalMergeTime;
+	}
+
+	/**
+	 * Returns the number of merges into the disk index
+	 * 
+	 * @return int
+	 */
+	public int getMergeCount()
+	{
+		return this.mergeCount;
+	}
+
 	/**
 	 * Remove all indices for a given document
 	 * @param containerRelativePath
 	 */
 	public void remove(String containerRelativePath)
 	{
-		this.memoryIndex.remove(containerRelativePath);
+		monitor.enterWrite();
+		try
+		{
+			this.memoryIndex.remove(containerRelativePath);
+		}
+		finally
+		{
+			monitor.exitWrite();
+		}
 	}
 
-	public void removeCategories(String... categoryNames)
+	/**
+	 * Remove all indices for the given documents
+	 * @param containerRelativePaths
+	 */
+	public void remove(Collection<String> containerRelativePaths)
 	{
+		monitor.enterWrite();
 		try
 		{
-			this.memoryIndex.removeCategories(categoryNames);
-			this.diskIndex = this.diskIndex.removeCategories(categoryNames, this.memoryIndex);
+			for (String containerRelativePath : containerRelativePaths)
+				this.memoryIndex.remove(containerRelativePath);
 		}
-		catch (IOException e)
+		finally
 		{
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+			monitor.exitWrite();
+		}
+	}
+
+	public void removeCategories(String... categoryNames)
+	{
+		synchronized (this.mergeLock)
+		{
+			monitor.enterWrite();
+			try
+			{
+				this.memoryIndex.removeCategories(categoryNames);
+				this.diskIndex = this.diskIndex.removeCategories(categoryNames, this.memoryIndex);
+			}
+			catch (IOException e)
+			{
+				// TODO Auto-generated catch block
+				e.printStackTrace();
+			}
+			finally
+			{
+				monitor.exitWrite();
+			}
 		}
 	}
 
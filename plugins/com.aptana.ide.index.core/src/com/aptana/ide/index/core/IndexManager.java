@@ -19,7 +19,7 @@ import org.eclipse.core.runtime.IPath;
 
 import com.aptana.ide.core.AptanaCorePlugin;
 import com.aptana.ide.core.IdeLog;
-import com.aptana.ide.internal.index.core.ReadWriteMonitor;
+import com.aptana.ide.internal.index.core.IndexingJob;
 
 public class IndexManager
 {
@@ -27,6 +27,7 @@ public class IndexManager
 	private static IndexManager instance;
 
 	private Map<String, Index> indexes;
+	private IndexingJob indexingJob;
 
 	public synchronized static IndexManager getInstance()
 	{
@@ -38,6 +39,7 @@ public class IndexManager
 	private IndexManager()
 	{
 		indexes = new HashMap<String, Index>();
+		indexingJob = new IndexingJob();
 		IResourceChangeListener listener = new IResourceChangeListener()
 		{
 
@@ -46,6 +48,8 @@ public class IndexManager
 				IResourceDelta delta = event.getDelta();
 				if (delta == null)
 					return;
+				// collect the removed files of each project so they are applied as one batch in the background
+				final Map<String, List<String>> removedDocuments = new HashMap<String, List<String>>();
 				try
 				{
 					delta.accept(new IResourceDeltaVisitor()
@@ -57,7 +61,14 @@ public class IndexManager
 							{
 								if (delta.getKind() == IResourceDelta.REMOVED)
 								{
-									removeDocument(resource.getProject().getFullPath(), resource.getProjectRelativePath().toPortableString());
+									String container = resource.getProject().getFullPath().toPortableString();
+									List<String> documents = removedDocuments.get(container);
+									if (documents == null)
+									{
+										documents = new ArrayList<String>();
+										removedDocuments.put(container, documents);
+									}
+									documents.add(resource.getProjectRelativePath().toPortableString());
 								}
 							}
 							return true;
@@ -68,13 +79,19 @@ public class IndexManager
 				{
 					IdeLog.logError(AptanaCorePlugin.getDefault(), e.getMessage(), e);
 				}
+				for (Map.Entry<String, List<String>> entry : removedDocuments.entrySet())
+				{
+					Index index = getIndex(entry.getKey());
+					if (index != null)
+						indexingJob.queueRemovals(index, entry.getValue());
+				}
 			}
 		};
 		final IWorkspace workspace = ResourcesPlugin.getWorkspace();
 		workspace.addResourceChangeListener(listener, IResourceChangeEvent.POST_CHANGE);
 	}
 
-	public Index getIndex(String path)
+	public synchronized Index getIndex(String path)
 	{
 		Index index = indexes.get(path);
 		if (index == null)
@@ -102,24 +119,24 @@ public class IndexManager
 		return Activator.getDefault().getStateLocation().append(fileName);
 	}
 
-	private void removeDocument(IPath container, String documentPath)
+	/**
+	 * Merge the pending changes of an index to disk in the background
+	 * 
+	 * @param index
+	 */
+	void scheduleSave(Index index)
 	{
-		Index index = getIndex(container.toPortableString());
-		if (index == null)
-			return;
-		ReadWriteMonitor monitor = index.monitor;
-		if (monitor == null)
-			return; // index got deleted since acquired
+		indexingJob.queueSave(index);
+	}
 
-		try
-		{
-			monitor.enterWrite(); // ask permission to write
-			index.remove(documentPath);
-		}
-		finally
-		{
-			monitor.exitWrite(); // free write lock
-		}
+	/**
+	 * Returns the number of document removals and merges waiting to be applied in the background
+	 * 
+	 * @return int
+	 */
+	public int getQueueDepth()
+	{
+		return indexingJob.getQueueDepth();
 	}
 
 	// FIXME IndexManager should listen for resource changes and handle the removal of deleted files on it's own!
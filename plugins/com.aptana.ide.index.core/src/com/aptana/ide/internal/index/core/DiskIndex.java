@@ -1,19 +1,20 @@
 package com.aptana.ide.internal.index.core;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
 import java.io.UTFDataFormatException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -23,24 +24,38 @@ import com.aptana.ide.index.core.QueryResult;
 import com.aptana.ide.index.core.SearchPattern;
 
 /**
- * Yuck this needs to be a random access file that stores the index of documents, category names, and the relationship
- * between them. We need to be careful to allow for quick access into the categories when reading, and to keep filesize
- * down if possible.
- * 
+ * Stores the index of documents, category names, and the relationship between them. The file is memory-mapped and
+ * queried in place: each category table is a run of sorted, front-coded word blocks followed by a sparse directory
+ * holding the offset of every block, so exact and prefix lookups binary-search the block directory and decode a single
+ * block instead of deserializing the whole table.
+ * <p>
+ * A mapped file cannot be replaced on every platform, so each merge writes a new generation of the index to its own
+ * file, named after the index with the generation number appended (e.g. 1234.index.7). The previous generation is
+ * deleted once it is no longer mapped, or at the latest the next time the index is opened.
+ *
  * @author cwilliams
  */
 public class DiskIndex
 {
 
-	private static final String SIGNATURE = "INDEX VERSION 0.1";
+	private static final String SIGNATURE = "INDEX VERSION 0.2";
 	private static final int CHUNK_SIZE = 100;
+	private static final int BLOCK_SIZE = 32; // number of words per front-coded block
+	private static final int MAX_SHARED_PREFIX = 255;
+	// trigram tables let PATTERN_MATCH queries skip words that cannot match, -Daptana.index.trigrams=false turns them off
+	private static final boolean WRITE_TRIGRAMS = !"false".equals(System.getProperty("aptana.index.trigrams")); //$NON-NLS-1$ //$NON-NLS-2$
+	private static final int TRIGRAM_ENTRY_SIZE = 14; // three chars, the offset and the size of the posting list
 	private static final int RE_INDEXED = -1;
 	private static final int DELETED = -2;
 	private static final boolean DEBUG = true;
+	private static final String TEMP_SUFFIX = ".tmp"; //$NON-NLS-1$
 
+	private final File baseFile; // the name every generation of this index is derived from
+	private int generation; // 0 when the index is stored under the base name, as older versions did
 	private File indexFile;
+	private ByteBuffer buffer; // read-only mapping of indexFile, null when closed
+	private List<File> staleFiles = new ArrayList<File>(); // previous generations that could not be deleted yet
 	private int headerInfoOffset;
-	private int streamRead;
 	private int numberOfChunks;
 	private int sizeOfLastChunk;
 	private int documentReferenceSize;
@@ -48,20 +63,18 @@ public class DiskIndex
 	private int[] chunkOffsets;
 	private int startOfCategoryTables;
 	private Map<String, Integer> categoryOffsets;
-	private Map<String, Integer> categoryEnds;
-	// Usually a map from string to map from string to list of integer. But may also be a single integer (to represent a
-	// pointer to long array)
-	// FIXME YUCK!! This "usually a list of integers, sometimes one integer that acts as a pointer" stuff is killing me!
-	private Map<String, Map<String, Object>> categoryTables;
+	private Map<String, Integer> trigramOffsets;
+	// only used while writing a new index, maps category names to word -> document number tables
+	private Map<String, Map<String, List<Integer>>> categoryTables;
 
 	private int streamEnd;
-	private String cachedCategoryName;
 	private String[][] cachedChunks;
 	private String[] categoriesToDiscard;
 
 	public DiskIndex(String fileName)
 	{
-		this.indexFile = new File(fileName);
+		this.baseFile = new File(fileName);
+		this.indexFile = this.baseFile;
 
 		// clear cached items
 		this.headerInfoOffset = -1;
@@ -71,48 +84,49 @@ public class DiskIndex
 		this.documentReferenceSize = -1;
 		this.categoryTables = null;
 		this.categoryOffsets = null;
-		this.categoryEnds = null;
+		this.trigramOffsets = null;
 		this.categoriesToDiscard = null;
 	}
 
 	public void initialize() throws IOException
 	{
+		findLatestGeneration();
 		if (this.indexFile.exists())
 		{
-			// read it in!
-			InputStream stream = new BufferedInputStream(new FileInputStream(this.indexFile));
-			try
+			String signature = readSignature(this.indexFile);
+			if (LegacyDiskIndex.SIGNATURE.equals(signature))
 			{
-				streamRead = 0;
-				String signature = readString(stream);
-				if (!signature.equals(SIGNATURE))
-				{
-					throw new IOException("Messages.exception_wrongFormat");
-				}
-				this.headerInfoOffset = readStreamInt(stream);
-				if (this.headerInfoOffset > 0)
-				{ // file is empty if its not set
-					stream.skip(this.headerInfoOffset - this.streamRead); // assume that the header info offset is over
-					// current buffer end
-					readHeaderInfo(stream);
-				}
+				// rewrite the old streamed format before mapping the file
+				migrate();
+				signature = readSignature(this.indexFile);
 			}
-			finally
+			if (!signature.equals(SIGNATURE))
 			{
-				stream.close();
+				throw new IOException("Messages.exception_wrongFormat");
 			}
+			ByteBuffer buffer = map(this.indexFile);
+			buffer.position(2 + SIGNATURE.length());
+			this.headerInfoOffset = buffer.getInt();
+			if (this.headerInfoOffset > 0)
+			{ // file is empty if its not set
+				buffer.position(this.headerInfoOffset);
+				readHeaderInfo(buffer);
+			}
+			this.buffer = buffer;
 			return;
 		}
 		else
 		{
 			// create a new empty one!
+			this.generation = 1;
+			this.indexFile = generationFile(this.baseFile, this.generation);
 			if (indexFile.createNewFile())
 			{
-				FileOutputStream stream = new FileOutputStream(this.indexFile, false);
+				OutputStream stream = new FileOutputStream(this.indexFile, false);
 				try
 				{
 					writeString(stream, SIGNATURE);
-					stream.write(-1);
+					writeStreamInt(stream, -1);
 				}
 				finally
 				{
@@ -124,48 +138,238 @@ public class DiskIndex
 		}
 	}
 
-	private void readHeaderInfo(InputStream stream) throws IOException
+	/**
+	 * Points this index at its most recent generation and deletes the older ones, which are left behind when they were
+	 * still mapped at the time they were replaced
+	 */
+	private void findLatestGeneration()
 	{
-		// must be same order as writeHeaderInfo()
-		this.numberOfChunks = readStreamInt(stream);
-		this.sizeOfLastChunk = read(stream) & 0xFF;
-		this.documentReferenceSize = read(stream) & 0xFF;
-		this.separator = (char) (read(stream) & 0xFF);
+		File directory = this.baseFile.getAbsoluteFile().getParentFile();
+		String[] names = directory != null ? directory.list() : null;
+		if (names == null)
+			return;
 
-		this.chunkOffsets = new int[this.numberOfChunks];
-		for (int i = 0; i < this.numberOfChunks; i++)
-			this.chunkOffsets[i] = readStreamInt(stream);
+		String prefix = this.baseFile.getName() + '.';
+		List<File> generations = new ArrayList<File>();
+		for (String name : names)
+		{
+			if (!name.startsWith(prefix))
+				continue;
+			File file = new File(directory, name);
+			String suffix = name.substring(prefix.length());
+			if (suffix.endsWith(TEMP_SUFFIX))
+			{
+				// a merge that never finished
+				file.delete();
+				continue;
+			}
+			try
+			{
+				int number = Integer.parseInt(suffix);
+				if (number > this.generation)
+				{
+					this.generation = number;
+					this.indexFile = file;
+				}
+				generations.add(file);
+			}
+			catch (NumberFormatException e)
+			{
+				// not one of ours
+			}
+		}
+		if (this.generation > 0)
+		{
+			if (this.baseFile.exists())
+				generations.add(this.baseFile);
+			generations.remove(this.indexFile);
+			for (File file : generations)
+				if (!file.delete() && DEBUG)
+					System.out.println("initialize - Failed to delete old index " + file); //$NON-NLS-1$
+		}
+	}
 
-		this.startOfCategoryTables = readStreamInt(stream);
+	private static File generationFile(File baseFile, int generation)
+	{
+		return new File(baseFile.getPath() + '.' + generation);
+	}
 
-		int size = readStreamInt(stream);
-		this.categoryOffsets = new HashMap<String, Integer>(size);
-		this.categoryEnds = new HashMap<String, Integer>(size);
-		String previousCategory = null;
-		int offset = -1;
-		for (int i = 0; i < size; i++)
+	/**
+	 * Creates the index that the next generation is written to. It is written to a temporary file, which is only given
+	 * its generation's name once it is complete.
+	 *
+	 * @return DiskIndex
+	 */
+	private DiskIndex createNextGeneration()
+	{
+		DiskIndex next = new DiskIndex(this.baseFile.getPath());
+		next.generation = this.generation + 1;
+		next.indexFile = new File(generationFile(this.baseFile, next.generation).getPath() + TEMP_SUFFIX);
+		return next;
+	}
+
+	/**
+	 * Gives the complete temporary file of a new generation its final name. No file is replaced, so this works while
+	 * the previous generation is still mapped.
+	 *
+	 * @throws IOException
+	 */
+	private void commitGeneration() throws IOException
+	{
+		File target = generationFile(this.baseFile, this.generation);
+		if (target.exists() && !target.delete())
+			throw new IOException("Failed to delete index file " + target); //$NON-NLS-1$
+		if (!this.indexFile.renameTo(target))
+			throw new IOException("Failed to rename index file " + target); //$NON-NLS-1$
+		this.indexFile = target;
+	}
+
+	/**
+	 * Deletes the files of the generations before this one. A file that is still mapped cannot be deleted on some
+	 * platforms; it is tried again after the next merge, and at the latest when the index is opened again.
+	 *
+	 * @param previous
+	 */
+	private void deletePrevious(DiskIndex previous)
+	{
+		this.staleFiles.addAll(previous.staleFiles);
+		this.staleFiles.add(previous.indexFile);
+		for (Iterator<File> i = this.staleFiles.iterator(); i.hasNext();)
+		{
+			File file = i.next();
+			if (!file.exists() || file.delete())
+				i.remove();
+		}
+	}
+
+	private static ByteBuffer map(File file) throws IOException
+	{
+		RandomAccessFile raf = new RandomAccessFile(file, "r"); //$NON-NLS-1$
+		try
+		{
+			FileChannel channel = raf.getChannel();
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		finally
 		{
-			String categoryName = readString(stream);
-			offset = readStreamInt(stream);
-			this.categoryOffsets.put(categoryName, offset); // cache offset to category table
-			if (previousCategory != null)
+			raf.close(); // the mapping stays valid after the channel is closed
+		}
+	}
+
+	private static String readSignature(File file) throws IOException
+	{
+		RandomAccessFile raf = new RandomAccessFile(file, "r"); //$NON-NLS-1$
+		try
+		{
+			byte[] bytes = new byte[(int) Math.min(raf.length(), 2 + SIGNATURE.length())];
+			raf.readFully(bytes);
+			return readString(ByteBuffer.wrap(bytes));
+		}
+		catch (BufferUnderflowException e)
+		{
+			return ""; //$NON-NLS-1$
+		}
+		finally
+		{
+			raf.close();
+		}
+	}
+
+	/**
+	 * Drops the mapping of the index file so that it may be replaced
+	 */
+	private void close()
+	{
+		this.buffer = null;
+	}
+
+	/**
+	 * Rewrites an index file stored in the "INDEX VERSION 0.1" format in the current format. The document names were
+	 * stored sorted in the old format, so the document numbers referenced by the category tables remain valid.
+	 *
+	 * @throws IOException
+	 */
+	private void migrate() throws IOException
+	{
+		LegacyDiskIndex legacy = new LegacyDiskIndex(this.indexFile);
+		legacy.initialize();
+
+		List<String> names = legacy.readAllDocumentNames();
+		DiskIndex newDiskIndex = createNextGeneration();
+		try
+		{
+			newDiskIndex.initializeFrom(this, newDiskIndex.indexFile);
+			newDiskIndex.separator = legacy.getSeparator();
+			OutputStream stream = new BufferedOutputStream(new FileOutputStream(newDiskIndex.indexFile, false));
+			int offsetToHeader = -1;
+			try
+			{
+				if (names.isEmpty())
+				{
+					writeString(stream, SIGNATURE);
+					writeStreamInt(stream, -1);
+				}
+				else
+				{
+					newDiskIndex.writeDocumentNames(stream, names);
+					for (String categoryName : legacy.getCategoryNames())
+						newDiskIndex.writeCategoryTable(categoryName, legacy.readCategoryTable(categoryName), stream);
+					offsetToHeader = newDiskIndex.streamEnd;
+					newDiskIndex.writeHeaderInfo(stream);
+				}
+			}
+			finally
 			{
-				this.categoryEnds.put(previousCategory, offset); // cache end of the category table
+				stream.close();
 			}
-			previousCategory = categoryName;
+			newDiskIndex.writeOffsetToHeader(offsetToHeader);
+			newDiskIndex.commitGeneration();
 		}
-		if (previousCategory != null)
+		catch (IOException e)
 		{
-			this.categoryEnds.put(previousCategory, this.headerInfoOffset); // cache end of the category table
+			if (newDiskIndex.indexFile.exists() && !newDiskIndex.indexFile.delete())
+				if (DEBUG)
+					System.out.println("migrate - Failed to delete temp index " + newDiskIndex.indexFile); //$NON-NLS-1$
+			throw e;
 		}
-		this.categoryTables = new HashMap<String, Map<String, Object>>(3);
+		// the legacy file was only read through a stream, so it is not mapped
+		File legacyFile = this.indexFile;
+		this.generation = newDiskIndex.generation;
+		this.indexFile = newDiskIndex.indexFile;
+		if (!legacyFile.delete() && DEBUG)
+			System.out.println("migrate - Failed to delete old index " + legacyFile); //$NON-NLS-1$
 	}
 
-	private int read(InputStream stream) throws IOException
+	private void readHeaderInfo(ByteBuffer buffer) throws IOException
 	{
-		int val = stream.read();
-		streamRead++;
-		return val;
+		// must be same order as writeHeaderInfo()
+		this.numberOfChunks = buffer.getInt();
+		this.sizeOfLastChunk = buffer.get() & 0xFF;
+		this.documentReferenceSize = buffer.get() & 0xFF;
+		this.separator = (char) (buffer.get() & 0xFF);
+
+		this.chunkOffsets = new int[this.numberOfChunks];
+		for (int i = 0; i < this.numberOfChunks; i++)
+			this.chunkOffsets[i] = buffer.getInt();
+
+		this.startOfCategoryTables = buffer.getInt();
+
+		int size = buffer.getInt();
+		this.categoryOffsets = new HashMap<String, Integer>(size);
+		for (int i = 0; i < size; i++)
+		{
+			String categoryName = readString(buffer);
+			this.categoryOffsets.put(categoryName, buffer.getInt()); // cache offset to category directory
+		}
+
+		// trigram tables are optional, indexes written without them end here
+		size = buffer.remaining() >= 4 ? buffer.getInt() : 0;
+		this.trigramOffsets = new HashMap<String, Integer>(size);
+		for (int i = 0; i < size; i++)
+		{
+			String categoryName = readString(buffer);
+			this.trigramOffsets.put(categoryName, buffer.getInt()); // cache offset to trigram table
+		}
 	}
 
 	private void writeString(OutputStream stream, String signature) throws IOException
@@ -177,7 +381,6 @@ public class DiskIndex
 		stream.write((byte) (length & 0xFF)); // this will allow to read it faster
 		this.streamEnd += 2;
 
-		// we're assuming that very few char[] are so large that we need to flush the buffer more than once, if at all
 		for (char ch : array)
 		{
 			if ((ch & 0x007F) == ch)
@@ -220,28 +423,19 @@ public class DiskIndex
 				streamEnd++;
 			}
 		}
-		stream.flush();
-	}
-
-	private int readStreamInt(InputStream stream) throws IOException
-	{
-		int val = (read(stream) & 0xFF) << 24;
-		val += (read(stream) & 0xFF) << 16;
-		val += (read(stream) & 0xFF) << 8;
-		return val + (read(stream) & 0xFF);
 	}
 
-	private String readString(InputStream stream) throws IOException
+	static String readString(ByteBuffer buffer) throws UTFDataFormatException
 	{
-		int length = (read(stream) & 0xFF) << 8;
-		length += read(stream) & 0xFF;
+		int length = (buffer.get() & 0xFF) << 8;
+		length += buffer.get() & 0xFF;
 
 		// fill the chars from bytes buffer
 		char[] word = new char[length];
 		int i = 0;
 		while (i < length)
 		{
-			byte b = (byte) read(stream);
+			byte b = buffer.get();
 			switch (b & 0xF0)
 			{
 				case 0x00:
@@ -256,7 +450,7 @@ public class DiskIndex
 					break;
 				case 0xC0:
 				case 0xD0:
-					char next = (char) read(stream);
+					char next = (char) buffer.get();
 					if ((next & 0xC0) != 0x80)
 					{
 						throw new UTFDataFormatException();
@@ -266,8 +460,8 @@ public class DiskIndex
 					word[i++] = ch;
 					break;
 				case 0xE0:
-					char first = (char) read(stream);
-					char second = (char) read(stream);
+					char first = (char) buffer.get();
+					char second = (char) buffer.get();
 					if ((first & second & 0xC0) != 0x80)
 					{
 						throw new UTFDataFormatException();
@@ -289,26 +483,32 @@ public class DiskIndex
 		if (this.numberOfChunks <= 0)
 			return Collections.emptyList();
 
-		InputStream stream = new BufferedInputStream(new FileInputStream(this.indexFile));
-		try
-		{
-			int offset = this.chunkOffsets[0];
-			stream.skip(offset);
-			int lastIndex = this.numberOfChunks - 1;
-			String[] docNames = new String[lastIndex * CHUNK_SIZE + sizeOfLastChunk];
-			for (int i = 0; i < this.numberOfChunks; i++)
-				readChunk(docNames, stream, i * CHUNK_SIZE, i < lastIndex ? CHUNK_SIZE : sizeOfLastChunk);
-			return Arrays.asList(docNames);
-		}
-		finally
-		{
-			stream.close();
-		}
+		ByteBuffer buffer = this.buffer.duplicate();
+		buffer.position(this.chunkOffsets[0]);
+		int lastIndex = this.numberOfChunks - 1;
+		String[] docNames = new String[lastIndex * CHUNK_SIZE + sizeOfLastChunk];
+		for (int i = 0; i < this.numberOfChunks; i++)
+			readChunk(docNames, buffer, i * CHUNK_SIZE, i < lastIndex ? CHUNK_SIZE : sizeOfLastChunk);
+		return Arrays.asList(docNames);
 	}
 
 	public DiskIndex mergeWith(MemoryIndex memoryIndex) throws IOException
 	{
 		// assume write lock is held
+		return replaceWith(writeMerged(memoryIndex));
+	}
+
+	/**
+	 * Writes the result of merging the memory index into this index to a temporary file. This index is only read, so it
+	 * can keep answering queries while the merge is being written. The result has to be passed to replaceWith() before
+	 * it can be queried.
+	 *
+	 * @param memoryIndex
+	 * @return the merged index, or this index if the memory index holds nothing to merge
+	 * @throws IOException
+	 */
+	public DiskIndex writeMerged(MemoryIndex memoryIndex) throws IOException
+	{
 		// compute & write out new docNames
 		List<String> names = readAllDocumentNames();
 		int previousLength = names.size();
@@ -317,20 +517,10 @@ public class DiskIndex
 		Map<String, Integer> indexedDocuments = new HashMap<String, Integer>(3); // for each new/changed document in the
 		// memoryIndex
 		names = computeDocumentNames(names, positions, indexedDocuments, memoryIndex);
-		if (names.isEmpty())
-		{
-			if (previousLength == 0)
-				return this; // nothing to do... memory index contained deleted documents that had never been saved
+		if (names.isEmpty() && previousLength == 0)
+			return this; // nothing to do... memory index contained deleted documents that had never been saved
 
-			// index is now empty since all the saved documents were removed
-			DiskIndex newDiskIndex = new DiskIndex(this.indexFile.getPath());
-			newDiskIndex.initialize();
-			return newDiskIndex;
-		}
-
-		this.streamEnd = 0;
-
-		DiskIndex newDiskIndex = new DiskIndex(this.indexFile.getPath() + ".tmp"); //$NON-NLS-1$
+		DiskIndex newDiskIndex = createNextGeneration();
 		try
 		{
 			newDiskIndex.initializeFrom(this, newDiskIndex.indexFile);
@@ -338,6 +528,14 @@ public class DiskIndex
 			int offsetToHeader = -1;
 			try
 			{
+				if (names.isEmpty())
+				{
+					// index is now empty since all the saved documents were removed
+					newDiskIndex.writeString(stream, SIGNATURE);
+					newDiskIndex.writeStreamInt(stream, -1);
+					return newDiskIndex;
+				}
+
 				newDiskIndex.writeDocumentNames(stream, names);
 				names = null;
 
@@ -352,8 +550,6 @@ public class DiskIndex
 
 				indexedDocuments = null; // free up the space
 
-				// TODO Check list of categories we wanted removed and wipe them out of "categoryTables"?
-
 				// merge each category table with the new ones & write them out
 				if (previousLength == 0)
 					newDiskIndex.writeCategories(stream);
@@ -369,16 +565,6 @@ public class DiskIndex
 				stream.close();
 			}
 			newDiskIndex.writeOffsetToHeader(offsetToHeader);
-
-			// rename file by deleting previous index file & renaming temp one
-			if (this.indexFile.exists() && !this.indexFile.delete())
-			{
-				throw new IOException("Failed to delete index file " + this.indexFile); //$NON-NLS-1$
-			}
-			if (!newDiskIndex.indexFile.renameTo(this.indexFile))
-			{
-				throw new IOException("Failed to rename index file " + this.indexFile); //$NON-NLS-1$
-			}
 		}
 		catch (IOException e)
 		{
@@ -387,10 +573,41 @@ public class DiskIndex
 					System.out.println("mergeWith - Failed to delete temp index " + newDiskIndex.indexFile); //$NON-NLS-1$
 			throw e;
 		}
-		newDiskIndex.indexFile = this.indexFile;
 		return newDiskIndex;
 	}
 
+	/**
+	 * Makes the file written by writeMerged() the next generation of this index and maps it, then drops this index and
+	 * deletes its file. This index can no longer be queried afterwards, so the caller must make sure no query is still
+	 * reading it.
+	 *
+	 * @param merged
+	 * @return the merged index
+	 * @throws IOException
+	 */
+	public DiskIndex replaceWith(DiskIndex merged) throws IOException
+	{
+		if (merged == this)
+			return this;
+
+		try
+		{
+			merged.commitGeneration();
+			merged.buffer = map(merged.indexFile);
+		}
+		catch (IOException e)
+		{
+			// this index stays mapped and keeps answering queries
+			if (merged.indexFile.exists() && !merged.indexFile.delete())
+				if (DEBUG)
+					System.out.println("replaceWith - Failed to delete temp index " + merged.indexFile); //$NON-NLS-1$
+			throw e;
+		}
+		close();
+		merged.deletePrevious(this);
+		return merged;
+	}
+
 	private void mergeCategories(DiskIndex onDisk, int[] positions, OutputStream stream) throws IOException
 	{
 		// at this point, this.categoryTables contains the names -> wordsToDocs added in copyQueryResults()
@@ -411,19 +628,16 @@ public class DiskIndex
 	private void mergeCategory(String categoryName, DiskIndex onDisk, int[] positions, OutputStream stream)
 			throws IOException
 	{
-		Map<String, Object> wordsToDocs = this.categoryTables.get(categoryName);
+		Map<String, List<Integer>> wordsToDocs = this.categoryTables.get(categoryName);
 		if (wordsToDocs == null)
-			wordsToDocs = new HashMap<String, Object>(3);
+			wordsToDocs = new HashMap<String, List<Integer>>(3);
 
-		Map<String, Object> oldWordsToDocs = onDisk.readCategoryTable(categoryName, true);
-		if (oldWordsToDocs != null)
+		CategoryReader reader = onDisk.getCategoryReader(categoryName);
+		if (reader != null)
 		{
-			nextWord: for (Map.Entry<String, Object> entry : oldWordsToDocs.entrySet())
+			while (reader.next())
 			{
-				String oldWord = entry.getKey();
-				if (oldWord == null)
-					continue;
-				List<Integer> oldDocNumbers = (List<Integer>) entry.getValue();
+				List<Integer> oldDocNumbers = reader.getDocumentNumbers();
 				List<Integer> mappedNumbers = new ArrayList<Integer>(oldDocNumbers.size());
 				for (Integer oldDocNumber : oldDocNumbers)
 				{
@@ -432,29 +646,14 @@ public class DiskIndex
 						mappedNumbers.add(pos);
 				}
 				if (mappedNumbers.isEmpty())
-					continue nextWord; // skip words which no longer have any references
+					continue; // skip words which no longer have any references
 
-				Object o = wordsToDocs.get(oldWord);
-				if (o == null)
-				{
-					wordsToDocs.put(oldWord, mappedNumbers);
-				}
+				List<Integer> list = wordsToDocs.get(reader.getWord());
+				if (list == null)
+					wordsToDocs.put(reader.getWord(), mappedNumbers);
 				else
-				{
-					List<Integer> list = null;
-					if (o instanceof List<?>)
-					{
-						list = (List<Integer>) o;
-					}
-					else
-					{
-						list = new ArrayList<Integer>();
-						wordsToDocs.put(oldWord, list);
-					}
 					list.addAll(mappedNumbers);
-				}
 			}
-			onDisk.categoryTables.put(categoryName, null); // flush cached table
 		}
 		writeCategoryTable(categoryName, wordsToDocs, stream);
 	}
@@ -475,8 +674,8 @@ public class DiskIndex
 
 		int size = diskIndex.categoryOffsets == null ? 8 : diskIndex.categoryOffsets.size();
 		this.categoryOffsets = new HashMap<String, Integer>(size);
-		this.categoryEnds = new HashMap<String, Integer>(size);
-		this.categoryTables = new HashMap<String, Map<String, Object>>(size);
+		this.trigramOffsets = new HashMap<String, Integer>(size);
+		this.categoryTables = new HashMap<String, Map<String, List<Integer>>>(size);
 		this.separator = diskIndex.separator;
 		this.categoriesToDiscard = diskIndex.categoriesToDiscard;
 	}
@@ -488,27 +687,27 @@ public class DiskIndex
 			String categoryName = entry.getKey();
 			if (categoryName == null)
 				continue;
-			Map<String, Object> wordsToDocs = this.categoryTables.get(categoryName);
+			Map<String, List<Integer>> wordsToDocs = this.categoryTables.get(categoryName);
 			if (wordsToDocs == null)
-				this.categoryTables.put(categoryName, wordsToDocs = new HashMap<String, Object>());
+				this.categoryTables.put(categoryName, wordsToDocs = new HashMap<String, List<Integer>>());
 
 			for (String word : entry.getValue())
 			{
 				if (word == null)
 					continue;
-				Object positions = wordsToDocs.get(word);
+				List<Integer> positions = wordsToDocs.get(word);
 				if (positions == null)
 				{
 					wordsToDocs.put(word, positions = new ArrayList<Integer>());
 				}
-				((List<Integer>) positions).add(newPosition);
+				positions.add(newPosition);
 			}
 		}
 	}
 
 	private void writeCategories(OutputStream stream) throws IOException
 	{
-		for (Map.Entry<String, Map<String, Object>> entry : categoryTables.entrySet())
+		for (Map.Entry<String, Map<String, List<Integer>>> entry : categoryTables.entrySet())
 		{
 			String categoryName = entry.getKey();
 			if (categoryName != null)
@@ -517,7 +716,7 @@ public class DiskIndex
 		this.categoryTables = null;
 	}
 
-	private void writeCategoryTable(String categoryName, Map<String, Object> wordsToDocs, OutputStream stream)
+	private void writeCategoryTable(String categoryName, Map<String, List<Integer>> wordsToDocs, OutputStream stream)
 			throws IOException
 	{
 		if (this.categoriesToDiscard != null)
@@ -527,49 +726,128 @@ public class DiskIndex
 					return;
 		}
 		// the format of a category table is as follows:
-		// any document number arrays with >= 256 elements are written before the table (the offset to each array is
-		// remembered)
-		// then the number of word->int[] pairs in the table is written
-		// for each word -> int[] pair, the word is written followed by:
-		// an int <= 0 if the array size == 1
-		// an int > 1 & < 256 for the size of the array if its > 1 & < 256, the document array follows immediately
-		// 256 if the array size >= 256 followed by another int which is the offset to the array (written prior to the
-		// table)
-
-		Map<String, Integer> longArrays = new HashMap<String, Integer>();
-		int largeArraySize = 256;
-		for (Map.Entry<String, Object> entry : wordsToDocs.entrySet())
+		// the words are sorted and written in blocks of BLOCK_SIZE words
+		// the first word of each block is written in full so that a block can be decoded on its own
+		// every following word is written as the number of leading characters it shares with the previous word
+		// (capped at 255) followed by the remaining characters
+		// each word is followed by its document numbers:
+		// an int <= 0 if the array size == 1 with the value -> -int
+		// an int > 0 for the size of the array, the document array follows immediately
+		// after the blocks, the directory is written: the number of words, the number of blocks and the offset of each
+		// block. The category offset points at the directory
+		String[] words = wordsToDocs.keySet().toArray(new String[wordsToDocs.size()]);
+		Arrays.sort(words);
+
+		int blockCount = (words.length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		int[] blockOffsets = new int[blockCount];
+		String previous = null;
+		for (int i = 0; i < words.length; i++)
 		{
-			List<Integer> docNumbers = (List<Integer>) entry.getValue();
-			if (docNumbers.size() >= largeArraySize)
+			String word = words[i];
+			if (i % BLOCK_SIZE == 0)
 			{
-				longArrays.put(entry.getKey(), new Integer(this.streamEnd));
-				writeDocumentNumbers(docNumbers, stream);
+				blockOffsets[i / BLOCK_SIZE] = this.streamEnd;
+				writeString(stream, word);
 			}
+			else
+			{
+				int max = Math.min(Math.min(previous.length(), word.length()), MAX_SHARED_PREFIX);
+				int shared = 0;
+				while (shared < max && previous.charAt(shared) == word.charAt(shared))
+					shared++;
+				stream.write((byte) shared);
+				this.streamEnd++;
+				writeString(stream, word.substring(shared));
+			}
+
+			List<Integer> documentNumbers = wordsToDocs.get(word);
+			if (documentNumbers.size() == 1)
+				writeStreamInt(stream, -documentNumbers.get(0));
+			else
+				writeDocumentNumbers(documentNumbers, stream);
+			previous = word;
 		}
 
-		this.categoryOffsets.put(categoryName, this.streamEnd); // remember the offset to the start of the table
-		this.categoryTables.put(categoryName, null); // flush cached table
-		writeStreamInt(stream, wordsToDocs.size());
+		this.categoryOffsets.put(categoryName, this.streamEnd); // remember the offset to the block directory
+		writeStreamInt(stream, words.length);
+		writeStreamInt(stream, blockCount);
+		for (int i = 0; i < blockCount; i++)
+			writeStreamInt(stream, blockOffsets[i]);
 
-		for (Map.Entry<String, Object> entry : wordsToDocs.entrySet())
+		if (WRITE_TRIGRAMS)
+			writeTrigramTable(categoryName, words, stream);
+	}
+
+	private void writeTrigramTable(String categoryName, String[] sortedWords, OutputStream stream) throws IOException
+	{
+		// the format of a trigram table is as follows:
+		// the posting list of each trigram is written first, as the ascending positions of the words containing it in
+		// the sorted word list. Each position is stored as the difference to the previous one, 7 bits per byte
+		// then the number of trigrams is written, followed by the sorted trigrams. Each one is written as its three
+		// lower case chars, the offset of its posting list and the number of positions in it
+		// the trigram offset points at the number of trigrams
+		Map<Long, Postings> trigrams = new HashMap<Long, Postings>();
+		for (int i = 0; i < sortedWords.length; i++)
 		{
-			writeString(stream, entry.getKey());
-			if (longArrays.containsKey(entry.getKey()))
+			String word = sortedWords[i];
+			for (int j = 0; j + 3 <= word.length(); j++)
 			{
-				writeStreamInt(stream, largeArraySize); // mark to identify that an offset follows
-				writeStreamInt(stream, longArrays.get(entry.getKey()).intValue()); // offset in the file of the array of
-				// document numbers
+				Long trigram = new Long(getTrigram(word, j));
+				Postings postings = trigrams.get(trigram);
+				if (postings == null)
+					trigrams.put(trigram, postings = new Postings());
+				postings.add(i);
 			}
-			else
+		}
+
+		Long[] keys = trigrams.keySet().toArray(new Long[trigrams.size()]);
+		Arrays.sort(keys);
+		int[] postingOffsets = new int[keys.length];
+		for (int i = 0; i < keys.length; i++)
+		{
+			postingOffsets[i] = this.streamEnd;
+			Postings postings = trigrams.get(keys[i]);
+			int previous = 0;
+			for (int j = 0; j < postings.size; j++)
 			{
-				List<Integer> documentNumbers = (List<Integer>) entry.getValue();
-				if (documentNumbers.size() == 1)
-					writeStreamInt(stream, -documentNumbers.get(0));
-				else
-					writeDocumentNumbers(documentNumbers, stream);
+				int delta = postings.positions[j] - previous;
+				while ((delta & ~0x7F) != 0)
+				{
+					stream.write((byte) ((delta & 0x7F) | 0x80));
+					this.streamEnd++;
+					delta >>>= 7;
+				}
+				stream.write((byte) delta);
+				this.streamEnd++;
+				previous = postings.positions[j];
 			}
 		}
+
+		this.trigramOffsets.put(categoryName, this.streamEnd); // remember the offset to the trigram table
+		writeStreamInt(stream, keys.length);
+		for (int i = 0; i < keys.length; i++)
+		{
+			long trigram = keys[i].longValue();
+			for (int shift = 40; shift >= 0; shift -= 8)
+				stream.write((byte) (trigram >>> shift));
+			this.streamEnd += 6;
+			writeStreamInt(stream, postingOffsets[i]);
+			writeStreamInt(stream, trigrams.get(keys[i]).size);
+		}
+	}
+
+	/**
+	 * Returns the three lower case chars starting at the offset packed into a long so that trigrams sort by char
+	 *
+	 * @param word
+	 * @param offset
+	 * @return long
+	 */
+	private static long getTrigram(String word, int offset)
+	{
+		return ((long) Character.toLowerCase(word.charAt(offset)) << 32)
+				| ((long) Character.toLowerCase(word.charAt(offset + 1)) << 16)
+				| Character.toLowerCase(word.charAt(offset + 2));
 	}
 
 	private void writeDocumentNumbers(List<Integer> documentNumbers, OutputStream stream) throws IOException
@@ -597,7 +875,6 @@ public class DiskIndex
 					break;
 			}
 		}
-		stream.flush();
 	}
 
 	private void writeOffsetToHeader(int offsetToHeader) throws IOException
@@ -636,13 +913,21 @@ public class DiskIndex
 		writeStreamInt(stream, this.startOfCategoryTables);
 
 		// append the file with the category offsets... # of name -> offset pairs, followed by each name & an offset to
-		// its word->doc# table
+		// its block directory
 		writeStreamInt(stream, this.categoryOffsets.size());
 		for (Map.Entry<String, Integer> entry : categoryOffsets.entrySet())
 		{
 			writeString(stream, entry.getKey());
 			writeStreamInt(stream, entry.getValue());
 		}
+
+		// followed by the offsets to the trigram tables of the categories that have one
+		writeStreamInt(stream, this.trigramOffsets.size());
+		for (Map.Entry<String, Integer> entry : trigramOffsets.entrySet())
+		{
+			writeString(stream, entry.getKey());
+			writeStreamInt(stream, entry.getValue());
+		}
 		stream.flush();
 	}
 
@@ -720,11 +1005,29 @@ public class DiskIndex
 		stream.write((byte) (val >> 8));
 		stream.write((byte) val);
 		this.streamEnd += 4;
-		stream.flush();
 	}
 
 	public Map<String, QueryResult> addQueryResults(String[] categories, String key, int matchRule,
 			MemoryIndex memoryIndex) throws IOException
+	{
+		return addQueryResults(categories, key, matchRule, memoryIndex, null);
+	}
+
+	/**
+	 * Searches this index, skipping the documents that either memory index holds changes for
+	 *
+	 * @param categories
+	 * @param key
+	 * @param matchRule
+	 * @param olderIndex
+	 *            changes that are not on disk yet, or null
+	 * @param newerIndex
+	 *            changes made after olderIndex, or null
+	 * @return the results, or null if there are none
+	 * @throws IOException
+	 */
+	public Map<String, QueryResult> addQueryResults(String[] categories, String key, int matchRule,
+			MemoryIndex olderIndex, MemoryIndex newerIndex) throws IOException
 	{
 		// assumes sender has called startQuery() & will call stopQuery() when finished
 		if (this.categoryOffsets == null)
@@ -735,17 +1038,16 @@ public class DiskIndex
 		{
 			for (int i = 0, l = categories.length; i < l; i++)
 			{
-				Map<String, Object> wordsToDocNumbers = readCategoryTable(categories[i], true); // cache if key
-				// is null
-				// since its a definite
-				// match
-				if (wordsToDocNumbers != null)
+				CategoryReader reader = getCategoryReader(categories[i]);
+				if (reader != null)
 				{
+					Map<String, Object> wordsToDocNumbers = new HashMap<String, Object>(reader.size());
+					while (reader.next())
+						wordsToDocNumbers.put(reader.getWord(), reader.getDocumentNumbers());
 					if (results == null)
 						results = new HashMap<String, QueryResult>(wordsToDocNumbers.size());
 					for (String word : wordsToDocNumbers.keySet())
-						if (word != null)
-							results = addQueryResult(results, word, wordsToDocNumbers, memoryIndex);
+						results = addQueryResult(results, word, wordsToDocNumbers, olderIndex, newerIndex);
 				}
 			}
 			if (results != null && this.cachedChunks == null)
@@ -753,43 +1055,62 @@ public class DiskIndex
 		}
 		else
 		{
-			switch (matchRule)
+			for (int i = 0, l = categories.length; i < l; i++)
 			{
-				case SearchPattern.EXACT_MATCH | SearchPattern.CASE_SENSITIVE:
-					for (int i = 0, l = categories.length; i < l; i++)
-					{
-						Map<String, Object> wordsToDocNumbers = readCategoryTable(categories[i], false);
-						if (wordsToDocNumbers != null && wordsToDocNumbers.containsKey(key))
-							results = addQueryResult(results, key, wordsToDocNumbers, memoryIndex);
-					}
-					break;
-				case SearchPattern.PREFIX_MATCH | SearchPattern.CASE_SENSITIVE:
-					for (int i = 0, l = categories.length; i < l; i++)
-					{
-						Map<String, Object> wordsToDocNumbers = readCategoryTable(categories[i], false);
-						if (wordsToDocNumbers != null)
+				CategoryReader reader = getCategoryReader(categories[i]);
+				if (reader == null)
+					continue;
+
+				Map<String, Object> wordsToDocNumbers = new HashMap<String, Object>(3);
+				switch (matchRule)
+				{
+					case SearchPattern.EXACT_MATCH | SearchPattern.CASE_SENSITIVE:
+						reader.seek(key);
+						while (reader.next())
 						{
-							for (String word : wordsToDocNumbers.keySet())
-							{
-								if (word != null && word.startsWith(key))
-									results = addQueryResult(results, word, wordsToDocNumbers, memoryIndex);
-							}
+							int comparison = reader.getWord().compareTo(key);
+							if (comparison == 0)
+								wordsToDocNumbers.put(key, reader.getDocumentNumbers());
+							if (comparison >= 0)
+								break;
 						}
-					}
-					break;
-				default:
-					for (int i = 0, l = categories.length; i < l; i++)
-					{
-						Map<String, Object> wordsToDocNumbers = readCategoryTable(categories[i], false);
-						if (wordsToDocNumbers != null)
+						break;
+					case SearchPattern.PREFIX_MATCH | SearchPattern.CASE_SENSITIVE:
+						// words sharing the prefix sort together, starting at or after the key itself
+						reader.seek(key);
+						while (reader.next())
 						{
-							for (String word : wordsToDocNumbers.keySet())
+							String word = reader.getWord();
+							if (word.startsWith(key))
+								wordsToDocNumbers.put(word, reader.getDocumentNumbers());
+							else if (word.compareTo(key) > 0)
+								break;
+						}
+						break;
+					default:
+						int[] candidates = (matchRule & SearchPattern.PATTERN_MATCH) != 0 ? reader.getCandidates(key)
+								: null;
+						if (candidates != null)
+						{
+							// only the words containing every trigram of the pattern can match
+							for (int position : candidates)
 							{
-								if (word != null && Index.isMatch(key, word, matchRule))
-									results = addQueryResult(results, word, wordsToDocNumbers, memoryIndex);
+								reader.moveTo(position);
+								String word = reader.getWord();
+								if (Index.isMatch(key, word, matchRule))
+									wordsToDocNumbers.put(word, reader.getDocumentNumbers());
 							}
+							break;
 						}
-					}
+						while (reader.next())
+						{
+							String word = reader.getWord();
+							if (Index.isMatch(key, word, matchRule))
+								wordsToDocNumbers.put(word, reader.getDocumentNumbers());
+						}
+				}
+				for (String word : wordsToDocNumbers.keySet())
+					results = addQueryResult(results, word, wordsToDocNumbers, olderIndex, newerIndex);
 			}
 		}
 
@@ -798,42 +1119,28 @@ public class DiskIndex
 		return results;
 	}
 
-	private void cacheDocumentNames() throws IOException
+	private synchronized void cacheDocumentNames() throws IOException
 	{
 		// will need all document names so get them now
-		this.cachedChunks = new String[this.numberOfChunks][];
-		FileInputStream stream = new FileInputStream(this.indexFile);
-		try
-		{
-			// if (this.numberOfChunks > 5)
-			// BUFFER_READ_SIZE <<= 1;
-			int offset = this.chunkOffsets[0];
-			stream.skip(offset);
-			for (int i = 0; i < this.numberOfChunks; i++)
-			{
-				int size = i == this.numberOfChunks - 1 ? this.sizeOfLastChunk : CHUNK_SIZE;
-				readChunk(this.cachedChunks[i] = new String[size], stream, 0, size);
-			}
-		}
-		catch (IOException e)
-		{
-			this.cachedChunks = null;
-			throw e;
-		}
-		finally
+		String[][] chunks = new String[this.numberOfChunks][];
+		ByteBuffer buffer = this.buffer.duplicate();
+		buffer.position(this.chunkOffsets[0]);
+		for (int i = 0; i < this.numberOfChunks; i++)
 		{
-			stream.close();
+			int size = i == this.numberOfChunks - 1 ? this.sizeOfLastChunk : CHUNK_SIZE;
+			readChunk(chunks[i] = new String[size], buffer, 0, size);
 		}
+		this.cachedChunks = chunks;
 	}
 
 	private Map<String, QueryResult> addQueryResult(Map<String, QueryResult> results, String word,
-			Map<String, Object> wordsToDocNumbers, MemoryIndex memoryIndex) throws IOException
+			Map<String, Object> wordsToDocNumbers, MemoryIndex olderIndex, MemoryIndex newerIndex) throws IOException
 	{
-		// must skip over documents which have been added/changed/deleted in the memory index
+		// must skip over documents which have been added/changed/deleted in the memory indexes
 		if (results == null)
 			results = new HashMap<String, QueryResult>(13);
 		QueryResult result = (QueryResult) results.get(word);
-		if (memoryIndex == null)
+		if (olderIndex == null && newerIndex == null)
 		{
 			if (result == null)
 				results.put(word, new QueryResult(word, wordsToDocNumbers));
@@ -842,14 +1149,18 @@ public class DiskIndex
 		}
 		else
 		{
-			Map<String, Map<String, Set<String>>> docsToRefs = memoryIndex.getDocumentsToReferences();
+			Map<String, Map<String, Set<String>>> olderDocs = olderIndex == null ? null : olderIndex
+					.getDocumentsToReferences();
+			Map<String, Map<String, Set<String>>> newerDocs = newerIndex == null ? null : newerIndex
+					.getDocumentsToReferences();
 			if (result == null)
 				result = new QueryResult(word, null);
 			List<Integer> docNumbers = readDocumentNumbers(wordsToDocNumbers.get(word));
 			for (Integer docNumber : docNumbers)
 			{
 				String docName = readDocumentName(docNumber);
-				if (!docsToRefs.containsKey(docName))
+				if ((olderDocs == null || !olderDocs.containsKey(docName))
+						&& (newerDocs == null || !newerDocs.containsKey(docName)))
 					result.addDocumentName(docName);
 			}
 			if (!result.isEmpty())
@@ -868,40 +1179,25 @@ public class DiskIndex
 		if (chunk == null)
 		{
 			boolean isLastChunk = chunkNumber == this.numberOfChunks - 1;
-			int start = this.chunkOffsets[chunkNumber];
-			int numberOfBytes = (isLastChunk ? this.startOfCategoryTables : this.chunkOffsets[chunkNumber + 1]) - start;
-			if (numberOfBytes < 0)
-				throw new IllegalArgumentException();
-			InputStream file = new BufferedInputStream(new FileInputStream(this.indexFile));
-			try
-			{
-				file.skip(start);
-				int numberOfNames = isLastChunk ? this.sizeOfLastChunk : CHUNK_SIZE;
-				chunk = new String[numberOfNames];
-				readChunk(chunk, file, 0, numberOfNames);
-			}
-			catch (IOException ioe)
-			{
-				throw ioe;
-			}
-			finally
-			{
-				file.close();
-			}
+			ByteBuffer buffer = this.buffer.duplicate();
+			buffer.position(this.chunkOffsets[chunkNumber]);
+			int numberOfNames = isLastChunk ? this.sizeOfLastChunk : CHUNK_SIZE;
+			chunk = new String[numberOfNames];
+			readChunk(chunk, buffer, 0, numberOfNames);
 			this.cachedChunks[chunkNumber] = chunk;
 		}
 		return chunk[docNumber - (chunkNumber * CHUNK_SIZE)];
 	}
 
-	private void readChunk(String[] docNames, InputStream stream, int index, int size) throws IOException
+	static void readChunk(String[] docNames, ByteBuffer buffer, int index, int size) throws IOException
 	{
-		String current = readString(stream);
+		String current = readString(buffer);
 		docNames[index++] = current;
 		for (int i = 1; i < size; i++)
 		{
-			int start = read(stream) & 0xFF;
-			int end = read(stream) & 0xFF;
-			String next = readString(stream);
+			int start = buffer.get() & 0xFF;
+			int end = buffer.get() & 0xFF;
+			String next = readString(buffer);
 			if (start > 0)
 			{
 				if (end > 0)
@@ -924,184 +1220,46 @@ public class DiskIndex
 		}
 	}
 
-	private synchronized Map<String, Object> readCategoryTable(String categoryName, boolean readDocNumbers)
-			throws IOException
+	private CategoryReader getCategoryReader(String categoryName) throws IOException
 	{
 		// result will be null if categoryName is unknown
 		Integer offset = this.categoryOffsets.get(categoryName);
-		if (offset == null)
+		if (offset == null || this.buffer == null)
 		{
 			return null;
 		}
-
-		if (this.categoryTables == null)
-		{
-			this.categoryTables = new HashMap<String, Map<String, Object>>(3);
-		}
-		else
-		{
-			Map<String, Object> cachedTable = this.categoryTables.get(categoryName);
-			if (cachedTable != null)
-			{
-				if (readDocNumbers)
-				{ // must cache remaining document number arrays
-					Map<String, Object> copy = new HashMap<String, Object>(cachedTable);
-					for (Map.Entry<String, Object> entry : cachedTable.entrySet())
-					{
-						Object arrayOffset = entry.getValue();
-						if (arrayOffset instanceof Integer)
-							copy.put(entry.getKey(), readDocumentNumbers(arrayOffset));
-					}
-					cachedTable = copy;
-				}
-				return cachedTable;
-			}
-		}
-
-		InputStream stream = new BufferedInputStream(new FileInputStream(this.indexFile));
-		Map<String, Object> categoryTable = null;
-		String[] matchingWords = null;
-		int count = 0;
-		int firstOffset = -1;
-		try
-		{
-			stream.skip(offset);
-			int size = readStreamInt(stream);
-			try
-			{
-				if (size < 0)
-				{ // DEBUG
-					System.err.println("-------------------- DEBUG --------------------"); //$NON-NLS-1$
-					System.err.println("file = " + this.indexFile); //$NON-NLS-1$
-					System.err.println("offset = " + offset); //$NON-NLS-1$
-					System.err.println("size = " + size); //$NON-NLS-1$
-					System.err.println("--------------------   END   --------------------"); //$NON-NLS-1$
-				}
-				categoryTable = new HashMap<String, Object>(size);
-			}
-			catch (OutOfMemoryError oom)
-			{
-				// DEBUG
-				oom.printStackTrace();
-				System.err.println("-------------------- DEBUG --------------------"); //$NON-NLS-1$
-				System.err.println("file = " + this.indexFile); //$NON-NLS-1$
-				System.err.println("offset = " + offset); //$NON-NLS-1$
-				System.err.println("size = " + size); //$NON-NLS-1$
-				System.err.println("--------------------   END   --------------------"); //$NON-NLS-1$
-				throw oom;
-			}
-			int largeArraySize = 256;
-			for (int i = 0; i < size; i++)
-			{
-				String word = readString(stream);
-				int arrayOffset = readStreamInt(stream);
-				// if arrayOffset is:
-				// <= 0 then the array size == 1 with the value -> -arrayOffset
-				// > 1 & < 256 then the size of the array is > 1 & < 256, the document array follows immediately
-				// 256 if the array size >= 256 followed by another int which is the offset to the array (written prior
-				// to the table)
-				if (arrayOffset <= 0)
-				{
-					List<Integer> positions = new ArrayList<Integer>();
-					positions.add(-arrayOffset);
-					categoryTable.put(word, positions); // store 1 element array by negating
-					// documentNumber
-				}
-				else if (arrayOffset < largeArraySize)
-				{
-					categoryTable.put(word, readStreamDocumentArray(stream, arrayOffset)); // read in-lined array
-					// providing size
-				}
-				else
-				{
-					arrayOffset = readStreamInt(stream); // read actual offset
-					if (readDocNumbers)
-					{
-						if (matchingWords == null)
-							matchingWords = new String[size];
-						if (count == 0)
-							firstOffset = arrayOffset;
-						matchingWords[count++] = word;
-					}
-					categoryTable.put(word, new Integer(arrayOffset)); // offset to array in the file
-				}
-			}
-			this.categoryTables.put(categoryName, categoryTable);
-			// cache the table as long as its not too big
-			// in practice, some tables can be greater than 500K when they contain more than 10K elements
-			this.cachedCategoryName = categoryTable.size() < 20000 ? categoryName : null;
-		}
-		catch (IOException ioe)
-		{
-			throw ioe;
-		}
-		finally
-		{
-			stream.close();
-		}
-
-		if (matchingWords != null && count > 0)
-		{
-			stream = new FileInputStream(this.indexFile);
-			try
-			{
-				stream.skip(firstOffset);
-				for (int i = 0; i < count; i++)
-				{ // each array follows the previous one
-					categoryTable.put(matchingWords[i], readStreamDocumentArray(stream, readStreamInt(stream)));
-				}
-			}
-			catch (IOException ioe)
-			{
-				throw ioe;
-			}
-			finally
-			{
-				stream.close();
-			}
-		}
-		return categoryTable;
+		Integer trigramOffset = this.trigramOffsets == null ? null : this.trigramOffsets.get(categoryName);
+		return new CategoryReader(this.buffer.duplicate(), offset.intValue(), trigramOffset == null ? -1
+				: trigramOffset.intValue(), this.documentReferenceSize);
 	}
 
-	synchronized List<Integer> readDocumentNumbers(Object arrayOffset) throws IOException
+	@SuppressWarnings("unchecked")
+	List<Integer> readDocumentNumbers(Object documentNumbers) throws IOException
 	{
-		// arrayOffset is either a cached array of docNumbers or an Integer offset in the file
-		if (arrayOffset instanceof List<?>)
-			return (List<Integer>) arrayOffset;
-
-		FileInputStream stream = new FileInputStream(this.indexFile);
-		try
-		{
-			int offset = ((Integer) arrayOffset).intValue();
-			stream.skip(offset);
-			return readStreamDocumentArray(stream, readStreamInt(stream));
-		}
-		finally
-		{
-			stream.close();
-		}
+		// category tables handed out by this index always hold decoded document numbers
+		return (List<Integer>) documentNumbers;
 	}
 
-	private List<Integer> readStreamDocumentArray(InputStream stream, int arraySize) throws IOException
+	static List<Integer> readDocumentArray(ByteBuffer buffer, int arraySize, int documentReferenceSize)
 	{
 		if (arraySize == 0)
 			return Collections.emptyList();
 
-		List<Integer> indexes = new ArrayList<Integer>();
+		List<Integer> indexes = new ArrayList<Integer>(arraySize);
 		for (int i = 0; i < arraySize; i++)
 		{
 			int value = 0;
-			switch (this.documentReferenceSize)
+			switch (documentReferenceSize)
 			{
 				case 1:
-					value = read(stream) & 0xFF;
+					value = buffer.get() & 0xFF;
 					break;
 				case 2:
-					value = (read(stream) & 0xFF) << 8;
-					value = value + (read(stream) & 0xFF);
+					value = (buffer.get() & 0xFF) << 8;
+					value = value + (buffer.get() & 0xFF);
 					break;
 				default:
-					value = readStreamInt(stream);
+					value = buffer.getInt();
 					break;
 			}
 			indexes.add(value);
@@ -1222,15 +1380,255 @@ public class DiskIndex
 		// fairly easily by setting it's mapping to null in memory index and merging, but the way the thing is set up we
 		// don't really have an easy way of wiping a category out from memory and disk right now.
 
-		// int offset = this.categoryOffsets.get(categoryName);
-		// // "Wipe out" from the category offset to next category offset. However we need to handle the "long arrays"
-		// written just before offsets!
-		// RandomAccessFile file = new RandomAccessFile(this.indexFile, "rw");
-		// file.seek(offset);
-
 		this.categoriesToDiscard = categoryNames;
 		DiskIndex newIndex = mergeWith(memoryIndex);
 		newIndex.categoriesToDiscard = null;
 		return newIndex;
 	}
+
+	/**
+	 * Growable list of word positions for one trigram
+	 */
+	private static final class Postings
+	{
+		int[] positions = new int[4];
+		int size;
+
+		void add(int position)
+		{
+			// a word containing the same trigram twice is only listed once
+			if (size > 0 && positions[size - 1] == position)
+				return;
+			if (size == positions.length)
+			{
+				int[] grown = new int[size * 2];
+				System.arraycopy(positions, 0, grown, 0, size);
+				positions = grown;
+			}
+			positions[size++] = position;
+		}
+	}
+
+	/**
+	 * Walks the sorted words of one category table in place. Words are decoded one at a time from the mapped file and
+	 * their document numbers are only decoded when asked for.
+	 */
+	private static final class CategoryReader
+	{
+		private final ByteBuffer buffer;
+		private final int documentReferenceSize;
+		private final int wordCount;
+		private final int blockCount;
+		private final int directoryOffset;
+		private final int trigramOffset;
+		private int index;
+		private String word;
+		private int documentsOffset;
+
+		CategoryReader(ByteBuffer buffer, int offset, int trigramOffset, int documentReferenceSize)
+		{
+			this.buffer = buffer;
+			this.trigramOffset = trigramOffset;
+			this.documentReferenceSize = documentReferenceSize;
+			this.wordCount = buffer.getInt(offset);
+			this.blockCount = buffer.getInt(offset + 4);
+			this.directoryOffset = offset + 8;
+			this.index = 0;
+		}
+
+		int size()
+		{
+			return this.wordCount;
+		}
+
+		/**
+		 * Positions the reader at the start of the last block whose first word is not greater than key, so that the
+		 * following calls to next() return every word that is greater than or equal to key
+		 *
+		 * @param key
+		 * @throws IOException
+		 */
+		void seek(String key) throws IOException
+		{
+			int low = 0;
+			int high = this.blockCount - 1;
+			int block = 0;
+			while (low <= high)
+			{
+				int middle = (low + high) >>> 1;
+				this.buffer.position(getBlockOffset(middle));
+				if (readString(this.buffer).compareTo(key) <= 0)
+				{
+					block = middle;
+					low = middle + 1;
+				}
+				else
+				{
+					high = middle - 1;
+				}
+			}
+			this.index = block * BLOCK_SIZE;
+		}
+
+		/**
+		 * Positions the reader on the word at the given position in the sorted word list. Moving forward within the
+		 * current block continues decoding from the current word.
+		 *
+		 * @param position
+		 * @throws IOException
+		 */
+		void moveTo(int position) throws IOException
+		{
+			if (this.index == 0 || position < this.index || position / BLOCK_SIZE != (this.index - 1) / BLOCK_SIZE)
+				this.index = position - (position % BLOCK_SIZE);
+			while (this.index <= position)
+				next();
+		}
+
+		/**
+		 * Returns the ascending positions of the words containing every trigram of the literal parts of a wildcard
+		 * pattern, or null if the category has no trigram table or no literal part is long enough to have one
+		 *
+		 * @param pattern
+		 * @return int[]
+		 */
+		int[] getCandidates(String pattern)
+		{
+			if (this.trigramOffset < 0)
+				return null;
+
+			int[] candidates = null;
+			int start = 0;
+			for (int i = 0; i <= pattern.length(); i++)
+			{
+				if (i < pattern.length() && pattern.charAt(i) != '*' && pattern.charAt(i) != '?')
+					continue;
+				for (int j = start; j + 3 <= i; j++)
+				{
+					int[] positions = readPostings(getTrigram(pattern, j));
+					candidates = candidates == null ? positions : intersect(candidates, positions);
+					if (candidates.length == 0)
+						return candidates;
+				}
+				start = i + 1;
+			}
+			return candidates;
+		}
+
+		private int[] readPostings(long trigram)
+		{
+			int low = 0;
+			int high = this.buffer.getInt(this.trigramOffset) - 1;
+			while (low <= high)
+			{
+				int middle = (low + high) >>> 1;
+				int entry = this.trigramOffset + 4 + middle * TRIGRAM_ENTRY_SIZE;
+				long current = 0;
+				for (int i = 0; i < 6; i++)
+					current = (current << 8) | (this.buffer.get(entry + i) & 0xFF);
+				if (current < trigram)
+				{
+					low = middle + 1;
+				}
+				else if (current > trigram)
+				{
+					high = middle - 1;
+				}
+				else
+				{
+					int[] positions = new int[this.buffer.getInt(entry + 10)];
+					this.buffer.position(this.buffer.getInt(entry + 6));
+					int previous = 0;
+					for (int i = 0; i < positions.length; i++)
+					{
+						int delta = 0;
+						int shift = 0;
+						byte b;
+						do
+						{
+							b = this.buffer.get();
+							delta |= (b & 0x7F) << shift;
+							shift += 7;
+						}
+						while ((b & 0x80) != 0);
+						positions[i] = previous += delta;
+					}
+					return positions;
+				}
+			}
+			return new int[0];
+		}
+
+		private static int[] intersect(int[] left, int[] right)
+		{
+			int[] result = new int[Math.min(left.length, right.length)];
+			int count = 0;
+			for (int i = 0, j = 0; i < left.length && j < right.length;)
+			{
+				if (left[i] < right[j])
+					i++;
+				else if (left[i] > right[j])
+					j++;
+				else
+				{
+					result[count++] = left[i];
+					i++;
+					j++;
+				}
+			}
+			int[] trimmed = new int[count];
+			System.arraycopy(result, 0, trimmed, 0, count);
+			return trimmed;
+		}
+
+		boolean next() throws IOException
+		{
+			if (this.index >= this.wordCount)
+				return false;
+
+			if (this.index % BLOCK_SIZE == 0)
+			{
+				this.buffer.position(getBlockOffset(this.index / BLOCK_SIZE));
+				this.word = readString(this.buffer);
+			}
+			else
+			{
+				this.buffer.position(skipDocumentNumbers(this.documentsOffset));
+				int shared = this.buffer.get() & 0xFF;
+				this.word = this.word.substring(0, shared) + readString(this.buffer);
+			}
+			this.documentsOffset = this.buffer.position();
+			this.index++;
+			return true;
+		}
+
+		String getWord()
+		{
+			return this.word;
+		}
+
+		List<Integer> getDocumentNumbers()
+		{
+			this.buffer.position(this.documentsOffset);
+			int arrayOffset = this.buffer.getInt();
+			if (arrayOffset <= 0)
+			{
+				List<Integer> positions = new ArrayList<Integer>(1);
+				positions.add(-arrayOffset);
+				return positions;
+			}
+			return readDocumentArray(this.buffer, arrayOffset, this.documentReferenceSize);
+		}
+
+		private int getBlockOffset(int block)
+		{
+			return this.buffer.getInt(this.directoryOffset + (block << 2));
+		}
+
+		private int skipDocumentNumbers(int offset)
+		{
+			int arrayOffset = this.buffer.getInt(offset);
+			return arrayOffset <= 0 ? offset + 4 : offset + 4 + arrayOffset * this.documentReferenceSize;
+		}
+	}
 }
@@ -0,0 +1,134 @@
+package com.aptana.ide.internal.index.core;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+import com.aptana.ide.core.IdeLog;
+import com.aptana.ide.index.core.Activator;
+import com.aptana.ide.index.core.Index;
+
+/**
+ * Applies queued index updates in the background. Document removals are coalesced per index and applied as one batch,
+ * and indexes that have collected enough changes are then merged to disk. Queries keep running against the current
+ * disk index while a merge is written.
+ */
+public class IndexingJob extends Job
+{
+
+	private Map<Index, Set<String>> removals;
+	private Set<Index> saves;
+
+	public IndexingJob()
+	{
+		super("Updating indexes"); //$NON-NLS-1$
+		this.removals = new LinkedHashMap<Index, Set<String>>();
+		this.saves = new LinkedHashSet<Index>();
+		setSystem(true);
+		setPriority(Job.DECORATE);
+	}
+
+	/**
+	 * Queue the removal of documents from an index
+	 *
+	 * @param index
+	 * @param documentPaths
+	 */
+	public void queueRemovals(Index index, Collection<String> documentPaths)
+	{
+		synchronized (this)
+		{
+			Set<String> paths = this.removals.get(index);
+			if (paths == null)
+			{
+				paths = new LinkedHashSet<String>();
+				this.removals.put(index, paths);
+			}
+			paths.addAll(documentPaths);
+		}
+		schedule();
+	}
+
+	/**
+	 * Queue a merge of the pending changes of an index to disk
+	 *
+	 * @param index
+	 */
+	public void queueSave(Index index)
+	{
+		boolean added;
+		synchronized (this)
+		{
+			added = this.saves.add(index);
+		}
+		if (added)
+			schedule();
+	}
+
+	/**
+	 * Returns the number of queued document removals and merges
+	 *
+	 * @return int
+	 */
+	public synchronized int getQueueDepth()
+	{
+		int depth = this.saves.size();
+		for (Set<String> paths : this.removals.values())
+			depth += paths.size();
+		return depth;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.core.runtime.jobs.Job#run(org.eclipse.core.runtime.IProgressMonitor)
+	 */
+	@Override
+	protected IStatus run(IProgressMonitor monitor)
+	{
+		while (!monitor.isCanceled())
+		{
+			Map<Index, Set<String>> removals;
+			Set<Index> saves;
+			synchronized (this)
+			{
+				if (this.removals.isEmpty() && this.saves.isEmpty())
+					return Status.OK_STATUS;
+
+				// take everything queued so far as one batch, anything queued from here on goes into the next one
+				removals = this.removals;
+				saves = this.saves;
+				this.removals = new LinkedHashMap<Index, Set<String>>();
+				this.saves = new LinkedHashSet<Index>();
+			}
+
+			for (Map.Entry<Index, Set<String>> entry : removals.entrySet())
+			{
+				Index index = entry.getKey();
+				index.remove(entry.getValue());
+				if (index.shouldSave())
+					saves.add(index);
+			}
+			for (Index index : saves)
+			{
+				try
+				{
+					index.save();
+				}
+				catch (IOException e)
+				{
+					IdeLog.logError(Activator.getDefault(), e.getMessage(), e);
+				}
+			}
+		}
+		return Status.CANCEL_STATUS;
+	}
+
+}
@@ -0,0 +1,159 @@
+package com.aptana.ide.internal.index.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.aptana.ide.index.core.Index;
+
+/**
+ * Reads index files written in the streamed "INDEX VERSION 0.1" format so that DiskIndex can rewrite them in its
+ * current format. The whole file is read at once since every table is needed for the migration.
+ *
+ * @author agent (agent@local)
+ */
+class LegacyDiskIndex
+{
+
+	static final String SIGNATURE = "INDEX VERSION 0.1";
+	private static final int CHUNK_SIZE = 100;
+	private static final int LARGE_ARRAY_SIZE = 256;
+
+	private File indexFile;
+	private ByteBuffer buffer;
+	private int numberOfChunks;
+	private int sizeOfLastChunk;
+	private int documentReferenceSize;
+	private char separator = Index.DEFAULT_SEPARATOR;
+	private int[] chunkOffsets;
+	private Map<String, Integer> categoryOffsets;
+
+	LegacyDiskIndex(File indexFile)
+	{
+		this.indexFile = indexFile;
+		this.numberOfChunks = -1;
+		this.categoryOffsets = Collections.emptyMap();
+	}
+
+	void initialize() throws IOException
+	{
+		RandomAccessFile file = new RandomAccessFile(this.indexFile, "r"); //$NON-NLS-1$
+		try
+		{
+			byte[] bytes = new byte[(int) file.length()];
+			file.readFully(bytes);
+			this.buffer = ByteBuffer.wrap(bytes);
+		}
+		finally
+		{
+			file.close();
+		}
+
+		String signature = DiskIndex.readString(this.buffer);
+		if (!signature.equals(SIGNATURE))
+		{
+			throw new IOException("Messages.exception_wrongFormat");
+		}
+		// empty indexes were written with a single byte in place of the header offset
+		int headerInfoOffset = this.buffer.remaining() >= 4 ? this.buffer.getInt() : -1;
+		if (headerInfoOffset > 0)
+		{ // file is empty if its not set
+			this.buffer.position(headerInfoOffset);
+			readHeaderInfo();
+		}
+	}
+
+	private void readHeaderInfo() throws IOException
+	{
+		// must be same order as the 0.1 writeHeaderInfo()
+		this.numberOfChunks = this.buffer.getInt();
+		this.sizeOfLastChunk = this.buffer.get() & 0xFF;
+		this.documentReferenceSize = this.buffer.get() & 0xFF;
+		this.separator = (char) (this.buffer.get() & 0xFF);
+
+		this.chunkOffsets = new int[this.numberOfChunks];
+		for (int i = 0; i < this.numberOfChunks; i++)
+			this.chunkOffsets[i] = this.buffer.getInt();
+
+		this.buffer.getInt(); // start of category tables
+
+		int size = this.buffer.getInt();
+		this.categoryOffsets = new HashMap<String, Integer>(size);
+		for (int i = 0; i < size; i++)
+		{
+			String categoryName = DiskIndex.readString(this.buffer);
+			this.categoryOffsets.put(categoryName, this.buffer.getInt());
+		}
+	}
+
+	char getSeparator()
+	{
+		return this.separator;
+	}
+
+	Set<String> getCategoryNames()
+	{
+		return this.categoryOffsets.keySet();
+	}
+
+	List<String> readAllDocumentNames() throws IOException
+	{
+		if (this.numberOfChunks <= 0)
+			return Collections.emptyList();
+
+		this.buffer.position(this.chunkOffsets[0]);
+		int lastIndex = this.numberOfChunks - 1;
+		String[] docNames = new String[lastIndex * CHUNK_SIZE + sizeOfLastChunk];
+		for (int i = 0; i < this.numberOfChunks; i++)
+			DiskIndex.readChunk(docNames, this.buffer, i * CHUNK_SIZE, i < lastIndex ? CHUNK_SIZE : sizeOfLastChunk);
+		return Arrays.asList(docNames);
+	}
+
+	Map<String, List<Integer>> readCategoryTable(String categoryName) throws IOException
+	{
+		Integer offset = this.categoryOffsets.get(categoryName);
+		if (offset == null)
+			return Collections.emptyMap();
+
+		this.buffer.position(offset.intValue());
+		int size = this.buffer.getInt();
+		Map<String, List<Integer>> categoryTable = new HashMap<String, List<Integer>>(size);
+		for (int i = 0; i < size; i++)
+		{
+			String word = DiskIndex.readString(this.buffer);
+			int arrayOffset = this.buffer.getInt();
+			// if arrayOffset is:
+			// <= 0 then the array size == 1 with the value -> -arrayOffset
+			// > 1 & < 256 then the size of the array is > 1 & < 256, the document array follows immediately
+			// 256 if the array size >= 256 followed by another int which is the offset to the array (written prior
+			// to the table)
+			if (arrayOffset <= 0)
+			{
+				List<Integer> positions = new ArrayList<Integer>(1);
+				positions.add(-arrayOffset);
+				categoryTable.put(word, positions);
+			}
+			else if (arrayOffset < LARGE_ARRAY_SIZE)
+			{
+				categoryTable.put(word, DiskIndex.readDocumentArray(this.buffer, arrayOffset,
+						this.documentReferenceSize));
+			}
+			else
+			{
+				int position = this.buffer.getInt(); // read actual offset
+				ByteBuffer array = this.buffer.duplicate();
+				array.position(position);
+				categoryTable.put(word, DiskIndex.readDocumentArray(array, array.getInt(), this.documentReferenceSize));
+			}
+		}
+		return categoryTable;
+	}
+}
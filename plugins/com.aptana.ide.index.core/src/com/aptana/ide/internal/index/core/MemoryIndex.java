@@ -21,6 +21,19 @@ public class MemoryIndex
 		documentsToTable = new HashMap<String, Map<String, Set<String>>>();
 	}
 
+	/**
+	 * Combines two memory indexes. Documents held by the newer index replace the same documents in the older one. The
+	 * word tables are shared, not copied, so neither index should be changed while the combination is in use.
+	 * 
+	 * @param older
+	 * @param newer
+	 */
+	public MemoryIndex(MemoryIndex older, MemoryIndex newer)
+	{
+		documentsToTable = new HashMap<String, Map<String, Set<String>>>(older.documentsToTable);
+		documentsToTable.putAll(newer.documentsToTable);
+	}
+
 	public void addEntry(String category, String key, String filePath)
 	{
 		Map<String, Set<String>> categoriesToWords = documentsToTable.get(filePath);
@@ -60,18 +73,38 @@ public class MemoryIndex
 
 	public Map<String, QueryResult> addQueryResults(String[] categories, String key, int matchRules,
 			Map<String, QueryResult> results)
+	{
+		return addQueryResults(categories, key, matchRules, results, null);
+	}
+
+	/**
+	 * Searches this index, skipping the documents that a newer index holds changes for
+	 * 
+	 * @param categories
+	 * @param key
+	 * @param matchRules
+	 * @param results
+	 * @param newerIndex
+	 *            changes made after the ones in this index, or null
+	 * @return the results
+	 */
+	public Map<String, QueryResult> addQueryResults(String[] categories, String key, int matchRules,
+			Map<String, QueryResult> results, MemoryIndex newerIndex)
 	{
 		if (results == null)
 			results = new HashMap<String, QueryResult>();
 
+		Map<String, Map<String, Set<String>>> newerDocs = newerIndex == null ? null : newerIndex.documentsToTable;
 		for (Map.Entry<String, Map<String, Set<String>>> entry : documentsToTable.entrySet())
 		{
 			Map<String, Set<String>> categoriesToWords = entry.getValue();
-			if (categoriesToWords == null)
+			if (categoriesToWords == null || (newerDocs != null && newerDocs.containsKey(entry.getKey())))
 				continue;
 			for (String category : categories)
 			{
 				Set<String> words = categoriesToWords.get(category);
+				if (words == null)
+					continue;
 				// When we're looking for exact matches, case sensitive, just ask wordset if it contains key!
 				if (matchRules == (SearchPattern.EXACT_MATCH | SearchPattern.CASE_SENSITIVE))
 				{
@@ -95,7 +128,7 @@ public class MemoryIndex
 							if (result == null)
 								result = new QueryResult(word);
 							result.addDocumentName(entry.getKey());
-							results.put(key, result);
+							results.put(word, result);
 						}
 					}
 				}
@@ -24,11 +24,31 @@ public class ReadWriteMonitor
 	private int status = 0;
 
 	/**
-	 * Concurrent reading is allowed Blocking only when already writing.
+	 * Number of writers waiting for the readers to leave. New readers wait behind them so that a steady stream of
+	 * queries cannot starve a writer.
+	 */
+	private int waitingWriters = 0;
+
+	/**
+	 * Number of read locks held by the current thread. A thread that already reads gets in again even when a writer
+	 * waits, since the writer waits for that thread to leave.
+	 */
+	private final ThreadLocal<int[]> readHolds = new ThreadLocal<int[]>()
+	{
+		protected int[] initialValue()
+		{
+			return new int[1];
+		}
+	};
+
+	/**
+	 * Concurrent reading is allowed Blocking only when already writing or when a writer is waiting. Read locks may be
+	 * nested.
 	 */
 	public synchronized void enterRead()
 	{
-		while (status < 0)
+		int[] holds = readHolds.get();
+		while (status < 0 || (waitingWriters > 0 && holds[0] == 0))
 		{
 			try
 			{
@@ -40,6 +60,7 @@ public class ReadWriteMonitor
 			}
 		}
 		status++;
+		holds[0]++;
 	}
 
 	/**
@@ -47,17 +68,25 @@ public class ReadWriteMonitor
 	 */
 	public synchronized void enterWrite()
 	{
-		while (status != 0)
+		waitingWriters++;
+		try
 		{
-			try
+			while (status != 0)
 			{
-				wait();
-			}
-			catch (InterruptedException e)
-			{
-				// ignore
+				try
+				{
+					wait();
+				}
+				catch (InterruptedException e)
+				{
+					// ignore
+				}
 			}
 		}
+		finally
+		{
+			waitingWriters--;
+		}
 		status--;
 	}
 
@@ -66,7 +95,7 @@ public class ReadWriteMonitor
 	 */
 	public synchronized void exitRead()
 	{
-
+		readHolds.get()[0]--;
 		if (--status == 0)
 			notifyAll();
 	}
@@ -91,6 +120,7 @@ public class ReadWriteMonitor
 		if (status != 1)
 			return false; // only continue if this is the only reader
 
+		readHolds.get()[0]--;
 		status = -1;
 		return true;
 	}
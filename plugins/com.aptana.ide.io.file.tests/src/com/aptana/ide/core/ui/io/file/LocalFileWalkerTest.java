@@ -0,0 +1,290 @@
+package com.aptana.ide.core.ui.io.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.aptana.ide.core.io.IVirtualFile;
+import com.aptana.ide.core.io.IVirtualFileVisitor;
+
+/**
+ * Walks trees of temporary directories, checking that the prefetched listings are visited in depth first order and
+ * that a visitor can stop the walk anywhere
+ *
+ * @author agent (agent@local)
+ */
+public class LocalFileWalkerTest extends TestCase
+{
+
+	private static final String ENTER = "enter "; //$NON-NLS-1$
+	private static final String VISIT = "visit "; //$NON-NLS-1$
+
+	private File root;
+	private LocalFileManager manager;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		root = File.createTempFile("walker", ""); //$NON-NLS-1$ //$NON-NLS-2$
+		root.delete();
+		assertTrue(root.mkdir());
+		manager = (LocalFileManager) LocalProtocolManager.getInstance().createFileManager(true);
+		manager.removeAllCloakExpressions();
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		delete(root);
+		super.tearDown();
+	}
+
+	public void testDepthFirstOrder() throws Exception
+	{
+		createFiles(root, "a.txt", "b/b1.txt", "b/c/c1.txt", "b/c/c2.txt", "b/d/", "b/b2.txt", "e.txt", "f/f1.txt"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$ //$NON-NLS-8$
+
+		List<String> events = walk(true, false, Integer.MAX_VALUE);
+		assertEquals(expected(root, false), events);
+		assertEquals(5, count(events, ENTER));
+		assertEquals(11, count(events, VISIT));
+	}
+
+	public void testWideTree() throws Exception
+	{
+		// more directories than are listed ahead of the walk, so that the walking thread lists some itself
+		for (int i = 0; i < 150; i++)
+		{
+			createFiles(new File(root, "dir" + i), "x.txt", "y.txt", "sub/z.txt"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+		}
+
+		List<String> expected = expected(root, false);
+		assertEquals(1 + 150 * 2, count(expected, ENTER));
+		for (int i = 0; i < 3; i++)
+		{
+			assertEquals(expected, walk(true, false, Integer.MAX_VALUE));
+		}
+	}
+
+	public void testNotRecursive() throws Exception
+	{
+		createFiles(root, "a.txt", "b/b1.txt", "c/"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+		List<String> events = walk(false, false, Integer.MAX_VALUE);
+		assertEquals(1, count(events, ENTER));
+		assertEquals(3, count(events, VISIT));
+		assertFalse(events.contains(VISIT + new File(root, "b/b1.txt").getAbsolutePath())); //$NON-NLS-1$
+	}
+
+	public void testCloakedFiles() throws Exception
+	{
+		createFiles(root, "a.txt", "a.bak", "b.bak/b1.txt", "c/c1.bak", "c/c2.txt"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+		manager.addCloakExpression(".*\\.bak"); //$NON-NLS-1$
+
+		List<String> events = walk(true, false, Integer.MAX_VALUE);
+		assertEquals(expected(root, false), events);
+		// a cloaked directory is neither visited nor entered
+		assertEquals(2, count(events, ENTER));
+		assertEquals(3, count(events, VISIT));
+		assertFalse(events.contains(ENTER + new File(root, "b.bak").getAbsolutePath())); //$NON-NLS-1$
+
+		events = walk(true, true, Integer.MAX_VALUE);
+		assertEquals(expected(root, true), events);
+		assertEquals(3, count(events, ENTER));
+		assertEquals(7, count(events, VISIT));
+	}
+
+	public void testCompressedFiles() throws Exception
+	{
+		createFiles(root, "a.zip", "b.jar", "c.gz", "d.txt"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+
+		for (IVirtualFile file : files(true))
+		{
+			assertEquals(file.getName(), !file.getName().equals("d.txt"), file instanceof CompressedFile); //$NON-NLS-1$
+		}
+		for (IVirtualFile file : files(false))
+		{
+			assertFalse(file.getName(), file instanceof CompressedFile);
+		}
+	}
+
+	public void testStopAnywhere() throws Exception
+	{
+		createFiles(root, "a.txt", "b/b1.txt", "b/c/c1.txt", "b/c/c2.txt", "b/d/", "b/b2.txt", "e.txt", "f/f1.txt"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$ //$NON-NLS-8$
+		List<String> all = expected(root, false);
+		int files = count(all, VISIT);
+
+		for (int stop = 1; stop <= files; stop++)
+		{
+			List<String> events = walk(true, false, stop);
+
+			// the walk ends at the file the visitor stopped at, with nothing entered or visited after it
+			assertEquals(VISIT + "stopped", events.get(events.size() - 1)); //$NON-NLS-1$
+			events.remove(events.size() - 1);
+			assertEquals(stop, count(events, VISIT));
+			assertEquals(all.subList(0, events.size()), events);
+			assertTrue(events.get(events.size() - 1).startsWith(VISIT));
+		}
+	}
+
+	public void testStopInWideTree() throws Exception
+	{
+		for (int i = 0; i < 150; i++)
+		{
+			createFiles(new File(root, "dir" + i), "x.txt", "sub/z.txt"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		}
+		List<String> all = expected(root, false);
+
+		// the listings that were started ahead of the walk are dropped each time
+		for (int stop = 1; stop < 400; stop += 37)
+		{
+			List<String> events = walk(true, false, stop);
+			events.remove(events.size() - 1);
+			assertEquals(all.subList(0, events.size()), events);
+		}
+		assertEquals(all, walk(true, false, Integer.MAX_VALUE));
+	}
+
+	/**
+	 * Walks the root, recording which directories are entered and which files are visited, and stops at the given
+	 * number of files
+	 */
+	private List<String> walk(boolean recurse, boolean includeCloakedFiles, final int stop)
+	{
+		final List<String> events = new ArrayList<String>();
+		LocalFileWalker walker = new LocalFileWalker(manager, recurse, includeCloakedFiles, false)
+		{
+			protected void directoryEntered(File directory)
+			{
+				events.add(ENTER + directory.getAbsolutePath());
+			}
+		};
+		boolean completed = walker.walk(root, new IVirtualFileVisitor()
+		{
+			private int _count;
+
+			public boolean visit(IVirtualFile file)
+			{
+				events.add(VISIT + file.getAbsolutePath());
+				return ++_count < stop;
+			}
+		});
+
+		assertEquals(stop == Integer.MAX_VALUE, completed);
+		if (!completed)
+		{
+			events.add(VISIT + "stopped"); //$NON-NLS-1$
+		}
+		return events;
+	}
+
+	private List<IVirtualFile> files(boolean showCompressed)
+	{
+		final List<IVirtualFile> files = new ArrayList<IVirtualFile>();
+		new LocalFileWalker(manager, false, false, showCompressed)
+		{
+			protected void directoryEntered(File directory)
+			{
+			}
+		}.walk(root, new IVirtualFileVisitor()
+		{
+			public boolean visit(IVirtualFile file)
+			{
+				files.add(file);
+				return true;
+			}
+		});
+		return files;
+	}
+
+	/**
+	 * Builds the events of a walk from the listing of each directory on its own, which the walker takes the order of
+	 * the files from
+	 */
+	private List<String> expected(File directory, final boolean includeCloakedFiles)
+	{
+		final List<String> events = new ArrayList<String>();
+		final List<File> directories = new ArrayList<File>();
+
+		new LocalFileWalker(manager, false, includeCloakedFiles, false)
+		{
+			protected void directoryEntered(File entered)
+			{
+				events.add(ENTER + entered.getAbsolutePath());
+			}
+		}.walk(directory, new IVirtualFileVisitor()
+		{
+			public boolean visit(IVirtualFile file)
+			{
+				File path = ((LocalFile) file).getFile();
+				events.add(VISIT + path.getAbsolutePath());
+				directories.add(path.isDirectory() ? path : null);
+				return true;
+			}
+		});
+
+		List<String> result = new ArrayList<String>();
+		result.add(events.get(0));
+		for (int i = 0; i < directories.size(); i++)
+		{
+			result.add(events.get(i + 1));
+			if (directories.get(i) != null)
+			{
+				result.addAll(expected(directories.get(i), includeCloakedFiles));
+			}
+		}
+		return result;
+	}
+
+	private static int count(List<String> events, String prefix)
+	{
+		int count = 0;
+
+		for (String event : events)
+		{
+			if (event.startsWith(prefix))
+			{
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Creates files below a directory; paths ending in a slash are created as empty directories
+	 */
+	private static void createFiles(File directory, String... paths) throws IOException
+	{
+		for (String path : paths)
+		{
+			File file = new File(directory, path);
+
+			if (path.endsWith("/")) //$NON-NLS-1$
+			{
+				assertTrue(file.mkdirs());
+			}
+			else
+			{
+				file.getParentFile().mkdirs();
+				assertTrue(file.createNewFile());
+			}
+		}
+	}
+
+	private static void delete(File file)
+	{
+		File[] children = file.listFiles();
+
+		if (children != null)
+		{
+			for (File child : children)
+			{
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
@@ -58,6 +58,7 @@ import com.aptana.ide.core.io.FileTransferListener;
 import com.aptana.ide.core.io.IFileProgressMonitor;
 import com.aptana.ide.core.io.IVirtualFile;
 import com.aptana.ide.core.io.IVirtualFileManager;
+import com.aptana.ide.core.io.IVirtualFileVisitor;
 import com.aptana.ide.core.io.ProtocolManager;
 import com.aptana.ide.core.io.VirtualFileManagerException;
 import com.aptana.ide.core.io.VirtualManagerBase;
@@ -178,101 +179,56 @@ public class LocalFileManager extends VirtualManagerBase
 		IVirtualFile[] result = null;
 		if (file instanceof LocalFile)
 		{
-			ArrayList<IVirtualFile> list = new ArrayList<IVirtualFile>();
-			File f = ((LocalFile) file).getFile();
-			this.getFiles(f, recurse, list, includeCloakedFiles);
-			result = list.toArray(new IVirtualFile[0]);
+			final ArrayList<IVirtualFile> list = new ArrayList<IVirtualFile>();
+			this.visitFiles(file, recurse, includeCloakedFiles, new IVirtualFileVisitor()
+			{
+				public boolean visit(IVirtualFile child)
+				{
+					list.add(child);
+					return true;
+				}
+			});
+			result = list.toArray(new IVirtualFile[list.size()]);
 		}
 		return result;
 	}
 
 	/**
-	 * @see com.aptana.ide.core.io.IVirtualFileManager#getFileTimeString(com.aptana.ide.core.io.IVirtualFile)
-	 */
-	public String getFileTimeString(IVirtualFile file)
-	{
-		return Long.toString(file.getModificationMillis());
-	}
-
-	/**
-	 * getFiles
+	 * Hands the files of a directory to a visitor as they are listed, in the order getFiles returns them. When
+	 * recursing, subdirectories are listed ahead of the visitor on worker threads.
 	 * 
 	 * @param file
 	 * @param recurse
-	 * @param list
+	 * @param includeCloakedFiles
+	 * @param visitor
+	 * @return false if the visitor stopped the listing
 	 */
-	private void getFiles(File file, boolean recurse, List<IVirtualFile> list, boolean includeCloakedFiles)
+	public boolean visitFiles(IVirtualFile file, boolean recurse, boolean includeCloakedFiles, IVirtualFileVisitor visitor)
 	{
-		if (file == null)
+		if (!(file instanceof LocalFile))
 		{
-			return;
+			return true;
 		}
 
-		// fire event
-		this.fireGetFilesEvent(file.getAbsolutePath());
-
-		File[] children = null;
-
-		if (CoreUIUtils.runningOnMac == false)
+		boolean showCompressed = CoreUIPlugin.getDefault().getPreferenceStore().getBoolean(
+				com.aptana.ide.core.ui.preferences.IPreferenceConstants.PREF_FILE_EXPLORER_SHOW_COMPRESSED);
+		LocalFileWalker walker = new LocalFileWalker(this, recurse, includeCloakedFiles, showCompressed)
 		{
-			if (file.getName().equals(LocalProtocolManager.FileSystemRoots))
-			{
-				children = FileSystemView.getFileSystemView().getRoots();
-			}
-			else
+			protected void directoryEntered(File directory)
 			{
-				children = FileSystemView.getFileSystemView().getFiles(file, false);
+				fireGetFilesEvent(directory.getAbsolutePath());
 			}
-		}
-		else
-		{
-			File[] kids;
+		};
 
-			if (file.getName().equals(LocalProtocolManager.FileSystemRoots))
-			{
-				kids = File.listRoots();
-			}
-			else
-			{
-				kids = file.listFiles();
-			}
-
-			children = (kids == null) ? new File[0] : kids;
-		}
-
-		if (children != null)
-		{
-			File child;
-			IVirtualFile localFile;
-			boolean addingFile;
-			for (int i = 0; i < children.length; i++)
-			{
-				child = children[i];
-				if (CoreUIPlugin.getDefault().getPreferenceStore().getBoolean(
-						com.aptana.ide.core.ui.preferences.IPreferenceConstants.PREF_FILE_EXPLORER_SHOW_COMPRESSED)
-						&& (child.getName().endsWith(".zip") || child.getName().endsWith(".jar") || child.getName() //$NON-NLS-1$ //$NON-NLS-2$
-								.endsWith(".gz"))) //$NON-NLS-1$
-				{
-					localFile = new CompressedFile(this, child);
-				}
-				else
-				{
-					localFile = new LocalFile(this, child);
-				}
-
-				addingFile = false;
-				if (includeCloakedFiles || !localFile.isCloaked())
-				{
-					list.add(localFile);
-					addingFile = true;
-				}
+		return walker.walk(((LocalFile) file).getFile(), visitor);
+	}
 
-				if (recurse && child.isDirectory() && addingFile)
-				{
-					getFiles(child, recurse, list, includeCloakedFiles);
-				}
-			}
-		}
+	/**
+	 * @see com.aptana.ide.core.io.IVirtualFileManager#getFileTimeString(com.aptana.ide.core.io.IVirtualFile)
+	 */
+	public String getFileTimeString(IVirtualFile file)
+	{
+		return Long.toString(file.getModificationMillis());
 	}
 
 	/**
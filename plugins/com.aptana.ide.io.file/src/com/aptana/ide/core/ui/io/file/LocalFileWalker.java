@@ -0,0 +1,316 @@
+/**
+ * This file Copyright (c) 2005-2008 Aptana, Inc. This program is
+ * dual-licensed under both the Aptana Public License and the GNU General
+ * Public license. You may elect to use one or the other of these licenses.
+ * 
+ * This program is distributed in the hope that it will be useful, but
+ * AS-IS and WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, TITLE, or
+ * NONINFRINGEMENT. Redistribution, except as permitted by whichever of
+ * the GPL or APL you select, is prohibited.
+ *
+ * 1. For the GPL license (GPL), you can redistribute and/or modify this
+ * program under the terms of the GNU General Public License,
+ * Version 3, as published by the Free Software Foundation.  You should
+ * have received a copy of the GNU General Public License, Version 3 along
+ * with this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * Aptana provides a special exception to allow redistribution of this file
+ * with certain other free and open source software ("FOSS") code and certain additional terms
+ * pursuant to Section 7 of the GPL. You may view the exception and these
+ * terms on the web at http://www.aptana.com/legal/gpl/.
+ * 
+ * 2. For the Aptana Public License (APL), this program and the
+ * accompanying materials are made available under the terms of the APL
+ * v1.0 which accompanies this distribution, and is available at
+ * http://www.aptana.com/legal/apl/.
+ * 
+ * You may view the GPL, Aptana's exception and additional terms, and the
+ * APL in the file titled license.html at the root of the corresponding
+ * plugin containing this source file.
+ * 
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.ide.core.ui.io.file;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+import javax.swing.filechooser.FileSystemView;
+
+import com.aptana.ide.core.io.IVirtualFile;
+import com.aptana.ide.core.io.IVirtualFileVisitor;
+import com.aptana.ide.core.ui.CoreUIUtils;
+
+/**
+ * Walks a local directory tree depth first while the directories ahead of the walk are listed on worker threads. The
+ * workers also check which of the listed files are directories and which are cloaked, so the walking thread only hands
+ * the files to the visitor. At most MAX_PREFETCH listings are kept ahead of the walk; a directory whose listing has not
+ * started by the time the walk gets there is listed by the walking thread itself.
+ * 
+ * @author agent (agent@local)
+ */
+abstract class LocalFileWalker
+{
+	// listing is mostly waiting on the disk, so use more threads than processors
+	private static final int THREADS = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+	private static final int MAX_PREFETCH = 64;
+
+	private static ExecutorService executor;
+
+	/**
+	 * A listed file
+	 */
+	private static class Entry
+	{
+		final File path;
+		final IVirtualFile file;
+		final boolean directory;
+
+		Entry(File path, IVirtualFile file, boolean directory)
+		{
+			this.path = path;
+			this.file = file;
+			this.directory = directory;
+		}
+	}
+
+	private LocalFileManager _manager;
+	private boolean _recurse;
+	private boolean _includeCloakedFiles;
+	private boolean _showCompressed;
+	private Semaphore _prefetch;
+
+	/**
+	 * LocalFileWalker
+	 * 
+	 * @param manager
+	 * @param recurse
+	 * @param includeCloakedFiles
+	 * @param showCompressed
+	 *            list .zip, .jar and .gz files as compressed files
+	 */
+	LocalFileWalker(LocalFileManager manager, boolean recurse, boolean includeCloakedFiles, boolean showCompressed)
+	{
+		this._manager = manager;
+		this._recurse = recurse;
+		this._includeCloakedFiles = includeCloakedFiles;
+		this._showCompressed = showCompressed;
+		this._prefetch = new Semaphore(MAX_PREFETCH);
+	}
+
+	/**
+	 * Called on the walking thread before the files of a directory are visited
+	 * 
+	 * @param directory
+	 */
+	protected abstract void directoryEntered(File directory);
+
+	/**
+	 * Visits the files of a directory, and those of its subdirectories when recursing, in depth first order
+	 * 
+	 * @param directory
+	 * @param visitor
+	 * @return false if the visitor stopped the walk
+	 */
+	boolean walk(File directory, IVirtualFileVisitor visitor)
+	{
+		return this.walk(directory, null, visitor);
+	}
+
+	private boolean walk(File directory, Future<Entry[]> listing, IVirtualFileVisitor visitor)
+	{
+		this.directoryEntered(directory);
+
+		Entry[] entries = this.getEntries(directory, listing);
+		List<Future<Entry[]>> listings = new ArrayList<Future<Entry[]>>(entries.length);
+
+		for (Entry entry : entries)
+		{
+			Future<Entry[]> future = null;
+
+			if (this._recurse && entry.directory && this._prefetch.tryAcquire())
+			{
+				future = this.submit(entry.path);
+			}
+			listings.add(future);
+		}
+
+		try
+		{
+			for (int i = 0; i < entries.length; i++)
+			{
+				Entry entry = entries[i];
+
+				if (visitor.visit(entry.file) == false)
+				{
+					return false;
+				}
+				if (this._recurse && entry.directory)
+				{
+					if (this.walk(entry.path, listings.set(i, null), visitor) == false)
+					{
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+		finally
+		{
+			// drop the listings of the directories the walk stopped before
+			for (Future<Entry[]> future : listings)
+			{
+				if (future != null)
+				{
+					future.cancel(false);
+				}
+			}
+		}
+	}
+
+	private Entry[] getEntries(File directory, Future<Entry[]> listing)
+	{
+		// a listing that has not started yet is quicker to do here than to wait for behind the others
+		if (listing != null && listing.cancel(false) == false)
+		{
+			try
+			{
+				return listing.get();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				listing.cancel(false);
+			}
+			catch (ExecutionException e)
+			{
+				Throwable cause = e.getCause();
+
+				if (cause instanceof Error)
+				{
+					throw (Error) cause;
+				}
+				throw (RuntimeException) cause;
+			}
+			finally
+			{
+				this._prefetch.release();
+			}
+		}
+		else if (listing != null)
+		{
+			this._prefetch.release();
+		}
+		return this.list(directory);
+	}
+
+	private Future<Entry[]> submit(final File directory)
+	{
+		return getExecutor().submit(new Callable<Entry[]>()
+		{
+			public Entry[] call()
+			{
+				return list(directory);
+			}
+		});
+	}
+
+	/**
+	 * Lists a directory, dropping cloaked files unless they are included
+	 * 
+	 * @param directory
+	 * @return Entry[]
+	 */
+	private Entry[] list(File directory)
+	{
+		File[] children = listChildren(directory);
+		List<Entry> entries = new ArrayList<Entry>(children.length);
+
+		for (File child : children)
+		{
+			IVirtualFile file;
+			String name = child.getName();
+
+			if (this._showCompressed && (name.endsWith(".zip") || name.endsWith(".jar") || name.endsWith(".gz"))) //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			{
+				file = new CompressedFile(this._manager, child);
+			}
+			else
+			{
+				file = new LocalFile(this._manager, child);
+			}
+
+			if (this._includeCloakedFiles || !file.isCloaked())
+			{
+				entries.add(new Entry(child, file, this._recurse && child.isDirectory()));
+			}
+		}
+
+		return entries.toArray(new Entry[entries.size()]);
+	}
+
+	/**
+	 * Lists the children of a directory, or the file system roots for the FileSystemRoots directory
+	 * 
+	 * @param directory
+	 * @return File[]
+	 */
+	private static File[] listChildren(File directory)
+	{
+		File[] children;
+
+		if (CoreUIUtils.runningOnMac == false)
+		{
+			if (directory.getName().equals(LocalProtocolManager.FileSystemRoots))
+			{
+				children = FileSystemView.getFileSystemView().getRoots();
+			}
+			else
+			{
+				children = FileSystemView.getFileSystemView().getFiles(directory, false);
+			}
+		}
+		else
+		{
+			if (directory.getName().equals(LocalProtocolManager.FileSystemRoots))
+			{
+				children = File.listRoots();
+			}
+			else
+			{
+				children = directory.listFiles();
+			}
+		}
+
+		return (children == null) ? new File[0] : children;
+	}
+
+	private static synchronized ExecutorService getExecutor()
+	{
+		if (executor == null)
+		{
+			executor = Executors.newFixedThreadPool(THREADS, new ThreadFactory()
+			{
+				private int _count;
+
+				public synchronized Thread newThread(Runnable runnable)
+				{
+					Thread thread = new Thread(runnable, "Local File Walker " + (++this._count)); //$NON-NLS-1$
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return executor;
+	}
+}
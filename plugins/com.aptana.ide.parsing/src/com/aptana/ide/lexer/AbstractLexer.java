@@ -388,6 +388,36 @@ public abstract class AbstractLexer implements ILexer
 		return new Lexeme(token, text, offset);
 	}
 
+	/**
+	 * Create a new lexeme for a range of the source. When columnar lexeme lists are in use, the lexeme's text is not
+	 * sliced from the source until it is requested. Otherwise, this defers to {@link #createLexeme(IToken, String, int)}
+	 * 
+	 * @param token
+	 *            The token class for this lexeme
+	 * @param source
+	 *            The source being lexed
+	 * @param offset
+	 *            The token's offset within the source file
+	 * @param length
+	 *            The token's length
+	 * @return Returns a newly created lexeme
+	 */
+	protected Lexeme createLexeme(IToken token, char[] source, int offset, int length)
+	{
+		Lexeme result;
+
+		if (LexerPlugin.useColumnarLexemes())
+		{
+			result = new Lexeme(token, source, offset, length);
+		}
+		else
+		{
+			result = this.createLexeme(token, new String(source, offset, length), offset);
+		}
+
+		return result;
+	}
+
 	/**
 	 * @see com.aptana.ide.lexer.ILexer#find(java.lang.String)
 	 */
@@ -484,11 +514,8 @@ public abstract class AbstractLexer implements ILexer
 					// determine text length of this token instance
 					int lexemeLength = position - start;
 
-					// grab lexeme text
-					String text = new String(this.source, start, lexemeLength);
-
 					// create resulting lexeme
-					result = this.createLexeme(token, text, start);
+					result = this.createLexeme(token, this.source, start, lexemeLength);
 
 					// flag to exit loop
 					inIgnoreSet = false;
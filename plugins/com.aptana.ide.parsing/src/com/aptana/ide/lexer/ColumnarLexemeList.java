@@ -0,0 +1,871 @@
+/**
+ * This file Copyright (c) 2005-2008 Aptana, Inc. This program is
+ * dual-licensed under both the Aptana Public License and the GNU General
+ * Public license. You may elect to use one or the other of these licenses.
+ * 
+ * This program is distributed in the hope that it will be useful, but
+ * AS-IS and WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, TITLE, or
+ * NONINFRINGEMENT. Redistribution, except as permitted by whichever of
+ * the GPL or APL you select, is prohibited.
+ *
+ * 1. For the GPL license (GPL), you can redistribute and/or modify this
+ * program under the terms of the GNU General Public License,
+ * Version 3, as published by the Free Software Foundation.  You should
+ * have received a copy of the GNU General Public License, Version 3 along
+ * with this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * Aptana provides a special exception to allow redistribution of this file
+ * with certain other free and open source software ("FOSS") code and certain additional terms
+ * pursuant to Section 7 of the GPL. You may view the exception and these
+ * terms on the web at http://www.aptana.com/legal/gpl/.
+ * 
+ * 2. For the Aptana Public License (APL), this program and the
+ * accompanying materials are made available under the terms of the APL
+ * v1.0 which accompanies this distribution, and is available at
+ * http://www.aptana.com/legal/apl/.
+ * 
+ * You may view the GPL, Aptana's exception and additional terms, and the
+ * APL in the file titled license.html at the root of the corresponding
+ * plugin containing this source file.
+ * 
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.ide.lexer;
+
+/**
+ * A lexeme list that stores its lexemes in parallel primitive arrays instead of one object per lexeme. Lexeme text is
+ * sliced from the source text on demand and Lexeme instances are only created when a caller asks for one. Lexemes
+ * handed to this list, which is what parsers do, are kept as views so that parse nodes referencing them continue to
+ * see shifted offsets and identity comparisons continue to work. Once a lexeme has a view, the view is the authority
+ * for its token and flags. A lexeme may only be stored in one columnar list at a time.
+ * 
+ * @author agent (agent@local)
+ */
+public class ColumnarLexemeList extends LexemeList
+{
+	private static final Lexeme[] NO_LEXEMES = new Lexeme[0];
+	private static final int INITIAL_CAPACITY = 128;
+
+	private int[] _offsets;
+	private int[] _lengths;
+	private int[] _typeIndexes;
+	private int[] _flags;
+	private IToken[] _tokens;
+	private Lexeme[] _views;
+	private int _size;
+	private Range _affectedRegion;
+	private volatile char[] _source;
+
+	/**
+	 * Create a new instance of ColumnarLexemeList
+	 */
+	public ColumnarLexemeList()
+	{
+		super(0);
+
+		this._offsets = new int[INITIAL_CAPACITY];
+		this._lengths = new int[INITIAL_CAPACITY];
+		this._typeIndexes = new int[INITIAL_CAPACITY];
+		this._flags = new int[INITIAL_CAPACITY];
+		this._tokens = new IToken[INITIAL_CAPACITY];
+		this._views = new Lexeme[INITIAL_CAPACITY];
+		this._affectedRegion = new Range();
+	}
+
+	/**
+	 * Add a lexeme to this list. The lexeme becomes a view into this list.
+	 * 
+	 * @see com.aptana.ide.lexer.LexemeList#add(com.aptana.ide.lexer.Lexeme)
+	 */
+	synchronized public void add(Lexeme lexeme)
+	{
+		if (lexeme == null || lexeme.offset < 0)
+		{
+			throw new IllegalArgumentException(Messages.LexemeList_Lexeme_Must_Be_Defined);
+		}
+
+		int lexemeIndex = this.getLexemeIndex(lexeme.offset);
+
+		// only process if we don't have the specified lexeme in our list already
+		if (lexemeIndex < 0)
+		{
+			int insertIndex = -(lexemeIndex + 1);
+
+			this.insert(insertIndex, lexeme.getToken(), lexeme.offset, lexeme.length, lexeme.getFlags(), lexeme);
+			lexeme.attach(this);
+
+			this.removeOverlapping(insertIndex);
+		}
+	}
+
+	/**
+	 * Add a lexeme to this list without creating a Lexeme instance for it. The lexeme's text will be sliced from the
+	 * source set by {@link #setSource(char[])}. As with {@link #add(Lexeme)}, nothing is added if a lexeme already
+	 * exists at the specified offset and following lexemes overlapping the new one are removed.
+	 * 
+	 * @param token
+	 *            The token class of the new lexeme
+	 * @param offset
+	 *            The offset of the new lexeme within the source
+	 * @param length
+	 *            The length of the new lexeme
+	 */
+	synchronized public void add(IToken token, int offset, int length)
+	{
+		if (token == null || offset < 0)
+		{
+			throw new IllegalArgumentException(Messages.LexemeList_Lexeme_Must_Be_Defined);
+		}
+
+		int lexemeIndex = this.getLexemeIndex(offset);
+
+		if (lexemeIndex < 0)
+		{
+			int insertIndex = -(lexemeIndex + 1);
+
+			this.insert(insertIndex, token, offset, length, 0, null);
+			this.removeOverlapping(insertIndex);
+		}
+	}
+
+	/**
+	 * checkIndex
+	 * 
+	 * @param index
+	 */
+	private void checkIndex(int index)
+	{
+		if (index < 0 || index >= this._size)
+		{
+			throw new IndexOutOfBoundsException(Integer.toString(index));
+		}
+	}
+
+	/**
+	 * @see com.aptana.ide.lexer.LexemeList#clear()
+	 */
+	synchronized public void clear()
+	{
+		for (int i = 0; i < this._size; i++)
+		{
+			this.detach(i);
+			this._tokens[i] = null;
+		}
+
+		this._size = 0;
+		this._affectedRegion.clear();
+	}
+
+	/**
+	 * Lexemes that do not have a view yet are cloned directly from the columns without creating a view.
+	 * 
+	 * @see com.aptana.ide.lexer.LexemeList#cloneRange(int, int)
+	 */
+	synchronized public Lexeme[] cloneRange(int startingIndex, int endingIndex)
+	{
+		Lexeme[] result = NO_LEXEMES;
+
+		if (this.isValidRange(startingIndex, endingIndex))
+		{
+			result = new Lexeme[endingIndex - startingIndex + 1];
+
+			for (int i = startingIndex; i <= endingIndex; i++)
+			{
+				Lexeme view = this._views[i];
+				Lexeme lexeme;
+
+				if (view != null)
+				{
+					lexeme = (Lexeme) view.clone();
+				}
+				else
+				{
+					lexeme = new Lexeme(this._tokens[i], this._source, this._offsets[i], this._lengths[i]);
+					lexeme.setFlags(this._flags[i]);
+				}
+
+				result[i - startingIndex] = lexeme;
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * @see com.aptana.ide.lexer.LexemeList#copyRange(int, int)
+	 */
+	synchronized public Lexeme[] copyRange(int startingIndex, int endingIndex)
+	{
+		Lexeme[] result = NO_LEXEMES;
+
+		if (this.isValidRange(startingIndex, endingIndex))
+		{
+			result = new Lexeme[endingIndex - startingIndex + 1];
+
+			for (int i = startingIndex; i <= endingIndex; i++)
+			{
+				result[i - startingIndex] = this.getView(i);
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * The snapshot slices text from our current source, which ParseState replaces rather than modifies.
+	 * 
+	 * @see com.aptana.ide.lexer.LexemeList#createSnapshot(int)
+	 */
+	protected LexemeListSnapshot createSnapshot(int version)
+	{
+		int size = this._size;
+		int[] offsets = new int[size];
+		int[] lengths = new int[size];
+		IToken[] tokens = new IToken[size];
+		int[] flags = new int[size];
+		Lexeme[] views = new Lexeme[size];
+
+		System.arraycopy(this._offsets, 0, offsets, 0, size);
+		System.arraycopy(this._lengths, 0, lengths, 0, size);
+		System.arraycopy(this._tokens, 0, tokens, 0, size);
+		System.arraycopy(this._flags, 0, flags, 0, size);
+		System.arraycopy(this._views, 0, views, 0, size);
+
+		// views are the authority for their token and flags
+		for (int i = 0; i < size; i++)
+		{
+			Lexeme view = views[i];
+
+			if (view != null)
+			{
+				tokens[i] = view.getToken();
+				flags[i] = view.getFlags();
+			}
+		}
+
+		return new LexemeListSnapshot(version, size, offsets, lengths, tokens, flags, views, this._source);
+	}
+
+	/**
+	 * Give up the view at the specified index, if any. Its text will come from our current source.
+	 * 
+	 * @param index
+	 */
+	private void detach(int index)
+	{
+		Lexeme view = this._views[index];
+
+		if (view != null)
+		{
+			view.detach(this._source);
+			this._views[index] = null;
+		}
+	}
+
+	/**
+	 * Make sure our columns can hold the specified number of lexemes
+	 * 
+	 * @param size
+	 */
+	private void ensureCapacity(int size)
+	{
+		int currentLength = this._offsets.length;
+
+		if (size > currentLength)
+		{
+			// add about 50% to our current buffer size
+			int newLength = Math.max(size, (currentLength * 3) / 2 + 1);
+
+			this._offsets = grow(this._offsets, newLength, this._size);
+			this._lengths = grow(this._lengths, newLength, this._size);
+			this._typeIndexes = grow(this._typeIndexes, newLength, this._size);
+			this._flags = grow(this._flags, newLength, this._size);
+
+			IToken[] tokens = new IToken[newLength];
+			System.arraycopy(this._tokens, 0, tokens, 0, this._size);
+			this._tokens = tokens;
+
+			Lexeme[] views = new Lexeme[newLength];
+			System.arraycopy(this._views, 0, views, 0, this._size);
+			this._views = views;
+		}
+	}
+
+	/**
+	 * @see com.aptana.ide.lexer.LexemeList#get(int)
+	 */
+	synchronized public Lexeme get(int index)
+	{
+		Lexeme result = null;
+
+		if (0 <= index && index < this._size)
+		{
+			result = this.getView(index);
+		}
+
+		return result;
+	}
+
+	/**
+	 * @see com.aptana.ide.lexer.LexemeList#getAffectedRegion()
+	 */
+	synchronized public Range getAffectedRegion()
+	{
+		return this._affectedRegion;
+	}
+
+	/**
+	 * @see com.aptana.ide.lexer.LexemeList#getCeilingLexeme(int)
+	 */
+	synchronized public Lexeme getCeilingLexeme(int offset)
+	{
+		int index = this.getLexemeCeilingIndex(offset);
+		Lexeme result = null;
+
+		if (index >= 0)
+		{
+			result = this.getView(index);
+		}
+
+		return result;
+	}
+
+	/**
+	 * @see com.aptana.ide.lexer.LexemeList#getFloorLexeme(int)
+	 */
+	synchronized public Lexeme getFloorLexeme(int offset)
+	{
+		int index = this.getLexemeFloorIndex(offset);
+		Lexeme result = null;
+
+		if (index >= 0)
+		{
+			result = this.getView(index);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Get the length of the lexeme at the specified index without creating a Lexeme for it
+	 * 
+	 * @param index
+	 * @return Returns the lexeme's length
+	 */
+	synchronized public int getLength(int index)
+	{
+		this.checkIndex(index);
+
+		return this._lengths[index];
+	}
+
+	/**
+	 * @see com.aptana.ide.lexer.LexemeList#getLexemeCeilingIndex(int)
+	 */
+	synchronized public int getLexemeCeilingIndex(int offset)
+	{
+		int result = -1;
+
+		if (this._size > 0)
+		{
+			result = this.getLexemeIndex(offset);
+
+			if (result < 0)
+			{
+				// we are in between lexemes, so find the lexeme index to our right
+				result = -(result + 1);
+
+				if (result >= this._size)
+				{
+					result = -1;
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * @see com.aptana.ide.lexer.LexemeList#getLexemeFloorIndex(int)
+	 */
+	synchronized public int getLexemeFloorIndex(int offset)
+	{
+		int result = -1;
+
+		if (this._size > 0)
+		{
+			result = this.getLexemeIndex(offset);
+
+			if (result < 0)
+			{
+				// we are in between lexemes, so find the lexeme index to our left
+				result = -(result + 1) - 1;
+
+				if (result < 0)
+				{
+					result = -1;
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * @see com.aptana.ide.lexer.LexemeList#getLexemeFromOffset(int)
+	 */
+	synchronized public Lexeme getLexemeFromOffset(int offset)
+	{
+		int index = this.getLexemeIndex(offset);
+		Lexeme result = null;
+
+		if (0 <= index && index < this._size)
+		{
+			result = this.getView(index);
+		}
+
+		return result;
+	}
+
+	/**
+	 * @see com.aptana.ide.lexer.LexemeList#getLexemeIndex(int)
+	 */
+	synchronized public int getLexemeIndex(int offset)
+	{
+		int[] offsets = this._offsets;
+		int[] lengths = this._lengths;
+		int low = 0;
+		int high = this._size - 1;
+
+		while (low <= high)
+		{
+			int mid = (low + high) >>> 1;
+			int candidate = offsets[mid];
+
+			if (offset < candidate)
+			{
+				high = mid - 1;
+			}
+			else if (candidate + lengths[mid] <= offset)
+			{
+				low = mid + 1;
+			}
+			else
+			{
+				return mid;
+			}
+		}
+
+		return -(low + 1);
+	}
+
+	/**
+	 * @see com.aptana.ide.lexer.LexemeList#getLexemeIndex(com.aptana.ide.lexer.Lexeme)
+	 */
+	synchronized public int getLexemeIndex(Lexeme lexeme)
+	{
+		int result = -1;
+
+		if (lexeme != null)
+		{
+			int candidate = this.getLexemeIndex(lexeme.offset);
+
+			if (candidate >= 0 && this._views[candidate] == lexeme)
+			{
+				result = candidate;
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Get the offset of the lexeme at the specified index without creating a Lexeme for it
+	 * 
+	 * @param index
+	 * @return Returns the lexeme's offset
+	 */
+	synchronized public int getOffset(int index)
+	{
+		this.checkIndex(index);
+
+		return this._offsets[index];
+	}
+
+	/**
+	 * Get the source text from which lexeme text is sliced
+	 * 
+	 * @return Returns the current source or null if no source has been set
+	 */
+	public char[] getSource()
+	{
+		return this._source;
+	}
+
+	/**
+	 * Get the token of the lexeme at the specified index without creating a Lexeme for it
+	 * 
+	 * @param index
+	 * @return Returns the lexeme's token
+	 */
+	synchronized public IToken getToken(int index)
+	{
+		this.checkIndex(index);
+
+		Lexeme view = this._views[index];
+
+		return (view != null) ? view.getToken() : this._tokens[index];
+	}
+
+	/**
+	 * Get the type index of the lexeme at the specified index without creating a Lexeme for it
+	 * 
+	 * @param index
+	 * @return Returns the lexeme's type index
+	 */
+	synchronized public int getTypeIndex(int index)
+	{
+		this.checkIndex(index);
+
+		Lexeme view = this._views[index];
+
+		return (view != null) ? view.typeIndex : this._typeIndexes[index];
+	}
+
+	/**
+	 * Return the view for the specified index, creating it if this is the first request for it
+	 * 
+	 * @param index
+	 * @return Lexeme
+	 */
+	private Lexeme getView(int index)
+	{
+		Lexeme result = this._views[index];
+
+		if (result == null)
+		{
+			result = new Lexeme(this._tokens[index], this._source, this._offsets[index], this._lengths[index]);
+			result.setFlags(this._flags[index]);
+			result.attach(this);
+
+			this._views[index] = result;
+		}
+
+		return result;
+	}
+
+	/**
+	 * Include the specified range in our affected region
+	 * 
+	 * @param startingOffset
+	 * @param endingOffset
+	 */
+	private void includeInAffectedRegion(int startingOffset, int endingOffset)
+	{
+		if (this._affectedRegion.isEmpty())
+		{
+			this._affectedRegion.setRange(startingOffset, endingOffset);
+		}
+		else
+		{
+			this._affectedRegion.includeInRange(startingOffset);
+			this._affectedRegion.includeInRange(endingOffset);
+		}
+	}
+
+	/**
+	 * Insert a new row into our columns
+	 * 
+	 * @param index
+	 * @param token
+	 * @param offset
+	 * @param length
+	 * @param flags
+	 * @param view
+	 */
+	private void insert(int index, IToken token, int offset, int length, int flags, Lexeme view)
+	{
+		this.ensureCapacity(this._size + 1);
+
+		int remainder = this._size - index;
+
+		// shift the contents over by one leaving a hole where the new lexeme will go
+		if (remainder > 0)
+		{
+			System.arraycopy(this._offsets, index, this._offsets, index + 1, remainder);
+			System.arraycopy(this._lengths, index, this._lengths, index + 1, remainder);
+			System.arraycopy(this._typeIndexes, index, this._typeIndexes, index + 1, remainder);
+			System.arraycopy(this._flags, index, this._flags, index + 1, remainder);
+			System.arraycopy(this._tokens, index, this._tokens, index + 1, remainder);
+			System.arraycopy(this._views, index, this._views, index + 1, remainder);
+		}
+
+		this._offsets[index] = offset;
+		this._lengths[index] = length;
+		this._typeIndexes[index] = token.getTypeIndex();
+		this._flags[index] = flags;
+		this._tokens[index] = token;
+		this._views[index] = view;
+		this._size++;
+
+		this.includeInAffectedRegion(offset, offset + length);
+	}
+
+	/**
+	 * Determine if the lexeme at the specified index overlaps the specified range. This follows
+	 * {@link Lexeme#isOverlapping(Lexeme)}
+	 * 
+	 * @param index
+	 * @param offset
+	 * @param length
+	 * @return boolean
+	 */
+	private boolean isOverlapping(int index, int offset, int length)
+	{
+		int startingOffset1 = this._offsets[index];
+		int startingOffset2 = offset;
+		int endingOffset1 = startingOffset1 + this._lengths[index] - 1;
+		int endingOffset2 = offset + length - 1;
+
+		return (startingOffset2 <= startingOffset1 && startingOffset1 <= endingOffset2)
+				|| (startingOffset2 <= endingOffset1 && endingOffset1 <= endingOffset2)
+				|| (startingOffset1 <= startingOffset2 && startingOffset2 <= endingOffset1)
+				|| (startingOffset1 <= endingOffset2 && endingOffset2 <= endingOffset1);
+	}
+
+	/**
+	 * isValidRange
+	 * 
+	 * @param startingIndex
+	 * @param endingIndex
+	 * @return boolean
+	 */
+	private boolean isValidRange(int startingIndex, int endingIndex)
+	{
+		return 0 <= startingIndex && startingIndex < this._size
+			&& 0 <= endingIndex && endingIndex < this._size
+			&& startingIndex <= endingIndex;
+	}
+
+	/**
+	 * @see com.aptana.ide.lexer.LexemeList#remove(int)
+	 */
+	synchronized public void remove(int index)
+	{
+		if (0 <= index && index < this._size)
+		{
+			this.removeRange(index, index);
+		}
+	}
+
+	/**
+	 * @see com.aptana.ide.lexer.LexemeList#remove(int, int)
+	 */
+	synchronized public void remove(int startingIndex, int endingIndex)
+	{
+		if (this.isValidRange(startingIndex, endingIndex))
+		{
+			this.removeRange(startingIndex, endingIndex);
+		}
+	}
+
+	/**
+	 * @see com.aptana.ide.lexer.LexemeList#remove(com.aptana.ide.lexer.Lexeme)
+	 */
+	synchronized public void remove(Lexeme lexeme)
+	{
+		int index = this.getLexemeIndex(lexeme);
+
+		if (index >= 0)
+		{
+			this.removeRange(index, index);
+		}
+	}
+
+	/**
+	 * @see com.aptana.ide.lexer.LexemeList#remove(com.aptana.ide.lexer.Lexeme, com.aptana.ide.lexer.Lexeme)
+	 */
+	synchronized public void remove(Lexeme startingLexeme, Lexeme endingLexeme)
+	{
+		int startingIndex = this.getLexemeIndex(startingLexeme);
+		int endingIndex = this.getLexemeIndex(endingLexeme);
+
+		if (startingIndex >= 0 && endingIndex >= 0 && startingIndex <= endingIndex)
+		{
+			this.removeRange(startingIndex, endingIndex);
+		}
+	}
+
+	/**
+	 * Remove lexemes following the specified index that overlap the lexeme at that index
+	 * 
+	 * @param index
+	 */
+	private void removeOverlapping(int index)
+	{
+		int offset = this._offsets[index];
+		int length = this._lengths[index];
+		int followingIndex = index + 1;
+
+		while (followingIndex < this._size && this.isOverlapping(followingIndex, offset, length))
+		{
+			int followingOffset = this._offsets[followingIndex];
+
+			// include removed lexeme in affected region
+			this.includeInAffectedRegion(followingOffset, followingOffset + this._lengths[followingIndex]);
+
+			this.removeRange(followingIndex, followingIndex);
+		}
+	}
+
+	/**
+	 * Remove a valid, inclusive range of rows from our columns
+	 * 
+	 * @param startingIndex
+	 * @param endingIndex
+	 */
+	private void removeRange(int startingIndex, int endingIndex)
+	{
+		int count = endingIndex - startingIndex + 1;
+		int remainder = this._size - endingIndex - 1;
+
+		for (int i = startingIndex; i <= endingIndex; i++)
+		{
+			this.detach(i);
+		}
+
+		// shift following content over to fill the hole
+		if (remainder > 0)
+		{
+			System.arraycopy(this._offsets, endingIndex + 1, this._offsets, startingIndex, remainder);
+			System.arraycopy(this._lengths, endingIndex + 1, this._lengths, startingIndex, remainder);
+			System.arraycopy(this._typeIndexes, endingIndex + 1, this._typeIndexes, startingIndex, remainder);
+			System.arraycopy(this._flags, endingIndex + 1, this._flags, startingIndex, remainder);
+			System.arraycopy(this._tokens, endingIndex + 1, this._tokens, startingIndex, remainder);
+			System.arraycopy(this._views, endingIndex + 1, this._views, startingIndex, remainder);
+		}
+
+		this._size -= count;
+
+		// free up references that are no longer part of the active region
+		for (int i = this._size; i < this._size + count; i++)
+		{
+			this._tokens[i] = null;
+			this._views[i] = null;
+		}
+	}
+
+	/**
+	 * Lexemes are adopted as views into this list.
+	 * 
+	 * @see com.aptana.ide.lexer.LexemeList#setContents(com.aptana.ide.lexer.Lexeme[])
+	 */
+	synchronized public void setContents(Lexeme[] lexemes)
+	{
+		if (lexemes == null)
+		{
+			throw new IllegalArgumentException(Messages.LexemeList_Lexeme_Must_Be_Defined);
+		}
+		for (Lexeme lexeme : lexemes)
+		{
+			if (lexeme == null)
+			{
+				throw new IllegalArgumentException(Messages.LexemeList_Lexeme_Must_Be_Defined);
+			}
+		}
+
+		this.clear();
+		this.ensureCapacity(lexemes.length);
+
+		for (int i = 0; i < lexemes.length; i++)
+		{
+			Lexeme lexeme = lexemes[i];
+
+			this._offsets[i] = lexeme.offset;
+			this._lengths[i] = lexeme.length;
+			this._typeIndexes[i] = lexeme.typeIndex;
+			this._flags[i] = lexeme.getFlags();
+			this._tokens[i] = lexeme.getToken();
+			this._views[i] = lexeme;
+
+			lexeme.attach(this);
+		}
+
+		this._size = lexemes.length;
+		this._affectedRegion = new Range();
+	}
+
+	/**
+	 * Set the source text that lexemes in this list refer to. This needs to be called whenever the source changes,
+	 * after lexemes invalidated by the change have been removed and the remaining lexemes have been shifted.
+	 * 
+	 * @param source
+	 */
+	synchronized public void setSource(char[] source)
+	{
+		this._source = source;
+	}
+
+	/**
+	 * @see com.aptana.ide.lexer.LexemeList#shiftLexemeOffsets(int, int)
+	 */
+	synchronized public void shiftLexemeOffsets(int startingIndex, int offsetDelta)
+	{
+		if (0 <= startingIndex)
+		{
+			for (int i = startingIndex; i < this._size; i++)
+			{
+				this._offsets[i] += offsetDelta;
+
+				Lexeme view = this._views[i];
+
+				if (view != null)
+				{
+					view.adjustOffset(offsetDelta);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @see com.aptana.ide.lexer.LexemeList#size()
+	 */
+	synchronized public int size()
+	{
+		return this._size;
+	}
+
+	/**
+	 * @see com.aptana.ide.lexer.LexemeList#toArray()
+	 */
+	synchronized public Lexeme[] toArray()
+	{
+		Lexeme[] result = NO_LEXEMES;
+
+		if (this._size > 0)
+		{
+			result = this.copyRange(0, this._size - 1);
+		}
+
+		return result;
+	}
+
+	/**
+	 * grow
+	 * 
+	 * @param column
+	 * @param newLength
+	 * @param size
+	 * @return Returns a copy of the column with the new length
+	 */
+	private static int[] grow(int[] column, int newLength, int size)
+	{
+		int[] result = new int[newLength];
+
+		System.arraycopy(column, 0, result, 0, size);
+
+		return result;
+	}
+}
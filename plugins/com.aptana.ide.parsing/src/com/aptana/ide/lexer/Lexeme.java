@@ -43,9 +43,15 @@ public class Lexeme implements Cloneable, Comparable<Offset>, IRange
 	private static final int HIGHLIGHTED = 2;
 
 	private IToken _token;
-	private String _text;
 	private int _flags;
 
+	/**
+	 * The lexeme's text once it has been sliced. Until then, this is the char[] source the lexeme was matched in or,
+	 * for views, the ColumnarLexemeList whose current source holds the text. Text is only sliced the first time it is
+	 * requested, so lexemes whose text is never asked for don't retain a string
+	 */
+	private Object _text;
+
 	/**
 	 * The lexeme's offset within the source text
 	 */
@@ -82,6 +88,29 @@ public class Lexeme implements Cloneable, Comparable<Offset>, IRange
 		this.length = text.length();
 	}
 
+	/**
+	 * Create a new instance of Lexeme whose text is sliced from the source only when it is first requested
+	 * 
+	 * @param token
+	 *            The parent token class this lexeme belongs to
+	 * @param source
+	 *            The source text containing this lexeme
+	 * @param offset
+	 *            The offset at which the match occurred
+	 * @param length
+	 *            The length of the match
+	 */
+	public Lexeme(IToken token, char[] source, int offset, int length)
+	{
+		this._token = token;
+		this._text = source;
+		this.offset = offset;
+
+		this.typeIndex = token.getTypeIndex();
+
+		this.length = length;
+	}
+
 	/**
 	 * Adjust the current offset of this lexeme by the specified delta
 	 * 
@@ -90,16 +119,49 @@ public class Lexeme implements Cloneable, Comparable<Offset>, IRange
 	 */
 	public void adjustOffset(int delta)
 	{
+		// once moved, a lazy lexeme can no longer find its text in the source it was matched in
+		if (this._text instanceof char[])
+		{
+			this.getText();
+		}
+
 		this.offset += delta;
 	}
 
+	/**
+	 * Make this lexeme a view into the specified columnar list. Text that has not been sliced yet will come from the
+	 * list's current source from now on
+	 * 
+	 * @param owner
+	 */
+	void attach(ColumnarLexemeList owner)
+	{
+		if (this._text instanceof char[])
+		{
+			if (owner.getSource() == null)
+			{
+				owner.setSource((char[]) this._text);
+			}
+
+			this._text = owner;
+		}
+	}
+
 	/**
 	 * @see java.lang.Object#clone()
 	 */
 	public Object clone()
 	{
 		try {
-			return super.clone();
+			Lexeme result = (Lexeme) super.clone();
+
+			// clones are never views into a columnar list
+			if (result._text instanceof ColumnarLexemeList)
+			{
+				result._text = ((ColumnarLexemeList) result._text).getSource();
+			}
+
+			return result;
 		} catch (CloneNotSupportedException e) {
 			throw new IllegalStateException();
 		}
@@ -154,7 +216,7 @@ public class Lexeme implements Cloneable, Comparable<Offset>, IRange
 			Lexeme that = (Lexeme) obj;
 			
 			// NOTE: [KEL] Should we compare flags too?
-			result = this._text.equals(that._text) && this._token == that._token;
+			result = this._token == that._token && this.getText().equals(that.getText());
 		}
 		
 		return result;
@@ -180,6 +242,20 @@ public class Lexeme implements Cloneable, Comparable<Offset>, IRange
 		return this._token.getCategoryIndex();
 	}
 
+	/**
+	 * Stop being a view into a columnar list. Text that has not been sliced yet will come from the specified source,
+	 * which must be the list's source at the time of removal
+	 * 
+	 * @param source
+	 */
+	void detach(char[] source)
+	{
+		if (this._text instanceof ColumnarLexemeList)
+		{
+			this._text = source;
+		}
+	}
+
 	/**
 	 * @see com.aptana.ide.lexer.IRange#getEndingOffset()
 	 */
@@ -221,7 +297,41 @@ public class Lexeme implements Cloneable, Comparable<Offset>, IRange
 	 */
 	public String getText()
 	{
-		return this._text;
+		Object text = this._text;
+		String result;
+
+		if (text instanceof String)
+		{
+			result = (String) text;
+		}
+		else if (text instanceof ColumnarLexemeList)
+		{
+			// edits shift the views and switch the list's source while holding its lock, so the offset and the source
+			// agree here. The text of a view does not change while it is in the list, so it can be kept
+			synchronized (text)
+			{
+				result = new String(((ColumnarLexemeList) text).getSource(), this.offset, this.length);
+			}
+
+			this._text = result;
+		}
+		else
+		{
+			result = new String((char[]) text, this.offset, this.length);
+			this._text = result;
+		}
+
+		return result;
+	}
+
+	/**
+	 * Get the raw flag bits of this lexeme
+	 * 
+	 * @return int
+	 */
+	int getFlags()
+	{
+		return this._flags;
 	}
 
 	/**
@@ -300,6 +410,16 @@ public class Lexeme implements Cloneable, Comparable<Offset>, IRange
 		this._flags |= AFTER_EOL;
 	}
 
+	/**
+	 * Set the raw flag bits of this lexeme
+	 * 
+	 * @param flags
+	 */
+	void setFlags(int flags)
+	{
+		this._flags = flags;
+	}
+
 	/**
 	 * setHighlighted
 	 */
@@ -346,7 +466,7 @@ public class Lexeme implements Cloneable, Comparable<Offset>, IRange
 
 		sb.append(name);
 		sb.append("@").append(this.offset).append("-").append(this.getEndingOffset()); //$NON-NLS-1$ //$NON-NLS-2$
-		sb.append(": ~").append(this._text).append("~"); //$NON-NLS-1$ //$NON-NLS-2$
+		sb.append(": ~").append(this.getText()).append("~"); //$NON-NLS-1$ //$NON-NLS-2$
 
 		return sb.toString();
 	}
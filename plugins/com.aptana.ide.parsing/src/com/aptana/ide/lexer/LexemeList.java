@@ -45,13 +45,26 @@ public class LexemeList
 	private transient Lexeme[] _lexemes;
 	private int _size;
 	private Range _affectedRegion;
+	private int _version;
+	private volatile LexemeListSnapshot _snapshot;
 
 	/**
 	 * Create a new instance of LexemeList
 	 */
 	public LexemeList()
 	{
-		this._lexemes = new Lexeme[128];
+		this(128);
+	}
+
+	/**
+	 * Create a new instance of LexemeList
+	 * 
+	 * @param initialCapacity
+	 *            The number of lexemes this list can hold before it needs to grow
+	 */
+	protected LexemeList(int initialCapacity)
+	{
+		this._lexemes = new Lexeme[initialCapacity];
 		this._affectedRegion = new Range();
 	}
 	
@@ -269,6 +282,37 @@ public class LexemeList
 		return result;
 	}
 
+	/**
+	 * Create an immutable copy of the current contents of this list. Sub-classes that do not keep their lexemes in
+	 * the base list need to override this
+	 * 
+	 * @param version
+	 *            The version number to assign to the snapshot
+	 * @return Returns a new snapshot
+	 */
+	protected LexemeListSnapshot createSnapshot(int version)
+	{
+		int size = this._size;
+		int[] offsets = new int[size];
+		int[] lengths = new int[size];
+		IToken[] tokens = new IToken[size];
+		int[] flags = new int[size];
+		Lexeme[] lexemes = new Lexeme[size];
+
+		for (int i = 0; i < size; i++)
+		{
+			Lexeme lexeme = this._lexemes[i];
+
+			offsets[i] = lexeme.offset;
+			lengths[i] = lexeme.length;
+			tokens[i] = lexeme.getToken();
+			flags[i] = lexeme.getFlags();
+			lexemes[i] = lexeme;
+		}
+
+		return new LexemeListSnapshot(version, size, offsets, lengths, tokens, flags, lexemes, null);
+	}
+
 	/**
 	 * Get the range of offsets that have been affected in this lexeme list
 	 * 
@@ -469,6 +513,39 @@ public class LexemeList
 		return result;
 	}
 
+	/**
+	 * Return the most recently published snapshot of this list without taking the list's lock. If nothing has been
+	 * published yet, the current contents are published first
+	 * 
+	 * @return Returns the latest snapshot
+	 */
+	public LexemeListSnapshot getSnapshot()
+	{
+		LexemeListSnapshot result = this._snapshot;
+
+		if (result == null)
+		{
+			result = this.publish();
+		}
+
+		return result;
+	}
+
+	/**
+	 * Publish the current contents of this list as a new snapshot. Parsers call this once they have finished updating
+	 * the list so that readers using {@link #getSnapshot()} see the new version
+	 * 
+	 * @return Returns the newly published snapshot
+	 */
+	synchronized public LexemeListSnapshot publish()
+	{
+		LexemeListSnapshot result = this.createSnapshot(++this._version);
+
+		this._snapshot = result;
+
+		return result;
+	}
+
 	/**
 	 * Remove the specified index from our list of lexemes
 	 * 
@@ -0,0 +1,441 @@
+/**
+ * This file Copyright (c) 2005-2008 Aptana, Inc. This program is
+ * dual-licensed under both the Aptana Public License and the GNU General
+ * Public license. You may elect to use one or the other of these licenses.
+ * 
+ * This program is distributed in the hope that it will be useful, but
+ * AS-IS and WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, TITLE, or
+ * NONINFRINGEMENT. Redistribution, except as permitted by whichever of
+ * the GPL or APL you select, is prohibited.
+ *
+ * 1. For the GPL license (GPL), you can redistribute and/or modify this
+ * program under the terms of the GNU General Public License,
+ * Version 3, as published by the Free Software Foundation.  You should
+ * have received a copy of the GNU General Public License, Version 3 along
+ * with this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * Aptana provides a special exception to allow redistribution of this file
+ * with certain other free and open source software ("FOSS") code and certain additional terms
+ * pursuant to Section 7 of the GPL. You may view the exception and these
+ * terms on the web at http://www.aptana.com/legal/gpl/.
+ * 
+ * 2. For the Aptana Public License (APL), this program and the
+ * accompanying materials are made available under the terms of the APL
+ * v1.0 which accompanies this distribution, and is available at
+ * http://www.aptana.com/legal/apl/.
+ * 
+ * You may view the GPL, Aptana's exception and additional terms, and the
+ * APL in the file titled license.html at the root of the corresponding
+ * plugin containing this source file.
+ * 
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.ide.lexer;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * An immutable copy of a lexeme list as it was when it was published. Readers can query a snapshot without taking the
+ * list's lock while the parser continues to modify the list.
+ * <p>
+ * Offsets, lengths and tokens are copied at publication, so searches and the lexemes handed out always reflect the
+ * published version. The lexemes are copies and never the list's own instances, which the parser keeps moving.
+ * {@link #get(int)} and the accessors built on it return the same copy for an index every time, while
+ * {@link #cloneRange(int, int)} makes new copies on each call. Flags such as highlighting are not part of a version and
+ * are read from the list's lexemes when a copy is made, so cloned ranges show the current highlighting. Code that needs
+ * the list's own lexemes, for example to look them up by identity, must read the list while holding its lock.
+ * 
+ * @author agent (agent@local)
+ */
+public final class LexemeListSnapshot
+{
+	private static final Lexeme[] NO_LEXEMES = new Lexeme[0];
+
+	/**
+	 * A snapshot with no lexemes
+	 */
+	public static final LexemeListSnapshot EMPTY = new LexemeListSnapshot(0, 0, new int[0], new int[0],
+			new IToken[0], new int[0], NO_LEXEMES, null);
+
+	private final int _version;
+	private final int _size;
+	private final int[] _offsets;
+	private final int[] _lengths;
+	private final IToken[] _tokens;
+	private final int[] _flags;
+	private final Lexeme[] _lexemes;
+	private final char[] _source;
+	private final AtomicReferenceArray<Lexeme> _copies;
+
+	/**
+	 * Create a new instance of LexemeListSnapshot. The snapshot takes ownership of the specified arrays
+	 * 
+	 * @param version
+	 *            The version of the list being published
+	 * @param size
+	 *            The number of lexemes in the list
+	 * @param offsets
+	 *            The offset of each lexeme
+	 * @param lengths
+	 *            The length of each lexeme
+	 * @param tokens
+	 *            The token of each lexeme
+	 * @param flags
+	 *            The flags of lexemes without an instance
+	 * @param lexemes
+	 *            The list's lexeme instances. Entries may be null when the list has not created an instance for a
+	 *            lexeme, in which case source cannot be null
+	 * @param source
+	 *            The source text the lexemes refer to or null if each lexeme holds its own text
+	 */
+	LexemeListSnapshot(int version, int size, int[] offsets, int[] lengths, IToken[] tokens, int[] flags,
+			Lexeme[] lexemes, char[] source)
+	{
+		this._version = version;
+		this._size = size;
+		this._offsets = offsets;
+		this._lengths = lengths;
+		this._tokens = tokens;
+		this._flags = flags;
+		this._lexemes = lexemes;
+		this._source = source;
+		this._copies = new AtomicReferenceArray<Lexeme>(size);
+	}
+
+	/**
+	 * Create copies of a range of lexemes as they were when this snapshot was published
+	 * 
+	 * @param startingIndex
+	 *            The starting offset of the range to copy
+	 * @param endingIndex
+	 *            The ending offset of the range to copy. The item at this index is included in the result
+	 * @return Returns an array of the specified elements. An empty array is returned if the range is invalid for this
+	 *         snapshot
+	 */
+	public Lexeme[] cloneRange(int startingIndex, int endingIndex)
+	{
+		Lexeme[] result = NO_LEXEMES;
+
+		if (this.isValidRange(startingIndex, endingIndex))
+		{
+			result = new Lexeme[endingIndex - startingIndex + 1];
+
+			for (int i = startingIndex; i <= endingIndex; i++)
+			{
+				result[i - startingIndex] = this.createLexeme(i);
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Copy a range of lexemes from this snapshot
+	 * 
+	 * @param startingIndex
+	 *            The starting offset of the range to copy
+	 * @param endingIndex
+	 *            The ending offset of the range to copy. The item at this index is included in the result
+	 * @return Returns an array of the specified elements. An empty array is returned if the range is invalid for this
+	 *         snapshot
+	 */
+	public Lexeme[] copyRange(int startingIndex, int endingIndex)
+	{
+		Lexeme[] result = NO_LEXEMES;
+
+		if (this.isValidRange(startingIndex, endingIndex))
+		{
+			result = new Lexeme[endingIndex - startingIndex + 1];
+
+			for (int i = startingIndex; i <= endingIndex; i++)
+			{
+				result[i - startingIndex] = this.get(i);
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Create a new lexeme from the published columns
+	 * 
+	 * @param index
+	 * @return Lexeme
+	 */
+	private Lexeme createLexeme(int index)
+	{
+		Lexeme lexeme = this._lexemes[index];
+		Lexeme result;
+
+		if (this._source != null)
+		{
+			result = new Lexeme(this._tokens[index], this._source, this._offsets[index], this._lengths[index]);
+		}
+		else
+		{
+			result = new Lexeme(this._tokens[index], lexeme.getText(), this._offsets[index]);
+		}
+
+		// highlighting can change between parses, so take the flags from the live lexeme
+		result.setFlags((lexeme != null) ? lexeme.getFlags() : this._flags[index]);
+
+		return result;
+	}
+
+	/**
+	 * Get a copy of the lexeme at the specified index as it was when this snapshot was published. The copy is made on
+	 * the first call and returned again by later calls
+	 * 
+	 * @param index
+	 * @return Returns the lexeme at the specified index or null if the index is out of range
+	 */
+	public Lexeme get(int index)
+	{
+		Lexeme result = null;
+
+		if (0 <= index && index < this._size)
+		{
+			result = this._copies.get(index);
+
+			if (result == null)
+			{
+				// if another reader wins the race, use its copy so every caller sees the same instance
+				this._copies.compareAndSet(index, null, this.createLexeme(index));
+				result = this._copies.get(index);
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * @see LexemeList#getCeilingLexeme(int)
+	 * @param offset
+	 * @return Lexeme
+	 */
+	public Lexeme getCeilingLexeme(int offset)
+	{
+		int index = this.getLexemeCeilingIndex(offset);
+
+		return (index >= 0) ? this.get(index) : null;
+	}
+
+	/**
+	 * @see LexemeList#getFloorLexeme(int)
+	 * @param offset
+	 * @return Lexeme
+	 */
+	public Lexeme getFloorLexeme(int offset)
+	{
+		int index = this.getLexemeFloorIndex(offset);
+
+		return (index >= 0) ? this.get(index) : null;
+	}
+
+	/**
+	 * Get the length of the lexeme at the specified index as of publication
+	 * 
+	 * @param index
+	 * @return int
+	 */
+	public int getLength(int index)
+	{
+		this.checkIndex(index);
+
+		return this._lengths[index];
+	}
+
+	/**
+	 * @see LexemeList#getLexemeCeilingIndex(int)
+	 * @param offset
+	 * @return int
+	 */
+	public int getLexemeCeilingIndex(int offset)
+	{
+		int result = -1;
+
+		if (this._size > 0)
+		{
+			result = this.getLexemeIndex(offset);
+
+			if (result < 0)
+			{
+				// we are in between lexemes, so find the lexeme index to our right
+				result = -(result + 1);
+
+				if (result >= this._size)
+				{
+					result = -1;
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * @see LexemeList#getLexemeFloorIndex(int)
+	 * @param offset
+	 * @return int
+	 */
+	public int getLexemeFloorIndex(int offset)
+	{
+		int result = -1;
+
+		if (this._size > 0)
+		{
+			result = this.getLexemeIndex(offset);
+
+			if (result < 0)
+			{
+				// we are in between lexemes, so find the lexeme index to our left
+				result = -(result + 1) - 1;
+
+				if (result < 0)
+				{
+					result = -1;
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * @see LexemeList#getLexemeFromOffset(int)
+	 * @param offset
+	 * @return Lexeme
+	 */
+	public Lexeme getLexemeFromOffset(int offset)
+	{
+		int index = this.getLexemeIndex(offset);
+
+		return (index >= 0) ? this.get(index) : null;
+	}
+
+	/**
+	 * @see LexemeList#getLexemeIndex(int)
+	 * @param offset
+	 * @return int
+	 */
+	public int getLexemeIndex(int offset)
+	{
+		int[] offsets = this._offsets;
+		int[] lengths = this._lengths;
+		int low = 0;
+		int high = this._size - 1;
+
+		while (low <= high)
+		{
+			int mid = (low + high) >>> 1;
+			int candidate = offsets[mid];
+
+			if (offset < candidate)
+			{
+				high = mid - 1;
+			}
+			else if (candidate + lengths[mid] <= offset)
+			{
+				low = mid + 1;
+			}
+			else
+			{
+				return mid;
+			}
+		}
+
+		return -(low + 1);
+	}
+
+	/**
+	 * Get the offset of the lexeme at the specified index as of publication
+	 * 
+	 * @param index
+	 * @return int
+	 */
+	public int getOffset(int index)
+	{
+		this.checkIndex(index);
+
+		return this._offsets[index];
+	}
+
+	/**
+	 * Get the token of the lexeme at the specified index as of publication
+	 * 
+	 * @param index
+	 * @return IToken
+	 */
+	public IToken getToken(int index)
+	{
+		this.checkIndex(index);
+
+		return this._tokens[index];
+	}
+
+	/**
+	 * Get the version of the list this snapshot was published from. Versions increase with each publication
+	 * 
+	 * @return int
+	 */
+	public int getVersion()
+	{
+		return this._version;
+	}
+
+	/**
+	 * Return the number of lexemes in this snapshot
+	 * 
+	 * @return int
+	 */
+	public int size()
+	{
+		return this._size;
+	}
+
+	/**
+	 * Return the lexemes in this snapshot as an array
+	 * 
+	 * @return Lexeme[]
+	 */
+	public Lexeme[] toArray()
+	{
+		Lexeme[] result = NO_LEXEMES;
+
+		if (this._size > 0)
+		{
+			result = this.copyRange(0, this._size - 1);
+		}
+
+		return result;
+	}
+
+	/**
+	 * checkIndex
+	 * 
+	 * @param index
+	 */
+	private void checkIndex(int index)
+	{
+		if (index < 0 || index >= this._size)
+		{
+			throw new IndexOutOfBoundsException(Integer.toString(index));
+		}
+	}
+
+	/**
+	 * isValidRange
+	 * 
+	 * @param startingIndex
+	 * @param endingIndex
+	 * @return boolean
+	 */
+	private boolean isValidRange(int startingIndex, int endingIndex)
+	{
+		return 0 <= startingIndex && startingIndex < this._size
+			&& 0 <= endingIndex && endingIndex < this._size
+			&& startingIndex <= endingIndex;
+	}
+}
@@ -49,7 +49,8 @@ public class LexerPlugin extends Plugin
 {
 	// The shared instance.
 	private static LexerPlugin plugin;
-	private static String lexerType = "matcher"; //$NON-NLS-1$
+	private static String lexerType;
+	private static Boolean columnarLexemes;
 
 	/**
 	 * The constructor.
@@ -106,7 +107,7 @@ public class LexerPlugin extends Plugin
 
 			if (lexerType == null || lexerType.length() == 0)
 			{
-				lexerType = "code"; //$NON-NLS-1$
+				lexerType = "matcher"; //$NON-NLS-1$
 			}
 		}
 
@@ -295,4 +296,30 @@ public class LexerPlugin extends Plugin
 	{
 		return getLexerType().equals("matcher"); //$NON-NLS-1$
 	}
+
+	/**
+	 * useDFALexer
+	 * 
+	 * @return boolean
+	 */
+	public static boolean useDFALexer()
+	{
+		return getLexerType().equals("dfa"); //$NON-NLS-1$
+	}
+
+	/**
+	 * Determine if parse states should store their lexemes in a ColumnarLexemeList. This is enabled by starting with
+	 * -Daptana.lexemes=columnar
+	 * 
+	 * @return boolean
+	 */
+	public static boolean useColumnarLexemes()
+	{
+		if (columnarLexemes == null)
+		{
+			columnarLexemes = Boolean.valueOf("columnar".equals(System.getProperty("aptana.lexemes"))); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+
+		return columnarLexemes.booleanValue();
+	}
 }
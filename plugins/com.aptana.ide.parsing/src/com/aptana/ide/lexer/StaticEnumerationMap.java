@@ -44,6 +44,7 @@ public class StaticEnumerationMap implements IEnumerationMap
 {
 	private static final String[] NO_STRINGS = new String[0];
 	
+	private Class<?> _enumeration;
 	private Method _getIntValueMethod;
 	private Method _getNameMethod;
 	private Method _getNamesMethod;
@@ -60,6 +61,8 @@ public class StaticEnumerationMap implements IEnumerationMap
 			throw new IllegalArgumentException(Messages.StaticEnumerationMap_Enumeration_Class_Not_Defined);
 		}
 		
+		this._enumeration = enumeration;
+		
 		// find getIntValue and getName methods
 		Method[] methods = enumeration.getMethods();
 		
@@ -99,6 +102,16 @@ public class StaticEnumerationMap implements IEnumerationMap
 		}
 	}
 
+	/**
+	 * getEnumerationClass
+	 * 
+	 * @return Returns the class this map delegates to
+	 */
+	public Class<?> getEnumerationClass()
+	{
+		return this._enumeration;
+	}
+
 	/**
 	 * @see com.aptana.ide.lexer.IEnumerationMap#getIntValue(java.lang.String)
 	 */
@@ -125,6 +125,26 @@ public class IdentifierMatcher extends AbstractTextMatcher
 		return result;
 	}
 
+	/**
+	 * getPartCharacters
+	 *
+	 * @return Returns the sorted list of additional characters allowed after the first character
+	 */
+	public char[] getPartCharacters()
+	{
+		return this._partCharacters;
+	}
+
+	/**
+	 * getStartCharacters
+	 *
+	 * @return Returns the sorted list of additional characters allowed as the first character
+	 */
+	public char[] getStartCharacters()
+	{
+		return this._startCharacters;
+	}
+
 	/**
 	 * setPartCharacters
 	 *
@@ -0,0 +1,275 @@
+/**
+ * This file Copyright (c) 2005-2008 Aptana, Inc. This program is
+ * dual-licensed under both the Aptana Public License and the GNU General
+ * Public license. You may elect to use one or the other of these licenses.
+ * 
+ * This program is distributed in the hope that it will be useful, but
+ * AS-IS and WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, TITLE, or
+ * NONINFRINGEMENT. Redistribution, except as permitted by whichever of
+ * the GPL or APL you select, is prohibited.
+ *
+ * 1. For the GPL license (GPL), you can redistribute and/or modify this
+ * program under the terms of the GNU General Public License,
+ * Version 3, as published by the Free Software Foundation.  You should
+ * have received a copy of the GNU General Public License, Version 3 along
+ * with this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * Aptana provides a special exception to allow redistribution of this file
+ * with certain other free and open source software ("FOSS") code and certain additional terms
+ * pursuant to Section 7 of the GPL. You may view the exception and these
+ * terms on the web at http://www.aptana.com/legal/gpl/.
+ * 
+ * 2. For the Aptana Public License (APL), this program and the
+ * accompanying materials are made available under the terms of the APL
+ * v1.0 which accompanies this distribution, and is available at
+ * http://www.aptana.com/legal/apl/.
+ * 
+ * You may view the GPL, Aptana's exception and additional terms, and the
+ * APL in the file titled license.html at the root of the corresponding
+ * plugin containing this source file.
+ * 
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.ide.lexer.matcher;
+
+import com.aptana.ide.lexer.IToken;
+
+/**
+ * A token group compiled into flat transition tables. Children of the group that could not be compiled are kept in
+ * the matcher tree and are tried before the DFA's result whenever they precede it in document order.
+ * 
+ * @author agent (agent@local)
+ */
+public class MatcherDFA
+{
+	private OrMatcher _group;
+	private IToken[] _tokens;
+	private ITextMatcher[] _fallbacks;
+	private int[] _fallbackIndexes;
+	private MatcherMap _fallbackMap;
+	private int[] _symbolClasses;
+	private int _classCount;
+	private int[] _transitions;
+	private int[] _accepts;
+	private IToken _matchedToken;
+
+	/**
+	 * MatcherDFA
+	 * 
+	 * @param group
+	 *            The group this DFA was compiled from
+	 * @param tokens
+	 *            The token for each compiled child, indexed by child position
+	 * @param fallbacks
+	 *            The children that could not be compiled, in document order
+	 * @param fallbackIndexes
+	 *            The child position of each fallback matcher
+	 * @param symbolClasses
+	 *            The transition column used for each input symbol
+	 * @param classCount
+	 *            The number of transition columns
+	 * @param transitions
+	 *            The next state for each state and column or -1
+	 * @param accepts
+	 *            The child position accepted by each state or -1
+	 */
+	MatcherDFA(OrMatcher group, IToken[] tokens, ITextMatcher[] fallbacks, int[] fallbackIndexes, int[] symbolClasses,
+			int classCount, int[] transitions, int[] accepts)
+	{
+		this._group = group;
+		this._tokens = tokens;
+		this._fallbacks = fallbacks;
+		this._fallbackIndexes = fallbackIndexes;
+		this._symbolClasses = symbolClasses;
+		this._classCount = classCount;
+		this._transitions = transitions;
+		this._accepts = accepts;
+
+		if (fallbacks.length > 0)
+		{
+			MatcherMap map = new MatcherMap();
+
+			for (int i = 0; i < fallbacks.length; i++)
+			{
+				fallbacks[i].addFirstCharacters(map);
+			}
+
+			map.setSealed();
+
+			this._fallbackMap = map;
+		}
+	}
+
+	/**
+	 * Return the number of children matched by the DFA
+	 * 
+	 * @return int
+	 */
+	public int getCompiledCount()
+	{
+		return this._tokens.length - this._fallbacks.length;
+	}
+
+	/**
+	 * Return the number of children left to the matcher tree
+	 * 
+	 * @return int
+	 */
+	public int getFallbackCount()
+	{
+		return this._fallbacks.length;
+	}
+
+	/**
+	 * Return the token of the last successful match
+	 * 
+	 * @return IToken or null
+	 */
+	public IToken getMatchedToken()
+	{
+		return this._matchedToken;
+	}
+
+	/**
+	 * Return the number of DFA states
+	 * 
+	 * @return int
+	 */
+	public int getStateCount()
+	{
+		return this._accepts.length;
+	}
+
+	/**
+	 * Find the position of the specified fallback matcher within the group
+	 * 
+	 * @param matcher
+	 * @return int
+	 */
+	private int getFallbackIndex(ITextMatcher matcher)
+	{
+		for (int i = 0; i < this._fallbacks.length; i++)
+		{
+			if (this._fallbacks[i] == matcher)
+			{
+				return this._fallbackIndexes[i];
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Return the input symbol for a character above Latin-1
+	 * 
+	 * @param c
+	 * @return int
+	 */
+	private static int getWideSymbol(char c)
+	{
+		int flags = 0;
+
+		if (Character.isLetter(c))
+		{
+			flags |= MatcherDFABuilder.WIDE_LETTER;
+		}
+		else if (Character.isDigit(c))
+		{
+			flags |= MatcherDFABuilder.WIDE_DIGIT;
+		}
+
+		if (Character.isWhitespace(c))
+		{
+			flags |= MatcherDFABuilder.WIDE_WHITESPACE;
+		}
+
+		return MatcherDFABuilder.WIDE_SYMBOL_BASE + flags;
+	}
+
+	/**
+	 * Match the group at the specified offset
+	 * 
+	 * @param source
+	 * @param offset
+	 * @param eofOffset
+	 * @return Returns the offset where the match ended or -1 if no match occurred
+	 */
+	public int match(char[] source, int offset, int eofOffset)
+	{
+		int[] symbolClasses = this._symbolClasses;
+		int[] transitions = this._transitions;
+		int[] accepts = this._accepts;
+		int classCount = this._classCount;
+
+		int best = accepts[0];
+		int bestEnd = (best != -1) ? offset : -1;
+		int state = 0;
+		int position = offset;
+
+		if (best == -1)
+		{
+			best = Integer.MAX_VALUE;
+		}
+
+		// run until the DFA dies, remembering the longest match of the earliest child
+		while (position < eofOffset)
+		{
+			char c = source[position];
+			int symbol = (c < MatcherDFABuilder.WIDE_SYMBOL_BASE) ? c : getWideSymbol(c);
+
+			state = transitions[state * classCount + symbolClasses[symbol]];
+
+			if (state == -1)
+			{
+				break;
+			}
+
+			position++;
+
+			int accept = accepts[state];
+
+			if (accept != -1 && accept <= best)
+			{
+				best = accept;
+				bestEnd = position;
+			}
+		}
+
+		// matchers we could not compile win if they come first in the group
+		if (this._fallbackMap != null)
+		{
+			ITextMatcher[] candidates = (offset < eofOffset) ? this._fallbackMap.getMatchers(source[offset])
+					: this._fallbackMap.getUncategorizedMatchers();
+
+			for (int i = 0; i < candidates.length; i++)
+			{
+				ITextMatcher candidate = candidates[i];
+
+				if (this.getFallbackIndex(candidate) < best)
+				{
+					int result = candidate.match(source, offset, eofOffset);
+
+					if (result != -1)
+					{
+						this._matchedToken = this._group.getMatchedToken();
+
+						return result;
+					}
+				}
+			}
+		}
+
+		if (bestEnd != -1)
+		{
+			this._matchedToken = this._tokens[best];
+		}
+		else
+		{
+			this._matchedToken = null;
+		}
+
+		return bestEnd;
+	}
+}
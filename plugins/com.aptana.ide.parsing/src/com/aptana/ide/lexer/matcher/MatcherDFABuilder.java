@@ -0,0 +1,1075 @@
+/**
+ * This file Copyright (c) 2005-2008 Aptana, Inc. This program is
+ * dual-licensed under both the Aptana Public License and the GNU General
+ * Public license. You may elect to use one or the other of these licenses.
+ * 
+ * This program is distributed in the hope that it will be useful, but
+ * AS-IS and WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, TITLE, or
+ * NONINFRINGEMENT. Redistribution, except as permitted by whichever of
+ * the GPL or APL you select, is prohibited.
+ *
+ * 1. For the GPL license (GPL), you can redistribute and/or modify this
+ * program under the terms of the GNU General Public License,
+ * Version 3, as published by the Free Software Foundation.  You should
+ * have received a copy of the GNU General Public License, Version 3 along
+ * with this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * Aptana provides a special exception to allow redistribution of this file
+ * with certain other free and open source software ("FOSS") code and certain additional terms
+ * pursuant to Section 7 of the GPL. You may view the exception and these
+ * terms on the web at http://www.aptana.com/legal/gpl/.
+ * 
+ * 2. For the Aptana Public License (APL), this program and the
+ * accompanying materials are made available under the terms of the APL
+ * v1.0 which accompanies this distribution, and is available at
+ * http://www.aptana.com/legal/apl/.
+ * 
+ * You may view the GPL, Aptana's exception and additional terms, and the
+ * APL in the file titled license.html at the root of the corresponding
+ * plugin containing this source file.
+ * 
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.ide.lexer.matcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.aptana.ide.lexer.IToken;
+
+/**
+ * Compiles the matchers of a token group into a single table-driven DFA.
+ * <p>
+ * The matcher tree tries each child of a group in document order and each matcher consumes greedily without
+ * backtracking. A longest-match DFA only returns the same result when a child's expression can be matched
+ * deterministically with a single character of lookahead, so only those children are compiled. Everything else
+ * (lookahead, here-documents, named captures, unbounded repetitions of nullable expressions, and so on) is left in the
+ * matcher tree and MatcherDFA falls back to it in document order.
+ * 
+ * @author agent (agent@local)
+ */
+public class MatcherDFABuilder
+{
+	/**
+	 * Input symbols 0-255 are the Latin-1 characters. Characters above Latin-1 are reduced to one of eight symbols
+	 * based on whether they are letters, digits, and/or whitespace
+	 */
+	static final int WIDE_SYMBOL_BASE = 256;
+
+	/**
+	 * Wide symbol flag for Character.isLetter
+	 */
+	static final int WIDE_LETTER = 1;
+
+	/**
+	 * Wide symbol flag for Character.isDigit
+	 */
+	static final int WIDE_DIGIT = 2;
+
+	/**
+	 * Wide symbol flag for Character.isWhitespace
+	 */
+	static final int WIDE_WHITESPACE = 4;
+
+	/**
+	 * The total number of input symbols
+	 */
+	static final int SYMBOL_COUNT = WIDE_SYMBOL_BASE + 8;
+
+	private static final int MAX_REPETITIONS = 32;
+	private static final int MAX_STATES = 8192;
+
+	private static final int SET = 0;
+	private static final int SEQUENCE = 1;
+	private static final int CHOICE = 2;
+	private static final int STAR = 3;
+	private static final int OPTIONAL = 4;
+
+	private static BitSet wideLowerCaseAliases;
+
+	/**
+	 * A regular expression over input symbols built from a matcher tree
+	 */
+	private static final class Expression
+	{
+		final int kind;
+		final BitSet symbols;
+		final Expression[] children;
+		final boolean nullable;
+		final BitSet first;
+
+		Expression(BitSet symbols)
+		{
+			this.kind = SET;
+			this.symbols = symbols;
+			this.children = new Expression[0];
+			this.nullable = false;
+			this.first = symbols;
+		}
+
+		Expression(int kind, Expression[] children)
+		{
+			BitSet first = new BitSet(SYMBOL_COUNT);
+			boolean nullable;
+
+			switch (kind)
+			{
+				case SEQUENCE:
+					nullable = true;
+
+					for (int i = 0; i < children.length && nullable; i++)
+					{
+						first.or(children[i].first);
+						nullable = children[i].nullable;
+					}
+					break;
+
+				case CHOICE:
+					nullable = false;
+
+					for (int i = 0; i < children.length; i++)
+					{
+						first.or(children[i].first);
+						nullable |= children[i].nullable;
+					}
+					break;
+
+				default:
+					nullable = true;
+					first.or(children[0].first);
+					break;
+			}
+
+			this.kind = kind;
+			this.symbols = null;
+			this.children = children;
+			this.nullable = nullable;
+			this.first = first;
+		}
+	}
+
+	/**
+	 * An NFA state with at most one symbol transition and any number of epsilon transitions
+	 */
+	private static final class State
+	{
+		BitSet symbols;
+		int target = -1;
+		int[] epsilons = new int[0];
+		int acceptIndex = -1;
+
+		void addEpsilon(int state)
+		{
+			int[] epsilons = new int[this.epsilons.length + 1];
+
+			System.arraycopy(this.epsilons, 0, epsilons, 0, this.epsilons.length);
+			epsilons[this.epsilons.length] = state;
+
+			this.epsilons = epsilons;
+		}
+	}
+
+	private List<State> _states;
+	private int _fragmentEnd;
+
+	/**
+	 * MatcherDFABuilder
+	 */
+	public MatcherDFABuilder()
+	{
+	}
+
+	/**
+	 * Compile the children of the specified group
+	 * 
+	 * @param group
+	 *            The group's matchers
+	 * @return Returns the compiled group or null if none of the group's children could be compiled
+	 */
+	public MatcherDFA build(OrMatcher group)
+	{
+		int childCount = group.getChildCount();
+		Expression[] expressions = new Expression[childCount];
+		IToken[] tokens = new IToken[childCount];
+		List<ITextMatcher> fallbacks = new ArrayList<ITextMatcher>();
+		List<Integer> fallbackIndexes = new ArrayList<Integer>();
+
+		for (int i = 0; i < childCount; i++)
+		{
+			ITextMatcher child = (ITextMatcher) group.getChild(i);
+			Expression expression = null;
+
+			// the token of the outermost matcher wins, so nested tokens do not matter
+			if (child instanceof AbstractTextMatcher && ((AbstractTextMatcher) child).getToken() != null)
+			{
+				expression = this.createExpression(child);
+
+				if (expression != null && this.isDeterministic(expression, new BitSet(SYMBOL_COUNT)) == false)
+				{
+					expression = null;
+				}
+			}
+
+			if (expression != null)
+			{
+				expressions[i] = expression;
+				tokens[i] = ((AbstractTextMatcher) child).getToken();
+			}
+			else
+			{
+				fallbacks.add(child);
+				fallbackIndexes.add(i);
+			}
+		}
+
+		if (fallbacks.size() == childCount)
+		{
+			return null;
+		}
+
+		// build NFA with one accepting state per compiled child
+		this._states = new ArrayList<State>();
+
+		int start = this.createState();
+
+		for (int i = 0; i < childCount; i++)
+		{
+			if (expressions[i] != null)
+			{
+				int childStart = this.createFragment(expressions[i]);
+
+				this._states.get(start).addEpsilon(childStart);
+				this._states.get(this._fragmentEnd).acceptIndex = i;
+			}
+		}
+
+		// group input symbols that behave identically in every transition
+		int[] symbolClasses = new int[SYMBOL_COUNT];
+		int[] representatives = this.createSymbolClasses(symbolClasses);
+		int classCount = representatives.length;
+
+		// subset construction
+		List<BitSet> dfaStates = new ArrayList<BitSet>();
+		Map<BitSet,Integer> dfaIndexes = new HashMap<BitSet,Integer>();
+		List<int[]> rows = new ArrayList<int[]>();
+		BitSet startSet = new BitSet();
+
+		startSet.set(start);
+		this.closure(startSet);
+		dfaStates.add(startSet);
+		dfaIndexes.put(startSet, 0);
+
+		for (int index = 0; index < dfaStates.size(); index++)
+		{
+			BitSet current = dfaStates.get(index);
+			int[] row = new int[classCount];
+
+			for (int symbolClass = 0; symbolClass < classCount; symbolClass++)
+			{
+				int symbol = representatives[symbolClass];
+				BitSet next = new BitSet();
+
+				for (int i = current.nextSetBit(0); i >= 0; i = current.nextSetBit(i + 1))
+				{
+					State state = this._states.get(i);
+
+					if (state.symbols != null && state.symbols.get(symbol))
+					{
+						next.set(state.target);
+					}
+				}
+
+				if (next.isEmpty())
+				{
+					row[symbolClass] = -1;
+				}
+				else
+				{
+					this.closure(next);
+
+					Integer target = dfaIndexes.get(next);
+
+					if (target == null)
+					{
+						if (dfaStates.size() == MAX_STATES)
+						{
+							return null;
+						}
+
+						target = Integer.valueOf(dfaStates.size());
+						dfaStates.add(next);
+						dfaIndexes.put(next, target);
+					}
+
+					row[symbolClass] = target.intValue();
+				}
+			}
+
+			rows.add(row);
+		}
+
+		// flatten tables
+		int stateCount = dfaStates.size();
+		int[] transitions = new int[stateCount * classCount];
+		int[] accepts = new int[stateCount];
+
+		for (int index = 0; index < stateCount; index++)
+		{
+			BitSet current = dfaStates.get(index);
+			int acceptIndex = -1;
+
+			System.arraycopy(rows.get(index), 0, transitions, index * classCount, classCount);
+
+			// the earliest child in document order wins
+			for (int i = current.nextSetBit(0); i >= 0; i = current.nextSetBit(i + 1))
+			{
+				int candidate = this._states.get(i).acceptIndex;
+
+				if (candidate != -1 && (acceptIndex == -1 || candidate < acceptIndex))
+				{
+					acceptIndex = candidate;
+				}
+			}
+
+			accepts[index] = acceptIndex;
+		}
+
+		this._states = null;
+
+		int[] indexes = new int[fallbackIndexes.size()];
+
+		for (int i = 0; i < indexes.length; i++)
+		{
+			indexes[i] = fallbackIndexes.get(i).intValue();
+		}
+
+		return new MatcherDFA(
+			group,
+			tokens,
+			fallbacks.toArray(new ITextMatcher[fallbacks.size()]),
+			indexes,
+			symbolClasses,
+			classCount,
+			transitions,
+			accepts
+		);
+	}
+
+	/**
+	 * Add all states reachable by epsilon transitions to the specified set
+	 * 
+	 * @param set
+	 */
+	private void closure(BitSet set)
+	{
+		int[] stack = new int[this._states.size()];
+		int top = 0;
+
+		for (int i = set.nextSetBit(0); i >= 0; i = set.nextSetBit(i + 1))
+		{
+			stack[top++] = i;
+		}
+
+		while (top > 0)
+		{
+			int[] epsilons = this._states.get(stack[--top]).epsilons;
+
+			for (int i = 0; i < epsilons.length; i++)
+			{
+				int target = epsilons[i];
+
+				if (set.get(target) == false)
+				{
+					set.set(target);
+					stack[top++] = target;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Create a symbol set for a single-character matcher
+	 * 
+	 * @param matcher
+	 * @return Returns the set of matching symbols or null if the matcher cannot be compiled
+	 */
+	private BitSet createCharacterSet(AbstractCharacterMatcher matcher)
+	{
+		Class<?> type = matcher.getClass();
+		int wideMask = 0;
+
+		if (type == CharacterMatcher.class)
+		{
+			if (((CharacterMatcher) matcher).getCharacter() >= WIDE_SYMBOL_BASE)
+			{
+				return null;
+			}
+		}
+		else if (type == CharacterClassMatcher.class)
+		{
+			char[] characters = ((CharacterClassMatcher) matcher).getCharacters();
+
+			for (int i = 0; i < characters.length; i++)
+			{
+				if (characters[i] >= WIDE_SYMBOL_BASE)
+				{
+					return null;
+				}
+			}
+		}
+		else if (type == LetterMatcher.class)
+		{
+			wideMask = WIDE_LETTER;
+		}
+		else if (type == DigitMatcher.class)
+		{
+			wideMask = WIDE_DIGIT;
+		}
+		else if (type == LetterOrDigitMatcher.class)
+		{
+			wideMask = WIDE_LETTER | WIDE_DIGIT;
+		}
+		else if (type == WhitespaceMatcher.class)
+		{
+			wideMask = WIDE_WHITESPACE;
+		}
+		else if (type != HexMatcher.class)
+		{
+			return null;
+		}
+
+		BitSet result = new BitSet(SYMBOL_COUNT);
+
+		for (int c = 0; c < WIDE_SYMBOL_BASE; c++)
+		{
+			if (matcher.matchCharacter((char) c))
+			{
+				result.set(c);
+			}
+		}
+
+		for (int flags = 0; flags < SYMBOL_COUNT - WIDE_SYMBOL_BASE; flags++)
+		{
+			if ((flags & wideMask) != 0)
+			{
+				result.set(WIDE_SYMBOL_BASE + flags);
+			}
+		}
+
+		if (matcher.getNegate())
+		{
+			result.flip(0, SYMBOL_COUNT);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Convert a matcher tree into an expression
+	 * 
+	 * @param matcher
+	 * @return Returns the expression or null if the matcher cannot be compiled
+	 */
+	private Expression createExpression(ITextMatcher matcher)
+	{
+		if (matcher instanceof AbstractTextMatcher == false)
+		{
+			return null;
+		}
+
+		// named matchers publish their text as a side-effect
+		String name = ((AbstractTextMatcher) matcher).getName();
+
+		if (name != null && name.length() > 0)
+		{
+			return null;
+		}
+
+		Class<?> type = matcher.getClass();
+		Expression result = null;
+
+		if (matcher instanceof AbstractCharacterMatcher)
+		{
+			BitSet symbols = this.createCharacterSet((AbstractCharacterMatcher) matcher);
+
+			if (symbols != null)
+			{
+				result = new Expression(symbols);
+			}
+		}
+		else if (type == StringMatcher.class)
+		{
+			result = this.createStringExpression((StringMatcher) matcher);
+		}
+		else if (type == IdentifierMatcher.class)
+		{
+			result = this.createIdentifierExpression((IdentifierMatcher) matcher);
+		}
+		else if (type == LineTerminatorMatcher.class)
+		{
+			result = this.createLineTerminatorExpression();
+		}
+		else if (type == RegexMatcher.class)
+		{
+			ITextMatcher root = ((RegexMatcher) matcher).getRoot();
+
+			if (root != null)
+			{
+				result = this.createExpression(root);
+			}
+		}
+		else if (type == AndMatcher.class || type == OrMatcher.class)
+		{
+			Expression[] children = this.createChildExpressions(matcher);
+
+			if (children != null && children.length > 0)
+			{
+				result = new Expression((type == AndMatcher.class) ? SEQUENCE : CHOICE, children);
+			}
+		}
+		else if (type == OptionalMatcher.class || type == ZeroOrMoreMatcher.class)
+		{
+			Expression child = this.createOnlyChildExpression(matcher);
+
+			if (child != null)
+			{
+				result = new Expression((type == OptionalMatcher.class) ? OPTIONAL : STAR, new Expression[] { child });
+			}
+		}
+		else if (type == OneOrMoreMatcher.class)
+		{
+			Expression child = this.createOnlyChildExpression(matcher);
+			Expression repeat = this.createOnlyChildExpression(matcher);
+
+			if (child != null && repeat != null)
+			{
+				result = new Expression(SEQUENCE, new Expression[] {
+					child,
+					new Expression(STAR, new Expression[] { repeat })
+				});
+			}
+		}
+		else if (type == RepetitionMatcher.class)
+		{
+			result = this.createRepetitionExpression((RepetitionMatcher) matcher);
+		}
+
+		return result;
+	}
+
+	/**
+	 * createChildExpressions
+	 * 
+	 * @param matcher
+	 * @return Returns the expressions for each child or null if any child cannot be compiled
+	 */
+	private Expression[] createChildExpressions(ITextMatcher matcher)
+	{
+		Expression[] result = new Expression[matcher.getChildCount()];
+
+		for (int i = 0; i < result.length; i++)
+		{
+			Object child = matcher.getChild(i);
+
+			if (child instanceof ITextMatcher == false)
+			{
+				return null;
+			}
+
+			result[i] = this.createExpression((ITextMatcher) child);
+
+			if (result[i] == null)
+			{
+				return null;
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Create an NFA fragment for the specified expression
+	 * 
+	 * @param expression
+	 * @return Returns the fragment's start state. The end state is left in _fragmentEnd
+	 */
+	private int createFragment(Expression expression)
+	{
+		int start;
+		int end;
+
+		switch (expression.kind)
+		{
+			case SET:
+				start = this.createState();
+				end = this.createState();
+
+				this._states.get(start).symbols = expression.symbols;
+				this._states.get(start).target = end;
+				break;
+
+			case SEQUENCE:
+				start = this.createState();
+				end = start;
+
+				for (int i = 0; i < expression.children.length; i++)
+				{
+					int childStart = this.createFragment(expression.children[i]);
+
+					this._states.get(end).addEpsilon(childStart);
+					end = this._fragmentEnd;
+				}
+				break;
+
+			case CHOICE:
+				start = this.createState();
+				end = this.createState();
+
+				for (int i = 0; i < expression.children.length; i++)
+				{
+					int childStart = this.createFragment(expression.children[i]);
+
+					this._states.get(start).addEpsilon(childStart);
+					this._states.get(this._fragmentEnd).addEpsilon(end);
+				}
+				break;
+
+			default:
+				start = this.createState();
+				end = this.createState();
+
+				int childStart = this.createFragment(expression.children[0]);
+				int childEnd = this._fragmentEnd;
+
+				this._states.get(start).addEpsilon(childStart);
+				this._states.get(start).addEpsilon(end);
+				this._states.get(childEnd).addEpsilon(end);
+
+				if (expression.kind == STAR)
+				{
+					this._states.get(childEnd).addEpsilon(childStart);
+				}
+				break;
+		}
+
+		this._fragmentEnd = end;
+
+		return start;
+	}
+
+	/**
+	 * createIdentifierExpression
+	 * 
+	 * @param matcher
+	 * @return Returns the expression or null if the matcher uses characters above Latin-1
+	 */
+	private Expression createIdentifierExpression(IdentifierMatcher matcher)
+	{
+		char[] startCharacters = matcher.getStartCharacters();
+		char[] partCharacters = matcher.getPartCharacters();
+		BitSet start = new BitSet(SYMBOL_COUNT);
+		BitSet part = new BitSet(SYMBOL_COUNT);
+
+		if (this.hasWideCharacters(startCharacters) || this.hasWideCharacters(partCharacters))
+		{
+			return null;
+		}
+
+		for (int c = 0; c < WIDE_SYMBOL_BASE; c++)
+		{
+			char ch = (char) c;
+
+			if (Character.isLetter(ch) || Arrays.binarySearch(startCharacters, ch) >= 0)
+			{
+				start.set(c);
+			}
+			if (Character.isLetterOrDigit(ch) || Arrays.binarySearch(partCharacters, ch) >= 0)
+			{
+				part.set(c);
+			}
+		}
+
+		for (int flags = 0; flags < SYMBOL_COUNT - WIDE_SYMBOL_BASE; flags++)
+		{
+			if ((flags & WIDE_LETTER) != 0)
+			{
+				start.set(WIDE_SYMBOL_BASE + flags);
+			}
+			if ((flags & (WIDE_LETTER | WIDE_DIGIT)) != 0)
+			{
+				part.set(WIDE_SYMBOL_BASE + flags);
+			}
+		}
+
+		return new Expression(SEQUENCE, new Expression[] {
+			new Expression(start),
+			new Expression(STAR, new Expression[] { new Expression(part) })
+		});
+	}
+
+	/**
+	 * Create the expression \r\n?|\n used by LineTerminatorMatcher
+	 * 
+	 * @return Expression
+	 */
+	private Expression createLineTerminatorExpression()
+	{
+		BitSet cr = new BitSet(SYMBOL_COUNT);
+		BitSet lf = new BitSet(SYMBOL_COUNT);
+
+		cr.set('\r');
+		lf.set('\n');
+
+		return new Expression(CHOICE, new Expression[] {
+			new Expression(SEQUENCE, new Expression[] {
+				new Expression(cr),
+				new Expression(OPTIONAL, new Expression[] { new Expression(lf) })
+			}),
+			new Expression(lf)
+		});
+	}
+
+	/**
+	 * createOnlyChildExpression
+	 * 
+	 * @param matcher
+	 * @return Returns the expression for the matcher's only child or null
+	 */
+	private Expression createOnlyChildExpression(ITextMatcher matcher)
+	{
+		Expression result = null;
+
+		if (matcher.getChildCount() == 1 && matcher.getChild(0) instanceof ITextMatcher)
+		{
+			result = this.createExpression((ITextMatcher) matcher.getChild(0));
+		}
+
+		return result;
+	}
+
+	/**
+	 * Expand a bounded repetition into a sequence of required and nested optional copies of its child
+	 * 
+	 * @param matcher
+	 * @return Returns the expression or null
+	 */
+	private Expression createRepetitionExpression(RepetitionMatcher matcher)
+	{
+		int min = matcher.getMin();
+		int max = Math.max(min, matcher.getMax());
+		boolean unbounded = (max == RepetitionMatcher.INFINITY);
+
+		if (min < 0 || ((unbounded) ? min + 1 : max) > MAX_REPETITIONS)
+		{
+			return null;
+		}
+
+		List<Expression> items = new ArrayList<Expression>();
+
+		for (int i = 0; i < min; i++)
+		{
+			Expression child = this.createOnlyChildExpression(matcher);
+
+			if (child == null)
+			{
+				return null;
+			}
+
+			items.add(child);
+		}
+
+		if (unbounded)
+		{
+			Expression child = this.createOnlyChildExpression(matcher);
+
+			if (child == null)
+			{
+				return null;
+			}
+
+			items.add(new Expression(STAR, new Expression[] { child }));
+		}
+		else
+		{
+			Expression tail = null;
+
+			for (int i = max - min; i > 0; i--)
+			{
+				Expression child = this.createOnlyChildExpression(matcher);
+
+				if (child == null)
+				{
+					return null;
+				}
+
+				if (tail != null)
+				{
+					child = new Expression(SEQUENCE, new Expression[] { child, tail });
+				}
+
+				tail = new Expression(OPTIONAL, new Expression[] { child });
+			}
+
+			if (tail != null)
+			{
+				items.add(tail);
+			}
+		}
+
+		return new Expression(SEQUENCE, items.toArray(new Expression[items.size()]));
+	}
+
+	/**
+	 * createState
+	 * 
+	 * @return Returns the index of the new NFA state
+	 */
+	private int createState()
+	{
+		this._states.add(new State());
+
+		return this._states.size() - 1;
+	}
+
+	/**
+	 * createStringExpression
+	 * 
+	 * @param matcher
+	 * @return Returns the expression or null if the string cannot be compiled
+	 */
+	private Expression createStringExpression(StringMatcher matcher)
+	{
+		char[] characters = matcher.getCharacters();
+
+		if (characters == null || characters.length == 0 || this.hasWideCharacters(characters))
+		{
+			return null;
+		}
+
+		Expression[] items = new Expression[characters.length];
+
+		for (int i = 0; i < characters.length; i++)
+		{
+			char c = characters[i];
+			BitSet symbols = new BitSet(SYMBOL_COUNT);
+
+			if (matcher.getCaseInsensitive())
+			{
+				// some characters above Latin-1 lower-case into Latin-1 (KELVIN SIGN to 'k', for example)
+				if (getWideLowerCaseAliases().get(c))
+				{
+					return null;
+				}
+
+				for (int candidate = 0; candidate < WIDE_SYMBOL_BASE; candidate++)
+				{
+					if (Character.toLowerCase((char) candidate) == c)
+					{
+						symbols.set(candidate);
+					}
+				}
+			}
+			else
+			{
+				symbols.set(c);
+			}
+
+			items[i] = new Expression(symbols);
+		}
+
+		return new Expression(SEQUENCE, items);
+	}
+
+	/**
+	 * Create equivalence classes for all input symbols
+	 * 
+	 * @param symbolClasses
+	 *            Receives the class of each symbol
+	 * @return Returns one representative symbol per class
+	 */
+	private int[] createSymbolClasses(int[] symbolClasses)
+	{
+		List<BitSet> sets = new ArrayList<BitSet>();
+
+		for (int i = 0; i < this._states.size(); i++)
+		{
+			BitSet symbols = this._states.get(i).symbols;
+
+			if (symbols != null && sets.contains(symbols) == false)
+			{
+				sets.add(symbols);
+			}
+		}
+
+		Map<BitSet,Integer> classes = new HashMap<BitSet,Integer>();
+		List<Integer> representatives = new ArrayList<Integer>();
+
+		for (int symbol = 0; symbol < SYMBOL_COUNT; symbol++)
+		{
+			BitSet signature = new BitSet(sets.size());
+
+			for (int i = 0; i < sets.size(); i++)
+			{
+				if (sets.get(i).get(symbol))
+				{
+					signature.set(i);
+				}
+			}
+
+			Integer symbolClass = classes.get(signature);
+
+			if (symbolClass == null)
+			{
+				symbolClass = Integer.valueOf(representatives.size());
+				classes.put(signature, symbolClass);
+				representatives.add(symbol);
+			}
+
+			symbolClasses[symbol] = symbolClass.intValue();
+		}
+
+		int[] result = new int[representatives.size()];
+
+		for (int i = 0; i < result.length; i++)
+		{
+			result[i] = representatives.get(i).intValue();
+		}
+
+		return result;
+	}
+
+	/**
+	 * Return the set of Latin-1 characters that some character above Latin-1 lower-cases to
+	 * 
+	 * @return BitSet
+	 */
+	private static synchronized BitSet getWideLowerCaseAliases()
+	{
+		if (wideLowerCaseAliases == null)
+		{
+			BitSet result = new BitSet(WIDE_SYMBOL_BASE);
+
+			for (int c = WIDE_SYMBOL_BASE; c <= Character.MAX_VALUE; c++)
+			{
+				char lower = Character.toLowerCase((char) c);
+
+				if (lower < WIDE_SYMBOL_BASE)
+				{
+					result.set(lower);
+				}
+			}
+
+			wideLowerCaseAliases = result;
+		}
+
+		return wideLowerCaseAliases;
+	}
+
+	/**
+	 * hasWideCharacters
+	 * 
+	 * @param characters
+	 * @return Returns true if any of the characters is above Latin-1
+	 */
+	private boolean hasWideCharacters(char[] characters)
+	{
+		for (int i = 0; i < characters.length; i++)
+		{
+			if (characters[i] >= WIDE_SYMBOL_BASE)
+			{
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Determine if the longest match of an expression is the same as the greedy, non-backtracking match performed by
+	 * the matcher tree. This holds when no choice point ever has more than one viable alternative for the next input
+	 * character.
+	 * 
+	 * @param expression
+	 * @param follow
+	 *            The symbols that may follow the expression within the same token
+	 * @return boolean
+	 */
+	private boolean isDeterministic(Expression expression, BitSet follow)
+	{
+		Expression[] children = expression.children;
+
+		switch (expression.kind)
+		{
+			case SET:
+				return true;
+
+			case SEQUENCE:
+				BitSet childFollow = follow;
+
+				for (int i = children.length - 1; i >= 0; i--)
+				{
+					Expression child = children[i];
+
+					if (this.isDeterministic(child, childFollow) == false)
+					{
+						return false;
+					}
+
+					if (child.nullable)
+					{
+						BitSet union = (BitSet) child.first.clone();
+
+						union.or(childFollow);
+						childFollow = union;
+					}
+					else
+					{
+						childFollow = child.first;
+					}
+				}
+
+				return true;
+
+			case CHOICE:
+				BitSet seen = new BitSet(SYMBOL_COUNT);
+
+				for (int i = 0; i < children.length; i++)
+				{
+					Expression child = children[i];
+
+					if (child.nullable || child.first.intersects(seen) || this.isDeterministic(child, follow) == false)
+					{
+						return false;
+					}
+
+					seen.or(child.first);
+				}
+
+				return true;
+
+			default:
+				Expression child = children[0];
+
+				if (child.nullable || child.first.intersects(follow))
+				{
+					return false;
+				}
+
+				BitSet loopFollow = follow;
+
+				if (expression.kind == STAR)
+				{
+					loopFollow = (BitSet) child.first.clone();
+					loopFollow.or(follow);
+				}
+
+				return this.isDeterministic(child, loopFollow);
+		}
+	}
+}
@@ -34,12 +34,16 @@
  */
 package com.aptana.ide.lexer.matcher;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
 
 import com.aptana.ide.lexer.ILexer;
 import com.aptana.ide.lexer.ILexerBuilder;
@@ -49,6 +53,7 @@ import com.aptana.ide.lexer.LexerPlugin;
 import com.aptana.ide.lexer.matcher.model.IMatcherElement;
 import com.aptana.ide.lexer.matcher.model.LexerElement;
 import com.aptana.ide.lexer.matcher.model.MatcherElement;
+import com.aptana.xml.Bundle;
 import com.aptana.xml.DocumentNode;
 import com.aptana.xml.IErrorHandler;
 import com.aptana.xml.INode;
@@ -65,6 +70,7 @@ public class MatcherLexerBuilder implements ILexerBuilder, IErrorHandler
 	private static final String MATCHER_SUFFIX = "Matcher"; //$NON-NLS-1$
 	
 	private ILexer _lexer;
+	private int _errorCount;
 
 	/**
 	 * CodeBasedLexerBuilder
@@ -182,33 +188,56 @@ public class MatcherLexerBuilder implements ILexerBuilder, IErrorHandler
 	 * @param in
 	 */
 	public void loadXML(InputStream in)
+	{
+		this.load(in, null, true);
+	}
+
+	/**
+	 * Loads XMl.
+	 * 
+	 * @param in - input.
+	 * @param classLoader - class loader to use for resolving.
+	 */
+	public void loadXML(InputStream in, ClassLoader classLoader)
+	{
+		this.load(in, classLoader, false);
+	}
+
+	/**
+	 * Load the specified lexer grammar. A binary snapshot of the resulting token list is kept in the lexer plugin's
+	 * state area, so the grammar is only parsed as XML the first time it is seen or after it has changed.
+	 * 
+	 * @param in
+	 *            input
+	 * @param classLoader
+	 *            class loader to use for resolving
+	 * @param useGrammarBundles
+	 *            true to resolve with the bundles declared in the grammar instead of classLoader
+	 */
+	private void load(InputStream in, ClassLoader classLoader, boolean useGrammarBundles)
 	{
 		try
 		{
-			// create parser
-			Parser parser = createLexerParser();
-			
-			// associate error handler
-			parser.setErrorHandler(this);
-			
-			// get the parse result
-			DocumentNode result = parser.loadXML(in);
-			
-			// post-process the results
-			if (result != null)
+			byte[] grammar = readGrammar(in);
+			// snapshots resolve a null class loader to the grammar's bundles, so they cannot stand in for an
+			// explicit null
+			File snapshotFile = (useGrammarBundles || classLoader != null) ? MatcherTokenListSnapshot
+					.getSnapshotFile(grammar) : null;
+			ITokenList tokenList = null;
+
+			if (snapshotFile != null && snapshotFile.exists())
 			{
-				INode node = result.getRootNode();
-				
-				if (node != null && node instanceof LexerElement)
-				{
-					LexerElement lexerElement = (LexerElement) node;
-					
-					lexerElement.validate();
-					
-					ITokenList tokenList = lexerElement.getTokenList(parser.getClassLoader());
-					
-					this._lexer.addLanguage(tokenList);
-				}
+				tokenList = this.loadSnapshot(snapshotFile, classLoader);
+			}
+
+			if (tokenList == null)
+			{
+				tokenList = this.parseGrammar(grammar, classLoader, useGrammarBundles, snapshotFile);
+			}
+
+			if (tokenList != null)
+			{
+				this._lexer.addLanguage(tokenList);
 			}
 		}
 		catch (Exception e)
@@ -229,67 +258,140 @@ public class MatcherLexerBuilder implements ILexerBuilder, IErrorHandler
 			}
 		}
 	}
-	
+
 	/**
-     * Loads XMl.
-     * 
-     * @param in - input.
-     * @param classLoader - class loader to use for resolving.
-     */
-    public void loadXML(InputStream in, ClassLoader classLoader)
-    {
-        try
-        {
-            // create parser
-            Parser parser = createLexerParser();
-            
-            // associate error handler
-            parser.setErrorHandler(this);
-            
-            // get the parse result
-            DocumentNode result = parser.loadXML(in);
-            
-            // post-process the results
-            if (result != null)
-            {
-                INode node = result.getRootNode();
-                
-                if (node != null && node instanceof LexerElement)
-                {
-                    LexerElement lexerElement = (LexerElement) node;
-                    
-                    lexerElement.validate();
-                    
-                    ITokenList tokenList = lexerElement.getTokenList(classLoader);
-                    
-                    this._lexer.addLanguage(tokenList);
-                }
-            }
-        }
-        catch (Exception e)
-        {
-            LexerPlugin.logError(Messages.MatcherLexerBuilder_Cannot_Build_Lexer, e);
-        }
-        finally
-        {
-            if (in != null)
-            {
-                try
-                {
-                    in.close();
-                }
-                catch (IOException e)
-                {
-                }
-            }
-        }
-    }
+	 * Load a token list from a snapshot. Unreadable or stale snapshots are deleted
+	 * 
+	 * @param snapshotFile
+	 * @param classLoader
+	 * @return Returns the token list or null if the snapshot could not be used
+	 */
+	private ITokenList loadSnapshot(File snapshotFile, ClassLoader classLoader)
+	{
+		ITokenList result = null;
+
+		try
+		{
+			result = MatcherTokenListSnapshot.read(snapshotFile, classLoader);
+		}
+		catch (Exception e)
+		{
+			LexerPlugin.logInfo(Messages.MatcherLexerBuilder_Cannot_Read_Snapshot + snapshotFile, e);
+
+			snapshotFile.delete();
+		}
+
+		return result;
+	}
+
+	/**
+	 * Build a token list from the XML grammar and save a snapshot of it when the grammar loaded cleanly
+	 * 
+	 * @param grammar
+	 * @param classLoader
+	 * @param useGrammarBundles
+	 * @param snapshotFile
+	 *            The snapshot file to write or null if snapshots are not available
+	 * @return Returns the token list or null
+	 */
+	private ITokenList parseGrammar(byte[] grammar, ClassLoader classLoader, boolean useGrammarBundles,
+			File snapshotFile)
+	{
+		ITokenList result = null;
+
+		// create parser
+		Parser parser = createLexerParser();
+
+		// associate error handler
+		parser.setErrorHandler(this);
+		this._errorCount = 0;
+
+		// get the parse result
+		DocumentNode document = parser.loadXML(new ByteArrayInputStream(grammar));
+
+		// post-process the results
+		if (document != null)
+		{
+			INode node = document.getRootNode();
+
+			if (node != null && node instanceof LexerElement)
+			{
+				LexerElement lexerElement = (LexerElement) node;
+
+				lexerElement.validate();
+
+				result = lexerElement.getTokenList(useGrammarBundles ? parser.getClassLoader() : classLoader);
+
+				if (snapshotFile != null && this._errorCount == 0 && result instanceof MatcherTokenList)
+				{
+					this.saveSnapshot(snapshotFile, (MatcherTokenList) result, lexerElement);
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * readGrammar
+	 * 
+	 * @param in
+	 * @return Returns the content of the input stream
+	 * @throws IOException
+	 */
+	private static byte[] readGrammar(InputStream in) throws IOException
+	{
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int length = in.read(buffer);
+
+		while (length >= 0)
+		{
+			result.write(buffer, 0, length);
+			length = in.read(buffer);
+		}
+
+		return result.toByteArray();
+	}
+
+	/**
+	 * saveSnapshot
+	 * 
+	 * @param snapshotFile
+	 * @param tokenList
+	 * @param lexerElement
+	 */
+	private void saveSnapshot(File snapshotFile, MatcherTokenList tokenList, LexerElement lexerElement)
+	{
+		List<String> bundleNames = new ArrayList<String>();
+
+		for (int i = 0; i < lexerElement.getChildCount(); i++)
+		{
+			INode child = lexerElement.getChild(i);
+
+			if (child instanceof Bundle)
+			{
+				bundleNames.add(child.getText());
+			}
+		}
+
+		try
+		{
+			MatcherTokenListSnapshot.write(snapshotFile, tokenList, bundleNames.toArray(new String[bundleNames.size()]));
+		}
+		catch (IOException e)
+		{
+			LexerPlugin.logInfo(Messages.MatcherLexerBuilder_Cannot_Write_Snapshot + snapshotFile, e);
+		}
+	}
 
 	/**
 	 * @see com.aptana.xml.IErrorHandler#handleError(int, int, java.lang.String)
 	 */
 	public void handleError(int line, int column, String message)
 	{
+		this._errorCount++;
+
 		String msg = MessageFormat.format(
 			Messages.MatcherLexerBuilder_Error_Message,
 			new Object[] {
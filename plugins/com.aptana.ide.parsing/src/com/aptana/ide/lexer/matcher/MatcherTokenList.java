@@ -35,6 +35,7 @@
 package com.aptana.ide.lexer.matcher;
 
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 
 import com.aptana.ide.lexer.ICodeBasedTokenList;
@@ -50,7 +51,9 @@ import com.aptana.ide.lexer.TokenList;
 public class MatcherTokenList extends TokenList implements ICodeBasedTokenList
 {
 	private Map<String,OrMatcher> _matchersByName = new HashMap<String,OrMatcher>();
+	private Map<String,MatcherDFA> _dfasByName;
 	private OrMatcher _currentMatcher;
+	private MatcherDFA _currentDFA;
 	private int _lastMatchedTokenIndex;
 
 	/**
@@ -95,6 +98,38 @@ public class MatcherTokenList extends TokenList implements ICodeBasedTokenList
 		matchers.appendChild(matcher);
 	}
 
+	/**
+	 * Compile each group into a table-driven DFA. Matchers that cannot be expressed as a DFA stay in the matcher tree
+	 * and are still tried in document order, so the tokens returned by match() do not change.
+	 */
+	public synchronized void compileGroups()
+	{
+		if (this._dfasByName == null)
+		{
+			MatcherDFABuilder builder = new MatcherDFABuilder();
+			Map<String,MatcherDFA> dfasByName = new HashMap<String,MatcherDFA>();
+			Iterator<String> groups = this._matchersByName.keySet().iterator();
+
+			while (groups.hasNext())
+			{
+				String group = groups.next();
+				MatcherDFA dfa = builder.build(this._matchersByName.get(group));
+
+				if (dfa != null)
+				{
+					dfasByName.put(group, dfa);
+				}
+			}
+
+			this._dfasByName = dfasByName;
+
+			if (this._currentMatcher != null)
+			{
+				this._currentDFA = dfasByName.get(this.getCurrentGroup());
+			}
+		}
+	}
+
 	/**
 	 * @see com.aptana.ide.lexer.ICodeBasedTokenList#find(char[], int, int)
 	 */
@@ -122,12 +157,21 @@ public class MatcherTokenList extends TokenList implements ICodeBasedTokenList
 		
 		if (startingPosition < eofOffset && this._currentMatcher != null)
 		{
-			result = this._currentMatcher.match(source, startingPosition, eofOffset);
+			IToken matchedToken;
+			
+			if (this._currentDFA != null)
+			{
+				result = this._currentDFA.match(source, startingPosition, eofOffset);
+				matchedToken = this._currentDFA.getMatchedToken();
+			}
+			else
+			{
+				result = this._currentMatcher.match(source, startingPosition, eofOffset);
+				matchedToken = this._currentMatcher.getMatchedToken();
+			}
 			
 			if (result != -1)
 			{
-				IToken matchedToken = this._currentMatcher.getMatchedToken();
-				
 				if (matchedToken != null)
 				{
 					this._lastMatchedTokenIndex = matchedToken.getIndex();
@@ -180,6 +224,7 @@ public class MatcherTokenList extends TokenList implements ICodeBasedTokenList
 		}
 
 		this._currentMatcher = newGroup;
+		this._currentDFA = (this._dfasByName != null) ? this._dfasByName.get(groupName) : null;
 	}
 
 	/**
@@ -189,7 +234,10 @@ public class MatcherTokenList extends TokenList implements ICodeBasedTokenList
 	{
 		super.setCurrentGroup(index);
 
-		this._currentMatcher = this._matchersByName.get(this.getCurrentGroup());
+		String groupName = this.getCurrentGroup();
+
+		this._currentMatcher = this._matchersByName.get(groupName);
+		this._currentDFA = (this._dfasByName != null) ? this._dfasByName.get(groupName) : null;
 	}
 
 	/**
@@ -202,6 +250,27 @@ public class MatcherTokenList extends TokenList implements ICodeBasedTokenList
 		return this._currentMatcher;
 	}
 	
+	/**
+	 * getCompiledGroup
+	 *
+	 * @param groupName
+	 * @return Returns the compiled form of the specified group or null if the group has not been compiled
+	 */
+	public MatcherDFA getCompiledGroup(String groupName)
+	{
+		return (this._dfasByName != null) ? this._dfasByName.get(groupName) : null;
+	}
+
+	/**
+	 * getGroupMatchers
+	 * 
+	 * @return Returns the matcher of each lexer group by group name
+	 */
+	Map<String,OrMatcher> getGroupMatchers()
+	{
+		return this._matchersByName;
+	}
+
 	/**
 	 * @see com.aptana.ide.lexer.ITokenList#hasGroup(java.lang.String)
 	 */
@@ -0,0 +1,1061 @@
+/**
+ * This file Copyright (c) 2005-2008 Aptana, Inc. This program is
+ * dual-licensed under both the Aptana Public License and the GNU General
+ * Public license. You may elect to use one or the other of these licenses.
+ * 
+ * This program is distributed in the hope that it will be useful, but
+ * AS-IS and WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, TITLE, or
+ * NONINFRINGEMENT. Redistribution, except as permitted by whichever of
+ * the GPL or APL you select, is prohibited.
+ *
+ * 1. For the GPL license (GPL), you can redistribute and/or modify this
+ * program under the terms of the GNU General Public License,
+ * Version 3, as published by the Free Software Foundation.  You should
+ * have received a copy of the GNU General Public License, Version 3 along
+ * with this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * Aptana provides a special exception to allow redistribution of this file
+ * with certain other free and open source software ("FOSS") code and certain additional terms
+ * pursuant to Section 7 of the GPL. You may view the exception and these
+ * terms on the web at http://www.aptana.com/legal/gpl/.
+ * 
+ * 2. For the Aptana Public License (APL), this program and the
+ * accompanying materials are made available under the terms of the APL
+ * v1.0 which accompanies this distribution, and is available at
+ * http://www.aptana.com/legal/apl/.
+ * 
+ * You may view the GPL, Aptana's exception and additional terms, and the
+ * APL in the file titled license.html at the root of the corresponding
+ * plugin containing this source file.
+ * 
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.ide.lexer.matcher;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.runtime.Platform;
+
+import com.aptana.ide.io.TabledInputStream;
+import com.aptana.ide.io.TabledOutputStream;
+import com.aptana.ide.lexer.DynamicEnumerationMap;
+import com.aptana.ide.lexer.IEnumerationMap;
+import com.aptana.ide.lexer.IToken;
+import com.aptana.ide.lexer.LexerPlugin;
+import com.aptana.ide.lexer.StaticEnumerationMap;
+import com.aptana.xml.BundleClassLoader;
+import com.aptana.xml.INode;
+import com.aptana.xml.NodeBase;
+
+/**
+ * Reads and writes binary snapshots of built matcher token lists so a lexer grammar only has to go through the XML
+ * parser when it changes.
+ * <p>
+ * A snapshot records the token list's enumerations and tokens followed by the matcher tree of each lexer group. Each
+ * matcher is stored by class name with the values of its boolean, char, int, String, char[], character set, token and
+ * matcher fields. Any other field is derived state (first-character maps, regex handlers, name/value listeners, etc.)
+ * that is rebuilt when the matchers are re-attached to their groups and the token list is sealed. Snapshots are taken
+ * before the token list is sealed.
+ * 
+ * @author agent (agent@local)
+ */
+public final class MatcherTokenListSnapshot
+{
+	private static final int SNAPSHOT_VERSION = 1;
+	private static final String SNAPSHOT_DIRECTORY = "lexers"; //$NON-NLS-1$
+	private static final String SNAPSHOT_EXTENSION = ".snapshot"; //$NON-NLS-1$
+	private static final String TEMP_EXTENSION = ".tmp"; //$NON-NLS-1$
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray(); //$NON-NLS-1$
+
+	private static final int NODE_NULL = 0;
+	private static final int NODE_CHILD = 1;
+	private static final int NODE_INLINE = 2;
+
+	private static final Field TEXT_FIELD = getTextField();
+	private static final Map<Class<?>,Field[]> FIELDS_BY_CLASS = new HashMap<Class<?>,Field[]>();
+
+	/**
+	 * MatcherTokenListSnapshot
+	 */
+	private MatcherTokenListSnapshot()
+	{
+	}
+
+	/**
+	 * Get the snapshot file for the specified grammar. Snapshots are named by a hash of the grammar and the version of
+	 * the lexer plugin, so an edited grammar or an updated set of matcher classes never picks up a stale snapshot.
+	 * 
+	 * @param grammar
+	 *            The bytes of the lexer grammar
+	 * @return Returns the snapshot file or null if the lexer plugin's state area is not available
+	 */
+	public static File getSnapshotFile(byte[] grammar)
+	{
+		LexerPlugin plugin = LexerPlugin.getDefault();
+		File result = null;
+
+		if (plugin != null)
+		{
+			try
+			{
+				MessageDigest digest = MessageDigest.getInstance("MD5"); //$NON-NLS-1$
+				String version = LexerPlugin.getPluginVersion(plugin);
+
+				digest.update(grammar);
+
+				if (version != null)
+				{
+					digest.update(version.getBytes("utf-8")); //$NON-NLS-1$
+				}
+
+				File directory = plugin.getStateLocation().append(SNAPSHOT_DIRECTORY).toFile();
+
+				if (directory.isDirectory() || directory.mkdirs())
+				{
+					result = new File(directory, toHex(digest.digest()) + SNAPSHOT_EXTENSION);
+				}
+			}
+			catch (NoSuchAlgorithmException e)
+			{
+				// no snapshots without a hash
+			}
+			catch (IOException e)
+			{
+				// no snapshots without a hash
+			}
+			catch (IllegalStateException e)
+			{
+				// no state location
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Get the fields of a node class that are stored in a snapshot. This includes all instance fields of the class and
+	 * its superclasses up to, but not including, NodeBase whose type can be written to a snapshot
+	 * 
+	 * @param type
+	 * @return Field[]
+	 */
+	private static Field[] getFields(Class<?> type)
+	{
+		synchronized (FIELDS_BY_CLASS)
+		{
+			Field[] result = FIELDS_BY_CLASS.get(type);
+
+			if (result == null)
+			{
+				List<Field> fields = new ArrayList<Field>();
+
+				for (Class<?> current = type; current != null && current != NodeBase.class; current = current.getSuperclass())
+				{
+					Field[] declaredFields = current.getDeclaredFields();
+
+					for (int i = 0; i < declaredFields.length; i++)
+					{
+						Field field = declaredFields[i];
+						int modifiers = field.getModifiers();
+
+						if (Modifier.isStatic(modifiers) == false && Modifier.isTransient(modifiers) == false
+								&& isSnapshotType(field.getType()))
+						{
+							field.setAccessible(true);
+							fields.add(field);
+						}
+					}
+				}
+
+				result = fields.toArray(new Field[fields.size()]);
+				FIELDS_BY_CLASS.put(type, result);
+			}
+
+			return result;
+		}
+	}
+
+	/**
+	 * getSignature
+	 * 
+	 * @param field
+	 * @return Returns a string that identifies the field and its type
+	 */
+	private static String getSignature(Field field)
+	{
+		return field.getDeclaringClass().getName() + "." + field.getName() + ":" + field.getType().getName(); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	/**
+	 * getTextField
+	 * 
+	 * @return Returns NodeBase's text buffer field
+	 */
+	private static Field getTextField()
+	{
+		try
+		{
+			Field result = NodeBase.class.getDeclaredField("_text"); //$NON-NLS-1$
+
+			result.setAccessible(true);
+
+			return result;
+		}
+		catch (NoSuchFieldException e)
+		{
+			throw new IllegalStateException(e.getMessage());
+		}
+	}
+
+	/**
+	 * isNodeType
+	 * 
+	 * @param type
+	 * @return boolean
+	 */
+	private static boolean isNodeType(Class<?> type)
+	{
+		return ITextMatcher.class.isAssignableFrom(type) || NodeBase.class.isAssignableFrom(type);
+	}
+
+	/**
+	 * isSnapshotType
+	 * 
+	 * @param type
+	 * @return boolean
+	 */
+	private static boolean isSnapshotType(Class<?> type)
+	{
+		return type == boolean.class || type == char.class || type == int.class || type == String.class
+				|| type == char[].class || type == Set.class || type == IToken.class || isNodeType(type);
+	}
+
+	/**
+	 * Read a token list from the specified snapshot file
+	 * 
+	 * @param file
+	 *            The snapshot file
+	 * @param classLoader
+	 *            The class loader used to resolve matcher and enumeration classes. If this is null, a class loader
+	 *            for the bundles listed in the original grammar is used
+	 * @return Returns the unsealed token list
+	 * @throws IOException
+	 *             If the snapshot is unreadable or does not match the current matcher classes
+	 */
+	public static MatcherTokenList read(File file, ClassLoader classLoader) throws IOException
+	{
+		TabledInputStream input = new TabledInputStream(new FileInputStream(file));
+
+		try
+		{
+			return new Reader(input, classLoader).readTokenList();
+		}
+		finally
+		{
+			input.close();
+		}
+	}
+
+	/**
+	 * toHex
+	 * 
+	 * @param bytes
+	 * @return String
+	 */
+	private static String toHex(byte[] bytes)
+	{
+		char[] result = new char[bytes.length * 2];
+
+		for (int i = 0; i < bytes.length; i++)
+		{
+			result[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0x0F];
+			result[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0x0F];
+		}
+
+		return new String(result);
+	}
+
+	/**
+	 * Write a snapshot of the specified unsealed token list. The snapshot is written to a temporary file first so
+	 * readers never see a partial snapshot.
+	 * 
+	 * @param file
+	 *            The snapshot file
+	 * @param tokenList
+	 *            The token list to save
+	 * @param bundleNames
+	 *            The names of the bundles the grammar loads its classes from
+	 * @throws IOException
+	 */
+	public static void write(File file, MatcherTokenList tokenList, String[] bundleNames) throws IOException
+	{
+		// a unique name, so that two workbenches sharing the state area never write to the same file
+		File tempFile = File.createTempFile(file.getName(), TEMP_EXTENSION, file.getParentFile());
+		boolean written = false;
+
+		try
+		{
+			TabledOutputStream output = new TabledOutputStream(new FileOutputStream(tempFile));
+
+			try
+			{
+				new Writer(output).writeTokenList(tokenList, bundleNames);
+				written = true;
+			}
+			finally
+			{
+				output.close();
+			}
+		}
+		finally
+		{
+			if (written == false || tempFile.renameTo(file) == false)
+			{
+				tempFile.delete();
+			}
+		}
+	}
+
+	/**
+	 * Reader
+	 */
+	private static final class Reader
+	{
+		private TabledInputStream _input;
+		private ClassLoader _classLoader;
+		private MatcherTokenList _tokenList;
+		private Class<?>[] _classes;
+		private Field[][] _fields;
+
+		/**
+		 * Reader
+		 * 
+		 * @param input
+		 * @param classLoader
+		 */
+		Reader(TabledInputStream input, ClassLoader classLoader)
+		{
+			this._input = input;
+			this._classLoader = classLoader;
+		}
+
+		/**
+		 * readClasses
+		 * 
+		 * @throws IOException
+		 */
+		private void readClasses() throws IOException
+		{
+			int classCount = this._input.readInt();
+
+			this._classes = new Class<?>[classCount];
+			this._fields = new Field[classCount][];
+
+			for (int i = 0; i < classCount; i++)
+			{
+				Class<?> type = this.resolveClass(this._input.readUTF());
+				Field[] currentFields = getFields(type);
+				int fieldCount = this._input.readInt();
+
+				// the snapshot is stale if the matcher's fields have changed
+				if (fieldCount != currentFields.length)
+				{
+					throw new IOException(type.getName());
+				}
+
+				Map<String,Field> fieldsBySignature = new HashMap<String,Field>();
+				Field[] fields = new Field[fieldCount];
+
+				for (int j = 0; j < currentFields.length; j++)
+				{
+					fieldsBySignature.put(getSignature(currentFields[j]), currentFields[j]);
+				}
+
+				for (int j = 0; j < fieldCount; j++)
+				{
+					String signature = this._input.readUTF();
+
+					fields[j] = fieldsBySignature.get(signature);
+
+					if (fields[j] == null)
+					{
+						throw new IOException(signature);
+					}
+				}
+
+				this._classes[i] = type;
+				this._fields[i] = fields;
+			}
+		}
+
+		/**
+		 * readEnumeration
+		 * 
+		 * @return IEnumerationMap
+		 * @throws IOException
+		 */
+		private IEnumerationMap readEnumeration() throws IOException
+		{
+			IEnumerationMap result;
+
+			if (this._input.readBoolean())
+			{
+				result = new StaticEnumerationMap(this.resolveClass(this._input.readUTF()));
+			}
+			else
+			{
+				result = new DynamicEnumerationMap();
+
+				int nameCount = this._input.readInt();
+
+				// names are registered in index order
+				for (int i = 0; i < nameCount; i++)
+				{
+					result.getIntValue(this._input.readUTF());
+				}
+			}
+
+			return result;
+		}
+
+		/**
+		 * readFieldValue
+		 * 
+		 * @param node
+		 * @param field
+		 * @throws IOException
+		 * @throws IllegalAccessException
+		 */
+		private void readFieldValue(NodeBase node, Field field) throws IOException, IllegalAccessException
+		{
+			Class<?> type = field.getType();
+
+			if (type == boolean.class)
+			{
+				field.setBoolean(node, this._input.readBoolean());
+			}
+			else if (type == char.class)
+			{
+				field.setChar(node, this._input.readChar());
+			}
+			else if (type == int.class)
+			{
+				field.setInt(node, this._input.readInt());
+			}
+			else if (type == String.class)
+			{
+				field.set(node, this.readString());
+			}
+			else if (type == char[].class)
+			{
+				String value = this.readString();
+
+				field.set(node, (value != null) ? value.toCharArray() : null);
+			}
+			else if (type == Set.class)
+			{
+				int size = this._input.readInt();
+				Set<Character> characters = null;
+
+				if (size >= 0)
+				{
+					characters = new HashSet<Character>();
+
+					for (int i = 0; i < size; i++)
+					{
+						characters.add(new Character(this._input.readChar()));
+					}
+				}
+
+				field.set(node, characters);
+			}
+			else if (type == IToken.class)
+			{
+				int index = this._input.readInt();
+
+				field.set(node, (index >= 0) ? this._tokenList.get(index) : null);
+			}
+			else
+			{
+				field.set(node, this.readNodeReference(node));
+			}
+		}
+
+		/**
+		 * readNode
+		 * 
+		 * @return NodeBase
+		 * @throws IOException
+		 */
+		private NodeBase readNode() throws IOException
+		{
+			int classIndex = this._input.readInt();
+
+			if (classIndex < 0 || classIndex >= this._classes.length)
+			{
+				throw new IOException(Integer.toString(classIndex));
+			}
+
+			try
+			{
+				Constructor<?> constructor = this._classes[classIndex].getDeclaredConstructor(new Class<?>[0]);
+
+				constructor.setAccessible(true);
+
+				NodeBase result = (NodeBase) constructor.newInstance(new Object[0]);
+
+				// children first so node references can resolve to them. Appending also re-registers any name/value
+				// change listeners with the expression root
+				int childCount = this._input.readInt();
+
+				for (int i = 0; i < childCount; i++)
+				{
+					result.appendChild(this.readNode());
+				}
+
+				String text = this.readString();
+
+				TEXT_FIELD.set(result, (text != null) ? new StringBuffer(text) : null);
+				result.setLineNumber(this._input.readInt());
+				result.setColumnNumber(this._input.readInt());
+
+				Field[] fields = this._fields[classIndex];
+
+				for (int i = 0; i < fields.length; i++)
+				{
+					this.readFieldValue(result, fields[i]);
+				}
+
+				return result;
+			}
+			catch (IOException e)
+			{
+				throw e;
+			}
+			catch (Exception e)
+			{
+				throw new IOException(e.toString());
+			}
+		}
+
+		/**
+		 * readNodeReference
+		 * 
+		 * @param owner
+		 * @return NodeBase
+		 * @throws IOException
+		 */
+		private INode readNodeReference(NodeBase owner) throws IOException
+		{
+			INode result = null;
+
+			switch (this._input.readByte())
+			{
+				case NODE_NULL:
+					break;
+
+				case NODE_CHILD:
+					result = owner.getChild(this._input.readInt());
+					break;
+
+				case NODE_INLINE:
+					result = this.readNode();
+					break;
+
+				default:
+					throw new IOException();
+			}
+
+			return result;
+		}
+
+		/**
+		 * readString
+		 * 
+		 * @return Returns the string or null
+		 * @throws IOException
+		 */
+		private String readString() throws IOException
+		{
+			return (this._input.readBoolean()) ? this._input.readUTF() : null;
+		}
+
+		/**
+		 * readTokenList
+		 * 
+		 * @return MatcherTokenList
+		 * @throws IOException
+		 */
+		MatcherTokenList readTokenList() throws IOException
+		{
+			if (this._input.readInt() != SNAPSHOT_VERSION)
+			{
+				throw new IOException();
+			}
+
+			String language = this._input.readUTF();
+			int bundleCount = this._input.readInt();
+			BundleClassLoader bundleClassLoader = new BundleClassLoader();
+
+			for (int i = 0; i < bundleCount; i++)
+			{
+				org.osgi.framework.Bundle bundle = Platform.getBundle(this._input.readUTF());
+
+				if (bundle != null)
+				{
+					bundleClassLoader.addBundle(bundle);
+				}
+			}
+
+			if (this._classLoader == null)
+			{
+				this._classLoader = bundleClassLoader;
+			}
+
+			this._tokenList = new MatcherTokenList(language);
+			this._tokenList.setCategoryMap(this.readEnumeration());
+			this._tokenList.setTypeMap(this.readEnumeration());
+
+			// re-add tokens in their original order so all indexes match
+			int tokenCount = this._input.readInt();
+
+			for (int i = 0; i < tokenCount; i++)
+			{
+				IToken token = this._tokenList.createToken();
+
+				token.setCategory(this.readString());
+				token.setType(this.readString());
+				token.setDisplayName(this.readString());
+				token.setLexerGroup(this.readString());
+				token.setNewLexerGroup(this.readString());
+
+				this._tokenList.add(token);
+			}
+
+			this.readClasses();
+
+			int groupCount = this._input.readInt();
+
+			for (int i = 0; i < groupCount; i++)
+			{
+				String group = this._input.readUTF();
+				int matcherCount = this._input.readInt();
+
+				for (int j = 0; j < matcherCount; j++)
+				{
+					this._tokenList.addMatcherToGroup((ITextMatcher) this.readNode(), group);
+				}
+			}
+
+			return this._tokenList;
+		}
+
+		/**
+		 * resolveClass
+		 * 
+		 * @param name
+		 * @return Class
+		 * @throws IOException
+		 */
+		private Class<?> resolveClass(String name) throws IOException
+		{
+			try
+			{
+				return Class.forName(name, true, this._classLoader);
+			}
+			catch (ClassNotFoundException e)
+			{
+				throw new IOException(name);
+			}
+		}
+	}
+
+	/**
+	 * Writer
+	 */
+	private static final class Writer
+	{
+		private TabledOutputStream _output;
+		private MatcherTokenList _tokenList;
+		private Map<Class<?>,Integer> _classIndexes;
+		private List<Class<?>> _classes;
+
+		/**
+		 * Writer
+		 * 
+		 * @param output
+		 */
+		Writer(TabledOutputStream output)
+		{
+			this._output = output;
+			this._classIndexes = new HashMap<Class<?>,Integer>();
+			this._classes = new ArrayList<Class<?>>();
+		}
+
+		/**
+		 * Assign an index to the class of each node in the tree. Classes are written ahead of the matcher trees so the
+		 * reader can validate their fields before creating any nodes
+		 * 
+		 * @param node
+		 * @throws IOException
+		 * @throws IllegalAccessException
+		 */
+		private void collectClasses(INode node) throws IOException, IllegalAccessException
+		{
+			if (node instanceof NodeBase == false)
+			{
+				throw new IOException(node.getClass().getName());
+			}
+
+			Class<?> type = node.getClass();
+
+			if (this._classIndexes.containsKey(type) == false)
+			{
+				this._classIndexes.put(type, new Integer(this._classes.size()));
+				this._classes.add(type);
+			}
+
+			for (int i = 0; i < node.getChildCount(); i++)
+			{
+				this.collectClasses(node.getChild(i));
+			}
+
+			Field[] fields = getFields(type);
+
+			for (int i = 0; i < fields.length; i++)
+			{
+				if (isNodeType(fields[i].getType()))
+				{
+					Object value = fields[i].get(node);
+
+					if (value != null)
+					{
+						this.collectClasses((INode) value);
+					}
+				}
+			}
+		}
+
+		/**
+		 * writeClasses
+		 * 
+		 * @throws IOException
+		 */
+		private void writeClasses() throws IOException
+		{
+			this._output.writeInt(this._classes.size());
+
+			for (int i = 0; i < this._classes.size(); i++)
+			{
+				Class<?> type = this._classes.get(i);
+				Field[] fields = getFields(type);
+
+				this._output.writeUTF(type.getName());
+				this._output.writeInt(fields.length);
+
+				for (int j = 0; j < fields.length; j++)
+				{
+					this._output.writeUTF(getSignature(fields[j]));
+				}
+			}
+		}
+
+		/**
+		 * writeEnumeration
+		 * 
+		 * @param map
+		 * @throws IOException
+		 */
+		private void writeEnumeration(IEnumerationMap map) throws IOException
+		{
+			if (map instanceof StaticEnumerationMap)
+			{
+				this._output.writeBoolean(true);
+				this._output.writeUTF(((StaticEnumerationMap) map).getEnumerationClass().getName());
+			}
+			else if (map instanceof DynamicEnumerationMap)
+			{
+				List<String> names = new ArrayList<String>();
+
+				for (String name = map.getName(0); name != null; name = map.getName(names.size()))
+				{
+					names.add(name);
+				}
+
+				this._output.writeBoolean(false);
+				this._output.writeInt(names.size());
+
+				for (int i = 0; i < names.size(); i++)
+				{
+					this._output.writeUTF(names.get(i));
+				}
+			}
+			else
+			{
+				throw new IOException(String.valueOf(map));
+			}
+		}
+
+		/**
+		 * writeFieldValue
+		 * 
+		 * @param node
+		 * @param field
+		 * @throws IOException
+		 * @throws IllegalAccessException
+		 */
+		private void writeFieldValue(NodeBase node, Field field) throws IOException, IllegalAccessException
+		{
+			Class<?> type = field.getType();
+
+			if (type == boolean.class)
+			{
+				this._output.writeBoolean(field.getBoolean(node));
+			}
+			else if (type == char.class)
+			{
+				this._output.writeChar(field.getChar(node));
+			}
+			else if (type == int.class)
+			{
+				this._output.writeInt(field.getInt(node));
+			}
+			else if (type == String.class)
+			{
+				this.writeString((String) field.get(node));
+			}
+			else if (type == char[].class)
+			{
+				char[] value = (char[]) field.get(node);
+
+				this.writeString((value != null) ? new String(value) : null);
+			}
+			else if (type == Set.class)
+			{
+				Set<?> value = (Set<?>) field.get(node);
+
+				if (value != null)
+				{
+					this._output.writeInt(value.size());
+
+					for (Iterator<?> iterator = value.iterator(); iterator.hasNext();)
+					{
+						Object item = iterator.next();
+
+						if (item instanceof Character == false)
+						{
+							throw new IOException(getSignature(field));
+						}
+
+						this._output.writeChar(((Character) item).charValue());
+					}
+				}
+				else
+				{
+					this._output.writeInt(-1);
+				}
+			}
+			else if (type == IToken.class)
+			{
+				IToken token = (IToken) field.get(node);
+				int index = -1;
+
+				// tokens that were rejected by the token list are not part of the snapshot
+				if (token != null && token.getIndex() < this._tokenList.size()
+						&& this._tokenList.get(token.getIndex()) == token)
+				{
+					index = token.getIndex();
+				}
+
+				this._output.writeInt(index);
+			}
+			else
+			{
+				this.writeNodeReference(node, (INode) field.get(node));
+			}
+		}
+
+		/**
+		 * writeNode
+		 * 
+		 * @param node
+		 * @throws IOException
+		 * @throws IllegalAccessException
+		 */
+		private void writeNode(NodeBase node) throws IOException, IllegalAccessException
+		{
+			Integer classIndex = this._classIndexes.get(node.getClass());
+
+			this._output.writeInt(classIndex.intValue());
+			this._output.writeInt(node.getChildCount());
+
+			for (int i = 0; i < node.getChildCount(); i++)
+			{
+				this.writeNode((NodeBase) node.getChild(i));
+			}
+
+			StringBuffer text = (StringBuffer) TEXT_FIELD.get(node);
+
+			this.writeString((text != null) ? text.toString() : null);
+			this._output.writeInt(node.getLineNumber());
+			this._output.writeInt(node.getColumnNumber());
+
+			Field[] fields = getFields(node.getClass());
+
+			for (int i = 0; i < fields.length; i++)
+			{
+				this.writeFieldValue(node, fields[i]);
+			}
+		}
+
+		/**
+		 * writeNodeReference
+		 * 
+		 * @param owner
+		 * @param node
+		 * @throws IOException
+		 * @throws IllegalAccessException
+		 */
+		private void writeNodeReference(NodeBase owner, INode node) throws IOException, IllegalAccessException
+		{
+			if (node == null)
+			{
+				this._output.writeByte(NODE_NULL);
+			}
+			else
+			{
+				int childIndex = -1;
+
+				for (int i = 0; i < owner.getChildCount(); i++)
+				{
+					if (owner.getChild(i) == node)
+					{
+						childIndex = i;
+						break;
+					}
+				}
+
+				if (childIndex != -1)
+				{
+					this._output.writeByte(NODE_CHILD);
+					this._output.writeInt(childIndex);
+				}
+				else
+				{
+					this._output.writeByte(NODE_INLINE);
+					this.writeNode((NodeBase) node);
+				}
+			}
+		}
+
+		/**
+		 * writeString
+		 * 
+		 * @param value
+		 * @throws IOException
+		 */
+		private void writeString(String value) throws IOException
+		{
+			this._output.writeBoolean(value != null);
+
+			if (value != null)
+			{
+				this._output.writeUTF(value);
+			}
+		}
+
+		/**
+		 * writeTokenList
+		 * 
+		 * @param tokenList
+		 * @param bundleNames
+		 * @throws IOException
+		 */
+		void writeTokenList(MatcherTokenList tokenList, String[] bundleNames) throws IOException
+		{
+			this._tokenList = tokenList;
+
+			try
+			{
+				Map<String,OrMatcher> groups = tokenList.getGroupMatchers();
+				Iterator<OrMatcher> matchers = groups.values().iterator();
+
+				while (matchers.hasNext())
+				{
+					OrMatcher group = matchers.next();
+
+					for (int i = 0; i < group.getChildCount(); i++)
+					{
+						this.collectClasses(group.getChild(i));
+					}
+				}
+
+				this._output.writeInt(SNAPSHOT_VERSION);
+				this._output.writeUTF(tokenList.getLanguage());
+				this._output.writeInt(bundleNames.length);
+
+				for (int i = 0; i < bundleNames.length; i++)
+				{
+					this._output.writeUTF(bundleNames[i]);
+				}
+
+				this.writeEnumeration(tokenList.getCategoryMap());
+				this.writeEnumeration(tokenList.getTypeMap());
+
+				this._output.writeInt(tokenList.size());
+
+				for (int i = 0; i < tokenList.size(); i++)
+				{
+					IToken token = tokenList.get(i);
+
+					this.writeString(token.getCategory());
+					this.writeString(token.getType());
+					this.writeString(token.getDisplayName());
+					this.writeString(token.getLexerGroup());
+					this.writeString(token.getNewLexerGroup());
+				}
+
+				this.writeClasses();
+
+				this._output.writeInt(groups.size());
+
+				Iterator<String> names = groups.keySet().iterator();
+
+				while (names.hasNext())
+				{
+					String name = names.next();
+					OrMatcher group = groups.get(name);
+
+					this._output.writeUTF(name);
+					this._output.writeInt(group.getChildCount());
+
+					for (int i = 0; i < group.getChildCount(); i++)
+					{
+						this.writeNode((NodeBase) group.getChild(i));
+					}
+				}
+			}
+			catch (IllegalAccessException e)
+			{
+				throw new IOException(e.toString());
+			}
+		}
+	}
+}
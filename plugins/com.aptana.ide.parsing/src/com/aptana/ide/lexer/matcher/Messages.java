@@ -102,6 +102,16 @@ public final class Messages extends NLS
 	 */
 	public static String MatcherLexerBuilder_Cannot_Build_Lexer;
 
+	/**
+	 * MatcherLexerBuilder_Cannot_Read_Snapshot
+	 */
+	public static String MatcherLexerBuilder_Cannot_Read_Snapshot;
+
+	/**
+	 * MatcherLexerBuilder_Cannot_Write_Snapshot
+	 */
+	public static String MatcherLexerBuilder_Cannot_Write_Snapshot;
+
 	/**
 	 * MatcherLexerBuilder_Error_Message
 	 */
@@ -154,6 +154,16 @@ public class RegexMatcher extends AbstractTextMatcher
 		}
 	}
 
+	/**
+	 * getRoot
+	 * 
+	 * @return Returns the matcher tree built from this regular expression or null if the expression did not parse
+	 */
+	public ITextMatcher getRoot()
+	{
+		return this._root;
+	}
+
 	/**
 	 * @see com.aptana.ide.lexer.matcher.AbstractTextMatcher#match(char[], int, int)
 	 */
@@ -191,6 +191,26 @@ public class RepetitionMatcher extends AbstractTextMatcher
 		return result;
 	}
 
+	/**
+	 * getMax
+	 *
+	 * @return int
+	 */
+	public int getMax()
+	{
+		return this._maximum;
+	}
+
+	/**
+	 * getMin
+	 *
+	 * @return int
+	 */
+	public int getMin()
+	{
+		return this._minimum;
+	}
+
 	/**
 	 * setMax
 	 *
@@ -118,7 +118,7 @@ public class StringMatcher extends AbstractTextMatcher
 	 * 
 	 * @return char[]
 	 */
-	private char[] getCharacters()
+	char[] getCharacters()
 	{
 		if (this.getChildCount() > 0)
 		{
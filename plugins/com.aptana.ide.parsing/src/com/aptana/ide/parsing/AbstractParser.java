@@ -50,9 +50,11 @@ import com.aptana.ide.lexer.Lexeme;
 import com.aptana.ide.lexer.LexemeList;
 import com.aptana.ide.lexer.LexerException;
 import com.aptana.ide.lexer.LexerInitializationException;
+import com.aptana.ide.lexer.LexerPlugin;
 import com.aptana.ide.lexer.Range;
 import com.aptana.ide.lexer.Token;
 import com.aptana.ide.lexer.TokenList;
+import com.aptana.ide.lexer.matcher.DFAMatcherLexerBuilder;
 import com.aptana.ide.lexer.matcher.MatcherLexerBuilder;
 import com.aptana.ide.parsing.nodes.IParseNode;
 import com.aptana.ide.parsing.nodes.IParseNodeFactory;
@@ -360,7 +362,16 @@ public abstract class AbstractParser implements IParser
 	protected void buildLexer() throws LexerException, LexerInitializationException
 	{
 		// create lexer builder
-		ILexerBuilder lexerBuilder = new MatcherLexerBuilder();
+		ILexerBuilder lexerBuilder;
+
+		if (LexerPlugin.useDFALexer())
+		{
+			lexerBuilder = new DFAMatcherLexerBuilder();
+		}
+		else
+		{
+			lexerBuilder = new MatcherLexerBuilder();
+		}
 
 		// add this parser's lexer grammar and all descendent lexer grammars
 		this.addGrammars(lexerBuilder);
@@ -453,7 +464,7 @@ public abstract class AbstractParser implements IParser
 	 * @param mimeType
 	 * @param currentOffset
 	 */
-	private void fireLanguageChangeEvent(String mimeType, int currentOffset)
+	protected void fireLanguageChangeEvent(String mimeType, int currentOffset)
 	{
 		ILanguageChangeListener handler = this.getLanguageChangeListener();
 
@@ -912,6 +923,9 @@ public abstract class AbstractParser implements IParser
 			
 			// post-parse call
 			parseState.onAfterParse();
+
+			// let lock-free readers see the updated lexemes
+			parseState.getLexemeList().publish();
 		}
 
 		return result;
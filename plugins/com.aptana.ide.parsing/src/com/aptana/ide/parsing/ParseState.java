@@ -39,9 +39,11 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import com.aptana.ide.lexer.ColumnarLexemeList;
 import com.aptana.ide.lexer.IRange;
 import com.aptana.ide.lexer.Lexeme;
 import com.aptana.ide.lexer.LexemeList;
+import com.aptana.ide.lexer.LexerPlugin;
 import com.aptana.ide.lexer.Range;
 import com.aptana.ide.parsing.nodes.IParseNode;
 import com.aptana.ide.parsing.nodes.IParseNodeFactory;
@@ -80,7 +82,14 @@ public class ParseState implements IParseState
 	 */
 	public ParseState()
 	{
-		this._lexemes = new LexemeList();
+		if (LexerPlugin.useColumnarLexemes())
+		{
+			this._lexemes = new ColumnarLexemeList();
+		}
+		else
+		{
+			this._lexemes = new LexemeList();
+		}
 	}
 
 	/**
@@ -626,9 +635,23 @@ public class ParseState implements IParseState
 		this._source = (source != null) ? source.toCharArray() : NO_CHARS;
 		this._insertedText = (insertedSource != null) ? insertedSource.toCharArray() : NO_CHARS;
 		this._startingOffset = offset;
-		this._removeLength = removeLength;
-		
-		this.updateLexemeList();
+		this._removeLength = removeLength;
+		
+		if (this._lexemes instanceof ColumnarLexemeList)
+		{
+			// lexemes removed during the update keep slicing from the old source, so switch sources only after it.
+			// Views slice their text under the list's lock, which keeps them from seeing shifted offsets with the
+			// old source
+			synchronized (this._lexemes)
+			{
+				this.updateLexemeList();
+				((ColumnarLexemeList) this._lexemes).setSource(this._source);
+			}
+		}
+		else
+		{
+			this.updateLexemeList();
+		}
 	}
 
 	/**
@@ -261,6 +261,9 @@ public class MatcherParser implements IParser
 
 			// post-parse call
 			parseState.onAfterParse();
+
+			// let lock-free readers see the updated lexemes
+			parseState.getLexemeList().publish();
 		}
 
 		return result;
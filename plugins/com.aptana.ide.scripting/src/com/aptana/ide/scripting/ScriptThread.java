@@ -40,6 +40,7 @@ import org.mozilla.javascript.Scriptable;
 
 import com.aptana.ide.core.IdeLog;
 import com.aptana.ide.core.StringUtils;
+import com.aptana.ide.editor.js.RhinoPool;
 
 /**
  * @author Paul Colton
@@ -98,7 +99,7 @@ public class ScriptThread implements Runnable
 	 */
 	public void run()
 	{
-		Context cx = Context.enter();
+		Context cx = RhinoPool.enter();
 
 		try
 		{
@@ -138,7 +139,7 @@ public class ScriptThread implements Runnable
 		}
 		finally
 		{
-			Context.exit();
+			RhinoPool.exit();
 		}
 	}
 }
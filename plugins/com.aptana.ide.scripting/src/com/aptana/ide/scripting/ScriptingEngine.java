@@ -72,6 +72,7 @@ import com.aptana.ide.core.ui.BaseTimingStartup;
 import com.aptana.ide.core.ui.CoreUIUtils;
 import com.aptana.ide.core.ui.WebPerspectiveFactory;
 import com.aptana.ide.core.ui.editors.ISaveAsEvent;
+import com.aptana.ide.editor.js.RhinoPool;
 import com.aptana.ide.editors.unified.EditorFileContext;
 import com.aptana.ide.editors.unified.FileContextContentEvent;
 import com.aptana.ide.editors.unified.IFileContextListener;
@@ -697,7 +698,7 @@ public class ScriptingEngine extends BaseTimingStartup implements IFileErrorList
 	{
 		if (this._loaded == false)
 		{
-			Context cx = Context.enter();
+			Context cx = RhinoPool.enter();
 
 			try
 			{
@@ -744,7 +745,7 @@ public class ScriptingEngine extends BaseTimingStartup implements IFileErrorList
 			}
 			finally
 			{
-				Context.exit();
+				RhinoPool.exit();
 			}
 		}
 	}
@@ -806,11 +807,11 @@ public class ScriptingEngine extends BaseTimingStartup implements IFileErrorList
 				if (onunload instanceof Function)
 				{
 					Function unloadFunction = (Function) onunload;
-					Context cx = Context.enter();
+					Context cx = RhinoPool.enter();
 
 					unloadFunction.call(cx, scope, scope, new Object[0]);
 
-					Context.exit();
+					RhinoPool.exit();
 				}
 			}
 
@@ -1028,7 +1029,7 @@ public class ScriptingEngine extends BaseTimingStartup implements IFileErrorList
 		Callable callback = this._global.getEditors().getBracketMatcher();
 		if (callback != null)
 		{
-			Context.enter();
+			RhinoPool.enter();
 			try
 			{
 				Object o = callback.call(Context.getCurrentContext(), this._global, this._global,
@@ -1043,7 +1044,7 @@ public class ScriptingEngine extends BaseTimingStartup implements IFileErrorList
 			}
 			finally
 			{
-				Context.exit();
+				RhinoPool.exit();
 			}
 		}
 
@@ -38,6 +38,7 @@ import org.eclipse.core.runtime.Plugin;
 import org.osgi.framework.BundleContext;
 
 import com.aptana.ide.core.IdeLog;
+import com.aptana.ide.server.http.StaticContentCache;
 
 /**
  * The main plugin class to be used in the desktop.
@@ -82,6 +83,7 @@ public class ServerCorePlugin extends Plugin
 	 */
 	public void stop(BundleContext context) throws Exception
 	{
+		StaticContentCache.dispose();
 		super.stop(context);
 		plugin = null;
 	}
@@ -58,10 +58,18 @@ public class HttpResponse
 	 */
 	private static final int STATUS_OK = 200;
 	private static final String STATUS_MSG_OK = "OK"; //$NON-NLS-1$
+	private static final int STATUS_PARTIAL_CONTENT = 206;
+	private static final String STATUS_MSG_PARTIAL_CONTENT = "Partial Content"; //$NON-NLS-1$
+	private static final int STATUS_NOT_MODIFIED = 304;
+	private static final String STATUS_MSG_NOT_MODIFIED = "Not Modified"; //$NON-NLS-1$
+	private static final int STATUS_RANGE_NOT_SATISFIABLE = 416;
+	private static final String STATUS_MSG_RANGE_NOT_SATISFIABLE = "Requested Range Not Satisfiable"; //$NON-NLS-1$
+	private static final String CRLF = "\r\n"; //$NON-NLS-1$
 
 	private OutputStream _output;
 	private PrintWriter _writer;
 	private boolean _headerSent;
+	private boolean _keepAlive;
 
 	/*
 	 * Constructors
@@ -73,9 +81,46 @@ public class HttpResponse
 	 * @param output
 	 */
 	HttpResponse(OutputStream output)
+	{
+		this(output, false);
+	}
+
+	/**
+	 * Create a new instance of HttpResponse
+	 * 
+	 * @param output
+	 * @param keepAlive
+	 *            true to answer with HTTP/1.1 and leave the connection open for the next request
+	 */
+	HttpResponse(OutputStream output, boolean keepAlive)
 	{
 		this._output = output;
 		this._writer = new PrintWriter(output);
+		this._keepAlive = keepAlive;
+	}
+
+	/*
+	 * Properties
+	 */
+
+	/**
+	 * Returns true if the header of this response has been sent
+	 * 
+	 * @return boolean
+	 */
+	boolean isHeaderSent()
+	{
+		return this._headerSent;
+	}
+
+	/**
+	 * Returns true if the connection can take another request once this response is sent
+	 * 
+	 * @return boolean
+	 */
+	boolean isKeepAlive()
+	{
+		return this._keepAlive;
 	}
 
 	/*
@@ -92,9 +137,7 @@ public class HttpResponse
 	 */
 	public void sendFileContent(InputStream input, long contentLength, String contentType) throws IOException
 	{
-		sendReponseHeader(STATUS_OK, STATUS_MSG_OK, contentLength, contentType);
-		sendResponseContent(input);
-		this._output.close();
+		sendFileContent(input, contentLength, contentType, null);
 	}
 
 	/**
@@ -109,9 +152,115 @@ public class HttpResponse
 	public void sendFileContent(InputStream input, long contentLength, String contentType, Hashtable headers)
 			throws IOException
 	{
+		if (contentLength < 0)
+		{
+			// the end of the content can only be told by closing the connection
+			this._keepAlive = false;
+		}
+
 		sendReponseHeader(STATUS_OK, STATUS_MSG_OK, contentLength, contentType, headers);
-		sendResponseContent(input);
-		this._output.close();
+
+		if (this._keepAlive)
+		{
+			if (sendResponseContent(input, contentLength) < contentLength)
+			{
+				// the client is still waiting for the rest of the content
+				this._keepAlive = false;
+			}
+		}
+		else
+		{
+			sendResponseContent(input, -1);
+		}
+
+		finish();
+	}
+
+	/**
+	 * Sends a static file, or part of it. Files that are not in memory go straight from the file to the connection
+	 * when the connection supports it.
+	 * 
+	 * @param content
+	 * @param range
+	 *            the first and last offset to send, or null to send the whole file
+	 * @param contentType
+	 * @param headers
+	 * @param sendBody
+	 *            false to send only the header, as for a HEAD request
+	 * @throws IOException
+	 */
+	public void sendStaticContent(StaticContent content, long[] range, String contentType, Hashtable headers,
+			boolean sendBody) throws IOException
+	{
+		long offset = 0;
+		long length = content.getLength();
+
+		if (range != null)
+		{
+			offset = range[0];
+			length = range[1] - range[0] + 1;
+			headers.put("Content-Range", "bytes " + range[0] + "-" + range[1] + "/" + content.getLength()); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+			sendReponseHeader(STATUS_PARTIAL_CONTENT, STATUS_MSG_PARTIAL_CONTENT, length, contentType, headers);
+		}
+		else
+		{
+			sendReponseHeader(STATUS_OK, STATUS_MSG_OK, length, contentType, headers);
+		}
+
+		if (sendBody && length > 0)
+		{
+			try
+			{
+				long sent;
+
+				if (content.getBytes() == null && this._output instanceof IFileTransferTarget)
+				{
+					sent = ((IFileTransferTarget) this._output).transferFrom(content.getFile(), offset, length);
+				}
+				else
+				{
+					sent = content.writeTo(this._output, offset, length);
+				}
+				if (sent < length)
+				{
+					// the file was truncated while it was sent
+					this._keepAlive = false;
+				}
+			}
+			catch (SocketException e)
+			{
+				this._keepAlive = false;
+			}
+		}
+
+		finish();
+	}
+
+	/**
+	 * Tells the browser that its copy of a file is current
+	 * 
+	 * @param headers
+	 * @throws IOException
+	 */
+	public void sendNotModified(Hashtable headers) throws IOException
+	{
+		sendReponseHeader(STATUS_NOT_MODIFIED, STATUS_MSG_NOT_MODIFIED, -1, null, headers);
+		finish();
+	}
+
+	/**
+	 * Tells the browser that the range it asked for is not part of a file
+	 * 
+	 * @param contentLength
+	 *            the length of the file
+	 * @param headers
+	 * @throws IOException
+	 */
+	public void sendRangeNotSatisfiable(long contentLength, Hashtable headers) throws IOException
+	{
+		headers.put("Content-Range", "bytes */" + contentLength); //$NON-NLS-1$ //$NON-NLS-2$
+		sendReponseHeader(STATUS_RANGE_NOT_SATISFIABLE, STATUS_MSG_RANGE_NOT_SATISFIABLE, -1, null, headers);
+		finish();
 	}
 
 	/**
@@ -123,9 +272,11 @@ public class HttpResponse
 	 */
 	public void sendContent(String content, String contentType) throws IOException
 	{
-		sendReponseHeader(STATUS_OK, STATUS_MSG_OK, -1, contentType);
-		sendResponseContent(content);
-		this._output.close();
+		byte[] bytes = content.getBytes("utf-8"); //$NON-NLS-1$
+
+		sendReponseHeader(STATUS_OK, STATUS_MSG_OK, bytes.length, contentType);
+		this._output.write(bytes);
+		finish();
 	}
 
 	/**
@@ -138,7 +289,7 @@ public class HttpResponse
 	public void sendError(int errorCode, String message) throws IOException
 	{
 		sendReponseHeader(errorCode, message, -1, null);
-		this._output.close();
+		finish();
 	}
 
 	/**
@@ -150,7 +301,6 @@ public class HttpResponse
 	public void sendError(HttpServerException exception) throws IOException
 	{
 		sendError(exception.getStatusCode(), exception.getStatusMessage(), exception.getContent());
-		this._output.close();
 	}
 
 	/**
@@ -163,16 +313,33 @@ public class HttpResponse
 	 */
 	public void sendError(int errorCode, String message, String content) throws IOException
 	{
-		int contentLength = content != null ? content.getBytes().length : -1;
+		byte[] bytes = content != null ? content.getBytes("utf-8") : null; //$NON-NLS-1$
 
-		sendReponseHeader(errorCode, message, contentLength, null);
+		sendReponseHeader(errorCode, message, bytes != null ? bytes.length : -1, null);
 
-		if (content != null)
+		if (bytes != null)
 		{
-			sendResponseContent(content);
+			this._output.write(bytes);
 		}
 
-		this._output.close();
+		finish();
+	}
+
+	/**
+	 * Ends the response. Without keep-alive this closes the connection.
+	 * 
+	 * @throws IOException
+	 */
+	private void finish() throws IOException
+	{
+		if (this._keepAlive)
+		{
+			this._output.flush();
+		}
+		else
+		{
+			this._output.close();
+		}
 	}
 
 	/**
@@ -202,23 +369,24 @@ public class HttpResponse
 	{
 		if (!_headerSent)
 		{
-			this._writer.print("HTTP/1.0 "); //$NON-NLS-1$
+			this._writer.print(this._keepAlive ? "HTTP/1.1 " : "HTTP/1.0 "); //$NON-NLS-1$ //$NON-NLS-2$
 			this._writer.print(statusCode);
 			this._writer.print(" "); //$NON-NLS-1$
-			this._writer.println(statusMessage);
+			this._writer.print(statusMessage + CRLF);
 
-			if (contentLength > 0)
+			if ((contentLength > 0 || this._keepAlive) && statusCode != STATUS_NOT_MODIFIED)
 			{
-				this._writer.println(StringUtils.format("Content-Length: {0}", contentLength)); //$NON-NLS-1$
+				// a kept-alive connection needs the length to find the start of the next response
+				this._writer.print("Content-Length: " + Math.max(contentLength, 0) + CRLF); //$NON-NLS-1$
 			}
 			if (contentType != null)
 			{
-				this._writer.println(StringUtils.format("Content-Type: {0}", contentType)); //$NON-NLS-1$
+				this._writer.print(StringUtils.format("Content-Type: {0}", contentType) + CRLF); //$NON-NLS-1$
 			}
 			
 			// show current date/time
 			SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zZ"); //$NON-NLS-1$
-			this._writer.println("Date: " + format.format(new Date())); //$NON-NLS-1$
+			this._writer.print("Date: " + format.format(new Date()) + CRLF); //$NON-NLS-1$
 			
 			// emit other headers
 			if (headers != null)
@@ -230,17 +398,13 @@ public class HttpResponse
 					String hName = (String) it.next();
 					String hValue = (String) headers.get(hName);
 
-					this._writer.println(hName + ": " + hValue); //$NON-NLS-1$
-				}
-				
-				if (headers.containsKey("Connection") == false) //$NON-NLS-1$
-				{
-					this._writer.println("Connection: close"); //$NON-NLS-1$
+					this._writer.print(hName + ": " + hValue + CRLF); //$NON-NLS-1$
 				}
 			}
-			else
+
+			if (headers == null || headers.containsKey("Connection") == false) //$NON-NLS-1$
 			{
-				this._writer.println("Connection: close"); //$NON-NLS-1$
+				this._writer.print(this._keepAlive ? "Connection: keep-alive" + CRLF : "Connection: close" + CRLF); //$NON-NLS-1$ //$NON-NLS-2$
 			}
 
 			this._writer.print("\r\n"); // send the empty line that marks the end of the header //$NON-NLS-1$
@@ -258,31 +422,45 @@ public class HttpResponse
 	 * sendResponseContent
 	 * 
 	 * @param input
+	 * @param limit
+	 *            the number of bytes to send, or -1 to send all of the input
+	 * @return the number of bytes sent
 	 * @throws IOException
 	 */
-	private void sendResponseContent(InputStream input) throws IOException
+	private long sendResponseContent(InputStream input, long limit) throws IOException
 	{
+		long sent = 0;
+
 		try
 		{
 			byte[] bytes = new byte[1024];
-			int numRead = input.read(bytes);
+			int numRead = input.read(bytes, 0, (int) (limit < 0 ? bytes.length : Math.min(bytes.length, limit)));
 	
-			while (numRead != -1)
+			while (numRead > 0)
 			{
 				this._output.write(bytes, 0, numRead);
-				numRead = input.read(bytes);
+				sent += numRead;
+				if (limit >= 0 && sent >= limit)
+				{
+					break;
+				}
+				numRead = input.read(bytes, 0, (int) (limit < 0 ? bytes.length : Math.min(bytes.length, limit - sent)));
 			}
 	
 			this._output.flush();
 		}
 		catch(SocketException e)
 		{
+			this._keepAlive = false;
+
 			String msg = e.getMessage();
-			if(msg.startsWith("Connection reset by peer") == false) //$NON-NLS-1$
+			if(msg == null || msg.startsWith("Connection reset by peer") == false) //$NON-NLS-1$
 			{
 				IdeLog.logError(ServerCorePlugin.getDefault(), StringUtils.format("sendResponseContent(): {0}", e.getMessage()), e); //$NON-NLS-1$
 			}
 		}
+
+		return sent;
 	}
 
 	/**
@@ -37,9 +37,11 @@ package com.aptana.ide.server.http;
 import java.io.File;
 import java.io.IOException;
 import java.net.BindException;
-import java.net.InetAddress;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
-import java.net.SocketException;
+import java.net.SocketException;
+import java.nio.channels.ServerSocketChannel;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -61,6 +63,11 @@ import com.aptana.ide.server.resolvers.IHttpResourceResolver;
  */
 public class HttpServer
 {
+	/**
+	 * The system property that turns on the selector based server for new instances
+	 */
+	public static final String NON_BLOCKING_PROPERTY = "com.aptana.ide.server.http.nonBlocking"; //$NON-NLS-1$
+
 	/*
 	 * Fields
 	 */
@@ -69,8 +76,10 @@ public class HttpServer
 	private int _portEnd;
 	private IHttpResourceResolver _resourceResolver;
 	private ServerThreadRunnable _serverThreadRunnable;
+	private SelectorServerRunnable _selectorServerRunnable;
 	private IHttpLog _logger;
 	private int _timeout = 5000;
+	private boolean _nonBlocking = Boolean.getBoolean(NON_BLOCKING_PROPERTY);
 
 	/*
 	 * Properties
@@ -107,6 +116,27 @@ public class HttpServer
 		return this._resourceResolver;
 	}
 
+	/**
+	 * Returns true if requests are served by a selector thread and a pool of workers instead of a thread per
+	 * connection
+	 * 
+	 * @return boolean
+	 */
+	public boolean isNonBlocking()
+	{
+		return this._nonBlocking;
+	}
+
+	/**
+	 * Chooses how requests are served. This takes effect the next time the server is started.
+	 * 
+	 * @param nonBlocking
+	 */
+	public void setNonBlocking(boolean nonBlocking)
+	{
+		this._nonBlocking = nonBlocking;
+	}
+
 	/**
 	 * getSocketServer
 	 * 
@@ -231,8 +261,20 @@ public class HttpServer
 		this._socketServer = this.createServerSocket(this._portStart, this._portEnd);
 
 		// start listening on another thread
-		this._serverThreadRunnable = new ServerThreadRunnable(this, this._timeout);
-		Thread th = new Thread(this._serverThreadRunnable, "Aptana: HTTP Server"); //$NON-NLS-1$
+		Runnable runnable;
+
+		if (this._nonBlocking)
+		{
+			this._selectorServerRunnable = new SelectorServerRunnable(this, this._timeout);
+			runnable = this._selectorServerRunnable;
+		}
+		else
+		{
+			this._serverThreadRunnable = new ServerThreadRunnable(this, this._timeout);
+			runnable = this._serverThreadRunnable;
+		}
+
+		Thread th = new Thread(runnable, "Aptana: HTTP Server"); //$NON-NLS-1$
 		th.setDaemon(true);
 		th.start();
 
@@ -247,7 +289,15 @@ public class HttpServer
 	 */
 	public void stop() throws IOException
 	{
-		this._serverThreadRunnable.stop();
+		if (this._selectorServerRunnable != null)
+		{
+			this._selectorServerRunnable.stop();
+			this._selectorServerRunnable = null;
+		}
+		if (this._serverThreadRunnable != null)
+		{
+			this._serverThreadRunnable.stop();
+		}
 	}
 
 	/**
@@ -268,7 +318,7 @@ public class HttpServer
 		{
 			try
 			{
-				result = new ServerSocket(i, 0, null);
+				result = this.bind(i);
 				break;
 			}
 			catch (BindException e)
@@ -298,6 +348,35 @@ public class HttpServer
 		return result;
 	}
 	
+	/**
+	 * Binds a server socket to a port. In non-blocking mode the socket belongs to a channel.
+	 * 
+	 * @param port
+	 * @return ServerSocket
+	 * @throws IOException
+	 */
+	private ServerSocket bind(int port) throws IOException
+	{
+		if (this._nonBlocking == false)
+		{
+			return new ServerSocket(port, 0, null);
+		}
+
+		ServerSocketChannel channel = ServerSocketChannel.open();
+
+		try
+		{
+			channel.socket().bind(new InetSocketAddress(port), 0);
+		}
+		catch (IOException e)
+		{
+			channel.close();
+			throw e;
+		}
+
+		return channel.socket();
+	}
+
 	public static String getServerAddress() {
 		Preferences store = ServerCorePlugin.getDefault().getPluginPreferences();
 		String serverAddress = "127.0.0.1"; //$NON-NLS-1$
@@ -0,0 +1,302 @@
+/**
+ * This file Copyright (c) 2005-2008 Aptana, Inc. This program is
+ * dual-licensed under both the Aptana Public License and the GNU General
+ * Public license. You may elect to use one or the other of these licenses.
+ * 
+ * This program is distributed in the hope that it will be useful, but
+ * AS-IS and WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, TITLE, or
+ * NONINFRINGEMENT. Redistribution, except as permitted by whichever of
+ * the GPL or APL you select, is prohibited.
+ *
+ * 1. For the GPL license (GPL), you can redistribute and/or modify this
+ * program under the terms of the GNU General Public License,
+ * Version 3, as published by the Free Software Foundation.  You should
+ * have received a copy of the GNU General Public License, Version 3 along
+ * with this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * Aptana provides a special exception to allow redistribution of this file
+ * with certain other free and open source software ("FOSS") code and certain additional terms
+ * pursuant to Section 7 of the GPL. You may view the exception and these
+ * terms on the web at http://www.aptana.com/legal/gpl/.
+ * 
+ * 2. For the Aptana Public License (APL), this program and the
+ * accompanying materials are made available under the terms of the APL
+ * v1.0 which accompanies this distribution, and is available at
+ * http://www.aptana.com/legal/apl/.
+ * 
+ * You may view the GPL, Aptana's exception and additional terms, and the
+ * APL in the file titled license.html at the root of the corresponding
+ * plugin containing this source file.
+ * 
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.ide.server.http;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Hashtable;
+
+import org.eclipse.core.runtime.Path;
+
+import com.aptana.ide.core.IdeLog;
+import com.aptana.ide.core.StringUtils;
+import com.aptana.ide.server.core.ServerCorePlugin;
+import com.aptana.ide.server.logging.IHttpLog;
+import com.aptana.ide.server.resolvers.IHttpResourceResolver;
+import com.aptana.ide.server.resources.IFileHttpResource;
+import com.aptana.ide.server.resources.IHttpFolderResource;
+import com.aptana.ide.server.resources.IHttpResource;
+
+/**
+ * Answers a request with a resource from a resolver. Shared by the thread per connection and the selector based
+ * servers.
+ * 
+ * @author agent (agent@local)
+ */
+class RequestHandler
+{
+	private HttpServer _server;
+	private IHttpResourceResolver _resourceResolver;
+	private IHttpLog _logger;
+
+	/**
+	 * RequestHandler
+	 * 
+	 * @param server
+	 * @param resourceResolver
+	 * @param logger
+	 */
+	RequestHandler(HttpServer server, IHttpResourceResolver resourceResolver, IHttpLog logger)
+	{
+		this._server = server;
+		this._resourceResolver = resourceResolver;
+		this._logger = logger;
+	}
+
+	/**
+	 * Writes the response to a request
+	 * 
+	 * @param reqLineParser
+	 * @param output
+	 * @param keepAlive
+	 *            true to leave the connection open after the response
+	 * @return true if the connection can take another request
+	 * @throws IOException
+	 */
+	boolean handle(RequestLineParser reqLineParser, OutputStream output, boolean keepAlive) throws IOException
+	{
+		HttpResponse response = new HttpResponse(output, keepAlive);
+		String uri = reqLineParser.getUri();
+
+		try
+		{
+			if (uri != null && uri.length() > 0)
+			{
+				try
+				{
+					IHttpResource resource = this._resourceResolver.getResource(reqLineParser);
+
+					if (resource != null)
+					{
+						StaticContent content = this.getStaticContent(resource);
+
+						if (resource instanceof IHttpFolderResource)
+						{
+							IHttpFolderResource folderResource = (IHttpFolderResource) resource;
+
+							if (!uri.endsWith("/")) //$NON-NLS-1$
+							{
+								// send a redirect to tell the browser to connect with a URL that includes
+								// the trailing slash (required for relative resources to be properly resolved)
+								this.sendRedirect(response, uri + "/"); //$NON-NLS-1$
+							}
+							else
+							{
+								String[] fileNames = folderResource.getFileNames();
+								String[] folderNames = folderResource.getFolderNames();
+								String folderHTML = HttpResponseUtils.createBrowseFolderHTML(new Path(uri), fileNames,
+										folderNames);
+
+								if (reqLineParser.getMethod().equals("GET")) //$NON-NLS-1$
+								{
+									response.sendContent(folderHTML, "text/html"); //$NON-NLS-1$
+								}
+								else if (reqLineParser.getMethod().equals("HEAD")) //$NON-NLS-1$
+								{
+									response.sendReponseHeader(200, "OK", folderHTML.getBytes("utf-8").length, //$NON-NLS-1$ //$NON-NLS-2$
+											"text/html", this.makeHeaders()); //$NON-NLS-1$
+								}
+							}
+						}
+						else if (content != null)
+						{
+							this.sendStaticContent(reqLineParser, response, content, resource.getContentType());
+						}
+						else
+						{
+							InputStream contentInput = resource.getContentInputStream(this._server);
+							long length = resource.getContentLength();
+							String type = resource.getContentType();
+
+							try
+							{
+								if (reqLineParser.getMethod().equals("GET")) //$NON-NLS-1$
+								{
+									response.sendFileContent(contentInput, length, type, this.makeHeaders());
+								}
+								else if (reqLineParser.getMethod().equals("HEAD")) //$NON-NLS-1$
+								{
+									response.sendReponseHeader(200, "OK", length, type, this.makeHeaders()); //$NON-NLS-1$
+								}
+							}
+							finally
+							{
+								if ( contentInput != null ) {
+									contentInput.close();
+								}
+							}
+						}
+					}
+					else
+					{
+						throw new HttpServerException(404, "file not found", uri, "file not found: " + uri); //$NON-NLS-1$ //$NON-NLS-2$
+					}
+				}
+				catch (HttpServerException e)
+				{
+					this._logger.logTrace(e.getStatusMessage() + "-" + e.getRequestUri()); //$NON-NLS-1$
+					response.sendError(e);
+				}
+			}
+			else
+			{
+				String reqLine = reqLineParser.getRequestLine();
+
+				this._logger.logTrace("bad request detected: " + (reqLine != null ? reqLine : "request line was empty")); //$NON-NLS-1$ //$NON-NLS-2$
+				response.sendError(new HttpServerException(400, "bad request", uri, null)); //$NON-NLS-1$
+			}
+		}
+		catch (Exception e)
+		{
+			// this._logger.logError("error processing request: " + uri != null ? uri : "uri unavailable", e);
+			IdeLog.logError(ServerCorePlugin.getDefault(), "Error", e); //$NON-NLS-1$
+			if (response.isHeaderSent() == false)
+			{
+				response.sendError(new HttpServerException(500, "Internal error", uri, null, e)); //$NON-NLS-1$
+			}
+			return false;
+		}
+
+		// a request that got no answer, such as a POST, ends the connection
+		return response.isHeaderSent() && response.isKeepAlive();
+	}
+
+	/**
+	 * makeHeaders
+	 * 
+	 * @return Hashtable
+	 */
+	private Hashtable<String, String> makeHeaders()
+	{
+		Hashtable<String, String> headers = new Hashtable<String, String>();
+
+		headers.put("Server", "Aptana v0.2.7"); //$NON-NLS-1$ //$NON-NLS-2$
+		
+		// add IE no-cache headers per
+		// http://en.wikipedia.org/wiki/XMLHttpRequest#Microsoft_Internet_Explorer_cache_issues
+		headers.put("Expires", "Mon, 26 Jul 1997 05:00:00 GMT"); //$NON-NLS-1$ //$NON-NLS-2$
+		headers.put("Cache-Control", "no-store, no-cache, must-revalidate"); //$NON-NLS-1$ //$NON-NLS-2$
+		headers.put("Pragma", "no-cache"); //$NON-NLS-1$ //$NON-NLS-2$
+		SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zZ"); //$NON-NLS-1$
+		headers.put("Last-Modified", format.format(new Date())); //$NON-NLS-1$
+
+		return headers;
+	}
+
+	/**
+	 * Returns a snapshot of the file behind a resource
+	 * 
+	 * @param resource
+	 * @return the snapshot, or null if the resource is not a local file
+	 * @throws IOException
+	 */
+	private StaticContent getStaticContent(IHttpResource resource) throws IOException
+	{
+		if (resource instanceof IFileHttpResource)
+		{
+			File file = ((IFileHttpResource) resource).getFile();
+
+			if (file != null)
+			{
+				return StaticContentCache.getInstance().get(file);
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Answers a GET or HEAD request for a static file, taking the validators and range the browser sends into account
+	 * 
+	 * @param reqLineParser
+	 * @param response
+	 * @param content
+	 * @param contentType
+	 * @throws IOException
+	 */
+	private void sendStaticContent(RequestLineParser reqLineParser, HttpResponse response, StaticContent content,
+			String contentType) throws IOException
+	{
+		String method = reqLineParser.getMethod();
+
+		if (method.equals("GET") == false && method.equals("HEAD") == false) //$NON-NLS-1$ //$NON-NLS-2$
+		{
+			return;
+		}
+
+		Hashtable<String, String> headers = this.makeHeaders();
+
+		// let the browser keep the file, but have it check that the file is current before each use
+		headers.put("Cache-Control", "no-cache"); //$NON-NLS-1$ //$NON-NLS-2$
+		headers.put("Last-Modified", StaticContent.formatDate(content.getLastModified())); //$NON-NLS-1$
+		headers.put("ETag", content.getETag()); //$NON-NLS-1$
+		headers.put("Accept-Ranges", "bytes"); //$NON-NLS-1$ //$NON-NLS-2$
+
+		if (content.isNotModified(reqLineParser.getHeader("If-None-Match"), reqLineParser //$NON-NLS-1$
+				.getHeader("If-Modified-Since"))) //$NON-NLS-1$
+		{
+			response.sendNotModified(headers);
+			return;
+		}
+
+		long[] range = content.getRange(reqLineParser.getHeader("Range"), reqLineParser.getHeader("If-Range")); //$NON-NLS-1$ //$NON-NLS-2$
+
+		if (range == StaticContent.UNSATISFIABLE)
+		{
+			response.sendRangeNotSatisfiable(content.getLength(), headers);
+		}
+		else
+		{
+			response.sendStaticContent(content, range, contentType, headers, method.equals("GET")); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * sendRedirect
+	 * 
+	 * @param response
+	 * @param newURL
+	 */
+	private void sendRedirect(HttpResponse response, String newURL)
+	{
+		Hashtable<String, String> headers = new Hashtable<String, String>();
+		headers.put("location", StringUtils.urlEncodeForSpaces(newURL.toCharArray())); //$NON-NLS-1$
+		response.sendReponseHeader(307, "redirect", 0, "text/html", headers); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+}
@@ -48,12 +48,15 @@ public class RequestLineParser
 	/*
 	 * Fields
 	 */
-	private static Pattern HTTP_PATTERN = Pattern.compile("(GET|HEAD|POST)\\s(/[^\\?]*)(.*)\\sHTTP/1\\.[0-9]"); //$NON-NLS-1$
+	private static Pattern HTTP_PATTERN = Pattern.compile("(GET|HEAD|POST)\\s(/[^\\?]*)(.*)\\sHTTP/(1\\.[0-9])"); //$NON-NLS-1$
 
+	private String _requestLine;
 	private String _method;
 	private String _uri;
 	private String _queryString;
+	private String _version;
 	private Hashtable _keyValuePairs;
+	private Hashtable<String, String> _headers = new Hashtable<String, String>();
 
 	/*
 	 * Properties
@@ -69,6 +72,83 @@ public class RequestLineParser
 		return this._method;
 	}
 
+	/**
+	 * The first line of the request
+	 * 
+	 * @return String
+	 */
+	public String getRequestLine()
+	{
+		return this._requestLine;
+	}
+
+	/**
+	 * The HTTP version of this request, for example "1.1"
+	 * 
+	 * @return String
+	 */
+	public String getVersion()
+	{
+		return this._version;
+	}
+
+	/**
+	 * Returns the value of a request header
+	 * 
+	 * @param name
+	 *            the header name, in any case
+	 * @return the value or null
+	 */
+	public String getHeader(String name)
+	{
+		return this._headers.get(name.toLowerCase());
+	}
+
+	/**
+	 * Returns the length of the body that follows the header of this request
+	 * 
+	 * @return the length, or 0 if there is no body
+	 */
+	public long getContentLength()
+	{
+		String value = this.getHeader("Content-Length"); //$NON-NLS-1$
+
+		if (value != null)
+		{
+			try
+			{
+				return Math.max(0, Long.parseLong(value.trim()));
+			}
+			catch (NumberFormatException e)
+			{
+			}
+		}
+
+		return 0;
+	}
+
+	/**
+	 * Returns true if the client wants to send more requests on the same connection. HTTP/1.1 connections persist
+	 * unless the client asks for them to be closed; HTTP/1.0 clients have to ask for keep-alive.
+	 * 
+	 * @return boolean
+	 */
+	public boolean isKeepAlive()
+	{
+		String connection = this.getHeader("Connection"); //$NON-NLS-1$
+
+		if ("1.1".equals(this._version)) //$NON-NLS-1$
+		{
+			return connection == null || connection.toLowerCase().indexOf("close") == -1; //$NON-NLS-1$
+		}
+		if ("1.0".equals(this._version)) //$NON-NLS-1$
+		{
+			return connection != null && connection.toLowerCase().indexOf("keep-alive") != -1; //$NON-NLS-1$
+		}
+
+		return false;
+	}
+
 	/**
 	 * The current Uri
 	 * 
@@ -136,8 +216,20 @@ public class RequestLineParser
 		{
 			_keyValuePairs = new Hashtable();
 
-			String reqLine = header.substring(0, header.indexOf("\r\n")); //$NON-NLS-1$
-			
+			int lineEnd = header.indexOf('\n');
+			String reqLine = (lineEnd == -1) ? header : header.substring(0, lineEnd);
+
+			if (reqLine.endsWith("\r")) //$NON-NLS-1$
+			{
+				reqLine = reqLine.substring(0, reqLine.length() - 1);
+			}
+			this._requestLine = reqLine;
+
+			if (lineEnd != -1)
+			{
+				parseHeaders(header.substring(lineEnd + 1));
+			}
+
 			Matcher matcher = HTTP_PATTERN.matcher(reqLine);
 
 			if (matcher.matches())
@@ -153,7 +245,7 @@ public class RequestLineParser
 					this._uri = matcher.group(2);
 					this._uri = getUrlDecodedValue(_uri);
 				}
-				if (groupCount == 3)
+				if (groupCount >= 3)
 				{
 					this._queryString = matcher.group(3);
 					// trim off the preceding ? char
@@ -165,6 +257,10 @@ public class RequestLineParser
 
 					parseQueryString(this._queryString);
 				}
+				if (groupCount >= 4)
+				{
+					this._version = matcher.group(4);
+				}
 			}
 		}
 	}
@@ -173,6 +269,65 @@ public class RequestLineParser
 	 * Methods
 	 */
 
+	/**
+	 * Finds the end of the next request header in a buffer that may hold several pipelined requests
+	 * 
+	 * @param buffer
+	 * @param offset
+	 *            where the request starts
+	 * @param end
+	 *            the end of the data in the buffer
+	 * @return the offset just past the blank line that ends the header, or -1 if the header is not complete yet
+	 */
+	public static int findHeaderEnd(byte[] buffer, int offset, int end)
+	{
+		for (int i = offset; i < end; i++)
+		{
+			if (buffer[i] == '\n')
+			{
+				// a line feed followed by an empty line, with or without carriage returns
+				if (i + 1 < end && buffer[i + 1] == '\n')
+				{
+					return i + 2;
+				}
+				if (i + 2 < end && buffer[i + 1] == '\r' && buffer[i + 2] == '\n')
+				{
+					return i + 3;
+				}
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * parseHeaders
+	 * 
+	 * @param headers
+	 *            the header lines that follow the request line
+	 */
+	private void parseHeaders(String headers)
+	{
+		String[] lines = headers.split("\r?\n"); //$NON-NLS-1$
+
+		for (int i = 0; i < lines.length; i++)
+		{
+			String line = lines[i];
+
+			if (line.length() == 0)
+			{
+				break;
+			}
+
+			int colon = line.indexOf(':');
+
+			if (colon > 0)
+			{
+				this._headers.put(line.substring(0, colon).trim().toLowerCase(), line.substring(colon + 1).trim());
+			}
+		}
+	}
+
 	private void parseQueryString(String queryString)
 	{
 		if (queryString == null || this._queryString.length() == 0)
@@ -0,0 +1,769 @@
+/**
+ * This file Copyright (c) 2005-2008 Aptana, Inc. This program is
+ * dual-licensed under both the Aptana Public License and the GNU General
+ * Public license. You may elect to use one or the other of these licenses.
+ * 
+ * This program is distributed in the hope that it will be useful, but
+ * AS-IS and WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, TITLE, or
+ * NONINFRINGEMENT. Redistribution, except as permitted by whichever of
+ * the GPL or APL you select, is prohibited.
+ *
+ * 1. For the GPL license (GPL), you can redistribute and/or modify this
+ * program under the terms of the GNU General Public License,
+ * Version 3, as published by the Free Software Foundation.  You should
+ * have received a copy of the GNU General Public License, Version 3 along
+ * with this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * Aptana provides a special exception to allow redistribution of this file
+ * with certain other free and open source software ("FOSS") code and certain additional terms
+ * pursuant to Section 7 of the GPL. You may view the exception and these
+ * terms on the web at http://www.aptana.com/legal/gpl/.
+ * 
+ * 2. For the Aptana Public License (APL), this program and the
+ * accompanying materials are made available under the terms of the APL
+ * v1.0 which accompanies this distribution, and is available at
+ * http://www.aptana.com/legal/apl/.
+ * 
+ * You may view the GPL, Aptana's exception and additional terms, and the
+ * APL in the file titled license.html at the root of the corresponding
+ * plugin containing this source file.
+ * 
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.ide.server.http;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.aptana.ide.server.logging.IHttpLog;
+
+/**
+ * Serves requests with a single selector thread that accepts connections and reads requests, and a bounded pool of
+ * workers that write the responses. Idle keep-alive connections cost no thread, and a client may pipeline several
+ * requests on one connection; they are answered in order.
+ * 
+ * @author agent (agent@local)
+ */
+public class SelectorServerRunnable implements Runnable
+{
+	private static final int WORKERS = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+	private static final int MAX_QUEUED_CONNECTIONS = 256;
+	private static final int MAX_PIPELINED_REQUESTS = 16;
+	private static final int MIN_HEADER_BUFFER_SIZE = 2048;
+	private static final int MAX_HEADER_SIZE = 16 * 1024;
+	private static final int OUTPUT_BUFFER_SIZE = 8 * 1024;
+	private static final long IDLE_CHECK_INTERVAL = 1000;
+
+	/*
+	 * Fields
+	 */
+	private volatile boolean _stopped;
+	private ServerSocketChannel _serverChannel;
+	private Selector _selector;
+	private RequestHandler _requestHandler;
+	private IHttpLog _logger;
+	private ThreadPoolExecutor _executor;
+	private int _timeout;
+
+	/* connections whose interest in reading and writing has changed, or that have to be closed */
+	private ConcurrentLinkedQueue<Connection> _changes = new ConcurrentLinkedQueue<Connection>();
+
+	/*
+	 * Constructors
+	 */
+
+	/**
+	 * Create a new instance of SelectorServerRunnable
+	 * 
+	 * @param server
+	 *            a server listening on a channel
+	 * @param timeout
+	 *            the time in milliseconds after which an idle connection is closed
+	 * @throws IOException
+	 */
+	public SelectorServerRunnable(HttpServer server, int timeout) throws IOException
+	{
+		this._serverChannel = server.getSocketServer().getChannel();
+		this._logger = server.getLogger();
+		this._requestHandler = new RequestHandler(server, server.getResourceResolver(), this._logger);
+		this._timeout = timeout;
+		this._selector = Selector.open();
+		this._executor = new ThreadPoolExecutor(WORKERS, WORKERS, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(MAX_QUEUED_CONNECTIONS), new ThreadFactory()
+				{
+					private int _count;
+
+					public synchronized Thread newThread(Runnable runnable)
+					{
+						Thread thread = new Thread(runnable, "Aptana: HTTP Worker " + (++this._count)); //$NON-NLS-1$
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+	}
+
+	/*
+	 * Methods
+	 */
+
+	/**
+	 * Runs the server
+	 */
+	public void run()
+	{
+		try
+		{
+			this._serverChannel.configureBlocking(false);
+			this._serverChannel.register(this._selector, SelectionKey.OP_ACCEPT);
+
+			long lastIdleCheck = System.currentTimeMillis();
+
+			while (this._stopped == false)
+			{
+				this._selector.select(IDLE_CHECK_INTERVAL);
+				this.applyChanges();
+
+				Iterator<SelectionKey> keys = this._selector.selectedKeys().iterator();
+
+				while (keys.hasNext())
+				{
+					SelectionKey key = keys.next();
+					keys.remove();
+
+					if (key.isValid() == false)
+					{
+						continue;
+					}
+					if (key.isAcceptable())
+					{
+						this.accept();
+					}
+					else
+					{
+						Connection connection = (Connection) key.attachment();
+
+						if (key.isReadable())
+						{
+							connection.read();
+						}
+						if (key.isValid() && key.isWritable())
+						{
+							connection.writable();
+						}
+					}
+				}
+
+				long now = System.currentTimeMillis();
+
+				if (now - lastIdleCheck >= IDLE_CHECK_INTERVAL)
+				{
+					this.closeIdleConnections(now);
+					lastIdleCheck = now;
+				}
+			}
+		}
+		catch (Exception e)
+		{
+			if (this._stopped == false)
+			{
+				this._logger.logError(e.getMessage(), e);
+			}
+		}
+		finally
+		{
+			for (SelectionKey key : this._selector.keys())
+			{
+				if (key.attachment() instanceof Connection)
+				{
+					((Connection) key.attachment()).close();
+				}
+			}
+			try
+			{
+				this._selector.close();
+				this._serverChannel.close();
+			}
+			catch (IOException e)
+			{
+				this._logger.logError(e.getMessage(), e);
+			}
+			this._executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Stops the server
+	 */
+	public synchronized void stop()
+	{
+		if (this._stopped == false)
+		{
+			this._stopped = true;
+			try
+			{
+				this._serverChannel.close();
+			}
+			catch (Exception e)
+			{
+				this._logger.logError(e.getMessage(), e);
+			}
+			this._selector.wakeup();
+		}
+	}
+
+	/**
+	 * accept
+	 */
+	private void accept()
+	{
+		try
+		{
+			SocketChannel channel;
+
+			while ((channel = this._serverChannel.accept()) != null)
+			{
+				channel.configureBlocking(false);
+				channel.socket().setTcpNoDelay(true);
+
+				Connection connection = new Connection(channel);
+				connection._key = channel.register(this._selector, SelectionKey.OP_READ, connection);
+			}
+		}
+		catch (IOException e)
+		{
+			if (this._stopped == false)
+			{
+				this._logger.logError(e.getMessage(), e);
+			}
+		}
+	}
+
+	/**
+	 * Applies the changes workers have asked for. Only the selector thread changes the interest of a key, since that
+	 * may block while a select is in progress.
+	 */
+	private void applyChanges()
+	{
+		Connection connection;
+
+		while ((connection = this._changes.poll()) != null)
+		{
+			connection.applyChange();
+		}
+	}
+
+	/**
+	 * Queues a change of a connection for the selector thread
+	 * 
+	 * @param connection
+	 */
+	private void requestChange(Connection connection)
+	{
+		this._changes.add(connection);
+		this._selector.wakeup();
+	}
+
+	/**
+	 * closeIdleConnections
+	 * 
+	 * @param now
+	 */
+	private void closeIdleConnections(long now)
+	{
+		for (SelectionKey key : this._selector.keys())
+		{
+			if (key.attachment() instanceof Connection)
+			{
+				((Connection) key.attachment()).closeIfIdle(now);
+			}
+		}
+	}
+
+	/**
+	 * A client connection. The selector thread reads and parses its requests, and one worker at a time answers them.
+	 */
+	private class Connection implements Runnable
+	{
+		private SocketChannel _channel;
+		private SelectionKey _key;
+		private ByteBuffer _input = ByteBuffer.allocate(MIN_HEADER_BUFFER_SIZE);
+		private OutputStream _output = new ConnectionOutputStream(this);
+
+		/* the following are guarded by this connection */
+		private LinkedList<RequestLineParser> _requests = new LinkedList<RequestLineParser>();
+		private boolean _busy;
+		private boolean _reading = true;
+		private boolean _writing;
+		private boolean _lastRequest;
+		private boolean _endOfInput;
+		private boolean _closing;
+		private boolean _closed;
+		private long _lastActive = System.currentTimeMillis();
+
+		/* the number of bytes of a request body that still have to be skipped, only used by the selector thread */
+		private long _skip;
+
+		Connection(SocketChannel channel)
+		{
+			this._channel = channel;
+		}
+
+		/**
+		 * Reads what the client has sent and queues the requests that are complete
+		 */
+		void read()
+		{
+			int count;
+
+			try
+			{
+				count = this._channel.read(this._input);
+			}
+			catch (IOException e)
+			{
+				this.close();
+				return;
+			}
+
+			if (count == -1)
+			{
+				synchronized (this)
+				{
+					this._endOfInput = true;
+					this._reading = false;
+					if (this._busy == false)
+					{
+						this.close();
+						return;
+					}
+				}
+				this.applyChange();
+				return;
+			}
+
+			LinkedList<RequestLineParser> requests = this.parseRequests();
+
+			if (requests == null)
+			{
+				// the header is too large
+				this.close();
+				return;
+			}
+
+			boolean dispatch = false;
+
+			synchronized (this)
+			{
+				this._lastActive = System.currentTimeMillis();
+				this._requests.addAll(requests);
+
+				if (this._lastRequest || this._requests.size() >= MAX_PIPELINED_REQUESTS)
+				{
+					// the worker resumes reading once it has answered the queued requests
+					this._reading = false;
+				}
+				if (this._busy == false && this._requests.isEmpty() == false)
+				{
+					this._busy = true;
+					dispatch = true;
+				}
+			}
+
+			this.applyChange();
+
+			if (dispatch)
+			{
+				try
+				{
+					_executor.execute(this);
+				}
+				catch (RejectedExecutionException e)
+				{
+					// too many connections are waiting for a worker
+					this.close();
+				}
+			}
+		}
+
+		/**
+		 * Parses the complete requests in the input buffer
+		 * 
+		 * @return the requests, or null if a header does not fit in the buffer
+		 */
+		private LinkedList<RequestLineParser> parseRequests()
+		{
+			LinkedList<RequestLineParser> requests = new LinkedList<RequestLineParser>();
+			byte[] buffer = this._input.array();
+			int position = 0;
+			int end = this._input.position();
+
+			while (position < end)
+			{
+				if (this._skip > 0)
+				{
+					int count = (int) Math.min(this._skip, end - position);
+
+					position += count;
+					this._skip -= count;
+					continue;
+				}
+				if (this._lastRequest)
+				{
+					// the client asked for the connection to be closed, so anything after that request is ignored
+					position = end;
+					break;
+				}
+				if (buffer[position] == '\r' || buffer[position] == '\n')
+				{
+					// skip line ends left between requests
+					position++;
+					continue;
+				}
+
+				int headerEnd = RequestLineParser.findHeaderEnd(buffer, position, end);
+
+				if (headerEnd == -1)
+				{
+					break;
+				}
+
+				RequestLineParser request = new RequestLineParser(new String(buffer, position, headerEnd - position));
+
+				requests.add(request);
+				this._skip = request.getContentLength();
+				this._lastRequest = request.isKeepAlive() == false;
+				position = headerEnd;
+			}
+
+			this._input.flip();
+			this._input.position(position);
+			this._input.compact();
+
+			if (this._input.hasRemaining() == false)
+			{
+				if (this._input.capacity() >= MAX_HEADER_SIZE)
+				{
+					return null;
+				}
+
+				ByteBuffer input = ByteBuffer.allocate(this._input.capacity() * 2);
+
+				this._input.flip();
+				input.put(this._input);
+				this._input = input;
+			}
+
+			return requests;
+		}
+
+		/**
+		 * Answers the queued requests on a worker thread
+		 * 
+		 * @see java.lang.Runnable#run()
+		 */
+		public void run()
+		{
+			boolean open = true;
+
+			try
+			{
+				while (open)
+				{
+					RequestLineParser request;
+
+					synchronized (this)
+					{
+						request = this._requests.poll();
+
+						if (request == null)
+						{
+							this._busy = false;
+							this._lastActive = System.currentTimeMillis();
+							if (this._endOfInput || this._closed)
+							{
+								open = false;
+							}
+							else if (this._lastRequest == false)
+							{
+								this._reading = true;
+							}
+							break;
+						}
+					}
+
+					boolean keepAlive = request.isKeepAlive() && _stopped == false;
+
+					open = _requestHandler.handle(request, this._output, keepAlive) && keepAlive;
+				}
+			}
+			catch (IOException e)
+			{
+				open = false;
+			}
+			catch (RuntimeException e)
+			{
+				open = false;
+				_logger.logError(e.getMessage(), e);
+			}
+
+			if (open == false)
+			{
+				synchronized (this)
+				{
+					this._busy = false;
+					this._closing = true;
+				}
+			}
+
+			requestChange(this);
+		}
+
+		/**
+		 * Called on the selector thread to bring the key in line with what the connection is waiting for
+		 */
+		void applyChange()
+		{
+			int ops = 0;
+
+			synchronized (this)
+			{
+				if (this._closing)
+				{
+					this.close();
+					return;
+				}
+				if (this._reading)
+				{
+					ops |= SelectionKey.OP_READ;
+				}
+				if (this._writing)
+				{
+					ops |= SelectionKey.OP_WRITE;
+				}
+			}
+
+			if (this._key.isValid())
+			{
+				this._key.interestOps(ops);
+			}
+		}
+
+		/**
+		 * Called on the selector thread when the channel can take more output
+		 */
+		synchronized void writable()
+		{
+			this._writing = false;
+			this._key.interestOps(this._key.interestOps() & ~SelectionKey.OP_WRITE);
+			this.notifyAll();
+		}
+
+		/**
+		 * Waits on a worker thread until the channel can take more output
+		 * 
+		 * @throws IOException
+		 */
+		synchronized void awaitWritable() throws IOException
+		{
+			this._writing = true;
+			requestChange(this);
+
+			long deadline = System.currentTimeMillis() + _timeout;
+
+			while (this._writing && this._closed == false)
+			{
+				long remaining = deadline - System.currentTimeMillis();
+
+				if (remaining <= 0)
+				{
+					throw new SocketTimeoutException();
+				}
+				try
+				{
+					this.wait(remaining);
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+					throw new ClosedChannelException();
+				}
+			}
+			if (this._closed)
+			{
+				throw new ClosedChannelException();
+			}
+		}
+
+		/**
+		 * Asks the selector thread to close this connection
+		 */
+		void requestClose()
+		{
+			synchronized (this)
+			{
+				this._closing = true;
+			}
+			requestChange(this);
+		}
+
+		/**
+		 * Called on the selector thread to close an idle connection
+		 * 
+		 * @param now
+		 */
+		void closeIfIdle(long now)
+		{
+			synchronized (this)
+			{
+				if (this._busy || now - this._lastActive < _timeout)
+				{
+					return;
+				}
+			}
+			this.close();
+		}
+
+		/**
+		 * Closes the connection. A worker waiting to write is released with an exception.
+		 */
+		synchronized void close()
+		{
+			if (this._closed == false)
+			{
+				this._closed = true;
+				this._key.cancel();
+				try
+				{
+					this._channel.close();
+				}
+				catch (IOException e)
+				{
+					// nothing to do
+				}
+				this.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * The buffered output of a connection, which sends files with {@link FileChannel#transferTo}
+	 */
+	private static class ConnectionOutputStream extends BufferedOutputStream implements IFileTransferTarget
+	{
+		private Connection _connection;
+
+		ConnectionOutputStream(Connection connection)
+		{
+			super(new ChannelOutputStream(connection), OUTPUT_BUFFER_SIZE);
+			this._connection = connection;
+		}
+
+		/**
+		 * @see com.aptana.ide.server.http.IFileTransferTarget#transferFrom(java.io.File, long, long)
+		 */
+		public long transferFrom(File file, long position, long count) throws IOException
+		{
+			this.flush();
+
+			FileInputStream input = new FileInputStream(file);
+
+			try
+			{
+				FileChannel channel = input.getChannel();
+				long sent = 0;
+
+				while (sent < count)
+				{
+					long transferred = channel.transferTo(position + sent, count - sent, this._connection._channel);
+
+					if (transferred > 0)
+					{
+						sent += transferred;
+					}
+					else if (position + sent >= channel.size())
+					{
+						break;
+					}
+					else
+					{
+						this._connection.awaitWritable();
+					}
+				}
+
+				return sent;
+			}
+			finally
+			{
+				input.close();
+			}
+		}
+	}
+
+	/**
+	 * Writes to a non-blocking channel from a worker thread, waiting for the selector when the socket buffer is full
+	 */
+	private static class ChannelOutputStream extends OutputStream
+	{
+		private Connection _connection;
+
+		ChannelOutputStream(Connection connection)
+		{
+			this._connection = connection;
+		}
+
+		/**
+		 * @see java.io.OutputStream#write(int)
+		 */
+		public void write(int b) throws IOException
+		{
+			this.write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		/**
+		 * @see java.io.OutputStream#write(byte[], int, int)
+		 */
+		public void write(byte[] bytes, int offset, int length) throws IOException
+		{
+			ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, length);
+
+			while (buffer.hasRemaining())
+			{
+				if (this._connection._channel.write(buffer) == 0)
+				{
+					this._connection.awaitWritable();
+				}
+			}
+		}
+
+		/**
+		 * Closing the stream closes the connection once the response has been written
+		 * 
+		 * @see java.io.OutputStream#close()
+		 */
+		public void close() throws IOException
+		{
+			this._connection.requestClose();
+		}
+	}
+}
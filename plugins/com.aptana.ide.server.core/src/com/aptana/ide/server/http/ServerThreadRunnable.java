@@ -37,24 +37,12 @@ package com.aptana.ide.server.http;
 import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.Hashtable;
 import java.util.Vector;
 
-import org.eclipse.core.runtime.Path;
-
-import com.aptana.ide.core.IdeLog;
-import com.aptana.ide.core.StringUtils;
-import com.aptana.ide.server.core.ServerCorePlugin;
 import com.aptana.ide.server.logging.IHttpLog;
-import com.aptana.ide.server.resolvers.IHttpResourceResolver;
-import com.aptana.ide.server.resources.IHttpFolderResource;
-import com.aptana.ide.server.resources.IHttpResource;
 
 /**
  * @author Kevin Lindsey
@@ -68,7 +56,7 @@ public class ServerThreadRunnable implements Runnable
 	private HttpServer _server;
 
 	private ServerSocket _socketServer;
-	private IHttpResourceResolver _resourceResolver;
+	private RequestHandler _requestHandler;
 	private IHttpLog _logger;
 
 	/* Where worker threads stand idle */
@@ -104,8 +92,8 @@ public class ServerThreadRunnable implements Runnable
 	{
 		this._server = server;
 		this._socketServer = this._server.getSocketServer();
-		this._resourceResolver = this._server.getResourceResolver();
 		this._logger = this._server.getLogger();
+		this._requestHandler = new RequestHandler(server, this._server.getResourceResolver(), this._logger);
 		this.timeout = timeout;
 	}
 	
@@ -138,14 +126,14 @@ public class ServerThreadRunnable implements Runnable
 					if (threads.isEmpty())
 					{
 						Worker ws = new Worker();
-						ws.setSocket(this, s, this._server, this._resourceResolver, this._logger);
+						ws.setSocket(this, s, this._requestHandler);
 						(new Thread(ws, "Aptana: HTTP Worker (Additional)")).start(); //$NON-NLS-1$
 					}
 					else
 					{
 						w = (Worker) threads.elementAt(0);
 						threads.removeElementAt(0);
-						w.setSocket(this, s, this._server, this._resourceResolver, this._logger);
+						w.setSocket(this, s, this._requestHandler);
 					}
 				}
 			}
@@ -191,9 +179,7 @@ class Worker implements Runnable
 
 	private Socket s;
 	private ServerThreadRunnable _serverThreadRunnable;
-	private HttpServer _server;
-	private IHttpResourceResolver _resourceResolver;
-	private IHttpLog _logger;
+	private RequestHandler _requestHandler;
 
 	/* buffer to use for requests */
 	byte[] buf;
@@ -204,14 +190,11 @@ class Worker implements Runnable
 		s = null;
 	}
 
-	synchronized void setSocket(ServerThreadRunnable serverThreadRunnable, Socket s, HttpServer server,
-			IHttpResourceResolver resourceResolver, IHttpLog logger)
+	synchronized void setSocket(ServerThreadRunnable serverThreadRunnable, Socket s, RequestHandler requestHandler)
 	{
 		this._serverThreadRunnable = serverThreadRunnable;
 		this.s = s;
-		this._server = server;
-		this._resourceResolver = resourceResolver;
-		this._logger = logger;
+		this._requestHandler = requestHandler;
 
 		notify();
 	}
@@ -272,8 +255,6 @@ class Worker implements Runnable
 	 */
 	private void processRequest() throws IOException
 	{
-		String uri = null;
-
 		try
 		{
 			InputStream is = new BufferedInputStream(s.getInputStream());
@@ -324,94 +305,9 @@ class Worker implements Runnable
 				}
 			}
 
-			String reqLine = new String(buf);
-
-			RequestLineParser reqLineParser = new RequestLineParser(reqLine);
-
-			uri = reqLineParser.getUri();
-
-			if (uri != null && uri.length() > 0)
-			{
-				try
-				{
-					IHttpResource resource = this._resourceResolver.getResource(reqLineParser);
-
-					if (resource != null)
-					{
-						if (resource instanceof IHttpFolderResource)
-						{
-							IHttpFolderResource folderResource = (IHttpFolderResource) resource;
-
-							if (!uri.endsWith("/")) //$NON-NLS-1$
-							{
-								// send a redirect to tell the browser to connect with a URL that includes
-								// the trailing slash (required for relative resources to be properly resolved)
-								this.sendRedirect(s, uri + "/"); //$NON-NLS-1$
-							}
-							else
-							{
-								String[] fileNames = folderResource.getFileNames();
-								String[] folderNames = folderResource.getFolderNames();
-								String folderHTML = HttpResponseUtils.createBrowseFolderHTML(new Path(uri), fileNames,
-										folderNames);
-
-								if (reqLineParser.getMethod().equals("GET")) //$NON-NLS-1$
-								{
-									this.sendContent(s, folderHTML, "text/html"); //$NON-NLS-1$
-								}
-								else if (reqLineParser.getMethod().equals("HEAD")) //$NON-NLS-1$
-								{
-									this.sendHeaders(s, "text/html"); //$NON-NLS-1$
-								}
-							}
-						}
-						else
-						{
-							InputStream contentInput = resource.getContentInputStream(this._server);
-							long length = resource.getContentLength();
-							String type = resource.getContentType();
+			RequestLineParser reqLineParser = new RequestLineParser(new String(buf, 0, nread));
 
-							try
-							{
-								if (reqLineParser.getMethod().equals("GET")) //$NON-NLS-1$
-								{
-									this.sendFile(s, contentInput, length, type);
-								}
-								else if (reqLineParser.getMethod().equals("HEAD")) //$NON-NLS-1$
-								{
-									this.sendHeaders(s, type);
-								}
-							}
-							finally
-							{
-								if ( contentInput != null ) {
-									contentInput.close();
-								}
-							}
-						}
-					}
-					else
-					{
-						throw new HttpServerException(404, "file not found", uri, "file not found: " + uri); //$NON-NLS-1$ //$NON-NLS-2$
-					}
-				}
-				catch (HttpServerException e)
-				{
-					this._logger.logTrace(e.getStatusMessage() + "-" + e.getRequestUri()); //$NON-NLS-1$
-					sendError(s, e);
-				}
-			}
-			else
-			{
-				this._logger.logTrace("bad request detected: " + reqLine != null ? reqLine : "request line was empty"); //$NON-NLS-1$ //$NON-NLS-2$
-				sendError(s, new HttpServerException(400, "bad request", uri, null)); //$NON-NLS-1$
-			}
-		}
-		catch (Exception e)
-		{
-			// this._logger.logError("error processing request: " + uri != null ? uri : "uri unavailable", e);
-			sendError(s, new HttpServerException(500, "Internal error", uri, null, e)); //$NON-NLS-1$
-			IdeLog.logError(ServerCorePlugin.getDefault(), "Error", e); //$NON-NLS-1$
+			this._requestHandler.handle(reqLineParser, s.getOutputStream(), false);
 		}
 		finally
 		{
@@ -421,103 +317,4 @@ class Worker implements Runnable
 			}
 		}
 	}
-
-	/**
-	 * makeHeaders
-	 * 
-	 * @return Hashtable
-	 */
-	private Hashtable<String, String> makeHeaders()
-	{
-		Hashtable<String, String> headers = new Hashtable<String, String>();
-
-		headers.put("Server", "Aptana v0.2.7"); //$NON-NLS-1$ //$NON-NLS-2$
-		
-		// add IE no-cache headers per
-		// http://en.wikipedia.org/wiki/XMLHttpRequest#Microsoft_Internet_Explorer_cache_issues
-		headers.put("Expires", "Mon, 26 Jul 1997 05:00:00 GMT"); //$NON-NLS-1$ //$NON-NLS-2$
-		headers.put("Cache-Control", "no-store, no-cache, must-revalidate"); //$NON-NLS-1$ //$NON-NLS-2$
-		headers.put("Pragma", "no-cache"); //$NON-NLS-1$ //$NON-NLS-2$
-		SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zZ"); //$NON-NLS-1$
-		headers.put("Last-Modified", format.format(new Date())); //$NON-NLS-1$
-
-		return headers;
-	}
-
-	/**
-	 * sendContent
-	 * 
-	 * @param s
-	 * @param content
-	 * @param contentType
-	 * @throws IOException
-	 */
-	private void sendContent(Socket s, String content, String contentType) throws IOException
-	{
-		OutputStream output = s.getOutputStream();
-		HttpResponse response = new HttpResponse(output);
-
-		response.sendResponseContent(content);
-	}
-
-	/**
-	 * @param s
-	 * @throws IOException
-	 */
-	private void sendHeaders(Socket s, String contentType) throws IOException
-	{
-		OutputStream output = s.getOutputStream();
-		HttpResponse response = new HttpResponse(output);
-
-		response.sendReponseHeader(200, "OK", 0, contentType, this.makeHeaders()); //$NON-NLS-1$
-	}
-
-	/**
-	 * sendFile
-	 * 
-	 * @param s
-	 * @param fileInput
-	 * @param contentLength
-	 * @param contentType
-	 * @throws IOException
-	 */
-	private void sendFile(Socket s, InputStream fileInput, long contentLength, String contentType) throws IOException
-	{
-		OutputStream output = s.getOutputStream();
-		HttpResponse response = new HttpResponse(output);
-
-		response.sendFileContent(fileInput, contentLength, contentType, this.makeHeaders());
-	}
-
-	/**
-	 * sendError
-	 * 
-	 * @param s
-	 * @param e
-	 * @throws IOException
-	 */
-	private void sendError(Socket s, HttpServerException e) throws IOException
-	{
-		OutputStream output = s.getOutputStream();
-		HttpResponse response = new HttpResponse(output);
-
-		response.sendError(e);
-	}
-
-	/**
-	 * sendRedirect
-	 * 
-	 * @param s
-	 * @param newURL
-	 * @throws IOException
-	 */
-	private void sendRedirect(Socket s, String newURL) throws IOException
-	{
-		OutputStream output = s.getOutputStream();
-		HttpResponse response = new HttpResponse(output);
-		Hashtable<String, String> headers = new Hashtable<String, String>();
-		headers.put("location", StringUtils.urlEncodeForSpaces(newURL.toCharArray())); //$NON-NLS-1$
-		response.sendReponseHeader(307, "redirect", 1, "text/html", headers); //$NON-NLS-1$ //$NON-NLS-2$
-	}
-
 }
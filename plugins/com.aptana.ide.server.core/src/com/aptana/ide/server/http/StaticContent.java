@@ -0,0 +1,392 @@
+/**
+ * This file Copyright (c) 2005-2008 Aptana, Inc. This program is
+ * dual-licensed under both the Aptana Public License and the GNU General
+ * Public license. You may elect to use one or the other of these licenses.
+ * 
+ * This program is distributed in the hope that it will be useful, but
+ * AS-IS and WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, TITLE, or
+ * NONINFRINGEMENT. Redistribution, except as permitted by whichever of
+ * the GPL or APL you select, is prohibited.
+ *
+ * 1. For the GPL license (GPL), you can redistribute and/or modify this
+ * program under the terms of the GNU General Public License,
+ * Version 3, as published by the Free Software Foundation.  You should
+ * have received a copy of the GNU General Public License, Version 3 along
+ * with this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * Aptana provides a special exception to allow redistribution of this file
+ * with certain other free and open source software ("FOSS") code and certain additional terms
+ * pursuant to Section 7 of the GPL. You may view the exception and these
+ * terms on the web at http://www.aptana.com/legal/gpl/.
+ * 
+ * 2. For the Aptana Public License (APL), this program and the
+ * accompanying materials are made available under the terms of the APL
+ * v1.0 which accompanies this distribution, and is available at
+ * http://www.aptana.com/legal/apl/.
+ * 
+ * You may view the GPL, Aptana's exception and additional terms, and the
+ * APL in the file titled license.html at the root of the corresponding
+ * plugin containing this source file.
+ * 
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.ide.server.http;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * A snapshot of a static file that is served as is: its length, modification time and entity tag, and its bytes if
+ * the file is small enough to be kept in memory. Answers conditional and range requests against the snapshot.
+ * 
+ * @author agent (agent@local)
+ */
+public final class StaticContent
+{
+	/**
+	 * Returned by {@link #getRange(String, String)} when none of the requested bytes exist
+	 */
+	public static final long[] UNSATISFIABLE = new long[0];
+
+	private static final String DATE_FORMAT = "EEE, dd MMM yyyy HH:mm:ss 'GMT'"; //$NON-NLS-1$
+	private static final String BYTES_UNIT = "bytes="; //$NON-NLS-1$
+	private static final int COPY_BUFFER_SIZE = 8192;
+
+	/*
+	 * Fields
+	 */
+	private File _file;
+	private long _length;
+	private long _lastModified;
+	private long _version;
+	private String _etag;
+	private byte[] _bytes;
+
+	/*
+	 * Constructors
+	 */
+
+	/**
+	 * Create a new instance of StaticContent
+	 * 
+	 * @param file
+	 * @param length
+	 * @param lastModified
+	 * @param version
+	 *            the number of times the file is known to have changed. Saves that keep the length and land in the
+	 *            same second of modification time still get a new entity tag this way.
+	 * @param bytes
+	 *            the content of the file, or null if it is read from the file when it is sent
+	 */
+	StaticContent(File file, long length, long lastModified, long version, byte[] bytes)
+	{
+		this._file = file;
+		this._length = length;
+		this._lastModified = lastModified;
+		this._version = version;
+		this._bytes = bytes;
+		this._etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "-" //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				+ Long.toHexString(version) + "\""; //$NON-NLS-1$
+	}
+
+	/*
+	 * Properties
+	 */
+
+	/**
+	 * getFile
+	 * 
+	 * @return File
+	 */
+	public File getFile()
+	{
+		return this._file;
+	}
+
+	/**
+	 * getLength
+	 * 
+	 * @return long
+	 */
+	public long getLength()
+	{
+		return this._length;
+	}
+
+	/**
+	 * getLastModified
+	 * 
+	 * @return the modification time in milliseconds
+	 */
+	public long getLastModified()
+	{
+		return this._lastModified;
+	}
+
+	/**
+	 * getVersion
+	 * 
+	 * @return the number of changes to the file that were known when this snapshot was taken
+	 */
+	public long getVersion()
+	{
+		return this._version;
+	}
+
+	/**
+	 * Returns the entity tag of this snapshot. It changes whenever the length or the modification time of the file
+	 * does, and whenever the workspace reports a change to the file.
+	 * 
+	 * @return String
+	 */
+	public String getETag()
+	{
+		return this._etag;
+	}
+
+	/**
+	 * Returns the content of the file if it is kept in memory
+	 * 
+	 * @return the bytes, or null
+	 */
+	public byte[] getBytes()
+	{
+		return this._bytes;
+	}
+
+	/*
+	 * Methods
+	 */
+
+	/**
+	 * Returns true if the client already has this version of the file
+	 * 
+	 * @param ifNoneMatch
+	 *            the If-None-Match request header, or null
+	 * @param ifModifiedSince
+	 *            the If-Modified-Since request header, or null
+	 * @return boolean
+	 */
+	public boolean isNotModified(String ifNoneMatch, String ifModifiedSince)
+	{
+		if (ifNoneMatch != null)
+		{
+			// the entity tag takes precedence over the date
+			String[] tags = ifNoneMatch.split(","); //$NON-NLS-1$
+
+			for (int i = 0; i < tags.length; i++)
+			{
+				String tag = tags[i].trim();
+
+				if (tag.startsWith("W/")) //$NON-NLS-1$
+				{
+					tag = tag.substring(2);
+				}
+				if (tag.equals("*") || tag.equals(this._etag)) //$NON-NLS-1$
+				{
+					return true;
+				}
+			}
+
+			return false;
+		}
+		if (ifModifiedSince != null)
+		{
+			long since = parseDate(ifModifiedSince);
+
+			// dates in headers have a resolution of one second
+			return since != -1 && this._lastModified / 1000 <= since / 1000;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Returns the part of the file a client asks for. Only single ranges are supported; a request for several ranges
+	 * gets the whole file.
+	 * 
+	 * @param range
+	 *            the Range request header, or null
+	 * @param ifRange
+	 *            the If-Range request header, or null
+	 * @return the first and last offset of the range, null to send the whole file, or {@link #UNSATISFIABLE}
+	 */
+	public long[] getRange(String range, String ifRange)
+	{
+		if (range == null || range.startsWith(BYTES_UNIT) == false || range.indexOf(',') != -1)
+		{
+			return null;
+		}
+		if (ifRange != null)
+		{
+			ifRange = ifRange.trim();
+
+			boolean current = ifRange.startsWith("\"") ? ifRange.equals(this._etag) //$NON-NLS-1$
+					: parseDate(ifRange) / 1000 == this._lastModified / 1000;
+
+			if (current == false)
+			{
+				// the client's copy is out of date, so it needs all of the file
+				return null;
+			}
+		}
+
+		String spec = range.substring(BYTES_UNIT.length()).trim();
+		int dash = spec.indexOf('-');
+
+		if (dash == -1)
+		{
+			return null;
+		}
+
+		try
+		{
+			String first = spec.substring(0, dash).trim();
+			String last = spec.substring(dash + 1).trim();
+
+			if (first.length() == 0)
+			{
+				// the last n bytes
+				long suffix = Long.parseLong(last);
+
+				if (suffix <= 0 || this._length == 0)
+				{
+					return UNSATISFIABLE;
+				}
+
+				return new long[] { Math.max(0, this._length - suffix), this._length - 1 };
+			}
+
+			long start = Long.parseLong(first);
+			long end = (last.length() == 0) ? this._length - 1 : Long.parseLong(last);
+
+			if (start < 0 || (last.length() > 0 && end < start))
+			{
+				return null;
+			}
+			if (start >= this._length)
+			{
+				return UNSATISFIABLE;
+			}
+
+			return new long[] { start, Math.min(end, this._length - 1) };
+		}
+		catch (NumberFormatException e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Writes part of the content to a stream, from memory if possible
+	 * 
+	 * @param output
+	 * @param offset
+	 * @param length
+	 * @return the number of bytes written, less than the length if the file has been truncated since
+	 * @throws IOException
+	 */
+	public long writeTo(OutputStream output, long offset, long length) throws IOException
+	{
+		if (this._bytes != null)
+		{
+			output.write(this._bytes, (int) offset, (int) length);
+			return length;
+		}
+
+		FileInputStream input = new FileInputStream(this._file);
+
+		try
+		{
+			FileChannel channel = input.getChannel();
+			ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(COPY_BUFFER_SIZE, Math.max(length, 1)));
+			long written = 0;
+
+			channel.position(offset);
+
+			while (written < length)
+			{
+				buffer.clear();
+				buffer.limit((int) Math.min(buffer.capacity(), length - written));
+
+				int count = channel.read(buffer);
+
+				if (count == -1)
+				{
+					break;
+				}
+
+				output.write(buffer.array(), 0, count);
+				written += count;
+			}
+
+			return written;
+		}
+		finally
+		{
+			input.close();
+		}
+	}
+
+	/**
+	 * Formats a time for an HTTP header
+	 * 
+	 * @param time
+	 * @return String
+	 */
+	public static String formatDate(long time)
+	{
+		return createDateFormat().format(new Date(time));
+	}
+
+	/**
+	 * Parses a date from an HTTP header
+	 * 
+	 * @param date
+	 * @return the time in milliseconds, or -1 if the date cannot be parsed
+	 */
+	public static long parseDate(String date)
+	{
+		// some browsers append the length of the content they have
+		int semicolon = date.indexOf(';');
+
+		if (semicolon != -1)
+		{
+			date = date.substring(0, semicolon);
+		}
+
+		try
+		{
+			return createDateFormat().parse(date.trim()).getTime();
+		}
+		catch (ParseException e)
+		{
+			return -1;
+		}
+	}
+
+	/**
+	 * createDateFormat
+	 * 
+	 * @return SimpleDateFormat
+	 */
+	private static SimpleDateFormat createDateFormat()
+	{
+		SimpleDateFormat format = new SimpleDateFormat(DATE_FORMAT, Locale.US);
+
+		format.setTimeZone(TimeZone.getTimeZone("GMT")); //$NON-NLS-1$
+
+		return format;
+	}
+}
@@ -0,0 +1,483 @@
+/**
+ * This file Copyright (c) 2005-2008 Aptana, Inc. This program is
+ * dual-licensed under both the Aptana Public License and the GNU General
+ * Public license. You may elect to use one or the other of these licenses.
+ * 
+ * This program is distributed in the hope that it will be useful, but
+ * AS-IS and WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, TITLE, or
+ * NONINFRINGEMENT. Redistribution, except as permitted by whichever of
+ * the GPL or APL you select, is prohibited.
+ *
+ * 1. For the GPL license (GPL), you can redistribute and/or modify this
+ * program under the terms of the GNU General Public License,
+ * Version 3, as published by the Free Software Foundation.  You should
+ * have received a copy of the GNU General Public License, Version 3 along
+ * with this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * Aptana provides a special exception to allow redistribution of this file
+ * with certain other free and open source software ("FOSS") code and certain additional terms
+ * pursuant to Section 7 of the GPL. You may view the exception and these
+ * terms on the web at http://www.aptana.com/legal/gpl/.
+ * 
+ * 2. For the Aptana Public License (APL), this program and the
+ * accompanying materials are made available under the terms of the APL
+ * v1.0 which accompanies this distribution, and is available at
+ * http://www.aptana.com/legal/apl/.
+ * 
+ * You may view the GPL, Aptana's exception and additional terms, and the
+ * APL in the file titled license.html at the root of the corresponding
+ * plugin containing this source file.
+ * 
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.ide.server.http;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IResourceDeltaVisitor;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+
+import com.aptana.ide.core.IdeLog;
+import com.aptana.ide.server.core.ServerCorePlugin;
+
+/**
+ * Keeps the most recently served small files in memory for the preview servers. An entry is used only while the
+ * length and modification time of its file are unchanged, and workspace changes drop the entries of the files they
+ * touch. The least recently used entries are dropped once the cache holds more than its budget.
+ * <p>
+ * The cache also counts the changes the workspace reports for each file. The count is part of the entity tag, so a
+ * save that keeps the length and falls in the same second as the last one still gives clients a new tag.
+ * 
+ * @author agent (agent@local)
+ */
+public final class StaticContentCache
+{
+	/**
+	 * The system property with the memory budget of the cache in bytes
+	 */
+	public static final String CACHE_SIZE_PROPERTY = "com.aptana.ide.server.http.cacheSize"; //$NON-NLS-1$
+
+	/**
+	 * The system property with the size in bytes of the largest file that is kept in memory
+	 */
+	public static final String MAX_FILE_SIZE_PROPERTY = "com.aptana.ide.server.http.cacheFileSize"; //$NON-NLS-1$
+
+	private static final int MAX_VERSIONS = 1024;
+
+	private static StaticContentCache instance;
+
+	/*
+	 * Fields
+	 */
+	private long _maxSize;
+	private int _maxFileSize;
+	private LinkedHashMap<File, StaticContent> _entries = new LinkedHashMap<File, StaticContent>(64, 0.75f, true);
+	private LinkedHashMap<File, Long> _versions = new LinkedHashMap<File, Long>(64, 0.75f, true)
+	{
+		private static final long serialVersionUID = 1L;
+
+		protected boolean removeEldestEntry(Map.Entry<File, Long> eldest)
+		{
+			if (size() > MAX_VERSIONS)
+			{
+				forget(eldest.getValue().longValue());
+				return true;
+			}
+
+			return false;
+		}
+	};
+	private long _generation;
+	private long _size;
+	private long _hitCount;
+	private long _missCount;
+	private IResourceChangeListener _listener;
+
+	/*
+	 * Constructors
+	 */
+
+	/**
+	 * Create a new instance of StaticContentCache
+	 * 
+	 * @param maxSize
+	 *            the memory budget in bytes
+	 * @param maxFileSize
+	 *            the size of the largest file that is kept in memory
+	 */
+	StaticContentCache(long maxSize, int maxFileSize)
+	{
+		this._maxSize = maxSize;
+		this._maxFileSize = maxFileSize;
+	}
+
+	/**
+	 * Returns the cache shared by the preview servers. It listens to workspace changes from the first call on.
+	 * 
+	 * @return StaticContentCache
+	 */
+	public static synchronized StaticContentCache getInstance()
+	{
+		if (instance == null)
+		{
+			instance = new StaticContentCache(Long.getLong(CACHE_SIZE_PROPERTY, 16 * 1024 * 1024).longValue(), Integer
+					.getInteger(MAX_FILE_SIZE_PROPERTY, 256 * 1024).intValue());
+			instance.addResourceChangeListener();
+		}
+
+		return instance;
+	}
+
+	/**
+	 * Stops listening to workspace changes and releases the shared cache
+	 */
+	public static synchronized void dispose()
+	{
+		if (instance != null)
+		{
+			instance.removeResourceChangeListener();
+			instance.clear();
+			instance = null;
+		}
+	}
+
+	/*
+	 * Methods
+	 */
+
+	/**
+	 * Returns a snapshot of a file, reading the file into memory if it is small enough
+	 * 
+	 * @param file
+	 * @return the snapshot, or null if the file does not exist
+	 * @throws IOException
+	 */
+	public StaticContent get(File file) throws IOException
+	{
+		File key = file.getAbsoluteFile();
+		long length = key.length();
+		long lastModified = key.lastModified();
+		long version;
+
+		if (key.isFile() == false)
+		{
+			this.invalidate(key);
+			return null;
+		}
+
+		synchronized (this)
+		{
+			StaticContent content = this._entries.get(key);
+
+			version = this.getVersion(key);
+
+			if (content != null && content.getLength() == length && content.getLastModified() == lastModified
+					&& content.getVersion() == version)
+			{
+				this._hitCount++;
+				return content;
+			}
+
+			this._missCount++;
+		}
+
+		byte[] bytes = (length <= this._maxFileSize) ? read(key, (int) length) : null;
+		StaticContent content = new StaticContent(key, length, lastModified, version, bytes);
+
+		synchronized (this)
+		{
+			if (this.getVersion(key) != version)
+			{
+				// changed while it was read, so the next request reads it again
+				return content;
+			}
+
+			StaticContent previous = (bytes != null) ? this._entries.put(key, content) : this._entries.remove(key);
+
+			if (previous != null)
+			{
+				this._size -= previous.getLength();
+			}
+			if (bytes != null)
+			{
+				this._size += length;
+				this.evict();
+			}
+		}
+
+		return content;
+	}
+
+	/**
+	 * Drops the entry of a file and gives its next snapshot a new entity tag
+	 * 
+	 * @param file
+	 */
+	public synchronized void invalidate(File file)
+	{
+		File key = file.getAbsoluteFile();
+		StaticContent content = this._entries.remove(key);
+
+		this._versions.put(key, Long.valueOf(this.getVersion(key) + 1));
+
+		if (content != null)
+		{
+			this._size -= content.getLength();
+		}
+	}
+
+	/**
+	 * Drops all entries and gives every file a new entity tag
+	 */
+	public synchronized void clear()
+	{
+		this._entries.clear();
+		this._generation++;
+
+		for (Long version : this._versions.values())
+		{
+			this.forget(version.longValue());
+		}
+
+		this._versions.clear();
+		this._size = 0;
+	}
+
+	/**
+	 * Returns the number of bytes held by the cache
+	 * 
+	 * @return long
+	 */
+	public synchronized long getSize()
+	{
+		return this._size;
+	}
+
+	/**
+	 * Returns the number of requests answered from memory
+	 * 
+	 * @return long
+	 */
+	public synchronized long getHitCount()
+	{
+		return this._hitCount;
+	}
+
+	/**
+	 * Returns the number of requests that had to read the file
+	 * 
+	 * @return long
+	 */
+	public synchronized long getMissCount()
+	{
+		return this._missCount;
+	}
+
+	/**
+	 * Returns the number of changes known for a file. Files without a count of their own share a count that is kept
+	 * above every count that has been forgotten, so no file ever gets an entity tag it had before.
+	 * 
+	 * @param key
+	 * @return long
+	 */
+	private long getVersion(File key)
+	{
+		Long version = this._versions.get(key);
+
+		return (version != null) ? version.longValue() : this._generation;
+	}
+
+	/**
+	 * Raises the shared count above a count that is being dropped
+	 * 
+	 * @param version
+	 */
+	private void forget(long version)
+	{
+		this._generation = Math.max(this._generation, version + 1);
+	}
+
+	/**
+	 * Drops the least recently used entries until the cache is within its budget
+	 */
+	private void evict()
+	{
+		Iterator<StaticContent> iterator = this._entries.values().iterator();
+
+		while (this._size > this._maxSize && iterator.hasNext())
+		{
+			this._size -= iterator.next().getLength();
+			iterator.remove();
+		}
+	}
+
+	/**
+	 * Reads a whole file
+	 * 
+	 * @param file
+	 * @param length
+	 * @return the content, or null if the length of the file changed while it was read
+	 * @throws IOException
+	 */
+	private static byte[] read(File file, int length) throws IOException
+	{
+		FileInputStream input = new FileInputStream(file);
+
+		try
+		{
+			byte[] bytes = new byte[length];
+			int offset = 0;
+
+			while (offset < length)
+			{
+				int count = input.read(bytes, offset, length - offset);
+
+				if (count == -1)
+				{
+					return null;
+				}
+
+				offset += count;
+			}
+
+			return (input.read() == -1) ? bytes : null;
+		}
+		finally
+		{
+			input.close();
+		}
+	}
+
+	/**
+	 * addResourceChangeListener
+	 */
+	private void addResourceChangeListener()
+	{
+		this._listener = new IResourceChangeListener()
+		{
+			public void resourceChanged(IResourceChangeEvent event)
+			{
+				handleResourceChange(event.getDelta());
+			}
+		};
+
+		try
+		{
+			ResourcesPlugin.getWorkspace().addResourceChangeListener(this._listener, IResourceChangeEvent.POST_CHANGE);
+		}
+		catch (IllegalStateException e)
+		{
+			// no workspace, so only files outside of it are served
+			this._listener = null;
+		}
+	}
+
+	/**
+	 * removeResourceChangeListener
+	 */
+	private void removeResourceChangeListener()
+	{
+		if (this._listener != null)
+		{
+			try
+			{
+				ResourcesPlugin.getWorkspace().removeResourceChangeListener(this._listener);
+			}
+			catch (IllegalStateException e)
+			{
+				// the workspace has already been closed
+			}
+			this._listener = null;
+		}
+	}
+
+	/**
+	 * Drops the entries of the files that have changed, moved or been removed
+	 * 
+	 * @param delta
+	 */
+	private void handleResourceChange(IResourceDelta delta)
+	{
+		if (delta == null)
+		{
+			return;
+		}
+
+		final List<IPath> changed = new ArrayList<IPath>();
+		final boolean[] clear = new boolean[1];
+
+		try
+		{
+			delta.accept(new IResourceDeltaVisitor()
+			{
+				public boolean visit(IResourceDelta child)
+				{
+					IResource resource = child.getResource();
+
+					if (resource.getType() == IResource.PROJECT
+							&& (child.getKind() == IResourceDelta.REMOVED || (child.getFlags() & IResourceDelta.OPEN) != 0))
+					{
+						// the locations of the files of a removed or closed project are no longer known
+						clear[0] = true;
+						return false;
+					}
+					if (resource.getType() == IResource.FILE)
+					{
+						if (child.getKind() == IResourceDelta.CHANGED
+								&& (child.getFlags() & (IResourceDelta.CONTENT | IResourceDelta.REPLACED)) == 0)
+						{
+							// only markers or properties changed
+							return false;
+						}
+
+						IPath location = resource.getLocation();
+
+						if (location == null)
+						{
+							clear[0] = true;
+						}
+						else
+						{
+							changed.add(location);
+						}
+						return false;
+					}
+
+					return true;
+				}
+			});
+		}
+		catch (CoreException e)
+		{
+			IdeLog.logError(ServerCorePlugin.getDefault(), e.getMessage(), e);
+			clear[0] = true;
+		}
+
+		if (clear[0])
+		{
+			this.clear();
+		}
+		else
+		{
+			for (IPath location : changed)
+			{
+				this.invalidate(location.toFile());
+			}
+		}
+	}
+}
@@ -45,7 +45,7 @@ import com.aptana.ide.server.http.HttpServer;
 /**
  * @author Kevin Lindsey
  */
-public class FileHttpResource implements IHttpResource
+public class FileHttpResource implements IFileHttpResource
 {
 	/*
 	 * Fields
@@ -88,6 +88,14 @@ public class FileHttpResource implements IHttpResource
 		}
 	}
 
+	/**
+	 * @see com.aptana.ide.server.resources.IFileHttpResource#getFile()
+	 */
+	public File getFile()
+	{
+		return this._file;
+	}
+
 	/**
 	 * @see com.aptana.ide.server.resources.IHttpResource#getContentLength()
 	 */
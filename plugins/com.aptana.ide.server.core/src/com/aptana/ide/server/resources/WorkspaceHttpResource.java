@@ -34,6 +34,7 @@
  */
 package com.aptana.ide.server.resources;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -42,6 +43,7 @@ import org.eclipse.core.filesystem.IFileInfo;
 import org.eclipse.core.filesystem.IFileStore;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
 
 import com.aptana.ide.core.IdeLog;
 import com.aptana.ide.server.core.ServerCorePlugin;
@@ -51,7 +53,7 @@ import com.aptana.ide.server.http.HttpServer;
 /**
  * @author Kevin Lindsey
  */
-public class WorkspaceHttpResource implements IHttpResource
+public class WorkspaceHttpResource implements IFileHttpResource
 {
 	/*
 	 * Fields
@@ -92,6 +94,18 @@ public class WorkspaceHttpResource implements IHttpResource
 		}
 	}
 
+	/**
+	 * Returns the file of the resource in the local file system
+	 * 
+	 * @return The file, or null if the resource is not stored locally
+	 */
+	public File getFile()
+	{
+		IPath location = this._resource.getLocation();
+
+		return (location != null) ? location.toFile() : null;
+	}
+
 	/**
 	 * Returns the length of the content
 	 * 
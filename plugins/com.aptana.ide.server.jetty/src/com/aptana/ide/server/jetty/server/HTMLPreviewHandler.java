@@ -35,8 +35,9 @@
 package com.aptana.ide.server.jetty.server;
 
 import java.io.File;
-import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 
@@ -51,9 +52,14 @@ import org.eclipse.core.resources.IResource;
 import org.eclipse.core.resources.IWorkspaceRoot;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.Platform;
+import org.mortbay.io.nio.NIOBuffer;
+import org.mortbay.jetty.HttpConnection;
 
 import com.aptana.ide.core.FileUtils;
 import com.aptana.ide.server.http.HttpContentTypes;
+import com.aptana.ide.server.http.StaticContent;
+import com.aptana.ide.server.http.StaticContentCache;
 import com.aptana.jaxer.connectors.servlet.interfaces.ICallbackResponse;
 import com.aptana.jaxer.connectors.servlet.interfaces.IStatisticsHandler;
 import com.aptana.jaxer.connectors.servlet.interfaces.IStatisticsProvider;
@@ -136,18 +142,11 @@ public class HTMLPreviewHandler extends HttpServlet implements IStatisticsProvid
 						IResource candidate = root.findMember(new Path(path));
 						if (candidate != null && candidate.getProject().equals(project) && candidate instanceof IFile)
 						{
-							FileInputStream stream = new FileInputStream(candidate.getLocation().toFile());
-							setContentLength(candidate.getLocation().toFile(), response);
-							setContentType(path, response);
-							if (sendContent)
-							{
-								FileUtils.pipe(stream, response.getOutputStream(), false);
-							}
+							sendFile(request, response, candidate.getLocation().toFile(), path, sendContent);
 							if (this.handler != null && !(response instanceof IStatusLengthOnlyResponse))
 							{
 								this.handler.parseStatistics(request, response);
 							}
-							stream.close();
 						}
 						else
 						{
@@ -155,18 +154,11 @@ public class HTMLPreviewHandler extends HttpServlet implements IStatisticsProvid
 							if (candidate != null && candidate.getProject().equals(project)
 									&& candidate instanceof IFile)
 							{
-								FileInputStream stream = new FileInputStream(candidate.getLocation().toFile());
-								setContentLength(candidate.getLocation().toFile(), response);
-								setContentType(path, response);
-								if (sendContent)
-								{
-									FileUtils.pipe(stream, response.getOutputStream(), false);
-								}
+								sendFile(request, response, candidate.getLocation().toFile(), path, sendContent);
 								if (this.handler != null && !(response instanceof IStatusLengthOnlyResponse))
 								{
 									this.handler.parseStatistics(request, response);
 								}
-								stream.close();
 							}
 							else
 							{
@@ -187,14 +179,7 @@ public class HTMLPreviewHandler extends HttpServlet implements IStatisticsProvid
 			IResource resource = root.findMember(new Path(path));
 			if (resource != null && resource instanceof IFile)
 			{
-				FileInputStream stream = new FileInputStream(resource.getLocation().toFile());
-				setContentLength(resource.getLocation().toFile(), response);
-				setContentType(path, response);
-				if (sendContent)
-				{
-					FileUtils.pipe(stream, response.getOutputStream(), false);
-				}
-				stream.close();
+				sendFile(request, response, resource.getLocation().toFile(), path, sendContent);
 				if (this.handler != null && !(response instanceof IStatusLengthOnlyResponse))
 				{
 					this.handler.parseStatistics(request, response);
@@ -215,6 +200,84 @@ public class HTMLPreviewHandler extends HttpServlet implements IStatisticsProvid
 		}
 	}
 
+	/**
+	 * Sends a workspace file, or only its length if the content is not wanted. Browsers get a 304 response when their
+	 * copy is current and may ask for a range of bytes. Small files are sent from the shared cache; others go from the
+	 * file to the connection through a mapped buffer, except on Windows where a mapped file could not be saved until
+	 * the buffer is collected.
+	 * 
+	 * @param request
+	 * @param response
+	 * @param file
+	 * @param path
+	 * @param sendContent
+	 * @throws IOException
+	 */
+	private void sendFile(HttpServletRequest request, HttpServletResponse response, File file, String path,
+			boolean sendContent) throws IOException
+	{
+		StaticContent content = StaticContentCache.getInstance().get(file);
+
+		if (content == null)
+		{
+			throw new FileNotFoundException(file.getPath());
+		}
+
+		setContentType(path, response);
+		if (!sendContent)
+		{
+			response.setContentLength((int) content.getLength());
+			return;
+		}
+
+		response.setHeader("ETag", content.getETag()); //$NON-NLS-1$
+		response.setDateHeader("Last-Modified", content.getLastModified()); //$NON-NLS-1$
+		response.setHeader("Accept-Ranges", "bytes"); //$NON-NLS-1$ //$NON-NLS-2$
+
+		if (content.isNotModified(request.getHeader("If-None-Match"), request.getHeader("If-Modified-Since"))) //$NON-NLS-1$ //$NON-NLS-2$
+		{
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+
+		long[] range = content.getRange(request.getHeader("Range"), request.getHeader("If-Range")); //$NON-NLS-1$ //$NON-NLS-2$
+		long offset = 0;
+		long length = content.getLength();
+
+		if (range == StaticContent.UNSATISFIABLE)
+		{
+			response.setHeader("Content-Range", "bytes */" + length); //$NON-NLS-1$ //$NON-NLS-2$
+			response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+			response.setContentLength(0);
+			return;
+		}
+		if (range != null)
+		{
+			offset = range[0];
+			length = range[1] - range[0] + 1;
+			response.setHeader("Content-Range", "bytes " + range[0] + "-" + range[1] + "/" + content.getLength()); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+			response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+		}
+		response.setContentLength((int) length);
+
+		if ("HEAD".equals(request.getMethod()) || length == 0) //$NON-NLS-1$
+		{
+			return;
+		}
+
+		OutputStream output = response.getOutputStream();
+
+		if (content.getBytes() == null && range == null && output instanceof HttpConnection.Output
+				&& !Platform.OS_WIN32.equals(Platform.getOS()))
+		{
+			((HttpConnection.Output) output).sendContent(new NIOBuffer(file));
+		}
+		else
+		{
+			content.writeTo(output, offset, length);
+		}
+	}
+
 	private void streamErrorPage(HttpServletResponse response, String path) throws IOException
 	{
 		response.getWriter().println("<h1>Page not found: " + path + "</h1>"); //$NON-NLS-1$ //$NON-NLS-2$
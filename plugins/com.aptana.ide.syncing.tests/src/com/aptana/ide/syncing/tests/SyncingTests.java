@@ -38,6 +38,7 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.Date;
+import java.util.zip.CRC32;
 
 import junit.framework.TestCase;
 
@@ -45,6 +46,8 @@ import com.aptana.ide.core.FileUtils;
 import com.aptana.ide.core.io.ConnectionException;
 import com.aptana.ide.core.io.IVirtualFile;
 import com.aptana.ide.core.io.IVirtualFileManager;
+import com.aptana.ide.core.io.sync.IRemoteDigester;
+import com.aptana.ide.core.io.sync.SyncManifest;
 import com.aptana.ide.core.io.sync.SyncState;
 import com.aptana.ide.core.io.sync.VirtualFileSyncPair;
 import com.aptana.ide.core.ui.io.file.LocalProtocolManager;
@@ -711,6 +714,25 @@ public class SyncingTests extends TestCase
 		assertEquals(SyncState.ItemsMatch, items[0].getSyncState());
 	}
 
+	/**
+	 * testFilesSameSizeCRCsDiffer
+	 * 
+	 * @throws IOException
+	 * @throws ConnectionException
+	 */
+	public void testFilesSameSizeCRCsDiffer() throws IOException, ConnectionException
+	{
+		long currentTime = new Date().getTime();
+		String filename = "test.txt"; //$NON-NLS-1$
+		this.createClientFile(filename, currentTime, "abc123"); //$NON-NLS-1$
+		this.createServerFile(filename, currentTime, "abc124"); //$NON-NLS-1$
+
+		VirtualFileSyncPair[] items = this.getSyncItems(true, 0);
+
+		assertEquals(1, items.length);
+		assertEquals(SyncState.CRCMismatch, items[0].getSyncState());
+	}
+
 	/**
 	 * testDirectoryCRCsMatch This confirms that turning on CRC checking doesn't involve directories
 	 * 
@@ -1737,4 +1759,336 @@ public class SyncingTests extends TestCase
 		assertEquals(0, syncManager.getServerFileDeletedCount());
 		assertEquals(0, syncManager.getServerFileTransferedCount());
 	}
+
+	/*
+	 * Manifest Tests
+	 */
+
+	/**
+	 * Syncs once with a manifest so that it records the client directory "test" as unchanged, then changes a file
+	 * and adds another one in that directory on the server only
+	 * 
+	 * @param manifest
+	 * @param currentTime
+	 * @throws IOException
+	 * @throws ConnectionException
+	 */
+	protected void changeServerUnderUnchangedClientDirectory(SyncManifest manifest, long currentTime)
+			throws IOException, ConnectionException
+	{
+		this.createClientDirectory("test", currentTime - 2000); //$NON-NLS-1$
+		this.createClientFile("test/test.txt", currentTime - 2000); //$NON-NLS-1$
+		this.createServerDirectory("test", currentTime - 2000); //$NON-NLS-1$
+		this.createServerFile("test/test.txt", currentTime - 2000); //$NON-NLS-1$
+
+		Synchronizer syncManager = new Synchronizer(false, 10);
+		syncManager.setManifest(manifest);
+		VirtualFileSyncPair[] items = syncManager
+				.getSyncItems(clientManager.getBaseFile(), serverManager.getBaseFile());
+		syncManager.fullSync(items);
+		assertNotNull(manifest.get("test/test.txt")); //$NON-NLS-1$
+
+		// change the server behind the manifest's back
+		File changed = new File(serverDirectory, "test/test.txt"); //$NON-NLS-1$
+		FileWriter writer = new FileWriter(changed);
+		writer.write("changed"); //$NON-NLS-1$
+		writer.close();
+		changed.setLastModified(currentTime);
+		this.createServerFile("test/new.txt", currentTime); //$NON-NLS-1$
+	}
+
+	/**
+	 * testServerChangedUnderUnchangedClientDirectoryDownload
+	 * 
+	 * @throws IOException
+	 * @throws ConnectionException
+	 */
+	public void testServerChangedUnderUnchangedClientDirectoryDownload() throws IOException, ConnectionException
+	{
+		SyncManifest manifest = new SyncManifest(File.createTempFile("test", ".manifest")); //$NON-NLS-1$ //$NON-NLS-2$
+
+		try
+		{
+			this.changeServerUnderUnchangedClientDirectory(manifest, new Date().getTime());
+
+			Synchronizer syncManager = new Synchronizer(false, 10);
+			syncManager.setManifest(manifest);
+			VirtualFileSyncPair[] items = syncManager.getSyncItems(clientManager.getBaseFile(), serverManager
+					.getBaseFile());
+
+			// sync
+			syncManager.download(items);
+
+			// both the changed and the new server file are downloaded
+			assertEquals(2, syncManager.getServerFileTransferedCount());
+			assertTrue(new File(clientDirectory, "test/new.txt").exists()); //$NON-NLS-1$
+			assertEquals(new File(serverDirectory, "test/test.txt").length(), new File(clientDirectory, //$NON-NLS-1$
+					"test/test.txt").length()); //$NON-NLS-1$
+		}
+		finally
+		{
+			manifest.delete();
+		}
+	}
+
+	/**
+	 * testServerChangedUnderUnchangedClientDirectoryFullSync
+	 * 
+	 * @throws IOException
+	 * @throws ConnectionException
+	 */
+	public void testServerChangedUnderUnchangedClientDirectoryFullSync() throws IOException, ConnectionException
+	{
+		SyncManifest manifest = new SyncManifest(File.createTempFile("test", ".manifest")); //$NON-NLS-1$ //$NON-NLS-2$
+
+		try
+		{
+			this.changeServerUnderUnchangedClientDirectory(manifest, new Date().getTime());
+
+			Synchronizer syncManager = new Synchronizer(false, 10);
+			syncManager.setManifest(manifest);
+			VirtualFileSyncPair[] items = syncManager.getSyncItems(clientManager.getBaseFile(), serverManager
+					.getBaseFile());
+
+			// sync
+			syncManager.fullSync(items);
+
+			// check client counts
+			assertEquals(0, syncManager.getClientFileTransferedCount());
+
+			// check server counts
+			assertEquals(2, syncManager.getServerFileTransferedCount());
+		}
+		finally
+		{
+			manifest.delete();
+		}
+	}
+
+	/**
+	 * testServerChangedUnderUnchangedClientDirectoryUpload
+	 * 
+	 * @throws IOException
+	 * @throws ConnectionException
+	 */
+	public void testServerChangedUnderUnchangedClientDirectoryUpload() throws IOException, ConnectionException
+	{
+		SyncManifest manifest = new SyncManifest(File.createTempFile("test", ".manifest")); //$NON-NLS-1$ //$NON-NLS-2$
+
+		try
+		{
+			this.changeServerUnderUnchangedClientDirectory(manifest, new Date().getTime());
+
+			Synchronizer syncManager = new Synchronizer(false, 10);
+			syncManager.setManifest(manifest);
+			syncManager.setUploadOnly(true);
+			VirtualFileSyncPair[] items = syncManager.getSyncItems(clientManager.getBaseFile(), serverManager
+					.getBaseFile());
+
+			// the unchanged client directory is not listed on the server, and nothing in it is uploaded
+			for (int i = 0; i < items.length; i++)
+			{
+				assertEquals(SyncState.ItemsMatch, items[i].getSyncState());
+			}
+
+			// sync
+			syncManager.upload(items);
+
+			// check server counts
+			assertEquals(0, syncManager.getClientFileTransferedCount());
+			assertEquals(0, syncManager.getServerFileTransferedCount());
+		}
+		finally
+		{
+			manifest.delete();
+		}
+	}
+
+	/*
+	 * Digest Tests
+	 */
+
+	/**
+	 * A digester that computes the CRC of a local server file, or fails if told to, and counts how often it is asked
+	 */
+	private static class TestDigester implements IRemoteDigester
+	{
+		private boolean fail;
+		private int calls;
+
+		/**
+		 * TestDigester
+		 * 
+		 * @param fail
+		 *            true if every digest should fail with an IOException
+		 */
+		TestDigester(boolean fail)
+		{
+			this.fail = fail;
+		}
+
+		/**
+		 * @see com.aptana.ide.core.io.sync.IRemoteDigester#getAlgorithm()
+		 */
+		public String getAlgorithm()
+		{
+			return "CRC32"; //$NON-NLS-1$
+		}
+
+		/**
+		 * @see com.aptana.ide.core.io.sync.IRemoteDigester#getDigest(com.aptana.ide.core.io.IVirtualFile)
+		 */
+		public String getDigest(IVirtualFile file) throws IOException
+		{
+			this.calls++;
+
+			if (this.fail)
+			{
+				throw new IOException("digest not supported"); //$NON-NLS-1$
+			}
+
+			CRC32 crc = new CRC32();
+			crc.update(FileUtils.readContent(new File(file.getAbsolutePath())).getBytes());
+
+			return Long.toHexString(crc.getValue());
+		}
+	}
+
+	/**
+	 * getSyncItems
+	 * 
+	 * @param digester
+	 * @param manifest
+	 * @return SyncItem[]
+	 * @throws IOException
+	 * @throws ConnectionException
+	 */
+	protected VirtualFileSyncPair[] getSyncItems(IRemoteDigester digester, SyncManifest manifest)
+			throws IOException, ConnectionException
+	{
+		Synchronizer syncManager = new Synchronizer(true, 0);
+		syncManager.setRemoteDigester(digester);
+		syncManager.setManifest(manifest);
+
+		return syncManager.getSyncItems(clientManager.getBaseFile(), serverManager.getBaseFile());
+	}
+
+	/**
+	 * testFilesDigestsMatch
+	 * 
+	 * @throws IOException
+	 * @throws ConnectionException
+	 */
+	public void testFilesDigestsMatch() throws IOException, ConnectionException
+	{
+		long currentTime = new Date().getTime();
+		String filename = "test.txt"; //$NON-NLS-1$
+		String content = "abc123"; //$NON-NLS-1$
+		this.createClientFile(filename, currentTime, content);
+		this.createServerFile(filename, currentTime, content);
+
+		TestDigester digester = new TestDigester(false);
+		VirtualFileSyncPair[] items = this.getSyncItems(digester, null);
+
+		assertEquals(1, items.length);
+		assertEquals(SyncState.ItemsMatch, items[0].getSyncState());
+		assertEquals(1, digester.calls);
+	}
+
+	/**
+	 * testFilesSameSizeDigestsDiffer
+	 * 
+	 * @throws IOException
+	 * @throws ConnectionException
+	 */
+	public void testFilesSameSizeDigestsDiffer() throws IOException, ConnectionException
+	{
+		long currentTime = new Date().getTime();
+		String filename = "test.txt"; //$NON-NLS-1$
+		this.createClientFile(filename, currentTime, "abc123"); //$NON-NLS-1$
+		this.createServerFile(filename, currentTime, "abc124"); //$NON-NLS-1$
+
+		TestDigester digester = new TestDigester(false);
+		VirtualFileSyncPair[] items = this.getSyncItems(digester, null);
+
+		assertEquals(1, items.length);
+		assertEquals(SyncState.CRCMismatch, items[0].getSyncState());
+		assertEquals(1, digester.calls);
+	}
+
+	/**
+	 * testFailedDigestFallsBackToContents
+	 * 
+	 * @throws IOException
+	 * @throws ConnectionException
+	 */
+	public void testFailedDigestFallsBackToContents() throws IOException, ConnectionException
+	{
+		long currentTime = new Date().getTime();
+		this.createClientFile("same.txt", currentTime, "abc123"); //$NON-NLS-1$ //$NON-NLS-2$
+		this.createServerFile("same.txt", currentTime, "abc123"); //$NON-NLS-1$ //$NON-NLS-2$
+		this.createClientFile("test.txt", currentTime, "abc123"); //$NON-NLS-1$ //$NON-NLS-2$
+		this.createServerFile("test.txt", currentTime, "abc124"); //$NON-NLS-1$ //$NON-NLS-2$
+
+		TestDigester digester = new TestDigester(true);
+		VirtualFileSyncPair[] items = this.getSyncItems(digester, null);
+
+		assertEquals(2, items.length);
+		assertEquals(SyncState.ItemsMatch, items[0].getSyncState());
+		assertEquals(SyncState.CRCMismatch, items[1].getSyncState());
+		assertEquals(2, digester.calls);
+	}
+
+	/**
+	 * testFilesCRCsMatchFromManifest
+	 * 
+	 * @throws IOException
+	 * @throws ConnectionException
+	 */
+	public void testFilesCRCsMatchFromManifest() throws IOException, ConnectionException
+	{
+		long currentTime = new Date().getTime();
+		String filename = "test.txt"; //$NON-NLS-1$
+		String content = "abc123"; //$NON-NLS-1$
+		this.createClientFile(filename, currentTime, content);
+		this.createServerFile(filename, currentTime, content);
+
+		SyncManifest manifest = new SyncManifest(File.createTempFile("test", ".manifest")); //$NON-NLS-1$ //$NON-NLS-2$
+
+		try
+		{
+			// the first comparison reads the files and records their checksum
+			VirtualFileSyncPair[] items = this.getSyncItems(null, manifest);
+
+			assertEquals(1, items.length);
+			assertEquals(SyncState.ItemsMatch, items[0].getSyncState());
+			assertTrue(manifest.get(filename).getChecksum() != -1);
+
+			// the second one trusts the manifest as neither file changed
+			TestDigester digester = new TestDigester(true);
+			items = this.getSyncItems(digester, manifest);
+
+			assertEquals(1, items.length);
+			assertEquals(SyncState.ItemsMatch, items[0].getSyncState());
+			assertEquals(0, digester.calls);
+
+			// a changed server file is compared again
+			File serverFile = new File(serverDirectory, filename);
+			FileWriter writer = new FileWriter(serverFile);
+			writer.write("abc124"); //$NON-NLS-1$
+			writer.close();
+			serverFile.setLastModified(currentTime + 1000);
+			new File(clientDirectory, filename).setLastModified(currentTime + 1000);
+
+			items = this.getSyncItems(digester, manifest);
+
+			assertEquals(1, items.length);
+			assertEquals(SyncState.CRCMismatch, items[0].getSyncState());
+			assertEquals(1, digester.calls);
+		}
+		finally
+		{
+			manifest.delete();
+		}
+	}
 }
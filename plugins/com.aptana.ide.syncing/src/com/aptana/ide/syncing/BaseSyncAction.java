@@ -312,6 +312,8 @@ public abstract class BaseSyncAction extends ActionDelegate implements IViewActi
 			}
 
 			final Synchronizer sm = new Synchronizer();
+			sm.setTransferThreads(store.getInt(IPreferenceConstants.TRANSFER_THREADS));
+			sm.setManifest(SyncManager.getSyncManager().getManifest(conf));
 			Job syncJob = new Job(gettingMessage)
 			{
 
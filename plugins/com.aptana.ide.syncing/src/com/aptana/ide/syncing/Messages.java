@@ -344,6 +344,11 @@ public final class Messages extends NLS
 	 */
 	public static String Synchronizer_ErrorRetrievingCRC;
 
+	/**
+	 * Synchronizer_ErrorSavingManifest
+	 */
+	public static String Synchronizer_ErrorSavingManifest;
+
 	/**
 	 * Synchronizer_FileNotContained
 	 */
@@ -671,6 +676,16 @@ public final class Messages extends NLS
 	 * SyncManager_Home
 	 */
 	public static String SyncManager_Home;
+
+	/**
+	 * SyncingPreferencePage_Description
+	 */
+	public static String SyncingPreferencePage_Description;
+
+	/**
+	 * SyncingPreferencePage_TransferThreads
+	 */
+	public static String SyncingPreferencePage_TransferThreads;
 	
 	static
 	{
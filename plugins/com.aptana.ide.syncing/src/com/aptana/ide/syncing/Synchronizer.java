@@ -36,14 +36,20 @@ package com.aptana.ide.syncing;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.DateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.CRC32;
 
 import org.eclipse.core.runtime.QualifiedName;
@@ -58,11 +64,14 @@ import com.aptana.ide.core.io.IFileProgressMonitor;
 import com.aptana.ide.core.io.IVirtualFile;
 import com.aptana.ide.core.io.IVirtualFileManager;
 import com.aptana.ide.core.io.VirtualFileManagerException;
+import com.aptana.ide.core.io.sync.IRemoteDigester;
 import com.aptana.ide.core.io.sync.ISyncEventHandler;
+import com.aptana.ide.core.io.sync.SyncManifest;
 import com.aptana.ide.core.io.sync.SyncState;
 import com.aptana.ide.core.io.sync.VirtualFileSyncPair;
 import com.aptana.ide.core.ui.io.file.ProjectFile;
 import com.aptana.ide.core.ui.syncing.SyncingConsole;
+import com.aptana.ide.syncing.preferences.IPreferenceConstants;
 
 /**
  * @author Kevin Lindsey
@@ -75,23 +84,31 @@ public class Synchronizer implements ILoggable
 				"SYNC_IN_PROGRESS"); //$NON-NLS-1$
 	
 	private static final int DEFAULT_TIME_TOLERANCE = 1000;
+	private static final int COMPARE_BUFFER_SIZE = 8192;
+	private static final String CRC32_ALGORITHM = "CRC32"; //$NON-NLS-1$
 
 	private boolean _useCRC;
 	private long _timeTolerance;
+	private int _transferThreads;
 
-	private int _clientDirectoryCreatedCount;
-	private int _clientDirectoryDeletedCount;
-	private int _clientFileDeletedCount;
-	private int _clientFileTransferedCount;
-	private int _serverDirectoryCreatedCount;
-	private int _serverDirectoryDeletedCount;
-	private int _serverFileDeletedCount;
-	private int _serverFileTransferedCount;
+	private final AtomicInteger _clientDirectoryCreatedCount = new AtomicInteger();
+	private final AtomicInteger _clientDirectoryDeletedCount = new AtomicInteger();
+	private final AtomicInteger _clientFileDeletedCount = new AtomicInteger();
+	private final AtomicInteger _clientFileTransferedCount = new AtomicInteger();
+	private final AtomicInteger _serverDirectoryCreatedCount = new AtomicInteger();
+	private final AtomicInteger _serverDirectoryDeletedCount = new AtomicInteger();
+	private final AtomicInteger _serverFileDeletedCount = new AtomicInteger();
+	private final AtomicInteger _serverFileTransferedCount = new AtomicInteger();
 
 	private IVirtualFileManager _clientFileManager;
 	private IVirtualFileManager _serverFileManager;
 	private ISyncEventHandler _eventHandler;
+	private final Object _eventLock = new Object();
 	private ILogger logger;
+	private TransferPool _transferPool;
+	private SyncManifest _manifest;
+	private boolean _uploadOnly;
+	private IRemoteDigester _remoteDigester;
 
 	private List<IVirtualFile> _newFilesDownloaded;
 	private List<IVirtualFile> _newFilesUploaded;
@@ -124,8 +141,9 @@ public class Synchronizer implements ILoggable
 
 		this._useCRC = calculateCrc;
 		this._timeTolerance = timeTolerance;
-		_newFilesDownloaded = new ArrayList<IVirtualFile>();
-		_newFilesUploaded = new ArrayList<IVirtualFile>();
+		this._transferThreads = IPreferenceConstants.DEFAULT_TRANSFER_THREADS;
+		_newFilesDownloaded = Collections.synchronizedList(new ArrayList<IVirtualFile>());
+		_newFilesUploaded = Collections.synchronizedList(new ArrayList<IVirtualFile>());
 	}
 
 	/**
@@ -200,7 +218,7 @@ public class Synchronizer implements ILoggable
 	 */
 	public int getClientDirectoryCreatedCount()
 	{
-		return this._clientDirectoryCreatedCount;
+		return this._clientDirectoryCreatedCount.get();
 	}
 
 	/**
@@ -210,7 +228,7 @@ public class Synchronizer implements ILoggable
 	 */
 	public int getClientDirectoryDeletedCount()
 	{
-		return this._clientDirectoryDeletedCount;
+		return this._clientDirectoryDeletedCount.get();
 	}
 
 	/**
@@ -220,7 +238,7 @@ public class Synchronizer implements ILoggable
 	 */
 	public int getClientFileDeletedCount()
 	{
-		return this._clientFileDeletedCount;
+		return this._clientFileDeletedCount.get();
 	}
 
 	/**
@@ -230,7 +248,7 @@ public class Synchronizer implements ILoggable
 	 */
 	public int getClientFileTransferedCount()
 	{
-		return this._clientFileTransferedCount;
+		return this._clientFileTransferedCount.get();
 	}
 
 	/**
@@ -261,7 +279,7 @@ public class Synchronizer implements ILoggable
 	 */
 	public int getServerDirectoryCreatedCount()
 	{
-		return this._serverDirectoryCreatedCount;
+		return this._serverDirectoryCreatedCount.get();
 	}
 
 	/**
@@ -271,7 +289,7 @@ public class Synchronizer implements ILoggable
 	 */
 	public int getServerDirectoryDeletedCount()
 	{
-		return this._serverDirectoryDeletedCount;
+		return this._serverDirectoryDeletedCount.get();
 	}
 
 	/**
@@ -281,7 +299,7 @@ public class Synchronizer implements ILoggable
 	 */
 	public int getServerFileDeletedCount()
 	{
-		return this._serverFileDeletedCount;
+		return this._serverFileDeletedCount.get();
 	}
 
 	/**
@@ -291,17 +309,23 @@ public class Synchronizer implements ILoggable
 	 */
 	public int getServerFileTransferedCount()
 	{
-		return this._serverFileTransferedCount;
+		return this._serverFileTransferedCount.get();
 	}
 
 	public IVirtualFile[] getNewFilesDownloaded()
 	{
-		return _newFilesDownloaded.toArray(new IVirtualFile[_newFilesDownloaded.size()]);
+		synchronized (_newFilesDownloaded)
+		{
+			return _newFilesDownloaded.toArray(new IVirtualFile[_newFilesDownloaded.size()]);
+		}
 	}
 
 	public IVirtualFile[] getNewFilesUploaded()
 	{
-		return _newFilesUploaded.toArray(new IVirtualFile[_newFilesUploaded.size()]);
+		synchronized (_newFilesUploaded)
+		{
+			return _newFilesUploaded.toArray(new IVirtualFile[_newFilesUploaded.size()]);
+		}
 	}
 
 	/**
@@ -325,6 +349,8 @@ public class Synchronizer implements ILoggable
 
 		IVirtualFile[] clientFiles = new IVirtualFile[0];
 		IVirtualFile[] serverFiles = new IVirtualFile[0];
+		String root = null;
+		Set<String> listedDirectories = null;
 
 		try
 		{
@@ -348,7 +374,24 @@ public class Synchronizer implements ILoggable
 			{
 				// get the complete file listings for the client and server
 				clientFiles = client.getFileManager().getFiles(client, true, false);
-				serverFiles = server.getFileManager().getFiles(server, true, false);
+				serverFiles = null;
+
+				if (this._manifest != null)
+				{
+					root = getCanonicalPath(client);
+
+					if (this._uploadOnly && !this._manifest.isEmpty())
+					{
+						// only list the server directories where the client changed since the last sync
+						listedDirectories = getChangedDirectories(root, clientFiles);
+						serverFiles = listServerDirectories(server, root, listedDirectories);
+					}
+				}
+				if (serverFiles == null)
+				{
+					listedDirectories = null;
+					serverFiles = server.getFileManager().getFiles(server, true, false);
+				}
 			}
 		}
 		finally
@@ -362,7 +405,258 @@ public class Synchronizer implements ILoggable
 			return null;
 		}
 
-		return createSyncItems(clientFiles, serverFiles);
+		VirtualFileSyncPair[] syncItems = createSyncItems(clientFiles, serverFiles);
+
+		if (syncItems != null && root != null)
+		{
+			if (listedDirectories != null)
+			{
+				syncItems = addUnchangedItems(syncItems, server.getFileManager(), listedDirectories);
+			}
+			pruneManifest(root, clientFiles, serverFiles, listedDirectories);
+			saveManifest();
+		}
+
+		return syncItems;
+	}
+
+	/**
+	 * Compares the client files against the manifest and returns the directories that need to be listed on the
+	 * server. These are the parents of every client file that is new or changed and of every path that was synced
+	 * before but is now missing on the client, as well as every new client directory.
+	 * 
+	 * @param root
+	 *            the canonical path of the directory being synced
+	 * @param clientFiles
+	 * @return the canonical paths of the directories to list
+	 */
+	private Set<String> getChangedDirectories(String root, IVirtualFile[] clientFiles)
+	{
+		Set<String> directories = new HashSet<String>();
+		Set<String> clientPaths = new HashSet<String>();
+
+		for (int i = 0; i < clientFiles.length; i++)
+		{
+			IVirtualFile clientFile = clientFiles[i];
+
+			if (clientFile.isLink())
+			{
+				continue;
+			}
+
+			String path = getCanonicalPath(clientFile);
+			SyncManifest.Entry entry = this._manifest.get(path);
+
+			clientPaths.add(path);
+
+			if (entry != null && entry.isDirectory() == clientFile.isDirectory())
+			{
+				// a directory only changes through its children, which are checked on their own
+				if (entry.isDirectory() || isUnchanged(entry, clientFile))
+				{
+					continue;
+				}
+			}
+
+			directories.add(getParentPath(path));
+
+			if (clientFile.isDirectory())
+			{
+				directories.add(path);
+			}
+		}
+
+		String[] syncedPaths = this._manifest.getPaths(root);
+
+		for (int i = 0; i < syncedPaths.length; i++)
+		{
+			String path = syncedPaths[i];
+
+			if (!path.equals(root) && !clientPaths.contains(path))
+			{
+				directories.add(getParentPath(path));
+			}
+		}
+
+		return directories;
+	}
+
+	/**
+	 * Lists the contents of the given server directories. Parents are listed before their children, and directories
+	 * that turn out not to exist on the server are skipped.
+	 * 
+	 * @param server
+	 * @param root
+	 * @param directories
+	 * @return the files in the directories, or null if a directory could not be listed
+	 * @throws ConnectionException
+	 */
+	private IVirtualFile[] listServerDirectories(IVirtualFile server, String root, Set<String> directories)
+			throws ConnectionException
+	{
+		IVirtualFileManager manager = server.getFileManager();
+		String[] paths = directories.toArray(new String[directories.size()]);
+		Set<String> listedDirectories = new HashSet<String>();
+		Set<String> existingDirectories = new HashSet<String>();
+		List<IVirtualFile> files = new ArrayList<IVirtualFile>();
+
+		Arrays.sort(paths);
+
+		for (int i = 0; i < paths.length; i++)
+		{
+			String path = paths[i];
+			boolean exists;
+
+			if (path.equals(root))
+			{
+				exists = true;
+			}
+			else if (listedDirectories.contains(getParentPath(path)))
+			{
+				exists = existingDirectories.contains(path);
+			}
+			else
+			{
+				SyncManifest.Entry entry = this._manifest.get(path);
+				exists = entry != null && entry.isDirectory();
+			}
+
+			listedDirectories.add(path);
+
+			if (!exists)
+			{
+				continue;
+			}
+
+			IVirtualFile directory = path.equals(root) ? server : manager.createVirtualDirectory(constructDestinationPath(
+					manager.getBasePath(), manager, path));
+
+			try
+			{
+				IVirtualFile[] children = manager.getFiles(directory, false, false);
+
+				for (int j = 0; j < children.length; j++)
+				{
+					IVirtualFile child = children[j];
+
+					files.add(child);
+
+					if (child.isDirectory())
+					{
+						existingDirectories.add(getCanonicalPath(child));
+					}
+				}
+			}
+			catch (IOException e)
+			{
+				return null;
+			}
+		}
+
+		return files.toArray(new IVirtualFile[files.size()]);
+	}
+
+	/**
+	 * Client items that are in directories that were not listed on the server have not changed since the last sync,
+	 * so they still match their server counterparts. Unchanged directories are dropped just like matching directories
+	 * are dropped by {@link #createSyncItems(IVirtualFile[], IVirtualFile[])}.
+	 * 
+	 * @param syncItems
+	 * @param server
+	 * @param listedDirectories
+	 * @return VirtualFileSyncPair[]
+	 */
+	private VirtualFileSyncPair[] addUnchangedItems(VirtualFileSyncPair[] syncItems, IVirtualFileManager server,
+			Set<String> listedDirectories)
+	{
+		List<VirtualFileSyncPair> result = new ArrayList<VirtualFileSyncPair>(syncItems.length);
+
+		for (int i = 0; i < syncItems.length; i++)
+		{
+			VirtualFileSyncPair item = syncItems[i];
+
+			if (item.getSyncState() == SyncState.ClientItemOnly
+					&& !listedDirectories.contains(getParentPath(item.getRelativePath())))
+			{
+				if (item.getSourceFile().isDirectory())
+				{
+					continue;
+				}
+
+				item.setDestinationFile(server.createVirtualFile(constructDestinationPath(server.getBasePath(), server,
+						item.getRelativePath())));
+				item.setSyncState(SyncState.ItemsMatch);
+			}
+
+			result.add(item);
+		}
+
+		return result.toArray(new VirtualFileSyncPair[result.size()]);
+	}
+
+	/**
+	 * Removes the manifest entries of paths that no longer exist on either side
+	 * 
+	 * @param root
+	 * @param clientFiles
+	 * @param serverFiles
+	 * @param listedDirectories
+	 *            the server directories that were listed, or null if the whole tree was listed
+	 */
+	private void pruneManifest(String root, IVirtualFile[] clientFiles, IVirtualFile[] serverFiles,
+			Set<String> listedDirectories)
+	{
+		Set<String> paths = new HashSet<String>();
+
+		for (int i = 0; i < clientFiles.length; i++)
+		{
+			paths.add(getCanonicalPath(clientFiles[i]));
+		}
+		for (int i = 0; i < serverFiles.length; i++)
+		{
+			paths.add(getCanonicalPath(serverFiles[i]));
+		}
+
+		String[] syncedPaths = this._manifest.getPaths(root);
+
+		for (int i = 0; i < syncedPaths.length; i++)
+		{
+			String path = syncedPaths[i];
+
+			if (!path.equals(root) && !paths.contains(path)
+					&& (listedDirectories == null || listedDirectories.contains(getParentPath(path))))
+			{
+				this._manifest.remove(path);
+			}
+		}
+	}
+
+	/**
+	 * isUnchanged
+	 * 
+	 * @param entry
+	 * @param clientFile
+	 * @return true if the client file has the size and modification time it had when it was last synced
+	 */
+	private boolean isUnchanged(SyncManifest.Entry entry, IVirtualFile clientFile)
+	{
+		long timeDiff = clientFile.getModificationMillis() - entry.getClientModificationMillis();
+
+		return entry.getSize() == clientFile.getSize() && -this._timeTolerance <= timeDiff
+				&& timeDiff <= this._timeTolerance;
+	}
+
+	/**
+	 * getParentPath
+	 * 
+	 * @param path
+	 * @return the canonical path of the parent directory, an empty string for top level paths
+	 */
+	private static String getParentPath(String path)
+	{
+		int index = path.lastIndexOf('/');
+
+		return (index == -1) ? StringUtils.EMPTY : path.substring(0, index);
 	}
 
 	/**
@@ -431,6 +725,8 @@ public class Synchronizer implements ILoggable
 			
 			if (serverFile.isDirectory())
 			{
+				recordSynced(relativePath, true, item.getSourceFile().getModificationMillis(), serverFile
+						.getModificationMillis(), 0, -1);
 				fileList.remove(relativePath);
 				continue;
 			}
@@ -451,6 +747,8 @@ public class Synchronizer implements ILoggable
 				else
 				{
 					item.setSyncState(SyncState.ItemsMatch);
+					recordSynced(relativePath, false, clientFileTime, serverFileTime, item.getSourceFile().getSize(),
+							-1);
 				}
 			}
 			else
@@ -525,6 +823,101 @@ public class Synchronizer implements ILoggable
 		this._timeTolerance = timeTolerance;
 	}
 
+	/**
+	 * Returns the number of files that are transferred at the same time.
+	 * 
+	 * @return the number of transfer threads
+	 */
+	public int getTransferThreads()
+	{
+		return this._transferThreads;
+	}
+
+	/**
+	 * Sets the number of files that are transferred at the same time. With more than one thread every thread opens
+	 * its own connection to the client and the server, while directories, deletions and all sync events are still
+	 * handled in the order of the sync items. File managers that cannot be cloned are always synced one file at a
+	 * time. The default is {@link IPreferenceConstants#DEFAULT_TRANSFER_THREADS}.
+	 * 
+	 * @param transferThreads
+	 *            the number of transfer threads
+	 */
+	public void setTransferThreads(int transferThreads)
+	{
+		this._transferThreads = Math.max(1, transferThreads);
+	}
+
+	/**
+	 * Returns the manifest of the last synced state, if one is used.
+	 * 
+	 * @return the manifest or null
+	 */
+	public SyncManifest getManifest()
+	{
+		return this._manifest;
+	}
+
+	/**
+	 * Sets the manifest of the last synced state. Everything that is found to match or that is synced is recorded in
+	 * it, and it spares reading files whose contents were compared before. For uploads,
+	 * {@link #getSyncItems(IVirtualFile, IVirtualFile)} also uses it to only list the server directories where the
+	 * client changed since the last sync.
+	 * 
+	 * @param manifest
+	 *            the manifest or null
+	 * @see #setUploadOnly(boolean)
+	 */
+	public void setManifest(SyncManifest manifest)
+	{
+		this._manifest = manifest;
+	}
+
+	/**
+	 * Returns whether the sync items are only going to be uploaded.
+	 * 
+	 * @return boolean
+	 */
+	public boolean getUploadOnly()
+	{
+		return this._uploadOnly;
+	}
+
+	/**
+	 * Sets whether the sync items are only going to be uploaded. Only then are the server directories where nothing
+	 * changed on the client since the last sync left unlisted, and their client files taken to match the server.
+	 * Changes made directly on the server in those directories are not seen, which only an upload can ignore, so
+	 * downloads and two-way syncs always list the whole server tree.
+	 * 
+	 * @param uploadOnly
+	 *            true if the items are only going to be uploaded
+	 */
+	public void setUploadOnly(boolean uploadOnly)
+	{
+		this._uploadOnly = uploadOnly;
+	}
+
+	/**
+	 * Returns the digester used to compute the digests of server files on the server.
+	 * 
+	 * @return the digester or null if the server file manager is used when it is a digester itself
+	 */
+	public IRemoteDigester getRemoteDigester()
+	{
+		return this._remoteDigester;
+	}
+
+	/**
+	 * Sets the digester used to compute the digests of server files on the server when comparing contents. Without
+	 * one, server files whose size and times do not already decide the comparison are downloaded.
+	 * 
+	 * @param remoteDigester
+	 *            the digester or null to use the server file manager when it is a digester itself
+	 */
+	public void setRemoteDigester(IRemoteDigester remoteDigester)
+	{
+		this._remoteDigester = remoteDigester;
+	}
+
 	/**
 	 * setCalculateCrc
 	 * 
@@ -547,13 +940,95 @@ public class Synchronizer implements ILoggable
 	}
 
 	/**
-	 * compareCRC
+	 * Compares the contents of a client and a server file whose modification times match. The cheapest check that
+	 * decides the comparison is used: files of different sizes are a mismatch without reading either one, a manifest
+	 * entry recorded for the same times and size is a match, and a digest computed by the server only needs the client
+	 * file to be read. Otherwise, and when the server fails to compute the digest, both files are read side by side up
+	 * to their first differing block.
 	 * 
 	 * @param item
 	 * @return SyncState
 	 */
 	private int compareCRC(VirtualFileSyncPair item) throws ConnectionException, VirtualFileManagerException,
 			IOException
+	{
+		IVirtualFile clientFile = item.getSourceFile();
+		IVirtualFile serverFile = item.getDestinationFile();
+		long size = clientFile.getSize();
+		long serverSize = serverFile.getSize();
+
+		if (size >= 0 && serverSize >= 0 && size != serverSize)
+		{
+			return SyncState.CRCMismatch;
+		}
+
+		SyncManifest.Entry entry = (this._manifest != null) ? this._manifest.get(item.getRelativePath()) : null;
+
+		if (entry != null && entry.getChecksum() != -1 && entry.getSize() == size
+				&& entry.getClientModificationMillis() == clientFile.getModificationMillis()
+				&& entry.getServerModificationMillis() == serverFile.getModificationMillis())
+		{
+			// the contents were compared before and neither file has been touched since
+			return SyncState.ItemsMatch;
+		}
+
+		IRemoteDigester digester = this._remoteDigester;
+
+		if (digester == null && serverFile.getFileManager() instanceof IRemoteDigester)
+		{
+			digester = (IRemoteDigester) serverFile.getFileManager();
+		}
+		if (digester != null)
+		{
+			String serverDigest;
+
+			try
+			{
+				serverDigest = digester.getDigest(serverFile);
+			}
+			catch (Exception e)
+			{
+				// fall back to reading the server file
+				IdeLog.logError(SyncingPlugin.getDefault(), Messages.Synchronizer_ErrorRetrievingCRC, e);
+				serverDigest = null;
+			}
+
+			if (serverDigest != null)
+			{
+				InputStream clientStream = item.getSourceInputStream();
+
+				if (clientStream != null)
+				{
+					CRC32 crc = new CRC32();
+					String clientDigest;
+
+					try
+					{
+						clientDigest = getDigest(clientStream, digester.getAlgorithm(), crc);
+					}
+					finally
+					{
+						closeStream(item, clientStream);
+					}
+					if (clientDigest != null)
+					{
+						return compareResult(item, digestsMatch(clientDigest, serverDigest), crc);
+					}
+				}
+			}
+		}
+
+		return compareContents(item);
+	}
+
+	/**
+	 * Compares a client and a server file by reading both
+	 * 
+	 * @param item
+	 * @return SyncState
+	 */
+	private int compareContents(VirtualFileSyncPair item) throws ConnectionException, VirtualFileManagerException,
+			IOException
 	{
 		InputStream clientStream = item.getSourceInputStream();
 		InputStream serverStream = item.getDestinationInputStream();
@@ -561,23 +1036,24 @@ public class Synchronizer implements ILoggable
 
 		if (clientStream != null && serverStream != null)
 		{
-			// get individual CRC's
-			long clientCRC = getCRC(clientStream);
-			long serverCRC = getCRC(serverStream);
+			CRC32 crc = new CRC32();
+			boolean match = false;
 
-			// close streams
 			try
 			{
-				clientStream.close();
-				serverStream.close();
+				match = compareStreams(clientStream, serverStream, crc);
 			}
 			catch (IOException e)
 			{
-				IdeLog.logError(SyncingPlugin.getDefault(), StringUtils.format(
-						Messages.Synchronizer_ErrorClosingStreams, item.getRelativePath()), e);
+				IdeLog.logError(SyncingPlugin.getDefault(), Messages.Synchronizer_ErrorRetrievingCRC, e);
+			}
+			finally
+			{
+				closeStream(item, clientStream);
+				closeStream(item, serverStream);
 			}
 
-			result = (clientCRC == serverCRC) ? SyncState.ItemsMatch : SyncState.CRCMismatch;
+			result = compareResult(item, match, crc);
 		}
 		else
 		{
@@ -590,36 +1066,206 @@ public class Synchronizer implements ILoggable
 	}
 
 	/**
-	 * getCRC
+	 * Records a match in the manifest along with the CRC of the client file
 	 * 
-	 * @param stream
-	 * @return CRC
+	 * @param item
+	 * @param match
+	 * @param crc
+	 *            the CRC of the whole client file
+	 * @return SyncState
 	 */
-	private long getCRC(InputStream stream)
+	private int compareResult(VirtualFileSyncPair item, boolean match, CRC32 crc)
 	{
-		CRC32 crc = new CRC32();
+		if (!match)
+		{
+			return SyncState.CRCMismatch;
+		}
+
+		recordSynced(item.getRelativePath(), false, item.getSourceFile().getModificationMillis(), item
+				.getDestinationFile().getModificationMillis(), item.getSourceFile().getSize(), crc.getValue());
 
+		return SyncState.ItemsMatch;
+	}
+
+	/**
+	 * closeStream
+	 * 
+	 * @param item
+	 * @param stream
+	 */
+	private static void closeStream(VirtualFileSyncPair item, InputStream stream)
+	{
 		try
 		{
-			byte[] buffer = new byte[1024];
-			int length;
+			stream.close();
+		}
+		catch (IOException e)
+		{
+			IdeLog.logError(SyncingPlugin.getDefault(), StringUtils.format(Messages.Synchronizer_ErrorClosingStreams,
+					item.getRelativePath()), e);
+		}
+	}
+
+	/**
+	 * Reads two streams block by block and stops at the first block that differs
+	 * 
+	 * @param clientStream
+	 * @param serverStream
+	 * @param crc
+	 *            updated with the client stream, which is only complete if the streams match
+	 * @return true if both streams have the same contents
+	 * @throws IOException
+	 */
+	private static boolean compareStreams(InputStream clientStream, InputStream serverStream, CRC32 crc)
+			throws IOException
+	{
+		byte[] clientBuffer = new byte[COMPARE_BUFFER_SIZE];
+		byte[] serverBuffer = new byte[COMPARE_BUFFER_SIZE];
+
+		while (true)
+		{
+			int length = readBlock(clientStream, clientBuffer);
 
-			while ((length = stream.read(buffer)) != -1)
+			if (readBlock(serverStream, serverBuffer) != length)
 			{
-				crc.update(buffer, 0, length);
+				return false;
 			}
+			if (length == 0)
+			{
+				return true;
+			}
+			for (int i = 0; i < length; i++)
+			{
+				if (clientBuffer[i] != serverBuffer[i])
+				{
+					return false;
+				}
+			}
+
+			crc.update(clientBuffer, 0, length);
 		}
-		catch (IOException e)
+	}
+
+	/**
+	 * Fills a buffer from a stream
+	 * 
+	 * @param stream
+	 * @param buffer
+	 * @return the number of bytes read, less than the buffer size only at the end of the stream
+	 * @throws IOException
+	 */
+	private static int readBlock(InputStream stream, byte[] buffer) throws IOException
+	{
+		int length = 0;
+
+		while (length < buffer.length)
+		{
+			int count = stream.read(buffer, length, buffer.length - length);
+
+			if (count == -1)
+			{
+				break;
+			}
+
+			length += count;
+		}
+
+		return length;
+	}
+
+	/**
+	 * Computes the digest of a stream
+	 * 
+	 * @param stream
+	 * @param algorithm
+	 *            "CRC32" or the name of a MessageDigest algorithm
+	 * @param crc
+	 *            updated with the whole stream
+	 * @return the digest as a hexadecimal string or null if the algorithm is not available
+	 * @throws IOException
+	 */
+	private static String getDigest(InputStream stream, String algorithm, CRC32 crc) throws IOException
+	{
+		MessageDigest digest = null;
+
+		if (!CRC32_ALGORITHM.equalsIgnoreCase(algorithm))
 		{
-			IdeLog.logError(SyncingPlugin.getDefault(), Messages.Synchronizer_ErrorRetrievingCRC, e);
+			try
+			{
+				digest = MessageDigest.getInstance(algorithm);
+			}
+			catch (NoSuchAlgorithmException e)
+			{
+				return null;
+			}
+		}
+
+		byte[] buffer = new byte[COMPARE_BUFFER_SIZE];
+		int length;
+
+		while ((length = stream.read(buffer)) != -1)
+		{
+			crc.update(buffer, 0, length);
+
+			if (digest != null)
+			{
+				digest.update(buffer, 0, length);
+			}
+		}
+
+		if (digest == null)
+		{
+			return Long.toHexString(crc.getValue());
+		}
+
+		StringBuffer result = new StringBuffer();
+
+		for (byte b : digest.digest())
+		{
+			result.append(Character.forDigit((b >> 4) & 0xF, 16));
+			result.append(Character.forDigit(b & 0xF, 16));
+		}
+
+		return result.toString();
+	}
+
+	/**
+	 * Compares two hexadecimal digests, ignoring case and leading zeros
+	 * 
+	 * @param digest1
+	 * @param digest2
+	 * @return boolean
+	 */
+	private static boolean digestsMatch(String digest1, String digest2)
+	{
+		return stripLeadingZeros(digest1.trim()).equalsIgnoreCase(stripLeadingZeros(digest2.trim()));
+	}
+
+	/**
+	 * stripLeadingZeros
+	 * 
+	 * @param digest
+	 * @return String
+	 */
+	private static String stripLeadingZeros(String digest)
+	{
+		int start = 0;
 
+		while (start < digest.length() - 1 && digest.charAt(start) == '0')
+		{
+			start++;
 		}
 
-		return crc.getValue();
+		return digest.substring(start);
 	}
 
 	public void cancelAllOperations()
 	{
+		TransferPool pool = this._transferPool;
+		if (pool != null)
+		{
+			pool.cancel();
+		}
 		if (this._clientFileManager != null)
 		{
 			this._clientFileManager.cancel();
@@ -670,6 +1316,33 @@ public class Synchronizer implements ILoggable
 	 */
 	public boolean downloadAndDelete(VirtualFileSyncPair[] fileList, boolean delete) throws ConnectionException,
 			VirtualFileManagerException
+	{
+		boolean result = false;
+
+		fileList = startTransfers(fileList);
+		try
+		{
+			result = this.downloadItems(fileList, delete);
+		}
+		finally
+		{
+			result = finishTransfers() && result;
+		}
+
+		return result;
+	}
+
+	/**
+	 * downloadItems
+	 * 
+	 * @param fileList
+	 * @param delete
+	 * @return success
+	 * @throws ConnectionException
+	 * @throws VirtualFileManagerException
+	 */
+	private boolean downloadItems(VirtualFileSyncPair[] fileList, boolean delete) throws ConnectionException,
+			VirtualFileManagerException
 	{
 		checkFileManagers();
 
@@ -704,13 +1377,14 @@ public class Synchronizer implements ILoggable
 			            // Need to query first because deletion makes isDirectory always return false
 			            boolean wasDirectory = clientFile.isDirectory();
 			            client.deleteFile(clientFile);
+			            recordDeleted(item.getRelativePath());
 			            if (wasDirectory)
 			            {
-			                this._clientDirectoryDeletedCount++;
+			                this._clientDirectoryDeletedCount.incrementAndGet();
 			            }
 			            else
 			            {
-			                this._clientFileDeletedCount++;
+			                this._clientFileDeletedCount.incrementAndGet();
 			            }
 			        }
 			        syncDone(item);
@@ -728,9 +1402,11 @@ public class Synchronizer implements ILoggable
 						if (!targetClientFile.exists())
 						{
 							client.createLocalDirectory(targetClientFile);
-							this._clientDirectoryCreatedCount++;
+							this._clientDirectoryCreatedCount.incrementAndGet();
 							_newFilesDownloaded.add(targetClientFile);
 						}
+						recordSynced(item.getRelativePath(), true, serverFile.getModificationMillis(), serverFile
+								.getModificationMillis(), 0, -1);
 
 						logSuccess();
 						syncDone(item);
@@ -739,43 +1415,10 @@ public class Synchronizer implements ILoggable
 					{
 						targetClientFile = client.createVirtualFile(clientPath);
 						logDownloading(serverFile);
-						try
-						{
-							client.putFile(serverFile, targetClientFile, new IFileProgressMonitor()
-							{
-
-								public void bytesTransferred(long bytes)
-								{
-									syncTransferring(item, bytes);
-								}
-
-								public void done()
-								{
-									try
-									{
-										targetClientFile.setModificationMillis(serverFile.getModificationMillis());
-									}
-									catch (Exception e)
-									{
-									}
-									Synchronizer.this._serverFileTransferedCount++;
-									_newFilesDownloaded.add(targetClientFile);
-
-									logSuccess();
-									syncDone(item);
-								}
-
-							});
-						}
-						catch (IOException e)
+						if (!transferFile(item, serverFile, targetClientFile, false, true))
 						{
-							logError(e);
-
-							if (!syncError(item, e))
-							{
-							    result = false;
-								break FILE_LOOP;
-							}
+							result = false;
+							break FILE_LOOP;
 						}
 					}
 					break;
@@ -801,42 +1444,10 @@ public class Synchronizer implements ILoggable
                     else
 					{
                         // transfers the file from server to client
-						try
-						{
-							clientFile.getFileManager().putFile(serverFile, clientFile, new IFileProgressMonitor()
-							{
-
-								public void bytesTransferred(long bytes)
-								{
-									syncTransferring(item, bytes);
-								}
-
-								public void done()
-								{
-									try
-									{
-										clientFile.setModificationMillis(serverFile.getModificationMillis());
-									}
-									catch (Exception e)
-									{
-									}
-									Synchronizer.this._serverFileTransferedCount++;
-
-									logSuccess();
-									syncDone(item);
-								}
-
-							});
-						}
-						catch (IOException e)
+						if (!transferFile(item, serverFile, clientFile, false, false))
 						{
-							logError(e);
-
-							if (!syncError(item, e))
-							{
-							    result = false;
-								break FILE_LOOP;
-							}
+							result = false;
+							break FILE_LOOP;
 						}
 					}
 					break;
@@ -880,6 +1491,31 @@ public class Synchronizer implements ILoggable
 	 * @return success
 	 */
 	public boolean fullSyncAndDelete(VirtualFileSyncPair[] fileList, boolean deleteLocal, boolean deleteRemote)
+	{
+		boolean result = false;
+
+		fileList = startTransfers(fileList);
+		try
+		{
+			result = this.fullSyncItems(fileList, deleteLocal, deleteRemote);
+		}
+		finally
+		{
+			result = finishTransfers() && result;
+		}
+
+		return result;
+	}
+
+	/**
+	 * fullSyncItems
+	 * 
+	 * @param fileList
+	 * @param deleteLocal
+	 * @param deleteRemote
+	 * @return success
+	 */
+	private boolean fullSyncItems(VirtualFileSyncPair[] fileList, boolean deleteLocal, boolean deleteRemote)
 	{
 		logBeginFullSyncing();
 
@@ -948,42 +1584,10 @@ public class Synchronizer implements ILoggable
 	                    else
 	                    {
 	                        // transfers the file from client to server
-	                        try
+	                        if (!transferFile(item, clientFile, serverFile, true, false))
 	                        {
-	                            serverFile.getFileManager().putFile(clientFile, serverFile, new IFileProgressMonitor()
-	                            {
-
-	                                public void bytesTransferred(long bytes)
-	                                {
-	                                    syncTransferring(item, bytes);
-	                                }
-
-	                                public void done()
-	                                {
-	                                    try
-	                                    {
-	                                        serverFile.setModificationMillis(clientFile.getModificationMillis());
-	                                    }
-	                                    catch (Exception e)
-	                                    {
-	                                    }
-	                                    Synchronizer.this._clientFileTransferedCount++;
-
-	                                    logSuccess();
-	                                    syncDone(item);
-	                                }
-
-	                            });
-	                        }
-	                        catch (IOException e)
-	                        {
-	                            logError(e);
-
-	                            if (!syncError(item, e))
-	                            {
-	                                result = false;
-	                                break FILE_LOOP;
-	                            }
+	                        	result = false;
+	                        	break FILE_LOOP;
 	                        }
 	                    }
 						break;
@@ -996,13 +1600,14 @@ public class Synchronizer implements ILoggable
 	                        boolean wasDirectory = clientFile.isDirectory();
 	                        // deletes the item
 	                        client.deleteFile(clientFile);
+	                        recordDeleted(item.getRelativePath());
 	                        if (wasDirectory)
 	                        {
-	                            this._clientDirectoryDeletedCount++;
+	                            this._clientDirectoryDeletedCount.incrementAndGet();
 	                        }
 	                        else
 	                        {
-	                            this._clientFileDeletedCount++;
+	                            this._clientFileDeletedCount.incrementAndGet();
 	                        }
 	                        logSuccess();
 	                        syncDone(item);
@@ -1021,9 +1626,11 @@ public class Synchronizer implements ILoggable
 								if (!targetServerFile.exists())
 								{
 									server.createLocalDirectory(targetServerFile);
-									this._serverDirectoryCreatedCount++;
+									this._serverDirectoryCreatedCount.incrementAndGet();
 									_newFilesUploaded.add(targetServerFile);
 								}
+								recordSynced(item.getRelativePath(), true, clientFile.getModificationMillis(), clientFile
+										.getModificationMillis(), 0, -1);
 
 								logSuccess();
 								syncDone(item);
@@ -1032,43 +1639,10 @@ public class Synchronizer implements ILoggable
 							{
 								targetServerFile = server.createVirtualFile(serverPath);
 								logUploading(clientFile);
-								try
+								if (!transferFile(item, clientFile, targetServerFile, true, true))
 								{
-									server.putFile(clientFile, targetServerFile, new IFileProgressMonitor()
-									{
-
-										public void bytesTransferred(long bytes)
-										{
-											syncTransferring(item, bytes);
-										}
-
-										public void done()
-										{
-											try
-											{
-												targetServerFile.setModificationMillis(clientFile
-														.getModificationMillis());
-											}
-											catch (Exception e)
-											{
-											}
-											Synchronizer.this._clientFileTransferedCount++;
-											_newFilesUploaded.add(targetServerFile);
-
-											logSuccess();
-											syncDone(item);
-										}
-
-									});
-								}
-								catch (IOException e)
-								{
-									logError(e);
-
-									if (!syncError(item, e))
-									{
-										break FILE_LOOP;
-									}
+									result = false;
+									break FILE_LOOP;
 								}
 							}
 						}
@@ -1094,42 +1668,10 @@ public class Synchronizer implements ILoggable
 	                    else
 						{
 	                        // transfers the file from client to server
-							try
-							{
-								clientFile.getFileManager().putFile(serverFile, clientFile, new IFileProgressMonitor()
-								{
-
-									public void bytesTransferred(long bytes)
-									{
-										syncTransferring(item, bytes);
-									}
-
-									public void done()
-									{
-										try
-										{
-											clientFile.setModificationMillis(serverFile.getModificationMillis());
-										}
-										catch (Exception e)
-										{
-										}
-										Synchronizer.this._serverFileTransferedCount++;
-
-										logSuccess();
-										syncDone(item);
-									}
-
-								});
-							}
-							catch (IOException e)
+							if (!transferFile(item, serverFile, clientFile, false, false))
 							{
-								logError(e);
-
-								if (!syncError(item, e))
-								{
-								    result = false;
-									break FILE_LOOP;
-								}
+								result = false;
+								break FILE_LOOP;
 							}
 						}
 						break;
@@ -1142,13 +1684,14 @@ public class Synchronizer implements ILoggable
 	                        boolean wasDirectory = serverFile.isDirectory();
 	                        // deletes the item
 	                        server.deleteFile(serverFile);
+	                        recordDeleted(item.getRelativePath());
 	                        if (wasDirectory)
 	                        {
-	                            this._serverDirectoryDeletedCount++;
+	                            this._serverDirectoryDeletedCount.incrementAndGet();
 	                        }
 	                        else
 	                        {
-	                            this._serverFileDeletedCount++;
+	                            this._serverFileDeletedCount.incrementAndGet();
 	                        }
 	                        logSuccess();
 	                        syncDone(item);
@@ -1167,9 +1710,11 @@ public class Synchronizer implements ILoggable
 								if (!targetClientFile.exists())
 								{
 									client.createLocalDirectory(targetClientFile);
-									this._clientDirectoryCreatedCount++;
+									this._clientDirectoryCreatedCount.incrementAndGet();
 									_newFilesDownloaded.add(targetClientFile);
 								}
+								recordSynced(item.getRelativePath(), true, serverFile.getModificationMillis(), serverFile
+										.getModificationMillis(), 0, -1);
 
 								logSuccess();
 								syncDone(item);
@@ -1178,44 +1723,10 @@ public class Synchronizer implements ILoggable
 							{
 								targetClientFile = client.createVirtualFile(clientPath);
 								logDownloading(targetClientFile);
-								try
-								{
-									client.putFile(serverFile, targetClientFile, new IFileProgressMonitor()
-									{
-
-										public void bytesTransferred(long bytes)
-										{
-											syncTransferring(item, bytes);
-										}
-
-										public void done()
-										{
-											try
-											{
-												targetClientFile.setModificationMillis(serverFile
-														.getModificationMillis());
-											}
-											catch (Exception e)
-											{
-											}
-											Synchronizer.this._serverFileTransferedCount++;
-											_newFilesDownloaded.add(targetClientFile);
-
-											logSuccess();
-											syncDone(item);
-										}
-
-									});
-								}
-								catch (IOException e)
+								if (!transferFile(item, serverFile, targetClientFile, false, true))
 								{
-									logError(e);
-
-									if (!syncError(item, e))
-									{
-									    result = false;
-										break FILE_LOOP;
-									}
+									result = false;
+									break FILE_LOOP;
 								}
 							}
 						}
@@ -1263,12 +1774,264 @@ public class Synchronizer implements ILoggable
 	 * @return String
 	 */
 	private String constructDestinationPath(String basePath, IVirtualFileManager manager, VirtualFileSyncPair item)
+	{
+		return constructDestinationPath(basePath, manager, item.getRelativePath());
+	}
+
+	/**
+	 * Constructs the path for use on the destination
+	 * 
+	 * @param basePath
+	 * @param manager
+	 * @param relativePath
+	 * @return String
+	 */
+	private String constructDestinationPath(String basePath, IVirtualFileManager manager, String relativePath)
 	{
 		if (basePath.endsWith(manager.getFileSeparator()))
 		{
-			return basePath + item.getRelativePath();
+			return basePath + relativePath;
+		}
+		return basePath + manager.getFileSeparator() + relativePath;
+	}
+
+	/**
+	 * Starts the transfer threads if more than one file may be transferred at the same time. The items are then
+	 * returned sorted by path so that every directory is created before the files inside of it are transferred.
+	 * 
+	 * @param fileList
+	 * @return the items in the order they should be synced
+	 */
+	private VirtualFileSyncPair[] startTransfers(VirtualFileSyncPair[] fileList)
+	{
+		this._transferPool = null;
+
+		if (this._transferThreads <= 1 || fileList.length <= 1 || getClientFileManager() == null
+				|| getServerFileManager() == null)
+		{
+			return fileList;
+		}
+
+		this._transferPool = TransferPool.create(getClientFileManager(), getServerFileManager(), Math.min(
+				this._transferThreads, fileList.length));
+
+		if (this._transferPool == null)
+		{
+			return fileList;
+		}
+
+		VirtualFileSyncPair[] sortedList = fileList.clone();
+		Arrays.sort(sortedList, new Comparator<VirtualFileSyncPair>()
+		{
+			public int compare(VirtualFileSyncPair item1, VirtualFileSyncPair item2)
+			{
+				// a directory's path is a prefix of the paths of its children, so it sorts before them
+				return item1.getRelativePath().compareTo(item2.getRelativePath());
+			}
+		});
+
+		return sortedList;
+	}
+
+	/**
+	 * Waits for all files queued on the transfer threads and closes their connections
+	 * 
+	 * @return false if a failed transfer stopped the sync
+	 */
+	private boolean finishTransfers()
+	{
+		TransferPool pool = this._transferPool;
+
+		if (pool == null)
+		{
+			saveManifest();
+			return true;
+		}
+
+		if (!syncContinue())
+		{
+			pool.stop();
+		}
+
+		pool.close();
+		this._transferPool = null;
+		saveManifest();
+
+		return !pool.isStopped();
+	}
+
+	/**
+	 * Records the state of a path that is now the same on the client and the server
+	 * 
+	 * @param path
+	 * @param directory
+	 * @param clientModificationMillis
+	 * @param serverModificationMillis
+	 * @param size
+	 * @param checksum
+	 */
+	private void recordSynced(String path, boolean directory, long clientModificationMillis,
+			long serverModificationMillis, long size, long checksum)
+	{
+		if (this._manifest != null)
+		{
+			this._manifest.put(path, new SyncManifest.Entry(directory, clientModificationMillis,
+					serverModificationMillis, size, checksum));
+		}
+	}
+
+	/**
+	 * Removes a path that was deleted from the manifest
+	 * 
+	 * @param path
+	 */
+	private void recordDeleted(String path)
+	{
+		if (this._manifest != null)
+		{
+			this._manifest.remove(path);
+		}
+	}
+
+	/**
+	 * saveManifest
+	 */
+	private void saveManifest()
+	{
+		if (this._manifest != null)
+		{
+			try
+			{
+				this._manifest.save();
+			}
+			catch (IOException e)
+			{
+				IdeLog.logError(SyncingPlugin.getDefault(), Messages.Synchronizer_ErrorSavingManifest, e);
+			}
+		}
+	}
+
+	/**
+	 * Transfers a file. If the transfer threads are running the file is queued on one of their connections and any
+	 * error is reported to the event handler from that thread.
+	 * 
+	 * @param item
+	 * @param sourceFile
+	 * @param targetFile
+	 * @param upload
+	 *            true if the file is transferred from the client to the server
+	 * @param newFile
+	 *            true if the target file does not exist yet
+	 * @return false if the sync should stop
+	 * @throws ConnectionException
+	 * @throws VirtualFileManagerException
+	 */
+	private boolean transferFile(final VirtualFileSyncPair item, final IVirtualFile sourceFile,
+			final IVirtualFile targetFile, final boolean upload, boolean newFile) throws ConnectionException,
+			VirtualFileManagerException
+	{
+		final TransferPool pool = this._transferPool;
+		// read now, the files given to the transfer threads are new instances without the listing's information
+		final long modificationMillis = sourceFile.getModificationMillis();
+		final long size = sourceFile.getSize();
+		final IVirtualFile addedFile = newFile ? targetFile : null;
+
+		if (pool == null)
+		{
+			try
+			{
+				putFile(item, sourceFile, targetFile, modificationMillis, size, upload, addedFile);
+			}
+			catch (IOException e)
+			{
+				logError(e);
+				return syncError(item, e);
+			}
+			return true;
 		}
-		return basePath + manager.getFileSeparator() + item.getRelativePath();
+
+		return pool.submit(new TransferPool.Transfer()
+		{
+			public void run(IVirtualFileManager client, IVirtualFileManager server)
+			{
+				try
+				{
+					putFile(item, TransferPool.rebind(upload ? client : server, sourceFile), TransferPool.rebind(
+							upload ? server : client, targetFile), modificationMillis, size, upload, addedFile);
+				}
+				catch (Exception e)
+				{
+					logError(e);
+
+					if (!syncError(item, e))
+					{
+						pool.stop();
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * putFile
+	 * 
+	 * @param item
+	 * @param sourceFile
+	 * @param targetFile
+	 * @param modificationMillis
+	 *            the modification time to give the target file
+	 * @param size
+	 * @param upload
+	 * @param addedFile
+	 *            the file to add to the new files list, or null
+	 * @throws ConnectionException
+	 * @throws VirtualFileManagerException
+	 * @throws IOException
+	 */
+	private void putFile(final VirtualFileSyncPair item, IVirtualFile sourceFile, final IVirtualFile targetFile,
+			final long modificationMillis, final long size, final boolean upload, final IVirtualFile addedFile)
+			throws ConnectionException, VirtualFileManagerException, IOException
+	{
+		targetFile.getFileManager().putFile(sourceFile, targetFile, new IFileProgressMonitor()
+		{
+
+			public void bytesTransferred(long bytes)
+			{
+				syncTransferring(item, bytes);
+			}
+
+			public void done()
+			{
+				try
+				{
+					targetFile.setModificationMillis(modificationMillis);
+				}
+				catch (Exception e)
+				{
+				}
+				if (upload)
+				{
+					Synchronizer.this._clientFileTransferedCount.incrementAndGet();
+					if (addedFile != null)
+					{
+						_newFilesUploaded.add(addedFile);
+					}
+				}
+				else
+				{
+					Synchronizer.this._serverFileTransferedCount.incrementAndGet();
+					if (addedFile != null)
+					{
+						_newFilesDownloaded.add(addedFile);
+					}
+				}
+				recordSynced(item.getRelativePath(), false, modificationMillis, modificationMillis, size, -1);
+
+				logSuccess();
+				syncDone(item);
+			}
+
+		});
 	}
 
 	/**
@@ -1276,15 +2039,15 @@ public class Synchronizer implements ILoggable
 	 */
 	private void reset()
 	{
-		this._clientDirectoryCreatedCount = 0;
-		this._clientDirectoryDeletedCount = 0;
-		this._clientFileDeletedCount = 0;
-		this._clientFileTransferedCount = 0;
-
-		this._serverDirectoryCreatedCount = 0;
-		this._serverDirectoryDeletedCount = 0;
-		this._serverFileDeletedCount = 0;
-		this._serverFileTransferedCount = 0;
+		this._clientDirectoryCreatedCount.set(0);
+		this._clientDirectoryDeletedCount.set(0);
+		this._clientFileDeletedCount.set(0);
+		this._clientFileTransferedCount.set(0);
+
+		this._serverDirectoryCreatedCount.set(0);
+		this._serverDirectoryDeletedCount.set(0);
+		this._serverFileDeletedCount.set(0);
+		this._serverFileTransferedCount.set(0);
 		
 		this._newFilesDownloaded.clear();
 		this._newFilesUploaded.clear();
@@ -1330,6 +2093,33 @@ public class Synchronizer implements ILoggable
 	 */
 	public boolean uploadAndDelete(VirtualFileSyncPair[] fileList, boolean delete) throws ConnectionException,
 			VirtualFileManagerException
+	{
+		boolean result = false;
+
+		fileList = startTransfers(fileList);
+		try
+		{
+			result = this.uploadItems(fileList, delete);
+		}
+		finally
+		{
+			result = finishTransfers() && result;
+		}
+
+		return result;
+	}
+
+	/**
+	 * uploadItems
+	 * 
+	 * @param fileList
+	 * @param delete
+	 * @return success
+	 * @throws ConnectionException
+	 * @throws VirtualFileManagerException
+	 */
+	private boolean uploadItems(VirtualFileSyncPair[] fileList, boolean delete) throws ConnectionException,
+			VirtualFileManagerException
 	{
 		checkFileManagers();
 		logBeginUploading();
@@ -1369,9 +2159,11 @@ public class Synchronizer implements ILoggable
 						if (!targetServerFile.exists())
 						{
 							server.createLocalDirectory(targetServerFile);
-							this._serverDirectoryCreatedCount++;
+							this._serverDirectoryCreatedCount.incrementAndGet();
 							_newFilesUploaded.add(targetServerFile);
 						}
+						recordSynced(item.getRelativePath(), true, clientFile.getModificationMillis(), clientFile
+								.getModificationMillis(), 0, -1);
 
 						syncDone(item);
 					}
@@ -1380,43 +2172,10 @@ public class Synchronizer implements ILoggable
 						targetServerFile = server.createVirtualFile(serverPath);
 
 						logUploading(clientFile);
-						try
-						{
-							server.putFile(clientFile, targetServerFile, new IFileProgressMonitor()
-							{
-
-								public void bytesTransferred(long bytes)
-								{
-									syncTransferring(item, bytes);
-								}
-
-								public void done()
-								{
-									try
-									{
-										targetServerFile.setModificationMillis(clientFile.getModificationMillis());
-									}
-									catch (Exception e)
-									{
-									}
-									Synchronizer.this._clientFileTransferedCount++;
-									_newFilesUploaded.add(targetServerFile);
-
-									logSuccess();
-									syncDone(item);
-								}
-
-							});
-						}
-						catch (IOException e)
+						if (!transferFile(item, clientFile, targetServerFile, true, true))
 						{
-							logError(e);
-
-							if (!syncError(item, e))
-							{
-							    result = false;
-								break FILE_LOOP;
-							}
+							result = false;
+							break FILE_LOOP;
 						}
 					}
 					break;
@@ -1428,13 +2187,14 @@ public class Synchronizer implements ILoggable
                         // Need to query if directory first because deletion makes isDirectory always return false.
                         boolean wasDirectory = serverFile.isDirectory();
                         server.deleteFile(serverFile);
+                        recordDeleted(item.getRelativePath());
                         if (wasDirectory)
                         {
-                            this._serverDirectoryDeletedCount++;
+                            this._serverDirectoryDeletedCount.incrementAndGet();
                         }
                         else
                         {
-                            this._serverFileDeletedCount++;
+                            this._serverFileDeletedCount.incrementAndGet();
                         }
                     }
                     syncDone(item);
@@ -1461,42 +2221,10 @@ public class Synchronizer implements ILoggable
                     else
 					{
                         // transfers the file from client to server
-						try
-						{
-							serverFile.getFileManager().putFile(clientFile, serverFile, new IFileProgressMonitor()
-							{
-
-								public void bytesTransferred(long bytes)
-								{
-									syncTransferring(item, bytes);
-								}
-
-								public void done()
-								{
-									try
-									{
-										serverFile.setModificationMillis(clientFile.getModificationMillis());
-									}
-									catch (Exception e)
-									{
-									}
-									Synchronizer.this._clientFileTransferedCount++;
-
-									logSuccess();
-									syncDone(item);
-								}
-
-							});
-						}
-						catch (IOException e)
+						if (!transferFile(item, clientFile, serverFile, true, false))
 						{
-							logError(e);
-
-							if (!syncError(item, e))
-							{
-							    result = false;
-								break FILE_LOOP;
-							}
+							result = false;
+							break FILE_LOOP;
 						}
 					}
 					break;
@@ -1655,34 +2383,52 @@ public class Synchronizer implements ILoggable
 		log(FileUtils.NEW_LINE + StringUtils.format(Messages.Synchronizer_Uploading, file.getAbsolutePath()));
 	}
 
+	// the transfer threads report through these as well, so the event handler is only ever called by one thread at a
+	// time
+
 	private void syncDone(VirtualFileSyncPair item)
 	{
-		if (this._eventHandler != null)
+		synchronized (this._eventLock)
 		{
-			this._eventHandler.syncDone(item);
+			if (this._eventHandler != null)
+			{
+				this._eventHandler.syncDone(item);
+			}
 		}
 	}
 
 	private boolean syncError(VirtualFileSyncPair item, Exception e)
 	{
-		return this._eventHandler == null || this._eventHandler.syncErrorEvent(item, e);
+		synchronized (this._eventLock)
+		{
+			return this._eventHandler == null || this._eventHandler.syncErrorEvent(item, e);
+		}
 	}
 
 	private boolean syncEvent(VirtualFileSyncPair item, int index, int totalItems)
 	{
-		return this._eventHandler == null || this._eventHandler.syncEvent(item, index, totalItems);
+		synchronized (this._eventLock)
+		{
+			return this._eventHandler == null || this._eventHandler.syncEvent(item, index, totalItems);
+		}
 	}
 
 	private boolean syncContinue()
 	{
-		return this._eventHandler == null || this._eventHandler.syncContinue();
+		synchronized (this._eventLock)
+		{
+			return this._eventHandler == null || this._eventHandler.syncContinue();
+		}
 	}
 
 	private void syncTransferring(VirtualFileSyncPair item, long bytes)
 	{
-		if (this._eventHandler != null)
+		synchronized (this._eventLock)
 		{
-			this._eventHandler.syncTransferring(item, bytes);
+			if (this._eventHandler != null)
+			{
+				this._eventHandler.syncTransferring(item, bytes);
+			}
 		}
 	}
 
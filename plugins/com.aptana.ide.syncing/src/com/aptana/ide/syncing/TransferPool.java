@@ -0,0 +1,320 @@
+/**
+ * This file Copyright (c) 2005-2008 Aptana, Inc. This program is
+ * dual-licensed under both the Aptana Public License and the GNU General
+ * Public license. You may elect to use one or the other of these licenses.
+ * 
+ * This program is distributed in the hope that it will be useful, but
+ * AS-IS and WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, TITLE, or
+ * NONINFRINGEMENT. Redistribution, except as permitted by whichever of
+ * the GPL or APL you select, is prohibited.
+ *
+ * 1. For the GPL license (GPL), you can redistribute and/or modify this
+ * program under the terms of the GNU General Public License,
+ * Version 3, as published by the Free Software Foundation.  You should
+ * have received a copy of the GNU General Public License, Version 3 along
+ * with this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * Aptana provides a special exception to allow redistribution of this file
+ * with certain other free and open source software ("FOSS") code and certain additional terms
+ * pursuant to Section 7 of the GPL. You may view the exception and these
+ * terms on the web at http://www.aptana.com/legal/gpl/.
+ * 
+ * 2. For the Aptana Public License (APL), this program and the
+ * accompanying materials are made available under the terms of the APL
+ * v1.0 which accompanies this distribution, and is available at
+ * http://www.aptana.com/legal/apl/.
+ * 
+ * You may view the GPL, Aptana's exception and additional terms, and the
+ * APL in the file titled license.html at the root of the corresponding
+ * plugin containing this source file.
+ * 
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.ide.syncing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+import com.aptana.ide.core.io.IVirtualFile;
+import com.aptana.ide.core.io.IVirtualFileManager;
+
+/**
+ * Runs file transfers on a fixed number of worker threads. Every worker uses its own connection, made of clones of the
+ * client and server file managers, so that transfers do not wait on each other's round trips. At most two transfers per
+ * worker are queued, which keeps the caller close to the transfers that are actually running.
+ * 
+ * @author agent (agent@local)
+ */
+class TransferPool
+{
+	/**
+	 * A transfer to run on one of the pooled connections
+	 */
+	interface Transfer
+	{
+		/**
+		 * Runs the transfer. Files must be rebound to the given file managers with {@link TransferPool#rebind} before
+		 * they are read or written.
+		 * 
+		 * @param client
+		 *            the worker's client file manager
+		 * @param server
+		 *            the worker's server file manager
+		 */
+		void run(IVirtualFileManager client, IVirtualFileManager server);
+	}
+
+	private ExecutorService _executor;
+	private BlockingQueue<IVirtualFileManager[]> _connections;
+	private List<IVirtualFileManager[]> _allConnections;
+	private Semaphore _slots;
+	private int _pending;
+	private volatile boolean _stopped;
+
+	private TransferPool(List<IVirtualFileManager[]> connections)
+	{
+		int size = connections.size();
+
+		this._allConnections = connections;
+		this._connections = new LinkedBlockingQueue<IVirtualFileManager[]>(connections);
+		this._slots = new Semaphore(size * 2, true);
+		this._executor = Executors.newFixedThreadPool(size, new ThreadFactory()
+		{
+			private int _count;
+
+			public synchronized Thread newThread(Runnable runnable)
+			{
+				Thread thread = new Thread(runnable, "Sync Transfer " + (++this._count)); //$NON-NLS-1$
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Creates a pool of the given number of connections to the client and server
+	 * 
+	 * @param client
+	 * @param server
+	 * @param size
+	 * @return the new pool, or null if either file manager does not support cloning
+	 */
+	static TransferPool create(IVirtualFileManager client, IVirtualFileManager server, int size)
+	{
+		List<IVirtualFileManager[]> connections = new ArrayList<IVirtualFileManager[]>(size);
+
+		for (int i = 0; i < size; i++)
+		{
+			IVirtualFileManager clientClone = cloneManager(client);
+			IVirtualFileManager serverClone = cloneManager(server);
+
+			if (clientClone == null || serverClone == null)
+			{
+				if (clientClone != null)
+				{
+					clientClone.disconnect();
+				}
+				if (serverClone != null)
+				{
+					serverClone.disconnect();
+				}
+				for (IVirtualFileManager[] connection : connections)
+				{
+					connection[0].disconnect();
+					connection[1].disconnect();
+				}
+				return null;
+			}
+			connections.add(new IVirtualFileManager[] { clientClone, serverClone });
+		}
+
+		return new TransferPool(connections);
+	}
+
+	/**
+	 * cloneManager
+	 * 
+	 * @param manager
+	 * @return a clone of the manager with the same base path and event handler, or null
+	 */
+	private static IVirtualFileManager cloneManager(IVirtualFileManager manager)
+	{
+		IVirtualFileManager clone = manager.cloneManager();
+
+		if (clone != null)
+		{
+			clone.setBasePath(manager.getBasePath());
+			clone.setEventHandler(manager.getEventHandler());
+		}
+
+		return clone;
+	}
+
+	/**
+	 * Returns a file with the same path as the given one that belongs to the given file manager
+	 * 
+	 * @param manager
+	 * @param file
+	 * @return IVirtualFile
+	 */
+	static IVirtualFile rebind(IVirtualFileManager manager, IVirtualFile file)
+	{
+		if (file.getFileManager() == manager)
+		{
+			return file;
+		}
+		return manager.createVirtualFile(file.getAbsolutePath());
+	}
+
+	/**
+	 * Queues a transfer, waiting while all workers are busy and their queue is full
+	 * 
+	 * @param transfer
+	 * @return false if the pool was stopped and the transfer was not queued
+	 */
+	boolean submit(final Transfer transfer)
+	{
+		if (this._stopped)
+		{
+			return false;
+		}
+
+		try
+		{
+			this._slots.acquire();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			stop();
+			return false;
+		}
+
+		synchronized (this)
+		{
+			this._pending++;
+		}
+
+		this._executor.execute(new Runnable()
+		{
+			public void run()
+			{
+				IVirtualFileManager[] connection = _connections.poll();
+
+				try
+				{
+					if (!_stopped)
+					{
+						transfer.run(connection[0], connection[1]);
+					}
+				}
+				finally
+				{
+					_connections.offer(connection);
+					_slots.release();
+
+					synchronized (TransferPool.this)
+					{
+						_pending--;
+						TransferPool.this.notifyAll();
+					}
+				}
+			}
+		});
+
+		return true;
+	}
+
+	/**
+	 * Stops the pool. Transfers that have been queued but have not started yet are skipped.
+	 */
+	void stop()
+	{
+		this._stopped = true;
+	}
+
+	/**
+	 * Returns true if the pool has been stopped
+	 * 
+	 * @return boolean
+	 */
+	boolean isStopped()
+	{
+		return this._stopped;
+	}
+
+	/**
+	 * Stops the pool and cancels the transfers that are running on its connections
+	 */
+	void cancel()
+	{
+		stop();
+
+		for (IVirtualFileManager[] connection : this._allConnections)
+		{
+			connection[0].cancel();
+			connection[1].cancel();
+		}
+	}
+
+	/**
+	 * Waits for all queued transfers to finish, then shuts down the workers and disconnects their connections. If the
+	 * wait is interrupted, the transfers are cancelled, but the connections are still only disconnected once every
+	 * worker has stopped, so that no transfer is cut off in the middle of writing a file.
+	 */
+	void close()
+	{
+		boolean interrupted = false;
+
+		while (true)
+		{
+			try
+			{
+				awaitIdle();
+				break;
+			}
+			catch (InterruptedException e)
+			{
+				if (!interrupted)
+				{
+					interrupted = true;
+					cancel();
+				}
+			}
+		}
+
+		if (interrupted)
+		{
+			Thread.currentThread().interrupt();
+		}
+
+		this._executor.shutdown();
+
+		for (IVirtualFileManager[] connection : this._allConnections)
+		{
+			connection[0].disconnect();
+			connection[1].disconnect();
+		}
+	}
+
+	/**
+	 * Waits until no transfer is queued or running
+	 * 
+	 * @throws InterruptedException
+	 */
+	private synchronized void awaitIdle() throws InterruptedException
+	{
+		while (this._pending > 0)
+		{
+			this.wait();
+		}
+	}
+}
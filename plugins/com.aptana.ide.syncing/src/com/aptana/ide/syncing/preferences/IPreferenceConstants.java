@@ -140,4 +140,19 @@ public interface IPreferenceConstants
      */
     static final String SHOW_MODIFICATION_TIME = "com.aptana.ide.syncing.views.SHOW_MODIFICATION_TIME"; //$NON-NLS-1$
 
+    /**
+     * TRANSFER_THREADS
+     */
+    static final String TRANSFER_THREADS = "com.aptana.ide.syncing.TRANSFER_THREADS"; //$NON-NLS-1$
+
+    /**
+     * DEFAULT_TRANSFER_THREADS
+     */
+    static final int DEFAULT_TRANSFER_THREADS = 1;
+
+    /**
+     * MAX_TRANSFER_THREADS
+     */
+    static final int MAX_TRANSFER_THREADS = 8;
+
 }
@@ -56,6 +56,7 @@ public class PreferenceInitializer extends AbstractPreferenceInitializer
 		store.setDefault(IPreferenceConstants.SHOW_SYNC_EXPLORER_TABLE, true);
 		store.setDefault(IPreferenceConstants.SHOW_DATE, true);
 		store.setDefault(IPreferenceConstants.SHOW_SIZE, true);
+		store.setDefault(IPreferenceConstants.TRANSFER_THREADS, IPreferenceConstants.DEFAULT_TRANSFER_THREADS);
 	}
 
 }
@@ -174,6 +174,7 @@ public class SmartSyncDialog extends Window implements SelectionListener, Modify
 	private IVirtualFile file2;
 	private ISyncEventHandler handler;
 	private boolean compareInBackground;
+	private boolean uploadOnlyItems;
 
 	private Composite swappable;
 	private Composite errorComp;
@@ -221,6 +222,8 @@ public class SmartSyncDialog extends Window implements SelectionListener, Modify
 		this.end2 = end2;
 		this.compareInBackground = getCoreUIPreferenceStore().getBoolean(COMPARE_IN_BACKGROUND);
 		this.syncer = new Synchronizer(getCoreUIPreferenceStore().getBoolean(USE_CRC), 1000);
+		this.syncer.setTransferThreads(getSyncingPreferenceStore().getInt(
+				com.aptana.ide.syncing.preferences.IPreferenceConstants.TRANSFER_THREADS));
 		if (file1 != null)
 		{
 		    this.syncer.setClientFileManager(file1.getFileManager());
@@ -250,6 +253,7 @@ public class SmartSyncDialog extends Window implements SelectionListener, Modify
 				.getSourceFileManager().getDescriptiveLabel(), conf.getDestinationFileManager().getDescriptiveLabel());
 		this.syncer.setClientFileManager(conf.getSourceFileManager());
 		this.syncer.setServerFileManager(conf.getDestinationFileManager());
+		this.syncer.setManifest(SyncManager.getSyncManager().getManifest(conf));
 		this.managerPair = conf;
 		if (filesToBeSynced == null || filesToBeSynced.length == 0)
 		{
@@ -1080,6 +1084,9 @@ public class SmartSyncDialog extends Window implements SelectionListener, Modify
 		// displayArea.layout(true, true);
 		final boolean forceUp = compareInBackground ? false : (directionBar.getSelection() == DirectionToolBar.FORCE_UPLOAD);
 		final boolean forceDown = compareInBackground ? false : (directionBar.getSelection() == DirectionToolBar.FORCE_DOWNLOAD);
+		// the server is only listed where the client changed when nothing is going to be downloaded
+		final boolean uploadOnly = compareInBackground ? false : (directionBar.getSelection() == DirectionToolBar.UPLOAD);
+		uploadOnlyItems = uploadOnly;
 
 		if (buildSmartSync != null)
 		{
@@ -1176,6 +1183,7 @@ public class SmartSyncDialog extends Window implements SelectionListener, Modify
 					{
 						if (filesToBeSynced == null)
 						{
+							syncer.setUploadOnly(uploadOnly);
 							items = syncer.getSyncItems(file1, file2);
 						}
 						else
@@ -1441,7 +1449,7 @@ public class SmartSyncDialog extends Window implements SelectionListener, Modify
 		updateFileButtonsState();
 		syncViewer.setSyncDirection(directionBar.getSelection());
 		saveDirectionPref(direction);
-		if (reload)
+		if (reload || (uploadOnlyItems && direction != DirectionToolBar.UPLOAD))
 		{
 			load(false);
 		}
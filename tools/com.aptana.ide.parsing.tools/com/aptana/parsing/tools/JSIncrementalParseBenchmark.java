@@ -0,0 +1,300 @@
+/**
+ * Copyright (c) 2005-2008 Aptana, Inc.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html. If redistributing this code,
+ * this entire header must remain intact.
+ */
+package com.aptana.parsing.tools;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.aptana.ide.editor.js.parsing.JSParser;
+import com.aptana.ide.io.StreamUtils;
+import com.aptana.ide.parsing.IParseState;
+import com.aptana.ide.parsing.nodes.IParseNode;
+
+/**
+ * Replays a recorded edit session against JSParser and reports the per-edit parse latency of an incremental parse
+ * versus a full re-parse.
+ * <p>
+ * A session file contains one edit per line in the form <code>offset&lt;TAB&gt;removeLength&lt;TAB&gt;text</code>
+ * where text is the inserted text with <code>\n</code>, <code>\r</code>, <code>\t</code> and <code>\\</code>
+ * escaped. Each edit is applied to the source produced by the previous edit.
+ *
+ * @author agent (agent@local)
+ */
+public final class JSIncrementalParseBenchmark
+{
+	/**
+	 * Edit
+	 */
+	private static final class Edit
+	{
+		final int offset;
+		final int removeLength;
+		final String text;
+
+		Edit(int offset, int removeLength, String text)
+		{
+			this.offset = offset;
+			this.removeLength = removeLength;
+			this.text = text;
+		}
+	}
+
+	/**
+	 * JSIncrementalParseBenchmark
+	 */
+	private JSIncrementalParseBenchmark()
+	{
+	}
+
+	/**
+	 * main
+	 *
+	 * @param args
+	 */
+	public static void main(String[] args)
+	{
+		if (args.length == 2)
+		{
+			try
+			{
+				run(new File(args[0]), new File(args[1]));
+			}
+			catch (Exception e)
+			{
+				e.printStackTrace();
+			}
+		}
+		else
+		{
+			System.out.println(Messages.getString("JSIncrementalParseBenchmark.Usage_Syntax")); //$NON-NLS-1$
+			System.out.println(Messages.getString("JSIncrementalParseBenchmark.Usage_Source_File")); //$NON-NLS-1$
+			System.out.println(Messages.getString("JSIncrementalParseBenchmark.Usage_Session_File")); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Replay the session against an incremental and a full parser
+	 *
+	 * @param sourceFile
+	 * @param sessionFile
+	 * @throws Exception
+	 */
+	private static void run(File sourceFile, File sessionFile) throws Exception
+	{
+		String source = StreamUtils.getText(new FileInputStream(sourceFile));
+		List<Edit> edits = readSession(sessionFile);
+
+		JSParser incrementalParser = new JSParser();
+		JSParser fullParser = new JSParser();
+		fullParser.setIncrementalParse(false);
+
+		IParseState incrementalState = incrementalParser.createParseState(null);
+		IParseState fullState = fullParser.createParseState(null);
+
+		// initial parse of the unedited source
+		parse(incrementalParser, incrementalState, source, source, 0, 0);
+		parse(fullParser, fullState, source, source, 0, 0);
+
+		long[] incrementalTimes = new long[edits.size()];
+		long[] fullTimes = new long[edits.size()];
+		int mismatches = 0;
+
+		for (int i = 0; i < edits.size(); i++)
+		{
+			Edit edit = edits.get(i);
+
+			source = source.substring(0, edit.offset) + edit.text + source.substring(edit.offset + edit.removeLength);
+
+			incrementalTimes[i] = parse(incrementalParser, incrementalState, source, edit.text, edit.offset,
+					edit.removeLength);
+			fullTimes[i] = parse(fullParser, fullState, source, edit.text, edit.offset, edit.removeLength);
+
+			// both parses must agree on the resulting tree
+			IParseNode incrementalResult = incrementalState.getParseResults();
+			IParseNode fullResult = fullState.getParseResults();
+
+			if (incrementalResult.getXML().equals(fullResult.getXML()) == false)
+			{
+				mismatches++;
+			}
+
+			System.out.println(MessageFormat.format(
+				Messages.getString("JSIncrementalParseBenchmark.Edit_Timing"), //$NON-NLS-1$
+				new Object[] { Integer.toString(i), toMillis(incrementalTimes[i]), toMillis(fullTimes[i]) }
+			));
+		}
+
+		report("JSIncrementalParseBenchmark.Incremental_Summary", incrementalTimes); //$NON-NLS-1$
+		report("JSIncrementalParseBenchmark.Full_Summary", fullTimes); //$NON-NLS-1$
+
+		System.out.println(MessageFormat.format(
+			Messages.getString("JSIncrementalParseBenchmark.Mismatches"), //$NON-NLS-1$
+			new Object[] { Integer.toString(mismatches) }
+		));
+	}
+
+	/**
+	 * Apply an edit to a parse state and time the resulting parse
+	 *
+	 * @param parser
+	 * @param parseState
+	 * @param source
+	 * @param insertedText
+	 * @param offset
+	 * @param removeLength
+	 * @return Returns the elapsed time in nanoseconds
+	 * @throws Exception
+	 */
+	private static long parse(JSParser parser, IParseState parseState, String source, String insertedText,
+			int offset, int removeLength) throws Exception
+	{
+		parseState.setEditState(source, insertedText, offset, removeLength);
+
+		long start = System.nanoTime();
+		parser.parse(parseState);
+		long elapsed = System.nanoTime() - start;
+
+		parseState.clearEditState();
+
+		return elapsed;
+	}
+
+	/**
+	 * readSession
+	 *
+	 * @param sessionFile
+	 * @return Returns the list of edits in the session file
+	 * @throws IOException
+	 */
+	private static List<Edit> readSession(File sessionFile) throws IOException
+	{
+		List<Edit> result = new ArrayList<Edit>();
+		BufferedReader reader = new BufferedReader(new FileReader(sessionFile));
+
+		try
+		{
+			String line;
+
+			while ((line = reader.readLine()) != null)
+			{
+				if (line.length() == 0)
+				{
+					continue;
+				}
+
+				String[] parts = line.split("\t", 3); //$NON-NLS-1$
+				String text = (parts.length > 2) ? unescape(parts[2]) : ""; //$NON-NLS-1$
+
+				result.add(new Edit(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), text));
+			}
+		}
+		finally
+		{
+			reader.close();
+		}
+
+		return result;
+	}
+
+	/**
+	 * Output mean, median, 95th percentile and maximum latency
+	 *
+	 * @param key
+	 * @param times
+	 */
+	private static void report(String key, long[] times)
+	{
+		if (times.length == 0)
+		{
+			return;
+		}
+
+		long[] sorted = times.clone();
+		long total = 0;
+
+		Arrays.sort(sorted);
+
+		for (int i = 0; i < sorted.length; i++)
+		{
+			total += sorted[i];
+		}
+
+		System.out.println(MessageFormat.format(Messages.getString(key), new Object[] {
+			toMillis(total / sorted.length),
+			toMillis(sorted[sorted.length / 2]),
+			toMillis(sorted[Math.min(sorted.length - 1, (sorted.length * 95) / 100)]),
+			toMillis(sorted[sorted.length - 1])
+		}));
+	}
+
+	/**
+	 * toMillis
+	 *
+	 * @param nanoseconds
+	 * @return Returns the time in milliseconds formatted to three decimal places
+	 */
+	private static String toMillis(long nanoseconds)
+	{
+		return String.format("%.3f", Double.valueOf(nanoseconds / 1000000.0)); //$NON-NLS-1$
+	}
+
+	/**
+	 * unescape
+	 *
+	 * @param text
+	 * @return Returns the text with escape sequences replaced
+	 */
+	private static String unescape(String text)
+	{
+		StringBuffer buffer = new StringBuffer();
+
+		for (int i = 0; i < text.length(); i++)
+		{
+			char c = text.charAt(i);
+
+			if (c == '\\' && i + 1 < text.length())
+			{
+				i++;
+
+				switch (text.charAt(i))
+				{
+					case 'n':
+						buffer.append('\n');
+						break;
+
+					case 'r':
+						buffer.append('\r');
+						break;
+
+					case 't':
+						buffer.append('\t');
+						break;
+
+					default:
+						buffer.append(text.charAt(i));
+						break;
+				}
+			}
+			else
+			{
+				buffer.append(c);
+			}
+		}
+
+		return buffer.toString();
+	}
+}
@@ -0,0 +1,218 @@
+/**
+ * Copyright (c) 2005-2008 Aptana, Inc.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html. If redistributing this code,
+ * this entire header must remain intact.
+ */
+package com.aptana.parsing.tools;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.text.MessageFormat;
+
+import com.aptana.ide.io.StreamUtils;
+import com.aptana.ide.lexer.ColumnarLexemeList;
+import com.aptana.ide.lexer.ILexer;
+import com.aptana.ide.lexer.Lexeme;
+import com.aptana.ide.lexer.LexemeList;
+import com.aptana.ide.lexer.LexerException;
+import com.aptana.ide.lexer.LexerPlugin;
+import com.aptana.ide.lexer.matcher.MatcherLexerBuilder;
+
+/**
+ * Lexes sample files into a lexeme list and reports the heap retained by the list and the time needed to relex the
+ * file into it. The list type follows the parse state's: run once as is and once with -Daptana.lexemes=columnar to
+ * compare LexemeList with ColumnarLexemeList. In columnar mode, the numbers are reported twice: once with every lexeme
+ * kept as a view, as happens when a parser adds lexemes, and once with lexemes stored in the columns only.
+ *
+ * @author agent (agent@local)
+ */
+public final class LexemeListBenchmark
+{
+	private static final String DEFAULT_GROUP = "default"; //$NON-NLS-1$
+	private static final int WARMUP_RUNS = 5;
+	private static final int TIMED_RUNS = 20;
+
+	/**
+	 * LexemeListBenchmark
+	 */
+	private LexemeListBenchmark()
+	{
+	}
+
+	/**
+	 * main
+	 *
+	 * @param args
+	 */
+	public static void main(String[] args)
+	{
+		if (args.length >= 2 && (args.length % 2) == 0)
+		{
+			try
+			{
+				for (int i = 0; i < args.length; i += 2)
+				{
+					run(new File(args[i]), new File(args[i + 1]));
+				}
+			}
+			catch (Exception e)
+			{
+				e.printStackTrace();
+			}
+		}
+		else
+		{
+			System.out.println(Messages.getString("LexemeListBenchmark.Usage_Syntax")); //$NON-NLS-1$
+			System.out.println(Messages.getString("LexemeListBenchmark.Usage_Grammar_File")); //$NON-NLS-1$
+			System.out.println(Messages.getString("LexemeListBenchmark.Usage_Source_File")); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Lex the entire source into the specified list, skipping a character whenever nothing matches
+	 *
+	 * @param lexer
+	 * @param source
+	 * @param list
+	 * @param columnsOnly
+	 *            If true, lexemes are added to the columns of a ColumnarLexemeList without keeping a view
+	 * @throws LexerException
+	 */
+	private static void lex(ILexer lexer, char[] source, LexemeList list, boolean columnsOnly) throws LexerException
+	{
+		list.clear();
+
+		if (list instanceof ColumnarLexemeList)
+		{
+			((ColumnarLexemeList) list).setSource(source);
+		}
+
+		lexer.setLanguageAndGroup(lexer.getLanguages()[0], DEFAULT_GROUP);
+		lexer.setSource(source);
+
+		while (lexer.getCurrentOffset() < source.length)
+		{
+			Lexeme lexeme = lexer.getNextLexeme();
+
+			if (lexeme == null)
+			{
+				lexer.setCurrentOffset(lexer.getCurrentOffset() + 1);
+			}
+			else if (columnsOnly)
+			{
+				((ColumnarLexemeList) list).add(lexeme.getToken(), lexeme.offset, lexeme.length);
+			}
+			else
+			{
+				list.add(lexeme);
+			}
+		}
+	}
+
+	/**
+	 * Measure one list configuration
+	 *
+	 * @param lexer
+	 * @param source
+	 * @param columnsOnly
+	 * @throws LexerException
+	 */
+	private static void measure(ILexer lexer, char[] source, boolean columnsOnly) throws LexerException
+	{
+		String listType;
+		LexemeList list;
+
+		if (LexerPlugin.useColumnarLexemes())
+		{
+			list = new ColumnarLexemeList();
+			listType = columnsOnly ? "ColumnarLexemeList (columns only)" : "ColumnarLexemeList"; //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		else
+		{
+			list = new LexemeList();
+			listType = "LexemeList"; //$NON-NLS-1$
+		}
+
+		// retained heap
+		long before = usedMemory();
+		lex(lexer, source, list, columnsOnly);
+		long after = usedMemory();
+		int size = list.size();
+
+		// relex time
+		for (int i = 0; i < WARMUP_RUNS; i++)
+		{
+			lex(lexer, source, list, columnsOnly);
+		}
+
+		long start = System.nanoTime();
+
+		for (int i = 0; i < TIMED_RUNS; i++)
+		{
+			lex(lexer, source, list, columnsOnly);
+		}
+
+		long elapsed = System.nanoTime() - start;
+
+		System.out.println(MessageFormat.format(
+			Messages.getString("LexemeListBenchmark.Result"), //$NON-NLS-1$
+			new Object[] {
+				listType,
+				Integer.toString(size),
+				String.format("%.2f", Double.valueOf((after - before) / (1024.0 * 1024.0))), //$NON-NLS-1$
+				String.format("%.1f", Double.valueOf((after - before) / (double) Math.max(1, size))), //$NON-NLS-1$
+				String.format("%.2f", Double.valueOf(elapsed / (TIMED_RUNS * 1000000.0))) //$NON-NLS-1$
+			}
+		));
+	}
+
+	/**
+	 * Measure the lexeme list for one grammar and source file
+	 *
+	 * @param grammarFile
+	 * @param sourceFile
+	 * @throws Exception
+	 */
+	private static void run(File grammarFile, File sourceFile) throws Exception
+	{
+		char[] source = StreamUtils.getText(new FileInputStream(sourceFile)).toCharArray();
+		MatcherLexerBuilder builder = new MatcherLexerBuilder();
+
+		builder.loadXML(grammarFile);
+
+		ILexer lexer = builder.buildLexer();
+
+		System.out.println(MessageFormat.format(
+			Messages.getString("LexemeListBenchmark.Language"), //$NON-NLS-1$
+			new Object[] { lexer.getLanguages()[0], sourceFile.getName() }
+		));
+
+		measure(lexer, source, false);
+
+		if (LexerPlugin.useColumnarLexemes())
+		{
+			measure(lexer, source, true);
+		}
+	}
+
+	/**
+	 * Return the heap in use after encouraging the garbage collector to run
+	 *
+	 * @return Returns the number of bytes in use
+	 */
+	private static long usedMemory()
+	{
+		Runtime runtime = Runtime.getRuntime();
+
+		for (int i = 0; i < 4; i++)
+		{
+			System.gc();
+		}
+
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
@@ -0,0 +1,374 @@
+/**
+ * Copyright (c) 2005-2008 Aptana, Inc.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html. If redistributing this code,
+ * this entire header must remain intact.
+ */
+package com.aptana.parsing.tools;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.text.MessageFormat;
+import java.util.Arrays;
+import java.util.Random;
+
+import com.aptana.ide.io.StreamUtils;
+import com.aptana.ide.lexer.ILexer;
+import com.aptana.ide.lexer.Lexeme;
+import com.aptana.ide.lexer.LexemeList;
+import com.aptana.ide.lexer.LexemeListSnapshot;
+import com.aptana.ide.lexer.LexerException;
+import com.aptana.ide.lexer.matcher.MatcherLexerBuilder;
+import com.aptana.ide.parsing.ParseState;
+
+/**
+ * Runs a parser thread that applies random edits to a file alongside a number of reader threads that query the
+ * lexeme list the way the colorizer does. Readers first take the list's lock, as they used to, and then use published
+ * snapshots. Edit latency of the parser and query throughput and latency of the readers are reported for both.
+ *
+ * @author agent (agent@local)
+ */
+public final class LexemeListContentionBenchmark
+{
+	private static final String DEFAULT_GROUP = "default"; //$NON-NLS-1$
+	private static final String[] INSERTIONS = { "", "x", " ", "\n", "foo(bar)", "\"abc\"", "var q = 1;\n" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$
+	private static final int LINE_LENGTH = 80;
+	private static final int DEFAULT_SECONDS = 5;
+	private static final int MAX_SAMPLES = 1000000;
+
+	/**
+	 * Collects latency samples for one thread
+	 */
+	private static final class Samples
+	{
+		long[] times = new long[1024];
+		int count;
+
+		void add(long time)
+		{
+			if (this.count == this.times.length && this.count < MAX_SAMPLES)
+			{
+				long[] times = new long[this.count * 2];
+
+				System.arraycopy(this.times, 0, times, 0, this.count);
+				this.times = times;
+			}
+
+			if (this.count < this.times.length)
+			{
+				this.times[this.count++] = time;
+			}
+		}
+	}
+
+	/**
+	 * Queries the lexeme list until told to stop
+	 */
+	private static final class Reader extends Thread
+	{
+		private final ParseState _parseState;
+		private final boolean _useSnapshots;
+		private final Random _random;
+		final Samples samples = new Samples();
+		long queries;
+		volatile boolean running = true;
+
+		Reader(ParseState parseState, boolean useSnapshots, long seed)
+		{
+			this._parseState = parseState;
+			this._useSnapshots = useSnapshots;
+			this._random = new Random(seed);
+		}
+
+		public void run()
+		{
+			LexemeList list = this._parseState.getLexemeList();
+
+			while (this.running)
+			{
+				int length = this._parseState.getSource().length;
+				int offset = this._random.nextInt(Math.max(1, length));
+				long start = System.nanoTime();
+
+				if (this._useSnapshots)
+				{
+					LexemeListSnapshot snapshot = list.getSnapshot();
+					int startingIndex = snapshot.getLexemeCeilingIndex(offset);
+					int endingIndex = snapshot.getLexemeFloorIndex(offset + LINE_LENGTH);
+
+					snapshot.cloneRange(startingIndex, endingIndex);
+				}
+				else
+				{
+					synchronized (list)
+					{
+						int startingIndex = list.getLexemeCeilingIndex(offset);
+						int endingIndex = list.getLexemeFloorIndex(offset + LINE_LENGTH);
+
+						list.cloneRange(startingIndex, endingIndex);
+					}
+				}
+
+				this.samples.add(System.nanoTime() - start);
+				this.queries++;
+			}
+		}
+	}
+
+	/**
+	 * LexemeListContentionBenchmark
+	 */
+	private LexemeListContentionBenchmark()
+	{
+	}
+
+	/**
+	 * main
+	 *
+	 * @param args
+	 */
+	public static void main(String[] args)
+	{
+		if (args.length == 3 || args.length == 4)
+		{
+			try
+			{
+				int seconds = (args.length == 4) ? Integer.parseInt(args[3]) : DEFAULT_SECONDS;
+
+				run(new File(args[0]), new File(args[1]), Integer.parseInt(args[2]), seconds);
+			}
+			catch (Exception e)
+			{
+				e.printStackTrace();
+			}
+		}
+		else
+		{
+			System.out.println(Messages.getString("LexemeListContentionBenchmark.Usage_Syntax")); //$NON-NLS-1$
+			System.out.println(Messages.getString("LexemeListContentionBenchmark.Usage_Grammar_File")); //$NON-NLS-1$
+			System.out.println(Messages.getString("LexemeListContentionBenchmark.Usage_Source_File")); //$NON-NLS-1$
+			System.out.println(Messages.getString("LexemeListContentionBenchmark.Usage_Readers")); //$NON-NLS-1$
+			System.out.println(Messages.getString("LexemeListContentionBenchmark.Usage_Seconds")); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Apply an edit and relex the lexemes it affected, holding the list's lock as the parsers do
+	 *
+	 * @param lexer
+	 * @param parseState
+	 * @param source
+	 * @param random
+	 * @return Returns the edited source
+	 * @throws LexerException
+	 */
+	private static String edit(ILexer lexer, ParseState parseState, String source, Random random)
+			throws LexerException
+	{
+		int offset = random.nextInt(Math.max(1, source.length()));
+		int removeLength = Math.min(source.length() - offset, random.nextInt(20));
+		String insertion = INSERTIONS[random.nextInt(INSERTIONS.length)];
+		String result = source.substring(0, offset) + insertion + source.substring(offset + removeLength);
+		LexemeList list = parseState.getLexemeList();
+
+		synchronized (list)
+		{
+			parseState.setEditState(result, insertion, offset, removeLength);
+
+			int index = list.getLexemeFloorIndex(offset);
+			int start = (index >= 0) ? list.get(index).offset : 0;
+
+			lex(lexer, parseState, start, offset + insertion.length());
+
+			list.publish();
+		}
+
+		return result;
+	}
+
+	/**
+	 * Lex into the parse state's lexeme list from the specified offset until the lexemes past the end of the edit
+	 * match the ones already in the list
+	 *
+	 * @param lexer
+	 * @param parseState
+	 * @param start
+	 * @param end
+	 * @throws LexerException
+	 */
+	private static void lex(ILexer lexer, ParseState parseState, int start, int end) throws LexerException
+	{
+		char[] source = parseState.getSource();
+		LexemeList list = parseState.getLexemeList();
+
+		lexer.setLanguageAndGroup(lexer.getLanguages()[0], DEFAULT_GROUP);
+		lexer.setSource(source);
+		lexer.setCurrentOffset(start);
+
+		while (lexer.getCurrentOffset() < source.length)
+		{
+			Lexeme lexeme = lexer.getNextLexeme();
+
+			if (lexeme == null)
+			{
+				lexer.setCurrentOffset(lexer.getCurrentOffset() + 1);
+			}
+			else
+			{
+				Lexeme existing = list.getLexemeFromOffset(lexeme.offset);
+
+				if (lexeme.offset >= end && existing != null && existing.offset == lexeme.offset
+						&& existing.length == lexeme.length)
+				{
+					break;
+				}
+
+				list.add(lexeme);
+			}
+		}
+	}
+
+	/**
+	 * Output mean, 95th percentile and maximum latency
+	 *
+	 * @param key
+	 * @param samples
+	 * @param count
+	 * @param extra
+	 */
+	private static void report(String key, long[] samples, int count, String extra)
+	{
+		if (count == 0)
+		{
+			return;
+		}
+
+		long[] sorted = new long[count];
+		long total = 0;
+
+		System.arraycopy(samples, 0, sorted, 0, count);
+
+		Arrays.sort(sorted);
+
+		for (int i = 0; i < count; i++)
+		{
+			total += sorted[i];
+		}
+
+		System.out.println(MessageFormat.format(Messages.getString(key), new Object[] {
+			extra,
+			toMillis(total / count),
+			toMillis(sorted[Math.min(count - 1, (int) ((count * 95L) / 100))]),
+			toMillis(sorted[count - 1])
+		}));
+	}
+
+	/**
+	 * Run both reader modes against the same sequence of edits
+	 *
+	 * @param grammarFile
+	 * @param sourceFile
+	 * @param readerCount
+	 * @param seconds
+	 * @throws Exception
+	 */
+	private static void run(File grammarFile, File sourceFile, int readerCount, int seconds) throws Exception
+	{
+		String source = StreamUtils.getText(new FileInputStream(sourceFile));
+		MatcherLexerBuilder builder = new MatcherLexerBuilder();
+
+		builder.loadXML(grammarFile);
+
+		ILexer lexer = builder.buildLexer();
+
+		System.out.println(MessageFormat.format(
+			Messages.getString("LexemeListContentionBenchmark.Language"), //$NON-NLS-1$
+			new Object[] { lexer.getLanguages()[0], sourceFile.getName(), Integer.toString(readerCount) }
+		));
+
+		run(lexer, source, readerCount, seconds, false);
+		run(lexer, source, readerCount, seconds, true);
+	}
+
+	/**
+	 * Run the parser and readers for the specified number of seconds
+	 *
+	 * @param lexer
+	 * @param source
+	 * @param readerCount
+	 * @param seconds
+	 * @param useSnapshots
+	 * @throws Exception
+	 */
+	private static void run(ILexer lexer, String source, int readerCount, int seconds, boolean useSnapshots)
+			throws Exception
+	{
+		ParseState parseState = new ParseState();
+		Random random = new Random(1);
+
+		// initial lex of the whole file
+		parseState.setEditState(source, source, 0, 0);
+		lex(lexer, parseState, 0, source.length());
+		parseState.getLexemeList().publish();
+
+		Reader[] readers = new Reader[readerCount];
+
+		for (int i = 0; i < readerCount; i++)
+		{
+			readers[i] = new Reader(parseState, useSnapshots, i + 2);
+			readers[i].start();
+		}
+
+		Samples edits = new Samples();
+		long end = System.nanoTime() + seconds * 1000000000L;
+
+		while (System.nanoTime() < end)
+		{
+			long start = System.nanoTime();
+
+			source = edit(lexer, parseState, source, random);
+
+			edits.add(System.nanoTime() - start);
+		}
+
+		long queries = 0;
+		Samples all = new Samples();
+
+		for (int i = 0; i < readerCount; i++)
+		{
+			readers[i].running = false;
+			readers[i].join();
+
+			queries += readers[i].queries;
+
+			for (int j = 0; j < readers[i].samples.count; j++)
+			{
+				all.add(readers[i].samples.times[j]);
+			}
+		}
+
+		String mode = Messages.getString(useSnapshots
+			? "LexemeListContentionBenchmark.Snapshot_Mode" //$NON-NLS-1$
+			: "LexemeListContentionBenchmark.Locked_Mode"); //$NON-NLS-1$
+
+		System.out.println(mode);
+		report("LexemeListContentionBenchmark.Parser_Summary", edits.times, edits.count, //$NON-NLS-1$
+				Integer.toString(edits.count / seconds));
+		report("LexemeListContentionBenchmark.Reader_Summary", all.times, all.count, //$NON-NLS-1$
+				Long.toString(queries / seconds));
+	}
+
+	/**
+	 * toMillis
+	 *
+	 * @param nanoseconds
+	 * @return Returns the time in milliseconds formatted to three decimal places
+	 */
+	private static String toMillis(long nanoseconds)
+	{
+		return String.format("%.3f", Double.valueOf(nanoseconds / 1000000.0)); //$NON-NLS-1$
+	}
+}
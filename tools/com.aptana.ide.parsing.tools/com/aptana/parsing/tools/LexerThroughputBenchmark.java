@@ -0,0 +1,265 @@
+/**
+ * Copyright (c) 2005-2008 Aptana, Inc.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html. If redistributing this code,
+ * this entire header must remain intact.
+ */
+package com.aptana.parsing.tools;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.aptana.ide.io.StreamUtils;
+import com.aptana.ide.lexer.ILexer;
+import com.aptana.ide.lexer.Lexeme;
+import com.aptana.ide.lexer.LexerException;
+import com.aptana.ide.lexer.matcher.DFAMatcherLexerBuilder;
+import com.aptana.ide.lexer.matcher.MatcherDFA;
+import com.aptana.ide.lexer.matcher.MatcherLexerBuilder;
+import com.aptana.ide.lexer.matcher.MatcherTokenList;
+
+/**
+ * Lexes sample files with the matcher tree and with the compiled DFA backend and reports the throughput of each in
+ * MB/s. The lexeme streams of both lexers are compared so that any difference in behavior is reported as well.
+ *
+ * @author agent (agent@local)
+ */
+public final class LexerThroughputBenchmark
+{
+	private static final String DEFAULT_GROUP = "default"; //$NON-NLS-1$
+	private static final int WARMUP_RUNS = 5;
+	private static final int TIMED_RUNS = 20;
+
+	/**
+	 * LexerThroughputBenchmark
+	 */
+	private LexerThroughputBenchmark()
+	{
+	}
+
+	/**
+	 * main
+	 *
+	 * @param args
+	 */
+	public static void main(String[] args)
+	{
+		if (args.length >= 2 && (args.length % 2) == 0)
+		{
+			try
+			{
+				for (int i = 0; i < args.length; i += 2)
+				{
+					run(new File(args[i]), new File(args[i + 1]));
+				}
+			}
+			catch (Exception e)
+			{
+				e.printStackTrace();
+			}
+		}
+		else
+		{
+			System.out.println(Messages.getString("LexerThroughputBenchmark.Usage_Syntax")); //$NON-NLS-1$
+			System.out.println(Messages.getString("LexerThroughputBenchmark.Usage_Grammar_File")); //$NON-NLS-1$
+			System.out.println(Messages.getString("LexerThroughputBenchmark.Usage_Source_File")); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Build a lexer for the specified grammar
+	 *
+	 * @param builder
+	 * @param grammarFile
+	 * @return ILexer
+	 * @throws LexerException
+	 */
+	private static ILexer buildLexer(MatcherLexerBuilder builder, File grammarFile) throws LexerException
+	{
+		builder.loadXML(grammarFile);
+
+		return builder.buildLexer();
+	}
+
+	/**
+	 * Lex the entire source, skipping a character whenever nothing matches
+	 *
+	 * @param lexer
+	 * @param source
+	 * @param lexemes
+	 *            If not null, receives a description of each lexeme
+	 * @throws LexerException
+	 */
+	private static void lex(ILexer lexer, char[] source, List<String> lexemes) throws LexerException
+	{
+		lexer.setLanguageAndGroup(lexer.getLanguages()[0], DEFAULT_GROUP);
+		lexer.setSource(source);
+
+		while (lexer.getCurrentOffset() < source.length)
+		{
+			Lexeme lexeme = lexer.getNextLexeme();
+
+			if (lexeme == null)
+			{
+				if (lexemes != null)
+				{
+					lexemes.add(lexer.getCurrentOffset() + ":error"); //$NON-NLS-1$
+				}
+
+				lexer.setCurrentOffset(lexer.getCurrentOffset() + 1);
+			}
+			else if (lexemes != null)
+			{
+				lexemes.add(lexeme.offset + ":" + lexeme.getType() + ":" + lexeme.length); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+		}
+	}
+
+	/**
+	 * Report the number of compiled and fallback matchers in each group
+	 *
+	 * @param lexer
+	 */
+	private static void reportCoverage(ILexer lexer)
+	{
+		String language = lexer.getLanguages()[0];
+
+		if (lexer.getTokenList(language) instanceof MatcherTokenList)
+		{
+			MatcherTokenList tokenList = (MatcherTokenList) lexer.getTokenList(language);
+			String[] groups = tokenList.getGroupNames();
+
+			for (int i = 0; i < groups.length; i++)
+			{
+				MatcherDFA dfa = tokenList.getCompiledGroup(groups[i]);
+				String message;
+
+				if (dfa != null)
+				{
+					message = MessageFormat.format(
+						Messages.getString("LexerThroughputBenchmark.Group_Coverage"), //$NON-NLS-1$
+						new Object[] {
+							groups[i],
+							Integer.toString(dfa.getCompiledCount()),
+							Integer.toString(dfa.getFallbackCount()),
+							Integer.toString(dfa.getStateCount())
+						}
+					);
+				}
+				else
+				{
+					message = MessageFormat.format(
+						Messages.getString("LexerThroughputBenchmark.Group_Not_Compiled"), //$NON-NLS-1$
+						new Object[] { groups[i] }
+					);
+				}
+
+				System.out.println(message);
+			}
+		}
+	}
+
+	/**
+	 * Compare and time both lexers on one grammar and source file
+	 *
+	 * @param grammarFile
+	 * @param sourceFile
+	 * @throws Exception
+	 */
+	private static void run(File grammarFile, File sourceFile) throws Exception
+	{
+		char[] source = StreamUtils.getText(new FileInputStream(sourceFile)).toCharArray();
+		ILexer matcherLexer = buildLexer(new MatcherLexerBuilder(), grammarFile);
+		ILexer dfaLexer = buildLexer(new DFAMatcherLexerBuilder(), grammarFile);
+
+		System.out.println(MessageFormat.format(
+			Messages.getString("LexerThroughputBenchmark.Language"), //$NON-NLS-1$
+			new Object[] { dfaLexer.getLanguages()[0], sourceFile.getName() }
+		));
+
+		reportCoverage(dfaLexer);
+
+		// both lexers must produce the same lexemes
+		List<String> expected = new ArrayList<String>();
+		List<String> actual = new ArrayList<String>();
+
+		lex(matcherLexer, source, expected);
+		lex(dfaLexer, source, actual);
+
+		int mismatch = -1;
+
+		for (int i = 0; i < Math.max(expected.size(), actual.size()); i++)
+		{
+			if (i >= expected.size() || i >= actual.size() || expected.get(i).equals(actual.get(i)) == false)
+			{
+				mismatch = i;
+				break;
+			}
+		}
+
+		if (mismatch != -1)
+		{
+			System.out.println(MessageFormat.format(
+				Messages.getString("LexerThroughputBenchmark.Mismatch"), //$NON-NLS-1$
+				new Object[] {
+					Integer.toString(mismatch),
+					(mismatch < expected.size()) ? expected.get(mismatch) : "", //$NON-NLS-1$
+					(mismatch < actual.size()) ? actual.get(mismatch) : "" //$NON-NLS-1$
+				}
+			));
+		}
+
+		double megabytes = (sourceFile.length() * (double) TIMED_RUNS) / (1024 * 1024);
+
+		System.out.println(MessageFormat.format(
+			Messages.getString("LexerThroughputBenchmark.Throughput"), //$NON-NLS-1$
+			new Object[] {
+				toRate(megabytes, time(matcherLexer, source)),
+				toRate(megabytes, time(dfaLexer, source))
+			}
+		));
+	}
+
+	/**
+	 * Time the lexing of the source after warming up the lexer
+	 *
+	 * @param lexer
+	 * @param source
+	 * @return Returns the elapsed time of all timed runs in nanoseconds
+	 * @throws LexerException
+	 */
+	private static long time(ILexer lexer, char[] source) throws LexerException
+	{
+		for (int i = 0; i < WARMUP_RUNS; i++)
+		{
+			lex(lexer, source, null);
+		}
+
+		long start = System.nanoTime();
+
+		for (int i = 0; i < TIMED_RUNS; i++)
+		{
+			lex(lexer, source, null);
+		}
+
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * toRate
+	 *
+	 * @param megabytes
+	 * @param nanoseconds
+	 * @return Returns the throughput in MB/s formatted to one decimal place
+	 */
+	private static String toRate(double megabytes, long nanoseconds)
+	{
+		return String.format("%.1f", Double.valueOf(megabytes / (nanoseconds / 1000000000.0))); //$NON-NLS-1$
+	}
+}
@@ -0,0 +1,377 @@
+/**
+ * Copyright (c) 2005-2008 Aptana, Inc.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html. If redistributing this code,
+ * this entire header must remain intact.
+ */
+package com.aptana.ide.server.tools;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.text.MessageFormat;
+import java.util.Arrays;
+
+import com.aptana.ide.server.http.HttpServer;
+
+/**
+ * Starts an HttpServer on a folder, first with a thread per connection and then with the selector based server, and
+ * has a number of clients request one file in parallel. Clients reuse their connection as long as the server keeps it
+ * alive. Requests per second and the p50 and p99 latency are reported for each mode.
+ *
+ * @author agent (agent@local)
+ */
+public final class HttpServerLoadTest
+{
+	private static final String HOST = "127.0.0.1"; //$NON-NLS-1$
+	private static final int DEFAULT_CONNECTIONS = 32;
+	private static final int DEFAULT_REQUESTS = 200;
+	private static final int WARMUP_REQUESTS = 20;
+
+	/**
+	 * HttpServerLoadTest
+	 */
+	private HttpServerLoadTest()
+	{
+	}
+
+	/**
+	 * main
+	 *
+	 * @param args
+	 */
+	public static void main(String[] args)
+	{
+		if (args.length >= 2 && args.length <= 4)
+		{
+			try
+			{
+				int connections = (args.length > 2) ? Integer.parseInt(args[2]) : DEFAULT_CONNECTIONS;
+				int requests = (args.length > 3) ? Integer.parseInt(args[3]) : DEFAULT_REQUESTS;
+
+				System.out.println(MessageFormat.format(
+					Messages.getString("HttpServerLoadTest.Run"), //$NON-NLS-1$
+					new Object[] { args[1], Integer.toString(connections), Integer.toString(requests) }
+				));
+
+				System.out.println(Messages.getString("HttpServerLoadTest.Thread_Mode")); //$NON-NLS-1$
+				run(args[0], args[1], connections, requests, false);
+				System.out.println(Messages.getString("HttpServerLoadTest.Selector_Mode")); //$NON-NLS-1$
+				run(args[0], args[1], connections, requests, true);
+			}
+			catch (Exception e)
+			{
+				e.printStackTrace();
+			}
+		}
+		else
+		{
+			System.out.println(Messages.getString("HttpServerLoadTest.Usage_Syntax")); //$NON-NLS-1$
+			System.out.println(Messages.getString("HttpServerLoadTest.Usage_Folder")); //$NON-NLS-1$
+			System.out.println(Messages.getString("HttpServerLoadTest.Usage_Path")); //$NON-NLS-1$
+			System.out.println(Messages.getString("HttpServerLoadTest.Usage_Connections")); //$NON-NLS-1$
+			System.out.println(Messages.getString("HttpServerLoadTest.Usage_Requests")); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Load one server mode and print its summary
+	 *
+	 * @param folder
+	 * @param path
+	 * @param connections
+	 * @param requests
+	 * @param nonBlocking
+	 * @throws Exception
+	 */
+	private static void run(String folder, String path, int connections, int requests, boolean nonBlocking)
+		throws Exception
+	{
+		HttpServer server = new HttpServer(folder, 0);
+
+		server.setNonBlocking(nonBlocking);
+		server.start();
+
+		try
+		{
+			// warm up the server before timing it
+			load(server.getPort(), path, connections, WARMUP_REQUESTS);
+
+			long start = System.nanoTime();
+			Client[] clients = load(server.getPort(), path, connections, requests);
+			long elapsed = System.nanoTime() - start;
+
+			long[] latencies = new long[connections * requests];
+			int count = 0;
+			int opened = 0;
+			int errors = 0;
+
+			for (int i = 0; i < clients.length; i++)
+			{
+				System.arraycopy(clients[i]._latencies, 0, latencies, count, clients[i]._count);
+				count += clients[i]._count;
+				opened += clients[i]._connections;
+				errors += clients[i]._errors;
+			}
+
+			Arrays.sort(latencies, 0, count);
+
+			System.out.println(MessageFormat.format(
+				Messages.getString("HttpServerLoadTest.Summary"), //$NON-NLS-1$
+				new Object[] {
+					String.format("%.0f", Double.valueOf(count / (elapsed / 1000000000.0))), //$NON-NLS-1$
+					toMilliseconds(percentile(latencies, count, 50)),
+					toMilliseconds(percentile(latencies, count, 99)),
+					toMilliseconds((count > 0) ? latencies[count - 1] : 0),
+					Integer.toString(opened),
+					Integer.toString(errors)
+				}
+			));
+		}
+		finally
+		{
+			server.stop();
+		}
+	}
+
+	/**
+	 * Run the clients in parallel and wait for all of them to finish
+	 *
+	 * @param port
+	 * @param path
+	 * @param connections
+	 * @param requests
+	 * @return Returns the clients with their measurements
+	 * @throws InterruptedException
+	 */
+	private static Client[] load(int port, String path, int connections, int requests) throws InterruptedException
+	{
+		Client[] clients = new Client[connections];
+		Thread[] threads = new Thread[connections];
+
+		for (int i = 0; i < connections; i++)
+		{
+			clients[i] = new Client(port, path, requests);
+			threads[i] = new Thread(clients[i], "Load Client " + (i + 1)); //$NON-NLS-1$
+			threads[i].start();
+		}
+		for (int i = 0; i < connections; i++)
+		{
+			threads[i].join();
+		}
+
+		return clients;
+	}
+
+	/**
+	 * percentile
+	 *
+	 * @param sorted
+	 * @param count
+	 * @param percent
+	 * @return Returns the value below which the given percentage of the sorted values fall
+	 */
+	private static long percentile(long[] sorted, int count, int percent)
+	{
+		if (count == 0)
+		{
+			return 0;
+		}
+
+		return sorted[Math.min(count - 1, (int) Math.ceil(count * percent / 100.0) - 1)];
+	}
+
+	/**
+	 * toMilliseconds
+	 *
+	 * @param nanoseconds
+	 * @return Returns the time in milliseconds formatted to two decimal places
+	 */
+	private static String toMilliseconds(long nanoseconds)
+	{
+		return String.format("%.2f", Double.valueOf(nanoseconds / 1000000.0)); //$NON-NLS-1$
+	}
+
+	/**
+	 * A client that sends its requests one after the other, reconnecting whenever the server closes the connection
+	 */
+	private static final class Client implements Runnable
+	{
+		private int _port;
+		private byte[] _request;
+		private long[] _latencies;
+		private int _count;
+		private int _connections;
+		private int _errors;
+
+		/**
+		 * Client
+		 *
+		 * @param port
+		 * @param path
+		 * @param requests
+		 */
+		Client(int port, String path, int requests)
+		{
+			this._port = port;
+			this._request = ("GET " + path + " HTTP/1.1\r\nHost: " + HOST + "\r\n\r\n").getBytes(); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			this._latencies = new long[requests];
+		}
+
+		/**
+		 * @see java.lang.Runnable#run()
+		 */
+		public void run()
+		{
+			Socket socket = null;
+			InputStream input = null;
+			OutputStream output = null;
+
+			for (int i = 0; i < this._latencies.length; i++)
+			{
+				long start = System.nanoTime();
+
+				try
+				{
+					if (socket == null)
+					{
+						socket = new Socket(HOST, this._port);
+						socket.setTcpNoDelay(true);
+						input = new BufferedInputStream(socket.getInputStream());
+						output = socket.getOutputStream();
+						this._connections++;
+					}
+
+					output.write(this._request);
+					output.flush();
+
+					boolean keepAlive = readResponse(input);
+
+					this._latencies[this._count++] = System.nanoTime() - start;
+
+					if (keepAlive == false)
+					{
+						socket.close();
+						socket = null;
+					}
+				}
+				catch (IOException e)
+				{
+					this._errors++;
+					socket = close(socket);
+				}
+			}
+
+			close(socket);
+		}
+
+		/**
+		 * Read one response, including its content
+		 *
+		 * @param input
+		 * @return Returns true if the connection can be used for the next request
+		 * @throws IOException
+		 */
+		private static boolean readResponse(InputStream input) throws IOException
+		{
+			String statusLine = readLine(input);
+
+			if (statusLine.indexOf(" 200 ") == -1) //$NON-NLS-1$
+			{
+				throw new IOException(statusLine);
+			}
+
+			long length = -1;
+			boolean keepAlive = statusLine.startsWith("HTTP/1.1"); //$NON-NLS-1$
+			String line;
+
+			while ((line = readLine(input)).length() > 0)
+			{
+				String lower = line.toLowerCase();
+
+				if (lower.startsWith("content-length:")) //$NON-NLS-1$
+				{
+					length = Long.parseLong(line.substring(15).trim());
+				}
+				else if (lower.startsWith("connection:")) //$NON-NLS-1$
+				{
+					keepAlive = lower.indexOf("close") == -1; //$NON-NLS-1$
+				}
+			}
+
+			if (length == -1)
+			{
+				// the content ends with the connection
+				while (input.read() != -1)
+				{
+				}
+				return false;
+			}
+
+			for (long remaining = length; remaining > 0; remaining--)
+			{
+				if (input.read() == -1)
+				{
+					throw new IOException("response ended early"); //$NON-NLS-1$
+				}
+			}
+
+			return keepAlive;
+		}
+
+		/**
+		 * readLine
+		 *
+		 * @param input
+		 * @return Returns the next line without its line end
+		 * @throws IOException
+		 */
+		private static String readLine(InputStream input) throws IOException
+		{
+			StringBuffer buffer = new StringBuffer();
+			int c;
+
+			while ((c = input.read()) != '\n')
+			{
+				if (c == -1)
+				{
+					throw new IOException("connection closed"); //$NON-NLS-1$
+				}
+				if (c != '\r')
+				{
+					buffer.append((char) c);
+				}
+			}
+
+			return buffer.toString();
+		}
+
+		/**
+		 * close
+		 *
+		 * @param socket
+		 * @return Returns null
+		 */
+		private static Socket close(Socket socket)
+		{
+			if (socket != null)
+			{
+				try
+				{
+					socket.close();
+				}
+				catch (IOException e)
+				{
+					// nothing to do
+				}
+			}
+
+			return null;
+		}
+	}
+}
@@ -0,0 +1,46 @@
+/**
+ * Copyright (c) 2005-2008 Aptana, Inc.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html. If redistributing this code,
+ * this entire header must remain intact.
+ */
+package com.aptana.ide.server.tools;
+
+import java.util.MissingResourceException;
+import java.util.ResourceBundle;
+
+/**
+ * @author agent (agent@local)
+ *
+ */
+public class Messages
+{
+	private static final String BUNDLE_NAME = "com.aptana.ide.server.tools.messages"; //$NON-NLS-1$
+
+	private static final ResourceBundle RESOURCE_BUNDLE = ResourceBundle.getBundle(BUNDLE_NAME);
+
+	private Messages()
+	{
+	}
+
+	/**
+	 * getString
+	 *
+	 * @param key
+	 * @return String
+	 */
+	public static String getString(String key)
+	{
+		try
+		{
+			return RESOURCE_BUNDLE.getString(key);
+		}
+		catch (MissingResourceException e)
+		{
+			return '!' + key + '!';
+		}
+	}
+}